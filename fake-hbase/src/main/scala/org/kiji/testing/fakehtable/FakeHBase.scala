@@ -62,6 +62,9 @@ class FakeHBase
    */
   private var createUnknownTable: Boolean = false
 
+  /** Model of the latency of the requests to the tables in this HBase instance. */
+  private var latencyModel: LatencyModel = LatencyModel.NoLatency
+
   /** Default HConnection to connect to this HBase instance and the HTables it contains. */
   private val mFakeHConnection: FakeHConnection = new FakeHConnection(this)
   private val mHConnection: HConnection =
@@ -82,6 +85,28 @@ class FakeHBase
     }
   }
 
+  /**
+   * Sets the model of the latency of the requests to the tables, existing and future,
+   * in this HBase instance.
+   *
+   * @param latencyModel Model of the latency of the requests to the tables.
+   */
+  def setLatencyModel(latencyModel: LatencyModel): Unit = {
+    synchronized {
+      this.latencyModel = latencyModel
+      for (table <- tableMap.values.iterator.asScala) {
+        table.setLatencyModel(latencyModel)
+      }
+    }
+  }
+
+  /** @return the model of the latency of the requests to the tables. */
+  private[fakehtable] def getLatencyModel(): LatencyModel = {
+    synchronized {
+      return latencyModel
+    }
+  }
+
   // -----------------------------------------------------------------------------------------------
 
   /** Factory for HTableInterface instances. */
@@ -102,7 +127,8 @@ class FakeHBase
               name = tableName,
               conf = conf,
               desc = desc,
-              hconnection = mFakeHConnection
+              hconnection = mFakeHConnection,
+              latencyModel = getLatencyModel()
           )
           tableMap.put(tableNameBytes, table)
         }
@@ -140,7 +166,8 @@ class FakeHBase
         val table = new FakeHTable(
             name = desc.getNameAsString,
             desc = desc,
-            hconnection = mFakeHConnection
+            hconnection = mFakeHConnection,
+            latencyModel = getLatencyModel()
         )
         Arrays.sort(split, Bytes.BYTES_COMPARATOR)
         table.setSplit(split)
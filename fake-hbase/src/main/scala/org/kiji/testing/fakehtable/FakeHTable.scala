@@ -19,6 +19,7 @@
 
 package org.kiji.testing.fakehtable
 
+import java.io.InterruptedIOException
 import java.io.PrintStream
 import java.lang.{Boolean => JBoolean}
 import java.lang.{Long => JLong}
@@ -31,6 +32,10 @@ import java.util.NavigableMap
 import java.util.NavigableSet
 import java.util.{TreeMap => JTreeMap}
 import java.util.{TreeSet => JTreeSet}
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.Lock
+import java.util.concurrent.locks.ReentrantReadWriteLock
 
 import scala.Option.option2Iterable
 import scala.collection.JavaConverters.asScalaBufferConverter
@@ -76,6 +81,14 @@ import org.slf4j.LoggerFactory
 /**
  * Fake in-memory HTable.
  *
+ * The table may be accessed concurrently. Rows are indexed in a concurrent skip-list map, and the
+ * content of each row is protected by a read/write row lock: operations on a row are atomic, as
+ * they are with a region server, while operations on different rows proceed in parallel.
+ * Scanners do not lock the table, and only lock each row while building its Result.
+ *
+ * An optional latency model injects the latency of the requests to a region server, so that the
+ * fake table can stand in for a real cluster in throughput benchmarks.
+ *
  * @param name is the table name.
  * @param desc is the table HBase descriptor.
  *     Optional and may currently be null (the fake HTable infers descriptors as needed).
@@ -84,6 +97,7 @@ import org.slf4j.LoggerFactory
  * @param enabled is the initial state of the table.
  * @param autoFillDesc indicates whether descriptors are required or automatically filled-in.
  * @param hconnection Fake HConnection for this HTable.
+ * @param latencyModel is the initial model of the latency of the requests to this table.
  */
 class FakeHTable(
     val name: String,
@@ -93,7 +107,8 @@ class FakeHTable(
     private var writeBufferSize: Long = 1,
     var enabled: Boolean = true,
     autoFillDesc: Boolean = true,
-    hconnection: FakeHConnection = new FakeHConnection(null)
+    hconnection: FakeHConnection = new FakeHConnection(null),
+    latencyModel: LatencyModel = LatencyModel.NoLatency
 ) extends HTableInterface
     with FakeTypes {
   private val Log = LoggerFactory.getLogger(getClass)
@@ -113,8 +128,23 @@ class FakeHTable(
   /** Comparator for Bytes. */
   private final val BytesComparator: java.util.Comparator[Bytes] = Bytes.BYTES_COMPARATOR
 
-  /** Map: row key -> family -> qualifier -> timestamp -> cell data. */
-  private val rows: Table = new JTreeMap[Bytes, RowFamilies](BytesComparator)
+  /**
+   * Map: row key -> family -> qualifier -> timestamp -> cell data.
+   *
+   * The content of a row, as well as its insertion in and removal from this map, are protected by
+   * the lock of the row (see rowLock()).
+   */
+  private val rows: Table = new ConcurrentSkipListMap[Bytes, RowFamilies](BytesComparator)
+
+  /** Number of row locks. Must be a power of 2. */
+  private final val RowLockStripes = 256
+
+  /** Row locks, striped on the hash of the row keys. */
+  private val rowLocks: Array[ReentrantReadWriteLock] =
+      Array.fill(RowLockStripes)(new ReentrantReadWriteLock())
+
+  /** Model of the latency of the requests to this table. */
+  @volatile private var mLatencyModel: LatencyModel = latencyModel
 
   // -----------------------------------------------------------------------------------------------
 
@@ -146,10 +176,16 @@ class FakeHTable(
   }
 
   override def append(append: Append): Result = {
+    injectLatency(LatencyModel.Request.Append)
+    return doAppend(append)
+  }
+
+  /** Applies an append request, without injecting latency. */
+  private def doAppend(append: Append): Result = {
     /** Key values to return as a result. */
     val resultKVs = Buffer[KeyValue]()
 
-    synchronized {
+    withRowWriteLock(append.getRow) {
       val row = rows.get(append.getRow)
 
       /**
@@ -187,7 +223,7 @@ class FakeHTable(
           if (append.isReturnResults) resultKVs += appendedKV.clone()
         }
       }
-      this.put(put)
+      doPut(put)
     }
     return new Result(resultKVs.toArray)
   }
@@ -199,28 +235,29 @@ class FakeHTable(
   }
 
   override def batch(actions: JList[_ <: Row]): Array[Object] = {
+    injectLatency(LatencyModel.Request.Batch)
     val results = Buffer[Object]()
     actions.asScala.foreach { action =>
       action match {
         case put: Put => {
-          this.put(put)
+          doPut(put)
           results += new Object()
         }
         case get: Get => {
-          results += this.get(get)
+          results += doGet(get)
         }
         case delete: Delete => {
-          this.delete(delete)
+          doDelete(delete)
           results += new Object()
         }
         case append: Append => {
-          results += this.append(append)
+          results += doAppend(append)
         }
         case increment: Increment => {
-          results += this.increment(increment)
+          results += doIncrement(increment)
         }
         case mutations: RowMutations => {
-          this.mutateRow(mutations)
+          doMutateRow(mutations)
         }
       }
     }
@@ -228,40 +265,45 @@ class FakeHTable(
   }
 
   override def get(get: Get): Result = {
+    injectLatency(LatencyModel.Request.Get)
+    return doGet(get)
+  }
+
+  /** Applies a get request, without injecting latency. */
+  private def doGet(get: Get): Result = {
     // get() could be built around scan(), to ensure consistent filters behavior.
     // For now, we use a shortcut:
-    synchronized {
-      val filter: Filter = getFilter(get.getFilter)
-      filter.reset()
-      if (filter.filterAllRemaining()) {
-        return new Result()
-      }
-      val rowKey = get.getRow
-      if (filter.filterRowKey(rowKey, 0, rowKey.size)) {
-        return new Result()
-      }
+    val filter: Filter = getFilter(get.getFilter)
+    filter.reset()
+    if (filter.filterAllRemaining()) {
+      return new Result()
+    }
+    val rowKey = get.getRow
+    if (filter.filterRowKey(rowKey, 0, rowKey.size)) {
+      return new Result()
+    }
+    withRowReadLock(rowKey) {
       val row = rows.get(rowKey)
       if (row == null) {
-        return new Result()
-      }
-      val result = ProcessRow.makeResult(
-        table = this,
-        rowKey = rowKey,
-        row = row,
-        familyMap = getFamilyMapRequest(get.getFamilyMap),
-        timeRange = get.getTimeRange,
-        maxVersions = get.getMaxVersions,
-        filter = filter
-      )
-      if (filter.filterRow()) {
-        return new Result()
+        new Result()
+      } else {
+        val result = ProcessRow.makeResult(
+          table = this,
+          rowKey = rowKey,
+          row = row,
+          familyMap = getFamilyMapRequest(get.getFamilyMap),
+          timeRange = get.getTimeRange,
+          maxVersions = get.getMaxVersions,
+          filter = filter
+        )
+        if (filter.filterRow()) new Result() else result
       }
-      return result
     }
   }
 
   override def get(gets: JList[Get]): Array[Result] = {
-    return gets.asScala.map(this.get(_)).toArray
+    injectLatency(LatencyModel.Request.Batch)
+    return gets.asScala.map(doGet(_)).toArray
   }
 
   @deprecated(message = "Deprecated method will not be implemented", since = "HBase 0.92")
@@ -282,13 +324,21 @@ class FakeHTable(
   }
 
   override def put(put: Put): Unit = {
-    synchronized {
-      val nowMS = System.currentTimeMillis
+    injectLatency(LatencyModel.Request.Put)
+    doPut(put)
+  }
+
+  /** Applies a put request, without injecting latency. */
+  private def doPut(put: Put): Unit = {
+    val nowMS = System.currentTimeMillis
 
-      val rowKey = put.getRow
+    val rowKey = put.getRow
+    withRowWriteLock(rowKey) {
       val rowFamilyMap = rows.asScala
           .getOrElseUpdate(rowKey, new JTreeMap[Bytes, FamilyQualifiers](BytesComparator))
       for ((family, kvs) <- put.getFamilyMap.asScala) {
+        val familyDesc = getFamilyDesc(family)
+
         /** Map: qualifier -> time series. */
         val rowQualifierMap = rowFamilyMap.asScala
             .getOrElseUpdate(family, new JTreeMap[Bytes, ColumnSeries](BytesComparator))
@@ -309,17 +359,34 @@ class FakeHTable(
           }
 
           column.put(timestamp, kv.getValue)
+          trimColumn(familyDesc, column, nowMS)
         }
       }
     }
   }
 
   override def put(put: JList[Put]): Unit = {
-    put.asScala.foreach(this.put(_))
+    injectLatency(LatencyModel.Request.Batch)
+    put.asScala.foreach(doPut(_))
+  }
+
+  /**
+   * Removes the versions of a column that its family no longer retains (max versions, TTL).
+   * Caller <em>must</em> hold the write lock of the row.
+   *
+   * @param familyDesc Descriptor of the column family.
+   * @param column Time series of the column to trim.
+   * @param nowMS Current time, in milliseconds, to enforce TTL.
+   */
+  private def trimColumn(familyDesc: HColumnDescriptor, column: ColumnSeries, nowMS: Long): Unit = {
+    val bound = ProcessRow.retentionBound(familyDesc, column, nowMS)
+    if (bound != Long.MinValue) {
+      column.tailMap(bound, true).clear()
+    }
   }
 
   /**
-   * Checks the value of a cell. Caller <em>must</em> synchronize before calling.
+   * Checks the value of a cell. Caller <em>must</em> hold the write lock of the row.
    *
    * @param row Row key.
    * @param family Family.
@@ -355,19 +422,21 @@ class FakeHTable(
       value: Bytes,
       put: Put
   ): Boolean = {
-    synchronized {
+    require(Arrays.equals(row, put.getRow), "Put row must match the checked row.")
+    injectLatency(LatencyModel.Request.CheckAndMutate)
+    withRowWriteLock(row) {
       if (checkCell(row = row, family = family, qualifier = qualifier, value = value)) {
-        this.put(put)
-        return true
+        doPut(put)
+        true
       } else {
-        return false
+        false
       }
     }
   }
 
   /**
    * Removes empty maps for a specified row, family and/or qualifier. Caller <em>must</em>
-   * synchronize before calling.
+   * hold the write lock of the row.
    *
    * @param rowKey Key of the row to clean up.
    * @param family Optional family to clean up. None means clean all families.
@@ -410,60 +479,66 @@ class FakeHTable(
   }
 
   override def delete(delete: Delete): Unit = {
-    synchronized {
-      val rowKey = delete.getRow
-      val row = rows.get(rowKey)
-      if (row == null) { return }
+    injectLatency(LatencyModel.Request.Delete)
+    doDelete(delete)
+  }
 
-      if (delete.getFamilyMap.isEmpty) {
+  /** Applies a delete request, without injecting latency. */
+  private def doDelete(delete: Delete): Unit = {
+    val rowKey = delete.getRow
+    withRowWriteLock(rowKey) {
+      val row = rows.get(rowKey)
+      if (row == null) {
+        // Nothing to delete
+      } else if (delete.getFamilyMap.isEmpty) {
         for ((family, qualifiers) <- row.asScala) {
           for ((qualifier, series) <- qualifiers.asScala) {
             series.subMap(delete.getTimeStamp, true, 0, true).clear()
           }
         }
         cleanupRow(rowKey = rowKey, family = None, qualifier = None)
-        return
-      }
-
-      for ((requestedFamily, kvs) <- delete.getFamilyMap.asScala) {
-        val rowQualifierMap = row.get(requestedFamily)
-        if (rowQualifierMap != null) {
-          for (kv <- kvs.asScala) {
-            require(kv.isDelete)
-            if (CellUtil.isDeleteFamily(kv)) {
-              // Removes versions of an entire family prior to the specified timestamp:
-              for ((qualifier, series) <- rowQualifierMap.asScala) {
-                series.subMap(kv.getTimestamp, true, 0, true).clear()
-              }
-            } else if (CellUtil.isDeleteColumnOrFamily(kv)) {
-              // Removes versions of a column prior to the specified timestamp:
-              val series = rowQualifierMap.get(kv.getQualifier)
-              if (series != null) {
-                series.subMap(kv.getTimestamp, true, 0, true).clear()
-              }
-            } else {
-              // Removes exactly one cell:
-              val series = rowQualifierMap.get(kv.getQualifier)
-              if (series != null) {
-                val timestamp = {
-                  if (kv.getTimestamp == HConstants.LATEST_TIMESTAMP) {
-                    series.firstKey
-                  } else {
-                    kv.getTimestamp
+      } else {
+        for ((requestedFamily, kvs) <- delete.getFamilyMap.asScala) {
+          val rowQualifierMap = row.get(requestedFamily)
+          if (rowQualifierMap != null) {
+            for (kv <- kvs.asScala) {
+              require(kv.isDelete)
+              if (CellUtil.isDeleteFamily(kv)) {
+                // Removes versions of an entire family prior to the specified timestamp:
+                for ((qualifier, series) <- rowQualifierMap.asScala) {
+                  series.subMap(kv.getTimestamp, true, 0, true).clear()
+                }
+              } else if (CellUtil.isDeleteColumnOrFamily(kv)) {
+                // Removes versions of a column prior to the specified timestamp:
+                val series = rowQualifierMap.get(kv.getQualifier)
+                if (series != null) {
+                  series.subMap(kv.getTimestamp, true, 0, true).clear()
+                }
+              } else {
+                // Removes exactly one cell:
+                val series = rowQualifierMap.get(kv.getQualifier)
+                if ((series != null) && !series.isEmpty) {
+                  val timestamp = {
+                    if (kv.getTimestamp == HConstants.LATEST_TIMESTAMP) {
+                      series.firstKey
+                    } else {
+                      kv.getTimestamp
+                    }
                   }
+                  series.remove(timestamp)
                 }
-                series.remove(timestamp)
               }
             }
           }
+          cleanupRow(rowKey = rowKey, family = Some(requestedFamily), qualifier = None)
         }
-        cleanupRow(rowKey = rowKey, family = Some(requestedFamily), qualifier = None)
       }
     }
   }
 
   override def delete(deletes: JList[Delete]): Unit = {
-    deletes.asScala.foreach(this.delete(_))
+    injectLatency(LatencyModel.Request.Batch)
+    deletes.asScala.foreach(doDelete(_))
   }
 
   override def checkAndDelete(
@@ -473,26 +548,35 @@ class FakeHTable(
       value: Bytes,
       delete: Delete
   ): Boolean = {
-    synchronized {
+    require(Arrays.equals(row, delete.getRow), "Delete row must match the checked row.")
+    injectLatency(LatencyModel.Request.CheckAndMutate)
+    withRowWriteLock(row) {
       if (checkCell(row = row, family = family, qualifier = qualifier, value = value)) {
-        this.delete(delete)
-        return true
+        doDelete(delete)
+        true
       } else {
-        return false
+        false
       }
     }
   }
 
   override def increment(increment: Increment): Result = {
-    synchronized {
-      val nowMS = System.currentTimeMillis
+    injectLatency(LatencyModel.Request.Increment)
+    return doIncrement(increment)
+  }
 
-      val rowKey = increment.getRow
+  /** Applies an increment request, without injecting latency. */
+  private def doIncrement(increment: Increment): Result = {
+    val nowMS = System.currentTimeMillis
+
+    val rowKey = increment.getRow
+    withRowWriteLock(rowKey) {
       val row = rows.asScala
           .getOrElseUpdate(rowKey, new JTreeMap[Bytes, FamilyQualifiers](BytesComparator))
       val familyMap = new JTreeMap[Bytes, NavigableSet[Bytes]](BytesComparator)
 
       for ((family: Array[Byte], qualifierMap: JList[Cell]) <- increment.getFamilyCellMap.asScala) {
+        val familyDesc = getFamilyDesc(family)
         val qualifierSet = familyMap.asScala
             .getOrElseUpdate(family, new JTreeSet[Bytes](BytesComparator))
         val rowQualifierMap = row.asScala
@@ -514,10 +598,11 @@ class FakeHTable(
           val newCounter = currentCounter + amount
           Log.debug("Updating counter from %d to %d".format(currentCounter, newCounter))
           rowTimeSeries.put(nowMS, Bytes.toBytes(newCounter))
+          trimColumn(familyDesc, rowTimeSeries, nowMS)
         }
       }
 
-      return ProcessRow.makeResult(
+      ProcessRow.makeResult(
           table = this,
           rowKey = increment.getRow,
           row = row,
@@ -552,11 +637,17 @@ class FakeHTable(
   }
 
   override def mutateRow(mutations: RowMutations): Unit = {
-    synchronized {
+    injectLatency(LatencyModel.Request.MutateRow)
+    doMutateRow(mutations)
+  }
+
+  /** Applies row mutations atomically, without injecting latency. */
+  private def doMutateRow(mutations: RowMutations): Unit = {
+    withRowWriteLock(mutations.getRow) {
       for (mutation <- mutations.getMutations.asScala) {
         mutation match {
-          case put: Put => this.put(put)
-          case delete: Delete => this.delete(delete)
+          case put: Put => doPut(put)
+          case delete: Delete => doDelete(delete)
           case _ => sys.error("Unexpected row mutation: " + mutation)
         }
       }
@@ -606,6 +697,95 @@ class FakeHTable(
 
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Sets the model of the latency of the requests to this table.
+   *
+   * @param latencyModel Model of the latency of the subsequent requests.
+   */
+  def setLatencyModel(latencyModel: LatencyModel): Unit = {
+    require(latencyModel != null)
+    mLatencyModel = latencyModel
+  }
+
+  /** @return the model of the latency of the requests to this table. */
+  def getLatencyModel(): LatencyModel = {
+    return mLatencyModel
+  }
+
+  /**
+   * Waits for the latency of a request, as reported by the latency model.
+   * Caller <em>must not</em> hold any row lock.
+   *
+   * @param request Type of the request to wait for.
+   * @throws InterruptedIOException if the thread is interrupted while waiting.
+   */
+  private def injectLatency(request: LatencyModel.Request.Value): Unit = {
+    val nanos = mLatencyModel.latencyNanos(request)
+    if (nanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(nanos)
+      } catch {
+        case ie: InterruptedException => {
+          Thread.currentThread.interrupt()
+          throw new InterruptedIOException("Interrupted while injecting %s latency".format(request))
+        }
+      }
+    }
+  }
+
+  /**
+   * Reports the lock of a row.
+   *
+   * Row locks are striped: a lock may protect several rows. The write lock is reentrant, so that
+   * atomic operations (check-and-put, row mutations, etc) may apply puts and deletes.
+   *
+   * @param rowKey Key of the row to report the lock of.
+   * @return the lock of the specified row.
+   */
+  private def rowLock(rowKey: Bytes): ReentrantReadWriteLock = {
+    return rowLocks(Bytes.hashCode(rowKey) & (RowLockStripes - 1))
+  }
+
+  /**
+   * Evaluates an expression while holding the read lock of a row.
+   *
+   * @param rowKey Key of the row to lock.
+   * @param body Expression to evaluate.
+   * @return the value of the expression.
+   */
+  private def withRowReadLock[T](rowKey: Bytes)(body: => T): T = {
+    return withLock(rowLock(rowKey).readLock)(body)
+  }
+
+  /**
+   * Evaluates an expression while holding the write lock of a row.
+   *
+   * @param rowKey Key of the row to lock.
+   * @param body Expression to evaluate.
+   * @return the value of the expression.
+   */
+  private def withRowWriteLock[T](rowKey: Bytes)(body: => T): T = {
+    return withLock(rowLock(rowKey).writeLock)(body)
+  }
+
+  /**
+   * Evaluates an expression while holding a lock.
+   *
+   * @param lock Lock to hold.
+   * @param body Expression to evaluate.
+   * @return the value of the expression.
+   */
+  private def withLock[T](lock: Lock)(body: => T): T = {
+    lock.lock()
+    try {
+      return body
+    } finally {
+      lock.unlock()
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+
   /** @return the regions info for this table. */
   private[fakehtable] def getRegions(): JList[HRegionInfo] = {
     val list = new java.util.ArrayList[HRegionInfo]()
@@ -740,8 +920,8 @@ class FakeHTable(
    * @param out Optional print stream to write to.
    */
   def dump(out: PrintStream = Console.out): Unit = {
-    synchronized {
-      for ((rowKey, familyMap) <- rows.asScalaIterator) {
+    for ((rowKey, familyMap) <- rows.asScalaIterator) {
+      withRowReadLock(rowKey) {
         for ((family, qualifierMap) <- familyMap.asScalaIterator) {
           for ((qualifier, timeSeries) <- qualifierMap.asScalaIterator) {
             for ((timestamp, value) <- timeSeries.asScalaIterator) {
@@ -798,18 +978,21 @@ class FakeHTable(
    */
   private[fakehtable] def getFamilyDesc(family: Bytes): HColumnDescriptor = {
     val desc = getTableDescriptor()
-    val familyDesc = desc.getFamily(family)
-    if (familyDesc != null) {
-      return familyDesc
+    // The descriptor is filled-in while concurrent requests read it:
+    desc.synchronized {
+      val familyDesc = desc.getFamily(family)
+      if (familyDesc != null) {
+        return familyDesc
+      }
+      require(autoFillDesc)
+      val newFamilyDesc = new HColumnDescriptor(family)
+      // Note on default parameters:
+      //  - min versions is 0
+      //  - max versions is 3
+      //  - TTL is forever
+      desc.addFamily(newFamilyDesc)
+      return newFamilyDesc
     }
-    require(autoFillDesc)
-    val newFamilyDesc = new HColumnDescriptor(family)
-    // Note on default parameters:
-    //  - min versions is 0
-    //  - max versions is 3
-    //  - TTL is forever
-    desc.addFamily(newFamilyDesc)
-    return newFamilyDesc
   }
 
   // -----------------------------------------------------------------------------------------------
@@ -827,18 +1010,11 @@ class FakeHTable(
     private val requestedFamilyMap: NavigableMap[Bytes, NavigableSet[Bytes]] =
         getFamilyMapRequest(scan.getFamilyMap)
 
-    /** Key of the row to return on the next call to next(). Null means no more row. */
-    private var key: Bytes = {
-      synchronized {
-        if (rows.isEmpty) {
-          null
-        } else if (scan.getStartRow.isEmpty) {
-          rows.firstKey
-        } else {
-          rows.ceilingKey(scan.getStartRow)
-        }
-      }
-    }
+    /**
+     * Key of the row to return on the next call to next(). Null means no more row.
+     * The empty start row sorts before all row keys.
+     */
+    private var key: Bytes = rows.ceilingKey(scan.getStartRow)
     if (!scan.getStopRow.isEmpty
        && (key == null || BytesComparator.compare(key, scan.getStopRow) >= 0)) {
       key = null
@@ -847,6 +1023,20 @@ class FakeHTable(
     /** HBase row/column filter. */
     val filter = getFilter(scan.getFilter)
 
+    /** Number of rows a region server returns per request, with this scan. */
+    private val caching: Int = {
+      if (scan.getCaching > 0) {
+        scan.getCaching
+      } else {
+        conf.getInt(
+            HConstants.HBASE_CLIENT_SCANNER_CACHING,
+            HConstants.DEFAULT_HBASE_CLIENT_SCANNER_CACHING)
+      }
+    }
+
+    /** Number of rows to return before the next scan request. */
+    private var remainingCachedRows: Int = 0
+
     /** Next result to return. */
     private var nextResult: Result = getNextResult()
 
@@ -862,6 +1052,13 @@ class FakeHTable(
 
     /** @return the next non-empty result. */
     private def getNextResult(): Result = {
+      // Rows are fetched from the region server in batches of `caching` rows:
+      if (remainingCachedRows <= 0) {
+        injectLatency(LatencyModel.Request.Scan)
+        remainingCachedRows = caching
+      }
+      remainingCachedRows -= 1
+
       while (true) {
         getResultForNextRow() match {
           case None => return null
@@ -877,8 +1074,8 @@ class FakeHTable(
     }
 
     /**
-     * @return the next row key, or null if there is no more row. Caller <em>must</em> synchronize
-     * on `FakeHTable.this`.
+     * @return the next row key, or null if there is no more row.
+     *     Rows written after the row returned previously are visible to the scanner.
      */
     private def nextRowKey(): Bytes = {
       if (key == null) { return null }
@@ -894,35 +1091,36 @@ class FakeHTable(
 
     /** @return a Result, potentially empty, for the next row. */
     private def getResultForNextRow(): Option[Result] = {
-      FakeHTable.this.synchronized {
-        filter.reset()
-        if (filter.filterAllRemaining) { return None }
-
-        val rowKey = nextRowKey()
-        if (rowKey == null) { return None }
-        if (filter.filterRowKey(rowKey, 0, rowKey.size)) {
-          // Row is filtered out based on its key, return an empty Result:
-          return Some(new Result())
-        }
+      filter.reset()
+      if (filter.filterAllRemaining) { return None }
 
+      val rowKey = nextRowKey()
+      if (rowKey == null) { return None }
+      if (filter.filterRowKey(rowKey, 0, rowKey.size)) {
+        // Row is filtered out based on its key, return an empty Result:
+        return Some(new Result())
+      }
+
+      // Only the requested cells of the row are read, while holding the row read lock:
+      withRowReadLock(rowKey) {
         /** Map: family -> qualifier -> time stamp -> cell value */
         val row = rows.get(rowKey)
-        require(row != null)
-
-        val result = ProcessRow.makeResult(
-          table = FakeHTable.this,
-          rowKey = rowKey,
-          row = row,
-          familyMap = requestedFamilyMap,
-          timeRange = scan.getTimeRange,
-          maxVersions = scan.getMaxVersions,
-          filter = filter
-        )
-        if (filter.filterRow()) {
-          // Filter finally decided to exclude the row, return an empty Result:
-          return Some(new Result())
+        if (row == null) {
+          // Row was deleted since its key was read, return an empty Result:
+          Some(new Result())
+        } else {
+          val result = ProcessRow.makeResult(
+            table = FakeHTable.this,
+            rowKey = rowKey,
+            row = row,
+            familyMap = requestedFamilyMap,
+            timeRange = scan.getTimeRange,
+            maxVersions = scan.getMaxVersions,
+            filter = filter
+          )
+          // Filter may finally decide to exclude the row, return an empty Result:
+          if (filter.filterRow()) Some(new Result()) else Some(result)
         }
-        return Some(result)
       }
     }
 
@@ -989,11 +1187,10 @@ class FakeHTable(
   }
 
   override def exists(gets: JList[Get]): Array[JBoolean] = {
+    injectLatency(LatencyModel.Request.Batch)
     val exists: Array[JBoolean] = new Array[JBoolean](gets.size)
-    synchronized {
-      for (index <- 0 until gets.size) {
-        exists(index) = this.exists(gets.get(index))
-      }
+    for (index <- 0 until gets.size) {
+      exists(index) = !doGet(gets.get(index)).isEmpty()
     }
     exists
   }
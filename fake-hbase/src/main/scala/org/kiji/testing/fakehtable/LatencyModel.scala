@@ -0,0 +1,95 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.testing.fakehtable
+
+import java.util.concurrent.ThreadLocalRandom
+
+/**
+ * Model of the latency of the requests served by a region server.
+ *
+ * A FakeHTable waits for the latency reported by its model before serving each request, so that
+ * it can stand in for a region server in throughput benchmarks. Latencies are injected outside of
+ * any lock: concurrent requests wait concurrently, as they would against a real cluster.
+ *
+ * Implementations must be thread-safe.
+ */
+trait LatencyModel {
+  /**
+   * Reports the latency of a request.
+   *
+   * @param request Type of the request.
+   * @return the latency of the request, in nanoseconds. Zero or negative means no latency.
+   */
+  def latencyNanos(request: LatencyModel.Request.Value): Long
+}
+
+object LatencyModel {
+  /**
+   * Types of the requests served by a region server.
+   *
+   * A Batch request stands for a list of gets, puts or deletes sent at once.
+   * A Scan request stands for the fetch of one batch of rows by a scanner (see Scan.setCaching()).
+   */
+  object Request extends Enumeration {
+    val Get, Put, Delete, Append, Increment, CheckAndMutate, MutateRow, Batch, Scan = Value
+  }
+
+  /** Model with no latency. This is the default model of a FakeHTable. */
+  object NoLatency extends LatencyModel {
+    override def latencyNanos(request: Request.Value): Long = {
+      return 0
+    }
+  }
+
+  /**
+   * Model with a fixed latency for all requests.
+   *
+   * @param nanos Latency of all requests, in nanoseconds.
+   */
+  class FixedLatency(
+      val nanos: Long
+  ) extends LatencyModel {
+    require(nanos >= 0)
+
+    override def latencyNanos(request: Request.Value): Long = {
+      return nanos
+    }
+  }
+
+  /**
+   * Model with a latency drawn uniformly at random for each request.
+   *
+   * @param minNanos Minimum latency, in nanoseconds.
+   * @param maxNanos Maximum latency, in nanoseconds.
+   */
+  class UniformLatency(
+      val minNanos: Long,
+      val maxNanos: Long
+  ) extends LatencyModel {
+    require((minNanos >= 0) && (minNanos <= maxNanos))
+
+    override def latencyNanos(request: Request.Value): Long = {
+      if (minNanos == maxNanos) {
+        return minNanos
+      }
+      return minNanos + ThreadLocalRandom.current.nextLong(maxNanos - minNanos + 1)
+    }
+  }
+}
@@ -34,7 +34,6 @@ import org.apache.hadoop.hbase.KeyValue
 import org.apache.hadoop.hbase.client.Result
 import org.apache.hadoop.hbase.filter.Filter
 import org.apache.hadoop.hbase.io.TimeRange
-import org.kiji.testing.fakehtable.JNavigableMapWithAsScalaIterator.javaNavigableMapAsScalaIterator
 import org.slf4j.LoggerFactory
 
 /**
@@ -109,26 +108,9 @@ object ProcessRow extends FakeTypes {
         FamilyLoop.continue
       }
 
-      // Apply table parameter (TTL, max/min versions):
-      {
-        val familyDesc: HColumnDescriptor = table.getFamilyDesc(family)
-
-        val maxVersions = familyDesc.getMaxVersions
-        val minVersions = familyDesc.getMinVersions
-        val minTimestamp = nowMS - (familyDesc.getTimeToLive * 1000L)
-
-        for ((qualifier, timeSeries) <- rowQMap.asScalaIterator) {
-          while (timeSeries.size > maxVersions) {
-            timeSeries.remove(timeSeries.lastKey)
-          }
-          if (familyDesc.getTimeToLive != HConstants.FOREVER) {
-            while ((timeSeries.size > minVersions)
-                && (timeSeries.lastKey < minTimestamp)) {
-              timeSeries.remove(timeSeries.lastKey)
-            }
-          }
-        }
-      }
+      // Table parameters (TTL, max/min versions) hide the versions a column no longer retains.
+      // Writes remove these versions, but versions may expire between writes:
+      val familyDesc: HColumnDescriptor = table.getFamilyDesc(family)
 
       /** Ordered set of qualifiers to iterate through. */
       val qualifiers: NavigableSet[Bytes] = {
@@ -148,8 +130,16 @@ object ProcessRow extends FakeTypes {
           QualifierLoop.continue
         }
 
+        /** Oldest timestamp to return, taking the versions retained by the family into account. */
+        val minTimestamp: Long =
+            math.max(timeRange.getMin, retentionBound(familyDesc, series, nowMS) + 1)
+        if (minTimestamp > timeRange.getMax) {
+          qualifier = qualifiers.higher(qualifier)
+          QualifierLoop.continue
+        }
+
         /** Map: timestamp -> cell value */
-        val versionMap = series.subMap(timeRange.getMax, false, timeRange.getMin, true)
+        val versionMap = series.subMap(timeRange.getMax, false, minTimestamp, true)
 
         /** Ordered set of timestamps to iterate through. */
         val timestamps: NavigableSet[JLong] = versionMap.navigableKeySet
@@ -242,4 +232,58 @@ object ProcessRow extends FakeTypes {
     return Result.create(cells)
   }
 
+  /**
+   * Reports which versions of a column are retained by its family.
+   *
+   * A family retains at most max-versions versions of a column, and drops the versions older
+   * than its TTL, except for the min-versions most recent ones.
+   * This only walks the first max-versions or min-versions versions of the column, and does not
+   * modify it, so that readers may call it concurrently.
+   *
+   * @param familyDesc is the descriptor of the column family.
+   * @param series is the time series of the column.
+   * @param nowMS is the current time, in milliseconds, to enforce TTL.
+   * @return the most recent timestamp of the versions that are not retained.
+   *     All the versions with a strictly greater timestamp are retained.
+   *     Long.MinValue means all versions are retained.
+   */
+  def retentionBound(familyDesc: HColumnDescriptor, series: ColumnSeries, nowMS: Long): Long = {
+    var bound: Long = Long.MinValue
+
+    // Time series are ordered by decreasing timestamps: the oldest versions are dropped first.
+    if (series.size > familyDesc.getMaxVersions) {
+      bound = nthTimestamp(series, familyDesc.getMaxVersions)
+    }
+
+    if (familyDesc.getTimeToLive != HConstants.FOREVER) {
+      val minTimestamp = nowMS - (familyDesc.getTimeToLive * 1000L)
+      // Most recent version subject to the TTL, if any:
+      val oldest = nthTimestamp(series, familyDesc.getMinVersions)
+      if ((oldest != null) && (oldest > bound)) {
+        bound = if (oldest < minTimestamp) oldest.longValue else math.max(bound, minTimestamp - 1)
+      }
+    }
+    return bound
+  }
+
+  /**
+   * Reports the timestamp of a version of a column.
+   *
+   * @param series is the time series of the column.
+   * @param index is the index of the version, 0 being the most recent version.
+   * @return the timestamp of the specified version, or null if the column has fewer versions.
+   */
+  private def nthTimestamp(series: ColumnSeries, index: Int): JLong = {
+    val it = series.navigableKeySet.iterator
+    var remaining = index
+    while (it.hasNext) {
+      val timestamp = it.next()
+      if (remaining == 0) {
+        return timestamp
+      }
+      remaining -= 1
+    }
+    return null
+  }
+
 }
\ No newline at end of file
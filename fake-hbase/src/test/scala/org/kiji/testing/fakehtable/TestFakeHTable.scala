@@ -20,7 +20,11 @@
 package org.kiji.testing.fakehtable
 
 import java.util.Arrays
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import scala.collection.JavaConverters.asScalaIteratorConverter
+import scala.collection.JavaConverters.seqAsJavaListConverter
 import scala.collection.JavaConverters.asScalaSetConverter
 import scala.collection.JavaConverters.mapAsScalaMapConverter
 import org.apache.hadoop.hbase.HBaseConfiguration
@@ -849,8 +853,112 @@ class TestFakeHTable {
     Assert.assertEquals("value", Bytes.toString(result.getValue("family", "qualifier")))
   }
 
+  /** Concurrent increments of the same counters are atomic. */
+  @Test
+  def testConcurrentIncrements(): Unit = {
+    val table = new FakeHTable(name = "table", desc = defaultTableDesc)
+    val nthreads = 8
+    val nincrements = 500
+    val nrows = 4
+
+    runConcurrently(nthreads) { thread =>
+      for (index <- 0 until nincrements) {
+        table.incrementColumnValue("row%d".format(index % nrows), "family", "counter", 1L)
+      }
+    }
+
+    for (row <- 0 until nrows) {
+      val result = table.get(new Get("row%d".format(row)).addColumn("family", "counter"))
+      Assert.assertEquals(
+          nthreads * nincrements / nrows,
+          Bytes.toLong(result.getValue("family", "counter")))
+    }
+  }
+
+  /** Scanners run while rows are written and deleted concurrently. */
+  @Test
+  def testScanWhileWriting(): Unit = {
+    val table = new FakeHTable(name = "table", desc = defaultTableDesc)
+    val nthreads = 4
+    val nrows = 200
+
+    runConcurrently(nthreads) { thread =>
+      for (index <- 0 until nrows) {
+        val rowKey = "row-%d-%03d".format(thread, index)
+        table.put(new Put(rowKey).add("family", "q", 1L, "value"))
+        table.put(new Put(rowKey + "-deleted").add("family", "q", 1L, "value"))
+        table.delete(new Delete(rowKey + "-deleted"))
+        if (index % 50 == 0) {
+          // Scans see the rows written or deleted concurrently either entirely or not at all:
+          for (result <- table.getScanner("family").iterator.asScala) {
+            Assert.assertEquals("value", bytesToString(result.getValue("family", "q")))
+          }
+        }
+      }
+    }
+
+    val rowKeys = table.getScanner("family").iterator.asScala
+        .map { result => bytesToString(result.getRow) }
+        .toList
+    Assert.assertEquals(nthreads * nrows, rowKeys.size)
+    Assert.assertTrue(rowKeys.forall { rowKey => !rowKey.endsWith("-deleted") })
+  }
+
+  /** The latency model applies once per request, batches included. */
+  @Test
+  def testLatencyInjection(): Unit = {
+    val latencyMS = 50
+    val table = new FakeHTable(
+        name = "table",
+        desc = defaultTableDesc,
+        latencyModel = new LatencyModel.FixedLatency(TimeUnit.MILLISECONDS.toNanos(latencyMS))
+    )
+
+    {
+      val startNS = System.nanoTime
+      val puts = (0 until 10).map { index =>
+        new Put("row%d".format(index)).add("family", "q", "v")
+      }
+      table.put(puts.asJava)
+      val elapsedMS = TimeUnit.NANOSECONDS.toMillis(System.nanoTime - startNS)
+      Assert.assertTrue(elapsedMS >= latencyMS)
+      Assert.assertTrue(elapsedMS < 10 * latencyMS)
+    }
+
+    {
+      val startNS = System.nanoTime
+      Assert.assertFalse(table.get(new Get("row0")).isEmpty)
+      Assert.assertTrue(
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime - startNS) >= latencyMS)
+    }
+
+    table.setLatencyModel(LatencyModel.NoLatency)
+    Assert.assertEquals(10, table.getScanner("family").iterator.asScala.size)
+  }
+
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Runs a task concurrently in several threads, and waits for all the threads to complete.
+   *
+   * @param nthreads Number of threads to run the task in.
+   * @param task Task to run, given the index of the thread it runs in.
+   */
+  private def runConcurrently(nthreads: Int)(task: Int => Unit): Unit = {
+    val executor = Executors.newFixedThreadPool(nthreads)
+    try {
+      val futures = (0 until nthreads).map { thread =>
+        executor.submit(new Callable[Unit] {
+          override def call(): Unit = task(thread)
+        })
+      }
+      // Rethrows the failures of the threads:
+      futures.foreach { future => future.get() }
+    } finally {
+      executor.shutdown()
+    }
+  }
+
   /**
    * Returns the smallest row key strictly greater than the specified row.
    *
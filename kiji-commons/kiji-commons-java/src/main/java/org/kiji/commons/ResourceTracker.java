@@ -29,7 +29,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
@@ -73,11 +74,30 @@ public final class ResourceTracker {
    */
   public static final TrackingLevel TRACKING_LEVEL =
       TrackingLevel.valueOf(System.getProperty(TRACKING_LEVEL_PROPERTY, "COUNTER"));
+
+  /**
+   * The system property to set to configure the stack trace sampling rate of this tracker, when
+   * using {@code REFERENCES} level tracking.
+   */
+  public static final String STACK_TRACE_SAMPLING_PROPERTY =
+      "org.kiji.commons.ResourceTracker.stack_trace_sampling";
+
+  /**
+   * The configured stack trace sampling rate of this tracker: with {@code REFERENCES} level
+   * tracking, the stack trace of one in this many resource registrations is captured. This value is
+   * set by the system property specified by STACK_TRACE_SAMPLING_PROPERTY, and defaults to 1, which
+   * captures the stack trace of every registration.
+   */
+  public static final int STACK_TRACE_SAMPLING =
+      Math.max(1, Integer.getInteger(STACK_TRACE_SAMPLING_PROPERTY, 1));
   private static final Logger LOG = LoggerFactory.getLogger(ResourceTracker.class);
   private static final Logger CLEANUP_LOG =
       LoggerFactory.getLogger("cleanup." + ResourceTracker.class.getName());
   private static final ResourceTracker SINGLETON = new ResourceTracker();
 
+  /** Maximum number of lock or counter stripes. */
+  private static final int MAX_STRIPES = 256;
+
   /**
    * Get the singleton ResourceTracker.
    *
@@ -110,7 +130,7 @@ public final class ResourceTracker {
    * </p>
    *
    * <p>
-   *   {@code COUNTER} level tracking imposes minimal performance overhead: a global atomic counter
+   *   {@code COUNTER} level tracking imposes minimal performance overhead: a striped atomic counter
    *   must be incremented or decremented during each resource registration or deregistration.
    *   Additionally, a JVM shutdown hook is registered when {@code COUNTER} level tracking is used.
    * </p>
@@ -125,11 +145,15 @@ public final class ResourceTracker {
    *
    * <p>
    *   {@code REFERENCES} level tracking imposes some performance overhead. Registering and
-   *   deregistering resources is globally synchronized.  The message and associated stack trace for
-   *   currently registered resources use memory.  Weak references are held to currently registered
-   *   resources, which may affect garbage collector performance, especially for leaked resources.
-   *   Additionally, a JVM shutdown hook is registered when {@code REFERENCES} level tracking is
-   *   used.
+   *   deregistering resources is synchronized on one of several lock stripes, chosen by the
+   *   identity hash code of the resource.  Capturing stack traces is the most expensive part of
+   *   a registration; stack traces may be sampled by setting the
+   *   {@value #STACK_TRACE_SAMPLING_PROPERTY} system property, in which case leaked resources whose
+   *   stack trace was not sampled are logged with their message only.  The message and associated
+   *   stack trace for currently registered resources use memory.  Weak references are held to
+   *   currently registered resources, which may affect garbage collector performance, especially
+   *   for leaked resources.  Additionally, a JVM shutdown hook is registered when
+   *   {@code REFERENCES} level tracking is used.
    * </p>
    */
   public enum TrackingLevel {
@@ -137,7 +161,7 @@ public final class ResourceTracker {
   }
 
   /** Count of tracked resources. */
-  private final AtomicInteger mCounter;
+  private final StripedCounter mCounter;
 
   /** Tracks individual resources. */
   private final ReferenceTracker mReferenceTracker;
@@ -152,14 +176,14 @@ public final class ResourceTracker {
       }
       case COUNTER: {
         mReferenceTracker = null;
-        mCounter = new AtomicInteger(0);
+        mCounter = new StripedCounter();
         LOG.debug("Registering hook to log number of unclosed resources at shutdown.");
         Runtime.getRuntime().addShutdownHook(new ShutdownHook());
         break;
       }
       case REFERENCES: {
         mReferenceTracker = new ReferenceTracker();
-        mCounter = new AtomicInteger(0);
+        mCounter = new StripedCounter();
         LOG.debug("Registering hook to log details of unclosed resources at shutdown.");
         Runtime.getRuntime().addShutdownHook(new ShutdownHook());
         break;
@@ -209,7 +233,7 @@ public final class ResourceTracker {
           String.format("Unknown ResourceTracker.TrackingLevel: %s", TRACKING_LEVEL));
     }
 
-    final int count = mCounter.get();
+    final long count = mCounter.sum();
     if (0 != count) {
       CLEANUP_LOG.error(message, count);
       LOG.error(message, count);
@@ -234,15 +258,14 @@ public final class ResourceTracker {
     switch(TRACKING_LEVEL) {
       case NONE: break;
       case COUNTER: {
-        mCounter.incrementAndGet();
+        mCounter.increment();
         break;
       }
       case REFERENCES: {
-        // Skip two stack frames. One for the exception, one for this method.
-        final String stackTrace =
-            Joiner.on('\n').join(Iterables.skip(Arrays.asList(new Exception().getStackTrace()), 2));
-        mCounter.incrementAndGet();
-        mReferenceTracker.registerResource(resource, message, stackTrace);
+        // The stack trace is only formatted if the resource leaks.
+        final Exception registrationSite = isStackTraceSampled() ? new Exception() : null;
+        mCounter.increment();
+        mReferenceTracker.registerResource(resource, message, registrationSite);
         break;
       }
       default: throw new IllegalArgumentException(
@@ -266,16 +289,14 @@ public final class ResourceTracker {
     switch(TRACKING_LEVEL) {
       case NONE: break;
       case COUNTER: {
-        mCounter.incrementAndGet();
+        mCounter.increment();
         break;
       }
       case REFERENCES: {
-        // Skip two stack frames. One for the exception, one for this method.
-        final String stackTrace =
-            Joiner.on('\n').join(Iterables.skip(Arrays.asList(new Exception().getStackTrace()), 2));
-
-        mCounter.incrementAndGet();
-        mReferenceTracker.registerResource(resource, resource.toString(), stackTrace);
+        // The stack trace is only formatted if the resource leaks.
+        final Exception registrationSite = isStackTraceSampled() ? new Exception() : null;
+        mCounter.increment();
+        mReferenceTracker.registerResource(resource, resource.toString(), registrationSite);
         break;
       }
       default: throw new IllegalStateException(
@@ -297,11 +318,11 @@ public final class ResourceTracker {
     switch(TRACKING_LEVEL) {
       case NONE: break;
       case COUNTER: {
-        mCounter.decrementAndGet();
+        mCounter.decrement();
         break;
       }
       case REFERENCES: {
-        mCounter.decrementAndGet();
+        mCounter.decrement();
         mReferenceTracker.unregisterResource(resource);
         break;
       }
@@ -311,6 +332,16 @@ public final class ResourceTracker {
   }
 
 
+  /**
+   * Decides whether to capture the stack trace of a resource registration.
+   *
+   * @return whether to capture the stack trace of the current registration.
+   */
+  private static boolean isStackTraceSampled() {
+    return (STACK_TRACE_SAMPLING == 1)
+        || (ThreadLocalRandom.current().nextInt(STACK_TRACE_SAMPLING) == 0);
+  }
+
   /**
    * Returns whether the resource is registered with this resource tracker. This is useful for
    * testing interactions with the debug resource tracker.
@@ -330,10 +361,92 @@ public final class ResourceTracker {
     }
   }
 
+  /**
+   * Counter striped across several cells, so that threads registering and unregistering resources
+   * concurrently do not contend on a single atomic value.
+   */
+  private static final class StripedCounter {
+    /** Number of longs between two cells, so that cells lie on distinct cache lines. */
+    private static final int CELL_STRIDE = 8;
+
+    /** Cells of the counter, at every {@link #CELL_STRIDE} index. */
+    private final AtomicLongArray mCells;
+
+    /** Mask of the cell index of a thread. */
+    private final int mMask;
+
+    /** Create a {@code StripedCounter} with a value of zero. */
+    private StripedCounter() {
+      final int cells = getStripeCount();
+      mCells = new AtomicLongArray(cells * CELL_STRIDE);
+      mMask = cells - 1;
+    }
+
+    /** Increments the counter. */
+    public void increment() {
+      mCells.incrementAndGet(getCellIndex());
+    }
+
+    /** Decrements the counter. */
+    public void decrement() {
+      mCells.decrementAndGet(getCellIndex());
+    }
+
+    /**
+     * Returns the value of the counter. The value is not an atomic snapshot if the counter is
+     * updated concurrently.
+     *
+     * @return the value of the counter.
+     */
+    public long sum() {
+      long sum = 0;
+      for (int i = 0; i < mCells.length(); i += CELL_STRIDE) {
+        sum += mCells.get(i);
+      }
+      return sum;
+    }
+
+    /**
+     * Returns the index of the cell updated by the current thread.
+     *
+     * @return the index of the cell updated by the current thread.
+     */
+    private int getCellIndex() {
+      return (spread((int) Thread.currentThread().getId()) & mMask) * CELL_STRIDE;
+    }
+  }
+
+  /**
+   * Returns the number of lock or counter stripes to use: a power of two of at least four stripes
+   * per available processor.
+   *
+   * @return the number of stripes to use.
+   */
+  private static int getStripeCount() {
+    final int minStripes = Math.min(4 * Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+    return Integer.highestOneBit(Math.max(minStripes - 1, 1)) << 1;
+  }
+
+  /**
+   * Spreads the bits of a hash code, so that its low bits may be used to choose a stripe.
+   *
+   * @param hash to spread.
+   * @return the spread hash.
+   */
+  private static int spread(final int hash) {
+    final int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
   /**
    * Tracks registered resources. Uses the phantom reference mechanism of the JVM to recognize when
    * registered resources are no longer reachable, and logs them. Will log any registered resources
    * when closed.
+   *
+   * <p>
+   *   Registered resources are partitioned in stripes by identity hash code. Each stripe is
+   *   guarded by its own lock, so that threads registering distinct resources rarely contend.
+   * </p>
    */
   private static final class ReferenceTracker implements Closeable {
     private final ExecutorService mExecutorService =
@@ -345,32 +458,53 @@ public final class ResourceTracker {
 
     /** Create a {@code ReferenceTracker} instance. */
     private ReferenceTracker() {
+      final int stripes = getStripeCount();
+      mStripes = new ReferenceStripe[stripes];
+      for (int i = 0; i < stripes; i++) {
+        mStripes[i] = new ReferenceStripe();
+      }
+      mStripeMask = stripes - 1;
       mExecutorService.execute(new ReferenceLogger());
     }
 
     /** Ref queue for resource references. */
     private final ReferenceQueue<Object> mReferenceQueue = new ReferenceQueue<Object>();
 
-    /** Map of identity hash of registered resource to reference. Access must be synchronized. */
-    private final ListMultimap<Integer, ResourceReference> mReferences = ArrayListMultimap.create();
+    /** Stripes of registered resources, by identity hash of the resources. */
+    private final ReferenceStripe[] mStripes;
+
+    /** Mask of the stripe index of an identity hash. */
+    private final int mStripeMask;
+
+    /**
+     * Returns the stripe holding the references to resources with an identity hash.
+     *
+     * @param identityHash of the resources.
+     * @return the stripe holding the references to resources with the identity hash.
+     */
+    private ReferenceStripe getStripe(final int identityHash) {
+      return mStripes[spread(identityHash) & mStripeMask];
+    }
 
     /**
      * Register a resource to be tracked.
      *
      * @param resource to be registered to this tracker.
      * @param message associated with the resource.
-     * @param stackTrace associated with the resource.
+     * @param registrationSite exception capturing the stack trace of the registration, or null if
+     *    the stack trace was not sampled.
      */
     public void registerResource(
         final Object resource,
         final String message,
-        final String stackTrace
+        final Exception registrationSite
     ) {
       LOG.debug("Registering resource {}.", resource);
       final ResourceReference ref =
-          new ResourceReference(mReferenceQueue, resource, message, stackTrace);
-      synchronized (mReferences) {
-        mReferences.put(ref.getIdentityHash(), ref);
+          new ResourceReference(mReferenceQueue, resource, message, registrationSite);
+      final ReferenceStripe stripe = getStripe(ref.getIdentityHash());
+      synchronized (stripe) {
+        stripe.mReferences.put(ref.getIdentityHash(), ref);
       }
     }
 
@@ -381,8 +515,10 @@ public final class ResourceTracker {
      */
     public void unregisterResource(final Object resource) {
       LOG.debug("Unregistering resource {}.", resource);
-      synchronized (mReferences) {
-        final List<ResourceReference> refs = mReferences.get(System.identityHashCode(resource));
+      final int identityHash = System.identityHashCode(resource);
+      final ReferenceStripe stripe = getStripe(identityHash);
+      synchronized (stripe) {
+        final List<ResourceReference> refs = stripe.mReferences.get(identityHash);
         for (int i = 0; i < refs.size(); i++) {
           final ResourceReference ref = refs.get(i);
           // The referent is guaranteed to be present, because the argument is a strong reference
@@ -404,8 +540,10 @@ public final class ResourceTracker {
      * @return Whether the provided resource is registered.
      */
     public boolean resourceIsRegistered(final Object resource) {
-      synchronized (mReferences) {
-        final List<ResourceReference> refs = mReferences.get(System.identityHashCode(resource));
+      final int identityHash = System.identityHashCode(resource);
+      final ReferenceStripe stripe = getStripe(identityHash);
+      synchronized (stripe) {
+        final List<ResourceReference> refs = stripe.mReferences.get(identityHash);
         for (final ResourceReference ref : refs) {
           // The referent is guaranteed to be present, because the argument is a strong reference
           if (resource == ref.get()) {
@@ -422,12 +560,14 @@ public final class ResourceTracker {
     @Override
     public void close() {
       mExecutorService.shutdownNow();
-      synchronized (mReferences) {
-        for (ResourceReference reference : mReferences.values()) {
-          logReference(reference);
-          reference.clear(); // Prevent the reference from being enqueued
+      for (ReferenceStripe stripe : mStripes) {
+        synchronized (stripe) {
+          for (ResourceReference reference : stripe.mReferences.values()) {
+            logReference(reference);
+            reference.clear(); // Prevent the reference from being enqueued
+          }
+          stripe.mReferences.clear();
         }
-        mReferences.clear();
       }
     }
 
@@ -442,6 +582,13 @@ public final class ResourceTracker {
           reference.getStackTrace());
     }
 
+    /** Registered resources of a stripe. Access must be synchronized on the stripe. */
+    private static final class ReferenceStripe {
+      /** Map of identity hash of registered resource to reference. */
+      private final ListMultimap<Integer, ResourceReference> mReferences =
+          ArrayListMultimap.create();
+    }
+
     /** Task which waits for {@code ResourceReference} instances to be enqueued, and logs them. */
     private class ReferenceLogger implements Runnable {
       /** {@inheritDoc} */
@@ -450,9 +597,10 @@ public final class ResourceTracker {
         try {
           while (true) {
             ResourceReference ref = (ResourceReference) mReferenceQueue.remove();
-            synchronized (mReferences) {
+            final ReferenceStripe stripe = getStripe(ref.getIdentityHash());
+            synchronized (stripe) {
               // Remove multiple times in case of multiple registrations
-              while (mReferences.remove(ref.getIdentityHash(), ref)) {
+              while (stripe.mReferences.remove(ref.getIdentityHash(), ref)) {
                 logReference(ref);
               }
             }
@@ -481,29 +629,30 @@ public final class ResourceTracker {
       /** Message associated with the resource. */
       private final String mMessage;
 
-      /** Stack trace associated with the resource. */
-      private final String mStackTrace;
+      /** Exception capturing the stack trace of the registration, or null if not sampled. */
+      private final Exception mRegistrationSite;
 
       /**
        * Create a {@code ResourceReference} with the provided queue, resource, message, and
-       * stack trace.
+       * registration site.
        *
        * @param refQueue to which this reference will be enqueued when the JVM determines the
        *    resource is no longer reachable.
        * @param resource to reference.
        * @param message associated with the resource.
-       * @param stackTrace associated with the resource.
+       * @param registrationSite exception capturing the stack trace of the registration, or null
+       *    if the stack trace was not sampled.
        */
       public ResourceReference(
           final ReferenceQueue<Object> refQueue,
           final Object resource,
           final String message,
-          final String stackTrace
+          final Exception registrationSite
       ) {
         super(resource, refQueue);
         mIdentityHash = System.identityHashCode(resource);
         mMessage = message;
-        mStackTrace = stackTrace;
+        mRegistrationSite = registrationSite;
       }
 
       /**
@@ -524,7 +673,14 @@ public final class ResourceTracker {
        * @return the stack trace associated with the resource.
        */
       public String getStackTrace() {
-        return mStackTrace;
+        if (null == mRegistrationSite) {
+          return String.format(
+              "Stack trace not sampled. Run with system property %s=1 to capture all stack traces.",
+              STACK_TRACE_SAMPLING_PROPERTY);
+        }
+        // Skip two stack frames. One for the exception, one for the registration method.
+        return Joiner.on('\n')
+            .join(Iterables.skip(Arrays.asList(mRegistrationSite.getStackTrace()), 2));
       }
 
       /** {@inheritDoc} */
@@ -534,7 +690,7 @@ public final class ResourceTracker {
             .toStringHelper(this.getClass())
             .add("identity hash", mIdentityHash)
             .add("message", mMessage)
-            .add("stack trace", mStackTrace)
+            .add("stack trace", getStackTrace())
             .toString();
       }
     }
@@ -0,0 +1,118 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.commons;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput of resource registrations and unregistrations from many threads.
+ */
+public class TestResourceTrackerPerformance {
+  private static final Logger LOG = LoggerFactory.getLogger(TestResourceTrackerPerformance.class);
+
+  /** Number of threads concurrently opening and closing resources. */
+  private static final int THREADS = 64;
+
+  /** Number of resources each thread opens and closes. */
+  private static final int RESOURCES_PER_THREAD = 2000;
+
+  /**
+   * Opens and closes resources from a thread, as a service opening a reader per request would.
+   *
+   * @param start latch on which to wait before opening the first resource.
+   * @return the resources opened and closed by this thread.
+   */
+  private static Callable<List<Object>> openAndCloseResources(final CountDownLatch start) {
+    return new Callable<List<Object>>() {
+      @Override
+      public List<Object> call() throws Exception {
+        final ResourceTracker tracker = ResourceTracker.get();
+        // Keep the resources reachable, so that none of them is reported as leaked.
+        final List<Object> resources = Lists.newArrayListWithCapacity(RESOURCES_PER_THREAD);
+        start.await();
+        for (int i = 0; i < RESOURCES_PER_THREAD; i++) {
+          final Object resource = new Object();
+          resources.add(resource);
+          tracker.registerResource(resource, "resource");
+          tracker.unregisterResource(resource);
+        }
+        return resources;
+      }
+    };
+  }
+
+  /**
+   * Runs one round of concurrent registrations and unregistrations.
+   *
+   * @param executor on which to run the threads opening and closing resources.
+   * @return the elapsed time of the round, in nanoseconds.
+   * @throws Exception on error.
+   */
+  private static long runRound(final ExecutorService executor) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Future<List<Object>>> futures = Lists.newArrayList();
+    for (int i = 0; i < THREADS; i++) {
+      futures.add(executor.submit(openAndCloseResources(start)));
+    }
+    final long startTime = System.nanoTime();
+    start.countDown();
+    final List<Object> resources = Lists.newArrayList();
+    for (Future<List<Object>> future : futures) {
+      resources.addAll(future.get());
+    }
+    final long elapsed = System.nanoTime() - startTime;
+
+    if (ResourceTracker.TRACKING_LEVEL == ResourceTracker.TrackingLevel.REFERENCES) {
+      for (Object resource : resources) {
+        Assert.assertFalse(ResourceTracker.get().isResourceRegistered(resource));
+      }
+    }
+    return elapsed;
+  }
+
+  @Test
+  public void testConcurrentOpenClose() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      // Warm up.
+      runRound(executor);
+
+      final long elapsed = runRound(executor);
+      final long operations = 2L * THREADS * RESOURCES_PER_THREAD;
+      LOG.info("{} registrations and unregistrations from {} threads in {} milliseconds: "
+          + "{} operations per second with tracking level {}.",
+          operations, THREADS, elapsed / 1000000, operations * 1000000000L / Math.max(1, elapsed),
+          ResourceTracker.TRACKING_LEVEL);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -51,6 +51,7 @@ import org.kiji.schema.KijiBufferedWriter
 import org.kiji.schema.KijiDataRequest
 import org.kiji.schema.KijiDataRequestBuilder
 import org.kiji.schema.KijiRowData
+import org.kiji.schema.KijiTable
 import org.kiji.schema.KijiURI
 
 
@@ -144,6 +145,31 @@ object BaseKijiScheme {
   private[express] val CounterGroupName = "kiji-express"
   /** Counter name for the number of rows successfully read. */
   private[express] val CounterSuccess = "ROWS_SUCCESSFULLY_READ"
+  /** Counter name for the number of cells written by a sink with a configured buffer. */
+  private[express] val CounterSinkCells = "SINK_CELLS_WRITTEN"
+  /** Counter name for the estimated size of the cells written by a sink with a buffer. */
+  private[express] val CounterSinkBytes = "SINK_ESTIMATED_BYTES_WRITTEN"
+  /** Counter name for the number of flushes of a sink with a configured buffer. */
+  private[express] val CounterSinkFlushes = "SINK_FLUSHES"
+
+  /**
+   * Configuration key of the estimated size in bytes of the writes a sink buffers before flushing.
+   * When neither this key nor [[SinkAsyncFlushKey]] is set, sinks let the Kiji buffered writer
+   * decide when to flush.
+   */
+  val SinkBufferSizeKey = "kiji.express.sink.buffer.size"
+  /** Configuration key of whether sinks flush their writes from a background thread. */
+  val SinkAsyncFlushKey = "kiji.express.sink.async.flush"
+  /** Default estimated size in bytes of the writes a sink buffers before flushing. */
+  private[express] val DefaultSinkBufferSize: Long = 2L * 1024L * 1024L
+
+  /**
+   * Configuration key of whether sources convert rows to tuples by batches, column by column,
+   * when they only read the most recent version of unpaged qualified columns.
+   */
+  val SourceColumnarKey = "kiji.express.source.columnar"
+  /** Configuration key of the number of rows of the batches of columnar sources. */
+  val SourceColumnarBatchSizeKey = "kiji.express.source.columnar.batch.size"
 
   /**
    * Builds a data request out of the timerange and list of column requests.
@@ -227,6 +253,28 @@ object BaseKijiScheme {
   }
 
 
+  /**
+   * Opens a buffered writer for a sink, as configured by [[SinkBufferSizeKey]] and
+   * [[SinkAsyncFlushKey]].
+   *
+   * @param table to write to.
+   * @param flow is the current Cascading flow being run.
+   * @return a buffered writer for the table.
+   */
+  private[express] def openSinkWriter(
+      table: KijiTable,
+      flow: FlowProcess[JobConf]
+  ): KijiBufferedWriter = {
+    val writer = table.getWriterFactory.openBufferedWriter()
+    val bufferSize = Option(flow.getStringProperty(SinkBufferSizeKey)).map { _.toLong }
+    val asyncFlush = Option(flow.getStringProperty(SinkAsyncFlushKey)).exists { _.toBoolean }
+    if (bufferSize.isDefined || asyncFlush) {
+      new KijiSinkWriter(writer, bufferSize.getOrElse(DefaultSinkBufferSize), asyncFlush, flow)
+    } else {
+      writer
+    }
+  }
+
   /**
    * Sets configuration parameters for a purposing a row scan to read data from the Kiji
    * table.
@@ -277,18 +325,27 @@ object BaseKijiScheme {
  * task while reading from a Kiji table.
  *
  * @param rowContainer is the representation of a Kiji row.
+ * @param batch converting the rows read to tuples, if the source reads rows by columns.
  */
 @ApiAudience.Private
 @ApiStability.Stable
-private[express] final case class KijiSourceContext(rowContainer: Container[KijiRowData])
+private[express] final case class KijiSourceContext(
+    rowContainer: Container[KijiRowData],
+    batch: Option[ColumnarRowBatch] = None)
 
 /**
  * Container for the table writer and Kiji table layout required during a sink
  * operation to write the output of a map reduce task back to a Kiji table.
  * This is configured during the sink prepare operation.
+ *
+ * @param eidFactory builds the entity IDs of the rows written.
+ * @param writer writes the cells of the sunk tuples.
+ * @param tupleSink maps the fields of the sunk tuples to Kiji cells, once resolved from the first
+ *     tuple.
  */
 @ApiAudience.Private
 @ApiStability.Stable
 private[express] final case class DirectKijiSinkContext(
     eidFactory: EntityIdFactory,
-    writer: KijiBufferedWriter)
+    writer: KijiBufferedWriter,
+    tupleSink: Option[KijiScheme.TupleSink] = None)
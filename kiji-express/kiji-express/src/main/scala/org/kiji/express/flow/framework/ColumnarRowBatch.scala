@@ -0,0 +1,450 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.express.flow.framework
+
+import scala.collection.JavaConverters.asScalaIteratorConverter
+
+import cascading.tuple.Fields
+import cascading.tuple.Tuple
+import org.apache.avro.Schema
+import org.apache.hadoop.mapred.RecordReader
+
+import org.kiji.annotations.ApiAudience
+import org.kiji.annotations.ApiStability
+import org.kiji.express.flow.ColumnInputSpec
+import org.kiji.express.flow.EntityId
+import org.kiji.express.flow.FlowCell
+import org.kiji.express.flow.PagingSpec
+import org.kiji.express.flow.QualifiedColumnInputSpec
+import org.kiji.express.flow.SchemaSpec
+import org.kiji.express.flow.util.AvroUtil
+import org.kiji.schema.{EntityId => JEntityId}
+import org.kiji.schema.KijiCell
+import org.kiji.schema.KijiRowData
+import org.kiji.schema.avro.SchemaType
+import org.kiji.schema.layout.KijiTableLayout
+
+/**
+ * Reads the rows of a Kiji table by batches and converts them to Cascading tuples column by
+ * column, for sources which only read the most recent version of qualified columns.
+ *
+ * Each batch reads up to `batchSize` rows from the record reader, then decodes each column of the
+ * batch in turn into a column vector: the values of columns with a fixed primitive schema are held
+ * in primitive arrays, other values are held as they were decoded. The tuples emitted for the rows
+ * of the batch hold lightweight views of one cell, which only build their
+ * [[org.kiji.express.flow.FlowCell]] when accessed. Views copy the value of their cell, so that
+ * tuples retained by downstream operations remain valid once the next batch is read.
+ *
+ * Instances are created with [[org.kiji.express.flow.framework.ColumnarRowBatch.create]].
+ *
+ * @param columns to convert, in the order of the fields of the tuples.
+ * @param batchSize is the maximum number of rows of a batch.
+ */
+@ApiAudience.Private
+@ApiStability.Experimental
+private[express] final class ColumnarRowBatch private (
+    columns: Array[ColumnarRowBatch.ColumnVector],
+    batchSize: Int) {
+  /** Rows of the batch being decoded. Cleared once the batch is decoded. */
+  private val mRows: Array[KijiRowData] = new Array[KijiRowData](batchSize)
+  /** Entity IDs of the rows of the current batch. */
+  private val mEntityIds: Array[EntityId] = new Array[EntityId](batchSize)
+  /** Number of rows in the current batch. */
+  private var mSize: Int = 0
+  /** Index of the next row of the current batch to convert to a tuple. */
+  private var mPosition: Int = 0
+
+  /**
+   * Converts the next row read from a record reader to a tuple, reading and decoding the next batch
+   * of rows when the current one is exhausted.
+   *
+   * @param reader to read the rows from.
+   * @param rowContainer to read each row into.
+   * @return the tuple of the next row, or `None` if the record reader has no more rows.
+   */
+  def next(
+      reader: RecordReader[Container[JEntityId], Container[KijiRowData]],
+      rowContainer: Container[KijiRowData]
+  ): Option[Tuple] = {
+    if (mPosition == mSize) {
+      fill(reader, rowContainer)
+    }
+    if (mPosition == mSize) {
+      None
+    } else {
+      val index = mPosition
+      mPosition += 1
+      val tuple = new Tuple()
+      tuple.add(mEntityIds(index))
+      var column = 0
+      while (column < columns.length) {
+        tuple.add(columns(column).cells(index))
+        column += 1
+      }
+      Some(tuple)
+    }
+  }
+
+  /**
+   * Reads the next batch of rows and decodes it into the column vectors.
+   *
+   * @param reader to read the rows from.
+   * @param rowContainer to read each row into.
+   */
+  private def fill(
+      reader: RecordReader[Container[JEntityId], Container[KijiRowData]],
+      rowContainer: Container[KijiRowData]) {
+    mSize = 0
+    mPosition = 0
+    while (mSize < batchSize && reader.next(null, rowContainer)) {
+      val row: KijiRowData = rowContainer.getContents
+      mRows(mSize) = row
+      mEntityIds(mSize) = EntityId.fromJavaEntityId(row.getEntityId)
+      mSize += 1
+    }
+    columns.foreach { column: ColumnarRowBatch.ColumnVector => column.decode(mRows, mSize) }
+    java.util.Arrays.fill(mRows.asInstanceOf[Array[AnyRef]], 0, mSize, null)
+  }
+}
+
+/**
+ * Companion object providing a factory for columnar row batches, and the column vectors and cell
+ * views they are made of.
+ */
+@ApiAudience.Private
+@ApiStability.Experimental
+private[express] object ColumnarRowBatch {
+  /** Default maximum number of rows of a batch. */
+  private[express] val DefaultBatchSize: Int = 1024
+
+  /**
+   * Creates a columnar row batch for the fields of a source, if they can all be read by columns.
+   *
+   * The fields must all be mapped to qualified columns read without paging, and of which only the
+   * most recent version is read.
+   *
+   * @param layout of the table the source reads from.
+   * @param columns maps the names of the fields of the source to the columns they read.
+   * @param fields of the tuples of the source.
+   * @param timestampField is the optional name of a field of the source holding a timestamp, which
+   *     is not read from the table.
+   * @param batchSize is the maximum number of rows of a batch.
+   * @return a columnar row batch for the fields of the source, or `None` if a field can not be read
+   *     by columns.
+   */
+  def create(
+      layout: KijiTableLayout,
+      columns: Map[String, ColumnInputSpec],
+      fields: Fields,
+      timestampField: Option[Symbol],
+      batchSize: Int
+  ): Option[ColumnarRowBatch] = {
+    require(batchSize > 0, "Batch size must be positive: %d".format(batchSize))
+    val specs: Seq[Option[ColumnInputSpec]] = fields
+        .iterator()
+        .asScala
+        .map { _.toString }
+        .filter { field => field != KijiScheme.EntityIdField }
+        .filter { field => field != timestampField.getOrElse("") }
+        .map { field => columns.get(field) }
+        .toList
+    val vectors: Seq[Option[ColumnVector]] = specs.map {
+      case Some(qc: QualifiedColumnInputSpec)
+          if (1 == qc.maxVersions) && (PagingSpec.Off == qc.pagingSpec) =>
+        Some(newVector(layout, qc, batchSize))
+      case _ => None
+    }
+    if (vectors.forall { _.isDefined }) {
+      Some(new ColumnarRowBatch(vectors.flatten.toArray, batchSize))
+    } else {
+      None
+    }
+  }
+
+  /**
+   * Creates the column vector of a column, holding its values in a primitive array if the values
+   * of the column are decoded with a fixed primitive schema.
+   *
+   * @param layout of the table of the column.
+   * @param column to create a vector for.
+   * @param capacity is the number of rows the vector holds.
+   * @return the column vector of the column.
+   */
+  private[framework] def newVector(
+      layout: KijiTableLayout,
+      column: QualifiedColumnInputSpec,
+      capacity: Int
+  ): ColumnVector = {
+    val family = column.family
+    val qualifier = column.qualifier
+    val readerType: Option[Schema.Type] = readerSchema(layout, column).map { _.getType }
+    readerType match {
+      case Some(Schema.Type.LONG) => new LongVector(family, qualifier, capacity)
+      case Some(Schema.Type.INT) => new IntVector(family, qualifier, capacity)
+      case Some(Schema.Type.DOUBLE) => new DoubleVector(family, qualifier, capacity)
+      case Some(Schema.Type.FLOAT) => new FloatVector(family, qualifier, capacity)
+      case Some(Schema.Type.BOOLEAN) => new BooleanVector(family, qualifier, capacity)
+      case _ => new ObjectVector(family, qualifier, capacity)
+    }
+  }
+
+  /**
+   * Resolves the schema with which all the cells of a column are decoded, if it is known before
+   * reading them. Counters are decoded as longs.
+   *
+   * @param layout of the table of the column.
+   * @param column to resolve the schema of.
+   * @return the schema with which all the cells of the column are decoded, or `None` if it depends
+   *     on the cells, or if the cells are not Avro encoded.
+   */
+  private def readerSchema(
+      layout: KijiTableLayout,
+      column: QualifiedColumnInputSpec
+  ): Option[Schema] = {
+    val cellSpec = layout.getCellSpec(column.columnName)
+    if (cellSpec.isCounter) {
+      Some(Schema.create(Schema.Type.LONG))
+    } else if (!cellSpec.isAvro) {
+      None
+    } else {
+      column.schemaSpec match {
+        case SchemaSpec.Generic(schema) => Some(schema)
+        case SchemaSpec.DefaultReader => Option(cellSpec.getDefaultReaderSchema)
+        case SchemaSpec.Writer if SchemaType.INLINE == cellSpec.getCellSchema.getType =>
+          // Inline schemas are the only schemas cells of the column may be written with.
+          Some(new Schema.Parser().parse(cellSpec.getCellSchema.getValue))
+        case _ => None
+      }
+    }
+  }
+
+  /**
+   * The most recent cells of a column for the rows of a batch.
+   *
+   * @param family of the column.
+   * @param qualifier of the column.
+   * @param capacity is the number of rows the vector holds.
+   */
+  private[framework] abstract class ColumnVector(
+      val family: String,
+      val qualifier: String,
+      capacity: Int) {
+    /** Versions of the cells of the rows. */
+    protected val timestamps: Array[Long] = new Array[Long](capacity)
+    /** Whether the rows have a cell in the column. */
+    protected val present: Array[Boolean] = new Array[Boolean](capacity)
+
+    /**
+     * Decodes the most recent cell of the column in each row of a batch.
+     *
+     * @param rows of the batch.
+     * @param count is the number of rows in the batch.
+     */
+    final def decode(rows: Array[KijiRowData], count: Int) {
+      var index = 0
+      while (index < count) {
+        val cell: KijiCell[AnyRef] = rows(index).getMostRecentCell(family, qualifier)
+        if (null == cell) {
+          present(index) = false
+        } else {
+          present(index) = true
+          timestamps(index) = cell.getTimestamp
+          set(index, cell.getData)
+        }
+        index += 1
+      }
+    }
+
+    /**
+     * Returns the cells of the column in a row of the batch, as they are added to tuples.
+     *
+     * @param index of the row in the batch.
+     * @return the cells of the column in the row: empty if the row has no cell in the column.
+     */
+    final def cells(index: Int): Seq[FlowCell[_]] = if (present(index)) view(index) else Nil
+
+    /**
+     * Stores the decoded value of the cell of a row.
+     *
+     * @param index of the row in the batch.
+     * @param datum is the decoded value of the cell.
+     */
+    protected def set(index: Int, datum: AnyRef)
+
+    /**
+     * Returns a view of the cell of a row. The view must not reference the arrays of the vector.
+     *
+     * @param index of the row in the batch, which has a cell in the column.
+     * @return a view of the cell of the row.
+     */
+    protected def view(index: Int): Seq[FlowCell[_]]
+  }
+
+  /** Column vector of long values. */
+  private final class LongVector(family: String, qualifier: String, capacity: Int)
+      extends ColumnVector(family, qualifier, capacity) {
+    private val values: Array[Long] = new Array[Long](capacity)
+
+    override protected def set(index: Int, datum: AnyRef) {
+      values(index) = datum.asInstanceOf[java.lang.Long].longValue
+    }
+
+    override protected def view(index: Int): Seq[FlowCell[_]] =
+        new LongCellView(family, qualifier, timestamps(index), values(index))
+  }
+
+  /** Column vector of int values. */
+  private final class IntVector(family: String, qualifier: String, capacity: Int)
+      extends ColumnVector(family, qualifier, capacity) {
+    private val values: Array[Int] = new Array[Int](capacity)
+
+    override protected def set(index: Int, datum: AnyRef) {
+      values(index) = datum.asInstanceOf[java.lang.Integer].intValue
+    }
+
+    override protected def view(index: Int): Seq[FlowCell[_]] =
+        new IntCellView(family, qualifier, timestamps(index), values(index))
+  }
+
+  /** Column vector of double values. */
+  private final class DoubleVector(family: String, qualifier: String, capacity: Int)
+      extends ColumnVector(family, qualifier, capacity) {
+    private val values: Array[Double] = new Array[Double](capacity)
+
+    override protected def set(index: Int, datum: AnyRef) {
+      values(index) = datum.asInstanceOf[java.lang.Double].doubleValue
+    }
+
+    override protected def view(index: Int): Seq[FlowCell[_]] =
+        new DoubleCellView(family, qualifier, timestamps(index), values(index))
+  }
+
+  /** Column vector of float values. */
+  private final class FloatVector(family: String, qualifier: String, capacity: Int)
+      extends ColumnVector(family, qualifier, capacity) {
+    private val values: Array[Float] = new Array[Float](capacity)
+
+    override protected def set(index: Int, datum: AnyRef) {
+      values(index) = datum.asInstanceOf[java.lang.Float].floatValue
+    }
+
+    override protected def view(index: Int): Seq[FlowCell[_]] =
+        new FloatCellView(family, qualifier, timestamps(index), values(index))
+  }
+
+  /** Column vector of boolean values. */
+  private final class BooleanVector(family: String, qualifier: String, capacity: Int)
+      extends ColumnVector(family, qualifier, capacity) {
+    private val values: Array[Boolean] = new Array[Boolean](capacity)
+
+    override protected def set(index: Int, datum: AnyRef) {
+      values(index) = datum.asInstanceOf[java.lang.Boolean].booleanValue
+    }
+
+    override protected def view(index: Int): Seq[FlowCell[_]] =
+        new BooleanCellView(family, qualifier, timestamps(index), values(index))
+  }
+
+  /** Column vector of values without a fixed primitive schema. */
+  private final class ObjectVector(family: String, qualifier: String, capacity: Int)
+      extends ColumnVector(family, qualifier, capacity) {
+    private val values: Array[AnyRef] = new Array[AnyRef](capacity)
+
+    override protected def set(index: Int, datum: AnyRef) {
+      values(index) = datum
+    }
+
+    override protected def view(index: Int): Seq[FlowCell[_]] =
+        new ObjectCellView(family, qualifier, timestamps(index), values(index))
+  }
+
+  /**
+   * A sequence holding a single cell, built when it is accessed.
+   *
+   * @param family of the cell.
+   * @param qualifier of the cell.
+   * @param version of the cell.
+   */
+  private[framework] abstract class SingleCellSeq(
+      family: String,
+      qualifier: String,
+      version: Long
+  ) extends IndexedSeq[FlowCell[_]] with Serializable {
+    final override def length: Int = 1
+
+    final override def apply(index: Int): FlowCell[_] = {
+      if (0 != index) {
+        throw new IndexOutOfBoundsException(index.toString)
+      }
+      FlowCell(family, qualifier, version, datum)
+    }
+
+    /** Returns the value of the cell, as held by a [[org.kiji.express.flow.FlowCell]]. */
+    protected def datum: Any
+  }
+
+  /** View of a cell holding a long value. */
+  private final class LongCellView(family: String, qualifier: String, version: Long, value: Long)
+      extends SingleCellSeq(family, qualifier, version) {
+    override protected def datum: Any = value
+  }
+
+  /** View of a cell holding an int value. */
+  private final class IntCellView(family: String, qualifier: String, version: Long, value: Int)
+      extends SingleCellSeq(family, qualifier, version) {
+    override protected def datum: Any = value
+  }
+
+  /** View of a cell holding a double value. */
+  private final class DoubleCellView(
+      family: String,
+      qualifier: String,
+      version: Long,
+      value: Double
+  ) extends SingleCellSeq(family, qualifier, version) {
+    override protected def datum: Any = value
+  }
+
+  /** View of a cell holding a float value. */
+  private final class FloatCellView(family: String, qualifier: String, version: Long, value: Float)
+      extends SingleCellSeq(family, qualifier, version) {
+    override protected def datum: Any = value
+  }
+
+  /** View of a cell holding a boolean value. */
+  private final class BooleanCellView(
+      family: String,
+      qualifier: String,
+      version: Long,
+      value: Boolean
+  ) extends SingleCellSeq(family, qualifier, version) {
+    override protected def datum: Any = value
+  }
+
+  /** View of a cell holding a value without a fixed primitive schema, as it was decoded. */
+  private final class ObjectCellView(
+      family: String,
+      qualifier: String,
+      version: Long,
+      value: AnyRef
+  ) extends SingleCellSeq(family, qualifier, version) {
+    override protected def datum: Any = AvroUtil.avroToScala(value)
+  }
+}
@@ -27,7 +27,6 @@ import cascading.scheme.SourceCall
 import cascading.tap.Tap
 import cascading.tuple.Fields
 import cascading.tuple.Tuple
-import cascading.tuple.TupleEntry
 import com.google.common.base.Objects
 import org.apache.commons.codec.binary.Base64
 import org.apache.commons.lang.SerializationUtils
@@ -60,6 +59,7 @@ import org.kiji.express.flow.util.ResourceUtil.withKijiTable
 import org.kiji.mapreduce.framework.KijiConfKeys
 import org.kiji.schema.ColumnVersionIterator
 import org.kiji.schema.EntityIdFactory
+import org.kiji.schema.KijiBufferedWriter
 import org.kiji.schema.KijiCell
 import org.kiji.schema.KijiDataRequest
 import org.kiji.schema.KijiRowData
@@ -151,6 +151,44 @@ class KijiScheme(
         Base64.encodeBase64String(SerializationUtils.serialize(request)))
   }
 
+  /**
+   * Sets up any resources required to read from the Kiji table. This method is called on the
+   * cluster. When [[org.kiji.express.flow.framework.BaseKijiScheme.SourceColumnarKey]] is set,
+   * and all the fields of the source read the most recent version of an unpaged qualified column,
+   * rows are converted to tuples by batches of
+   * [[org.kiji.express.flow.framework.BaseKijiScheme.SourceColumnarBatchSizeKey]] rows.
+   *
+   * @param flow is the current Cascading flow being run.
+   * @param sourceCall containing the context for this source.
+   */
+  override def sourcePrepare(
+      flow: FlowProcess[JobConf],
+      sourceCall: SourceCall[
+          KijiSourceContext,
+          RecordReader[Container[JEntityId], Container[KijiRowData]]]) {
+    super.sourcePrepare(flow, sourceCall)
+    val columnar = Option(flow.getStringProperty(BaseKijiScheme.SourceColumnarKey))
+        .exists { _.toBoolean }
+    if (columnar) {
+      val batchSize = Option(flow.getStringProperty(BaseKijiScheme.SourceColumnarBatchSizeKey))
+          .map { _.toInt }
+          .getOrElse(ColumnarRowBatch.DefaultBatchSize)
+      val batch: Option[ColumnarRowBatch] = withKijiTable(uri, flow.getConfigCopy) { table =>
+        ColumnarRowBatch.create(
+            table.getLayout,
+            inputColumns,
+            getSourceFields,
+            timestampField,
+            batchSize)
+      }
+      if (batch.isEmpty) {
+        logger.info("Columns of source {} can not be read by batches, reading rows one by one.",
+            tableAddress)
+      }
+      sourceCall.setContext(sourceCall.getContext.copy(batch = batch))
+    }
+  }
+
   /**
    * Reads and converts a row from a Kiji table to a Cascading Tuple. This method
    * is called once for each row on the cluster.
@@ -168,9 +206,19 @@ class KijiScheme(
   ): Boolean = {
     // Get the current key/value pair.
     val rowContainer = sourceCall.getContext.rowContainer
-
-    // Get the next row.
-    if (sourceCall.getInput.next(null, rowContainer)) {
+    val batch = sourceCall.getContext.batch
+
+    if (batch.isDefined) {
+      // Convert the next row of the current batch, reading the next batch if necessary.
+      batch.get.next(sourceCall.getInput, rowContainer) match {
+        case Some(result) =>
+          sourceCall.getIncomingEntry.setTuple(result)
+          flow.increment(BaseKijiScheme.CounterGroupName, BaseKijiScheme.CounterSuccess, 1)
+          true
+        case None => false
+      }
+    } else if (sourceCall.getInput.next(null, rowContainer)) {
+      // Get the next row.
       val row: KijiRowData = rowContainer.getContents
 
       // Build a tuple from this row.
@@ -203,13 +251,14 @@ class KijiScheme(
       sinkCall.setContext(
           DirectKijiSinkContext(
               EntityIdFactory.getFactory(table.getLayout),
-              table.getWriterFactory.openBufferedWriter()))
+              BaseKijiScheme.openSinkWriter(table, flow)))
       }
   }
 
   /**
    * Converts and writes a Cascading Tuple to a Kiji table. This method is called once
-   * for each row on the cluster, so it should be kept as light as possible.
+   * for each row on the cluster, so it should be kept as light as possible: the positions of the
+   * fields, the columns and the value encoders are resolved once, from the first tuple.
    *
    * @param flow is the current Cascading flow being run.
    * @param sinkCall containing the context for this source.
@@ -217,29 +266,17 @@ class KijiScheme(
   override def sink(
       flow: FlowProcess[JobConf],
       sinkCall: SinkCall[DirectKijiSinkContext, OutputCollector[_, _]]) {
-    val DirectKijiSinkContext(eidFactory, writer) = sinkCall.getContext
-    val tuple: TupleEntry = sinkCall.getOutgoingEntry
-
-    // Get the entityId.
-    val eid: JEntityId = tuple
-        .getObject(KijiScheme.EntityIdField)
-        .asInstanceOf[EntityId]
-        .toJavaEntityId(eidFactory)
-
-    // Get a timestamp to write the values to, if it was specified by the user.
-    val version: Long = timestampField
-        .map(field => tuple.getLong(field.name))
-        .getOrElse(HConstants.LATEST_TIMESTAMP)
-
-    outputColumns.foreach { case (field, column) =>
-      val value = tuple.getObject(field)
-
-      val qualifier: String = column match {
-        case qc: QualifiedColumnOutputSpec => qc.qualifier
-        case cf: ColumnFamilyOutputSpec => tuple.getString(cf.qualifierSelector.name)
-      }
-      writer.put(eid, column.columnName.getFamily, qualifier, version, column.encode(value))
+    val context = sinkCall.getContext
+    val tuple: Tuple = sinkCall.getOutgoingEntry.getTuple
+    val tupleSink: TupleSink = context.tupleSink match {
+      case Some(resolved) => resolved
+      case None =>
+        val resolved =
+            new TupleSink(sinkCall.getOutgoingEntry.getFields, outputColumns, timestampField)
+        sinkCall.setContext(context.copy(tupleSink = Some(resolved)))
+        resolved
     }
+    tupleSink.write(tuple, context.eidFactory, context.writer)
   }
 
   override def equals(obj: Any): Boolean = obj match {
@@ -273,6 +310,97 @@ object KijiScheme {
   /** Field name containing a row's [[org.kiji.schema.EntityId]]. */
   val EntityIdField: String = "entityId"
 
+  /**
+   * A column written by a [[TupleSink]].
+   *
+   * @param valuePosition is the position of the field holding the value to write.
+   * @param family of the column.
+   * @param qualifier of the column, or null if it is selected by a field.
+   * @param qualifierPosition is the position of the field holding the qualifier, or -1.
+   * @param encode converts the value to a type compatible with the column.
+   */
+  private final class SinkColumn(
+      val valuePosition: Int,
+      val family: String,
+      val qualifier: String,
+      val qualifierPosition: Int,
+      val encode: Any => Any)
+
+  /**
+   * Writes tuples to Kiji cells, with the positions of the tuple fields, the columns and the
+   * value encoders resolved once for all the tuples. Consecutive tuples of the same row share
+   * their converted entity ID.
+   *
+   * @param fields of the written tuples.
+   * @param columns mapping tuple field names to the Kiji columns to write to.
+   * @param timestampField is the optional name of a field containing the timestamp of the cells.
+   */
+  private[express] final class TupleSink(
+      fields: Fields,
+      columns: Map[String, ColumnOutputSpec],
+      timestampField: Option[Symbol]
+  ) {
+    private val mEntityIdPosition: Int = fields.getPos(EntityIdField)
+    private val mTimestampPosition: Int =
+        timestampField.map { field => fields.getPos(field.name) }.getOrElse(-1)
+    private val mColumns: Array[SinkColumn] = columns.map { case (field, column) =>
+      column match {
+        case qc: QualifiedColumnOutputSpec =>
+          new SinkColumn(fields.getPos(field), qc.family, qc.qualifier, -1, qc.encode)
+        case cf: ColumnFamilyOutputSpec =>
+          new SinkColumn(
+              fields.getPos(field),
+              cf.family,
+              null,
+              fields.getPos(cf.qualifierSelector.name),
+              cf.encode)
+      }
+    }.toArray
+
+    /** The entity ID of the last written tuple, and its conversion. */
+    private var mLastEntityId: EntityId = null
+    private var mLastJavaEntityId: JEntityId = null
+
+    /**
+     * Writes the cells of a tuple.
+     *
+     * @param tuple to write.
+     * @param eidFactory converting the entity IDs of tuples.
+     * @param writer to write the cells with.
+     */
+    def write(tuple: Tuple, eidFactory: EntityIdFactory, writer: KijiBufferedWriter) {
+      val entityId = tuple.getObject(mEntityIdPosition).asInstanceOf[EntityId]
+      if (!(entityId eq mLastEntityId)) {
+        mLastJavaEntityId = entityId.toJavaEntityId(eidFactory)
+        mLastEntityId = entityId
+      }
+
+      // Get a timestamp to write the values to, if it was specified by the user.
+      val version: Long = if (mTimestampPosition < 0) {
+        HConstants.LATEST_TIMESTAMP
+      } else {
+        tuple.getLong(mTimestampPosition)
+      }
+
+      var index = 0
+      while (index < mColumns.length) {
+        val column = mColumns(index)
+        val qualifier: String = if (null != column.qualifier) {
+          column.qualifier
+        } else {
+          tuple.getString(column.qualifierPosition)
+        }
+        writer.put(
+            mLastJavaEntityId,
+            column.family,
+            qualifier,
+            version,
+            column.encode(tuple.getObject(column.valuePosition)))
+        index += 1
+      }
+    }
+  }
+
   /**
    * Converts a KijiRowData to a Cascading tuple.
    *
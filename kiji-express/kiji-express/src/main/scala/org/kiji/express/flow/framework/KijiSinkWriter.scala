@@ -0,0 +1,285 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.express.flow.framework
+
+import java.nio.ByteBuffer
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+import scala.collection.mutable
+
+import cascading.flow.FlowProcess
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.apache.hadoop.hbase.HConstants
+
+import org.kiji.annotations.ApiAudience
+import org.kiji.annotations.ApiStability
+import org.kiji.schema.EntityId
+import org.kiji.schema.KijiBufferedWriter
+
+/**
+ * A buffered writer which decides itself when to flush the buffered writer it wraps, optionally
+ * from a background thread, and reports its activity through Cascading counters.
+ *
+ * Writes are buffered until their estimated size reaches the buffer size, then flushed. With an
+ * asynchronous flush, the buffered writes are handed over to a background thread which applies and
+ * flushes them while the sink keeps buffering the next writes; at most one flush is in flight, so
+ * the sink blocks when it fills a second buffer before the first one is flushed. The wrapped writer
+ * is only ever used by one thread at a time.
+ *
+ * Sizes are estimated from the row keys, column names and values of the cells, since the encoded
+ * size of a cell is only known to the wrapped writer.
+ *
+ * @param writer to write through.
+ * @param bufferSize is the estimated size in bytes of the writes to buffer before flushing.
+ * @param asyncFlush is whether to flush from a background thread.
+ * @param flow is the Cascading flow whose counters to update.
+ */
+@ApiAudience.Private
+@ApiStability.Experimental
+private[express] final class KijiSinkWriter(
+    writer: KijiBufferedWriter,
+    bufferSize: Long,
+    asyncFlush: Boolean,
+    flow: FlowProcess[_]
+) extends KijiBufferedWriter {
+  import KijiSinkWriter._
+
+  // The sink decides when to flush.
+  writer.setBufferSize(Long.MaxValue)
+
+  /** Maximum estimated size in bytes of the buffered writes. */
+  private var mBufferSize: Long = bufferSize
+
+  /** Estimated size in bytes of the buffered writes. */
+  private var mBufferedBytes: Long = 0L
+
+  /** Number of buffered cells. */
+  private var mBufferedCells: Long = 0L
+
+  /** Buffered writes, when flushing asynchronously. */
+  private var mBatch: mutable.ArrayBuffer[WriteOp] = mutable.ArrayBuffer()
+
+  /** Thread flushing the buffered writes, when flushing asynchronously. */
+  private val mFlushExecutor: ExecutorService = if (asyncFlush) {
+    Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("kiji-express-sink-flush-%d")
+            .build())
+  } else {
+    null
+  }
+
+  /** Flush in flight, if any. */
+  private var mPendingFlush: Future[_] = null
+
+  override def put[T](entityId: EntityId, family: String, qualifier: String, value: T) {
+    put(entityId, family, qualifier, HConstants.LATEST_TIMESTAMP, value)
+  }
+
+  override def put[T](
+      entityId: EntityId,
+      family: String,
+      qualifier: String,
+      timestamp: Long,
+      value: T
+  ) {
+    if (asyncFlush) {
+      mBatch += PutOp(entityId, family, qualifier, timestamp, value)
+    } else {
+      writer.put(entityId, family, qualifier, timestamp, value)
+    }
+    mBufferedCells += 1
+    buffered(entityId, family.length + qualifier.length + TimestampSize + estimateSize(value))
+  }
+
+  override def deleteRow(entityId: EntityId) {
+    delete(entityId) { _.deleteRow(entityId) }
+  }
+
+  override def deleteRow(entityId: EntityId, upToTimestamp: Long) {
+    delete(entityId) { _.deleteRow(entityId, upToTimestamp) }
+  }
+
+  override def deleteFamily(entityId: EntityId, family: String) {
+    delete(entityId) { _.deleteFamily(entityId, family) }
+  }
+
+  override def deleteFamily(entityId: EntityId, family: String, upToTimestamp: Long) {
+    delete(entityId) { _.deleteFamily(entityId, family, upToTimestamp) }
+  }
+
+  override def deleteColumn(entityId: EntityId, family: String, qualifier: String) {
+    delete(entityId) { _.deleteColumn(entityId, family, qualifier) }
+  }
+
+  override def deleteColumn(
+      entityId: EntityId,
+      family: String,
+      qualifier: String,
+      upToTimestamp: Long
+  ) {
+    delete(entityId) { _.deleteColumn(entityId, family, qualifier, upToTimestamp) }
+  }
+
+  override def deleteCell(entityId: EntityId, family: String, qualifier: String) {
+    delete(entityId) { _.deleteCell(entityId, family, qualifier) }
+  }
+
+  override def deleteCell(entityId: EntityId, family: String, qualifier: String, timestamp: Long) {
+    delete(entityId) { _.deleteCell(entityId, family, qualifier, timestamp) }
+  }
+
+  override def setBufferSize(bufferSize: Long) {
+    mBufferSize = bufferSize
+    if (mBufferedBytes >= mBufferSize) {
+      flushBuffer()
+    }
+  }
+
+  /** Flushes the buffered writes, and waits for them to be written. */
+  override def flush() {
+    flushBuffer()
+    awaitPendingFlush()
+  }
+
+  override def close() {
+    try {
+      flush()
+    } finally {
+      if (null != mFlushExecutor) {
+        mFlushExecutor.shutdown()
+      }
+      writer.close()
+    }
+  }
+
+  /**
+   * Buffers a delete.
+   *
+   * @param entityId of the row to delete from.
+   * @param op applying the delete to the wrapped writer.
+   */
+  private def delete(entityId: EntityId)(op: KijiBufferedWriter => Unit) {
+    if (asyncFlush) {
+      mBatch += DeleteOp(op)
+    } else {
+      op(writer)
+    }
+    buffered(entityId, TimestampSize)
+  }
+
+  /**
+   * Accounts for a buffered write, and flushes the buffer if it is full.
+   *
+   * @param entityId of the row written to.
+   * @param size is the estimated size in bytes of the write, excluding its row key.
+   */
+  private def buffered(entityId: EntityId, size: Long) {
+    mBufferedBytes += entityId.getHBaseRowKey.length + size
+    if (mBufferedBytes >= mBufferSize) {
+      flushBuffer()
+    }
+  }
+
+  /** Flushes the buffered writes, in the background when flushing asynchronously. */
+  private def flushBuffer() {
+    if (0 == mBufferedBytes) {
+      return
+    }
+    flow.increment(BaseKijiScheme.CounterGroupName, BaseKijiScheme.CounterSinkCells, mBufferedCells)
+    flow.increment(BaseKijiScheme.CounterGroupName, BaseKijiScheme.CounterSinkBytes, mBufferedBytes)
+    flow.increment(BaseKijiScheme.CounterGroupName, BaseKijiScheme.CounterSinkFlushes, 1)
+    mBufferedBytes = 0L
+    mBufferedCells = 0L
+
+    if (asyncFlush) {
+      val batch = mBatch
+      mBatch = mutable.ArrayBuffer()
+      mBatch.sizeHint(batch.size)
+      awaitPendingFlush()
+      mPendingFlush = mFlushExecutor.submit(new Runnable {
+        override def run() {
+          batch.foreach {
+            case PutOp(entityId, family, qualifier, timestamp, value) =>
+              writer.put(entityId, family, qualifier, timestamp, value)
+            case DeleteOp(op) => op(writer)
+          }
+          writer.flush()
+        }
+      })
+    } else {
+      writer.flush()
+    }
+  }
+
+  /** Waits for the flush in flight, if any, rethrowing its failure. */
+  private def awaitPendingFlush() {
+    if (null != mPendingFlush) {
+      val pendingFlush = mPendingFlush
+      mPendingFlush = null
+      pendingFlush.get()
+    }
+  }
+}
+
+/** Companion object for KijiSinkWriter, holding its buffered operations and size estimates. */
+private[express] object KijiSinkWriter {
+
+  /** Size of a timestamp, in bytes. */
+  private final val TimestampSize: Long = 8L
+
+  /** Estimated size of a value whose size is not known, in bytes. */
+  private final val DefaultValueSize: Long = 16L
+
+  /** A buffered write. */
+  private sealed trait WriteOp
+
+  /** A buffered put. */
+  private final case class PutOp(
+      entityId: EntityId,
+      family: String,
+      qualifier: String,
+      timestamp: Long,
+      value: Any
+  ) extends WriteOp
+
+  /** A buffered delete. */
+  private final case class DeleteOp(op: KijiBufferedWriter => Unit) extends WriteOp
+
+  /**
+   * Estimates the encoded size of a value.
+   *
+   * @param value to estimate the size of.
+   * @return the estimated encoded size of the value, in bytes.
+   */
+  private[express] def estimateSize(value: Any): Long = value match {
+    case null => 0L
+    case bytes: Array[Byte] => bytes.length
+    case buffer: ByteBuffer => buffer.remaining
+    case string: CharSequence => string.length
+    case _: java.lang.Boolean | _: java.lang.Byte => 1L
+    case _: java.lang.Integer | _: java.lang.Float => 4L
+    case _: java.lang.Long | _: java.lang.Double => 8L
+    case _ => DefaultValueSize
+  }
+}
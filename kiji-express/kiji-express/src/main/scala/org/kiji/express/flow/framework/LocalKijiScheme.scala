@@ -189,7 +189,7 @@ private[express] case class LocalKijiScheme(
   override def sink(
       process: FlowProcess[Properties],
       sinkCall: SinkCall[DirectKijiSinkContext, OutputStream]) {
-    val DirectKijiSinkContext(eidFactory, writer) = sinkCall.getContext
+    val DirectKijiSinkContext(eidFactory, writer, _) = sinkCall.getContext
     val tuple: TupleEntry = sinkCall.getOutgoingEntry
 
     // Get the entityId.
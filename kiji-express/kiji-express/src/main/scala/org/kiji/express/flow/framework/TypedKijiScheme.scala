@@ -179,7 +179,7 @@ class TypedKijiScheme private[express] (
       sinkCall.setContext(
           DirectKijiSinkContext(
               EntityIdFactory.getFactory(table.getLayout),
-              table.getWriterFactory.openBufferedWriter()))
+              BaseKijiScheme.openSinkWriter(table, flow)))
     }
   }
 
@@ -193,7 +193,7 @@ class TypedKijiScheme private[express] (
       flow: FlowProcess[JobConf],
       sinkCall: SinkCall[DirectKijiSinkContext, OutputCollector[_, _]]
   ): Unit = {
-    val DirectKijiSinkContext(eidFactory, writer) = sinkCall.getContext
+    val DirectKijiSinkContext(eidFactory, writer, _) = sinkCall.getContext
 
     def writeSingleValue(singleVal:ExpressColumnOutput[_]): Unit = {
       singleVal.version match {
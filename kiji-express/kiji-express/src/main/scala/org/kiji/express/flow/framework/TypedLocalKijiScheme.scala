@@ -186,7 +186,7 @@ private[express] case class TypedLocalKijiScheme(
       sinkCall: SinkCall[DirectKijiSinkContext, OutputStream]
   ) {
 
-    val DirectKijiSinkContext(eidFactory, writer) = sinkCall.getContext
+    val DirectKijiSinkContext(eidFactory, writer, _) = sinkCall.getContext
     def writeSingleVal(singleVal:ExpressColumnOutput[_]) :Unit= {
       singleVal.version match {
         case Some(timestamp) =>
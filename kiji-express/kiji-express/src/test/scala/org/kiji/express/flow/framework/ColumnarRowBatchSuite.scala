@@ -0,0 +1,177 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.express.flow.framework
+
+import cascading.tuple.Tuple
+import org.apache.hadoop.mapred.RecordReader
+import org.junit.runner.RunWith
+import org.scalatest.junit.JUnitRunner
+
+import org.kiji.express.KijiSuite
+import org.kiji.express.flow.ColumnInputSpec
+import org.kiji.express.flow.FlowCell
+import org.kiji.express.flow.PagingSpec
+import org.kiji.express.flow.QualifiedColumnInputSpec
+import org.kiji.express.flow.TimeRangeSpec
+import org.kiji.schema.{EntityId => JEntityId}
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.KijiRowData
+import org.kiji.schema.KijiTable
+import org.kiji.schema.layout.KijiTableLayout
+import org.kiji.schema.layout.KijiTableLayouts
+
+@RunWith(classOf[JUnitRunner])
+class ColumnarRowBatchSuite extends KijiSuite {
+  /** Input columns of primitive, string and missing cells. */
+  val columns: Map[String, ColumnInputSpec] = Map(
+      "double" -> QualifiedColumnInputSpec.builder
+          .withColumn("family", "double_column")
+          .build,
+      "search" -> QualifiedColumnInputSpec.builder
+          .withColumn("searches", "query")
+          .build,
+      "animal" -> QualifiedColumnInputSpec.builder
+          .withColumn("animals", "name")
+          .build)
+
+  /** Creates a table whose rows have a varying subset of the input columns. */
+  def makeTable(): KijiTable = {
+    val layout = KijiTableLayout.newLayout(
+        KijiTableLayouts.getLayout("layout/avro-types-1.3.json"))
+    val table = makeTestKijiTable(layout)
+    val writer = table.openTableWriter()
+    try {
+      for (index <- 0 until 10) {
+        val entityId = table.getEntityId("row%d".format(index))
+        writer.put(entityId, "family", "double_column", 1L, index.toDouble)
+        writer.put(entityId, "family", "double_column", 2L, index * 2.0)
+        if (0 == index % 2) {
+          writer.put(entityId, "searches", "query", 3L, index)
+        }
+        if (0 == index % 3) {
+          writer.put(entityId, "animals", "name", 4L, "animal%d".format(index))
+        }
+      }
+    } finally {
+      writer.close()
+    }
+    table
+  }
+
+  /** Reads all the rows of a table, the way a Kiji record reader would. */
+  def readRows(
+      table: KijiTable,
+      request: KijiDataRequest
+  ): (RecordReader[Container[JEntityId], Container[KijiRowData]], () => Unit) = {
+    val reader = table.openTableReader()
+    val scanner = reader.getScanner(request)
+    val rows = scanner.iterator()
+    val recordReader = new RecordReader[Container[JEntityId], Container[KijiRowData]] {
+      override def next(key: Container[JEntityId], value: Container[KijiRowData]): Boolean = {
+        if (rows.hasNext) {
+          value.setContents(rows.next())
+          true
+        } else {
+          false
+        }
+      }
+      override def createKey(): Container[JEntityId] = new Container[JEntityId]
+      override def createValue(): Container[KijiRowData] = new Container[KijiRowData]
+      override def getPos: Long = 0L
+      override def getProgress: Float = 0.0f
+      override def close(): Unit = {}
+    }
+    (recordReader, { () => scanner.close(); reader.close() })
+  }
+
+  /** Reads the tuples of all the rows of a table, with or without a columnar row batch. */
+  def readTuples(table: KijiTable, batch: Option[ColumnarRowBatch]): List[Tuple] = {
+    val fields = KijiScheme.buildSourceFields(columns.keys)
+    val request = BaseKijiScheme.buildRequest(table.getLayout, TimeRangeSpec.All, columns.values)
+    val (recordReader, close) = readRows(table, request)
+    try {
+      val container = recordReader.createValue()
+      batch match {
+        case Some(b) => Iterator.continually(b.next(recordReader, container))
+            .takeWhile { _.isDefined }
+            .map { _.get }
+            .toList
+        case None => Iterator.continually(recordReader.next(null, container))
+            .takeWhile { hasNext => hasNext }
+            .map { _ => KijiScheme.rowToTuple(columns, fields, None, container.getContents) }
+            .toList
+      }
+    } finally {
+      close()
+    }
+  }
+
+  test("A ColumnarRowBatch converts rows to the same tuples as KijiScheme.rowToTuple.") {
+    val table = makeTable()
+    try {
+      val fields = KijiScheme.buildSourceFields(columns.keys)
+      // A batch size which does not divide the number of rows exercises a partial batch.
+      val batch = ColumnarRowBatch.create(table.getLayout, columns, fields, None, 3)
+      assert(batch.isDefined)
+      val expected = readTuples(table, None)
+      val actual = readTuples(table, batch)
+      assert(10 === expected.size)
+      assert(expected === actual)
+    } finally {
+      table.release()
+    }
+  }
+
+  test("A ColumnarRowBatch emits cells which remain valid once the next batch is read.") {
+    val table = makeTable()
+    try {
+      val fields = KijiScheme.buildSourceFields(columns.keys)
+      val tuples = readTuples(
+          table,
+          ColumnarRowBatch.create(table.getLayout, columns, fields, None, 1))
+      val doubles = tuples
+          .map { tuple => tuple.getObject(fields.getPos("double")) }
+          .flatMap { cells => cells.asInstanceOf[Seq[_]] }
+          .map { cell => cell.asInstanceOf[FlowCell[_]].datum }
+      assert((0 until 10).map { _ * 2.0 }.toSet === doubles.toSet)
+    } finally {
+      table.release()
+    }
+  }
+
+  test("A ColumnarRowBatch is not created for paged or multi-version columns.") {
+    val table = makeTable()
+    try {
+      val paged = columns + ("double" -> QualifiedColumnInputSpec.builder
+          .withColumn("family", "double_column")
+          .withPagingSpec(PagingSpec.Cells(10))
+          .build)
+      val versions = columns + ("double" -> QualifiedColumnInputSpec.builder
+          .withColumn("family", "double_column")
+          .withMaxVersions(2)
+          .build)
+      val fields = KijiScheme.buildSourceFields(columns.keys)
+      assert(ColumnarRowBatch.create(table.getLayout, paged, fields, None, 3).isEmpty)
+      assert(ColumnarRowBatch.create(table.getLayout, versions, fields, None, 3).isEmpty)
+    } finally {
+      table.release()
+    }
+  }
+}
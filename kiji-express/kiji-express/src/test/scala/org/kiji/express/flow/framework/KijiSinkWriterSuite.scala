@@ -0,0 +1,82 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.express.flow.framework
+
+import cascading.flow.FlowProcess
+import org.junit.runner.RunWith
+import org.scalatest.junit.JUnitRunner
+
+import org.kiji.express.KijiSuite
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.layout.KijiTableLayout
+import org.kiji.schema.layout.KijiTableLayouts
+
+@RunWith(classOf[JUnitRunner])
+class KijiSinkWriterSuite extends KijiSuite {
+  /** Writes cells through a sink writer, then reads them back. */
+  def writeAndRead(asyncFlush: Boolean): Unit = {
+    val layout = KijiTableLayout.newLayout(
+        KijiTableLayouts.getLayout("layout/avro-types-1.3.json"))
+    val table = makeTestKijiTable(layout)
+    try {
+      // A small buffer makes the writer flush several times.
+      val writer = new KijiSinkWriter(
+          table.getWriterFactory.openBufferedWriter(), 64L, asyncFlush, FlowProcess.NULL)
+      for (index <- 0 until 100) {
+        val entityId = table.getEntityId("row%d".format(index % 10))
+        writer.put(entityId, "searches", "q" + index, 1L, index)
+      }
+      writer.deleteCell(table.getEntityId("row0"), "searches", "q0", 1L)
+      writer.close()
+
+      val reader = table.openTableReader()
+      try {
+        for (index <- 1 until 100) {
+          val row = reader.get(
+              table.getEntityId("row%d".format(index % 10)),
+              KijiDataRequest.create("searches", "q" + index))
+          assert(index === row.getMostRecentValue[java.lang.Integer]("searches", "q" + index))
+        }
+        val deleted =
+            reader.get(table.getEntityId("row0"), KijiDataRequest.create("searches", "q0"))
+        assert(!deleted.containsCell("searches", "q0", 1L))
+      } finally {
+        reader.close()
+      }
+    } finally {
+      table.release()
+    }
+  }
+
+  test("A KijiSinkWriter writes all its cells when flushing synchronously.") {
+    writeAndRead(asyncFlush = false)
+  }
+
+  test("A KijiSinkWriter writes all its cells when flushing asynchronously.") {
+    writeAndRead(asyncFlush = true)
+  }
+
+  test("A KijiSinkWriter estimates the size of common values.") {
+    assert(3 === KijiSinkWriter.estimateSize(Array[Byte](1, 2, 3)))
+    assert(5 === KijiSinkWriter.estimateSize("kiji!"))
+    assert(8 === KijiSinkWriter.estimateSize(1L))
+    assert(0 === KijiSinkWriter.estimateSize(null))
+  }
+}
@@ -380,7 +380,7 @@ public class KijiRowExpression {
     @Override
     public Object getValue(KijiRowDataWritable row) throws IOException {
       final EntityIdWritable entityId = row.getEntityId();
-      Object component = entityId.getComponents().get(mIndex);
+      Object component = entityId.getComponent(mIndex);
 
       switch (mTypeInfo.getPrimitiveCategory()) {
 
@@ -39,6 +39,10 @@ import org.kiji.schema.util.ByteArrayFormatter;
 
 /**
  * Container class for the data stored within an entityId.
+ *
+ * <p>When constructed from an EntityId, the components and shell string of the entity ID are only
+ * extracted when first requested or when this writable is serialized, so that rows whose entity
+ * ID components are never read do not pay for decoding them.</p>
  */
 public class EntityIdWritable implements Writable {
   private static final Logger LOG = LoggerFactory.getLogger(EntityIdWritable.class);
@@ -47,6 +51,9 @@ public class EntityIdWritable implements Writable {
   private List<Object> mComponents;
   private String mShellString;
 
+  /** Entity ID whose components and shell string have not been extracted yet, or null. */
+  private EntityId mEntityId;
+
   /**
    * Enumeration for the possible types of the component.
    */
@@ -68,14 +75,23 @@ public class EntityIdWritable implements Writable {
    */
   public EntityIdWritable(EntityId entityId) {
     mHBaseRowKey = entityId.getHBaseRowKey();
+    mEntityId = entityId;
+  }
+
+  /** Extracts the components and shell string of the entity ID, if not done yet. */
+  private void materialize() {
+    if (null == mEntityId) {
+      return;
+    }
     try {
-      mComponents = entityId.getComponents();
+      mComponents = mEntityId.getComponents();
     } catch (IllegalStateException ise) {
       LOG.warn("Cannot retrieve EntityId components", ise.getMessage());
       String asciiRowKey = ByteArrayFormatter.toHex(mHBaseRowKey);
       mComponents = Collections.singletonList((Object) asciiRowKey);
     }
-    mShellString = entityId.toShellString();
+    mShellString = mEntityId.toShellString();
+    mEntityId = null;
   }
 
   /**
@@ -95,16 +111,39 @@ public class EntityIdWritable implements Writable {
 
   /** @return List of Objects representing the individual components of a row key. */
   public List<Object> getComponents() {
+    materialize();
     return Collections.unmodifiableList(mComponents);
   }
 
+  /**
+   * Returns a single component of the row key. When this writable still holds its entity ID,
+   * only the requested component is decoded.
+   *
+   * @param index of the component.
+   * @return the component of the row key at the specified index.
+   */
+  public Object getComponent(int index) {
+    if (null != mEntityId) {
+      try {
+        return mEntityId.getComponentByIndex(index);
+      } catch (IllegalStateException ise) {
+        // Components are not available; fall back to the placeholder components.
+      } catch (IllegalArgumentException iae) {
+        // Invalid index; fall back to fail as the component list does.
+      }
+    }
+    return getComponents().get(index);
+  }
+
   /** @return A copyable string. */
   public String toShellString() {
+    materialize();
     return mShellString;
   }
 
   @Override
   public void write(DataOutput out) throws IOException {
+    materialize();
     WritableUtils.writeCompressedByteArray(out, mHBaseRowKey);
 
     // Write the components
@@ -142,6 +181,7 @@ public class EntityIdWritable implements Writable {
   public void readFields(DataInput in) throws IOException {
     byte[] bytes = WritableUtils.readCompressedByteArray(in);
     mHBaseRowKey = bytes;
+    mEntityId = null;
 
     // Read the components
     int numComponents = WritableUtils.readVInt(in);
@@ -21,6 +21,7 @@ package org.kiji.mapreduce.lib.bulkimport;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +37,7 @@ import org.kiji.annotations.ApiAudience;
 import org.kiji.hadoop.configurator.HadoopConf;
 import org.kiji.mapreduce.KijiTableContext;
 import org.kiji.mapreduce.lib.util.CSVParser;
+import org.kiji.mapreduce.lib.util.CSVTokenizer;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.KijiColumnName;
 
@@ -43,7 +45,8 @@ import org.kiji.schema.KijiColumnName;
  * Bulk importer that handles comma separated files.  TSVs are also supported by setting the
  * <code>kiji.import.text.field.separator</code> configuration item specified by
  * {@link #CONF_FIELD_DELIMITER}.  This bulk importer uses
- * {@link org.kiji.mapreduce.lib.util.CSVParser} for parsing lines into fields.
+ * {@link org.kiji.mapreduce.lib.util.CSVTokenizer} for splitting lines into fields, directly on the
+ * UTF-8 bytes of each line; only the fields of the destination columns are decoded.
  *
  * A default header row can be specified by setting the
  * <code>kiji.import.text.column.header_row</code> configuration item specified by
@@ -107,6 +110,27 @@ public final class CSVBulkImporter extends DescribedInputTextBulkImporter {
   /** Internal map of field names to field positions in the parsed line. */
   private Map<String, Integer> mFieldMap = null;
 
+  /** Tokenizer splitting lines into fields, reused across lines. */
+  private CSVTokenizer mTokenizer = null;
+
+  /** Position of the entity ID field, resolved with the header. */
+  private int mEntityIdIndex;
+
+  /** Position of the timestamp field, or -1 if timestamps are not imported. */
+  private int mTimestampIndex;
+
+  /** Destination columns. */
+  private KijiColumnName[] mColumns;
+
+  /** Source fields of the destination columns, in the order of {@link #mColumns}. */
+  private String[] mColumnSources;
+
+  /** Positions of the source fields of the destination columns, resolved with the header. */
+  private int[] mColumnIndexes;
+
+  /** Value converters of the destination columns, in the order of {@link #mColumns}. */
+  private ValueConverter[] mColumnConverters;
+
   /** {@inheritDoc} */
   @Override
   public void setupImporter(KijiTableContext context) throws IOException {
@@ -117,6 +141,18 @@ public final class CSVBulkImporter extends DescribedInputTextBulkImporter {
           String.format("Invalid delimiter '%s' specified.  Valid options are: '%s'",
           mColumnDelimiter, StringUtils.join(validDelimiters, "','")));
     }
+    mTokenizer =
+        CSV_DELIMITER.equals(mColumnDelimiter) ? CSVTokenizer.forCSV() : CSVTokenizer.forTSV();
+
+    final Collection<KijiColumnName> columns = getDestinationColumns();
+    mColumns = columns.toArray(new KijiColumnName[columns.size()]);
+    mColumnSources = new String[mColumns.length];
+    mColumnIndexes = new int[mColumns.length];
+    mColumnConverters = new ValueConverter[mColumns.length];
+    for (int i = 0; i < mColumns.length; i++) {
+      mColumnSources[i] = getSource(mColumns[i]);
+      mColumnConverters[i] = getValueConverter(mColumns[i]);
+    }
 
     // If the header row is specified in the configuration, use that.
     if (getConf().get(CONF_INPUT_HEADER_ROW) != null) {
@@ -134,16 +170,41 @@ public final class CSVBulkImporter extends DescribedInputTextBulkImporter {
   }
 
   /**
-   * Initializes the field to column position mapping for this file.
+   * Initializes the field to column position mapping for this file, and resolves the positions
+   * of the source fields of the import descriptor.
+   *
    * @param headerFields the header fields for this delimited file.
+   * @throws IOException if a source field of the import descriptor is not in the header.
    */
-  private void initializeHeader(List<String> headerFields) {
+  private void initializeHeader(List<String> headerFields) throws IOException {
     LOG.info("Initializing field map with fields: " + StringUtils.join(headerFields, ","));
     Map<String, Integer> fieldMap = Maps.newHashMap();
     for (int index=0; index < headerFields.size(); index++) {
       fieldMap.put(headerFields.get(index), index);
     }
     mFieldMap = ImmutableMap.copyOf(fieldMap);
+
+    mEntityIdIndex = getFieldIndex(getEntityIdSource());
+    mTimestampIndex = isOverrideTimestamp() ? getFieldIndex(getTimestampSource()) : -1;
+    for (int i = 0; i < mColumns.length; i++) {
+      mColumnIndexes[i] = getFieldIndex(mColumnSources[i]);
+    }
+  }
+
+  /**
+   * Returns the position of a field in the lines.
+   *
+   * @param field Name of the field.
+   * @return the position of the field in the lines.
+   * @throws IOException if the field is not in the header.
+   */
+  private int getFieldIndex(String field) throws IOException {
+    final Integer index = mFieldMap.get(field);
+    if (null == index) {
+      throw new IOException(String.format("Source field '%s' not found in header row: %s",
+          field, StringUtils.join(mFieldMap.keySet(), ",")));
+    }
+    return index;
   }
 
   /**
@@ -161,33 +222,6 @@ public final class CSVBulkImporter extends DescribedInputTextBulkImporter {
     throw new ParseException("Unrecognized delimiter: " + mColumnDelimiter, 0);
   }
 
-  /**
-   * Generates the entity id for this imported line using the source from the import descriptor.
-   * Called within the produce() method.
-   *
-   * @param fields One line of input text split on the column delimiter.
-   * @param context The context used by the produce() method.
-   * @return The EntityId for the data that gets imported by this line.
-   */
-  protected EntityId getEntityId(List<String> fields, KijiTableContext context) {
-    //TODO(KIJIMRLIB-3) Extend this to support composite row key ids
-    String rowkey = fields.get(mFieldMap.get(getEntityIdSource()));
-    return context.getEntityId(rowkey);
-  }
-
-  /**
-   * Generates the timestamp for this imported line using the source from the import descriptor.
-   * Called within the produce() method.
-   *
-   * @param fields One line of input text split on the column delimiter.
-   * @return The timestamp to be used for this row of data.
-   */
-  protected Long getTimestamp(List<String> fields) {
-    String timestampString = fields.get(mFieldMap.get(getTimestampSource()));
-    Long timestamp = Long.parseLong(timestampString);
-    return timestamp;
-  }
-
   /** {@inheritDoc} */
   @Override
   public void produce(Text value, KijiTableContext context) throws IOException {
@@ -206,40 +240,53 @@ public final class CSVBulkImporter extends DescribedInputTextBulkImporter {
       return;
     }
 
-    List<String> fields = null;
+    final int fieldCount;
     try {
-      fields = split(value.toString());
+      fieldCount = mTokenizer.tokenize(value);
     } catch (ParseException pe) {
       reject(value, context, pe.toString());
       return;
     }
 
+    //TODO(KIJIMRLIB-3) Extend this to support composite row key ids
+    if (mEntityIdIndex >= fieldCount) {
+      reject(value, context, "Missing entity ID field: " + getEntityIdSource());
+      return;
+    }
+    final EntityId eid = context.getEntityId(mTokenizer.getFieldAsString(mEntityIdIndex));
+
+    Long timestamp = null;
+    if (mTimestampIndex >= 0) {
+      if (mTimestampIndex >= fieldCount) {
+        reject(value, context, "Missing timestamp field: " + getTimestampSource());
+        return;
+      }
+      timestamp = Long.parseLong(mTokenizer.getFieldAsString(mTimestampIndex));
+    }
+
     List<String> emptyFields = Lists.newArrayList();
-    for (KijiColumnName kijiColumnName : getDestinationColumns()) {
-      final EntityId eid = getEntityId(fields, context);
-      String source = getSource(kijiColumnName);
-
-      if (mFieldMap.get(source) < fields.size()) {
-        String fieldValue = fields.get(mFieldMap.get(source));
-        if (!fieldValue.isEmpty()) {
-          String family = kijiColumnName.getFamily();
-          String qualifier = kijiColumnName.getQualifier();
-          if (isOverrideTimestamp()) {
+    for (int i = 0; i < mColumns.length; i++) {
+      final int index = mColumnIndexes[i];
+      if (index < fieldCount) {
+        if (mTokenizer.getFieldLength(index) != 0) {
+          final String family = mColumns[i].getFamily();
+          final String qualifier = mColumns[i].getQualifier();
+          final Object fieldValue =
+              mColumnConverters[i].convert(mTokenizer.getFieldAsString(index));
+          if (null != timestamp) {
             // Override the timestamp from the imported source
-            Long timestamp = getTimestamp(fields);
-            context.put(eid, family, qualifier, timestamp, convert(kijiColumnName, fieldValue));
+            context.put(eid, family, qualifier, timestamp, fieldValue);
           } else {
             // Use the system time as the timestamp
-            context.put(eid, family, qualifier, convert(kijiColumnName, fieldValue));
+            context.put(eid, family, qualifier, fieldValue);
           }
         } else {
-          emptyFields.add(source);
+          emptyFields.add(mColumnSources[i]);
         }
       }
     }
     if (!emptyFields.isEmpty()) {
       incomplete(value, context, "Record is missing fields: " + StringUtils.join(emptyFields, ","));
     }
-
   }
 }
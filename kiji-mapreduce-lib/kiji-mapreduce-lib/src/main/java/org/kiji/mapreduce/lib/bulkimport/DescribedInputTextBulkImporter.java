@@ -141,6 +141,79 @@ public abstract class DescribedInputTextBulkImporter extends KijiBulkImporter<Lo
   /** KijiColumnName to cell type map. */
   private Map<KijiColumnName, Class> mColumnNameClassMap;
 
+  /** KijiColumnName to value converter map, derived from the cell type map. */
+  private Map<KijiColumnName, ValueConverter> mColumnNameConverterMap;
+
+  /** Converts the string representation of a value into the type of a destination column. */
+  protected static enum ValueConverter {
+    BOOLEAN {
+      @Override
+      public Object convert(String value) {
+        return Boolean.valueOf(value);
+      }
+    },
+    INT {
+      @Override
+      public Object convert(String value) {
+        return Integer.valueOf(value);
+      }
+    },
+    LONG {
+      @Override
+      public Object convert(String value) {
+        return Long.valueOf(value);
+      }
+    },
+    FLOAT {
+      @Override
+      public Object convert(String value) {
+        return Float.valueOf(value);
+      }
+    },
+    DOUBLE {
+      @Override
+      public Object convert(String value) {
+        return Double.valueOf(value);
+      }
+    },
+    STRING {
+      @Override
+      public Object convert(String value) {
+        return value;
+      }
+    };
+
+    /**
+     * Converts the string representation of a value.
+     *
+     * @param value string representation of the value.
+     * @return object containing the parsed representation of the value.
+     */
+    public abstract Object convert(String value);
+
+    /**
+     * Returns the converter producing values of the specified class.
+     *
+     * @param clazz class of the values to produce. Unknown classes, or null, leave values as
+     *     strings.
+     * @return the converter producing values of the specified class.
+     */
+    private static ValueConverter forClass(Class<?> clazz) {
+      if (clazz == Boolean.class) {
+        return BOOLEAN;
+      } else if (clazz == Integer.class) {
+        return INT;
+      } else if (clazz == Long.class) {
+        return LONG;
+      } else if (clazz == Float.class) {
+        return FLOAT;
+      } else if (clazz == Double.class) {
+        return DOUBLE;
+      }
+      return STRING;
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -222,6 +295,11 @@ public abstract class DescribedInputTextBulkImporter extends KijiBulkImporter<Lo
         }
       }
       mColumnNameClassMap = ImmutableMap.copyOf(columnNameClassMap);
+      final Map<KijiColumnName, ValueConverter> columnNameConverterMap = Maps.newHashMap();
+      for (Map.Entry<KijiColumnName, Class> entry : mColumnNameClassMap.entrySet()) {
+        columnNameConverterMap.put(entry.getKey(), ValueConverter.forClass(entry.getValue()));
+      }
+      mColumnNameConverterMap = ImmutableMap.copyOf(columnNameConverterMap);
     } finally {
       ResourceUtils.releaseOrLog(kiji);
     }
@@ -297,21 +375,20 @@ public abstract class DescribedInputTextBulkImporter extends KijiBulkImporter<Lo
    * @return object containing the parsed representation of the value.
    */
   public Object convert(KijiColumnName kijiColumnName, String value) {
-    Class<?> clazz = mColumnNameClassMap.get(kijiColumnName);
-    if (clazz == Boolean.class) {
-      return Boolean.valueOf(value);
-    } else if (clazz == Integer.class) {
-      return Integer.valueOf(value);
-    } else if (clazz == Long.class) {
-      return Long.valueOf(value);
-    } else if (clazz == Float.class) {
-      return Float.valueOf(value);
-    } else if (clazz == Double.class) {
-      return Double.valueOf(value);
-    } else if (clazz == String.class) {
-      return value;
-    }
-    return value;
+    return getValueConverter(kijiColumnName).convert(value);
+  }
+
+  /**
+   * Returns the converter for the values of the specified column. Importers converting many values
+   * may look the converter of each destination column up once, rather than once per value.
+   *
+   * @param kijiColumnName the destination column to infer the type from.
+   * @return the converter for the values of the column. Values of columns which are not
+   *     destination columns are left as strings.
+   */
+  protected final ValueConverter getValueConverter(KijiColumnName kijiColumnName) {
+    final ValueConverter converter = mColumnNameConverterMap.get(kijiColumnName);
+    return (null != converter) ? converter : ValueConverter.STRING;
   }
 
   /**
@@ -0,0 +1,308 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.bulkimport;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.mapreduce.KijiTableContext;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+
+/**
+ * Bulk importer that handles JSON files, reading each record in a single streaming pass.
+ *
+ * <p>
+ *   This bulk importer accepts the same input and the same {@link KijiTableImportDescriptor}s as
+ *   {@link JSONBulkImporter}: each line is a JSON object to be imported into a row, and complex
+ *   paths in JSON are specified by strings delimited with periods(.). Target columns whose sources
+ *   are not present in the JSON object are skipped.
+ * </p>
+ *
+ * <p>
+ *   Rather than parsing each line into a full JSON tree and walking it once per destination
+ *   column, this bulk importer compiles the source paths of the import descriptor into a tree of
+ *   field names when the job starts. Each line is then read with a pull parser
+ *   ({@link JsonReader}) which only materializes the fields on a source path, and skips over
+ *   everything else. The entity ID of each record is computed once, and the value converter of
+ *   each destination column is looked up once per job.
+ * </p>
+ *
+ * <p>
+ *   Unlike {@link JSONBulkImporter}, a path only matches if each of its components but the last
+ *   one names a JSON object, and lines which are not well-formed JSON objects are rejected rather
+ *   than failing the task.
+ * </p>
+ *
+ * <h2>Creating a bulk import job for JSON files:</h2>
+ * <pre><code>
+ *   // Set the import descriptor file to be used for this bulk importer.
+ *   conf.set(DescribedInputTextBulkImporter.CONF_FILE, "foo-test-import-descriptor.json");
+ *   // Configure and create the MapReduce job.
+ *   final MapReduceJob job = KijiBulkImportJobBuilder.create()
+ *       .withConf(conf)
+ *       .withBulkImporter(StreamingJSONBulkImporter.class)
+ *       .withInput(MapReduceJobInputs.newTextMapReduceJobInput(new Path(inputFile.toString())))
+ *       .withOutput(MapReduceJobOutputs.newHFileMapReduceJobOutput(mOutputTable, hfileDirPath))
+ *       .build();
+ * </code></pre>
+ *
+ * @see KijiTableImportDescriptor
+ * @see JSONBulkImporter
+ */
+@ApiAudience.Public
+public final class StreamingJSONBulkImporter extends DescribedInputTextBulkImporter {
+  private static final Logger LOG = LoggerFactory.getLogger(StreamingJSONBulkImporter.class);
+
+  /** Splits source paths into their components. */
+  private static final Splitter PATH_SPLITTER = Splitter.on('.');
+
+  /** Root of the tree of compiled source paths. */
+  private PathNode mRoot;
+
+  /** Values of the source paths in the current record, by slot. Null for missing values. */
+  private String[] mValues;
+
+  /** Slot of the entity ID source path. */
+  private int mEntityIdSlot;
+
+  /** Slot of the timestamp source path, or -1 if timestamps are not imported. */
+  private int mTimestampSlot;
+
+  /** Destination columns. */
+  private KijiColumnName[] mColumns;
+
+  /** Source paths of the destination columns, in the order of {@link #mColumns}. */
+  private String[] mColumnSources;
+
+  /** Slots of the source paths of the destination columns, in the order of {@link #mColumns}. */
+  private int[] mColumnSlots;
+
+  /** Value converters of the destination columns, in the order of {@link #mColumns}. */
+  private ValueConverter[] mColumnConverters;
+
+  /**
+   * Node in the tree of compiled source paths.
+   *
+   * <p>
+   *   Each node stands for a field name, and its children for the fields of the JSON object the
+   *   field holds. A node whose path is a source path has a slot, where the value of the field is
+   *   recorded when a record is read.
+   * </p>
+   */
+  private static final class PathNode {
+    /** Child nodes, by field name. */
+    private final Map<String, PathNode> mChildren = Maps.newHashMap();
+
+    /** Slot of the value of this path, or -1 if this path is not a source path. */
+    private int mSlot = -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setupImporter(KijiTableContext context) throws IOException {
+    mRoot = new PathNode();
+    final Map<String, Integer> slots = Maps.newHashMap();
+
+    mEntityIdSlot = compilePath(getEntityIdSource(), slots);
+    mTimestampSlot = isOverrideTimestamp() ? compilePath(getTimestampSource(), slots) : -1;
+
+    final Collection<KijiColumnName> columns = getDestinationColumns();
+    mColumns = columns.toArray(new KijiColumnName[columns.size()]);
+    mColumnSources = new String[mColumns.length];
+    mColumnSlots = new int[mColumns.length];
+    mColumnConverters = new ValueConverter[mColumns.length];
+    for (int i = 0; i < mColumns.length; ++i) {
+      mColumnSources[i] = getSource(mColumns[i]);
+      mColumnSlots[i] = compilePath(mColumnSources[i], slots);
+      mColumnConverters[i] = getValueConverter(mColumns[i]);
+    }
+
+    mValues = new String[slots.size()];
+    LOG.debug("Compiled {} source paths for {} destination columns.",
+        slots.size(), mColumns.length);
+  }
+
+  /**
+   * Adds a source path to the tree of compiled source paths.
+   *
+   * @param path source path, delimited by periods.
+   * @param slots Slots of the source paths compiled so far, by path. Updated in place.
+   * @return the slot of the value of the source path.
+   */
+  private int compilePath(String path, Map<String, Integer> slots) {
+    final Integer existing = slots.get(path);
+    if (null != existing) {
+      return existing;
+    }
+    PathNode node = mRoot;
+    for (String component : PATH_SPLITTER.split(path)) {
+      PathNode child = node.mChildren.get(component);
+      if (null == child) {
+        child = new PathNode();
+        node.mChildren.put(component, child);
+      }
+      node = child;
+    }
+    node.mSlot = slots.size();
+    slots.put(path, node.mSlot);
+    return node.mSlot;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void produce(Text value, KijiTableContext context) throws IOException {
+    Arrays.fill(mValues, null);
+    final JsonReader reader = new JsonReader(new InputStreamReader(
+        new ByteArrayInputStream(value.getBytes(), 0, value.getLength()), Charsets.UTF_8));
+    // Match the leniency of the JsonParser used by JSONBulkImporter:
+    reader.setLenient(true);
+    try {
+      readObject(reader, mRoot);
+    } catch (MalformedJsonException mje) {
+      reject(value, context, "Malformed JSON: " + mje.getMessage());
+      return;
+    } catch (EOFException eofe) {
+      reject(value, context, "Truncated JSON: " + eofe.getMessage());
+      return;
+    } catch (IllegalStateException ise) {
+      // Raised by the reader when the line is not a JSON object.
+      reject(value, context, "Unexpected JSON: " + ise.getMessage());
+      return;
+    } finally {
+      reader.close();
+    }
+
+    final String entityIdSource = mValues[mEntityIdSlot];
+    if (entityIdSource == null) {
+      LOG.error("Unable to retrieve entityId from source field: " + getEntityIdSource());
+      return;
+    }
+    final EntityId eid = context.getEntityId(entityIdSource);
+
+    Long timestamp = null;
+    if (mTimestampSlot >= 0) {
+      final String timestampSource = mValues[mTimestampSlot];
+      if (timestampSource == null) {
+        incomplete(value, context, "Detected missing timestamp field: " + getTimestampSource());
+        return;
+      }
+      timestamp = Long.parseLong(timestampSource);
+    }
+
+    for (int i = 0; i < mColumns.length; ++i) {
+      final String fieldValue = mValues[mColumnSlots[i]];
+      if (fieldValue != null) {
+        final String family = mColumns[i].getFamily();
+        final String qualifier = mColumns[i].getQualifier();
+        final Object converted = mColumnConverters[i].convert(fieldValue);
+        if (null != timestamp) {
+          // Override the timestamp from the imported source
+          context.put(eid, family, qualifier, timestamp, converted);
+        } else {
+          // Use the system time as the timestamp
+          context.put(eid, family, qualifier, converted);
+        }
+      } else {
+        incomplete(value, context, "Detected missing field: " + mColumnSources[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads a JSON object, recording the values of the source paths under a node.
+   *
+   * @param reader Reader positioned at the beginning of the object.
+   * @param node Node of the path of the object.
+   * @throws IOException on parse error.
+   */
+  private void readObject(JsonReader reader, PathNode node) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final PathNode child = node.mChildren.get(reader.nextName());
+      if (null == child) {
+        reader.skipValue();
+      } else {
+        readValue(reader, child);
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * Reads the JSON value of a field on a source path.
+   *
+   * @param reader Reader positioned at the value.
+   * @param node Node of the path of the field.
+   * @throws IOException on parse error.
+   */
+  private void readValue(JsonReader reader, PathNode node) throws IOException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        if (node.mChildren.isEmpty()) {
+          reader.skipValue();
+        } else {
+          readObject(reader, node);
+        }
+        break;
+      case STRING:
+      case NUMBER:
+        recordValue(node, reader.nextString());
+        break;
+      case BOOLEAN:
+        recordValue(node, Boolean.toString(reader.nextBoolean()));
+        break;
+      case NULL:
+        reader.nextNull();
+        break;
+      default:
+        // Arrays are not addressable by source paths.
+        reader.skipValue();
+        break;
+    }
+  }
+
+  /**
+   * Records the value of a field, if its path is a source path.
+   *
+   * @param node Node of the path of the field.
+   * @param value String representation of the value of the field.
+   */
+  private void recordValue(PathNode node, String value) {
+    if (node.mSlot >= 0) {
+      mValues[node.mSlot] = value;
+    }
+  }
+}
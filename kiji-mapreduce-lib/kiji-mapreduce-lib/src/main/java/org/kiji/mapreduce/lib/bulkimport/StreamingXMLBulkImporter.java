@@ -0,0 +1,680 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.bulkimport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.mapreduce.KijiTableContext;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+
+/**
+ * Bulk importer that handles XML files, reading each record in a single streaming pass.
+ *
+ * <p>
+ *   This bulk importer reads the same records as {@link XMLBulkImporter}, and should be used with
+ *   {@link org.kiji.mapreduce.input.impl.XMLInputFormat} the same way. Rather than parsing each
+ *   record into a DOM and evaluating one XPath expression per destination column against it,
+ *   the source paths of the import descriptor are compiled once, when the job starts, into a
+ *   matcher driven by a StAX pull parser. Each record is read once: the parser only keeps the
+ *   stack of the open elements and the text of the elements on a source path, so that memory
+ *   stays bounded by the depth of the record and the size of the imported values, whatever the
+ *   size of the record.
+ * </p>
+ *
+ * <p>
+ *   Cells are written as soon as the matching elements close, once the entity ID of the record
+ *   (and its timestamp, when the import descriptor overrides timestamps) has been read. Parsing
+ *   stops as soon as all source paths are matched. As a consequence, the cells of a record which
+ *   turns out to be malformed after some of its cells were written are not rolled back, and
+ *   malformations after the last matched element are not detected.
+ * </p>
+ *
+ * <h4>Supported source paths</h4>
+ * <p>
+ *   Source paths are a subset of XPath: location paths made of element names or <code>*</code>,
+ *   separated by <code>/</code> (child) or <code>//</code> (descendant), each optionally followed
+ *   by a position predicate such as <code>[2]</code>, and optionally ending with an attribute
+ *   <code>@name</code>. For example <code>user/email</code>, <code>user/email[2]</code>,
+ *   <code>user/@id</code> and <code>//firstname</code> are supported. As with XPath, the value of a
+ *   path is the text content of the first matching element, in document order, or the value of
+ *   the attribute of that element. Jobs whose import descriptor uses other expressions fail
+ *   during setup; use {@link XMLBulkImporter} for those.
+ * </p>
+ *
+ * @see XMLBulkImporter
+ * @see KijiTableImportDescriptor
+ */
+@ApiAudience.Public
+public final class StreamingXMLBulkImporter extends DescribedInputTextBulkImporter {
+  private static final Logger LOG = LoggerFactory.getLogger(StreamingXMLBulkImporter.class);
+
+  /** Matches one step of a supported source path: a name or '*', and a position predicate. */
+  private static final Pattern STEP_PATTERN =
+      Pattern.compile("([A-Za-z_][\\w.\\-:]*|\\*)(?:\\[([1-9][0-9]*)\\])?");
+
+  /** Matches the attribute at the end of a supported source path. */
+  private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("@([A-Za-z_][\\w.\\-:]*)");
+
+  /** Maximum number of steps in a source path. */
+  private static final int MAX_STEPS = 0xff;
+
+  /** Factory of the StAX readers of the records. */
+  private XMLInputFactory mInputFactory;
+
+  /** Compiled source paths, indexed by slot. */
+  private CompiledPath[] mPaths;
+
+  /** Whether any source path has a position predicate, requiring sibling positions. */
+  private boolean mNeedsPositions;
+
+  /** Slot of the entity ID source path. */
+  private int mEntityIdSlot;
+
+  /** Slot of the timestamp source path, or -1 if timestamps are not imported. */
+  private int mTimestampSlot;
+
+  /** Destination columns. */
+  private KijiColumnName[] mColumns;
+
+  /** Source paths of the destination columns, in the order of {@link #mColumns}. */
+  private String[] mColumnSources;
+
+  /** Slots of the source paths of the destination columns, in the order of {@link #mColumns}. */
+  private int[] mColumnSlots;
+
+  /** Value converters of the destination columns, in the order of {@link #mColumns}. */
+  private ValueConverter[] mColumnConverters;
+
+  // Per-record state, reused across records:
+
+  /** Values of the source paths in the current record, by slot. Null while unmatched. */
+  private String[] mValues;
+
+  /** Text of the elements being captured, by slot. */
+  private StringBuilder[] mCaptures;
+
+  /** Depth of the element being captured, by slot, or -1 if the slot is not being captured. */
+  private int[] mCaptureDepths;
+
+  /** Whether a slot was matched in the current record. Only the first match of a path counts. */
+  private boolean[] mMatched;
+
+  /** Number of slots whose value is known in the current record. */
+  private int mResolvedCount;
+
+  /** Number of slots being captured in the current record. */
+  private int mCapturingCount;
+
+  /** Whether the cells of the destination columns were written, in the order of mColumns. */
+  private boolean[] mWritten;
+
+  /** Entity ID of the current record, once known. */
+  private EntityId mEntityId;
+
+  /** Timestamp of the cells of the current record, once known. */
+  private Long mTimestamp;
+
+  /** Stack of the open elements of the current record. Frames are reused across records. */
+  private final List<Frame> mFrames = Lists.newArrayList();
+
+  /** A supported source path, compiled. */
+  private static final class CompiledPath {
+    /** Element names of the steps, null for '*'. */
+    private final String[] mNames;
+
+    /**
+     * Positions of the steps among their same-name siblings, or among all siblings for '*'.
+     * 0 for any position.
+     */
+    private final int[] mPositions;
+
+    /** Whether each step selects descendants rather than children. */
+    private final boolean[] mDescendants;
+
+    /** Attribute at the end of the path, or null if the path selects elements. */
+    private final String mAttribute;
+
+    /**
+     * Initializes a compiled path.
+     *
+     * @param names Element names of the steps, null for '*'.
+     * @param positions Positions of the steps among their siblings, 0 for any.
+     * @param descendants Whether each step selects descendants rather than children.
+     * @param attribute Attribute at the end of the path, or null.
+     */
+    private CompiledPath(
+        final String[] names,
+        final int[] positions,
+        final boolean[] descendants,
+        final String attribute
+    ) {
+      mNames = names;
+      mPositions = positions;
+      mDescendants = descendants;
+      mAttribute = attribute;
+    }
+
+    /** @return the number of element steps of this path. */
+    private int getStepCount() {
+      return mNames.length;
+    }
+
+    /** @return whether any step of this path has a position predicate. */
+    private boolean hasPositions() {
+      for (int position : mPositions) {
+        if (position != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Open element of a record.
+   *
+   * <p>
+   *   A frame holds the matching states which apply to the children of its element: each state
+   *   is a source path and the index of the step to match against the children. A frame also
+   *   counts the children of its element by name, to evaluate position predicates.
+   * </p>
+   */
+  private static final class Frame {
+    /** States applying to the children of the element, as (slot &lt;&lt; 8 | step index). */
+    private int[] mStates = new int[8];
+
+    /** Number of states in {@link #mStates}. */
+    private int mStateCount = 0;
+
+    /** Number of children of the element seen so far, by name. Only used for positions. */
+    private final Map<String, int[]> mChildCounts = Maps.newHashMap();
+
+    /** Number of children of the element seen so far. Only used for positions. */
+    private int mChildCount = 0;
+
+    /**
+     * Resets this frame for a new element.
+     *
+     * @return this frame.
+     */
+    private Frame reset() {
+      mStateCount = 0;
+      mChildCounts.clear();
+      mChildCount = 0;
+      return this;
+    }
+
+    /**
+     * Adds a state to this frame.
+     *
+     * @param state State to add.
+     */
+    private void addState(final int state) {
+      if (mStateCount == mStates.length) {
+        mStates = Arrays.copyOf(mStates, mStates.length * 2);
+      }
+      mStates[mStateCount++] = state;
+    }
+
+    /**
+     * Counts a child element.
+     *
+     * @param name Name of the child element.
+     * @return the position of the child among its same-name siblings, starting at 1.
+     */
+    private int countChild(final String name) {
+      mChildCount += 1;
+      int[] count = mChildCounts.get(name);
+      if (null == count) {
+        count = new int[1];
+        mChildCounts.put(name, count);
+      }
+      return ++count[0];
+    }
+  }
+
+  /**
+   * Compiles a source path.
+   *
+   * @param expression Source path, in the supported subset of XPath.
+   * @return the compiled source path, or null if the expression is not supported.
+   */
+  private static CompiledPath compilePath(final String expression) {
+    final List<String> names = Lists.newArrayList();
+    final List<Integer> positions = Lists.newArrayList();
+    final List<Boolean> descendants = Lists.newArrayList();
+    String attribute = null;
+
+    int index = 0;
+    boolean descendant = false;
+    if (expression.startsWith("//")) {
+      descendant = true;
+      index = 2;
+    } else if (expression.startsWith("/")) {
+      index = 1;
+    }
+    while (true) {
+      int end = expression.indexOf('/', index);
+      if (end < 0) {
+        end = expression.length();
+      }
+      final String step = expression.substring(index, end);
+      final Matcher attributeMatcher = ATTRIBUTE_PATTERN.matcher(step);
+      final Matcher stepMatcher = STEP_PATTERN.matcher(step);
+      if (attributeMatcher.matches() && !names.isEmpty() && !descendant
+          && end == expression.length()) {
+        attribute = attributeMatcher.group(1);
+      } else if (stepMatcher.matches()) {
+        final String name = stepMatcher.group(1);
+        names.add("*".equals(name) ? null : name);
+        positions.add((null == stepMatcher.group(2)) ? 0 : Integer.parseInt(stepMatcher.group(2)));
+        descendants.add(descendant);
+      } else {
+        return null;
+      }
+
+      if (end == expression.length()) {
+        break;
+      } else if (expression.startsWith("//", end)) {
+        descendant = true;
+        index = end + 2;
+      } else {
+        descendant = false;
+        index = end + 1;
+      }
+    }
+    if (names.isEmpty() || names.size() > MAX_STEPS) {
+      return null;
+    }
+
+    final int[] positionArray = new int[positions.size()];
+    final boolean[] descendantArray = new boolean[descendants.size()];
+    for (int i = 0; i < positionArray.length; ++i) {
+      positionArray[i] = positions.get(i);
+      descendantArray[i] = descendants.get(i);
+    }
+    return new CompiledPath(
+        names.toArray(new String[names.size()]), positionArray, descendantArray, attribute);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setupImporter(KijiTableContext context) {
+    final Map<String, Integer> slots = Maps.newHashMap();
+    final List<CompiledPath> paths = Lists.newArrayList();
+    final List<String> invalidPaths = Lists.newArrayList();
+
+    mEntityIdSlot = addPath(getEntityIdSource(), slots, paths, invalidPaths);
+    mTimestampSlot =
+        isOverrideTimestamp() ? addPath(getTimestampSource(), slots, paths, invalidPaths) : -1;
+
+    final Collection<KijiColumnName> columns = getDestinationColumns();
+    mColumns = columns.toArray(new KijiColumnName[columns.size()]);
+    mColumnSources = new String[mColumns.length];
+    mColumnSlots = new int[mColumns.length];
+    mColumnConverters = new ValueConverter[mColumns.length];
+    for (int i = 0; i < mColumns.length; ++i) {
+      mColumnSources[i] = getSource(mColumns[i]);
+      mColumnSlots[i] = addPath(mColumnSources[i], slots, paths, invalidPaths);
+      mColumnConverters[i] = getValueConverter(mColumns[i]);
+    }
+
+    if (invalidPaths.size() != 0) {
+      for (String path : invalidPaths) {
+        LOG.error("Unsupported source path: " + path);
+      }
+      throw new RuntimeException("Unsupported source path(s), details can be found in "
+          + "StreamingXMLBulkImporter log file. Use XMLBulkImporter for arbitrary XPath.");
+    }
+
+    mPaths = paths.toArray(new CompiledPath[paths.size()]);
+    mNeedsPositions = false;
+    for (CompiledPath path : mPaths) {
+      mNeedsPositions |= path.hasPositions();
+    }
+    mValues = new String[mPaths.length];
+    mCaptures = new StringBuilder[mPaths.length];
+    for (int slot = 0; slot < mCaptures.length; ++slot) {
+      mCaptures[slot] = new StringBuilder();
+    }
+    mCaptureDepths = new int[mPaths.length];
+    mMatched = new boolean[mPaths.length];
+    mWritten = new boolean[mColumns.length];
+
+    mInputFactory = XMLInputFactory.newInstance();
+    // XMLBulkImporter's DocumentBuilder is not namespace aware either: names include prefixes.
+    mInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    mInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  /**
+   * Compiles a source path, unless it was compiled already.
+   *
+   * @param expression Source path.
+   * @param slots Slots of the source paths compiled so far, by expression. Updated in place.
+   * @param paths Compiled source paths, by slot. Updated in place.
+   * @param invalidPaths Unsupported source paths. Updated in place.
+   * @return the slot of the source path.
+   */
+  private static int addPath(
+      final String expression,
+      final Map<String, Integer> slots,
+      final List<CompiledPath> paths,
+      final List<String> invalidPaths
+  ) {
+    final Integer existing = slots.get(expression);
+    if (null != existing) {
+      return existing;
+    }
+    final CompiledPath path = compilePath(expression);
+    if (null == path) {
+      invalidPaths.add(expression);
+    }
+    final int slot = paths.size();
+    paths.add(path);
+    slots.put(expression, slot);
+    return slot;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void produce(Text xmlText, KijiTableContext context) throws IOException {
+    startRecord(context);
+    try {
+      final XMLStreamReader reader = mInputFactory.createXMLStreamReader(new InputStreamReader(
+          new ByteArrayInputStream(xmlText.getBytes(), 0, xmlText.getLength()), Charsets.UTF_8));
+      try {
+        readRecord(reader, context);
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException xse) {
+      reject(xmlText, context, "Failed to parse XML.");
+      return;
+    }
+
+    final String entityIdStr = mValues[mEntityIdSlot];
+    if (entityIdStr == null || entityIdStr.isEmpty()) {
+      reject(xmlText, context, "Unable to retrieve entityId from source field.");
+      return;
+    }
+    if (null == mTimestamp) {
+      incomplete(xmlText, context, "Detected missing field: " + getTimestampSource());
+      return;
+    }
+    for (int i = 0; i < mColumns.length; ++i) {
+      if (!mWritten[i]) {
+        incomplete(xmlText, context, "Detected missing field: " + mColumnSources[i]);
+      }
+    }
+  }
+
+  /**
+   * Resets the per-record state.
+   *
+   * @param context Context of the import.
+   */
+  private void startRecord(final KijiTableContext context) {
+    Arrays.fill(mValues, null);
+    Arrays.fill(mCaptureDepths, -1);
+    Arrays.fill(mMatched, false);
+    Arrays.fill(mWritten, false);
+    mResolvedCount = 0;
+    mCapturingCount = 0;
+    mEntityId = null;
+    // If timestamp is not overridden in the import descriptor, use the current system time for
+    // all writes to this row.
+    mTimestamp = (mTimestampSlot < 0) ? System.currentTimeMillis() : null;
+  }
+
+  /**
+   * Reads a record, writing cells as their elements close.
+   *
+   * @param reader Reader positioned at the beginning of the record.
+   * @param context Context to write cells to.
+   * @throws XMLStreamException on parse error.
+   * @throws IOException on I/O error.
+   */
+  private void readRecord(final XMLStreamReader reader, final KijiTableContext context)
+      throws XMLStreamException, IOException {
+    // Frame of the document node, whose children are matched against the first steps. Like the
+    // other frames, it is reused across records and must not keep the states of the last one.
+    final Frame root = getFrame(0).reset();
+    for (int slot = 0; slot < mPaths.length; ++slot) {
+      root.addState(slot << 8);
+    }
+
+    int depth = 0;
+    while (reader.hasNext() && mResolvedCount < mPaths.length) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          depth += 1;
+          startElement(reader, getFrame(depth - 1), getFrame(depth), depth, context);
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          if (mCapturingCount > 0) {
+            endElement(depth, context);
+          }
+          depth -= 1;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (mCapturingCount > 0) {
+            for (int slot = 0; slot < mPaths.length; ++slot) {
+              if (mCaptureDepths[slot] >= 0) {
+                mCaptures[slot].append(
+                    reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+              }
+            }
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Gets the frame of a depth. The frame is not reset, and may hold the state of an element
+   * read before.
+   *
+   * @param depth Depth of the element.
+   * @return the frame of the depth.
+   */
+  private Frame getFrame(final int depth) {
+    while (mFrames.size() <= depth) {
+      mFrames.add(new Frame());
+    }
+    return mFrames.get(depth);
+  }
+
+  /**
+   * Matches an element against the states of its parent.
+   *
+   * @param reader Reader positioned at the start of the element.
+   * @param parent Frame of the parent of the element.
+   * @param frame Frame of the element, already reset.
+   * @param depth Depth of the element.
+   * @param context Context to write cells to.
+   * @throws IOException on I/O error.
+   */
+  private void startElement(
+      final XMLStreamReader reader,
+      final Frame parent,
+      final Frame frame,
+      final int depth,
+      final KijiTableContext context
+  ) throws IOException {
+    frame.reset();
+    if (parent.mStateCount == 0) {
+      return;
+    }
+    final String name = getName(reader.getPrefix(), reader.getLocalName());
+    final int position = mNeedsPositions ? parent.countChild(name) : 0;
+
+    for (int i = 0; i < parent.mStateCount; ++i) {
+      final int state = parent.mStates[i];
+      final int slot = state >>> 8;
+      if (mMatched[slot]) {
+        continue;
+      }
+      final int step = state & 0xff;
+      final CompiledPath path = mPaths[slot];
+      if (path.mDescendants[step]) {
+        // Descendant steps may match deeper in the tree as well.
+        frame.addState(state);
+      }
+      final String stepName = path.mNames[step];
+      final int stepPosition = path.mPositions[step];
+      if (null != stepName) {
+        if (!stepName.equals(name) || (0 != stepPosition && stepPosition != position)) {
+          continue;
+        }
+      } else if (0 != stepPosition && stepPosition != parent.mChildCount) {
+        continue;
+      }
+      if (step + 1 < path.getStepCount()) {
+        frame.addState((slot << 8) | (step + 1));
+      } else if (null != path.mAttribute) {
+        mMatched[slot] = true;
+        resolve(slot, getAttribute(reader, path.mAttribute), context);
+      } else {
+        mMatched[slot] = true;
+        mCaptures[slot].setLength(0);
+        mCaptureDepths[slot] = depth;
+        mCapturingCount += 1;
+      }
+    }
+  }
+
+  /**
+   * Completes the captures of the elements closing at a depth.
+   *
+   * @param depth Depth of the closing element.
+   * @param context Context to write cells to.
+   * @throws IOException on I/O error.
+   */
+  private void endElement(final int depth, final KijiTableContext context) throws IOException {
+    for (int slot = 0; slot < mPaths.length; ++slot) {
+      if (mCaptureDepths[slot] == depth) {
+        mCaptureDepths[slot] = -1;
+        mCapturingCount -= 1;
+        resolve(slot, mCaptures[slot].toString(), context);
+      }
+    }
+  }
+
+  /**
+   * Records the value of a source path, and writes the cells which can be written.
+   *
+   * @param slot Slot of the source path.
+   * @param value Value of the source path. Empty if the attribute does not exist.
+   * @param context Context to write cells to.
+   * @throws IOException on I/O error.
+   */
+  private void resolve(final int slot, final String value, final KijiTableContext context)
+      throws IOException {
+    mValues[slot] = value;
+    mResolvedCount += 1;
+
+    final boolean wasReady = isReady();
+    if (slot == mEntityIdSlot && !value.isEmpty()) {
+      mEntityId = context.getEntityId(value);
+    }
+    if (slot == mTimestampSlot) {
+      try {
+        mTimestamp = Long.parseLong(value);
+      } catch (NumberFormatException nfe) {
+        mTimestamp = null;
+      }
+    }
+
+    if (!isReady()) {
+      return;
+    }
+    for (int i = 0; i < mColumns.length; ++i) {
+      if (!mWritten[i] && (!wasReady || mColumnSlots[i] == slot)) {
+        final String fieldValue = mValues[mColumnSlots[i]];
+        if (fieldValue != null && !fieldValue.isEmpty()) {
+          context.put(mEntityId, mColumns[i].getFamily(), mColumns[i].getQualifier(), mTimestamp,
+              mColumnConverters[i].convert(fieldValue));
+          mWritten[i] = true;
+        }
+      }
+    }
+  }
+
+  /** @return whether the cells of the current record can be written. */
+  private boolean isReady() {
+    return (null != mEntityId) && (null != mTimestamp);
+  }
+
+  /**
+   * Gets the value of an attribute of the current element.
+   *
+   * @param reader Reader positioned at the start of an element.
+   * @param attribute Name of the attribute.
+   * @return the value of the attribute, or an empty string if the element has no such attribute.
+   */
+  private static String getAttribute(final XMLStreamReader reader, final String attribute) {
+    for (int i = 0; i < reader.getAttributeCount(); ++i) {
+      final String name =
+          getName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+      if (attribute.equals(name)) {
+        return reader.getAttributeValue(i);
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Gets the qualified name of an element or attribute.
+   *
+   * @param prefix Prefix of the name, if any.
+   * @param localName Local name.
+   * @return the qualified name.
+   */
+  private static String getName(final String prefix, final String localName) {
+    return (null == prefix || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+  }
+}
@@ -53,6 +53,21 @@ public abstract class LabelNodeGatherer extends NodeGatherer<Text> {
     write(mText, node, context);
   }
 
+  /**
+   * Writes a node with the key as the label, merging it with the nodes previously written with
+   * the same label.
+   *
+   * @param node The node to write to the output. It may be reused once written.
+   * @param context The mapper context.
+   * @throws IOException If there is an error.
+   * @see NodeGatherer#aggregate(Object, Node, GathererContext)
+   */
+  public void aggregate(Node node, GathererContext<Text, AvroValue<Node>> context)
+      throws IOException {
+    // The key is held until the merged node is output, so it can not be reused.
+    aggregate(new Text(node.getLabel().toString()), node, context);
+  }
+
   @Override
   public Class<?> getOutputKeyClass() {
     return Text.class;
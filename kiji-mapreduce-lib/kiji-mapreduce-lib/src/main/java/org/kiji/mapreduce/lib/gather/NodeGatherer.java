@@ -30,10 +30,19 @@ import org.kiji.mapreduce.gather.GathererContext;
 import org.kiji.mapreduce.gather.KijiGatherer;
 
 import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.AggregateNodeMerger.MergeNodeAggregateType;
+import org.kiji.mapreduce.lib.graph.PartialNodeAggregator;
+import org.kiji.mapreduce.lib.reduce.MergeNodeReducer;
 
 /**
  * Base class for gatherers that output <key, Node> pairs.
  *
+ * <p>Nodes written with {@link #aggregate} are partially merged in memory before they are output,
+ * using the aggregation method of the <code>merge.node.aggregate.type</code> configuration
+ * variable, up to <code>merge.node.partial.max.buffered.nodes</code> buffered nodes. Their
+ * output must be merged by a {@link org.kiji.mapreduce.lib.reduce.StreamingMergeNodeReducer}.
+ * </p>
+ *
  * @param <K> The type of the MapReduce output key.
  */
 public abstract class NodeGatherer<K> extends KijiGatherer<K, AvroValue<Node>>
@@ -41,6 +50,9 @@ public abstract class NodeGatherer<K> extends KijiGatherer<K, AvroValue<Node>>
   /** A reusable output avro value wrapper for a node. */
   private AvroValue<Node> mNode;
 
+  /** Partial aggregator of the nodes written with aggregate(), created on first use. */
+  private PartialNodeAggregator<K> mAggregator;
+
   /** {@inheritDoc} */
   @Override
   public void setup(GathererContext<K, AvroValue<Node>> context) throws IOException {
@@ -62,6 +74,47 @@ public abstract class NodeGatherer<K> extends KijiGatherer<K, AvroValue<Node>>
     context.write(key, mNode);
   }
 
+  /**
+   * Writes a &lt;key, Node&gt; pair, merging it with the nodes previously written with the same
+   * key and label. Partially merged nodes are output when the in-memory buffer is full, and when
+   * the gatherer is cleaned up.
+   *
+   * @param key A key for the output pair. It is held until the node is output, and must not be
+   *     modified once written.
+   * @param node A node value to write. It is not retained, and may be reused once written.
+   * @param context The mapper context.
+   * @throws IOException If there is an error.
+   */
+  public void aggregate(K key, Node node, final GathererContext<K, AvroValue<Node>> context)
+      throws IOException {
+    if (null == mAggregator) {
+      final String aggregateType = getConf().get(
+          MergeNodeReducer.CONF_MERGE_NODE_AGGREGATE_TYPE, MergeNodeAggregateType.SUM.name());
+      mAggregator = new PartialNodeAggregator<K>(
+          MergeNodeAggregateType.valueOf(aggregateType),
+          getConf().getInt(PartialNodeAggregator.CONF_MAX_BUFFERED_NODES,
+              PartialNodeAggregator.DEFAULT_MAX_BUFFERED_NODES),
+          new PartialNodeAggregator.Writer<K>() {
+            /** {@inheritDoc} */
+            @Override
+            public void write(K outputKey, Node partialNode) throws IOException {
+              NodeGatherer.this.write(outputKey, partialNode, context);
+            }
+          });
+    }
+    mAggregator.add(key, node);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void cleanup(GathererContext<K, AvroValue<Node>> context) throws IOException {
+    if (null != mAggregator) {
+      mAggregator.flush();
+      mAggregator = null;
+    }
+    super.cleanup(context);
+  }
+
   @Override
   public Class<?> getOutputValueClass() {
     return AvroValue.class;
@@ -0,0 +1,324 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import org.kiji.mapreduce.lib.avro.Edge;
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.AggregateNodeMerger.MergeNodeAggregateType;
+
+/**
+ * Merges nodes with the same label incrementally, one node at a time.
+ *
+ * <p>An accumulator computes the same merged node as the {@link AggregateNodeMerger} of its
+ * aggregate type: the weights of the nodes are aggregated, the weights of their edges with the
+ * same label and the same target are summed, and the targets of these edges are merged
+ * recursively. Unlike a {@link NodeMerger}, it does not need the list of the nodes to merge: it
+ * only holds the aggregates of the nodes and of their distinct edges, so that the memory it
+ * needs does not grow with the number of merged nodes.</p>
+ *
+ * <p>Accumulators are combiner-compatible. {@link #toPartialNode()} returns a partially merged
+ * node, which records the number of nodes it stands for in the
+ * {@link #MERGED_NODE_COUNT_ANNOTATION} annotation. Adding partially merged nodes to an
+ * accumulator yields the same node as adding the original nodes, for all aggregate types:
+ * partial nodes can be written by combiners, or by mappers that aggregate their output.</p>
+ *
+ * <p>Annotations of the merged nodes and edges are not preserved. Edges must have targets.
+ * This class is not thread-safe.</p>
+ */
+public final class NodeAccumulator {
+  /**
+   * Annotation of a partially merged node holding the number of nodes it was merged from.
+   * Nodes without this annotation stand for one node.
+   */
+  public static final String MERGED_NODE_COUNT_ANNOTATION = "kiji.merge.node.count";
+
+  /** Aggregate applied to the node weights. */
+  private final MergeNodeAggregateType mAggregateType;
+
+  /** Label of the merged nodes, or null if no node was added. */
+  private String mLabel;
+
+  /** Aggregated weight. For MEAN, this is the sum of the weights. */
+  private double mWeight;
+
+  /** Number of nodes merged so far. */
+  private long mCount;
+
+  /** Accumulated edges, by target label and edge label. */
+  private final Map<EdgeKey, EdgeAccumulator> mEdges = Maps.newHashMap();
+
+  /** Number of nodes held by this accumulator, including the targets of its edges. */
+  private int mSize;
+
+  /** Identifies the edges that are merged together. */
+  private static final class EdgeKey {
+    /** Label of the target node. */
+    private final String mTargetLabel;
+
+    /** Label of the edge. May be null. */
+    private final String mLabel;
+
+    /**
+     * Creates a key for the edges with the given labels.
+     *
+     * @param targetLabel Label of the target node.
+     * @param label Label of the edge. May be null.
+     */
+    private EdgeKey(String targetLabel, String label) {
+      mTargetLabel = targetLabel;
+      mLabel = label;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof EdgeKey)) {
+        return false;
+      }
+      final EdgeKey other = (EdgeKey) obj;
+      return mTargetLabel.equals(other.mTargetLabel) && Objects.equal(mLabel, other.mLabel);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mTargetLabel, mLabel);
+    }
+  }
+
+  /** Aggregate of the edges with the same label and the same target. */
+  private static final class EdgeAccumulator {
+    /** Label of the edges. May be null. */
+    private final String mLabel;
+
+    /** Sum of the weights of the edges. */
+    private double mWeight;
+
+    /** Accumulator of the targets of the edges. */
+    private final NodeAccumulator mTarget;
+
+    /**
+     * Creates an empty edge accumulator.
+     *
+     * @param label Label of the edges. May be null.
+     * @param aggregateType Aggregate applied to the weights of the target nodes.
+     */
+    private EdgeAccumulator(String label, MergeNodeAggregateType aggregateType) {
+      mLabel = label;
+      mTarget = new NodeAccumulator(aggregateType);
+    }
+  }
+
+  /**
+   * Creates an empty accumulator.
+   *
+   * @param aggregateType Aggregate to apply to the weights of the nodes.
+   */
+  public NodeAccumulator(MergeNodeAggregateType aggregateType) {
+    mAggregateType = Preconditions.checkNotNull(aggregateType);
+    reset();
+  }
+
+  /** Discards the merged nodes, so that the accumulator can be reused. */
+  public void reset() {
+    mLabel = null;
+    mCount = 0;
+    mEdges.clear();
+    mSize = 1;
+    switch (mAggregateType) {
+      case MIN:
+        mWeight = Double.POSITIVE_INFINITY;
+        break;
+      case MAX:
+        mWeight = Double.NEGATIVE_INFINITY;
+        break;
+      default:
+        mWeight = 0.0;
+        break;
+    }
+  }
+
+  /**
+   * Merges a node, or a partially merged node, into this accumulator.
+   *
+   * <p>The node is not retained: it may be reused by the caller once this method returns.</p>
+   *
+   * @param node The node to merge. Its label must be the label of the nodes already merged.
+   */
+  public void add(Node node) {
+    addNode(node);
+  }
+
+  /**
+   * Merges a node into this accumulator.
+   *
+   * @param node The node to merge.
+   * @return the number of nodes this accumulator grew by.
+   */
+  private int addNode(Node node) {
+    final String label = node.getLabel().toString();
+    if (null == mLabel) {
+      mLabel = label;
+    } else {
+      Preconditions.checkArgument(mLabel.equals(label),
+          "Can not merge node '%s' into node '%s'.", label, mLabel);
+    }
+
+    final long count = getMergedNodeCount(node);
+    final double weight = node.getWeight();
+    switch (mAggregateType) {
+      case COUNT:
+        // The weight of a partially merged node is its count.
+        mWeight += count;
+        break;
+      case SUM:
+      case MEAN:
+        mWeight += weight;
+        break;
+      case MIN:
+        mWeight = Math.min(mWeight, weight);
+        break;
+      case MAX:
+        mWeight = Math.max(mWeight, weight);
+        break;
+      default:
+        throw new RuntimeException("Unsupported node aggregate.");
+    }
+    mCount += count;
+
+    int grown = 0;
+    if (null != node.getEdges()) {
+      for (Edge edge : node.getEdges()) {
+        final Node target = edge.getTarget();
+        Preconditions.checkArgument(null != target,
+            "Can not merge an edge without target from node '%s'.", mLabel);
+        final String edgeLabel = (null == edge.getLabel()) ? null : edge.getLabel().toString();
+        final EdgeKey key = new EdgeKey(target.getLabel().toString(), edgeLabel);
+        EdgeAccumulator edgeAccumulator = mEdges.get(key);
+        if (null == edgeAccumulator) {
+          edgeAccumulator = new EdgeAccumulator(edgeLabel, mAggregateType);
+          mEdges.put(key, edgeAccumulator);
+          grown += 1;
+        }
+        edgeAccumulator.mWeight += edge.getWeight();
+        grown += edgeAccumulator.mTarget.addNode(target);
+      }
+    }
+    mSize += grown;
+    return grown;
+  }
+
+  /**
+   * Reads the number of nodes a node stands for.
+   *
+   * @param node A node, or a partially merged node.
+   * @return the number of nodes the node was merged from.
+   */
+  private static long getMergedNodeCount(Node node) {
+    final Map<?, ?> annotations = node.getAnnotations();
+    if (null != annotations) {
+      // Annotation keys may be Strings or Utf8s, which are not equal to each other.
+      for (Map.Entry<?, ?> entry : annotations.entrySet()) {
+        if (MERGED_NODE_COUNT_ANNOTATION.equals(entry.getKey().toString())) {
+          return Long.parseLong(entry.getValue().toString());
+        }
+      }
+    }
+    return 1;
+  }
+
+  /** @return whether no node was merged into this accumulator. */
+  public boolean isEmpty() {
+    return 0 == mCount;
+  }
+
+  /** @return the number of nodes merged into this accumulator. */
+  public long getMergedNodeCount() {
+    return mCount;
+  }
+
+  /**
+   * Returns the number of nodes held by this accumulator: one for the merged node, and one for
+   * each distinct edge, recursively. This is a measure of the memory used by the accumulator.
+   *
+   * @return the number of nodes held by this accumulator.
+   */
+  public int getSize() {
+    return mSize;
+  }
+
+  /**
+   * Builds the merged node.
+   *
+   * @return the merged node.
+   */
+  public Node toNode() {
+    return build(false);
+  }
+
+  /**
+   * Builds a partially merged node, to be merged further into another accumulator.
+   *
+   * @return the partially merged node.
+   */
+  public Node toPartialNode() {
+    return build(true);
+  }
+
+  /**
+   * Builds the merged node.
+   *
+   * @param partial Whether to build a partially merged node.
+   * @return the merged node.
+   */
+  private Node build(boolean partial) {
+    Preconditions.checkState(!isEmpty(), "No node was merged.");
+    final NodeBuilder builder = new NodeBuilder()
+        .setLabel(mLabel)
+        .setWeight((partial || MergeNodeAggregateType.MEAN != mAggregateType)
+            ? mWeight : mWeight / mCount);
+    if (partial) {
+      builder.addAnnotation(MERGED_NODE_COUNT_ANNOTATION, Long.toString(mCount));
+    }
+    final Node node = builder.build();
+    if (!mEdges.isEmpty()) {
+      final List<Edge> edges = new ArrayList<Edge>(mEdges.size());
+      for (EdgeAccumulator edgeAccumulator : mEdges.values()) {
+        edges.add(new EdgeBuilder()
+            .setLabel(edgeAccumulator.mLabel)
+            .setWeight(edgeAccumulator.mWeight)
+            .setTarget(edgeAccumulator.mTarget.build(partial))
+            .build());
+      }
+      Collections.sort(edges, NodeUtils.EDGE_WEIGHT_EDGE_COMPARATOR);
+      node.setEdges(edges);
+    }
+    return node;
+  }
+}
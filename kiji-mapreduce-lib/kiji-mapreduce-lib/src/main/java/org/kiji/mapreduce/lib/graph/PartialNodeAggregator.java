@@ -0,0 +1,212 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.graph;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.AggregateNodeMerger.MergeNodeAggregateType;
+
+/**
+ * Aggregates (key, node) pairs in a bounded in-memory hash table before they are written, so that
+ * a mapper emits one partially merged node per key and node label rather than one node per pair.
+ *
+ * <p>The nodes written with the same key and the same label are merged by a
+ * {@link NodeAccumulator}, and the partially merged nodes are handed to a {@link Writer} when
+ * they are flushed. The reducer must then merge partially merged nodes, as the
+ * {@link org.kiji.mapreduce.lib.reduce.StreamingMergeNodeReducer} does.</p>
+ *
+ * <p>The memory held by the table is bounded by a maximum number of buffered nodes, counting the
+ * targets of the distinct edges of the merged nodes. When a single entry holds more than half of
+ * this budget, as happens for skewed keys with many distinct edges, this entry alone is spilled
+ * to the writer. When the table as a whole exceeds the budget, all its entries are flushed.
+ * Either way, the reducer merges the partial nodes of a key written at different times.</p>
+ *
+ * <p>Keys are held until they are flushed, so they must not be modified by the caller once
+ * written. {@link #flush()} must be called when the mapper completes. This class is not
+ * thread-safe.</p>
+ *
+ * @param <K> The type of the keys.
+ */
+public final class PartialNodeAggregator<K> {
+  private static final Logger LOG = LoggerFactory.getLogger(PartialNodeAggregator.class);
+
+  /** Configuration variable for the maximum number of nodes buffered by the aggregator. */
+  public static final String CONF_MAX_BUFFERED_NODES = "merge.node.partial.max.buffered.nodes";
+
+  /** Default maximum number of nodes buffered by the aggregator. */
+  public static final int DEFAULT_MAX_BUFFERED_NODES = 100000;
+
+  /**
+   * Receives the partially merged nodes flushed by an aggregator.
+   *
+   * @param <K> The type of the keys.
+   */
+  public interface Writer<K> {
+    /**
+     * Writes a partially merged node.
+     *
+     * @param key The key the node was written with.
+     * @param node The partially merged node.
+     * @throws IOException If there is an error.
+     */
+    void write(K key, Node node) throws IOException;
+  }
+
+  /** Identifies the nodes that are merged together. */
+  private static final class EntryKey<K> {
+    /** Key the nodes were written with. */
+    private final K mKey;
+
+    /** Label of the nodes. */
+    private final String mLabel;
+
+    /**
+     * Creates a key for the nodes written with the given key and label.
+     *
+     * @param key Key the nodes were written with.
+     * @param label Label of the nodes.
+     */
+    private EntryKey(K key, String label) {
+      mKey = key;
+      mLabel = label;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof EntryKey)) {
+        return false;
+      }
+      final EntryKey<?> other = (EntryKey<?>) obj;
+      return mKey.equals(other.mKey) && mLabel.equals(other.mLabel);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mKey, mLabel);
+    }
+  }
+
+  /** Aggregate type of the merged nodes. */
+  private final MergeNodeAggregateType mAggregateType;
+
+  /** Maximum number of nodes buffered. */
+  private final int mMaxBufferedNodes;
+
+  /** Writer of the flushed nodes. */
+  private final Writer<K> mWriter;
+
+  /** Accumulators of the buffered nodes. */
+  private final Map<EntryKey<K>, NodeAccumulator> mAccumulators = Maps.newHashMap();
+
+  /** Number of nodes held by the accumulators. */
+  private long mBufferedNodes = 0;
+
+  /**
+   * Creates an empty aggregator.
+   *
+   * @param aggregateType Aggregate to apply to the weights of the merged nodes.
+   * @param maxBufferedNodes Maximum number of nodes to buffer. Must be positive.
+   * @param writer Writer of the partially merged nodes.
+   */
+  public PartialNodeAggregator(
+      MergeNodeAggregateType aggregateType,
+      int maxBufferedNodes,
+      Writer<K> writer) {
+    Preconditions.checkArgument(maxBufferedNodes > 0,
+        "Maximum number of buffered nodes must be positive: %s", maxBufferedNodes);
+    mAggregateType = Preconditions.checkNotNull(aggregateType);
+    mMaxBufferedNodes = maxBufferedNodes;
+    mWriter = Preconditions.checkNotNull(writer);
+  }
+
+  /**
+   * Adds a node, merging it with the buffered nodes with the same key and label. This may flush
+   * some of the buffered nodes.
+   *
+   * @param key The key of the node.
+   * @param node The node to add. It is not retained, and may be reused by the caller.
+   * @throws IOException If there is an error writing flushed nodes.
+   */
+  public void add(K key, Node node) throws IOException {
+    final EntryKey<K> entryKey = new EntryKey<K>(key, node.getLabel().toString());
+    NodeAccumulator accumulator = mAccumulators.get(entryKey);
+    int sizeBefore = 0;
+    if (null == accumulator) {
+      accumulator = new NodeAccumulator(mAggregateType);
+      mAccumulators.put(entryKey, accumulator);
+    } else {
+      sizeBefore = accumulator.getSize();
+    }
+    accumulator.add(node);
+    mBufferedNodes += accumulator.getSize() - sizeBefore;
+
+    if (accumulator.getSize() > mMaxBufferedNodes / 2) {
+      // Skewed key: spill it alone rather than evicting every other entry.
+      LOG.debug("Spilling {} partially merged nodes for label '{}'.",
+          accumulator.getSize(), entryKey.mLabel);
+      spill(entryKey, accumulator);
+    } else if (mBufferedNodes > mMaxBufferedNodes) {
+      LOG.debug("Flushing {} partially merged nodes for {} entries.",
+          mBufferedNodes, mAccumulators.size());
+      flush();
+    }
+  }
+
+  /**
+   * Writes the partially merged node of an entry, and removes the entry.
+   *
+   * @param entryKey Key of the entry.
+   * @param accumulator Accumulator of the entry.
+   * @throws IOException If there is an error writing the node.
+   */
+  private void spill(EntryKey<K> entryKey, NodeAccumulator accumulator) throws IOException {
+    mWriter.write(entryKey.mKey, accumulator.toPartialNode());
+    mAccumulators.remove(entryKey);
+    mBufferedNodes -= accumulator.getSize();
+  }
+
+  /**
+   * Writes all the buffered nodes, and empties the table.
+   *
+   * @throws IOException If there is an error writing the nodes.
+   */
+  public void flush() throws IOException {
+    for (Map.Entry<EntryKey<K>, NodeAccumulator> entry : mAccumulators.entrySet()) {
+      mWriter.write(entry.getKey().mKey, entry.getValue().toPartialNode());
+    }
+    mAccumulators.clear();
+    mBufferedNodes = 0;
+  }
+
+  /** @return the number of nodes currently buffered. */
+  public long getBufferedNodeCount() {
+    return mBufferedNodes;
+  }
+}
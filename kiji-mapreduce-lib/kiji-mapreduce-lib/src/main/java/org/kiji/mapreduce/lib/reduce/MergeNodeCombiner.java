@@ -0,0 +1,77 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.reduce;
+
+import java.io.IOException;
+
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.PartialNodeAggregator;
+
+/**
+ * Combiner that partially merges nodes with the same label together.
+ *
+ * <p>Each input collection of nodes with the same key is reduced to one partially merged node per
+ * label, which must then be merged by a {@link StreamingMergeNodeReducer} configured with the
+ * same <code>merge.node.aggregate.type</code>. Partially merged nodes are not final: for
+ * instance, the weight of a partially merged MEAN node is the sum of the weights of its nodes.</p>
+ *
+ * <p>The nodes are streamed through a {@link PartialNodeAggregator}, so that a key with many
+ * distinct edges is spilled as several partially merged nodes rather than held in memory at once.
+ * The bound is configured with <code>merge.node.partial.max.buffered.nodes</code>.</p>
+ *
+ * @param <K> The type of the MapReduce key (the same type is used for input and output).
+ */
+public class MergeNodeCombiner<K> extends NodeValueReducer<K> {
+  /** Maximum number of nodes buffered while combining a key. */
+  private int mMaxBufferedNodes;
+
+  /** {@inheritDoc} */
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    super.setup(context);
+    mMaxBufferedNodes = context.getConfiguration().getInt(
+        PartialNodeAggregator.CONF_MAX_BUFFERED_NODES,
+        PartialNodeAggregator.DEFAULT_MAX_BUFFERED_NODES);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void reduceAvro(K key, Iterable<Node> values, final Context context)
+      throws IOException, InterruptedException {
+    final PartialNodeAggregator<K> aggregator = new PartialNodeAggregator<K>(
+        StreamingMergeNodeReducer.getAggregateType(context.getConfiguration()),
+        mMaxBufferedNodes,
+        new PartialNodeAggregator.Writer<K>() {
+          /** {@inheritDoc} */
+          @Override
+          public void write(K outputKey, Node node) throws IOException {
+            try {
+              MergeNodeCombiner.this.write(outputKey, node, context);
+            } catch (InterruptedException ie) {
+              throw new IOException(ie);
+            }
+          }
+        });
+    for (Node value : values) {
+      aggregator.add(key, value);
+    }
+    aggregator.flush();
+  }
+}
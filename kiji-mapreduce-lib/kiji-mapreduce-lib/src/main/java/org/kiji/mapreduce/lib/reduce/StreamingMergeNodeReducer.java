@@ -0,0 +1,102 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.reduce;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
+
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.AggregateNodeMerger.MergeNodeAggregateType;
+import org.kiji.mapreduce.lib.graph.NodeAccumulator;
+
+/**
+ * Merges nodes with the same label together, one node at a time.
+ *
+ * <p>This reducer computes the same merged nodes as the {@link MergeNodeReducer}, with the
+ * aggregation method determined by the same <code>merge.node.aggregate.type</code>
+ * configuration variable. Rather than copying every node of a group into a list before merging
+ * them, it streams the nodes through one {@link NodeAccumulator} per label, so that its memory
+ * usage is bounded by the number of distinct edges of the merged nodes instead of the number of
+ * nodes in the group. This matters for hot keys with millions of nodes.</p>
+ *
+ * <p>This reducer also accepts the partially merged nodes written by the
+ * {@link MergeNodeCombiner}, and by gatherers which aggregate their output with
+ * {@link org.kiji.mapreduce.lib.gather.NodeGatherer#aggregate}.</p>
+ *
+ * @param <K> The type of the MapReduce key (the same type is used for input and output).
+ */
+public class StreamingMergeNodeReducer<K> extends NodeValueReducer<K> {
+  /** The aggregation method of the merged nodes. */
+  private MergeNodeAggregateType mAggregateType;
+
+  /** {@inheritDoc} */
+  @Override
+  protected void setup(Context context) throws IOException, InterruptedException {
+    super.setup(context);
+    mAggregateType = getAggregateType(context.getConfiguration());
+  }
+
+  /**
+   * Reads the aggregation method of the merged nodes from a configuration.
+   *
+   * @param conf The configuration to read.
+   * @return the configured aggregation method, or SUM if none is configured.
+   */
+  static MergeNodeAggregateType getAggregateType(Configuration conf) {
+    return MergeNodeAggregateType.valueOf(conf.get(
+        MergeNodeReducer.CONF_MERGE_NODE_AGGREGATE_TYPE, MergeNodeAggregateType.SUM.name()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void reduceAvro(K key, Iterable<Node> values, Context context)
+      throws IOException, InterruptedException {
+    final Map<String, NodeAccumulator> accumulators = Maps.newHashMap();
+    for (Node value : values) {
+      final String label = value.getLabel().toString();
+      NodeAccumulator accumulator = accumulators.get(label);
+      if (null == accumulator) {
+        accumulator = new NodeAccumulator(mAggregateType);
+        accumulators.put(label, accumulator);
+      }
+      accumulator.add(value);
+    }
+
+    for (NodeAccumulator accumulator : accumulators.values()) {
+      final Node merged = accumulator.toNode();
+      if (finalize(merged)) {
+        write(key, merged, context);
+      }
+    }
+  }
+
+  /**
+   * Last chance to modify a node before it is output.  It has already been merged.
+   *
+   * @param node the merged node.
+   * @return true if node may be output, false if it should be filtered.
+   */
+  protected boolean finalize(Node node) {
+    return true;
+  }
+}
@@ -0,0 +1,309 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.util;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.io.Text;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * Tokenizer that splits RFC 4180 (http://tools.ietf.org/html/rfc4180) compliant CSV and TSV lines
+ * of UTF-8 text into fields, without decoding or copying the line.
+ *
+ * <p>
+ *   The tokenizer accepts the same lines as {@link CSVParser}, but works on the bytes of the line
+ *   in a single pass: the delimiter and the double quote are ASCII characters, which never occur
+ *   within the encoding of another character in UTF-8. Fields are exposed as slices of a byte
+ *   buffer, by index. Unquoted fields, and quoted fields without escaped double quotes, are slices
+ *   of the tokenized line itself; only quoted fields with escaped double quotes are copied, into a
+ *   buffer owned by the tokenizer.
+ * </p>
+ *
+ * <p>
+ *   Tokenizers are meant to be reused across lines. The fields of a line are valid until the next
+ *   line is tokenized, and only as long as the buffer of the line is not modified. Tokenizers are
+ *   not thread-safe.
+ * </p>
+ *
+ * <h2>Typical invocation:</h2>
+ * <pre><code>
+ *   final CSVTokenizer tokenizer = CSVTokenizer.forCSV();
+ *   final int fieldCount = tokenizer.tokenize(text);
+ *   for (int i = 0; i &lt; fieldCount; i++) {
+ *     final String field = tokenizer.getFieldAsString(i);
+ *   }
+ * </code></pre>
+ */
+@ApiAudience.Public
+public final class CSVTokenizer {
+  /** Delimiter of CSV fields. */
+  private static final byte CSV_DELIMITER = ',';
+
+  /** Delimiter of TSV fields. */
+  private static final byte TSV_DELIMITER = '\t';
+
+  /** RFC 4180 uses double quotes for the purposes of escaping. */
+  private static final byte ESCAPE_CHARACTER = '"';
+
+  /** Delimiter of the fields. */
+  private final byte mDelimiter;
+
+  /** Buffer of the tokenized line. */
+  private byte[] mLine = null;
+
+  /** Buffer holding the unescaped content of quoted fields with escaped double quotes. */
+  private byte[] mUnescaped = new byte[64];
+
+  /** Number of bytes used in {@link #mUnescaped}. */
+  private int mUnescapedLength = 0;
+
+  /** Number of fields in the tokenized line. */
+  private int mFieldCount = 0;
+
+  /** Offsets of the fields in their buffer. */
+  private int[] mFieldStarts = new int[16];
+
+  /** Lengths of the fields, in bytes. */
+  private int[] mFieldLengths = new int[16];
+
+  /** Whether each field lives in {@link #mUnescaped} rather than in {@link #mLine}. */
+  private boolean[] mFieldUnescaped = new boolean[16];
+
+  /**
+   * Initializes a tokenizer.
+   *
+   * @param delimiter Delimiter of the fields. Must be an ASCII character other than '"'.
+   */
+  private CSVTokenizer(final byte delimiter) {
+    Preconditions.checkArgument(delimiter > 0 && delimiter != ESCAPE_CHARACTER,
+        "Invalid delimiter: %s", delimiter);
+    mDelimiter = delimiter;
+  }
+
+  /** @return a new tokenizer for comma separated lines. */
+  public static CSVTokenizer forCSV() {
+    return new CSVTokenizer(CSV_DELIMITER);
+  }
+
+  /** @return a new tokenizer for tab separated lines. */
+  public static CSVTokenizer forTSV() {
+    return new CSVTokenizer(TSV_DELIMITER);
+  }
+
+  /**
+   * Tokenizes a line of text.
+   *
+   * @param line Line of text to tokenize.
+   * @return the number of fields in the line.
+   * @throws ParseException if there is an issue with escaping.
+   */
+  public int tokenize(final Text line) throws ParseException {
+    return tokenize(line.getBytes(), 0, line.getLength());
+  }
+
+  /**
+   * Tokenizes a line of UTF-8 text.
+   *
+   * @param bytes Buffer holding the line.
+   * @param offset Offset of the line in the buffer.
+   * @param length Length of the line, in bytes.
+   * @return the number of fields in the line.
+   * @throws ParseException if there is an issue with escaping. Offsets in exceptions are relative
+   *     to the beginning of the line, in bytes.
+   */
+  public int tokenize(final byte[] bytes, final int offset, final int length)
+      throws ParseException {
+    mLine = bytes;
+    mUnescapedLength = 0;
+    mFieldCount = 0;
+
+    final int end = offset + length;
+    int pos = offset;
+    while (true) {
+      if (pos < end && bytes[pos] == ESCAPE_CHARACTER) {
+        pos = readQuotedField(bytes, offset, pos, end);
+      } else {
+        final int start = pos;
+        while (pos < end && bytes[pos] != mDelimiter) {
+          if (bytes[pos] == ESCAPE_CHARACTER) {
+            // Escaped strings must comprise the entire field
+            throw new ParseException(
+                "Optional double quotes(\") not at the beginning of the field", pos - offset);
+          }
+          pos++;
+        }
+        addField(start, pos - start, false);
+      }
+
+      // pos is now either at the end of the line, or at a delimiter.
+      if (pos == end) {
+        return mFieldCount;
+      }
+      pos++;  // Skip the delimiter; a trailing delimiter is followed by an empty field.
+    }
+  }
+
+  /**
+   * Reads a quoted field.
+   *
+   * @param bytes Buffer holding the line.
+   * @param offset Offset of the line in the buffer.
+   * @param quote Offset of the opening double quote of the field.
+   * @param end Offset of the end of the line.
+   * @return the offset following the closing double quote of the field.
+   * @throws ParseException if there is an issue with escaping.
+   */
+  private int readQuotedField(
+      final byte[] bytes,
+      final int offset,
+      final int quote,
+      final int end
+  ) throws ParseException {
+    final int start = quote + 1;  // Start beyond the quote
+    int pos = start;
+    int unescapedStart = -1;  // Set once the field requires unescaping.
+    int copiedUpTo = start;
+    while (true) {
+      if (pos == end) {
+        // No closing quote, so clearly this string never got unescaped
+        throw new ParseException("Unmatched double quote", end - offset);
+      }
+      if (bytes[pos] != ESCAPE_CHARACTER) {
+        pos++;
+        continue;
+      }
+      // According to the specification laid out in section 2.7 of RFC 4180: fields can be
+      // enclosed in double quotes.  If double quotes appear inside of a field, it must be
+      // escaped by preceeding it with another double quote.
+      if (pos + 1 < end && bytes[pos + 1] == ESCAPE_CHARACTER) {
+        if (unescapedStart < 0) {
+          unescapedStart = mUnescapedLength;
+        }
+        // Copy up to and including the first double quote, and skip the second one.
+        appendUnescaped(bytes, copiedUpTo, pos + 1 - copiedUpTo);
+        pos += 2;
+        copiedUpTo = pos;
+        continue;
+      }
+      // Closing double quote: it must end the field.
+      if (pos + 1 < end && bytes[pos + 1] != mDelimiter) {
+        throw new ParseException("Stray double quote", pos - offset);
+      }
+      if (unescapedStart < 0) {
+        addField(start, pos - start, false);
+      } else {
+        appendUnescaped(bytes, copiedUpTo, pos - copiedUpTo);
+        addField(unescapedStart, mUnescapedLength - unescapedStart, true);
+      }
+      return pos + 1;
+    }
+  }
+
+  /**
+   * Appends bytes to the buffer of unescaped fields.
+   *
+   * @param bytes Buffer to copy from.
+   * @param start Offset of the bytes to copy.
+   * @param length Number of bytes to copy.
+   */
+  private void appendUnescaped(final byte[] bytes, final int start, final int length) {
+    if (mUnescapedLength + length > mUnescaped.length) {
+      mUnescaped = Arrays.copyOf(mUnescaped, Math.max(mUnescaped.length * 2,
+          mUnescapedLength + length));
+    }
+    System.arraycopy(bytes, start, mUnescaped, mUnescapedLength, length);
+    mUnescapedLength += length;
+  }
+
+  /**
+   * Records a field.
+   *
+   * @param start Offset of the field in its buffer.
+   * @param length Length of the field, in bytes.
+   * @param unescaped Whether the field lives in the buffer of unescaped fields.
+   */
+  private void addField(final int start, final int length, final boolean unescaped) {
+    if (mFieldCount == mFieldStarts.length) {
+      final int capacity = mFieldStarts.length * 2;
+      mFieldStarts = Arrays.copyOf(mFieldStarts, capacity);
+      mFieldLengths = Arrays.copyOf(mFieldLengths, capacity);
+      mFieldUnescaped = Arrays.copyOf(mFieldUnescaped, capacity);
+    }
+    mFieldStarts[mFieldCount] = start;
+    mFieldLengths[mFieldCount] = length;
+    mFieldUnescaped[mFieldCount] = unescaped;
+    mFieldCount++;
+  }
+
+  /** @return the number of fields in the last tokenized line. */
+  public int getFieldCount() {
+    return mFieldCount;
+  }
+
+  /**
+   * Returns the buffer holding a field. This is either the buffer of the tokenized line, or a
+   * buffer owned by the tokenizer.
+   *
+   * @param index Index of the field.
+   * @return the buffer holding the field.
+   */
+  public byte[] getFieldBuffer(final int index) {
+    Preconditions.checkElementIndex(index, mFieldCount);
+    return mFieldUnescaped[index] ? mUnescaped : mLine;
+  }
+
+  /**
+   * Returns the offset of a field in its buffer.
+   *
+   * @param index Index of the field.
+   * @return the offset of the field in the buffer returned by {@link #getFieldBuffer(int)}.
+   */
+  public int getFieldStart(final int index) {
+    Preconditions.checkElementIndex(index, mFieldCount);
+    return mFieldStarts[index];
+  }
+
+  /**
+   * Returns the length of a field.
+   *
+   * @param index Index of the field.
+   * @return the length of the field, in bytes.
+   */
+  public int getFieldLength(final int index) {
+    Preconditions.checkElementIndex(index, mFieldCount);
+    return mFieldLengths[index];
+  }
+
+  /**
+   * Decodes a field.
+   *
+   * @param index Index of the field.
+   * @return the field, decoded from UTF-8.
+   */
+  public String getFieldAsString(final int index) {
+    return new String(
+        getFieldBuffer(index), mFieldStarts[index], mFieldLengths[index], Charsets.UTF_8);
+  }
+}
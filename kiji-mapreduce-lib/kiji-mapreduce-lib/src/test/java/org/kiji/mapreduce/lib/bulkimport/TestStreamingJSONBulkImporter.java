@@ -0,0 +1,225 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.bulkimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Joiner;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.mapreduce.KijiMRTestLayouts;
+import org.kiji.mapreduce.KijiMapReduceJob;
+import org.kiji.mapreduce.KijiTableContext;
+import org.kiji.mapreduce.TestingResources;
+import org.kiji.mapreduce.bulkimport.KijiBulkImportJobBuilder;
+import org.kiji.mapreduce.framework.JobHistoryCounters;
+import org.kiji.mapreduce.framework.KijiConfKeys;
+import org.kiji.mapreduce.input.MapReduceJobInputs;
+import org.kiji.mapreduce.output.MapReduceJobOutputs;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.util.InstanceBuilder;
+
+/** Unit tests for StreamingJSONBulkImporter. */
+public class TestStreamingJSONBulkImporter extends KijiClientTest {
+  private KijiTable mTable;
+  private KijiTableReader mReader;
+  private File mDescriptorFile;
+
+  @Before
+  public final void setupTestBulkImporter() throws Exception {
+    // Get the test table layouts.
+    final KijiTableLayout layout =
+        KijiTableLayout.newLayout(KijiMRTestLayouts.getTestLayout());
+
+    // Populate the environment.
+    new InstanceBuilder(getKiji())
+        .withTable("test", layout)
+        .build();
+
+    // Fill local variables.
+    mTable = getKiji().openTable("test");
+    mReader = mTable.openTableReader();
+
+    // Imports info:first_name from name.first, info:last_name from name.last, info:email from
+    // email and info:phone from phone, keyed by name.first.
+    mDescriptorFile = TestingResources.getResourceAsTempFile(
+        BulkImporterTestUtils.FOO_JSONPATH_IMPORT_DESCRIPTOR,
+        getLocalTempDir()
+    );
+  }
+
+  @After
+  public final void teardownTestBulkImporter() throws Exception {
+    mReader.close();
+    mTable.release();
+  }
+
+  /**
+   * Writes input lines to a file in the local temporary directory of the test.
+   *
+   * @param lines The lines to write.
+   * @return the file holding the lines.
+   * @throws IOException on I/O error.
+   */
+  private File writeInput(String... lines) throws IOException {
+    final File inputFile = File.createTempFile("input", ".json", getLocalTempDir());
+    FileUtils.writeStringToFile(inputFile, Joiner.on('\n').join(lines) + "\n", "UTF-8");
+    return inputFile;
+  }
+
+  /**
+   * Runs a bulk-import of a file into the test table with StreamingJSONBulkImporter.
+   *
+   * @param inputFile The file to import.
+   * @return the counters of the job.
+   * @throws Exception on error.
+   */
+  private Counters runImport(File inputFile) throws Exception {
+    final Configuration conf = getConf();
+    conf.set(DescribedInputTextBulkImporter.CONF_FILE, mDescriptorFile.getCanonicalPath());
+
+    final KijiMapReduceJob job = KijiBulkImportJobBuilder.create()
+        .withConf(conf)
+        .withBulkImporter(StreamingJSONBulkImporter.class)
+        .withInput(MapReduceJobInputs.newTextMapReduceJobInput(new Path(inputFile.toString())))
+        .withOutput(MapReduceJobOutputs.newDirectKijiTableMapReduceJobOutput(mTable.getURI()))
+        .build();
+    assertTrue(job.run());
+    return job.getHadoopJob().getCounters();
+  }
+
+  /**
+   * Reads a row of the test table.
+   *
+   * @param name The first name the row is keyed by.
+   * @return the info family of the row.
+   * @throws IOException on I/O error.
+   */
+  private KijiRowData getRow(String name) throws IOException {
+    return mReader.get(mTable.getEntityId(name), KijiDataRequest.create("info"));
+  }
+
+  @Test
+  public void testRejectsMalformedLines() throws Exception {
+    final Counters counters = runImport(writeInput(
+        "{\"name\":{\"first\":\"John\",\"last\":\"Doe\"},\"email\":\"john@x.com\",\"phone\":\"1\"}",
+        // Truncated object.
+        "{\"name\":{\"first\":\"Alice\"",
+        // Missing name separator.
+        "{\"name\" {\"first\":\"Bob\"}}",
+        // Not an object.
+        "[\"Carol\"]"));
+
+    // The job completes: the bad lines are counted as rejected and skipped.
+    assertEquals(4,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_PROCESSED).getValue());
+    assertEquals(3,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_REJECTED).getValue());
+    assertEquals(0,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_INCOMPLETE).getValue());
+
+    assertEquals("Doe", getRow("John").getMostRecentValue("info", "last_name").toString());
+    assertFalse(getRow("Alice").containsColumn("info"));
+    assertFalse(getRow("Bob").containsColumn("info"));
+  }
+
+  @Test
+  public void testNestedPaths() throws Exception {
+    final Counters counters = runImport(writeInput(
+        // Fields in any order; unknown nested objects and arrays are skipped; a "first" field
+        // outside of "name" does not match name.first.
+        "{\"first\":\"Other\",\"name\":{\"middle\":{\"a\":[1,{\"first\":\"X\"}]},"
+            + "\"last\":\"Doe\",\"first\":\"John\"},\"email\":\"john@x.com\"}",
+        // name is not an object: name.first and name.last are absent.
+        "{\"name\":\"Alice\",\"email\":\"alice@x.com\"}"));
+
+    assertEquals(2,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_PROCESSED).getValue());
+    assertEquals(0,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_REJECTED).getValue());
+    // John has no phone.
+    assertEquals(1,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_INCOMPLETE).getValue());
+
+    final KijiRowData john = getRow("John");
+    assertEquals("John", john.getMostRecentValue("info", "first_name").toString());
+    assertEquals("Doe", john.getMostRecentValue("info", "last_name").toString());
+    assertEquals("john@x.com", john.getMostRecentValue("info", "email").toString());
+    assertNull(john.getMostRecentValue("info", "phone"));
+    assertFalse(getRow("Other").containsColumn("info"));
+    assertFalse(getRow("X").containsColumn("info"));
+    assertFalse(getRow("Alice").containsColumn("info"));
+  }
+
+  @Test
+  public void testEntityIdComputedOncePerRecord() throws Exception {
+    final Configuration conf = getConf();
+    conf.set(DescribedInputTextBulkImporter.CONF_FILE, mDescriptorFile.getCanonicalPath());
+    conf.set(KijiConfKeys.KIJI_OUTPUT_TABLE_URI, mTable.getURI().toString());
+
+    final EntityId john = mTable.getEntityId("John");
+    final EntityId alice = mTable.getEntityId("Alice");
+    final KijiTableContext context = EasyMock.createMock(KijiTableContext.class);
+    EasyMock.expect(context.getEntityId("John")).andReturn(john).once();
+    EasyMock.expect(context.getEntityId("Alice")).andReturn(alice).once();
+    context.put(EasyMock.eq(john), EasyMock.eq("info"), EasyMock.anyObject(String.class),
+        EasyMock.anyObject());
+    EasyMock.expectLastCall().times(4);
+    context.put(EasyMock.eq(alice), EasyMock.eq("info"), EasyMock.anyObject(String.class),
+        EasyMock.anyObject());
+    EasyMock.expectLastCall().times(4);
+    EasyMock.replay(context);
+
+    final StreamingJSONBulkImporter importer = new StreamingJSONBulkImporter();
+    importer.setConf(conf);
+    importer.setup(context);
+    try {
+      importer.produce(new Text(
+          "{\"name\":{\"first\":\"John\",\"last\":\"Doe\"},\"email\":\"j@x\",\"phone\":\"1\"}"),
+          context);
+      importer.produce(new Text(
+          "{\"name\":{\"first\":\"Alice\",\"last\":\"Ray\"},\"email\":\"a@x\",\"phone\":\"2\"}"),
+          context);
+    } finally {
+      importer.cleanup(context);
+    }
+    EasyMock.verify(context);
+  }
+}
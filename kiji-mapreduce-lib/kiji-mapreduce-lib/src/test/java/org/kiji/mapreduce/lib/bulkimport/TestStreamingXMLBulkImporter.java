@@ -0,0 +1,265 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.bulkimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Joiner;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.mapreduce.KijiMRTestLayouts;
+import org.kiji.mapreduce.KijiMapReduceJob;
+import org.kiji.mapreduce.KijiTableContext;
+import org.kiji.mapreduce.bulkimport.KijiBulkImportJobBuilder;
+import org.kiji.mapreduce.framework.JobHistoryCounters;
+import org.kiji.mapreduce.framework.KijiConfKeys;
+import org.kiji.mapreduce.input.MapReduceJobInputs;
+import org.kiji.mapreduce.input.impl.XMLInputFormat;
+import org.kiji.mapreduce.output.MapReduceJobOutputs;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.util.InstanceBuilder;
+
+/** Unit tests for the source paths supported by StreamingXMLBulkImporter. */
+public class TestStreamingXMLBulkImporter extends KijiClientTest {
+  private KijiTable mTable;
+  private KijiTableReader mReader;
+
+  @Before
+  public final void setupTestBulkImporter() throws Exception {
+    // Get the test table layouts.
+    final KijiTableLayout layout =
+        KijiTableLayout.newLayout(KijiMRTestLayouts.getTestLayout());
+
+    // Populate the environment.
+    new InstanceBuilder(getKiji())
+        .withTable("test", layout)
+        .build();
+
+    // Fill local variables.
+    mTable = getKiji().openTable("test");
+    mReader = mTable.openTableReader();
+  }
+
+  @After
+  public final void teardownTestBulkImporter() throws Exception {
+    mReader.close();
+    mTable.release();
+  }
+
+  /**
+   * Writes an import descriptor into the info family of the test table.
+   *
+   * @param entityIdSource Source path of the entity IDs.
+   * @param columnSources Pairs of info column qualifiers and their source paths.
+   * @return the file holding the import descriptor.
+   * @throws IOException on I/O error.
+   */
+  private File writeDescriptor(String entityIdSource, String... columnSources)
+      throws IOException {
+    final StringBuilder columns = new StringBuilder();
+    for (int i = 0; i < columnSources.length; i += 2) {
+      columns.append((i == 0) ? "" : ", ")
+          .append(String.format("{ name : \"%s\", source : \"%s\" }",
+              columnSources[i], columnSources[i + 1]));
+    }
+    final File descriptorFile = File.createTempFile("descriptor", ".json", getLocalTempDir());
+    FileUtils.writeStringToFile(descriptorFile, String.format(
+        "{ name : \"foo\", families : [ { name : \"info\", columns : [ %s ] } ], "
+            + "entityIdSource : \"%s\", version : \"import-1.0\" }",
+        columns, entityIdSource), "UTF-8");
+    return descriptorFile;
+  }
+
+  /**
+   * Runs a bulk-import of XML records into the test table with StreamingXMLBulkImporter.
+   *
+   * @param descriptorFile The import descriptor.
+   * @param records The user records to import.
+   * @return the counters of the job.
+   * @throws Exception on error.
+   */
+  private Counters runImport(File descriptorFile, String... records) throws Exception {
+    final File inputFile = File.createTempFile("input", ".xml", getLocalTempDir());
+    FileUtils.writeStringToFile(inputFile, Joiner.on('\n').join(records) + "\n", "UTF-8");
+
+    final Configuration conf = getConf();
+    conf.set(DescribedInputTextBulkImporter.CONF_FILE, descriptorFile.getCanonicalPath());
+    conf.set(XMLInputFormat.RECORD_TAG_CONF_KEY, "user");
+
+    final KijiMapReduceJob job = KijiBulkImportJobBuilder.create()
+        .withConf(conf)
+        .withBulkImporter(StreamingXMLBulkImporter.class)
+        .withInput(MapReduceJobInputs.newXMLMapReduceJobInput(new Path(inputFile.toString())))
+        .withOutput(MapReduceJobOutputs.newDirectKijiTableMapReduceJobOutput(mTable.getURI()))
+        .build();
+    assertTrue(job.run());
+
+    final Counters counters = job.getHadoopJob().getCounters();
+    assertEquals(records.length,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_PROCESSED).getValue());
+    assertEquals(0,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_REJECTED).getValue());
+    return counters;
+  }
+
+  /**
+   * Reads the most recent value of an info column of the test table.
+   *
+   * @param rowKey Row key of the row to read.
+   * @param qualifier Qualifier of the column to read.
+   * @return the value of the column, or null if the column has no value.
+   * @throws IOException on I/O error.
+   */
+  private String getValue(String rowKey, String qualifier) throws IOException {
+    final KijiRowData row = mReader.get(mTable.getEntityId(rowKey), KijiDataRequest.create("info"));
+    final Object value = row.getMostRecentValue("info", qualifier);
+    return (null == value) ? null : value.toString();
+  }
+
+  @Test
+  public void testDescendantPaths() throws Exception {
+    final File descriptorFile = writeDescriptor("//first",
+        "first_name", "//first",
+        "last_name", "user//last",
+        "email", "//contact//email");
+    final Counters counters = runImport(descriptorFile,
+        "<user><name><first>John</first><last>Doe</last></name>"
+            + "<contact><home><email>john@x.com</email></home></contact></user>",
+        // The first match in document order wins, whatever its depth.
+        "<user><a><b><first>Alice</first></b></a><first>Other</first><last>Smith</last>"
+            + "<contact><email>alice@x.com</email></contact></user>");
+    assertEquals(0,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_INCOMPLETE).getValue());
+
+    assertEquals("Doe", getValue("John", "last_name"));
+    assertEquals("john@x.com", getValue("John", "email"));
+    assertEquals("Alice", getValue("Alice", "first_name"));
+    assertEquals("Smith", getValue("Alice", "last_name"));
+    assertEquals("alice@x.com", getValue("Alice", "email"));
+    assertNull(getValue("Other", "first_name"));
+  }
+
+  @Test
+  public void testWildcardAndPositionPaths() throws Exception {
+    final File descriptorFile = writeDescriptor("user/*[1]",
+        "last_name", "user/*[2]",
+        "email", "user/email[2]",
+        "phone", "*/phone[1]");
+    final Counters counters = runImport(descriptorFile,
+        "<user><first>John</first><last>Doe</last><email>old@x.com</email>"
+            + "<phone>1</phone><email>john@x.com</email><phone>2</phone></user>",
+        // Alice has a single email.
+        "<user><first>Alice</first><last>Smith</last><email>alice@x.com</email></user>");
+    assertEquals(2,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_INCOMPLETE).getValue());
+
+    assertEquals("Doe", getValue("John", "last_name"));
+    assertEquals("john@x.com", getValue("John", "email"));
+    assertEquals("1", getValue("John", "phone"));
+    assertEquals("Smith", getValue("Alice", "last_name"));
+    assertNull(getValue("Alice", "email"));
+    assertNull(getValue("Alice", "phone"));
+  }
+
+  @Test
+  public void testAttributePaths() throws Exception {
+    final File descriptorFile = writeDescriptor("user/@id",
+        "first_name", "user/name/@first",
+        "email", "user/email[2]/@address",
+        "phone", "user/phone/@number");
+    final Counters counters = runImport(descriptorFile,
+        "<user id=\"John\"><name first=\"Johnny\"/><email address=\"old@x.com\"/>"
+            + "<email address=\"john@x.com\"/><phone/></user>");
+    // The phone element has no number attribute.
+    assertEquals(1,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_INCOMPLETE).getValue());
+
+    assertEquals("Johnny", getValue("John", "first_name"));
+    assertEquals("john@x.com", getValue("John", "email"));
+    assertNull(getValue("John", "phone"));
+  }
+
+  @Test
+  public void testMultipleRecords() throws Exception {
+    // Positions apply within each record: the user element of every record is user[1].
+    final File descriptorFile = writeDescriptor("user[1]/first",
+        "email", "user[1]/email[2]",
+        "phone", "//phone");
+    final Counters counters = runImport(descriptorFile,
+        "<user><first>John</first><email>a</email><email>john@x.com</email>"
+            + "<phone>1</phone></user>",
+        "<user><first>Alice</first><email>b</email><email>alice@x.com</email>"
+            + "<phone>2</phone></user>",
+        "<user><first>Bob</first><email>c</email><email>bob@x.com</email>"
+            + "<phone>3</phone></user>");
+    assertEquals(0,
+        counters.findCounter(JobHistoryCounters.BULKIMPORTER_RECORDS_INCOMPLETE).getValue());
+
+    assertEquals("john@x.com", getValue("John", "email"));
+    assertEquals("1", getValue("John", "phone"));
+    assertEquals("alice@x.com", getValue("Alice", "email"));
+    assertEquals("2", getValue("Alice", "phone"));
+    assertEquals("bob@x.com", getValue("Bob", "email"));
+    assertEquals("3", getValue("Bob", "phone"));
+  }
+
+  @Test
+  public void testUnsupportedPathsRejectedAtSetup() throws Exception {
+    final File descriptorFile = writeDescriptor("user/first",
+        "last_name", "user/last/text()",
+        "email", "user/email[last()]",
+        "phone", "//@phone");
+    final Configuration conf = getConf();
+    conf.set(DescribedInputTextBulkImporter.CONF_FILE, descriptorFile.getCanonicalPath());
+    conf.set(KijiConfKeys.KIJI_OUTPUT_TABLE_URI, mTable.getURI().toString());
+
+    // Setup fails before any record is read or written.
+    final KijiTableContext context = EasyMock.createMock(KijiTableContext.class);
+    EasyMock.replay(context);
+
+    final StreamingXMLBulkImporter importer = new StreamingXMLBulkImporter();
+    importer.setConf(conf);
+    try {
+      importer.setup(context);
+      fail("Setup should fail on unsupported source paths.");
+    } catch (RuntimeException re) {
+      assertTrue(re.getMessage().startsWith("Unsupported source path(s)"));
+    }
+    EasyMock.verify(context);
+  }
+}
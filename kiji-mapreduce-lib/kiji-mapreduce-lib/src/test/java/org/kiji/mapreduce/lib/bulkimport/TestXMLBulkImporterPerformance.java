@@ -0,0 +1,261 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.bulkimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.google.common.base.Charsets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.mapreduce.KijiMRTestLayouts;
+import org.kiji.mapreduce.KijiTableContext;
+import org.kiji.mapreduce.TestingResources;
+import org.kiji.mapreduce.framework.KijiConfKeys;
+import org.kiji.schema.EntityIdFactory;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.util.InstanceBuilder;
+
+/**
+ * Measures the throughput of the DOM and of the streaming XML bulk importers.
+ *
+ * <p>
+ *   This benchmark is skipped unless one of its system properties is set. Both importers read
+ *   the same sample file: either a generated sample of {@link #SAMPLE_BYTES_PROPERTY} bytes, e.g.
+ *   <code>mvn test -Dtest=TestXMLBulkImporterPerformance -Dorg.kiji.mapreduce.lib.bulkimport.
+ *   TestXMLBulkImporterPerformance.SAMPLE_BYTES=4000000000</code>, or an existing file of one
+ *   user record per line named by {@link #SAMPLE_FILE_PROPERTY}. Cells are counted rather than
+ *   written, so that the measure is the one of the importers alone.
+ * </p>
+ */
+public class TestXMLBulkImporterPerformance extends KijiClientTest {
+  private static final Logger LOG = LoggerFactory.getLogger(TestXMLBulkImporterPerformance.class);
+
+  /** System property with the size of the sample file to generate, in bytes. */
+  public static final String SAMPLE_BYTES_PROPERTY =
+      "org.kiji.mapreduce.lib.bulkimport.TestXMLBulkImporterPerformance.SAMPLE_BYTES";
+
+  /** System property with the path of an existing sample file, used instead of a generated one. */
+  public static final String SAMPLE_FILE_PROPERTY =
+      "org.kiji.mapreduce.lib.bulkimport.TestXMLBulkImporterPerformance.SAMPLE_FILE";
+
+  /** Header prepended to each record, as XMLInputFormat does. */
+  private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+  /** Number of filler events in each record, placed before the imported fields. */
+  private static final int EVENTS_PER_RECORD = 50;
+
+  private KijiTable mTable;
+  private File mSampleFile;
+  private long mSampleRecords;
+
+  @Before
+  public final void setupTestXMLBulkImporterPerformance() throws Exception {
+    final String samplePath = System.getProperty(SAMPLE_FILE_PROPERTY);
+    final Long sampleBytes = Long.getLong(SAMPLE_BYTES_PROPERTY);
+    assumeTrue((null != samplePath) || (null != sampleBytes));
+
+    final KijiTableLayout layout =
+        KijiTableLayout.newLayout(KijiMRTestLayouts.getTestLayout());
+    new InstanceBuilder(getKiji())
+        .withTable("test", layout)
+        .build();
+    mTable = getKiji().openTable("test");
+
+    if (null != samplePath) {
+      mSampleFile = new File(samplePath);
+      mSampleRecords = countLines(mSampleFile);
+      LOG.info("Read a sample of {} records, {} bytes.", mSampleRecords, mSampleFile.length());
+    } else {
+      mSampleFile = new File(getLocalTempDir(), "xml-sample.txt");
+      mSampleRecords = writeSample(mSampleFile, sampleBytes);
+      LOG.info("Generated a sample of {} records, {} bytes.",
+          mSampleRecords, mSampleFile.length());
+    }
+  }
+
+  @After
+  public final void teardownTestXMLBulkImporterPerformance() throws Exception {
+    if (null != mTable) {
+      mTable.release();
+    }
+  }
+
+  /**
+   * Counts the records of a sample file.
+   *
+   * @param file File with one record per line.
+   * @return the number of records of the file.
+   * @throws IOException on I/O error.
+   */
+  private static long countLines(final File file) throws IOException {
+    final BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+    try {
+      long lines = 0;
+      while (reader.readLine() != null) {
+        lines += 1;
+      }
+      return lines;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Writes a sample file with one record per line.
+   *
+   * @param file File to write.
+   * @param sampleBytes Approximate size of the file to write, in bytes.
+   * @return the number of records written.
+   * @throws IOException on I/O error.
+   */
+  private static long writeSample(final File file, final long sampleBytes) throws IOException {
+    final BufferedWriter writer = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+    try {
+      long records = 0;
+      long bytes = 0;
+      final StringBuilder record = new StringBuilder();
+      while (bytes < sampleBytes) {
+        record.setLength(0);
+        record.append("<user id=\"user").append(records).append("\"><history>");
+        for (int event = 0; event < EVENTS_PER_RECORD; ++event) {
+          record.append("<event type=\"view\"><page>/page/").append(event)
+              .append("</page><ts>").append(1284102000L + event).append("</ts></event>");
+        }
+        record.append("</history>")
+            .append("<first>First").append(records).append("</first>")
+            .append("<last>Last").append(records).append("</last>")
+            .append("<email>user").append(records).append("@example.com</email>")
+            .append("<phone>202-555-").append(records % 10000).append("</phone>")
+            .append("<time>").append(1284102000L + records).append("</time>")
+            .append("</user>\n");
+        writer.write(record.toString());
+        bytes += record.length();
+        records += 1;
+      }
+      return records;
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Creates a context which counts the cells written to it.
+   *
+   * @param counter Counter of the cells written, updated in place.
+   * @return a context which counts the cells written to it.
+   */
+  private KijiTableContext newCountingContext(final long[] counter) {
+    final EntityIdFactory eidFactory = EntityIdFactory.getFactory(mTable.getLayout());
+    return (KijiTableContext) Proxy.newProxyInstance(
+        KijiTableContext.class.getClassLoader(),
+        new Class<?>[] {KijiTableContext.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            if ("getEntityId".equals(name)) {
+              return eidFactory.getEntityId((Object[]) args[0]);
+            } else if ("getEntityIdFactory".equals(name)) {
+              return eidFactory;
+            } else if ("put".equals(name)) {
+              counter[0] += 1;
+            }
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Runs an importer over the sample file.
+   *
+   * @param importer Importer to run.
+   * @return the number of cells written by the importer.
+   * @throws Exception on error.
+   */
+  private long runImporter(final DescribedInputTextBulkImporter importer) throws Exception {
+    final File descriptorFile = TestingResources.getResourceAsTempFile(
+        BulkImporterTestUtils.FOO_XML_IMPORT_DESCRIPTOR,
+        getLocalTempDir()
+    );
+    final Configuration conf = new Configuration(getConf());
+    conf.set(DescribedInputTextBulkImporter.CONF_FILE, descriptorFile.getCanonicalPath());
+    conf.set(KijiConfKeys.KIJI_OUTPUT_TABLE_URI, mTable.getURI().toString());
+    importer.setConf(conf);
+
+    final long[] counter = new long[1];
+    final KijiTableContext context = newCountingContext(counter);
+    importer.setup(context);
+
+    final long startTime = System.nanoTime();
+    final BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(mSampleFile), Charsets.UTF_8));
+    try {
+      final Text text = new Text();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        text.set(XML_HEADER + line);
+        importer.produce(text, context);
+      }
+    } finally {
+      reader.close();
+    }
+    final long elapsed = Math.max(1, System.nanoTime() - startTime);
+    importer.cleanup(context);
+
+    LOG.info("{} imported {} records ({} cells) in {} ms: {} MB/s.",
+        importer.getClass().getSimpleName(), mSampleRecords, counter[0], elapsed / 1000000,
+        String.format("%.1f", mSampleFile.length() * 1000.0 / elapsed));
+    return counter[0];
+  }
+
+  @Test
+  public void testThroughput() throws Exception {
+    final long domCells = runImporter(new XMLBulkImporter());
+    final long streamingCells = runImporter(new StreamingXMLBulkImporter());
+    assertEquals(domCells, streamingCells);
+    if (null == System.getProperty(SAMPLE_FILE_PROPERTY)) {
+      // Each generated record has the 4 imported fields.
+      assertEquals(4 * mSampleRecords, streamingCells);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.AggregateNodeMerger.MergeNodeAggregateType;
+
+public class TestNodeAccumulator {
+  /**
+   * Builds a node labeled "a", with an edge labeled "b" to a node labeled "c".
+   *
+   * @param weight The weight of the node.
+   * @param edgeWeight The weight of the edge.
+   * @param targetWeight The weight of the target node.
+   * @return the built node.
+   */
+  private static Node getNode(double weight, double edgeWeight, double targetWeight) {
+    return new NodeBuilder()
+        .setLabel("a")
+        .setWeight(weight)
+        .addEdge(new EdgeBuilder()
+            .setLabel("b")
+            .setWeight(edgeWeight)
+            .setTarget(new NodeBuilder()
+                .setLabel("c")
+                .setWeight(targetWeight)
+                .build())
+            .build())
+        .build();
+  }
+
+  /** @return nodes to merge. */
+  private static List<Node> getNodes() {
+    final List<Node> nodes = new ArrayList<Node>();
+    nodes.add(getNode(2.0, 1.0, 3.0));
+    nodes.add(getNode(6.0, 2.0, 9.0));
+    nodes.add(getNode(13.0, 4.0, 6.0));
+    nodes.add(getNode(3.0, 1.0, 0.0));
+    return nodes;
+  }
+
+  @Test
+  public void testMatchesAggregateNodeMerger() {
+    for (MergeNodeAggregateType aggregateType
+        : new MergeNodeAggregateType[] {MergeNodeAggregateType.COUNT, MergeNodeAggregateType.SUM,
+            MergeNodeAggregateType.MIN, MergeNodeAggregateType.MAX}) {
+      final Node expected = AggregateNodeMerger.getNodeMerger(aggregateType).merge(getNodes());
+      final NodeAccumulator accumulator = new NodeAccumulator(aggregateType);
+      for (Node node : getNodes()) {
+        accumulator.add(node);
+      }
+      final Node actual = accumulator.toNode();
+      assertEquals(aggregateType.name(), 0, expected.compareTo(actual));
+    }
+  }
+
+  @Test
+  public void testMean() {
+    final NodeAccumulator accumulator = new NodeAccumulator(MergeNodeAggregateType.MEAN);
+    for (Node node : getNodes()) {
+      accumulator.add(node);
+    }
+    final Node merged = accumulator.toNode();
+    assertEquals(6.0, merged.getWeight(), 1e-8);
+    assertEquals(1, merged.getEdges().size());
+    assertEquals(8.0, merged.getEdges().get(0).getWeight(), 1e-8);
+    assertEquals(4.5, merged.getEdges().get(0).getTarget().getWeight(), 1e-8);
+    assertEquals(4, accumulator.getMergedNodeCount());
+    assertEquals(2, accumulator.getSize());
+  }
+
+  @Test
+  public void testPartialNodesMergeLikeTheirNodes() {
+    for (MergeNodeAggregateType aggregateType : MergeNodeAggregateType.values()) {
+      final List<Node> nodes = getNodes();
+      final NodeAccumulator expected = new NodeAccumulator(aggregateType);
+      for (Node node : nodes) {
+        expected.add(node);
+      }
+
+      final NodeAccumulator first = new NodeAccumulator(aggregateType);
+      first.add(nodes.get(0));
+      first.add(nodes.get(1));
+      final NodeAccumulator second = new NodeAccumulator(aggregateType);
+      second.add(nodes.get(2));
+      final Node firstPartial = first.toPartialNode();
+      assertEquals("2", firstPartial.getAnnotations()
+          .get(NodeAccumulator.MERGED_NODE_COUNT_ANNOTATION).toString());
+
+      final NodeAccumulator actual = new NodeAccumulator(aggregateType);
+      actual.add(firstPartial);
+      actual.add(second.toPartialNode());
+      actual.add(nodes.get(3));
+      assertEquals(aggregateType.name(), 0, expected.toNode().compareTo(actual.toNode()));
+      assertNull(actual.toNode().getAnnotations());
+    }
+  }
+
+  @Test
+  public void testDistinctEdges() {
+    final NodeAccumulator accumulator = new NodeAccumulator(MergeNodeAggregateType.SUM);
+    accumulator.add(getNode(1.0, 1.0, 1.0));
+    accumulator.add(new NodeBuilder()
+        .setLabel("a")
+        .setWeight(1.0)
+        .addEdge(new EdgeBuilder()
+            .setLabel("b")
+            .setWeight(5.0)
+            .setTarget(new NodeBuilder().setLabel("d").setWeight(1.0).build())
+            .build())
+        .addEdge(new EdgeBuilder()
+            .setWeight(1.0)
+            .setTarget(new NodeBuilder().setLabel("c").setWeight(1.0).build())
+            .build())
+        .build());
+    assertEquals(4, accumulator.getSize());
+
+    final Node merged = accumulator.toNode();
+    assertEquals(3, merged.getEdges().size());
+    // Edges are sorted by decreasing weight.
+    assertEquals("d", merged.getEdges().get(0).getTarget().getLabel().toString());
+    assertEquals(5.0, merged.getEdges().get(0).getWeight(), 1e-8);
+  }
+
+  @Test
+  public void testReset() {
+    final NodeAccumulator accumulator = new NodeAccumulator(MergeNodeAggregateType.MIN);
+    accumulator.add(getNode(1.0, 1.0, 1.0));
+    assertFalse(accumulator.isEmpty());
+    accumulator.reset();
+    assertTrue(accumulator.isEmpty());
+    assertEquals(1, accumulator.getSize());
+
+    accumulator.add(new NodeBuilder().setLabel("z").setWeight(5.0).build());
+    assertEquals(5.0, accumulator.toNode().getWeight(), 1e-8);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDifferentLabels() {
+    final NodeAccumulator accumulator = new NodeAccumulator(MergeNodeAggregateType.SUM);
+    accumulator.add(new NodeBuilder().setLabel("a").build());
+    accumulator.add(new NodeBuilder().setLabel("b").build());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testEmpty() {
+    new NodeAccumulator(MergeNodeAggregateType.SUM).toNode();
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.AggregateNodeMerger.MergeNodeAggregateType;
+
+public class TestPartialNodeAggregator {
+  /** Records the keys and nodes written by an aggregator. */
+  private static final class RecordingWriter implements PartialNodeAggregator.Writer<String> {
+    private final List<String> mKeys = new ArrayList<String>();
+    private final List<Node> mNodes = new ArrayList<Node>();
+
+    @Override
+    public void write(String key, Node node) {
+      mKeys.add(key);
+      mNodes.add(node);
+    }
+  }
+
+  /**
+   * Builds a node with an edge.
+   *
+   * @param label The label of the node.
+   * @param targetLabel The label of the target of the edge.
+   * @return the built node.
+   */
+  private static Node getNode(String label, String targetLabel) {
+    return new NodeBuilder()
+        .setLabel(label)
+        .setWeight(1.0)
+        .addEdge(new EdgeBuilder()
+            .setWeight(1.0)
+            .setTarget(new NodeBuilder().setLabel(targetLabel).build())
+            .build())
+        .build();
+  }
+
+  @Test
+  public void testAggregatesByKeyAndLabel() throws IOException {
+    final RecordingWriter writer = new RecordingWriter();
+    final PartialNodeAggregator<String> aggregator =
+        new PartialNodeAggregator<String>(MergeNodeAggregateType.COUNT, 100, writer);
+    for (int i = 0; i < 10; i++) {
+      aggregator.add("k1", getNode("a", "x"));
+      aggregator.add("k1", getNode("b", "x"));
+      aggregator.add("k2", getNode("a", "x"));
+    }
+    assertEquals(0, writer.mNodes.size());
+    assertEquals(6, aggregator.getBufferedNodeCount());
+
+    aggregator.flush();
+    assertEquals(3, writer.mNodes.size());
+    assertEquals(0, aggregator.getBufferedNodeCount());
+    for (Node node : writer.mNodes) {
+      assertEquals(10.0, node.getWeight(), 1e-8);
+      assertEquals("10", node.getAnnotations()
+          .get(NodeAccumulator.MERGED_NODE_COUNT_ANNOTATION).toString());
+    }
+  }
+
+  @Test
+  public void testSpillsSkewedKeys() throws IOException {
+    final RecordingWriter writer = new RecordingWriter();
+    final PartialNodeAggregator<String> aggregator =
+        new PartialNodeAggregator<String>(MergeNodeAggregateType.SUM, 10, writer);
+    aggregator.add("cold", getNode("a", "x"));
+    // The hot key has many distinct edges: it is spilled whenever it holds more than 5 nodes.
+    for (int i = 0; i < 20; i++) {
+      aggregator.add("hot", getNode("a", "x" + i));
+    }
+    assertEquals(4, writer.mNodes.size());
+    for (String key : writer.mKeys) {
+      assertEquals("hot", key);
+    }
+
+    aggregator.flush();
+    final NodeAccumulator merged = new NodeAccumulator(MergeNodeAggregateType.SUM);
+    for (int i = 0; i < writer.mNodes.size(); i++) {
+      if ("hot".equals(writer.mKeys.get(i))) {
+        merged.add(writer.mNodes.get(i));
+      }
+    }
+    assertEquals(20.0, merged.toNode().getWeight(), 1e-8);
+    assertEquals(20, merged.toNode().getEdges().size());
+    assertEquals("cold", writer.mKeys.get(writer.mKeys.size() - 1));
+  }
+
+  @Test
+  public void testFlushesWhenFull() throws IOException {
+    final RecordingWriter writer = new RecordingWriter();
+    final PartialNodeAggregator<String> aggregator =
+        new PartialNodeAggregator<String>(MergeNodeAggregateType.SUM, 10, writer);
+    for (int i = 0; i < 5; i++) {
+      aggregator.add("k" + i, getNode("a", "x"));
+    }
+    assertEquals(0, writer.mNodes.size());
+    aggregator.add("k5", getNode("a", "x"));
+    assertEquals(6, writer.mNodes.size());
+    assertEquals(0, aggregator.getBufferedNodeCount());
+  }
+}
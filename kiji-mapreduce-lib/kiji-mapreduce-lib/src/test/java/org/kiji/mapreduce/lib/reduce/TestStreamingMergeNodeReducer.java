@@ -0,0 +1,171 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.reduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.avro.mapred.AvroValue;
+import org.apache.avro.mapreduce.AvroJob;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Test;
+
+import org.kiji.mapreduce.lib.avro.Node;
+import org.kiji.mapreduce.lib.graph.EdgeBuilder;
+import org.kiji.mapreduce.lib.graph.NodeBuilder;
+import org.kiji.mapreduce.lib.graph.PartialNodeAggregator;
+
+public class TestStreamingMergeNodeReducer {
+  /**
+   * Creates a driver for a node reducer.
+   *
+   * @param reducer The reducer to drive.
+   * @param maxBufferedNodes Maximum number of nodes buffered by combiners.
+   * @return a driver for the reducer.
+   * @throws IOException If there is an error.
+   */
+  private static ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>> newDriver(
+      NodeValueReducer<Text> reducer, int maxBufferedNodes) throws IOException {
+    ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>> driver
+        = new ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>>();
+    driver.setReducer(reducer);
+
+    // Configure avro serialization.
+    Job job = new Job();
+    AvroJob.setMapOutputValueSchema(job, reducer.getAvroValueWriterSchema());
+    AvroJob.setOutputValueSchema(job, reducer.getAvroValueWriterSchema());
+    job.getConfiguration().setInt(PartialNodeAggregator.CONF_MAX_BUFFERED_NODES, maxBufferedNodes);
+    driver.withConfiguration(job.getConfiguration());
+    return driver;
+  }
+
+  /**
+   * Creates a node with a single edge.
+   *
+   * @param edgeLabel Label of the edge.
+   * @param edgeWeight Weight of the edge.
+   * @param targetLabel Label of the target of the edge.
+   * @param targetWeight Weight of the target of the edge.
+   * @return a node A/1.0 with the given edge.
+   */
+  private static Node newNode(
+      String edgeLabel, double edgeWeight, String targetLabel, double targetWeight) {
+    return new NodeBuilder()
+        .setLabel("A")
+        .setWeight(1.0)
+        .addEdge(new EdgeBuilder()
+            .setLabel(edgeLabel)
+            .setWeight(edgeWeight)
+            .setTarget(new NodeBuilder()
+                .setLabel(targetLabel)
+                .setWeight(targetWeight)
+                .build())
+            .build())
+        .build();
+  }
+
+  /**
+   * Adds the input nodes of the example graph to a driver.
+   *
+   * <pre>
+   *  X: A/1.0 ----b/2.0---> C/3.0
+   *  Y: A/1.0 ----b/2.0---> C/6.0
+   *  Z: A/1.0 ----f/1.0---> C/7.0
+   *  W: A/1.0 ----d/4.0---> E/5.0
+   * </pre>
+   *
+   * @param driver The driver to add the nodes to.
+   */
+  private static void withInputNodes(
+      ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>> driver) {
+    driver.withInputKey(new Text("A"));
+    driver.withInputValue(new AvroValue<Node>(newNode("b", 2.0, "C", 3.0)));
+    driver.withInputValue(new AvroValue<Node>(newNode("b", 2.0, "C", 6.0)));
+    driver.withInputValue(new AvroValue<Node>(newNode("f", 1.0, "C", 7.0)));
+    driver.withInputValue(new AvroValue<Node>(newNode("d", 4.0, "E", 5.0)));
+  }
+
+  /**
+   * Checks the merged node of the example graph.
+   *
+   * <pre>
+   * A/4.0 ----b/4.0---> C/9.0
+   *        \---d/4.0---> E/5.0
+   *        \---f/1.0---> C/7.0
+   * </pre>
+   *
+   * @param actual The output of the reducer.
+   */
+  private static void assertMergedNode(List<Pair<Text, AvroValue<Node>>> actual) {
+    assertEquals(1, actual.size());
+    assertEquals("A", actual.get(0).getFirst().toString());
+    Node actualNode = actual.get(0).getSecond().datum();
+    assertNotNull(actualNode);
+    assertEquals("A", actualNode.getLabel().toString());
+    assertEquals(4.0, actualNode.getWeight(), 1e-8);
+    assertEquals(3, actualNode.getEdges().size());
+    assertEquals("b", actualNode.getEdges().get(0).getLabel().toString());
+    assertEquals(4.0, actualNode.getEdges().get(0).getWeight(), 1e-8);
+    assertEquals("C", actualNode.getEdges().get(0).getTarget().getLabel().toString());
+    assertEquals(9.0, actualNode.getEdges().get(0).getTarget().getWeight(), 1e-8);
+    assertEquals("d", actualNode.getEdges().get(1).getLabel().toString());
+    assertEquals(4.0, actualNode.getEdges().get(1).getWeight(), 1e-8);
+    assertEquals("E", actualNode.getEdges().get(1).getTarget().getLabel().toString());
+    assertEquals(5.0, actualNode.getEdges().get(1).getTarget().getWeight(), 1e-8);
+    assertEquals("f", actualNode.getEdges().get(2).getLabel().toString());
+    assertEquals(1.0, actualNode.getEdges().get(2).getWeight(), 1e-8);
+    assertEquals("C", actualNode.getEdges().get(2).getTarget().getLabel().toString());
+    assertEquals(7.0, actualNode.getEdges().get(2).getTarget().getWeight(), 1e-8);
+  }
+
+  @Test
+  public void testStreamingMergeNodeReducer() throws IOException {
+    ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>> driver =
+        newDriver(new StreamingMergeNodeReducer<Text>(),
+            PartialNodeAggregator.DEFAULT_MAX_BUFFERED_NODES);
+    withInputNodes(driver);
+    assertMergedNode(driver.run());
+  }
+
+  @Test
+  public void testCombinedNodes() throws IOException {
+    // A budget of 4 nodes makes the combiner spill the key before its last input node.
+    ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>> combinerDriver =
+        newDriver(new MergeNodeCombiner<Text>(), 4);
+    withInputNodes(combinerDriver);
+    List<Pair<Text, AvroValue<Node>>> combined = combinerDriver.run();
+    assertEquals(2, combined.size());
+
+    ReduceDriver<Text, AvroValue<Node>, Text, AvroValue<Node>> reducerDriver =
+        newDriver(new StreamingMergeNodeReducer<Text>(),
+            PartialNodeAggregator.DEFAULT_MAX_BUFFERED_NODES);
+    reducerDriver.withInputKey(new Text("A"));
+    for (Pair<Text, AvroValue<Node>> pair : combined) {
+      reducerDriver.withInputValue(pair.getSecond());
+    }
+    assertMergedNode(reducerDriver.run());
+  }
+}
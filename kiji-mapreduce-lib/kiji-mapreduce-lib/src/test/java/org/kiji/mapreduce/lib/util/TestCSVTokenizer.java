@@ -0,0 +1,139 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.lib.util;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCSVTokenizer {
+
+  private static List<String> tokenize(CSVTokenizer tokenizer, String line)
+      throws ParseException {
+    final int fieldCount = tokenizer.tokenize(new Text(line));
+    Assert.assertEquals(fieldCount, tokenizer.getFieldCount());
+    final List<String> fields = Lists.newArrayList();
+    for (int i = 0; i < fieldCount; i++) {
+      fields.add(tokenizer.getFieldAsString(i));
+    }
+    return fields;
+  }
+
+  private static List<String> tokenizeCSV(String line) throws ParseException {
+    return tokenize(CSVTokenizer.forCSV(), line);
+  }
+
+  @Test
+  public void testDeriveFields() throws ParseException {
+    Assert.assertEquals(Arrays.asList("first", "last", "phone"), tokenizeCSV("first,last,phone"));
+  }
+
+  @Test
+  public void testTrailingEmptys() throws ParseException {
+    Assert.assertEquals(
+        Arrays.asList("first", "last", "phone", "", ""), tokenizeCSV("first,last,phone,,"));
+  }
+
+  @Test
+  public void testEmptyLine() throws ParseException {
+    Assert.assertEquals(Arrays.asList(""), tokenizeCSV(""));
+  }
+
+  @Test(expected = ParseException.class)
+  public void testNonleadingQuote() throws ParseException {
+    tokenizeCSV(" \"first\"");
+  }
+
+  @Test(expected = ParseException.class)
+  public void testUnmatchedEscapeCharacters() throws ParseException {
+    tokenizeCSV("\"first");
+  }
+
+  @Test(expected = ParseException.class)
+  public void testEndingWithAnEscapedDoubleQuote() throws ParseException {
+    tokenizeCSV("\"first\"\"");
+  }
+
+  @Test(expected = ParseException.class)
+  public void testStrayDoubleQuote() throws ParseException {
+    tokenizeCSV("\"first\"last,phone");
+  }
+
+  @Test
+  public void testDoubleQuoteFollowedByComma() throws ParseException {
+    Assert.assertEquals(Arrays.asList("first\","), tokenizeCSV("\"first\"\",\""));
+  }
+
+  @Test
+  public void testEscaping() throws ParseException {
+    Assert.assertEquals(
+        Arrays.asList("first", "last", "phone", ""), tokenizeCSV("first,\"last\",phone,\"\""));
+  }
+
+  @Test
+  public void testDoubleQuoteInsideField() throws ParseException {
+    Assert.assertEquals(
+        Arrays.asList("first", "la\"st", "\"phone\""),
+        tokenizeCSV("first,\"la\"\"st\",\"\"\"phone\"\"\""));
+  }
+
+  @Test
+  public void testCommasInsideOfFields() throws ParseException {
+    Assert.assertEquals(
+        Arrays.asList("John Doe", "San Francisco, CA", "94110"),
+        tokenizeCSV("John Doe,\"San Francisco, CA\",94110"));
+  }
+
+  @Test
+  public void testTabSeparatedValues() throws ParseException {
+    Assert.assertEquals(
+        Arrays.asList("John Doe", "San Francisco, CA", "94110"),
+        tokenize(CSVTokenizer.forTSV(), "John Doe\tSan Francisco, CA\t94110"));
+  }
+
+  @Test
+  public void testMultiByteCharacters() throws ParseException {
+    Assert.assertEquals(
+        Arrays.asList("Zo\u00eb", "\u65e5\u672c", "\"\u00fc\""),
+        tokenizeCSV("Zo\u00eb,\"\u65e5\u672c\",\"\"\"\u00fc\"\"\""));
+  }
+
+  @Test
+  public void testFieldsAreSlicesOfTheLine() throws ParseException {
+    final Text line = new Text("first,\"last\",phone");
+    final CSVTokenizer tokenizer = CSVTokenizer.forCSV();
+    Assert.assertEquals(3, tokenizer.tokenize(line));
+    Assert.assertSame(line.getBytes(), tokenizer.getFieldBuffer(1));
+    Assert.assertEquals(7, tokenizer.getFieldStart(1));
+    Assert.assertEquals(4, tokenizer.getFieldLength(1));
+  }
+
+  @Test
+  public void testTokenizerIsReusable() throws ParseException {
+    final CSVTokenizer tokenizer = CSVTokenizer.forCSV();
+    Assert.assertEquals(Arrays.asList("a\"", "b", "c"), tokenize(tokenizer, "\"a\"\"\",b,c"));
+    Assert.assertEquals(Arrays.asList("\"d"), tokenize(tokenizer, "\"\"\"d\""));
+  }
+}
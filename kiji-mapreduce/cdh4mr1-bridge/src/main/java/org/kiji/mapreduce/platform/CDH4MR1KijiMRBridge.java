@@ -28,7 +28,10 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.mapreduce.hadoopbackport.TotalOrderPartitioner;
+import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.MapContext;
@@ -36,12 +39,16 @@ import org.apache.hadoop.mapreduce.Mapper.Context;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.ReduceContext;
+import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.StatusReporter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.TaskType;
 import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
 import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
 import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 
 import org.kiji.annotations.ApiAudience;
@@ -122,6 +129,40 @@ public final class CDH4MR1KijiMRBridge extends KijiMRPlatformBridge {
     return new WrappedMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>().getMapContext(mapContext);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  // CSOFF: ParameterNumberCheck
+  public <KEYIN, VALUEIN, KEYOUT, VALUEOUT> Reducer.Context getReducerContext(
+      final Configuration conf,
+      final TaskAttemptID taskId,
+      final RawKeyValueIterator input,
+      final Counter inputKeyCounter,
+      final Counter inputValueCounter,
+      final RecordWriter<KEYOUT, VALUEOUT> writer,
+      final OutputCommitter committer,
+      final StatusReporter reporter,
+      final RawComparator<KEYIN> comparator,
+      final Class<KEYIN> keyClass,
+      final Class<VALUEIN> valueClass
+  ) throws IOException, InterruptedException {
+    // CSON: ParameterNumberCheck
+    ReduceContext<KEYIN, VALUEIN, KEYOUT, VALUEOUT> reduceContext =
+        new ReduceContextImpl<KEYIN, VALUEIN, KEYOUT, VALUEOUT>(
+            conf,
+            taskId,
+            input,
+            inputKeyCounter,
+            inputValueCounter,
+            writer,
+            committer,
+            reporter,
+            comparator,
+            keyClass,
+            valueClass
+        );
+    return new WrappedReducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT>().getReducerContext(reduceContext);
+  }
+
   /** {@inheritDoc} */
   @Override
   public int compareFlatKey(
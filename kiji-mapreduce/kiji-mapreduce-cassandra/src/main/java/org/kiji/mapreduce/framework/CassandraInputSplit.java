@@ -38,9 +38,10 @@ import org.apache.hadoop.mapreduce.InputSplit;
 final class CassandraInputSplit extends InputSplit implements Writable {
   private List<CassandraTokenRange> mTokenRanges;
   private List<String> mHosts;
+  private long mLength;
 
-  // TODO: Is there a better answer here?
-  private static final long SPLIT_LENGTH = 1L;
+  /** Length reported for InputSplits without a size estimate. */
+  private static final long UNKNOWN_SPLIT_LENGTH = 1L;
 
   /**
    * Constructor.
@@ -57,24 +58,37 @@ final class CassandraInputSplit extends InputSplit implements Writable {
     return new CassandraInputSplit(
         Lists.newArrayList(
             new CassandraTokenRange(subsplit.getStartToken(), subsplit.getEndToken())),
-        Lists.newArrayList(subsplit.getHosts())
+        Lists.newArrayList(subsplit.getHosts()),
+        subsplit.getEstimatedSize()
     );
   }
 
   /**
-   * Creates an InputSplit from a collection of subsplits.
+   * Creates an InputSplit from a collection of subsplits.  The locations of the InputSplit are the
+   * replica nodes common to all of the subsplits, or all of their replica nodes if they have none
+   * in common.
    *
    * @param subsplits from which to build the input split.
    * @return the InputSplit.
    */
   public static CassandraInputSplit createFromSubplits(Collection<CassandraSubSplit> subsplits) {
     List<CassandraTokenRange> tokenRanges = Lists.newArrayList();
-    Set<String> hosts = Sets.newHashSet();
+    Set<String> allHosts = Sets.newHashSet();
+    Set<String> commonHosts = null;
+    long length = 0;
     for (CassandraSubSplit subsplit : subsplits) {
       tokenRanges.add(new CassandraTokenRange(subsplit.getStartToken(), subsplit.getEndToken()));
-      hosts.addAll(subsplit.getHosts());
+      allHosts.addAll(subsplit.getHosts());
+      if (null == commonHosts) {
+        commonHosts = Sets.newHashSet(subsplit.getHosts());
+      } else {
+        commonHosts.retainAll(subsplit.getHosts());
+      }
+      length += subsplit.getEstimatedSize();
     }
-    return new CassandraInputSplit(tokenRanges, Lists.newArrayList(hosts));
+    final Set<String> hosts =
+        (null == commonHosts || commonHosts.isEmpty()) ? allHosts : commonHosts;
+    return new CassandraInputSplit(tokenRanges, Lists.newArrayList(hosts), length);
   }
 
   /**
@@ -82,10 +96,15 @@ final class CassandraInputSplit extends InputSplit implements Writable {
    *
    * @param tokenRanges over which the InputSplit will query Cassandra.
    * @param hosts that own the data in the given token ranges.
+   * @param length estimated size in bytes of the data in the given token ranges, or 0 if unknown.
    */
-  private CassandraInputSplit(List<CassandraTokenRange> tokenRanges, List<String> hosts) {
+  private CassandraInputSplit(
+      List<CassandraTokenRange> tokenRanges,
+      List<String> hosts,
+      long length) {
     this.mTokenRanges = tokenRanges;
     this.mHosts = hosts;
+    this.mLength = length;
   }
 
   /** {@inheritDoc} */
@@ -97,7 +116,7 @@ final class CassandraInputSplit extends InputSplit implements Writable {
   /** {@inheritDoc} */
   @Override
   public long getLength() {
-    return SPLIT_LENGTH;
+    return (mLength > 0) ? mLength : UNKNOWN_SPLIT_LENGTH;
   }
 
   // These three methods are for serializing and deserializing
@@ -115,6 +134,7 @@ final class CassandraInputSplit extends InputSplit implements Writable {
     for (String endpoint : mHosts) {
       out.writeUTF(endpoint);
     }
+    out.writeLong(mLength);
   }
 
   /** {@inheritDoc} */
@@ -132,14 +152,16 @@ final class CassandraInputSplit extends InputSplit implements Writable {
     for (int i = 0; i < numOfEndpoints; i++) {
       mHosts.add(in.readUTF());
     }
+    mLength = in.readLong();
   }
 
   /** {@inheritDoc} */
   @Override
   public String toString() {
     return String.format(
-        "MultiqueryInputSplit(%s)",
-        mHosts
+        "MultiqueryInputSplit(%s, %d bytes)",
+        mHosts,
+        mLength
     );
   }
 
@@ -52,9 +52,11 @@ import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.cassandra.CassandraKijiURI;
+import org.kiji.schema.cassandra.CassandraTableName;
 import org.kiji.schema.impl.cassandra.CassandraKijiScannerOptions;
 import org.kiji.schema.impl.cassandra.CassandraKijiTableReader;
 import org.kiji.schema.layout.ColumnReaderSpec;
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout;
 import org.kiji.schema.util.ResourceUtils;
 
 /** InputFormat for Hadoop MapReduce jobs reading from a Kiji table. */
@@ -129,16 +131,25 @@ public final class CassandraKijiTableInputFormat
         // Get a list of all of the subsplits.  A "subsplit" contains the following:
         // - A token range (corresponding to a virtual node in the C* cluster)
         // - A list of replica nodes for that token range
+        // - An estimate of the size of the locality groups of the table in that token range
+        final List<String> localityGroupTables = Lists.newArrayList();
+        for (LocalityGroupLayout localityGroup : table.getLayout().getLocalityGroups()) {
+          localityGroupTables.add(CassandraTableName
+              .getLocalityGroupTableName(inputTableURI, localityGroup.getId())
+              .getUnquotedTable());
+        }
         final CassandraSubSplitCreator cassandraSubSplitCreator =
             new CassandraSubSplitCreator(session);
         final List<CassandraSubSplit> subsplitsFromTokens =
-            cassandraSubSplitCreator.createSubSplits();
+            cassandraSubSplitCreator.createSubSplits(
+                CassandraTableName.getUnquotedKeyspace(inputTableURI),
+                localityGroupTables);
         LOG.debug(String.format("Created %d subsplits from tokens", subsplitsFromTokens.size()));
 
         // In this InputFormat, we allow the user to specify a desired number of InputSplits.  We
         // will likely have far more subsplits (vnodes) than desired InputSplits.  Therefore, we
         // combine subsplits (hopefully those that share the same replica nodes) until we get to our
-        // desired InputSplit count.
+        // desired InputSplit count, balancing the estimated size of the InputSplits.
         final CassandraSubSplitCombiner cassandraSubSplitCombiner = new CassandraSubSplitCombiner();
 
         // Get a list of all of the token ranges in the Cassandra cluster.
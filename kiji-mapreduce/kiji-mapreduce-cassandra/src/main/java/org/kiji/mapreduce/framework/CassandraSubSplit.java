@@ -34,16 +34,21 @@ import com.google.common.collect.Sets;
  * This class essentially maps to a Cassandra virtual node (vnode).
  */
 final class CassandraSubSplit {
-  // TODO: Add separate field for actual owner of token, versus replica nodes?
   /** Starting token (inclusive).  */
   private final long mStartToken;
 
   /** Ending token (inclusive). */
   private final long mEndToken;
 
-  /** List of hosts that contain copies of data in the token range. */
+  /**
+   * Hosts that contain copies of data in the token range, in replica order. Empty if the replicas
+   * of the token range are unknown.
+   */
   private final Set<String> mHosts;
 
+  /** Estimated size in bytes of the data in the token range, or 0 if unknown. */
+  private final long mEstimatedSize;
+
   /** Minimum token value (assuming Murmur3 partitioner). */
   public static final long RING_START_TOKEN = Long.MIN_VALUE;
 
@@ -60,7 +65,21 @@ final class CassandraSubSplit {
    */
   public static CassandraSubSplit createFromHostSet(
       long startToken, long endToken, Set<String> hosts) {
-    return new CassandraSubSplit(startToken, endToken, hosts);
+    return new CassandraSubSplit(startToken, endToken, hosts, 0L);
+  }
+
+  /**
+   * Create a subsplit given a token range, a set of replica nodes and a size estimate.
+   *
+   * @param startToken The minimum token for the subsplit (inclusive).
+   * @param endToken The maximum token for the subsplit (inclusive).
+   * @param hosts A set of replica nodes for this token range.
+   * @param estimatedSize Estimated size in bytes of the data in the token range, or 0 if unknown.
+   * @return A new subsplit for this token range.
+   */
+  public static CassandraSubSplit createFromHostSet(
+      long startToken, long endToken, Set<String> hosts, long estimatedSize) {
+    return new CassandraSubSplit(startToken, endToken, hosts, estimatedSize);
   }
 
   /**
@@ -74,7 +93,7 @@ final class CassandraSubSplit {
   public static CassandraSubSplit createFromHost(long startToken, long endToken, String host) {
     Set<String> hosts = Sets.newHashSet();
     hosts.add(host);
-    return new CassandraSubSplit(startToken, endToken, hosts);
+    return new CassandraSubSplit(startToken, endToken, hosts, 0L);
   }
 
   /**
@@ -82,28 +101,31 @@ final class CassandraSubSplit {
    *
    * @param startToken The minimum token for the subsplit (inclusive).
    * @param endToken The maximum token for the subsplit (inclusive).
-   * @param hosts A set of replica nodes for this token range.
+   * @param hosts A set of replica nodes for this token range, possibly empty.
+   * @param estimatedSize Estimated size in bytes of the data in the token range, or 0 if unknown.
    */
-  private CassandraSubSplit(long startToken, long endToken, Set<String> hosts) {
+  private CassandraSubSplit(long startToken, long endToken, Set<String> hosts, long estimatedSize) {
     Preconditions.checkNotNull(hosts);
-    Preconditions.checkArgument(hosts.size() > 0);
     for (String host : hosts) {
       Preconditions.checkNotNull(host);
       Preconditions.checkArgument(host.length() > 1);
     }
+    Preconditions.checkArgument(estimatedSize >= 0);
     this.mStartToken = startToken;
     this.mEndToken = endToken;
-    this.mHosts = Sets.newHashSet(hosts);
+    this.mHosts = Sets.newLinkedHashSet(hosts);
+    this.mEstimatedSize = estimatedSize;
   }
 
   /** {@inheritDoc} */
   @Override
   public String toString() {
     return String.format(
-        "Subsplit from %s to %s @ %s",
+        "Subsplit from %s to %s @ %s (%d bytes)",
         mStartToken,
         mEndToken,
-        mHosts
+        mHosts,
+        mEstimatedSize
     );
   }
 
@@ -128,23 +150,29 @@ final class CassandraSubSplit {
   /**
    * Getter for the replica nodes for this subsplit.
    *
-   * @return The replica nodes for this subsplit.
+   * @return The replica nodes for this subsplit, in replica order, or an empty set if unknown.
    */
   public Set<String> getHosts() {
     return mHosts;
   }
 
+  /**
+   * Getter for the estimated size of the data in this subsplit.
+   *
+   * @return The estimated size in bytes of the data in this subsplit, or 0 if unknown.
+   */
+  public long getEstimatedSize() {
+    return mEstimatedSize;
+  }
+
   /**
    * Get a comma-separated list of the hosts for this subsplit.
    *
-   * @return A CSV of hosts, as a string.
+   * @return A CSV of hosts, as a string, or an empty string if the hosts are unknown.
    */
   public String getSortedHostListAsString() {
-    Preconditions.checkNotNull(mHosts);
     List<String> hostList = Lists.newArrayList(mHosts);
     Collections.sort(hostList);
-    Preconditions.checkNotNull(hostList);
-    Preconditions.checkArgument(hostList.size() > 0);
     return Joiner.on(",").join(hostList);
   }
 }
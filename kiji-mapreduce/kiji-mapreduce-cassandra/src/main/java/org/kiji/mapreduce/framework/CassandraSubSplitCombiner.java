@@ -23,9 +23,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -33,64 +35,89 @@ import com.google.common.collect.Sets;
  *
  * This class attempts to combine subplits such that:
  * <ul>
- *   <li>The final set of InputSplits matches the user's requested number of InputSplits</li>
- *   <li>As many subsplits as possible share a common replica node</li>
+ *   <li>The final set of InputSplits roughly matches the user's requested number of
+ *       InputSplits</li>
+ *   <li>All InputSplits have roughly the same estimated size in bytes, so that mappers have
+ *       similar runtimes</li>
+ *   <li>The data of each InputSplit is spread evenly across the replica nodes</li>
+ *   <li>All subsplits of an InputSplit share a common replica node</li>
  * </ul>
+ *
+ * If the subsplits have no size estimates, they are combined by count instead.
  */
 class CassandraSubSplitCombiner {
 
   /** Default target for number of input splits when reading from Cassandra Kiji. */
   public static final int DEFAULT_NUMBER_OF_SPLITS = 24;
 
+  /** Groups the subsplits assigned to no node, when no replica node is known at all. */
+  private static final String NO_HOST = "";
+
+  /** Orders subsplits by their start token. */
+  private static final Comparator<CassandraSubSplit> TOKEN_ORDER =
+      new Comparator<CassandraSubSplit>() {
+        public int compare(CassandraSubSplit firstSubsplit, CassandraSubSplit secondSubsplit) {
+          return Long.valueOf(firstSubsplit.getStartToken())
+              .compareTo(secondSubsplit.getStartToken());
+        }
+      };
+
   /**
    * Combine subsplits into InputSplits, attempting to group together subsplits that share replica
    * nodes.
+   *
+   * Each subsplit is first assigned to the least loaded of its replica nodes, considering
+   * subsplits from largest to smallest.  The subsplits assigned to each node are then packed, in
+   * token order, into InputSplits of roughly the total size divided by the target number of
+   * InputSplits.
+   *
    * @param subsplits A collection of subsplits to combine.
    * @param targetNumSplits Target number of input splits to have after combining subsplits.
    * @return A list of InputSplits.
    */
   public List<CassandraInputSplit> combineSubsplits(
       Collection<CassandraSubSplit> subsplits, int targetNumSplits) {
+    Preconditions.checkArgument(targetNumSplits > 0,
+        "Target number of input splits must be positive, got %s.", targetNumSplits);
 
-    // Estimate the number of subsplits per input split.
-    final int numSubsplits = subsplits.size();
-    final int numSubsplitsPerSplit =
-        numSubsplits / targetNumSplits;
+    // Weigh subsplits by their estimated size, or count them if no size is known.
+    boolean hasSizeEstimates = false;
+    for (CassandraSubSplit subsplit : subsplits) {
+      hasSizeEstimates |= subsplit.getEstimatedSize() > 0;
+    }
+    final Map<CassandraSubSplit, Long> weights = Maps.newHashMap();
+    long totalWeight = 0;
+    for (CassandraSubSplit subsplit : subsplits) {
+      final long weight = hasSizeEstimates ? Math.max(subsplit.getEstimatedSize(), 1L) : 1L;
+      weights.put(subsplit, weight);
+      totalWeight += weight;
+    }
+    final long targetWeightPerSplit = Math.max(1L, totalWeight / targetNumSplits);
 
-    // Group subsplits by host and try to combine subsplits that share a host.
-    List<CassandraSubSplit> subsplitsSortedByHost = getSubsplitsSortedByHost(subsplits);
+    final Map<String, List<CassandraSubSplit>> subsplitsByHost =
+        assignSubsplitsToHosts(subsplits, weights);
 
     List<CassandraInputSplit> inputSplits = Lists.newArrayList();
-
-    int subsplitIndex = 0;
-    while (subsplitIndex < numSubsplits) {
+    for (List<CassandraSubSplit> hostSubsplits : subsplitsByHost.values()) {
+      Collections.sort(hostSubsplits, TOKEN_ORDER);
 
       // Start a new InputSplit.
-      Set<CassandraSubSplit> subsplitsToCombine = Sets.newHashSet();
-
-      // Go until we get to our target number of subsplits / input split.
-      while (true) {
-        // No more data => can't add to this InputSplit anymore.
-        if (subsplitIndex >= numSubsplits) {
-          break;
-        }
-
-        // Add this subsplit to the current working input split.
-        CassandraSubSplit subsplitToAdd = subsplitsSortedByHost.get(subsplitIndex);
-        subsplitsToCombine.add(subsplitToAdd);
-        subsplitIndex++;
+      List<CassandraSubSplit> subsplitsToCombine = Lists.newArrayList();
+      long weightToCombine = 0;
+      for (CassandraSubSplit subsplit : hostSubsplits) {
+        subsplitsToCombine.add(subsplit);
+        weightToCombine += weights.get(subsplit);
 
         // If we have reached our size goal, then finish this input split.
-        if (subsplitsToCombine.size() == numSubsplitsPerSplit) {
-          break;
+        if (weightToCombine >= targetWeightPerSplit) {
+          inputSplits.add(CassandraInputSplit.createFromSubplits(subsplitsToCombine));
+          subsplitsToCombine = Lists.newArrayList();
+          weightToCombine = 0;
         }
       }
-
-      assert(subsplitsToCombine.size() > 0);
-
-      // Now create the input split.
-      CassandraInputSplit inputSplit = CassandraInputSplit.createFromSubplits(subsplitsToCombine);
-      inputSplits.add(inputSplit);
+      if (!subsplitsToCombine.isEmpty()) {
+        inputSplits.add(CassandraInputSplit.createFromSubplits(subsplitsToCombine));
+      }
     }
     return inputSplits;
   }
@@ -99,7 +126,7 @@ class CassandraSubSplitCombiner {
    * Combine subsplits into InputSplits, attempting to group together subsplits that share replica
    * nodes.
    *
-   * Will combine into four subsplits.
+   * Will combine into {@link #DEFAULT_NUMBER_OF_SPLITS} InputSplits.
    *
    * @param subsplits A collection of subsplits to combine.
    * @return A list of InputSplits.
@@ -109,24 +136,80 @@ class CassandraSubSplitCombiner {
   }
 
   /**
-   * Sort subsplits by host.
+   * Assign each subsplit to one of its replica nodes, balancing the total weight of the subsplits
+   * assigned to each node.
+   *
+   * Subsplits with no known replica node are assigned to the least loaded node once the other
+   * subsplits are assigned, or grouped under the empty host name if no subsplit has a known node.
    *
-   * @param unsortedSubsplits An unsorted collection of subsplits.
-   * @return A list of the subsplits, sorted by host.
+   * @param subsplits The subsplits to assign.
+   * @param weights The weight of each subsplit.
+   * @return the subsplits assigned to each node, sorted by node.
    */
-  private List<CassandraSubSplit> getSubsplitsSortedByHost(
-      Collection<CassandraSubSplit> unsortedSubsplits) {
-    List<CassandraSubSplit> subsplitsSortedByHost = Lists.newArrayList(unsortedSubsplits);
+  private static Map<String, List<CassandraSubSplit>> assignSubsplitsToHosts(
+      Collection<CassandraSubSplit> subsplits,
+      final Map<CassandraSubSplit, Long> weights) {
+    List<CassandraSubSplit> subsplitsByWeight = Lists.newArrayList(subsplits);
     Collections.sort(
-        subsplitsSortedByHost,
+        subsplitsByWeight,
         new Comparator<CassandraSubSplit>() {
           public int compare(CassandraSubSplit firstSubsplit, CassandraSubSplit secondSubsplit) {
-            String firstHostList = firstSubsplit.getSortedHostListAsString();
-            String secondHostList = secondSubsplit.getSortedHostListAsString();
-            return firstHostList.compareTo(secondHostList);
+            final int byWeight =
+                weights.get(secondSubsplit).compareTo(weights.get(firstSubsplit));
+            return (byWeight != 0) ? byWeight : TOKEN_ORDER.compare(firstSubsplit, secondSubsplit);
           }
         }
     );
-    return subsplitsSortedByHost;
+
+    final Map<String, Long> hostWeights = Maps.newTreeMap();
+    final Map<String, List<CassandraSubSplit>> subsplitsByHost = Maps.newTreeMap();
+    final List<CassandraSubSplit> hostlessSubsplits = Lists.newArrayList();
+    for (CassandraSubSplit subsplit : subsplitsByWeight) {
+      if (subsplit.getHosts().isEmpty()) {
+        hostlessSubsplits.add(subsplit);
+      } else {
+        assignSubsplitToHost(subsplit, subsplit.getHosts(), weights, hostWeights, subsplitsByHost);
+      }
+    }
+    for (CassandraSubSplit subsplit : hostlessSubsplits) {
+      final Collection<String> hosts =
+          hostWeights.isEmpty() ? Collections.singleton(NO_HOST) : hostWeights.keySet();
+      assignSubsplitToHost(subsplit, hosts, weights, hostWeights, subsplitsByHost);
+    }
+    return subsplitsByHost;
+  }
+
+  /**
+   * Assign a subsplit to the least loaded of a set of candidate nodes.
+   *
+   * @param subsplit The subsplit to assign.
+   * @param candidateHosts The nodes the subsplit may be assigned to. Must not be empty.
+   * @param weights The weight of each subsplit.
+   * @param hostWeights The total weight of the subsplits assigned to each node. Updated.
+   * @param subsplitsByHost The subsplits assigned to each node. Updated.
+   */
+  private static void assignSubsplitToHost(
+      CassandraSubSplit subsplit,
+      Collection<String> candidateHosts,
+      Map<CassandraSubSplit, Long> weights,
+      Map<String, Long> hostWeights,
+      Map<String, List<CassandraSubSplit>> subsplitsByHost) {
+    String leastLoadedHost = null;
+    long leastLoad = Long.MAX_VALUE;
+    for (String host : Sets.newTreeSet(candidateHosts)) {
+      final Long load = hostWeights.get(host);
+      final long hostLoad = (null == load) ? 0L : load;
+      if (hostLoad < leastLoad) {
+        leastLoadedHost = host;
+        leastLoad = hostLoad;
+      }
+    }
+    hostWeights.put(leastLoadedHost, leastLoad + weights.get(subsplit));
+    List<CassandraSubSplit> hostSubsplits = subsplitsByHost.get(leastLoadedHost);
+    if (null == hostSubsplits) {
+      hostSubsplits = Lists.newArrayList();
+      subsplitsByHost.put(leastLoadedHost, hostSubsplits);
+    }
+    hostSubsplits.add(subsplit);
   }
 }
@@ -20,17 +20,22 @@
 package org.kiji.mapreduce.framework;
 
 import java.net.InetAddress;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,38 +70,59 @@ class CassandraSubSplitCreator {
   }
 
   /**
-   * Create a list of subsplits for this Cassandra cluster.  Each subsplit contains an IP address
-   * and a token range.
+   * Create a list of subsplits for the tables of a keyspace in this Cassandra cluster.  Each
+   * subsplit contains a token range, the addresses of the replicas of that token range, and an
+   * estimate of the size of the data of the tables in that token range.
+   *
+   * @param keyspace Unquoted name of the keyspace containing the tables.
+   * @param tables Unquoted names of the tables whose data is read by the subsplits.
    * @return The subsplits.
    */
-  public List<CassandraSubSplit> createSubSplits() {
-    // Create subsplits that initially contain a mapping from token ranges to primary hosts.
+  public List<CassandraSubSplit> createSubSplits(String keyspace, Collection<String> tables) {
     Map<Long, String> tokensToMasterNodes = getTokenToMasterNodeMapping();
-    List<CassandraSubSplit> subsplits = createInitialSubSplits(tokensToMasterNodes);
-    // TODO: Add replica nodes to the subsplits.
-    return subsplits;
+    List<CassandraSubSplit> subsplits =
+        createInitialSubSplits(tokensToMasterNodes, getReplicationFactor(keyspace));
+    return addSizeEstimates(subsplits, getTokenRangeSizes(keyspace, tables));
   }
 
   /**
-   * Create an initial set of subsplits, one per vnode.
+   * Create an initial set of subsplits, one per vnode, each mapped only to its master node.
    *
    * @param tokensToMasterNodes Map from tokens to their master nodes.
    * @return the list of subsplits.
    */
   List<CassandraSubSplit> createInitialSubSplits(Map<Long, String> tokensToMasterNodes) {
+    return createInitialSubSplits(tokensToMasterNodes, 1);
+  }
+
+  /**
+   * Create an initial set of subsplits, one per vnode.
+   *
+   * <p>
+   *   The replicas of a vnode are its master node followed by the next distinct nodes clockwise
+   *   on the ring, as placed by SimpleStrategy.  With NetworkTopologyStrategy, the replicas
+   *   computed this way are an approximation which ignores data centers and racks; they are only
+   *   used as locality hints.
+   * </p>
+   *
+   * @param tokensToMasterNodes Map from tokens to their master nodes.
+   * @param replicationFactor Number of replicas of each token range.
+   * @return the list of subsplits.
+   */
+  List<CassandraSubSplit> createInitialSubSplits(
+      Map<Long, String> tokensToMasterNodes,
+      int replicationFactor) {
 
     // Go from a mapping between tokens and hosts to a mapping between token *ranges* and hosts.
-    List<Long> sortedTokens = Lists.newArrayList();
-    for (Long tok : tokensToMasterNodes.keySet()) {
-      sortedTokens.add(tok);
-    }
-    Collections.sort(sortedTokens);
-    LOG.debug(String.format("Found %d total tokens", sortedTokens.size()));
-    LOG.debug(String.format("Minimum tokens is %s", sortedTokens.get(0)));
-    LOG.debug(String.format("Maximum tokens is %s", sortedTokens.get(sortedTokens.size() - 1)));
+    List<Long> ringTokens = Lists.newArrayList(tokensToMasterNodes.keySet());
+    Collections.sort(ringTokens);
+    LOG.debug(String.format("Found %d total tokens", ringTokens.size()));
+    LOG.debug(String.format("Minimum tokens is %s", ringTokens.get(0)));
+    LOG.debug(String.format("Maximum tokens is %s", ringTokens.get(ringTokens.size() - 1)));
 
     // We need to add the global min and global max token values so that we make sure that our
     // subsplits cover all of the data in the cluster.
+    List<Long> sortedTokens = Lists.newArrayList(ringTokens);
     sortedTokens.add(CassandraSubSplit.RING_START_TOKEN);
     sortedTokens.add(CassandraSubSplit.RING_END_TOKEN);
     Collections.sort(sortedTokens);
@@ -107,7 +133,8 @@ class CassandraSubSplitCreator {
     // Loop through all of the pairs of tokens, creating subsplits for every pair.  Remember in
     // C* that the master node for a token gets all data between the *previous* token and the token
     // in question, so we assign ownership of a given subsplit to the node associated with the
-    // second (greater) of the two tokens.
+    // second (greater) of the two tokens.  Tokens greater than the last ring token wrap around to
+    // the first ring token.
     List<CassandraSubSplit> subsplits = Lists.newArrayList();
 
     for (int tokenIndex = 0; tokenIndex < sortedTokens.size() - 1; tokenIndex++) {
@@ -116,31 +143,200 @@ class CassandraSubSplitCreator {
       long startToken = lowerBoundToken;
       long endToken = sortedTokens.get(tokenIndex + 1);
 
-      String hostForEndToken = tokensToMasterNodes.get(endToken);
+      final int ownerRingIndex;
       if (tokenIndex == sortedTokens.size() - 2) {
-        Preconditions.checkArgument(null == hostForEndToken);
-        hostForEndToken = tokensToMasterNodes.get(startToken);
-        Preconditions.checkNotNull(hostForEndToken);
+        Preconditions.checkArgument(null == tokensToMasterNodes.get(endToken));
+        ownerRingIndex = 0;
+      } else {
+        ownerRingIndex = tokenIndex;
       }
-      Preconditions.checkNotNull(hostForEndToken);
 
       // Ownership for a given node looks like (previous token, my token], so we add 1 to the
       // start token, unless the start token is the first token in our entire ring.
       final long startTokenAdjustedForExclusive;
       if (tokenIndex > 0) {
-        startTokenAdjustedForExclusive = lowerBoundToken + 1;
+        startTokenAdjustedForExclusive = startToken + 1;
       } else {
-        startTokenAdjustedForExclusive = lowerBoundToken;
+        startTokenAdjustedForExclusive = startToken;
       }
-      CassandraSubSplit subsplit = CassandraSubSplit.createFromHost(
+      CassandraSubSplit subsplit = CassandraSubSplit.createFromHostSet(
           startTokenAdjustedForExclusive,
           endToken,
-          hostForEndToken);
+          getReplicas(ringTokens, tokensToMasterNodes, ownerRingIndex, replicationFactor));
       subsplits.add(subsplit);
     }
     return subsplits;
   }
 
+  /**
+   * Get the replicas of the token range owned by a ring token.
+   *
+   * @param ringTokens The sorted tokens of the ring.
+   * @param tokensToMasterNodes Map from tokens to their master nodes.
+   * @param ownerRingIndex Index in the ring of the token owning the token range.
+   * @param replicationFactor Number of replicas of the token range.
+   * @return the master node of the token range followed by its other replicas.
+   */
+  private static Set<String> getReplicas(
+      List<Long> ringTokens,
+      Map<Long, String> tokensToMasterNodes,
+      int ownerRingIndex,
+      int replicationFactor) {
+    final Set<String> replicas = Sets.newLinkedHashSet();
+    for (int i = 0; i < ringTokens.size() && replicas.size() < replicationFactor; i++) {
+      final String host =
+          tokensToMasterNodes.get(ringTokens.get((ownerRingIndex + i) % ringTokens.size()));
+      Preconditions.checkNotNull(host);
+      replicas.add(host);
+    }
+    return replicas;
+  }
+
+  /**
+   * Get the replication factor of a keyspace.  With NetworkTopologyStrategy, this is the total
+   * number of replicas across all data centers.
+   *
+   * @param keyspace Unquoted name of the keyspace.
+   * @return the replication factor of the keyspace, or 1 if it can not be determined.
+   */
+  private int getReplicationFactor(String keyspace) {
+    final KeyspaceMetadata metadata =
+        mSession.getCluster().getMetadata().getKeyspace('"' + keyspace + '"');
+    if (null == metadata) {
+      LOG.warn("No metadata for keyspace {}, ignoring replica nodes.", keyspace);
+      return 1;
+    }
+    int replicationFactor = 0;
+    for (Map.Entry<String, String> option : metadata.getReplication().entrySet()) {
+      if (!option.getKey().equals("class")) {
+        try {
+          replicationFactor += Integer.parseInt(option.getValue());
+        } catch (NumberFormatException nfe) {
+          LOG.debug("Ignoring replication option {} of keyspace {}.", option, keyspace);
+        }
+      }
+    }
+    return Math.max(replicationFactor, 1);
+  }
+
+  /**
+   * Read the size estimates of tables from the coordinator node.  Each node only reports the
+   * estimates of the token ranges for which it is the master node; Cassandra versions prior to
+   * 2.1.5 do not report any estimate.
+   *
+   * @param keyspace Unquoted name of the keyspace containing the tables.
+   * @param tables Unquoted names of the tables.
+   * @return the estimated size in bytes of the tables in each reported token range.
+   */
+  private Map<Range<Long>, Long> getTokenRangeSizes(String keyspace, Collection<String> tables) {
+    final Map<Range<Long>, Long> sizes = Maps.newHashMap();
+    final String queryString = "SELECT range_start, range_end, mean_partition_size, "
+        + "partitions_count FROM system.size_estimates WHERE keyspace_name = ? AND table_name = ?;";
+    for (String table : tables) {
+      final ResultSet resultSet;
+      try {
+        resultSet = mSession.execute(queryString, keyspace, table);
+      } catch (InvalidQueryException iqe) {
+        LOG.info("No size estimates available, combining subsplits by count: {}",
+            iqe.getMessage());
+        return Collections.emptyMap();
+      }
+      for (Row row : resultSet.all()) {
+        final long bytes = row.getLong("mean_partition_size") * row.getLong("partitions_count");
+        final long rangeStart = Long.parseLong(row.getString("range_start"));
+        final long rangeEnd = Long.parseLong(row.getString("range_end"));
+        // Reported ranges are (start, end], and wrap around the ring if start >= end.
+        final List<Range<Long>> ranges = Lists.newArrayList();
+        if (rangeStart < rangeEnd) {
+          ranges.add(Range.closed(rangeStart + 1, rangeEnd));
+        } else {
+          if (rangeStart < CassandraSubSplit.RING_END_TOKEN) {
+            ranges.add(Range.closed(rangeStart + 1, CassandraSubSplit.RING_END_TOKEN));
+          }
+          ranges.add(Range.closed(CassandraSubSplit.RING_START_TOKEN, rangeEnd));
+        }
+        final double totalWidth = getWidth(ranges);
+        for (Range<Long> range : ranges) {
+          final long rangeBytes = Math.round(bytes * getWidth(range) / totalWidth);
+          final Long previous = sizes.get(range);
+          sizes.put(range, (null == previous) ? rangeBytes : previous + rangeBytes);
+        }
+      }
+    }
+    return sizes;
+  }
+
+  /**
+   * Add size estimates to subsplits.  Subsplits get the size of the overlapping token ranges with
+   * an estimate, assuming data is uniformly distributed within each token range; the size of the
+   * parts of subsplits without an estimate is extrapolated from the average size per token of the
+   * estimated token ranges.
+   *
+   * @param subsplits The subsplits, without size estimates.
+   * @param tokenRangeSizes The estimated size in bytes of the data in closed, non-overlapping
+   *     token ranges.  If empty, the subsplits are returned unchanged.
+   * @return the subsplits with size estimates.
+   */
+  static List<CassandraSubSplit> addSizeEstimates(
+      List<CassandraSubSplit> subsplits,
+      Map<Range<Long>, Long> tokenRangeSizes) {
+    if (tokenRangeSizes.isEmpty()) {
+      return subsplits;
+    }
+    long totalBytes = 0;
+    for (long bytes : tokenRangeSizes.values()) {
+      totalBytes += bytes;
+    }
+    final double bytesPerToken = totalBytes / getWidth(tokenRangeSizes.keySet());
+
+    final List<CassandraSubSplit> estimated = Lists.newArrayListWithCapacity(subsplits.size());
+    for (CassandraSubSplit subsplit : subsplits) {
+      final Range<Long> subsplitRange =
+          Range.closed(subsplit.getStartToken(), subsplit.getEndToken());
+      double bytes = 0;
+      double estimatedWidth = 0;
+      for (Map.Entry<Range<Long>, Long> entry : tokenRangeSizes.entrySet()) {
+        final Range<Long> range = entry.getKey();
+        if (range.isConnected(subsplitRange)) {
+          final double overlapWidth = getWidth(range.intersection(subsplitRange));
+          bytes += entry.getValue() * overlapWidth / getWidth(range);
+          estimatedWidth += overlapWidth;
+        }
+      }
+      bytes += Math.max(0.0, getWidth(subsplitRange) - estimatedWidth) * bytesPerToken;
+      estimated.add(CassandraSubSplit.createFromHostSet(
+          subsplit.getStartToken(),
+          subsplit.getEndToken(),
+          subsplit.getHosts(),
+          Math.round(bytes)));
+    }
+    return estimated;
+  }
+
+  /**
+   * Get the number of tokens in a closed token range, as a double to avoid overflows.
+   *
+   * @param range A closed token range.
+   * @return the number of tokens in the range.
+   */
+  private static double getWidth(Range<Long> range) {
+    return (double) range.upperEndpoint() - (double) range.lowerEndpoint() + 1.0;
+  }
+
+  /**
+   * Get the number of tokens in non-overlapping closed token ranges.
+   *
+   * @param ranges Non-overlapping closed token ranges.
+   * @return the number of tokens in the ranges.
+   */
+  private static double getWidth(Collection<Range<Long>> ranges) {
+    double width = 0;
+    for (Range<Long> range : ranges) {
+      width += getWidth(range);
+    }
+    return width;
+  }
+
   /**
    * Read metadata from our Cassandra cluster to get the mapping from tokens to master nodes.
    *
@@ -27,6 +27,8 @@ import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +40,7 @@ public class TestSubSplits {
   private static final Logger LOG = LoggerFactory.getLogger(TestSubSplits.class);
   private static final String HOST0 = "host0";
   private static final String HOST1 = "host1";
+  private static final String HOST2 = "host2";
 
   @Test
   public void testCombineSubSplits() throws IOException {
@@ -82,5 +85,108 @@ public class TestSubSplits {
 
 
   }
-}
 
+  @Test
+  public void testCreateSubSplitsWithReplicas() throws IOException {
+    Map<Long, String> tokensToMasterNodes = Maps.newHashMap();
+    tokensToMasterNodes.put(1L, HOST0);
+    tokensToMasterNodes.put(2L, HOST1);
+    tokensToMasterNodes.put(3L, HOST0);
+    tokensToMasterNodes.put(4L, HOST2);
+
+    CassandraSubSplitCreator creator = new CassandraSubSplitCreator();
+
+    List<CassandraSubSplit> subSplits = creator.createInitialSubSplits(tokensToMasterNodes, 2);
+    assertEquals(5, subSplits.size());
+    // (3, 4] is owned by host2 and replicated on host0, the owner of the next token.
+    assertEquals(Sets.newHashSet(HOST2, HOST0), subSplits.get(3).getHosts());
+    // Hosts are kept in replica order: the owner first.
+    assertEquals(Lists.newArrayList(HOST2, HOST0), Lists.newArrayList(subSplits.get(3).getHosts()));
+    // (2, 3] is owned by host0; the next token is owned by host2.
+    assertEquals(Sets.newHashSet(HOST0, HOST2), subSplits.get(2).getHosts());
+    // Tokens past the last token wrap around to the first token.
+    assertEquals(Sets.newHashSet(HOST0, HOST1), subSplits.get(4).getHosts());
+  }
+
+  @Test
+  public void testAddSizeEstimates() throws IOException {
+    List<CassandraSubSplit> subSplits = Lists.newArrayList(
+        CassandraSubSplit.createFromHost(0L, 99L, HOST0),
+        CassandraSubSplit.createFromHost(100L, 199L, HOST1),
+        CassandraSubSplit.createFromHost(200L, 399L, HOST0)
+    );
+    Map<Range<Long>, Long> sizes = Maps.newHashMap();
+    sizes.put(Range.closed(0L, 99L), 1000L);
+    sizes.put(Range.closed(200L, 299L), 3000L);
+
+    List<CassandraSubSplit> estimated = CassandraSubSplitCreator.addSizeEstimates(subSplits, sizes);
+    assertEquals(1000L, estimated.get(0).getEstimatedSize());
+    // Token ranges without an estimate get the average size per token.
+    assertEquals(2000L, estimated.get(1).getEstimatedSize());
+    assertEquals(3000L + 2000L, estimated.get(2).getEstimatedSize());
+    assertEquals(Sets.newHashSet(HOST1), estimated.get(1).getHosts());
+  }
+
+  @Test
+  public void testCombineSubSplitsBySize() throws IOException {
+    List<CassandraSubSplit> subSplits = Lists.newArrayList(
+        CassandraSubSplit.createFromHostSet(0L, 1L, Sets.newHashSet(HOST0, HOST1), 600L),
+        CassandraSubSplit.createFromHostSet(2L, 3L, Sets.newHashSet(HOST0, HOST1), 100L),
+        CassandraSubSplit.createFromHostSet(4L, 5L, Sets.newHashSet(HOST0, HOST1), 100L),
+        CassandraSubSplit.createFromHostSet(6L, 7L, Sets.newHashSet(HOST0, HOST1), 100L),
+        CassandraSubSplit.createFromHostSet(8L, 9L, Sets.newHashSet(HOST0, HOST1), 100L)
+    );
+
+    CassandraSubSplitCombiner cassandraSubSplitCombiner = new CassandraSubSplitCombiner();
+    List<CassandraInputSplit> inputSplits =
+        cassandraSubSplitCombiner.combineSubsplits(subSplits, 2);
+
+    // The large subsplit gets a split of its own, and the small subsplits are packed together.
+    // Both splits may run on either replica.
+    assertEquals(2, inputSplits.size());
+    for (CassandraInputSplit inputSplit : inputSplits) {
+      assertEquals(Sets.newHashSet(HOST0, HOST1), Sets.newHashSet(inputSplit.getLocations()));
+      long expectedLength = (inputSplit.getTokenRangeIterator().next().getStartToken() == 0L)
+          ? 600L : 400L;
+      assertEquals(expectedLength, inputSplit.getLength());
+    }
+  }
+
+  @Test
+  public void testCombineSubSplitsWithoutHosts() throws IOException {
+    List<CassandraSubSplit> subSplits = Lists.newArrayList(
+        CassandraSubSplit.createFromHostSet(0L, 1L, Sets.newHashSet(HOST0), 300L),
+        CassandraSubSplit.createFromHostSet(2L, 3L, Sets.<String>newHashSet(), 100L),
+        CassandraSubSplit.createFromHostSet(4L, 5L, Sets.newHashSet(HOST1), 100L)
+    );
+
+    CassandraSubSplitCombiner cassandraSubSplitCombiner = new CassandraSubSplitCombiner();
+    List<CassandraInputSplit> inputSplits =
+        cassandraSubSplitCombiner.combineSubsplits(subSplits, 2);
+
+    // The subsplit without replicas goes to the least loaded node.
+    assertEquals(2, inputSplits.size());
+    long totalLength = 0;
+    for (CassandraInputSplit inputSplit : inputSplits) {
+      totalLength += inputSplit.getLength();
+      if (inputSplit.getTokenRangeIterator().next().getStartToken() == 0L) {
+        assertEquals(300L, inputSplit.getLength());
+      } else {
+        assertEquals(Sets.newHashSet(HOST1), Sets.newHashSet(inputSplit.getLocations()));
+        assertEquals(200L, inputSplit.getLength());
+      }
+    }
+    assertEquals(500L, totalLength);
+
+    // Subsplits are still combined when no replica node is known.
+    List<CassandraSubSplit> hostlessSubSplits = Lists.newArrayList(
+        CassandraSubSplit.createFromHostSet(0L, 1L, Sets.<String>newHashSet(), 100L),
+        CassandraSubSplit.createFromHostSet(2L, 3L, Sets.<String>newHashSet(), 100L)
+    );
+    assertEquals("", hostlessSubSplits.get(0).getSortedHostListAsString());
+    List<CassandraInputSplit> hostlessInputSplits =
+        cassandraSubSplitCombiner.combineSubsplits(hostlessSubSplits, 1);
+    assertEquals(1, hostlessInputSplits.size());
+    assertEquals(200L, hostlessInputSplits.get(0).getLength());
+  }
+}
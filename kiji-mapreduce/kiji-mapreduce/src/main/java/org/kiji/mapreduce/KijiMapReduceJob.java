@@ -27,7 +27,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobID;
 import org.apache.hadoop.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,7 @@ import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.mapreduce.framework.JobHistoryKijiTable;
 import org.kiji.mapreduce.framework.KijiConfKeys;
+import org.kiji.mapreduce.impl.InProcessJobRunner;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.KijiURI;
 
@@ -47,6 +50,8 @@ public final class KijiMapReduceJob {
 
   /** The wrapped Hadoop Job. */
   private final Job mJob;
+  /** Runner of the job, if it runs in-process rather than through Hadoop; null otherwise. */
+  private final InProcessJobRunner mInProcessRunner;
   // TODO(KIJIMR-92): Versions of Hadoop after 20.x add the ability to get start and
   // end times directly from a Job, making these superfluous.
   /** Used to track when the job's execution begins. */
@@ -65,6 +70,7 @@ public final class KijiMapReduceJob {
    */
   private KijiMapReduceJob(Job job) {
     mJob = Preconditions.checkNotNull(job);
+    mInProcessRunner = InProcessJobRunner.isInProcess(job) ? new InProcessJobRunner(job) : null;
   }
 
   /**
@@ -89,7 +95,7 @@ public final class KijiMapReduceJob {
     Preconditions.checkState(mJobStarted,
         "Cannot join completion polling thread because the job is not running.");
     mCompletionPollingThread.join();
-    return mJob.isSuccessful();
+    return (null != mInProcessRunner) ? mInProcessRunner.isSuccessful() : mJob.isSuccessful();
   }
 
   /**
@@ -98,6 +104,8 @@ public final class KijiMapReduceJob {
   public static final class Status {
     /** The Job whose status is being tracked. */
     private final Job mJob;
+    /** The runner of the job, if it runs in-process; null otherwise. */
+    private final InProcessJobRunner mInProcessRunner;
 
     /**
      * Constructs a <code>Status</code> around a Hadoop job.
@@ -106,6 +114,17 @@ public final class KijiMapReduceJob {
      */
     protected Status(Job job) {
       mJob = job;
+      mInProcessRunner = null;
+    }
+
+    /**
+     * Constructs a <code>Status</code> around a job run in-process.
+     *
+     * @param runner The runner of the job.
+     */
+    private Status(InProcessJobRunner runner) {
+      mJob = null;
+      mInProcessRunner = runner;
     }
 
     /**
@@ -115,7 +134,7 @@ public final class KijiMapReduceJob {
      * @throws IOException If there is an error querying the job.
      */
     public boolean isComplete() throws IOException {
-      return mJob.isComplete();
+      return (null != mInProcessRunner) ? mInProcessRunner.isComplete() : mJob.isComplete();
     }
 
     /**
@@ -126,7 +145,7 @@ public final class KijiMapReduceJob {
      * @throws IOException If there is an error querying the job.
      */
     public boolean isSuccessful() throws IOException {
-      return mJob.isSuccessful();
+      return (null != mInProcessRunner) ? mInProcessRunner.isSuccessful() : mJob.isSuccessful();
     }
   }
 
@@ -144,16 +163,28 @@ public final class KijiMapReduceJob {
     JobHistoryKijiTable jobHistory = null;
     try {
       jobHistory = JobHistoryKijiTable.open(kiji);
-      jobHistory.recordJob(job, mJobStartTime, mJobEndTime);
+      if (null != mInProcessRunner) {
+        jobHistory.recordJob(
+            getJobID().toString(),
+            job.getJobName(),
+            mJobStartTime,
+            mJobEndTime,
+            mInProcessRunner.isSuccessful(),
+            job.getConfiguration(),
+            JobHistoryKijiTable.getCounters(mInProcessRunner.getCounters()),
+            Collections.<String, String>emptyMap());
+      } else {
+        jobHistory.recordJob(job, mJobStartTime, mJobEndTime);
+      }
     } catch (IOException ioe) {
       // We swallow errors for recording jobs, because it's a non-fatal error for the task.
         LOG.warn(
             "Error recording job {} in history table of Kiji instance {}:\n"
             + "{}\n"
             + "This does not affect the success of job {}.\n",
-            getHadoopJob().getJobID(), kiji.getURI(),
+            getJobID(), kiji.getURI(),
             StringUtils.stringifyException(ioe),
-            getHadoopJob().getJobID());
+            getJobID());
     } finally {
       IOUtils.closeQuietly(jobHistory);
     }
@@ -193,10 +224,10 @@ public final class KijiMapReduceJob {
           LOG.warn(
               "Error recording job {} in history table of Kiji instance {}: {}\n"
               + "This does not affect the success of job {}.",
-              getHadoopJob().getJobID(),
+              getJobID(),
               instanceURI,
               ioe.getMessage(),
-              getHadoopJob().getJobID());
+              getJobID());
         }
       }
     }
@@ -211,6 +242,27 @@ public final class KijiMapReduceJob {
     return mJob;
   }
 
+  /**
+   * Gets the ID of the job. Jobs run in-process have an ID of their own, as the Hadoop job is
+   * never submitted.
+   *
+   * @return The ID of the job, or null if it was not submitted yet.
+   */
+  public JobID getJobID() {
+    return (null != mInProcessRunner) ? mInProcessRunner.getJobID() : mJob.getJobID();
+  }
+
+  /**
+   * Gets the counters of the job. Unlike the counters of the Hadoop job, these are available
+   * for jobs run in-process.
+   *
+   * @return The counters of the job.
+   * @throws IOException If there is an error querying the job.
+   */
+  public Counters getCounters() throws IOException {
+    return (null != mInProcessRunner) ? mInProcessRunner.getCounters() : mJob.getCounters();
+  }
+
   // Unfortunately, our use of an anonymous inner class in this method confuses checkstyle.
   // We disable it temporarily.
   // CSOFF: VisibilityModifierCheck
@@ -225,6 +277,9 @@ public final class KijiMapReduceJob {
   public Status submit() throws ClassNotFoundException, IOException, InterruptedException {
     mJobStarted = true;
     mJobStartTime = System.currentTimeMillis();
+    if (null != mInProcessRunner) {
+      return submitInProcess();
+    }
     LOG.debug("Submitting job");
     mJob.submit();
     final Status jobStatus = new Status(mJob);
@@ -261,6 +316,32 @@ public final class KijiMapReduceJob {
   }
 
   // CSON: VisibilityModifierCheck
+  /**
+   * Starts running the job in-process, on a thread which records the job history once the job
+   * completes.
+   *
+   * @return The job status.
+   */
+  private Status submitInProcess() {
+    LOG.debug("Running job in-process");
+    mCompletionPollingThread = new Thread(new Runnable() {
+      /** {@inheritDoc} */
+      @Override
+      public void run() {
+        try {
+          mInProcessRunner.run();
+          mJobEndTime = System.currentTimeMillis();
+          recordJobHistory();
+        } catch (InterruptedException ie) {
+          LOG.debug("Interrupted while running the job in-process.");
+        }
+      }
+    });
+    mCompletionPollingThread.setDaemon(true);
+    mCompletionPollingThread.start();
+    return new Status(mInProcessRunner);
+  }
+
   /**
    * Runs the job (blocks until it is complete).
    *
@@ -272,7 +353,9 @@ public final class KijiMapReduceJob {
   public boolean run() throws ClassNotFoundException, IOException, InterruptedException {
     mJobStartTime = System.currentTimeMillis();
     LOG.debug("Running job");
-    boolean ret = mJob.waitForCompletion(true);
+    boolean ret = (null != mInProcessRunner)
+        ? mInProcessRunner.run()
+        : mJob.waitForCompletion(true);
     mJobEndTime = System.currentTimeMillis();
     try {
       recordJobHistory();
@@ -126,7 +126,18 @@ public final class JobHistoryKijiTable implements Closeable {
   private static Map<String, Long> getCounters(
       final Job job
   ) throws IOException {
-    final Counters counters = job.getCounters();
+    return getCounters(job.getCounters());
+  }
+
+  /**
+   * Extract the counters from a set of Counters.
+   *
+   * @param counters Counters from which to get counts.
+   * @return a map from counters to their counts. Keys are group:name.
+   */
+  public static Map<String, Long> getCounters(
+      final Counters counters
+  ) {
     final Map<String, Long> countersMap = Maps.newHashMap();
     for (String group : counters.getGroupNames()) {
       for (Counter counter : counters.getGroup(group)) {
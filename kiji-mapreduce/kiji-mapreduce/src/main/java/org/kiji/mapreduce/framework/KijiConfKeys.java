@@ -69,6 +69,16 @@ public final class KijiConfKeys {
   /** Polling interval in milliseconds for Kiji MapReduce jobs. */
   public static final String KIJI_MAPREDUCE_POLL_INTERVAL = "kiji.mapreduce.poll.interval";
 
+  /**
+   * Whether Kiji MapReduce jobs run in-process, with concurrent tasks and an in-memory shuffle,
+   * rather than through Hadoop.
+   */
+  public static final String KIJI_MAPREDUCE_IN_PROCESS = "kiji.mapreduce.in.process";
+
+  /** Number of threads running the tasks of in-process Kiji MapReduce jobs. */
+  public static final String KIJI_MAPREDUCE_IN_PROCESS_THREADS =
+      "kiji.mapreduce.in.process.threads";
+
   /** Utility class may not be instantiated. */
   private KijiConfKeys() {
   }
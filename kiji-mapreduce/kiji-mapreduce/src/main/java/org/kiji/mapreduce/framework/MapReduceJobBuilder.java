@@ -102,10 +102,14 @@ public abstract class MapReduceJobBuilder<T extends MapReduceJobBuilder<T>> {
   /** Bindings from store names to KeyValueStore implementations. */
   private Map<String, KeyValueStore<?, ?>> mBoundStores;
 
+  /** Number of threads running the tasks of an in-process job, or 0 to run through Hadoop. */
+  private int mInProcessThreads;
+
   /** Creates a new <code>MapReduceJobBuilder</code> instance. */
   protected MapReduceJobBuilder() {
     mJarDirectories = Lists.newArrayList();
     mBoundStores = Maps.newHashMap();
+    mInProcessThreads = 0;
 
     mJobOutput = null;
   }
@@ -119,10 +123,39 @@ public abstract class MapReduceJobBuilder<T extends MapReduceJobBuilder<T>> {
   public final KijiMapReduceJob build() throws IOException {
     Preconditions.checkNotNull(mConf, "Must set the job base configuration using .withConf()");
     final Job job = new Job(mConf);
+    if (mInProcessThreads > 0) {
+      job.getConfiguration().setBoolean(KijiConfKeys.KIJI_MAPREDUCE_IN_PROCESS, true);
+      job.getConfiguration().setInt(
+          KijiConfKeys.KIJI_MAPREDUCE_IN_PROCESS_THREADS, mInProcessThreads);
+    }
+    if (job.getConfiguration().getBoolean(KijiConfKeys.KIJI_MAPREDUCE_IN_PROCESS, false)) {
+      // Tasks run in this JVM, and read the files of the key-value stores where they are,
+      // as they do with the LocalJobRunner.
+      job.getConfiguration().set("mapreduce.jobtracker.address", "local");
+    }
     configureJob(job);
     return build(job);
   }
 
+  /**
+   * Configures the job to run in-process rather than through Hadoop.
+   *
+   * <p>The input splits are mapped concurrently, and the map outputs are sorted and reduced in
+   * memory. This is meant for tests and development jobs over small inputs: see
+   * {@link org.kiji.mapreduce.impl.InProcessJobRunner}. In-process execution may also be enabled
+   * by setting <code>kiji.mapreduce.in.process</code> in the base configuration.</p>
+   *
+   * @param numThreads Number of threads running the tasks of the job. Must be positive.
+   * @return This builder instance so you may chain configuration method calls.
+   */
+  @SuppressWarnings("unchecked")
+  public T withInProcessExecution(int numThreads) {
+    Preconditions.checkArgument(numThreads > 0,
+        "Number of in-process threads must be positive: %s", numThreads);
+    mInProcessThreads = numThreads;
+    return (T) this;
+  }
+
   /**
    * Adds a local directory of jars to the distributed cache of the job.
    *
@@ -0,0 +1,947 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.mapreduce.framework.KijiConfKeys;
+import org.kiji.mapreduce.platform.KijiMRPlatformBridge;
+
+/**
+ * Runs a configured Hadoop job within the current JVM, without going through Hadoop's
+ * LocalJobRunner.
+ *
+ * <p>Input splits are mapped concurrently, on a pool of
+ * <code>kiji.mapreduce.in.process.threads</code> threads. Map outputs are serialized with the
+ * serialization framework of the job, and kept in memory. Each reduce partition is then sorted in
+ * memory with the sort comparator of the job, and reduced, concurrently with the other
+ * partitions. Tasks run with the output committer of the job, and their counters are aggregated
+ * into the counters of the job.</p>
+ *
+ * <p>This runner is meant for tests and development jobs whose intermediate data fits in memory.
+ * It does not run combiners, which Hadoop treats as an optional optimization, and it does not
+ * localize the DistributedCache: jobs which read symlinked cache files are rejected.</p>
+ */
+@ApiAudience.Private
+public final class InProcessJobRunner {
+  private static final Logger LOG = LoggerFactory.getLogger(InProcessJobRunner.class);
+
+  /** Group of the framework task counters. */
+  public static final String TASK_COUNTER_GROUP = "org.apache.hadoop.mapreduce.TaskCounter";
+
+  /** Number of records read by the map tasks. */
+  public static final String MAP_INPUT_RECORDS = "MAP_INPUT_RECORDS";
+
+  /** Number of records written by the map tasks. */
+  public static final String MAP_OUTPUT_RECORDS = "MAP_OUTPUT_RECORDS";
+
+  /** Number of key groups read by the reduce tasks. */
+  public static final String REDUCE_INPUT_GROUPS = "REDUCE_INPUT_GROUPS";
+
+  /** Number of records read by the reduce tasks. */
+  public static final String REDUCE_INPUT_RECORDS = "REDUCE_INPUT_RECORDS";
+
+  /** Number of records written by the reduce tasks. */
+  public static final String REDUCE_OUTPUT_RECORDS = "REDUCE_OUTPUT_RECORDS";
+
+  /** Generates the job numbers of the jobs run in-process. */
+  private static final AtomicInteger JOB_COUNTER = new AtomicInteger(0);
+
+  /** The job to run. */
+  private final Job mJob;
+
+  /** Number of threads running the tasks. */
+  private final int mNumThreads;
+
+  /** Job tracker identifier of the job IDs, as generated by Hadoop's LocalJobRunner. */
+  private final String mJobTrackerId;
+
+  /** Job number of the job ID. */
+  private final int mJobNumber;
+
+  /** Counters aggregated from the successful tasks. Guarded by itself. */
+  private final Counters mCounters = new Counters();
+
+  /** Whether the job was started. */
+  private volatile boolean mStarted = false;
+
+  /** Whether the job completed. */
+  private volatile boolean mComplete = false;
+
+  /** Whether the job completed successfully. */
+  private volatile boolean mSuccessful = false;
+
+  /**
+   * Creates a runner for a configured job.
+   *
+   * @param job The Hadoop job to run.
+   */
+  public InProcessJobRunner(Job job) {
+    mJob = Preconditions.checkNotNull(job);
+    mNumThreads = Math.max(1, job.getConfiguration().getInt(
+        KijiConfKeys.KIJI_MAPREDUCE_IN_PROCESS_THREADS,
+        Runtime.getRuntime().availableProcessors()));
+    mJobTrackerId = "inprocess" + new Random().nextInt(Integer.MAX_VALUE);
+    mJobNumber = JOB_COUNTER.incrementAndGet();
+  }
+
+  /**
+   * Reports whether a job is configured to run in-process.
+   *
+   * @param job A Hadoop job.
+   * @return whether the job is configured to run in-process.
+   */
+  public static boolean isInProcess(Job job) {
+    return job.getConfiguration().getBoolean(KijiConfKeys.KIJI_MAPREDUCE_IN_PROCESS, false);
+  }
+
+  /** @return the ID of the job. */
+  public JobID getJobID() {
+    return newTaskAttemptID(TaskType.MAP, 0).getJobID();
+  }
+
+  /** @return whether the job completed. */
+  public boolean isComplete() {
+    return mComplete;
+  }
+
+  /**
+   * Reports whether the job completed successfully. The return value is undefined if the job has
+   * not yet completed.
+   *
+   * @return whether the job completed successfully.
+   */
+  public boolean isSuccessful() {
+    return mSuccessful;
+  }
+
+  /** @return a snapshot of the counters of the tasks completed so far. */
+  public Counters getCounters() {
+    final Counters counters = new Counters();
+    synchronized (mCounters) {
+      counters.incrAllCounters(mCounters);
+    }
+    return counters;
+  }
+
+  /**
+   * Runs the job and blocks until it is complete.
+   *
+   * <p>Task failures fail the job, as they do in Hadoop: they are logged, and reported through the
+   * return value rather than thrown.</p>
+   *
+   * @return whether the job was successful.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  public boolean run() throws InterruptedException {
+    Preconditions.checkState(!mStarted, "Job %s was already started.", getJobID());
+    mStarted = true;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(mNumThreads,
+        new ThreadFactory() {
+          private final AtomicInteger mThreadCount = new AtomicInteger(0);
+
+          /** {@inheritDoc} */
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                String.format("%s-task-%d", getJobID(), mThreadCount.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    final Configuration conf = mJob.getConfiguration();
+    OutputCommitter committer = null;
+    try {
+      checkDistributedCache(conf);
+      final OutputFormat<?, ?> outputFormat =
+          ReflectionUtils.newInstance(mJob.getOutputFormatClass(), conf);
+      outputFormat.checkOutputSpecs(mJob);
+      committer = outputFormat.getOutputCommitter(newTaskAttemptContext(conf, TaskType.MAP, 0));
+      committer.setupJob(mJob);
+
+      final InputFormat<?, ?> inputFormat =
+          ReflectionUtils.newInstance(mJob.getInputFormatClass(), conf);
+      final List<InputSplit> splits = inputFormat.getSplits(mJob);
+      final int numReduces = mJob.getNumReduceTasks();
+      LOG.info("Running job {} in-process with {} threads: {} map tasks, {} reduce tasks.",
+          getJobID(), mNumThreads, splits.size(), numReduces);
+
+      final List<Callable<Segment[]>> mapTasks = Lists.newArrayList();
+      for (int i = 0; i < splits.size(); i++) {
+        mapTasks.add(new MapTask(i, splits.get(i), numReduces));
+      }
+      final List<Segment[]> mapOutputs = runTasks(executor, mapTasks);
+
+      if (numReduces > 0) {
+        final List<Callable<Void>> reduceTasks = Lists.newArrayList();
+        for (int partition = 0; partition < numReduces; partition++) {
+          final List<Segment> segments = Lists.newArrayList();
+          for (Segment[] mapOutput : mapOutputs) {
+            segments.add(mapOutput[partition]);
+          }
+          reduceTasks.add(new ReduceTask(partition, segments));
+        }
+        // The reduce tasks hold the only remaining references to the map outputs.
+        mapOutputs.clear();
+        runTasks(executor, reduceTasks);
+      }
+
+      committer.commitJob(mJob);
+      mSuccessful = true;
+    } catch (IOException ioe) {
+      fail(committer, ioe);
+    } catch (ClassNotFoundException cnfe) {
+      fail(committer, cnfe);
+    } catch (RuntimeException re) {
+      fail(committer, re);
+    } finally {
+      executor.shutdownNow();
+      mComplete = true;
+    }
+    return mSuccessful;
+  }
+
+  /**
+   * Logs the failure of the job, and aborts its output.
+   *
+   * @param committer Output committer of the job, or null if it was not created yet.
+   * @param cause Cause of the failure.
+   */
+  private void fail(OutputCommitter committer, Exception cause) {
+    LOG.error("Job {} failed: {}", getJobID(), cause.getMessage(), cause);
+    if (null != committer) {
+      try {
+        committer.abortJob(mJob, JobStatus.State.FAILED);
+      } catch (IOException ioe) {
+        LOG.warn("Error aborting the output of job {}: {}", getJobID(), ioe.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Rejects the jobs which rely on the DistributedCache to symlink files into the working
+   * directory of their tasks, since tasks run in-process share the working directory of the JVM.
+   *
+   * @param conf Configuration of the job.
+   * @throws IOException If the job relies on symlinked cache files.
+   */
+  private static void checkDistributedCache(Configuration conf) throws IOException {
+    final URI[] cacheFiles = DistributedCache.getCacheFiles(conf);
+    if (null == cacheFiles) {
+      return;
+    }
+    for (URI cacheFile : cacheFiles) {
+      if (null != cacheFile.getFragment()) {
+        throw new IOException(String.format(
+            "Jobs run in-process can not symlink DistributedCache file '%s'.", cacheFile));
+      }
+    }
+  }
+
+  /**
+   * Runs tasks on the executor, and waits for all of them to complete.
+   *
+   * @param executor Executor to run the tasks on.
+   * @param tasks Tasks to run.
+   * @param <T> Type of the results of the tasks.
+   * @return the results of the tasks, in order.
+   * @throws IOException If a task fails. The remaining tasks are cancelled.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  private static <T> List<T> runTasks(
+      ExecutorService executor,
+      List<Callable<T>> tasks
+  ) throws IOException, InterruptedException {
+    final List<Future<T>> futures = Lists.newArrayList();
+    for (Callable<T> task : tasks) {
+      futures.add(executor.submit(task));
+    }
+    final List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (ExecutionException ee) {
+      throw new IOException(ee.getCause());
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Creates the ID of a task attempt of this job.
+   *
+   * @param type Type of the task.
+   * @param taskId Index of the task.
+   * @return the ID of the first attempt of the task.
+   */
+  private TaskAttemptID newTaskAttemptID(TaskType type, int taskId) {
+    return KijiMRPlatformBridge.get().newTaskAttemptID(mJobTrackerId, mJobNumber, type, taskId, 0);
+  }
+
+  /**
+   * Creates the context of a task attempt of this job.
+   *
+   * @param conf Configuration of the task.
+   * @param type Type of the task.
+   * @param taskId Index of the task.
+   * @return the context of the first attempt of the task.
+   */
+  private TaskAttemptContext newTaskAttemptContext(Configuration conf, TaskType type, int taskId) {
+    return KijiMRPlatformBridge.get().newTaskAttemptContext(conf, newTaskAttemptID(type, taskId));
+  }
+
+  /**
+   * Adds the counters of a successful task to the counters of the job.
+   *
+   * @param reporter Reporter of the task.
+   */
+  private void aggregateCounters(TaskReporter reporter) {
+    synchronized (mCounters) {
+      mCounters.incrAllCounters(reporter.getCounters());
+    }
+  }
+
+  /**
+   * Runs a task with the output committer of its output format.
+   *
+   * @param committer Output committer of the task.
+   * @param taskContext Context of the task.
+   * @param body Body of the task.
+   * @throws Exception If the task fails. Its output is aborted.
+   */
+  private static void runWithCommitter(
+      OutputCommitter committer,
+      TaskAttemptContext taskContext,
+      Callable<Void> body
+  ) throws Exception {
+    committer.setupTask(taskContext);
+    try {
+      body.call();
+    } catch (Exception exn) {
+      committer.abortTask(taskContext);
+      throw exn;
+    }
+    if (committer.needsTaskCommit(taskContext)) {
+      committer.commitTask(taskContext);
+    }
+  }
+
+  /** Maps an input split. */
+  private final class MapTask implements Callable<Segment[]> {
+    /** Index of the task. */
+    private final int mIndex;
+
+    /** Input split mapped by the task. */
+    private final InputSplit mSplit;
+
+    /** Number of reduce partitions, or 0 for a map-only job. */
+    private final int mNumReduces;
+
+    /**
+     * Creates a map task.
+     *
+     * @param index Index of the task.
+     * @param split Input split mapped by the task.
+     * @param numReduces Number of reduce partitions, or 0 for a map-only job.
+     */
+    private MapTask(int index, InputSplit split, int numReduces) {
+      mIndex = index;
+      mSplit = split;
+      mNumReduces = numReduces;
+    }
+
+    /**
+     * Maps the input split.
+     *
+     * @return the map output, by reduce partition. Empty for a map-only job.
+     * @throws Exception If the task fails.
+     */
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Segment[] call() throws Exception {
+      // Tasks get their own copy of the configuration, as they would in Hadoop.
+      final Configuration conf = new Configuration(mJob.getConfiguration());
+      final TaskAttemptID attemptId = newTaskAttemptID(TaskType.MAP, mIndex);
+      final TaskAttemptContext taskContext =
+          KijiMRPlatformBridge.get().newTaskAttemptContext(conf, attemptId);
+      final TaskReporter reporter = new TaskReporter();
+
+      final InputFormat inputFormat = ReflectionUtils.newInstance(mJob.getInputFormatClass(), conf);
+      final OutputFormat outputFormat =
+          ReflectionUtils.newInstance(mJob.getOutputFormatClass(), conf);
+      final OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+      final Counter outputRecords = reporter.getCounter(TASK_COUNTER_GROUP, MAP_OUTPUT_RECORDS);
+      final MapOutputCollector collector = (mNumReduces > 0)
+          ? new MapOutputCollector(conf, mJob, mNumReduces, outputRecords)
+          : null;
+
+      runWithCommitter(committer, taskContext, new Callable<Void>() {
+        /** {@inheritDoc} */
+        @Override
+        public Void call() throws Exception {
+          final RecordReader reader = new CountingRecordReader(
+              inputFormat.createRecordReader(mSplit, taskContext),
+              reporter.getCounter(TASK_COUNTER_GROUP, MAP_INPUT_RECORDS));
+          final RecordWriter writer = (null != collector)
+              ? collector
+              : new CountingRecordWriter(outputFormat.getRecordWriter(taskContext), outputRecords);
+          final Mapper.Context mapContext = KijiMRPlatformBridge.get().getMapperContext(
+              conf, attemptId, reader, writer, committer, reporter, mSplit);
+          reader.initialize(mSplit, mapContext);
+          final Mapper mapper = ReflectionUtils.newInstance(mJob.getMapperClass(), conf);
+          try {
+            mapper.run(mapContext);
+          } finally {
+            reader.close();
+          }
+          writer.close(mapContext);
+          return null;
+        }
+      });
+
+      aggregateCounters(reporter);
+      LOG.debug("Map task {} completed.", attemptId);
+      return (null != collector) ? collector.getSegments() : new Segment[0];
+    }
+  }
+
+  /** Sorts and reduces a partition of the map outputs. */
+  private final class ReduceTask implements Callable<Void> {
+    /** Index of the reduce partition. */
+    private final int mPartition;
+
+    /** Map outputs of the partition, one segment per map task. */
+    private final List<Segment> mSegments;
+
+    /**
+     * Creates a reduce task.
+     *
+     * @param partition Index of the reduce partition.
+     * @param segments Map outputs of the partition, one segment per map task.
+     */
+    private ReduceTask(int partition, List<Segment> segments) {
+      mPartition = partition;
+      mSegments = segments;
+    }
+
+    /**
+     * Sorts and reduces the partition.
+     *
+     * @return nothing: reduce tasks write to the output format of the job.
+     * @throws Exception If the task fails.
+     */
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Void call() throws Exception {
+      final Configuration conf = new Configuration(mJob.getConfiguration());
+      final TaskAttemptID attemptId = newTaskAttemptID(TaskType.REDUCE, mPartition);
+      final TaskAttemptContext taskContext =
+          KijiMRPlatformBridge.get().newTaskAttemptContext(conf, attemptId);
+      final TaskReporter reporter = new TaskReporter();
+
+      final OutputFormat outputFormat =
+          ReflectionUtils.newInstance(mJob.getOutputFormatClass(), conf);
+      final OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+
+      runWithCommitter(committer, taskContext, new Callable<Void>() {
+        /** {@inheritDoc} */
+        @Override
+        public Void call() throws Exception {
+          // Comparators are not thread-safe in general: use new instances in each task.
+          final RawKeyValueIterator input =
+              new SortedRecordIterator(sort(mSegments, mJob.getSortComparator()));
+          final RecordWriter writer = new CountingRecordWriter(
+              outputFormat.getRecordWriter(taskContext),
+              reporter.getCounter(TASK_COUNTER_GROUP, REDUCE_OUTPUT_RECORDS));
+          final Reducer.Context reduceContext = KijiMRPlatformBridge.get().getReducerContext(
+              conf,
+              attemptId,
+              input,
+              reporter.getCounter(TASK_COUNTER_GROUP, REDUCE_INPUT_GROUPS),
+              reporter.getCounter(TASK_COUNTER_GROUP, REDUCE_INPUT_RECORDS),
+              writer,
+              committer,
+              reporter,
+              (RawComparator) mJob.getGroupingComparator(),
+              (Class) mJob.getMapOutputKeyClass(),
+              (Class) mJob.getMapOutputValueClass());
+          final Reducer reducer = ReflectionUtils.newInstance(mJob.getReducerClass(), conf);
+          reducer.run(reduceContext);
+          writer.close(reduceContext);
+          return null;
+        }
+      });
+
+      aggregateCounters(reporter);
+      LOG.debug("Reduce task {} completed.", attemptId);
+      return null;
+    }
+  }
+
+  /**
+   * Sorts the records of a reduce partition.
+   *
+   * @param segments Map outputs of the partition.
+   * @param comparator Sort comparator of the map output keys.
+   * @return the records of the partition, sorted by key. Records with equal keys are kept in the
+   *     order of the map tasks which wrote them.
+   */
+  private static List<Record> sort(List<Segment> segments, final RawComparator<?> comparator) {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.getRecordCount();
+    }
+    final List<Record> records = new ArrayList<Record>(size);
+    for (Segment segment : segments) {
+      segment.addRecordsTo(records);
+    }
+    Collections.sort(records, new Comparator<Record>() {
+      /** {@inheritDoc} */
+      @Override
+      public int compare(Record left, Record right) {
+        return comparator.compare(
+            left.mData, left.mKeyStart, left.mValueStart - left.mKeyStart,
+            right.mData, right.mKeyStart, right.mValueStart - right.mKeyStart);
+      }
+    });
+    return records;
+  }
+
+  /** Serialized map output records of a reduce partition, written by a single map task. */
+  private static final class Segment {
+    /** Serialized keys and values, back to back. */
+    private final DataOutputBuffer mData = new DataOutputBuffer();
+
+    /** Offsets of the records in the data: key start, value start and value end of each. */
+    private int[] mOffsets = new int[3 * 16];
+
+    /** Number of records in the segment. */
+    private int mRecordCount = 0;
+
+    /**
+     * Appends a serialized record.
+     *
+     * @param record Buffer holding the serialized key, followed by the serialized value.
+     * @param keyLength Length of the serialized key, in bytes.
+     * @param length Length of the serialized record, in bytes.
+     * @throws IOException on I/O error.
+     */
+    private void add(byte[] record, int keyLength, int length) throws IOException {
+      if (3 * (mRecordCount + 1) > mOffsets.length) {
+        mOffsets = Arrays.copyOf(mOffsets, 2 * mOffsets.length);
+      }
+      final int start = mData.getLength();
+      mOffsets[3 * mRecordCount] = start;
+      mOffsets[3 * mRecordCount + 1] = start + keyLength;
+      mOffsets[3 * mRecordCount + 2] = start + length;
+      mRecordCount += 1;
+      mData.write(record, 0, length);
+    }
+
+    /** @return the number of records in the segment. */
+    private int getRecordCount() {
+      return mRecordCount;
+    }
+
+    /**
+     * Adds the records of this segment to a list, in the order they were written.
+     *
+     * @param records List to add the records to.
+     */
+    private void addRecordsTo(List<Record> records) {
+      final byte[] data = mData.getData();
+      for (int i = 0; i < mRecordCount; i++) {
+        records.add(new Record(data, mOffsets[3 * i], mOffsets[3 * i + 1], mOffsets[3 * i + 2]));
+      }
+    }
+  }
+
+  /** A serialized map output record, pointing into the data of its segment. */
+  private static final class Record {
+    /** Buffer holding the record. */
+    private final byte[] mData;
+
+    /** Offset of the serialized key. */
+    private final int mKeyStart;
+
+    /** Offset of the serialized value, which immediately follows the key. */
+    private final int mValueStart;
+
+    /** Offset following the serialized value. */
+    private final int mValueEnd;
+
+    /**
+     * Creates a record.
+     *
+     * @param data Buffer holding the record.
+     * @param keyStart Offset of the serialized key.
+     * @param valueStart Offset of the serialized value.
+     * @param valueEnd Offset following the serialized value.
+     */
+    private Record(byte[] data, int keyStart, int valueStart, int valueEnd) {
+      mData = data;
+      mKeyStart = keyStart;
+      mValueStart = valueStart;
+      mValueEnd = valueEnd;
+    }
+  }
+
+  /** Iterates over sorted records, as the input of a reduce task. */
+  private static final class SortedRecordIterator implements RawKeyValueIterator {
+    /** Records to iterate over. */
+    private final List<Record> mRecords;
+
+    /** Serialized key of the current record. */
+    private final DataInputBuffer mKey = new DataInputBuffer();
+
+    /** Serialized value of the current record. */
+    private final DataInputBuffer mValue = new DataInputBuffer();
+
+    /** Progress through the records. */
+    private final Progress mProgress = new Progress();
+
+    /** Index of the current record. */
+    private int mIndex = -1;
+
+    /**
+     * Creates an iterator over sorted records.
+     *
+     * @param records Records to iterate over.
+     */
+    private SortedRecordIterator(List<Record> records) {
+      mRecords = records;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataInputBuffer getKey() {
+      return mKey;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataInputBuffer getValue() {
+      return mValue;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean next() {
+      mIndex += 1;
+      if (mIndex >= mRecords.size()) {
+        return false;
+      }
+      final Record record = mRecords.get(mIndex);
+      mKey.reset(record.mData, record.mKeyStart, record.mValueStart - record.mKeyStart);
+      mValue.reset(record.mData, record.mValueStart, record.mValueEnd - record.mValueStart);
+      mProgress.set((float) (mIndex + 1) / mRecords.size());
+      return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Progress getProgress() {
+      return mProgress;
+    }
+  }
+
+  /** Partitions and serializes the output of a map task into memory. */
+  private static final class MapOutputCollector extends RecordWriter<Object, Object> {
+    /** Partitioner of the map output, or null if there is a single partition. */
+    private final Partitioner<Object, Object> mPartitioner;
+
+    /** Serialized output, by partition. */
+    private final Segment[] mSegments;
+
+    /** Buffer holding the record being serialized. */
+    private final DataOutputBuffer mRecord = new DataOutputBuffer();
+
+    /** Serializer of the keys, writing to the record buffer. */
+    private final Serializer<Object> mKeySerializer;
+
+    /** Serializer of the values, writing to the record buffer. */
+    private final Serializer<Object> mValueSerializer;
+
+    /** Counter of the records written. */
+    private final Counter mOutputRecords;
+
+    /**
+     * Creates a collector.
+     *
+     * @param conf Configuration of the map task.
+     * @param job Job the map task belongs to.
+     * @param numPartitions Number of reduce partitions.
+     * @param outputRecords Counter of the records written.
+     * @throws IOException If the serializers can not be opened.
+     * @throws ClassNotFoundException If the partitioner class can not be found.
+     */
+    @SuppressWarnings("unchecked")
+    private MapOutputCollector(
+        Configuration conf,
+        Job job,
+        int numPartitions,
+        Counter outputRecords
+    ) throws IOException, ClassNotFoundException {
+      // As in Hadoop, a single partition does not go through the partitioner.
+      mPartitioner = (numPartitions > 1)
+          ? (Partitioner<Object, Object>) ReflectionUtils.newInstance(
+              job.getPartitionerClass(), conf)
+          : null;
+      mSegments = new Segment[numPartitions];
+      for (int i = 0; i < numPartitions; i++) {
+        mSegments[i] = new Segment();
+      }
+      final SerializationFactory factory = new SerializationFactory(conf);
+      mKeySerializer = factory.getSerializer((Class<Object>) job.getMapOutputKeyClass());
+      mKeySerializer.open(mRecord);
+      mValueSerializer = factory.getSerializer((Class<Object>) job.getMapOutputValueClass());
+      mValueSerializer.open(mRecord);
+      mOutputRecords = outputRecords;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(Object key, Object value) throws IOException {
+      final int partition = (null != mPartitioner)
+          ? mPartitioner.getPartition(key, value, mSegments.length)
+          : 0;
+      mRecord.reset();
+      mKeySerializer.serialize(key);
+      final int keyLength = mRecord.getLength();
+      mValueSerializer.serialize(value);
+      mSegments[partition].add(mRecord.getData(), keyLength, mRecord.getLength());
+      mOutputRecords.increment(1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      mKeySerializer.close();
+      mValueSerializer.close();
+    }
+
+    /** @return the serialized output, by partition. */
+    private Segment[] getSegments() {
+      return mSegments;
+    }
+  }
+
+  /**
+   * Record reader which counts the records it reads.
+   *
+   * @param <K> Type of the keys.
+   * @param <V> Type of the values.
+   */
+  private static final class CountingRecordReader<K, V> extends RecordReader<K, V> {
+    /** Wrapped record reader. */
+    private final RecordReader<K, V> mDelegate;
+
+    /** Counter of the records read. */
+    private final Counter mInputRecords;
+
+    /**
+     * Wraps a record reader.
+     *
+     * @param delegate Record reader to wrap.
+     * @param inputRecords Counter of the records read.
+     */
+    private CountingRecordReader(RecordReader<K, V> delegate, Counter inputRecords) {
+      mDelegate = delegate;
+      mInputRecords = inputRecords;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context)
+        throws IOException, InterruptedException {
+      mDelegate.initialize(split, context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      final boolean hasNext = mDelegate.nextKeyValue();
+      if (hasNext) {
+        mInputRecords.increment(1);
+      }
+      return hasNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public K getCurrentKey() throws IOException, InterruptedException {
+      return mDelegate.getCurrentKey();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V getCurrentValue() throws IOException, InterruptedException {
+      return mDelegate.getCurrentValue();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      return mDelegate.getProgress();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException {
+      mDelegate.close();
+    }
+  }
+
+  /**
+   * Record writer which counts the records it writes.
+   *
+   * @param <K> Type of the keys.
+   * @param <V> Type of the values.
+   */
+  private static final class CountingRecordWriter<K, V> extends RecordWriter<K, V> {
+    /** Wrapped record writer. */
+    private final RecordWriter<K, V> mDelegate;
+
+    /** Counter of the records written. */
+    private final Counter mOutputRecords;
+
+    /**
+     * Wraps a record writer.
+     *
+     * @param delegate Record writer to wrap.
+     * @param outputRecords Counter of the records written.
+     */
+    private CountingRecordWriter(RecordWriter<K, V> delegate, Counter outputRecords) {
+      mDelegate = delegate;
+      mOutputRecords = outputRecords;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(K key, V value) throws IOException, InterruptedException {
+      mDelegate.write(key, value);
+      mOutputRecords.increment(1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+      mDelegate.close(context);
+    }
+  }
+
+  /** Status reporter holding the counters of a single task. */
+  private static final class TaskReporter extends StatusReporter {
+    /** Counters of the task. */
+    private final Counters mTaskCounters = new Counters();
+
+    /** {@inheritDoc} */
+    @Override
+    public Counter getCounter(Enum<?> name) {
+      return mTaskCounters.findCounter(name);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Counter getCounter(String group, String name) {
+      return mTaskCounters.findCounter(group, name);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void progress() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public float getProgress() {
+      return 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStatus(String status) {
+      LOG.debug("Task status: {}", status);
+    }
+
+    /** @return the counters of the task. */
+    private Counters getCounters() {
+      return mTaskCounters;
+    }
+  }
+}
@@ -0,0 +1,297 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.mapreduce.avro.generated.JobHistoryEntry;
+import org.kiji.mapreduce.framework.JobHistoryKijiTable;
+import org.kiji.mapreduce.gather.GathererContext;
+import org.kiji.mapreduce.gather.KijiGatherJobBuilder;
+import org.kiji.mapreduce.gather.KijiGatherer;
+import org.kiji.mapreduce.impl.InProcessJobRunner;
+import org.kiji.mapreduce.kvstore.KeyValueStore;
+import org.kiji.mapreduce.kvstore.KeyValueStoreReader;
+import org.kiji.mapreduce.kvstore.RequiredStores;
+import org.kiji.mapreduce.kvstore.lib.TextFileKeyValueStore;
+import org.kiji.mapreduce.kvstore.lib.UnconfiguredKeyValueStore;
+import org.kiji.mapreduce.output.MapReduceJobOutputs;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.util.InstanceBuilder;
+import org.kiji.schema.util.ResourceUtils;
+
+/** Runs a gatherer job with a reducer in-process, without Hadoop's LocalJobRunner. */
+public class TestInProcessGathererReducer extends KijiClientTest {
+  /** Gatherer which maps the zip code of each user to the city in the "cities" store. */
+  public static class CityGatherer extends KijiGatherer<Text, Text> {
+    /** {@inheritDoc} */
+    @Override
+    public Class<?> getOutputKeyClass() {
+      return Text.class;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Class<?> getOutputValueClass() {
+      return Text.class;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KijiDataRequest getDataRequest() {
+      return KijiDataRequest.create("info");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, KeyValueStore<?, ?>> getRequiredStores() {
+      return RequiredStores.just("cities", UnconfiguredKeyValueStore.builder().build());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void gather(KijiRowData row, GathererContext<Text, Text> context)
+        throws IOException {
+      final KeyValueStoreReader<String, String> cities = context.getStore("cities");
+      final Integer zipCode = row.getMostRecentValue("info", "zip_code");
+      context.write(new Text(cities.get(zipCode.toString())), new Text(zipCode.toString()));
+    }
+  }
+
+  /** Gatherer which fails on every row. */
+  public static class FailingGatherer extends TestGathererReducer.TestingGatherer {
+    /** {@inheritDoc} */
+    @Override
+    public void gather(KijiRowData row, GathererContext<LongWritable, Text> context)
+        throws IOException {
+      throw new IOException("Failing on purpose.");
+    }
+  }
+
+  /** Test table, owned by this test. */
+  private KijiTable mTable;
+
+  @Before
+  public final void setupTestInProcessGathererReducer() throws Exception {
+    final KijiTableLayout layout =
+        KijiTableLayout.newLayout(KijiMRTestLayouts.getTestLayout());
+
+    new InstanceBuilder(getKiji())
+        .withTable("test", layout)
+            .withRow("Marsellus Wallace")
+                .withFamily("info")
+                    .withQualifier("zip_code").withValue(94110)
+            .withRow("Vincent Vega")
+                .withFamily("info")
+                    .withQualifier("zip_code").withValue(94110)
+            .withRow("Jules Winnfield")
+                .withFamily("info")
+                    .withQualifier("zip_code").withValue(94111)
+            .withRow("Mia Wallace")
+                .withFamily("info")
+                    .withQualifier("zip_code").withValue(94112)
+        .build();
+
+    mTable = getKiji().openTable("test");
+  }
+
+  @After
+  public final void teardownTestInProcessGathererReducer() throws Exception {
+    ResourceUtils.releaseOrLog(mTable);
+    mTable = null;
+  }
+
+  @Test
+  public void testGathererReducer() throws Exception {
+    final File outputDir = File.createTempFile("gatherer-output", ".dir", getLocalTempDir());
+    Preconditions.checkState(outputDir.delete());
+    final int numSplits = 2;
+
+    final KijiMapReduceJob job = KijiGatherJobBuilder.create()
+        .withConf(getConf())
+        .withGatherer(TestGathererReducer.TestingGatherer.class)
+        .withReducer(TestGathererReducer.TestingReducer.class)
+        .withInputTable(mTable.getURI())
+        .withOutput(MapReduceJobOutputs.newTextMapReduceJobOutput(
+            new Path(outputDir.toString()), numSplits))
+        .withInProcessExecution(4)
+        .build();
+    assertTrue(job.run());
+    assertNotNull(job.getJobID());
+
+    // Each zip code is reduced once, in one of the two partitions.
+    final Map<String, String> counts = Maps.newHashMap();
+    for (int partition = 0; partition < numSplits; partition++) {
+      final File outputPartFile = new File(outputDir, String.format("part-r-%05d", partition));
+      for (String line : FileUtils.readLines(outputPartFile)) {
+        final String[] split = line.split("\t");
+        assertEquals(2, split.length);
+        assertEquals(null, counts.put(split[0], split[1]));
+      }
+    }
+    assertEquals(3, counts.size());
+    assertEquals("2", counts.get("94110"));
+    assertEquals("1", counts.get("94111"));
+    assertEquals("1", counts.get("94112"));
+
+    final Counters counters = job.getCounters();
+    assertEquals(4, counters.findCounter(
+        InProcessJobRunner.TASK_COUNTER_GROUP, InProcessJobRunner.MAP_INPUT_RECORDS).getValue());
+    assertEquals(4, counters.findCounter(
+        InProcessJobRunner.TASK_COUNTER_GROUP, InProcessJobRunner.MAP_OUTPUT_RECORDS).getValue());
+    assertEquals(3, counters.findCounter(
+        InProcessJobRunner.TASK_COUNTER_GROUP, InProcessJobRunner.REDUCE_INPUT_GROUPS).getValue());
+    assertEquals(3, counters.findCounter(
+        InProcessJobRunner.TASK_COUNTER_GROUP, InProcessJobRunner.REDUCE_OUTPUT_RECORDS)
+        .getValue());
+  }
+
+  @Test
+  public void testFileKeyValueStore() throws Exception {
+    final File citiesFile = new File(getLocalTempDir(), "cities.txt");
+    FileUtils.writeStringToFile(citiesFile,
+        "94110\tSan Francisco\n94111\tSan Francisco\n94112\tDaly City\n", "UTF-8");
+    final File outputDir = File.createTempFile("gatherer-output", ".dir", getLocalTempDir());
+    Preconditions.checkState(outputDir.delete());
+
+    // A configuration which would send the files of the store through the DistributedCache:
+    // in-process execution reads them where they are instead.
+    final Configuration conf = new Configuration(getConf());
+    conf.set("mapreduce.jobtracker.address", "jobtracker.example.com:8021");
+    final KijiMapReduceJob job = KijiGatherJobBuilder.create()
+        .withConf(conf)
+        .withGatherer(CityGatherer.class)
+        .withInputTable(mTable.getURI())
+        .withStore("cities", TextFileKeyValueStore.builder()
+            .withInputPath(new Path(citiesFile.toURI()))
+            .build())
+        .withOutput(MapReduceJobOutputs.newTextMapReduceJobOutput(
+            new Path(outputDir.toString()), 1))
+        .withInProcessExecution(2)
+        .build();
+    assertEquals("local",
+        job.getHadoopJob().getConfiguration().get("mapreduce.jobtracker.address"));
+    assertTrue(job.run());
+
+    final Map<String, String> cities = Maps.newHashMap();
+    for (File outputFile : outputDir.listFiles()) {
+      if (outputFile.getName().startsWith("part-")) {
+        for (String line : FileUtils.readLines(outputFile)) {
+          final String[] split = line.split("\t");
+          assertEquals(2, split.length);
+          cities.put(split[1], split[0]);
+        }
+      }
+    }
+    assertEquals(3, cities.size());
+    assertEquals("San Francisco", cities.get("94110"));
+    assertEquals("San Francisco", cities.get("94111"));
+    assertEquals("Daly City", cities.get("94112"));
+  }
+
+  @Test
+  public void testJobHistory() throws Exception {
+    final KijiMapReduceJob job = KijiGatherJobBuilder.create()
+        .withConf(getConf())
+        .withGatherer(TestGathererReducer.TestingGatherer.class)
+        .withReducer(TestGathererReducer.TestingReducer.class)
+        .withInputTable(mTable.getURI())
+        .withOutput(MapReduceJobOutputs.newTextMapReduceJobOutput(
+            new Path(new File(getLocalTempDir(), "succeeded").toString()), 1))
+        .withInProcessExecution(2)
+        .build();
+    assertTrue(job.run());
+
+    final KijiMapReduceJob failingJob = KijiGatherJobBuilder.create()
+        .withConf(getConf())
+        .withGatherer(FailingGatherer.class)
+        .withInputTable(mTable.getURI())
+        .withOutput(MapReduceJobOutputs.newTextMapReduceJobOutput(
+            new Path(new File(getLocalTempDir(), "failed").toString()), 1))
+        .withInProcessExecution(2)
+        .build();
+    assertFalse(failingJob.run());
+
+    final JobHistoryKijiTable jobHistory = JobHistoryKijiTable.open(getKiji());
+    try {
+      final JobHistoryEntry entry = jobHistory.getJobDetails(job.getJobID().toString());
+      assertEquals(job.getJobID().toString(), entry.getJobId());
+      assertEquals(JobHistoryKijiTable.SUCCEEDED, entry.getJobEndStatus());
+      assertTrue(entry.getJobStartTime() <= entry.getJobEndTime());
+      final String taskCounterPrefix = InProcessJobRunner.TASK_COUNTER_GROUP + ":";
+      assertEquals(4L, (long) entry.getCountersFamily().get(
+          taskCounterPrefix + InProcessJobRunner.MAP_INPUT_RECORDS));
+      assertEquals(3L, (long) entry.getCountersFamily().get(
+          taskCounterPrefix + InProcessJobRunner.REDUCE_OUTPUT_RECORDS));
+
+      final JobHistoryEntry failedEntry =
+          jobHistory.getJobDetails(failingJob.getJobID().toString());
+      assertEquals(JobHistoryKijiTable.FAILED, failedEntry.getJobEndStatus());
+    } finally {
+      jobHistory.close();
+    }
+  }
+
+  @Test
+  public void testSubmit() throws Exception {
+    final File outputDir = File.createTempFile("gatherer-output", ".dir", getLocalTempDir());
+    Preconditions.checkState(outputDir.delete());
+
+    final KijiMapReduceJob job = KijiGatherJobBuilder.create()
+        .withConf(getConf())
+        .withGatherer(TestGathererReducer.TestingGatherer.class)
+        .withInputTable(mTable.getURI())
+        .withOutput(MapReduceJobOutputs.newTextMapReduceJobOutput(
+            new Path(outputDir.toString()), 1))
+        .withInProcessExecution(2)
+        .build();
+    final KijiMapReduceJob.Status status = job.submit();
+    assertTrue(job.join());
+    assertTrue(status.isComplete());
+    assertTrue(status.isSuccessful());
+
+    // Map-only job: the gathered pairs are written by the map tasks.
+    assertEquals(4, job.getCounters().findCounter(
+        InProcessJobRunner.TASK_COUNTER_GROUP, InProcessJobRunner.MAP_OUTPUT_RECORDS).getValue());
+  }
+}
@@ -26,13 +26,17 @@ import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.StatusReporter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.TaskAttemptID;
@@ -142,6 +146,44 @@ public abstract class KijiMRPlatformBridge {
       InputSplit split
   ) throws IOException, InterruptedException;
 
+  /**
+   * Get a new Reducer.Context.
+   *
+   * @param conf the Hadoop Configuration used to configure the Context.
+   * @param taskId the TaskAttemptID for the Context.
+   * @param input the iterator over the sorted, serialized input key/value pairs.
+   * @param inputKeyCounter the Counter of the input keys.
+   * @param inputValueCounter the Counter of the input values.
+   * @param writer the RecordWriter for the Context.
+   * @param committer the OutputCommit for the Context.
+   * @param reporter the StatusReporter for the Context.
+   * @param comparator the RawComparator used to group the input keys.
+   * @param keyClass the class of the input keys.
+   * @param valueClass the class of the input values.
+   * @param <KEYIN> the type of the input keys.
+   * @param <VALUEIN> the type of the input values.
+   * @param <KEYOUT> the type of the RecordWriter key.
+   * @param <VALUEOUT> the type of the RecordWriter value.
+   * @return a new Reducer.Context object.
+   * @throws IOException in case of an IO error.
+   * @throws InterruptedException in case of an interruption.
+   */
+  // CSOFF: ParameterNumberCheck
+  public abstract <KEYIN, VALUEIN, KEYOUT, VALUEOUT> Reducer.Context getReducerContext(
+      Configuration conf,
+      TaskAttemptID taskId,
+      RawKeyValueIterator input,
+      Counter inputKeyCounter,
+      Counter inputValueCounter,
+      RecordWriter<KEYOUT, VALUEOUT> writer,
+      OutputCommitter committer,
+      StatusReporter reporter,
+      RawComparator<KEYIN> comparator,
+      Class<KEYIN> keyClass,
+      Class<VALUEIN> valueClass
+  ) throws IOException, InterruptedException;
+  // CSON: ParameterNumberCheck
+
   /**
    * Compares the keys from two KeyValues, assuming the KeyValues are laid out in byte arrays.
    *
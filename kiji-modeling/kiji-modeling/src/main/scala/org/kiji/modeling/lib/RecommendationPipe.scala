@@ -19,18 +19,25 @@
 
 package org.kiji.modeling.lib
 
+import scala.math.min
 import scala.math.sqrt
+import scala.util.Random
 
+import cascading.flow.FlowDef
 import cascading.pipe.Pipe
 import cascading.tuple.Fields
 import com.twitter.algebird.MinHashSignature
 import com.twitter.algebird.MinHasher32
 import com.twitter.scalding.FieldConversions
 import com.twitter.scalding.GroupBuilder
+import com.twitter.scalding.Mode
 import com.twitter.scalding.mathematics.Matrix
 import com.twitter.scalding.mathematics.RowVector
 
 import org.kiji.express.Implicits.pipeToRichPipe
+import org.kiji.express.flow.ColumnFamilyOutputSpec
+import org.kiji.express.flow.EntityId
+import org.kiji.express.flow.KijiOutput
 import org.kiji.modeling.framework.ModelPipeConversions
 
 
@@ -741,7 +748,197 @@ class RecommendationPipe(val pipe: Pipe)
         .project('itemA, 'itemB, 'similarity)
         .rename(('itemA, 'itemB, 'similarity) -> fieldSpec._2)
   }
-}
 
+  /**
+   * Estimates cosine similarity by sampling the pairs of items rated by every user, returning a
+   * pipe of tuples of the form (first item, second item, similarity score).
+   *
+   * This method implements the DIMSUM algorithm described in
+   * <a href=http://arxiv.org/abs/1304.1467>
+   * "Dimension Independent Matrix Square using MapReduce" by Zadeh and Goel</a>.  Unlike
+   * [[cosineSimilarity]], it never computes the full item-by-item product: every user emits a
+   * pair of the items it rated with a probability that decreases with the norms of the two items,
+   * so that popular items, whose similarities are estimated from many users, are sampled the most
+   * aggressively.  The number of tuples shuffled for a pair of items is then bounded by the
+   * oversampling factor rather than by the number of users who rated both items, and the
+   * similarities are still estimated without bias.
+   *
+   * The oversampling factor trades accuracy for cost: a factor of
+   * `10 * log(number of items) / threshold` estimates the similarities above `threshold` with a
+   * small relative error with high probability, while an infinite factor emits every pair and
+   * computes exact similarities.
+   *
+   * As in [[pearsonSimilarity]], we assume that the item-rating vector for a single user fits in
+   * memory.
+   *
+   * @param fieldSpec contains the (row ID, column ID, rating) fields in the current pipe and the
+   *     (first item, second item, similarity) fields in the output pipe.  For item-item similarity,
+   *     the rows will be user IDs and the columns will be item IDs.
+   * @param oversampling is the oversampling factor (gamma in the paper above).  Must be positive.
+   * @param topK is the maximum number of similar items to keep for every item, or 0 to keep all of
+   *     them.  Optional.  See [[topSimilarItems]].
+   * @param seed of the random number generator used to sample the pairs of items.  Optional.
+   * @tparam R is the type of the incoming row IDs.
+   * @tparam C is the type of the incoming column IDs.
+   * @return A pipe containing tuples of (first item, second item, similarity).
+   */
+  def sampledCosineSimilarity[R <% Ordered[R], C <% Ordered[C]](
+      fieldSpec: (Fields, Fields),
+      oversampling: Double,
+      topK: Int = 0,
+      seed: Long = 0L): Pipe = {
+
+    /**
+     * Samples the pairs of items rated by a single user.  An item is kept with probability
+     * `sqrt(gamma) / norm`, and its rating is scaled down by `min(sqrt(gamma), norm)`, so that the
+     * expected contribution of a pair is the product of the ratings divided by the norms.
+     */
+    def samplePairs(userId: R, ratingList: List[(C, Double, Double)]):
+        Iterable[(C, C, Double)] = {
+      // Seeding with the user makes the sample independent from the order of the users.
+      val random = new Random(seed ^ userId.hashCode)
+      for {
+        (itemA: C, probabilityA: Double, scaledRatingA: Double) <- ratingList
+        if (random.nextDouble() < probabilityA)
+        (itemB: C, probabilityB: Double, scaledRatingB: Double) <- ratingList
+        if (itemA < itemB) && (random.nextDouble() < probabilityB)
+      } yield (itemA, itemB, scaledRatingA * scaledRatingB)
+    }
+
+    if (3 != fieldSpec._1.size()) {
+      throw new Exception("Pipe to sample similarities from should have exactly three input " +
+          "fields (row, column, value).")
+    }
+    require(oversampling > 0.0, "Oversampling factor must be positive: " + oversampling)
+    require(topK >= 0, "Number of similar items to keep may not be negative: " + topK)
+
+    val sqrtOversampling: Double = sqrt(oversampling)
+
+    val ratings = pipe
+        .project(fieldSpec._1)
+        .rename(fieldSpec._1 -> ('userId, 'itemId, 'rating))
+        // Zero ratings do not contribute to any dot product.
+        .filter('rating) { rating: Double => rating != 0.0 }
+
+    // Compute the squared norm of every item vector.
+    val itemNorms = ratings
+        .map('rating -> 'squaredRating) { rating: Double => rating * rating }
+        .groupBy('itemId) { _.sum[Double]('squaredRating -> 'squaredNorm) }
+        .rename('itemId -> 'normItemId)
+
+    val similarities = ratings
+        .joinWithSmaller('itemId -> 'normItemId, itemNorms)
+        .map(('rating, 'squaredNorm) -> ('probability, 'scaledRating)) {
+          fields: (Double, Double) =>
+            val (rating, squaredNorm) = fields
+            val norm: Double = sqrt(squaredNorm)
+            (sqrtOversampling / norm, rating / min(sqrtOversampling, norm))
+        }
+        // Group by user to get all of the items that a given user has rated, and sample the pairs
+        // of these items.
+        .groupBy('userId) {
+          _.toList[(C, Double, Double)](('itemId, 'probability, 'scaledRating) -> 'ratingList)
+        }
+        .flatMapTo(('userId, 'ratingList) -> ('itemA, 'itemB, 'score)) {
+          fields: (R, List[(C, Double, Double)]) =>
+            val (userId, ratingList) = fields
+            samplePairs(userId, ratingList)
+        }
+        // The sum is partially computed on the map side, so each mapper emits at most one tuple
+        // per pair of items.
+        .groupBy('itemA, 'itemB) { _.sum[Double]('score) }
+        // Only one ordering of each pair was sampled; report the similarity both ways.
+        .flatMapTo(('itemA, 'itemB, 'score) -> ('itemA, 'itemB, 'score)) {
+          fields: (C, C, Double) =>
+            val (itemA, itemB, score) = fields
+            Seq((itemA, itemB, score), (itemB, itemA, score))
+        }
 
+    val prunedSimilarities =
+        if (topK > 0) {
+          similarities.topSimilarItems[C](('itemA, 'itemB, 'score), topK)
+        } else {
+          similarities
+        }
 
+    prunedSimilarities.rename(('itemA, 'itemB, 'score) -> fieldSpec._2)
+  }
+
+  /**
+   * Prunes a pipe of item-item similarities, keeping the `k` most similar items of every item.
+   *
+   * The similar items are selected with a bounded priority queue which is partially computed on
+   * the map side, so that at most `k` tuples are shuffled per item and per mapper.  The similar
+   * items of an item are emitted together, from the most to the least similar.
+   *
+   * @param fields are the (first item, second item, similarity) fields in the current pipe, which
+   *     are also the fields of the output pipe.
+   * @param k is the maximum number of similar items to keep for every item.  Must be positive.
+   * @tparam C is the type of the item IDs.
+   * @return A pipe containing tuples of (first item, second item, similarity), with at most `k`
+   *     tuples per first item.
+   */
+  def topSimilarItems[C](fields: Fields, k: Int): Pipe = {
+    if (3 != fields.size()) {
+      throw new Exception("Pipe of similarities should have exactly three input fields " +
+          "(first item, second item, similarity).")
+    }
+    require(k > 0, "Number of similar items to keep must be positive: " + k)
+
+    pipe
+        .project(fields)
+        .rename(fields -> ('itemA, 'itemB, 'score))
+        .groupBy('itemA) {
+          _.sortWithTake(('itemB, 'score) -> 'topItems, k) {
+            (x: (C, Double), y: (C, Double)) => x._2 > y._2
+          }
+        }
+        .flatMapTo(('itemA, 'topItems) -> ('itemA, 'itemB, 'score)) {
+          fields: (C, List[(C, Double)]) =>
+            val (itemA, topItems) = fields
+            topItems.map { item: (C, Double) => (itemA, item._1, item._2) }
+        }
+        .rename(('itemA, 'itemB, 'score) -> fields)
+  }
+
+  /**
+   * Writes a pipe of item-item similarities into a map-type column family of a Kiji table: the
+   * similarities of an item are written to the row of the item, in the column whose qualifier is
+   * the similar item.
+   *
+   * The row key format of the table must accept the first items as its only component, and the
+   * family must accept doubles.  Pruning the similarities with [[topSimilarItems]] beforehand
+   * bounds the size of every row.
+   *
+   * @param fields are the (first item, second item, similarity) fields in the current pipe.
+   * @param tableURI is the URI of the Kiji table to write to.
+   * @param family is the map-type column family to write to.
+   * @param flowDef of the job writing the similarities.
+   * @param mode of the job writing the similarities.
+   * @return the pipe written to the table.
+   */
+  def writeSimilarItems(
+      fields: Fields,
+      tableURI: String,
+      family: String
+  )(implicit flowDef: FlowDef, mode: Mode): Pipe = {
+    if (3 != fields.size()) {
+      throw new Exception("Pipe of similarities should have exactly three input fields " +
+          "(first item, second item, similarity).")
+    }
+
+    pipe
+        .mapTo(fields -> ('entityId, 'similarItem, 'similarity)) {
+          fields: (Any, Any, Double) =>
+            val (item, similarItem, similarity) = fields
+            (EntityId(item), similarItem.toString, similarity)
+        }
+        .write(KijiOutput.builder
+            .withTableURI(tableURI)
+            .withColumnSpecs('similarity -> ColumnFamilyOutputSpec.builder
+                .withFamily(family)
+                .withQualifierSelector('similarItem)
+                .build)
+            .build)
+  }
+}
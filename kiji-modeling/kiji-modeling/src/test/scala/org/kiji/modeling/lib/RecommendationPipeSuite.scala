@@ -24,6 +24,7 @@ import java.io.File
 import scala.collection.mutable
 import scala.compat.Platform
 import scala.math.abs
+import scala.math.sqrt
 import scala.util.Random
 
 
@@ -43,9 +44,11 @@ import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
 import org.kiji.express.KijiSuite
+import org.kiji.express.flow.ColumnFamilyOutputSpec
 import org.kiji.express.flow.EntityId
 import org.kiji.express.flow.FlowCell
 import org.kiji.express.flow.KijiInput
+import org.kiji.express.flow.KijiOutput
 import org.kiji.express.flow.util.ResourceUtil.doAndClose
 import org.kiji.express.flow.util.ResourceUtil.doAndRelease
 import org.kiji.modeling.framework.KijiModelingJob
@@ -53,6 +56,7 @@ import org.kiji.schema.Kiji
 import org.kiji.schema.KijiTable
 import org.kiji.schema.KijiURI
 import org.kiji.schema.avro.TableLayoutDesc
+import org.kiji.schema.layout.KijiTableLayout
 import org.kiji.schema.layout.KijiTableLayouts
 import org.kiji.schema.util.InstanceBuilder
 
@@ -608,6 +612,190 @@ class RecommendationPipeSuite extends KijiSuite {
     jobTest.run.finish
   }
 
+  test("Sampled cosine similarity without sampling matches cosine similarity.") {
+    // With an infinite oversampling factor, every pair of items is emitted.
+    val fn = (pipe: RecommendationPipe) => { fieldSpec: (Fields, Fields) =>
+      pipe.sampledCosineSimilarity[Long, Long](fieldSpec, Double.PositiveInfinity)
+    }
+    val checker = new VerifyCosineSimilarity()
+    testItemItemSimilarity(checker.getRatings, checker.computeSimilarities, fn)
+  }
+
+  test("Sampled cosine similarity keeps the top K similar items of every item.") {
+    // The most similar items are: 1 and 2 (0.988), 3 and 1 (0.973) and 4 and 3 (0.510).
+    val userRatings: List[(Long, Long, Double)] = List(
+        (100L, 1L, 5.0), (100L, 2L, 5.0), (100L, 3L, 4.0), (100L, 4L, 1.0),
+        (101L, 1L, 1.0), (101L, 2L, 1.0), (101L, 3L, 2.0), (101L, 4L, 5.0),
+        (102L, 1L, 3.0), (102L, 2L, 2.0), (102L, 3L, 3.0))
+
+    class TopSimilarityCalculator(args: Args) extends KijiModelingJob(args) {
+      TextLine(args("input"))
+          .read
+          .mapTo('line -> ('user, 'item, 'rating)) { line: String =>
+            val toks: Array[String] = line.split(",")
+            (toks(0).toLong, toks(1).toLong, toks(2).toDouble)
+          }
+          .sampledCosineSimilarity[Long, Long](
+              ('user, 'item, 'rating) -> ('itemA, 'itemB, 'similarity),
+              Double.PositiveInfinity,
+              topK = 1)
+          .mapTo(('itemA, 'itemB) -> 'result) { items: (Long, Long) =>
+            "%d,%d".format(items._1, items._2)
+          }
+          .write(TextLine(args("output")))
+    }
+
+    def validateOutput(output: mutable.Buffer[String]): Unit = {
+      assert(output.toSet === Set("1,2", "2,1", "3,1", "4,3"))
+    }
+
+    val jobTest = JobTest(new TopSimilarityCalculator(_))
+        .arg("input", "inputFile")
+        .arg("output", "outputFile")
+        .source(TextLine("inputFile"), userRatings.zipWithIndex.map {
+          x: ((Long, Long, Double), Int) =>
+            val ((userId, itemId, rating), index) = x
+            ((index + 1).toString, "%s,%s,%s".format(userId, itemId, rating))
+        })
+        .sink(TextLine("outputFile")) { validateOutput }
+
+    jobTest.run.finish
+  }
+
+  test("Sampled cosine similarity estimates the similarity of frequently rated items.") {
+    // 1000 users rate items 1 and 2 identically, and 1000 other users rate items 1 and 3. The
+    // similarity of items 1 and 2, and of items 1 and 3, is then 1/sqrt(2), and the similarity of
+    // items 2 and 3 is 0.
+    val userRatings: List[(Long, Long, Double)] = (1L to 2000L).toList.flatMap { userId: Long =>
+      List((userId, 1L, 1.0), (userId, if (userId <= 1000L) 2L else 3L, 1.0))
+    }
+
+    class SampledSimilarityCalculator(args: Args) extends KijiModelingJob(args) {
+      TextLine(args("input"))
+          .read
+          .mapTo('line -> ('user, 'item, 'rating)) { line: String =>
+            val toks: Array[String] = line.split(",")
+            (toks(0).toLong, toks(1).toLong, toks(2).toDouble)
+          }
+          .sampledCosineSimilarity[Long, Long](
+              ('user, 'item, 'rating) -> ('itemA, 'itemB, 'similarity),
+              oversampling = 800.0,
+              seed = 42L)
+          .write(TextLine(args("output")))
+    }
+
+    def validateOutput(output: mutable.Buffer[(Long, Long, Double)]): Unit = {
+      val similarities: Map[(Long, Long), Double] = output
+          .map { x: (Long, Long, Double) => ((x._1, x._2), x._3) }
+          .toMap
+      assert(similarities.keySet === Set((1L, 2L), (2L, 1L), (1L, 3L), (3L, 1L)))
+      similarities.values.foreach { similarity: Double =>
+        assert(abs(similarity - sqrt(0.5)) < 0.1, "Similarity estimate too far: " + similarity)
+      }
+    }
+
+    val jobTest = JobTest(new SampledSimilarityCalculator(_))
+        .arg("input", "inputFile")
+        .arg("output", "outputFile")
+        .source(TextLine("inputFile"), userRatings.zipWithIndex.map {
+          x: ((Long, Long, Double), Int) =>
+            val ((userId, itemId, rating), index) = x
+            ((index + 1).toString, "%s,%s,%s".format(userId, itemId, rating))
+        })
+        .sink(TextLine("outputFile")) { validateOutput }
+
+    jobTest.run.finish
+  }
+
+  test("Top similar items are kept for every item.") {
+    val input: Seq[(Int, String)] = Seq(
+        "a,b,0.9",
+        "a,c,0.5",
+        "a,d,0.7",
+        "b,a,0.9",
+        "b,c,0.1",
+        "c,a,0.5")
+        .zipWithIndex
+        .map { x: (String, Int) => (x._2 + 1, x._1) }
+
+    class TopSimilarItemsJob(args: Args) extends KijiModelingJob(args) {
+      TextLine(args("input"))
+          .read
+          .mapTo('line -> ('item, 'similarItem, 'similarity)) { line: String =>
+            val toks: Array[String] = line.split(",")
+            (toks(0), toks(1), toks(2).toDouble)
+          }
+          .topSimilarItems[String](('item, 'similarItem, 'similarity), 2)
+          .mapTo(('item, 'similarItem) -> 'result) { items: (String, String) =>
+            items._1 + "," + items._2
+          }
+          .write(TextLine(args("output")))
+    }
+
+    def validateOutput(output: mutable.Buffer[String]): Unit = {
+      assert(output.toSet === Set("a,b", "a,d", "b,a", "b,c", "c,a"))
+    }
+
+    val jobTest = JobTest(new TopSimilarItemsJob(_))
+        .arg("input", "inputFile")
+        .arg("output", "outputFile")
+        .source(TextLine("inputFile"), input)
+        .sink(TextLine("outputFile")) { validateOutput }
+
+    jobTest.run.finish
+  }
+
+  test("Similar items are written to a map-type column family.") {
+    val layout: KijiTableLayout =
+        KijiTableLayout.newLayout(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE_MAP_TYPE))
+    val uri: String = doAndRelease(makeTestKijiTable(layout)) { table: KijiTable =>
+      table.getURI.toString
+    }
+
+    val input: Seq[(Int, String)] = Seq("a,b,0.9", "a,c,0.5", "b,a,0.9")
+        .zipWithIndex
+        .map { x: (String, Int) => (x._2 + 1, x._1) }
+
+    class SimilarItemsWriterJob(args: Args) extends KijiModelingJob(args) {
+      TextLine(args("input"))
+          .read
+          .mapTo('line -> ('item, 'similarItem, 'similarity)) { line: String =>
+            val toks: Array[String] = line.split(",")
+            (toks(0), toks(1), toks(2).toDouble)
+          }
+          .writeSimilarItems(('item, 'similarItem, 'similarity), args("table"), "pets")
+    }
+
+    def validateOutput(output: mutable.Buffer[(EntityId, Seq[FlowCell[Double]])]): Unit = {
+      val rows: Map[String, Map[String, Double]] = output.map {
+        row: (EntityId, Seq[FlowCell[Double]]) =>
+          val (entityId, cells) = row
+          val similarities: Map[String, Double] = cells
+              .map { cell: FlowCell[Double] => (cell.qualifier, cell.datum) }
+              .toMap
+          (entityId(0).toString, similarities)
+      }.toMap
+      assert(rows === Map(
+          "a" -> Map("b" -> 0.9, "c" -> 0.5),
+          "b" -> Map("a" -> 0.9)))
+    }
+
+    val jobTest = JobTest(new SimilarItemsWriterJob(_))
+        .arg("input", "inputFile")
+        .arg("table", uri)
+        .source(TextLine("inputFile"), input)
+        .sink(KijiOutput.builder
+            .withTableURI(uri)
+            .withColumnSpecs('similarity -> ColumnFamilyOutputSpec.builder
+                .withFamily("pets")
+                .withQualifierSelector('similarItem)
+                .build)
+            .build
+        ) { validateOutput }
+
+    jobTest.run.finish
+  }
+
   test("Counting tuples on pipe in parallel works correctly") {
     // Create input with offset = some integer and line = that integer.toString
     val input = (1 to 20)
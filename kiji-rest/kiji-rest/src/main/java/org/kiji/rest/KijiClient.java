@@ -21,7 +21,9 @@ package org.kiji.rest;
 
 import java.util.Collection;
 
+import org.kiji.rest.util.RowCache;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiBufferedWriter;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableReader;
@@ -77,6 +79,26 @@ public interface KijiClient {
    */
   KijiTableReader getKijiTableReader(String instance, String table);
 
+  /**
+   * Gets the KijiBufferedWriter shared by all writers of a table. Caller should not close the
+   * shared writer. Buffered writes are committed when the buffer fills, periodically, or when
+   * the caller flushes the writer.
+   *
+   * @param instance in which the table resides
+   * @param table name of the table to write
+   * @return the shared KijiBufferedWriter for the table
+   * @throws javax.ws.rs.WebApplicationException if there is an error.
+   */
+  KijiBufferedWriter getKijiBufferedWriter(String instance, String table);
+
+  /**
+   * Returns the cache of row results served by this client. The returned cache may be disabled,
+   * in which case it caches nothing.
+   *
+   * @return the row cache of this client.
+   */
+  RowCache getRowCache();
+
   /**
    * Removes the table from the various table reader caches. This can happen as a response to a
    * user request, or because a table is no longer valid.
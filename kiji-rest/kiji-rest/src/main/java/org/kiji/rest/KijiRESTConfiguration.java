@@ -27,6 +27,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import org.kiji.rest.util.KijiInstanceCache;
+import org.kiji.rest.util.RowRequestExecutor;
+
 /**
  * The Java object which is deserialized from the YAML configuration file.
  * This parametrizes the KijiRESTService.
@@ -61,6 +64,34 @@ public class KijiRESTConfiguration extends Configuration {
   @JsonProperty("service-discovery")
   private boolean mServiceDiscovery = true;
 
+  /** Approximate maximum size in bytes of the row cache. The row cache is disabled if 0. */
+  @JsonProperty("row-cache-max-bytes")
+  private long mRowCacheMaxBytes = 0;
+
+  /** Set row cache time to live in seconds. */
+  @JsonProperty("row-cache-ttl")
+  private long mRowCacheTTL = 60;
+
+  /** Size in bytes of the buffers of the writers shared by bulk row writes. */
+  @JsonProperty("write-buffer-bytes")
+  private long mWriteBufferSize = KijiInstanceCache.DEFAULT_WRITE_BUFFER_SIZE;
+
+  /** Interval in milliseconds between flushes of the writers shared by bulk row writes. */
+  @JsonProperty("write-flush-interval")
+  private long mWriteFlushInterval = ManagedKijiClient.DEFAULT_WRITE_FLUSH_INTERVAL;
+
+  /** Number of threads performing the HBase operations of row requests. */
+  @JsonProperty("row-request-threads")
+  private int mRowRequestThreads = RowRequestExecutor.DEFAULT_THREADS;
+
+  /** Number of row requests which may wait for a thread before requests are rejected. */
+  @JsonProperty("row-request-queue-size")
+  private int mRowRequestQueueSize = RowRequestExecutor.DEFAULT_QUEUE_SIZE;
+
+  /** Maximum time in milliseconds a row request may take. */
+  @JsonProperty("row-request-timeout")
+  private long mRowRequestTimeout = RowRequestExecutor.DEFAULT_TIMEOUT;
+
   /** @return The cluster address. */
   public final String getClusterURI() {
     return mCluster;
@@ -91,6 +122,41 @@ public class KijiRESTConfiguration extends Configuration {
     return mServiceDiscovery;
   }
 
+  /** @return The approximate maximum size in bytes of the row cache. */
+  public long getRowCacheMaxBytes() {
+    return mRowCacheMaxBytes;
+  }
+
+  /** @return The row cache time to live in seconds. */
+  public long getRowCacheTTL() {
+    return mRowCacheTTL;
+  }
+
+  /** @return The size in bytes of the buffers of shared writers. */
+  public long getWriteBufferSize() {
+    return mWriteBufferSize;
+  }
+
+  /** @return The interval in milliseconds between flushes of shared writers. */
+  public long getWriteFlushInterval() {
+    return mWriteFlushInterval;
+  }
+
+  /** @return The number of threads performing the HBase operations of row requests. */
+  public int getRowRequestThreads() {
+    return mRowRequestThreads;
+  }
+
+  /** @return The number of row requests which may wait for a thread. */
+  public int getRowRequestQueueSize() {
+    return mRowRequestQueueSize;
+  }
+
+  /** @return The maximum time in milliseconds a row request may take. */
+  public long getRowRequestTimeout() {
+    return mRowRequestTimeout;
+  }
+
   /**
    * @return A map of arbitrary properties for use by plugins.
    */
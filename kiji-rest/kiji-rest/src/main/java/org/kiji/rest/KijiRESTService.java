@@ -100,6 +100,9 @@ public class KijiRESTService extends Application<KijiRESTConfiguration> {
         .healthChecks()
         .register("KijiClientHealthCheck", new KijiClientHealthCheck(managedKijiClient));
 
+    // Publish row cache hit rates on the admin port.
+    managedKijiClient.getRowCache().registerMetrics(environment.metrics());
+
     // Remove all built-in Dropwizard ExceptionHandler.
     // Always depend on custom ones.
     // Inspired by Jeremy Whitlock's suggestion on thoughtspark.org.
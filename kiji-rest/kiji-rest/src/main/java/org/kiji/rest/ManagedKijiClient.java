@@ -21,9 +21,14 @@ package org.kiji.rest;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -42,7 +47,9 @@ import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.dropwizard.lifecycle.Managed;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
@@ -54,7 +61,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.kiji.rest.util.KijiInstanceCache;
+import org.kiji.rest.util.RowCache;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiBufferedWriter;
 import org.kiji.schema.KijiNotInstalledException;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiTable;
@@ -62,6 +71,8 @@ import org.kiji.schema.KijiTableNotFoundException;
 import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.util.ResourceUtils;
+import org.kiji.schema.zookeeper.TableLayoutTracker;
+import org.kiji.schema.zookeeper.TableLayoutUpdateHandler;
 import org.kiji.schema.zookeeper.ZooKeeperUtils;
 
 /**
@@ -72,6 +83,9 @@ public class ManagedKijiClient implements KijiClient, Managed {
 
   public static final long DEFAULT_TIMEOUT = 10;
 
+  /** Default interval in milliseconds between flushes of shared buffered writers. */
+  public static final long DEFAULT_WRITE_FLUSH_INTERVAL = 1000;
+
   /** Holds instances currently being served. */
   private final LoadingCache<String, KijiInstanceCache> mInstanceCaches;
 
@@ -92,6 +106,22 @@ public class ManagedKijiClient implements KijiClient, Managed {
   private volatile Set<String> mKijiInstances;
   private final Set<String> mVisibleKijiInstances;
 
+  /** Cache of row results served by this client. May be disabled. */
+  private final RowCache mRowCache;
+
+  /**
+   * Trackers of the layouts of tables whose rows may be held by <code>mRowCache</code>, keyed by
+   * table URI. Only populated when the row cache is enabled.
+   */
+  private final ConcurrentMap<KijiURI, TableLayoutTracker> mLayoutTrackers =
+      Maps.newConcurrentMap();
+
+  /** Interval in milliseconds between flushes of shared buffered writers. */
+  private final long mWriteFlushInterval;
+
+  /** Periodically flushes the shared buffered writers. Null if periodic flushing is disabled. */
+  private final ScheduledExecutorService mWriteFlusher;
+
   /** Tracks the lifecycle state of this ManagedKijiClient. */
   private final AtomicReference<State> mState;
 
@@ -114,7 +144,10 @@ public class ManagedKijiClient implements KijiClient, Managed {
   public ManagedKijiClient(final KijiRESTConfiguration configuration) throws IOException {
     this(KijiURI.newBuilder(configuration.getClusterURI()).build(),
          configuration.getCacheTimeout(),
-         configuration.getVisibleInstances());
+         configuration.getVisibleInstances(),
+         new RowCache(configuration.getRowCacheMaxBytes(), configuration.getRowCacheTTL()),
+         configuration.getWriteBufferSize(),
+         configuration.getWriteFlushInterval());
   }
 
   /**
@@ -143,7 +176,49 @@ public class ManagedKijiClient implements KijiClient, Managed {
                            final long cacheTimeout,
                            final Set<String> visibleInstances)
       throws IOException {
+    this(clusterURI,
+         cacheTimeout,
+         visibleInstances,
+         RowCache.disabled(),
+         KijiInstanceCache.DEFAULT_WRITE_BUFFER_SIZE,
+         DEFAULT_WRITE_FLUSH_INTERVAL);
+  }
+
+  /**
+   * Constructs a ManagedKijiClient.
+   *
+   * @param clusterURI of HBase cluster to serve.
+   * @param cacheTimeout time to hold open connections to instances and tables before clearing them
+   *        from the cache.
+   * @param visibleInstances is the set of instances that are specified as visible in the
+   *        configuration.yml file. If this set is empty, all instances are considered to be
+   *        visible.
+   * @param rowCache is the cache of row results served by this client. Rows of a table are
+   *        invalidated when the layout of the table changes.
+   * @param writeBufferSize is the size in bytes of the buffers of shared buffered writers.
+   * @param writeFlushInterval is the interval in milliseconds between flushes of the shared
+   *        buffered writers. Shared writers are only flushed when full if this is not positive.
+   * @throws IOException if error while creating connections to the cluster.
+   */
+  public ManagedKijiClient(final KijiURI clusterURI,
+                           final long cacheTimeout,
+                           final Set<String> visibleInstances,
+                           final RowCache rowCache,
+                           final long writeBufferSize,
+                           final long writeFlushInterval)
+      throws IOException {
     mVisibleKijiInstances = visibleInstances;
+    mRowCache = rowCache;
+    mWriteFlushInterval = writeFlushInterval;
+    if (writeFlushInterval > 0) {
+      mWriteFlusher = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat(ManagedKijiClient.class.getCanonicalName() + "-flusher-%d")
+              .build());
+    } else {
+      mWriteFlusher = null;
+    }
     mZKFramework = ZooKeeperUtils.getZooKeeperClient(clusterURI);
     mZKInstances =
         new PathChildrenCache(
@@ -175,7 +250,7 @@ public class ManagedKijiClient implements KijiClient, Managed {
               throw new KijiNotInstalledException(
                   "Kiji instance not found in known instances set.", instanceURI);
             }
-            return new KijiInstanceCache(instanceURI);
+            return new KijiInstanceCache(instanceURI, writeBufferSize);
           }
         });
 
@@ -191,6 +266,16 @@ public class ManagedKijiClient implements KijiClient, Managed {
     mZKInstances.getListenable().addListener(new InstanceListener());
     mZKInstances.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
     refreshInstances();
+    if (mWriteFlusher != null) {
+      mWriteFlusher.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          for (KijiInstanceCache instanceCache : mInstanceCaches.asMap().values()) {
+            instanceCache.flushWriters();
+          }
+        }
+      }, mWriteFlushInterval, mWriteFlushInterval, TimeUnit.MILLISECONDS);
+    }
     LOG.info("Successfully started ManagedKijiClient!");
   }
 
@@ -201,6 +286,16 @@ public class ManagedKijiClient implements KijiClient, Managed {
         "Can not stop in state %s.", mState.get());
     LOG.info("Stopping ManagedKijiClient.");
 
+    if (mWriteFlusher != null) {
+      mWriteFlusher.shutdown();
+    }
+
+    for (TableLayoutTracker tracker : mLayoutTrackers.values()) {
+      ResourceUtils.closeOrLog(tracker);
+    }
+    mLayoutTrackers.clear();
+    mRowCache.invalidateAll();
+
     ResourceUtils.closeOrLog(mZKInstances);
     ResourceUtils.closeOrLog(mZKFramework);
 
@@ -278,7 +373,9 @@ public class ManagedKijiClient implements KijiClient, Managed {
     Preconditions.checkState(state == State.STARTED,
         "Can not get Kiji table while in state %s.", state);
     try {
-      return getInstanceCache(instance).getKijiTable(table);
+      final KijiTable kijiTable = getInstanceCache(instance).getKijiTable(table);
+      trackLayout(instance, table, kijiTable.getURI());
+      return kijiTable;
     } catch (ExecutionException e) {
       final Throwable cause = e.getCause();
       throw new WebApplicationException(cause, getExceptionStatus(cause));
@@ -307,6 +404,24 @@ public class ManagedKijiClient implements KijiClient, Managed {
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public KijiBufferedWriter getKijiBufferedWriter(String instance, String table) {
+    final State state = mState.get();
+    Preconditions.checkState(state == State.STARTED,
+        "Can not get shared Kiji buffered writer while in state %s.", state);
+    try {
+      return getInstanceCache(instance).getKijiBufferedWriter(table);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      throw new WebApplicationException(cause, getExceptionStatus(cause));
+    } catch (WebApplicationException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new WebApplicationException(e.getCause(), Response.Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void invalidateTable(String instance, String table) {
@@ -314,6 +429,23 @@ public class ManagedKijiClient implements KijiClient, Managed {
     Preconditions.checkState(state == State.STARTED,
         "Can not invalidate table while in state %s.", state);
     getInstanceCache(instance).invalidateTable(table);
+    final Iterator<Map.Entry<KijiURI, TableLayoutTracker>> trackers =
+        mLayoutTrackers.entrySet().iterator();
+    while (trackers.hasNext()) {
+      final Map.Entry<KijiURI, TableLayoutTracker> entry = trackers.next();
+      if (instance.equals(entry.getKey().getInstance())
+          && table.equals(entry.getKey().getTable())) {
+        ResourceUtils.closeOrLog(entry.getValue());
+        trackers.remove();
+      }
+    }
+    mRowCache.invalidateTable(instance, table);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public RowCache getRowCache() {
+    return mRowCache;
   }
 
   /** {@inheritDoc} */
@@ -323,6 +455,43 @@ public class ManagedKijiClient implements KijiClient, Managed {
     Preconditions.checkState(state == State.STARTED,
         "Can not invalidate instance while in state %s.", state);
     mInstanceCaches.invalidate(instance);
+    final Iterator<Map.Entry<KijiURI, TableLayoutTracker>> trackers =
+        mLayoutTrackers.entrySet().iterator();
+    while (trackers.hasNext()) {
+      final Map.Entry<KijiURI, TableLayoutTracker> entry = trackers.next();
+      if (instance.equals(entry.getKey().getInstance())) {
+        ResourceUtils.closeOrLog(entry.getValue());
+        trackers.remove();
+      }
+    }
+    mRowCache.invalidateInstance(instance);
+  }
+
+  /**
+   * Starts tracking the layout of a table so that its cached rows are invalidated when its layout
+   * changes. Does nothing if the row cache is disabled or the table is already tracked.
+   *
+   * @param instance name of the instance containing the table.
+   * @param table name of the table.
+   * @param tableURI of the table.
+   * @throws IOException on unrecoverable ZooKeeper error.
+   */
+  private void trackLayout(
+      final String instance,
+      final String table,
+      final KijiURI tableURI
+  ) throws IOException {
+    if (!mRowCache.isEnabled() || mLayoutTrackers.containsKey(tableURI)) {
+      return;
+    }
+    final TableLayoutTracker tracker =
+        new TableLayoutTracker(mZKFramework, tableURI, new LayoutListener(instance, table));
+    if (mLayoutTrackers.putIfAbsent(tableURI, tracker) == null) {
+      tracker.start();
+    } else {
+      // Another request started tracking this table concurrently.
+      ResourceUtils.closeOrLog(tracker);
+    }
   }
 
   /**
@@ -401,4 +570,32 @@ public class ManagedKijiClient implements KijiClient, Managed {
       refreshInstances();
     }
   }
+
+  /**
+   * A {@link TableLayoutUpdateHandler} which invalidates the cached rows of a table when its
+   * layout changes.
+   */
+  private class LayoutListener implements TableLayoutUpdateHandler {
+    private final String mInstance;
+    private final String mTable;
+
+    /**
+     * Creates a new LayoutListener for a table.
+     *
+     * @param instance name of the instance containing the table.
+     * @param table name of the table.
+     */
+    public LayoutListener(final String instance, final String table) {
+      mInstance = instance;
+      mTable = table;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void update(final String layout) {
+      LOG.debug("Invalidating cached rows of table {} in instance {} on layout update to {}.",
+          mTable, mInstance, layout);
+      mRowCache.invalidateTable(mInstance, mTable);
+    }
+  }
 }
@@ -90,4 +90,12 @@ public final class RoutesConstants {
    * {@link org.kiji.rest.resources.RowsResource#getRows}
    */
   public static final String ROWS_PATH = TABLE_PATH + "/rows";
+
+  /**
+   * POSTs a stream of newline-delimited JSON rows.
+   * <li>Path: /v1/instances/{instance}/tables/{table}/rows/bulk
+   * <li>Handled by:
+   * {@link org.kiji.rest.resources.RowsResource#postBulkRows}
+   */
+  public static final String BULK_ROWS_ENDPOINT = "/bulk";
 }
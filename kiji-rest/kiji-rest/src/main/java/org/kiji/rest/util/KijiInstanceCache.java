@@ -36,6 +36,7 @@ import org.slf4j.LoggerFactory;
 
 import org.kiji.schema.HBaseEntityId;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiBufferedWriter;
 import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableReader;
@@ -51,11 +52,17 @@ public class KijiInstanceCache {
 
   private static final long TEN_MINUTES = 10 * 60 * 1000;
 
+  /** Default size in bytes of the buffers of shared KijiBufferedWriters. */
+  public static final long DEFAULT_WRITE_BUFFER_SIZE = 2L * 1024L * 1024L;
+
   /** Determines whether new values can be loaded into the contained caches. */
   private volatile boolean mIsOpen = true;
 
   private final Kiji mKiji;
 
+  /** Size in bytes of the buffers of shared KijiBufferedWriters. */
+  private final long mWriteBufferSize;
+
   private final LoadingCache<String, KijiTable> mTables =
       CacheBuilder.newBuilder()
           // Expire table if it has not been used in 10 minutes
@@ -126,6 +133,51 @@ public class KijiInstanceCache {
               }
           );
 
+  private final LoadingCache<String, KijiBufferedWriter> mWriters =
+      CacheBuilder.newBuilder()
+          // Expire writer if it has not been used in 10 minutes
+          .expireAfterAccess(10, TimeUnit.MINUTES)
+          .removalListener(
+              new RemovalListener<String, KijiBufferedWriter>() {
+                @Override
+                public void onRemoval(
+                    RemovalNotification<String,
+                    KijiBufferedWriter> notification
+                ) {
+                  try {
+                    // Closing flushes any remaining buffered writes.
+                    notification.getValue().close(); // strong cache; should not be null
+                  } catch (IOException e) {
+                    LOG.warn("Unable to close KijiBufferedWriter {} on table {}.",
+                        notification.getValue(), notification.getKey());
+                  }
+                }
+              }
+          )
+          .build(
+              new CacheLoader<String, KijiBufferedWriter>() {
+                @Override
+                public KijiBufferedWriter load(String table) throws IOException {
+                  try {
+                    Preconditions.checkState(mIsOpen,
+                        "Cannot open KijiBufferedWriter in closed cache.");
+                    final KijiBufferedWriter writer =
+                        mTables.get(table).getWriterFactory().openBufferedWriter();
+                    writer.setBufferSize(mWriteBufferSize);
+                    return writer;
+                  } catch (ExecutionException e) {
+                    // Unwrap (if possible) and rethrow. Will be caught by #getKijiBufferedWriter.
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                      throw (IOException) cause;
+                    } else {
+                      throw new IOException(cause);
+                    }
+                  }
+                }
+              }
+          );
+
   /**
    *
    * Create a new KijiInstanceCache which caches the instance at the provided URI.
@@ -134,6 +186,19 @@ public class KijiInstanceCache {
    * @throws IOException if error while opening kiji.
    */
   public KijiInstanceCache(KijiURI uri) throws IOException {
+    this(uri, DEFAULT_WRITE_BUFFER_SIZE);
+  }
+
+  /**
+   *
+   * Create a new KijiInstanceCache which caches the instance at the provided URI.
+   *
+   * @param uri of instance to cache access to.
+   * @param writeBufferSize is the size in bytes of the buffers of shared KijiBufferedWriters.
+   * @throws IOException if error while opening kiji.
+   */
+  public KijiInstanceCache(KijiURI uri, long writeBufferSize) throws IOException {
+    mWriteBufferSize = writeBufferSize;
     mKiji = Kiji.Factory.open(uri);
   }
 
@@ -171,11 +236,43 @@ public class KijiInstanceCache {
   }
 
   /**
-   * Invalidates cached KijiTable and KijiTableReader instances for a table.
+   * Returns the KijiBufferedWriter instance shared by all writers of the table held by this cache.
+   * This KijiBufferedWriter instance should *NOT* be closed. Writes are committed when the buffer
+   * fills, when {@link #flushWriters()} is called, or when the writer is removed from the cache.
+   *
+   * @param table name.
+   * @return the shared KijiBufferedWriter for the table.
+   * @throws ExecutionException if a KijiBufferedWriter cannot be created for the table.
+   */
+  public KijiBufferedWriter getKijiBufferedWriter(String table) throws ExecutionException {
+    return mWriters.get(table);
+  }
+
+  /**
+   * Commits the buffered writes of all shared KijiBufferedWriter instances held by this cache.
+   * Failures are logged and do not prevent the remaining writers from being flushed. Writes whose
+   * failures must be reported to their request are not made through the shared writers.
+   */
+  public void flushWriters() {
+    for (KijiBufferedWriter writer : mWriters.asMap().values()) {
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        LOG.warn("Unable to flush KijiBufferedWriter {}: {}", writer, e.getMessage());
+      } catch (IllegalStateException e) {
+        // The writer was closed concurrently, which flushed it.
+        LOG.debug("Skipping flush of closed KijiBufferedWriter {}.", writer);
+      }
+    }
+  }
+
+  /**
+   * Invalidates cached KijiTable, KijiTableReader and KijiBufferedWriter instances for a table.
    *
    * @param table name to be invalidated.
    */
   public void invalidateTable(String table) {
+    mWriters.invalidate(table);
     mTables.invalidate(table);
     mReaders.invalidate(table);
   }
@@ -187,6 +284,8 @@ public class KijiInstanceCache {
    */
   public void stop() throws IOException {
     mIsOpen = false; // Stop caches from loading more entries
+    mWriters.invalidateAll();
+    mWriters.cleanUp();
     mReaders.invalidateAll();
     mReaders.cleanUp();
     mTables.invalidateAll();
@@ -0,0 +1,377 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.util;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiDataRequest;
+
+/**
+ * A bounded cache of serialized row results served by KijiREST point gets.
+ *
+ * <p>
+ *   Entries are keyed on the instance, table and HBase row key of the row, and hold one
+ *   serialized JSON result per distinct {@link KijiDataRequest}. Since data requests compare
+ *   equal regardless of the order in which their columns were added, two requests for the same
+ *   columns, max versions and time range share a cached result.
+ * </p>
+ *
+ * <p>
+ *   The cache is bounded by the approximate number of bytes held by the cached results, and
+ *   entries expire a fixed time after they were written. Rows are invalidated when written
+ *   through KijiREST and tables are invalidated when their layout changes. Writes made outside
+ *   of this REST server are not observed; the time to live bounds how stale a result may be.
+ * </p>
+ *
+ * <p>
+ *   A result read from the table must not be cached if the row was invalidated while it was being
+ *   read. Callers take the generation of the row with {@link #getGeneration} before reading it,
+ *   and pass it to {@link #put}, which drops the result if the row was invalidated since.
+ *   Generations are tracked per stripe of rows rather than per row, so that they take a fixed
+ *   amount of memory: the invalidation of a row may also drop a concurrent result of another row.
+ * </p>
+ *
+ * <p>A RowCache constructed with a non-positive capacity is disabled and caches nothing.</p>
+ */
+@ApiAudience.Framework
+public final class RowCache {
+  /** Approximate fixed overhead in bytes of a cached result, excluding the result itself. */
+  private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+  /** Number of stripes of rows whose generations are tracked. */
+  private static final int GENERATION_STRIPES = 1024;
+
+  /** Backing cache, or null if this row cache is disabled. */
+  private final Cache<RowKey, ImmutableMap<KijiDataRequest, String>> mCache;
+
+  /** Generations of the stripes of rows, incremented when any row of a stripe is invalidated. */
+  private final AtomicLongArray mGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+  /**
+   * Creates a new RowCache.
+   *
+   * @param maxBytes is the approximate maximum number of bytes of results to hold. The cache is
+   *     disabled if this is not positive.
+   * @param ttlSeconds is the number of seconds after which a cached result expires.
+   */
+  public RowCache(final long maxBytes, final long ttlSeconds) {
+    if (maxBytes > 0) {
+      Preconditions.checkArgument(ttlSeconds > 0,
+          "Row cache time to live must be positive, got %s.", ttlSeconds);
+      mCache = CacheBuilder.newBuilder()
+          .maximumWeight(maxBytes)
+          .weigher(new ResultsWeigher())
+          .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+          .recordStats()
+          .build();
+    } else {
+      mCache = null;
+    }
+  }
+
+  /**
+   * Returns a RowCache which caches nothing.
+   *
+   * @return a disabled RowCache.
+   */
+  public static RowCache disabled() {
+    return new RowCache(0, 0);
+  }
+
+  /**
+   * Whether this row cache holds any results.
+   *
+   * @return whether this row cache is enabled.
+   */
+  public boolean isEnabled() {
+    return mCache != null;
+  }
+
+  /**
+   * Returns the cached JSON result of a data request on a row, or null if none is cached.
+   *
+   * @param instance name of the instance containing the table.
+   * @param table name of the table containing the row.
+   * @param entityId of the row.
+   * @param request data request issued on the row.
+   * @return the cached JSON result, or null.
+   */
+  public String get(
+      final String instance,
+      final String table,
+      final EntityId entityId,
+      final KijiDataRequest request
+  ) {
+    if (mCache == null) {
+      return null;
+    }
+    final Map<KijiDataRequest, String> results =
+        mCache.getIfPresent(new RowKey(instance, table, entityId));
+    if (results == null) {
+      return null;
+    }
+    return results.get(request);
+  }
+
+  /**
+   * Returns the generation of a row, to take before reading the row and pass to {@link #put}.
+   *
+   * @param instance name of the instance containing the table.
+   * @param table name of the table containing the row.
+   * @param entityId of the row.
+   * @return the current generation of the row.
+   */
+  public long getGeneration(final String instance, final String table, final EntityId entityId) {
+    return mGenerations.get(getStripe(new RowKey(instance, table, entityId)));
+  }
+
+  /**
+   * Caches the JSON result of a data request on a row, unless the row was invalidated since the
+   * result was read.
+   *
+   * @param instance name of the instance containing the table.
+   * @param table name of the table containing the row.
+   * @param entityId of the row.
+   * @param request data request issued on the row.
+   * @param generation of the row, taken with {@link #getGeneration} before the row was read.
+   * @param json result of the data request.
+   */
+  public void put(
+      final String instance,
+      final String table,
+      final EntityId entityId,
+      final KijiDataRequest request,
+      final long generation,
+      final String json
+  ) {
+    if (mCache == null) {
+      return;
+    }
+    final RowKey key = new RowKey(instance, table, entityId);
+    final int stripe = getStripe(key);
+    if (mGenerations.get(stripe) != generation) {
+      return;
+    }
+    final Map<KijiDataRequest, String> existing = mCache.getIfPresent(key);
+    final ImmutableMap.Builder<KijiDataRequest, String> results = ImmutableMap.builder();
+    if (existing != null) {
+      for (Map.Entry<KijiDataRequest, String> entry : existing.entrySet()) {
+        if (!entry.getKey().equals(request)) {
+          results.put(entry);
+        }
+      }
+    }
+    results.put(request, json);
+    mCache.put(key, results.build());
+    // Invalidations increment the generation before removing entries: an invalidation which ran
+    // concurrently with this put either removed the entry after it was put, or is seen here.
+    if (mGenerations.get(stripe) != generation) {
+      mCache.invalidate(key);
+    }
+  }
+
+  /**
+   * Removes all cached results for a row.
+   *
+   * @param instance name of the instance containing the table.
+   * @param table name of the table containing the row.
+   * @param entityId of the row.
+   */
+  public void invalidateRow(final String instance, final String table, final EntityId entityId) {
+    if (mCache != null) {
+      final RowKey key = new RowKey(instance, table, entityId);
+      mGenerations.incrementAndGet(getStripe(key));
+      mCache.invalidate(key);
+    }
+  }
+
+  /**
+   * Removes all cached results for rows of a table.
+   *
+   * @param instance name of the instance containing the table.
+   * @param table name of the table.
+   */
+  public void invalidateTable(final String instance, final String table) {
+    if (mCache == null) {
+      return;
+    }
+    incrementAllGenerations();
+    final Iterator<RowKey> keys = mCache.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      final RowKey key = keys.next();
+      if (key.mInstance.equals(instance) && key.mTable.equals(table)) {
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all cached results for rows of tables in an instance.
+   *
+   * @param instance name of the instance.
+   */
+  public void invalidateInstance(final String instance) {
+    if (mCache == null) {
+      return;
+    }
+    incrementAllGenerations();
+    final Iterator<RowKey> keys = mCache.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().mInstance.equals(instance)) {
+        keys.remove();
+      }
+    }
+  }
+
+  /** Removes all cached results. */
+  public void invalidateAll() {
+    if (mCache != null) {
+      incrementAllGenerations();
+      mCache.invalidateAll();
+    }
+  }
+
+  /**
+   * Returns the stripe of generations of a row.
+   *
+   * @param key of the row.
+   * @return the index of the stripe of the row in the generations.
+   */
+  private static int getStripe(final RowKey key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+  }
+
+  /** Increments the generations of all rows, for invalidations of more than one row. */
+  private void incrementAllGenerations() {
+    for (int stripe = 0; stripe < GENERATION_STRIPES; ++stripe) {
+      mGenerations.incrementAndGet(stripe);
+    }
+  }
+
+  /**
+   * Registers hit rate and occupancy gauges for this row cache with a metric registry. Does
+   * nothing if this row cache is disabled.
+   *
+   * @param registry with which to register the gauges.
+   */
+  public void registerMetrics(final MetricRegistry registry) {
+    if (mCache == null) {
+      return;
+    }
+    registry.register(MetricRegistry.name(RowCache.class, "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return mCache.stats().hitCount();
+      }
+    });
+    registry.register(MetricRegistry.name(RowCache.class, "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return mCache.stats().missCount();
+      }
+    });
+    registry.register(MetricRegistry.name(RowCache.class, "hit-rate"), new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return mCache.stats().hitRate();
+      }
+    });
+    registry.register(MetricRegistry.name(RowCache.class, "evictions"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return mCache.stats().evictionCount();
+      }
+    });
+    registry.register(MetricRegistry.name(RowCache.class, "rows"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return mCache.size();
+      }
+    });
+  }
+
+  /** Weighs the cached results of a row by their approximate size in bytes. */
+  private static final class ResultsWeigher
+      implements Weigher<RowKey, ImmutableMap<KijiDataRequest, String>> {
+    /** {@inheritDoc} */
+    @Override
+    public int weigh(final RowKey key, final ImmutableMap<KijiDataRequest, String> results) {
+      long weight = key.mRowKey.remaining() + ENTRY_OVERHEAD_BYTES;
+      for (String json : results.values()) {
+        // Java strings hold two bytes per character.
+        weight += 2L * json.length() + ENTRY_OVERHEAD_BYTES;
+      }
+      return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+  }
+
+  /** Identifies a row of a table in a Kiji instance. */
+  private static final class RowKey {
+    private final String mInstance;
+    private final String mTable;
+    private final ByteBuffer mRowKey;
+
+    /**
+     * Creates a new RowKey.
+     *
+     * @param instance name of the instance containing the table.
+     * @param table name of the table containing the row.
+     * @param entityId of the row.
+     */
+    private RowKey(final String instance, final String table, final EntityId entityId) {
+      mInstance = instance;
+      mTable = table;
+      mRowKey = ByteBuffer.wrap(entityId.getHBaseRowKey());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mInstance, mTable, mRowKey);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof RowKey)) {
+        return false;
+      }
+      final RowKey other = (RowKey) obj;
+      return mInstance.equals(other.mInstance)
+          && mTable.equals(other.mTable)
+          && mRowKey.equals(other.mRowKey);
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Executes the HBase operations of KijiREST row requests on a dedicated, bounded pool of I/O
+ * threads.
+ *
+ * <p>
+ *   Requests are admitted only while the pool has a free thread or a free slot in its bounded
+ *   queue; other requests are rejected immediately with a 503 (service unavailable) status rather
+ *   than queued without limit. Each operation is bound by a deadline: a request whose operation
+ *   has not completed by its deadline is rejected with a 503 status, and the operation is
+ *   interrupted. If an abandoned operation still completes with a {@link Closeable} result, such
+ *   as a row scanner, the result is closed.
+ * </p>
+ */
+@ApiAudience.Framework
+public final class RowRequestExecutor implements Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(RowRequestExecutor.class);
+
+  /** Default number of I/O threads. */
+  public static final int DEFAULT_THREADS = 32;
+
+  /** Default number of operations which may wait for an I/O thread. */
+  public static final int DEFAULT_QUEUE_SIZE = 128;
+
+  /** Default deadline of a row request, in milliseconds. */
+  public static final long DEFAULT_TIMEOUT = 30000;
+
+  /** Pool of I/O threads. */
+  private final ThreadPoolExecutor mExecutor;
+
+  /** Maximum time in milliseconds a row request may take. */
+  private final long mMaxTimeout;
+
+  /** The possible states of an operation. */
+  private static enum OperationState {
+    /** The operation is running or waiting to run. */
+    PENDING,
+    /** The operation completed and its result was handed to the requester. */
+    COMPLETED,
+    /** The requester gave up on the operation. */
+    ABANDONED
+  }
+
+  /**
+   * Creates a new RowRequestExecutor.
+   *
+   * @param threads is the number of I/O threads.
+   * @param queueSize is the number of operations which may wait for an I/O thread.
+   * @param maxTimeout is the maximum time in milliseconds a row request may take.
+   */
+  public RowRequestExecutor(final int threads, final int queueSize, final long maxTimeout) {
+    Preconditions.checkArgument(threads > 0, "Number of I/O threads must be positive: %s.",
+        threads);
+    Preconditions.checkArgument(queueSize > 0, "I/O queue size must be positive: %s.", queueSize);
+    Preconditions.checkArgument(maxTimeout > 0, "Row request timeout must be positive: %s.",
+        maxTimeout);
+    mMaxTimeout = maxTimeout;
+    mExecutor = new ThreadPoolExecutor(
+        threads,
+        threads,
+        60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat(RowRequestExecutor.class.getCanonicalName() + "-%d")
+            .build(),
+        new ThreadPoolExecutor.AbortPolicy());
+    mExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Creates a new RowRequestExecutor with the default configuration.
+   *
+   * @return a new RowRequestExecutor with the default configuration.
+   */
+  public static RowRequestExecutor withDefaults() {
+    return new RowRequestExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE, DEFAULT_TIMEOUT);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() throws Exception {
+    // Threads are started on demand.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void stop() throws Exception {
+    mExecutor.shutdownNow();
+  }
+
+  /**
+   * Computes the deadline of a row request starting now.
+   *
+   * @param timeout requested by the client in milliseconds, or null to use the maximum. Requested
+   *     timeouts are capped to the maximum.
+   * @return the deadline of the request, in milliseconds since the UNIX epoch.
+   */
+  public long getDeadline(final Long timeout) {
+    if (null != timeout && timeout < 0) {
+      throw new WebApplicationException(
+          new IllegalArgumentException("Timeout must not be negative: " + timeout),
+          Status.BAD_REQUEST);
+    }
+    final long effectiveTimeout = (null == timeout) ? mMaxTimeout : Math.min(timeout, mMaxTimeout);
+    return System.currentTimeMillis() + effectiveTimeout;
+  }
+
+  /**
+   * Runs an operation on an I/O thread and waits for its result until a deadline.
+   *
+   * @param operation to run.
+   * @param deadline by which the operation must complete, in milliseconds since the UNIX epoch.
+   * @param <T> type of the result of the operation.
+   * @return the result of the operation.
+   * @throws IOException thrown by the operation.
+   * @throws WebApplicationException with a 503 status if the operation can not be admitted or
+   *     does not complete by the deadline.
+   */
+  public <T> T execute(final Callable<T> operation, final long deadline) throws IOException {
+    final AtomicReference<OperationState> state =
+        new AtomicReference<OperationState>(OperationState.PENDING);
+    final Future<T> future;
+    try {
+      future = mExecutor.submit(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          final T result = operation.call();
+          if (!state.compareAndSet(OperationState.PENDING, OperationState.COMPLETED)) {
+            // Nobody will consume this result.
+            closeAbandoned(result);
+          }
+          return result;
+        }
+      });
+    } catch (RejectedExecutionException ree) {
+      LOG.debug("Shedding row request: {} I/O threads are busy and {} requests are queued.",
+          mExecutor.getActiveCount(), mExecutor.getQueue().size());
+      throw new WebApplicationException(ree, Status.SERVICE_UNAVAILABLE);
+    }
+
+    try {
+      return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      if (state.compareAndSet(OperationState.PENDING, OperationState.ABANDONED)) {
+        future.cancel(true);
+        throw new WebApplicationException(te, Status.SERVICE_UNAVAILABLE);
+      }
+      // The operation completed concurrently with the timeout, so use its result.
+      return getCompleted(future);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      if (state.compareAndSet(OperationState.PENDING, OperationState.ABANDONED)) {
+        future.cancel(true);
+      } else {
+        closeAbandoned(getCompleted(future));
+      }
+      throw new WebApplicationException(ie, Status.SERVICE_UNAVAILABLE);
+    } catch (ExecutionException ee) {
+      throw unwrap(ee);
+    }
+  }
+
+  /**
+   * Returns the result of a future which is known to be complete.
+   *
+   * @param future which is complete.
+   * @param <T> type of the result of the future.
+   * @return the result of the future.
+   * @throws IOException thrown by the operation.
+   */
+  private static <T> T getCompleted(final Future<T> future) throws IOException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        } catch (ExecutionException ee) {
+          throw unwrap(ee);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Unwraps the failure of an operation so that it can be rethrown as thrown by the operation.
+   *
+   * @param ee wrapping the failure of the operation.
+   * @return the failure of the operation, if it is an IOException.
+   */
+  private static IOException unwrap(final ExecutionException ee) {
+    final Throwable cause = ee.getCause();
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new IOException(cause);
+  }
+
+  /**
+   * Releases the result of an operation nobody will consume.
+   *
+   * @param result of the abandoned operation.
+   */
+  private static void closeAbandoned(final Object result) {
+    if (result instanceof Closeable) {
+      LOG.debug("Closing result {} of abandoned row request.", result);
+      ResourceUtils.closeOrLog((Closeable) result);
+    }
+  }
+}
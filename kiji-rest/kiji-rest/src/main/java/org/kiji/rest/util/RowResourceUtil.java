@@ -50,10 +50,13 @@ import org.kiji.rest.representations.KijiRestRow;
 import org.kiji.rest.representations.SchemaOption;
 import org.kiji.schema.DecodedCell;
 import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiBufferedWriter;
 import org.kiji.schema.KijiCell;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.KijiIncrementer;
+import org.kiji.schema.KijiPutter;
 import org.kiji.schema.KijiRowData;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiTable;
@@ -300,7 +303,7 @@ public final class RowResourceUtil {
   /**
    * A helper method to perform individual cell puts.
    *
-   * @param writer The table writer which will do the putting.
+   * @param writer The table writer or buffered writer which will do the putting.
    * @param entityId The entityId of the row to put to.
    * @param jsonValue The json value to put.
    * @param column The column to put the cell to.
@@ -309,7 +312,7 @@ public final class RowResourceUtil {
    * @throws IOException When the put fails.
    */
   public static void putCell(
-      final KijiTableWriter writer,
+      final KijiPutter writer,
       final EntityId entityId,
       final String jsonValue,
       final KijiColumnName column,
@@ -343,89 +346,132 @@ public final class RowResourceUtil {
   public static void writeRow(KijiTable kijiTable, EntityId entityId,
       KijiRestRow kijiRestRow, KijiSchemaTable schemaTable) throws IOException {
     final KijiTableWriter writer = kijiTable.openTableWriter();
+    try {
+      writeCells(kijiTable.getLayout(), writer, writer, entityId, kijiRestRow, schemaTable);
+    } finally {
+      ResourceUtils.closeOrLog(writer);
+    }
+  }
+
+  /**
+   * Util method to write a rest row into Kiji through a buffered writer. The cells of the row
+   * are committed when the writer is flushed. Counter increments are not supported.
+   *
+   * @param layout is the layout of the table to write into.
+   * @param writer is the buffered writer through which to write the row. It is not flushed.
+   * @param entityId is the entity id of the row to write.
+   * @param kijiRestRow is the row model to write to Kiji.
+   * @param schemaTable is the handle to the schema table used to resolve the KijiRestCell's
+   *        writer schema if it was specified as a UID.
+   * @throws IOException if there a failure writing the row.
+   */
+  public static void writeRow(KijiTableLayout layout, KijiBufferedWriter writer,
+      EntityId entityId, KijiRestRow kijiRestRow, KijiSchemaTable schemaTable)
+      throws IOException {
+    writeCells(layout, writer, null, entityId, kijiRestRow, schemaTable);
+  }
+
+  /**
+   * Writes the cells of a rest row into Kiji.
+   *
+   * @param layout is the layout of the table to write into.
+   * @param putter through which to put cells.
+   * @param incrementer through which to increment counters, or null if counter increments are
+   *        not supported.
+   * @param entityId is the entity id of the row to write.
+   * @param kijiRestRow is the row model to write to Kiji.
+   * @param schemaTable is the handle to the schema table used to resolve the KijiRestCell's
+   *        writer schema if it was specified as a UID.
+   * @throws IOException if there a failure writing the row.
+   */
+  private static void writeCells(KijiTableLayout layout, KijiPutter putter,
+      KijiIncrementer incrementer, EntityId entityId, KijiRestRow kijiRestRow,
+      KijiSchemaTable schemaTable) throws IOException {
     // Default global timestamp.
     long globalTimestamp = System.currentTimeMillis();
 
-    try {
-      for (Entry<String, NavigableMap<String, List<KijiRestCell>>> familyEntry : kijiRestRow
-          .getCells().entrySet()) {
-        String columnFamily = familyEntry.getKey();
-        NavigableMap<String, List<KijiRestCell>> qualifiedCells = familyEntry.getValue();
-        for (Entry<String, List<KijiRestCell>> qualifiedCell : qualifiedCells.entrySet()) {
-          final KijiColumnName column = new KijiColumnName(columnFamily, qualifiedCell.getKey());
-          if (!kijiTable.getLayout().exists(column)) {
-            throw new WebApplicationException(new IllegalArgumentException(
-                "Specified column does not exist: " + column), Response.Status.BAD_REQUEST);
-          }
+    for (Entry<String, NavigableMap<String, List<KijiRestCell>>> familyEntry : kijiRestRow
+        .getCells().entrySet()) {
+      String columnFamily = familyEntry.getKey();
+      NavigableMap<String, List<KijiRestCell>> qualifiedCells = familyEntry.getValue();
+      for (Entry<String, List<KijiRestCell>> qualifiedCell : qualifiedCells.entrySet()) {
+        final KijiColumnName column = new KijiColumnName(columnFamily, qualifiedCell.getKey());
+        if (!layout.exists(column)) {
+          throw new WebApplicationException(new IllegalArgumentException(
+              "Specified column does not exist: " + column), Response.Status.BAD_REQUEST);
+        }
 
-          for (KijiRestCell restCell : qualifiedCell.getValue()) {
-            final long timestamp;
-            if (null != restCell.getTimestamp()) {
-              timestamp = restCell.getTimestamp();
-            } else {
-              timestamp = globalTimestamp;
-            }
-            if (timestamp >= 0) {
-              // Put to either a counter or a regular cell.
-              if (SchemaType.COUNTER == kijiTable.getLayout().getCellSchema(column).getType()) {
-                JsonNode parsedCounterValue = BASIC_MAPPER.valueToTree(restCell.getValue());
-                if (parsedCounterValue.isIntegralNumber()) {
-                  // Write the counter cell.
-                  writer.put(entityId,
-                      column.getFamily(),
-                      column.getQualifier(),
-                      timestamp,
-                      parsedCounterValue.asLong());
-                } else if (parsedCounterValue.isContainerNode()) {
-                    if (null != parsedCounterValue.get(COUNTER_INCREMENT_KEY)
-                        && parsedCounterValue.get(COUNTER_INCREMENT_KEY).isIntegralNumber()) {
-                      // Counter incrementation does not support timestamp.
-                      if (null != restCell.getTimestamp()) {
-                        throw new WebApplicationException(
-                            new IllegalArgumentException("Counter incrementation does not support "
-                                + "timestamp. Do not specify timestamp in request."));
-                      }
-                      // Increment counter cell.
-                      writer.increment(entityId,
-                          column.getFamily(),
-                          column.getQualifier(),
-                          parsedCounterValue.get(COUNTER_INCREMENT_KEY).asLong());
-                    } else {
+        for (KijiRestCell restCell : qualifiedCell.getValue()) {
+          final long timestamp;
+          if (null != restCell.getTimestamp()) {
+            timestamp = restCell.getTimestamp();
+          } else {
+            timestamp = globalTimestamp;
+          }
+          if (timestamp >= 0) {
+            // Put to either a counter or a regular cell.
+            if (SchemaType.COUNTER == layout.getCellSchema(column).getType()) {
+              JsonNode parsedCounterValue = BASIC_MAPPER.valueToTree(restCell.getValue());
+              if (parsedCounterValue.isIntegralNumber()) {
+                // Write the counter cell.
+                putter.put(entityId,
+                    column.getFamily(),
+                    column.getQualifier(),
+                    timestamp,
+                    parsedCounterValue.asLong());
+              } else if (parsedCounterValue.isContainerNode()) {
+                  if (null != parsedCounterValue.get(COUNTER_INCREMENT_KEY)
+                      && parsedCounterValue.get(COUNTER_INCREMENT_KEY).isIntegralNumber()) {
+                    // Counter incrementation does not support timestamp.
+                    if (null != restCell.getTimestamp()) {
                       throw new WebApplicationException(
-                          new IllegalArgumentException("Counter increment could not be parsed "
-                              + "as long: "
-                              + parsedCounterValue
-                              + ". Provide a json node such as {\"incr\" : 123}."),
+                          new IllegalArgumentException("Counter incrementation does not support "
+                              + "timestamp. Do not specify timestamp in request."));
+                    }
+                    if (null == incrementer) {
+                      throw new WebApplicationException(
+                          new IllegalArgumentException("Counter incrementation is not "
+                              + "supported by buffered writes."),
                           Response.Status.BAD_REQUEST);
                     }
-                } else {
-                  // Could not parse parameter to a long.
-                  throw new WebApplicationException(
-                      new IllegalArgumentException("Counter value could not be parsed as long: "
-                          + parsedCounterValue
-                          + ". Provide a long value to set the counter."),
-                      Response.Status.BAD_REQUEST);
-                }
+                    // Increment counter cell.
+                    incrementer.increment(entityId,
+                        column.getFamily(),
+                        column.getQualifier(),
+                        parsedCounterValue.get(COUNTER_INCREMENT_KEY).asLong());
+                  } else {
+                    throw new WebApplicationException(
+                        new IllegalArgumentException("Counter increment could not be parsed "
+                            + "as long: "
+                            + parsedCounterValue
+                            + ". Provide a json node such as {\"incr\" : 123}."),
+                        Response.Status.BAD_REQUEST);
+                  }
               } else {
-                // Write the cell.
-                String jsonValue = restCell.getValue().toString();
-                // TODO: This is ugly. Converting from Map to JSON to String.
-                if (restCell.getValue() instanceof Map<?, ?>) {
-                  JsonNode node = BASIC_MAPPER.valueToTree(restCell.getValue());
-                  jsonValue = node.toString();
-                }
-                Schema actualWriter = restCell.getWriterSchema(schemaTable);
-                if (actualWriter == null) {
-                  throw new IOException("Unrecognized schema " + restCell.getValue());
-                }
-                putCell(writer, entityId, jsonValue, column, timestamp, actualWriter);
+                // Could not parse parameter to a long.
+                throw new WebApplicationException(
+                    new IllegalArgumentException("Counter value could not be parsed as long: "
+                        + parsedCounterValue
+                        + ". Provide a long value to set the counter."),
+                    Response.Status.BAD_REQUEST);
               }
+            } else {
+              // Write the cell.
+              String jsonValue = restCell.getValue().toString();
+              // TODO: This is ugly. Converting from Map to JSON to String.
+              if (restCell.getValue() instanceof Map<?, ?>) {
+                JsonNode node = BASIC_MAPPER.valueToTree(restCell.getValue());
+                jsonValue = node.toString();
+              }
+              Schema actualWriter = restCell.getWriterSchema(schemaTable);
+              if (actualWriter == null) {
+                throw new IOException("Unrecognized schema " + restCell.getValue());
+              }
+              putCell(putter, entityId, jsonValue, column, timestamp, actualWriter);
             }
           }
         }
       }
-    } finally {
-      ResourceUtils.closeOrLog(writer);
     }
   }
 }
@@ -0,0 +1,138 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import org.kiji.rest.util.RowCache;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.HBaseEntityId;
+import org.kiji.schema.KijiDataRequest;
+
+/**
+ * Tests the RowCache.
+ */
+public class TestRowCache {
+  private static final EntityId ROW_1 = HBaseEntityId.fromHBaseRowKey(Bytes.toBytes("row1"));
+  private static final EntityId ROW_2 = HBaseEntityId.fromHBaseRowKey(Bytes.toBytes("row2"));
+
+  @Test
+  public void testCachesPerRequest() throws Exception {
+    final RowCache cache = new RowCache(1024 * 1024, 60);
+    final KijiDataRequest info = KijiDataRequest.create("info");
+    final KijiDataRequest other = KijiDataRequest.create("other");
+
+    cache.put("instance", "table", ROW_1, info,
+        cache.getGeneration("instance", "table", ROW_1), "info-result");
+    assertEquals("info-result", cache.get("instance", "table", ROW_1, info));
+    assertEquals("info-result",
+        cache.get("instance", "table", ROW_1, KijiDataRequest.create("info")));
+    assertNull(cache.get("instance", "table", ROW_1, other));
+    assertNull(cache.get("instance", "table", ROW_2, info));
+    assertNull(cache.get("instance", "other_table", ROW_1, info));
+
+    cache.put("instance", "table", ROW_1, other,
+        cache.getGeneration("instance", "table", ROW_1), "other-result");
+    assertEquals("info-result", cache.get("instance", "table", ROW_1, info));
+    assertEquals("other-result", cache.get("instance", "table", ROW_1, other));
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    final RowCache cache = new RowCache(1024 * 1024, 60);
+    final KijiDataRequest request = KijiDataRequest.create("info");
+
+    cache.put("instance", "table", ROW_1, request,
+        cache.getGeneration("instance", "table", ROW_1), "result1");
+    cache.put("instance", "table", ROW_2, request,
+        cache.getGeneration("instance", "table", ROW_2), "result2");
+    cache.put("instance", "other_table", ROW_1, request,
+        cache.getGeneration("instance", "other_table", ROW_1), "result3");
+    cache.put("other_instance", "table", ROW_1, request,
+        cache.getGeneration("other_instance", "table", ROW_1), "result4");
+
+    cache.invalidateRow("instance", "table", ROW_1);
+    assertNull(cache.get("instance", "table", ROW_1, request));
+    assertEquals("result2", cache.get("instance", "table", ROW_2, request));
+
+    cache.invalidateTable("instance", "table");
+    assertNull(cache.get("instance", "table", ROW_2, request));
+    assertEquals("result3", cache.get("instance", "other_table", ROW_1, request));
+
+    cache.invalidateInstance("instance");
+    assertNull(cache.get("instance", "other_table", ROW_1, request));
+    assertEquals("result4", cache.get("other_instance", "table", ROW_1, request));
+  }
+
+  @Test
+  public void testInvalidatedDuringRead() throws Exception {
+    final RowCache cache = new RowCache(1024 * 1024, 60);
+    final KijiDataRequest request = KijiDataRequest.create("info");
+
+    // A write invalidates the row between the read and the put: the stale result is dropped.
+    final long generation = cache.getGeneration("instance", "table", ROW_1);
+    cache.invalidateRow("instance", "table", ROW_1);
+    cache.put("instance", "table", ROW_1, request, generation, "stale");
+    assertNull(cache.get("instance", "table", ROW_1, request));
+
+    // Same for the invalidation of the whole table.
+    final long tableGeneration = cache.getGeneration("instance", "table", ROW_1);
+    cache.invalidateTable("instance", "table");
+    cache.put("instance", "table", ROW_1, request, tableGeneration, "stale");
+    assertNull(cache.get("instance", "table", ROW_1, request));
+
+    cache.put("instance", "table", ROW_1, request,
+        cache.getGeneration("instance", "table", ROW_1), "fresh");
+    assertEquals("fresh", cache.get("instance", "table", ROW_1, request));
+  }
+
+  @Test
+  public void testBoundedByBytes() throws Exception {
+    final RowCache cache = new RowCache(4096, 60);
+    final KijiDataRequest request = KijiDataRequest.create("info");
+    // Strings weigh two bytes per character, so this result alone exceeds the cache capacity.
+    final String result = new String(new char[4096]);
+
+    cache.put("instance", "table", ROW_1, request,
+        cache.getGeneration("instance", "table", ROW_1), result);
+    assertNull(cache.get("instance", "table", ROW_1, request));
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    final RowCache cache = RowCache.disabled();
+    final KijiDataRequest request = KijiDataRequest.create("info");
+    assertFalse(cache.isEnabled());
+
+    cache.put("instance", "table", ROW_1, request,
+        cache.getGeneration("instance", "table", ROW_1), "result");
+    assertNull(cache.get("instance", "table", ROW_1, request));
+
+    final MetricRegistry registry = new MetricRegistry();
+    cache.registerMetrics(registry);
+    assertEquals(0, registry.getGauges().size());
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.rest.util.RowRequestExecutor;
+
+/**
+ * Tests the RowRequestExecutor.
+ */
+public class TestRowRequestExecutor {
+  private RowRequestExecutor mExecutor;
+
+  @Before
+  public void setUp() throws Exception {
+    mExecutor = new RowRequestExecutor(1, 1, 10000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    mExecutor.stop();
+  }
+
+  @Test
+  public void testReturnsResult() throws Exception {
+    final String result = mExecutor.execute(new Callable<String>() {
+      @Override
+      public String call() {
+        return "result";
+      }
+    }, mExecutor.getDeadline(null));
+    assertEquals("result", result);
+  }
+
+  @Test
+  public void testPropagatesIOException() throws Exception {
+    try {
+      mExecutor.execute(new Callable<String>() {
+        @Override
+        public String call() throws IOException {
+          throw new IOException("failed");
+        }
+      }, mExecutor.getDeadline(null));
+      fail("Expected an IOException.");
+    } catch (IOException ioe) {
+      assertEquals("failed", ioe.getMessage());
+    }
+  }
+
+  @Test
+  public void testTimeoutClosesAbandonedResult() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch closed = new CountDownLatch(1);
+    try {
+      mExecutor.execute(new Callable<Closeable>() {
+        @Override
+        public Closeable call() {
+          // Ignores interruption, as a blocked HBase call may.
+          while (true) {
+            try {
+              release.await();
+              break;
+            } catch (InterruptedException ie) {
+              continue;
+            }
+          }
+          return new Closeable() {
+            @Override
+            public void close() {
+              closed.countDown();
+            }
+          };
+        }
+      }, mExecutor.getDeadline(10L));
+      fail("Expected the request to time out.");
+    } catch (WebApplicationException wae) {
+      assertEquals(503, wae.getResponse().getStatus());
+    }
+    release.countDown();
+    assertTrue(closed.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testShedsLoad() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final BlockingQueue<Integer> rejections = new LinkedBlockingQueue<Integer>();
+    final Callable<Void> blocked = new Callable<Void>() {
+      @Override
+      public Void call() throws InterruptedException {
+        release.await();
+        return null;
+      }
+    };
+    // One thread and one queue slot admit at most two of these three requests.
+    final Thread[] requesters = new Thread[3];
+    for (int i = 0; i < requesters.length; i++) {
+      requesters[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            mExecutor.execute(blocked, mExecutor.getDeadline(null));
+          } catch (WebApplicationException wae) {
+            rejections.add(wae.getResponse().getStatus());
+          } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+          }
+        }
+      };
+      requesters[i].start();
+    }
+    try {
+      assertEquals(Integer.valueOf(503), rejections.poll(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      for (Thread requester : requesters) {
+        requester.join();
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsNegativeTimeout() throws Exception {
+    try {
+      mExecutor.getDeadline(-1L);
+      fail("Expected a negative timeout to be rejected.");
+    } catch (WebApplicationException wae) {
+      assertEquals(400, wae.getResponse().getStatus());
+    }
+  }
+}
@@ -31,6 +31,7 @@ import org.kiji.rest.resources.KijiRESTResource;
 import org.kiji.rest.resources.RowsResource;
 import org.kiji.rest.resources.TableResource;
 import org.kiji.rest.resources.TablesResource;
+import org.kiji.rest.util.RowRequestExecutor;
 
 /**
  * Installs default KijiREST endpoints into the Dropwizard environment.
@@ -55,6 +56,13 @@ public class StandardKijiRestPlugin implements KijiRestPlugin {
     jersey.register(new InstanceResource(kijiClient));
     jersey.register(new TableResource(kijiClient));
     jersey.register(new TablesResource(kijiClient));
-    jersey.register(new RowsResource(kijiClient, environment.getObjectMapper()));
+
+    final RowRequestExecutor rowRequestExecutor = new RowRequestExecutor(
+        configuration.getRowRequestThreads(),
+        configuration.getRowRequestQueueSize(),
+        configuration.getRowRequestTimeout());
+    environment.lifecycle().manage(rowRequestExecutor);
+    jersey.register(
+        new RowsResource(kijiClient, environment.getObjectMapper(), rowRequestExecutor));
   }
 }
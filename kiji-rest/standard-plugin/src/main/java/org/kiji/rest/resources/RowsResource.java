@@ -19,6 +19,7 @@
 
 package org.kiji.rest.resources;
 
+import static org.kiji.rest.RoutesConstants.BULK_ROWS_ENDPOINT;
 import static org.kiji.rest.RoutesConstants.INSTANCE_PARAMETER;
 import static org.kiji.rest.RoutesConstants.ROWS_PATH;
 import static org.kiji.rest.RoutesConstants.TABLE_PARAMETER;
@@ -26,8 +27,11 @@ import static org.kiji.rest.util.RowResourceUtil.addColumnDefs;
 import static org.kiji.rest.util.RowResourceUtil.getKijiRestRow;
 import static org.kiji.rest.util.RowResourceUtil.getTimestamps;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -38,6 +42,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -61,18 +66,24 @@ import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import io.dropwizard.lifecycle.Managed;
 import org.apache.hadoop.hbase.HConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.rest.KijiClient;
 import org.kiji.rest.representations.KijiRestEntityId;
 import org.kiji.rest.representations.KijiRestRow;
+import org.kiji.rest.util.RowCache;
+import org.kiji.rest.util.RowRequestExecutor;
 import org.kiji.rest.util.RowResourceUtil;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.KijiBufferedWriter;
@@ -102,11 +113,22 @@ import org.kiji.schema.util.ResourceUtils;
 @Path(ROWS_PATH)
 @Produces(MediaType.APPLICATION_JSON)
 @ApiAudience.Public
-public class RowsResource {
+public class RowsResource implements Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(RowsResource.class);
+
   private static final String UNLIMITED_VERSIONS = "all";
 
   private final KijiClient mKijiClient;
 
+  /** Runs the HBase operations of row requests on bounded I/O threads. */
+  private final RowRequestExecutor mRowRequestExecutor;
+
+  /** Whether this resource created its executor, and must stop it. */
+  private final boolean mOwnsRowRequestExecutor;
+
+  /** Maximum number of rows a streamed scan fetches from HBase per I/O operation. */
+  private static final int ROWS_PER_FETCH = 100;
+
   /**
    * Special constant to denote stream unlimited amount of rows
    * to the client.
@@ -124,16 +146,88 @@ public class RowsResource {
    */
   public static final String ALL_COLS = "*";
 
+  /**
+   * Media type of a stream of newline-delimited JSON documents.
+   */
+  public static final String NDJSON = "application/x-ndjson";
+
+  /**
+   * Number of rows of a flushed bulk write to buffer between flushes. Bounds the memory used to
+   * track the rows to report and evict from the row cache once their writes are committed.
+   */
+  private static final int BULK_ROWS_PER_FLUSH = 1000;
+
   /**
    * Default constructor.
    *
+   * The resource creates and owns a row request executor with the default configuration. Manage
+   * the resource with the Dropwizard lifecycle, as in
+   * {@code environment.lifecycle().manage(resource)}, so that the executor stops with the server.
+   *
    * @param kijiClient that this should use for connecting to Kiji.
    * @param jsonObjectMapper is the ObjectMapper used by DropWizard to convert from Java
    *        objects to JSON.
    */
   public RowsResource(final KijiClient kijiClient, final ObjectMapper jsonObjectMapper) {
+    this(kijiClient, jsonObjectMapper, RowRequestExecutor.withDefaults(), true);
+  }
+
+  /**
+   * Constructs a RowsResource which runs the HBase operations of row requests on the provided
+   * executor.
+   *
+   * @param kijiClient that this should use for connecting to Kiji.
+   * @param jsonObjectMapper is the ObjectMapper used by DropWizard to convert from Java
+   *        objects to JSON.
+   * @param rowRequestExecutor runs the HBase operations of row requests, and sheds requests which
+   *        can not be admitted or do not complete by their deadline.
+   */
+  public RowsResource(
+      final KijiClient kijiClient,
+      final ObjectMapper jsonObjectMapper,
+      final RowRequestExecutor rowRequestExecutor) {
+    this(kijiClient, jsonObjectMapper, rowRequestExecutor, false);
+  }
+
+  /**
+   * Constructs a RowsResource.
+   *
+   * @param kijiClient that this should use for connecting to Kiji.
+   * @param jsonObjectMapper is the ObjectMapper used by DropWizard to convert from Java
+   *        objects to JSON.
+   * @param rowRequestExecutor runs the HBase operations of row requests.
+   * @param ownsRowRequestExecutor whether the executor is stopped with this resource.
+   */
+  private RowsResource(
+      final KijiClient kijiClient,
+      final ObjectMapper jsonObjectMapper,
+      final RowRequestExecutor rowRequestExecutor,
+      final boolean ownsRowRequestExecutor) {
     mKijiClient = kijiClient;
     mJsonObjectMapper = jsonObjectMapper;
+    mRowRequestExecutor = rowRequestExecutor;
+    mOwnsRowRequestExecutor = ownsRowRequestExecutor;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() throws Exception {
+    if (mOwnsRowRequestExecutor) {
+      mRowRequestExecutor.start();
+    }
+  }
+
+  /**
+   * Stops the row request executor, if this resource created it. An executor provided to the
+   * constructor is managed by its creator.
+   *
+   * @throws Exception if the executor fails to stop.
+   */
+  @Override
+  public void stop() throws Exception {
+    if (mOwnsRowRequestExecutor) {
+      mRowRequestExecutor.stop();
+    }
   }
 
   /**
@@ -148,6 +242,19 @@ public class RowsResource {
 
     private int mNumRows = 0;
     private final List<KijiColumnName> mColsRequested;
+    private final long mDeadline;
+
+    /** Held while rows are fetched and while the scanner is closed. */
+    private final Object mScannerLock = new Object();
+
+    /** Whether the scanner is closed. Guarded by mScannerLock. */
+    private boolean mScannerClosed = false;
+
+    /** Iterator over the rows, created by the first fetch. */
+    private Iterator<KijiRowData> mIterator = null;
+
+    /** Rows fetched by {@link #fetchFirstRows()} and not yet streamed, or null. */
+    private List<KijiRowData> mFirstRows = null;
 
     /**
      * Construct a new RowStreamer.
@@ -158,66 +265,266 @@ public class RowsResource {
      * @param columns are the columns requested by the client.
      * @param schemaTable is the handle to the KijiSchemaTable used to encode the cell's writer
      *        schema as a UID.
+     * @param deadline after which no more rows are fetched, in milliseconds since the UNIX
+     *        epoch.
      */
     public RowStreamer(Iterable<KijiRowData> scanner, KijiTable table, int numRows,
-        List<KijiColumnName> columns, KijiSchemaTable schemaTable) {
+        List<KijiColumnName> columns, KijiSchemaTable schemaTable, long deadline) {
       mScanner = scanner;
+      mDeadline = deadline;
       mTable = table;
       mNumRows = numRows;
       mColsRequested = columns;
       mSchemaTable = schemaTable;
     }
 
+    /**
+     * Returns the number of rows of the next fetch.
+     *
+     * @param numRows is the number of rows fetched so far.
+     * @return the maximum number of rows to fetch next.
+     */
+    private int getFetchSize(int numRows) {
+      return (mNumRows == UNLIMITED_ROWS)
+          ? ROWS_PER_FETCH
+          : Math.min(ROWS_PER_FETCH, mNumRows - numRows);
+    }
+
+    /**
+     * Fetches the next batch of rows on an I/O thread.
+     *
+     * The fetch holds the scanner lock while it reads rows, so that a fetch which outlives its
+     * deadline is not interrupted by the scanner being closed under it.
+     *
+     * @param maxRows is the maximum number of rows to fetch.
+     * @return the next rows, or an empty list if there are no more rows.
+     * @throws IOException if the rows can not be fetched.
+     * @throws WebApplicationException with a 503 status if the fetch can not be admitted or does
+     *     not complete by the deadline.
+     */
+    private List<KijiRowData> fetch(final int maxRows) throws IOException {
+      if (System.currentTimeMillis() > mDeadline) {
+        throw new WebApplicationException(Status.SERVICE_UNAVAILABLE);
+      }
+      return mRowRequestExecutor.execute(new Callable<List<KijiRowData>>() {
+        @Override
+        public List<KijiRowData> call() {
+          final List<KijiRowData> rows = Lists.newArrayList();
+          synchronized (mScannerLock) {
+            if (mScannerClosed) {
+              // The request timed out and closed the scanner before this fetch started.
+              return rows;
+            }
+            if (null == mIterator) {
+              mIterator = mScanner.iterator();
+            }
+            while ((rows.size() < maxRows) && mIterator.hasNext()) {
+              rows.add(mIterator.next());
+            }
+          }
+          return rows;
+        }
+      }, mDeadline);
+    }
+
+    /**
+     * Fetches the first batch of rows before the response is committed, so that a failure to
+     * fetch them fails the response with the status of the error. Closes the scanner on failure.
+     *
+     * @throws WebApplicationException if the rows can not be fetched.
+     */
+    public void fetchFirstRows() {
+      if (mNumRows == 0) {
+        return;
+      }
+      try {
+        mFirstRows = fetch(getFetchSize(0));
+      } catch (WebApplicationException wae) {
+        LOG.debug("Row request on table {} failed: {}",
+            mTable.getURI(), wae.getResponse().getStatus());
+        closeScanner();
+        throw wae;
+      } catch (IOException ioe) {
+        closeScanner();
+        throw new WebApplicationException(ioe, Status.INTERNAL_SERVER_ERROR);
+      } catch (KijiIOException kioe) {
+        closeScanner();
+        throw new WebApplicationException(kioe, Status.INTERNAL_SERVER_ERROR);
+      }
+    }
+
+    /**
+     * Closes the scanner, once any fetch still running on an I/O thread completes.
+     */
+    private void closeScanner() {
+      synchronized (mScannerLock) {
+        if (mScannerClosed) {
+          return;
+        }
+        mScannerClosed = true;
+        if (mScanner instanceof KijiRowScanner) {
+          try {
+            ((KijiRowScanner) mScanner).close();
+          } catch (IOException ioe) {
+            LOG.warn("Unable to close scanner on table {}: {}", mTable.getURI(), ioe.getMessage());
+          }
+        }
+      }
+    }
+
+    /**
+     * Ends the stream with the error which prevented reading more rows.
+     *
+     * @param writer to write the error record to.
+     * @param numRows is the number of rows streamed before the error.
+     * @param error which prevented reading more rows.
+     * @throws IOException if the record can not be written.
+     */
+    private void writeScanError(Writer writer, int numRows, Exception error) throws IOException {
+      LOG.warn("Row request on table {} failed after {} rows: {}",
+          mTable.getURI(), numRows, error.getMessage());
+      writeError(writer, error.getMessage(), Status.INTERNAL_SERVER_ERROR.getStatusCode());
+    }
+
     /**
      * Performs the actual streaming of the rows.
      *
+     * Rows are fetched from HBase on the I/O threads of the row request executor, and bound by
+     * the deadline of the request. The first batch of rows is fetched by
+     * {@link #fetchFirstRows()} before the response is committed. Once it is, the status of the
+     * response can no longer change: if more rows can not be fetched, the stream ends with an
+     * error record of the form {"error":"...","status":503} instead of a row, so that clients do
+     * not mistake a truncated stream for a complete one.
+     *
      * @param os is the OutputStream where the results are written.
      */
     @Override
     public void write(OutputStream os) {
       int numRows = 0;
       Writer writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")));
-      Iterator<KijiRowData> it = mScanner.iterator();
-      boolean clientClosed = false;
 
       try {
-        while (it.hasNext() && (numRows < mNumRows || mNumRows == UNLIMITED_ROWS)
-            && !clientClosed) {
-          KijiRowData row = it.next();
-          KijiRestRow restRow = getKijiRestRow(row, mTable.getLayout(), mColsRequested,
-              mSchemaTable);
-          String jsonResult = mJsonObjectMapper.writeValueAsString(restRow);
-          // Let's strip out any carriage return + line feeds and replace them with just
-          // line feeds. Therefore we can safely delimit individual json messages on the
-          // carriage return + line feed for clients to parse properly.
-          jsonResult = jsonResult.replaceAll("\r\n", "\n");
-          writer.write(jsonResult + "\r\n");
+        boolean hasMoreRows = true;
+        while (hasMoreRows && (numRows < mNumRows || mNumRows == UNLIMITED_ROWS)) {
+          final int maxRows = getFetchSize(numRows);
+          final List<KijiRowData> rows;
+          if (null != mFirstRows) {
+            rows = mFirstRows;
+            mFirstRows = null;
+          } else {
+            try {
+              rows = fetch(maxRows);
+            } catch (WebApplicationException wae) {
+              LOG.debug("Row request on table {} failed after {} rows: {}",
+                  mTable.getURI(), numRows, wae.getResponse().getStatus());
+              writeError(writer,
+                  "Row request was not admitted or did not complete by its deadline.",
+                  wae.getResponse().getStatus());
+              break;
+            } catch (IOException ioe) {
+              writeScanError(writer, numRows, ioe);
+              break;
+            } catch (KijiIOException kioe) {
+              writeScanError(writer, numRows, kioe);
+              break;
+            }
+          }
+          hasMoreRows = (rows.size() == maxRows);
+          for (KijiRowData row : rows) {
+            String jsonResult = toJson(row, mTable, mColsRequested, mSchemaTable);
+            writer.write(jsonResult + "\r\n");
+            numRows++;
+          }
           writer.flush();
-          numRows++;
         }
+        writer.close();
       } catch (IOException e) {
-        clientClosed = true;
+        // The client closed the connection.
+        LOG.debug("Row request on table {} closed by the client after {} rows.",
+            mTable.getURI(), numRows);
       } finally {
-        if (mScanner instanceof KijiRowScanner) {
-          try {
-            ((KijiRowScanner) mScanner).close();
-          } catch (IOException e1) {
-            throw new WebApplicationException(e1, Status.INTERNAL_SERVER_ERROR);
-          }
-        }
+        closeScanner();
       }
+    }
+  }
 
-      if (!clientClosed) {
-        try {
-          writer.flush();
-          writer.close();
-        } catch (IOException e) {
-          throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
-        }
+  /**
+   * Writes the error record which terminates a failed row stream.
+   *
+   * @param writer to write the error record to.
+   * @param message describing the error.
+   * @param status is the HTTP status corresponding to the error.
+   * @throws IOException if the record can not be written.
+   */
+  private void writeError(Writer writer, String message, int status) throws IOException {
+    final Map<String, Object> error = Maps.newLinkedHashMap();
+    error.put("error", message);
+    error.put("status", status);
+    writer.write(mJsonObjectMapper.writeValueAsString(error) + "\r\n");
+    writer.flush();
+  }
+
+  /**
+   * Class to support streaming a single row to the client from its cached JSON representation.
+   */
+  private static class CachedRowStreamer implements StreamingOutput {
+    private final String mJsonResult;
+    private final int mNumRows;
+
+    /**
+     * Construct a new CachedRowStreamer.
+     *
+     * @param jsonResult is the JSON representation of the row.
+     * @param numRows is the maximum number of rows to stream.
+     */
+    public CachedRowStreamer(String jsonResult, int numRows) {
+      mJsonResult = jsonResult;
+      mNumRows = numRows;
+    }
+
+    /**
+     * Writes the cached row.
+     *
+     * @param os is the OutputStream where the result is written.
+     */
+    @Override
+    public void write(OutputStream os) {
+      if (mNumRows == 0) {
+        return;
+      }
+      try {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")));
+        writer.write(mJsonResult + "\r\n");
+        writer.flush();
+        writer.close();
+      } catch (IOException e) {
+        // The client closed the connection.
+        return;
       }
     }
   }
 
+  /**
+   * Converts a row to the JSON representation streamed to the client.
+   *
+   * @param row is the row to convert.
+   * @param table the table from which the row originates.
+   * @param columns are the columns requested by the client.
+   * @param schemaTable is the handle to the KijiSchemaTable used to encode the cell's writer
+   *        schema as a UID.
+   * @return the JSON representation of the row, without line terminator.
+   * @throws IOException if the row can not be converted.
+   */
+  private String toJson(KijiRowData row, KijiTable table, List<KijiColumnName> columns,
+      KijiSchemaTable schemaTable) throws IOException {
+    KijiRestRow restRow = getKijiRestRow(row, table.getLayout(), columns, schemaTable);
+    String jsonResult = mJsonObjectMapper.writeValueAsString(restRow);
+    // Let's strip out any carriage return + line feeds and replace them with just
+    // line feeds. Therefore we can safely delimit individual json messages on the
+    // carriage return + line feed for clients to parse properly.
+    return jsonResult.replaceAll("\r\n", "\n");
+  }
+
   /**
    * Resolves an iterable collection of KijiRestEntityIds to EntityId object.
    * This does not handle wildcards
@@ -277,6 +584,10 @@ public class RowsResource {
    * @param timeRange is the time range of cells to return (specified by min..max where min/max is
    *        the ms since UNIX epoch. min and max are both optional; however, if something is
    *        specified, at least one of min/max must be present.)
+   * @param timeout is the time in milliseconds after which the request is abandoned. Defaults to
+   *        and is capped by the server's row request timeout. A request which times out before
+   *        streaming any row fails with a 503 status; a scan which times out after streaming
+   *        some rows ends with an error record instead of a row.
    * @param uriInfo contains all the query parameters.
    * @return the Response object containing the rows requested in JSON
    */
@@ -294,8 +605,10 @@ public class RowsResource {
       @QueryParam("cols") @DefaultValue(ALL_COLS) String columns,
       @QueryParam("versions") @DefaultValue("1") String maxVersionsString,
       @QueryParam("timerange") String timeRange,
+      @QueryParam("timeout") Long timeout,
       @Context UriInfo uriInfo) {
     // CSON: ParameterNumberCheck - There are a bunch of query param options
+    final long deadline = mRowRequestExecutor.getDeadline(timeout);
     long[] timeRanges = null;
     KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
     KijiTableLayout layout = kijiTable.getLayout();
@@ -332,8 +645,12 @@ public class RowsResource {
           + "Specified more than one entity Id search method."), Status.BAD_REQUEST);
     }
 
+    final KijiSchemaTable schemaTable = mKijiClient.getKijiSchemaTable(instance);
+    final RowCache rowCache = mKijiClient.getRowCache();
+    String cachedJsonResult = null;
     KijiTableReader reader = null;
     try {
+      final KijiDataRequest dataRequest = dataBuilder.build();
       if (jsonEntityId != null) {
         final KijiRestEntityId kijiRestEntityId =
             KijiRestEntityId.createFromUrl(jsonEntityId, layout);
@@ -346,23 +663,39 @@ public class RowsResource {
           reader = kijiTable.openTableReader();
           final KijiScannerOptions scanOptions = new KijiScannerOptions();
           scanOptions.setKijiRowFilter(entityIdRowFilter);
-          scanner = reader.getScanner(dataBuilder.build(), scanOptions);
+          scanner = openScanner(reader, dataRequest, scanOptions, deadline);
         } else {
           // No wildcards found, but potentially valid entity id.
           // Continue scanning point row.
           final EntityId eid = kijiRestEntityId.resolve(layout);
-          final KijiDataRequest request = dataBuilder.build();
-          scanner = ImmutableList.of(RowResourceUtil.getKijiRowData(kijiTable, eid, request));
+          if (rowCache.isEnabled()) {
+            cachedJsonResult = rowCache.get(instance, table, eid, dataRequest);
+            if (null == cachedJsonResult) {
+              // Taken before the read: a write during the read keeps the result out of the cache.
+              final long generation = rowCache.getGeneration(instance, table, eid);
+              final KijiRowData row = getRow(kijiTable, eid, dataRequest, deadline);
+              cachedJsonResult = toJson(row, kijiTable, requestedColumns, schemaTable);
+              rowCache.put(instance, table, eid, dataRequest, generation, cachedJsonResult);
+            }
+          } else {
+            scanner = ImmutableList.of(getRow(kijiTable, eid, dataRequest, deadline));
+          }
         }
       } else if (jsonEntityIds != null) {
         // If there are wildcards in the json array, creating and entity id list will
         // throw and exception.
         final List<KijiRestEntityId> kijiRestEntityIds =
             KijiRestEntityId.createListFromUrl(jsonEntityIds, layout);
-        reader = kijiTable.openTableReader();
-        scanner = reader.bulkGet(
-            getEntityIdsFromKijiRestEntityIds(kijiRestEntityIds, layout),
-            dataBuilder.build());
+        final List<EntityId> entityIds =
+            getEntityIdsFromKijiRestEntityIds(kijiRestEntityIds, layout);
+        final KijiTableReader bulkReader = kijiTable.openTableReader();
+        reader = bulkReader;
+        scanner = mRowRequestExecutor.execute(new Callable<List<KijiRowData>>() {
+          @Override
+          public List<KijiRowData> call() throws IOException {
+            return bulkReader.bulkGet(entityIds, dataRequest);
+          }
+        }, deadline);
       } else {
         // Single eid not provided. Continue with a range scan.
         final KijiScannerOptions scanOptions = new KijiScannerOptions();
@@ -377,8 +710,10 @@ public class RowsResource {
           scanOptions.setStopRow(eid);
         }
         reader = kijiTable.openTableReader();
-        scanner = reader.getScanner(dataBuilder.build(), scanOptions);
+        scanner = openScanner(reader, dataRequest, scanOptions, deadline);
       }
+    } catch (WebApplicationException wae) {
+      throw wae;
     } catch (KijiIOException kioe) {
       mKijiClient.invalidateTable(instance, table);
       throw new WebApplicationException(kioe, Status.BAD_REQUEST);
@@ -392,9 +727,61 @@ public class RowsResource {
         ResourceUtils.closeOrLog(reader);
       }
     }
-    KijiSchemaTable schemaTable = mKijiClient.getKijiSchemaTable(instance);
-    return Response.ok(new RowStreamer(scanner, kijiTable, limit, requestedColumns,
-        schemaTable)).build();
+    if (null != cachedJsonResult) {
+      return Response.ok(new CachedRowStreamer(cachedJsonResult, limit)).build();
+    }
+    final RowStreamer rowStreamer = new RowStreamer(scanner, kijiTable, limit, requestedColumns,
+        schemaTable, deadline);
+    rowStreamer.fetchFirstRows();
+    return Response.ok(rowStreamer).build();
+  }
+
+  /**
+   * Reads a row on an I/O thread.
+   *
+   * @param table is the table containing the row.
+   * @param eid is the entity id of the row to return.
+   * @param request contains information about what to return.
+   * @param deadline by which the row must be read, in milliseconds since the UNIX epoch.
+   * @return the row.
+   * @throws IOException if the read fails.
+   */
+  private KijiRowData getRow(
+      final KijiTable table,
+      final EntityId eid,
+      final KijiDataRequest request,
+      final long deadline
+  ) throws IOException {
+    return mRowRequestExecutor.execute(new Callable<KijiRowData>() {
+      @Override
+      public KijiRowData call() throws IOException {
+        return RowResourceUtil.getKijiRowData(table, eid, request);
+      }
+    }, deadline);
+  }
+
+  /**
+   * Opens a row scanner on an I/O thread. The scanner is closed if it opens after the deadline.
+   *
+   * @param reader with which to open the scanner.
+   * @param request contains information about what to return.
+   * @param scanOptions are the options of the scan.
+   * @param deadline by which the scanner must be open, in milliseconds since the UNIX epoch.
+   * @return the row scanner.
+   * @throws IOException if the scanner can not be opened.
+   */
+  private KijiRowScanner openScanner(
+      final KijiTableReader reader,
+      final KijiDataRequest request,
+      final KijiScannerOptions scanOptions,
+      final long deadline
+  ) throws IOException {
+    return mRowRequestExecutor.execute(new Callable<KijiRowScanner>() {
+      @Override
+      public KijiRowScanner call() throws IOException {
+        return reader.getScanner(request, scanOptions);
+      }
+    }, deadline);
   }
 
 
@@ -426,6 +813,7 @@ public class RowsResource {
     // Open writer and write.
     RowResourceUtil.writeRow(kijiTable, entityId, kijiRestRow,
         mKijiClient.getKijiSchemaTable(instance));
+    mKijiClient.getRowCache().invalidateRow(instance, table, entityId);
 
     // Better output?
     Map<String, String> returnedTarget = Maps.newHashMap();
@@ -536,6 +924,216 @@ public class RowsResource {
     return returnedResults;
   }
 
+  /**
+   * POSTs a stream of rows: performs create and update through a buffered writer. The body is a
+   * stream of newline-delimited KijiRestRows, each
+   * formatted as the single row accepted by {@link #postRows}. Rows are decoded and written one
+   * line at a time, so the stream does not need to fit in memory.
+   *
+   * A row that can not be decoded or written is reported in the returned summary and does not
+   * prevent subsequent rows from being written; cells of a failed row which precede the failure
+   * may have been written. Counter increments are not supported.
+   *
+   * When flushing, rows are written through a writer private to the request, whose buffered writes
+   * are committed every {@value #BULK_ROWS_PER_FLUSH} rows and at the end of the stream. A row is
+   * counted as written, and evicted from the row cache, only once the flush which commits it
+   * succeeds. If a flush fails, each row it was committing is reported as failed with the error of
+   * the flush. Without flushing, rows are written through the buffered writer shared by all bulk
+   * writers of the table and are only counted as buffered: the error of a later flush of the shared
+   * writer can not be reported, and the row cache may serve their previous content until the
+   * buffered writes are committed.
+   *
+   * The returned summary has the form:
+   * {
+   *   "rows":3,
+   *   "written":2,
+   *   "buffered":0,
+   *   "failed":1,
+   *   "flushed":true,
+   *   "errors":[
+   *      {
+   *         "line":2,
+   *         "error":"Specified column does not exist: info:nope"
+   *      }
+   *   ]
+   * }
+   *
+   * @param instance in which the table resides
+   * @param table in which the rows reside
+   * @param flush whether to commit the buffered writes before returning. If false, writes are
+   *        committed when the shared buffer fills or on the next periodic flush, and may be lost
+   *        if the server stops before then.
+   * @param rows POST-ed stream of newline-delimited json rows
+   * @return a summary of the status of each row
+   */
+  @POST
+  @Path(BULK_ROWS_ENDPOINT)
+  @Consumes({ NDJSON, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
+  @Timed
+  @ApiStability.Experimental
+  public Map<String, Object> postBulkRows(@PathParam(INSTANCE_PARAMETER) final String instance,
+      @PathParam(TABLE_PARAMETER) final String table,
+      @QueryParam("flush") @DefaultValue("true") final boolean flush,
+      final InputStream rows) {
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    final KijiSchemaTable schemaTable = mKijiClient.getKijiSchemaTable(instance);
+    final RowCache rowCache = mKijiClient.getRowCache();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(rows, Charsets.UTF_8));
+    final KijiBufferedWriter requestWriter = flush ? openBulkWriter(kijiTable) : null;
+
+    final List<Map<String, Object>> errors = Lists.newArrayList();
+    // Rows buffered since the last flush, by line number. Only tracked when flushing.
+    final Map<Long, EntityId> unflushedRows = Maps.newLinkedHashMap();
+    long numRows = 0;
+    long numWritten = 0;
+    long numBuffered = 0;
+    long lineNumber = 0;
+    boolean flushed = flush;
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        numRows++;
+        try {
+          final KijiRestRow kijiRestRow = mJsonObjectMapper.readValue(line, KijiRestRow.class);
+          if (null == kijiRestRow.getEntityId()) {
+            throw new IllegalArgumentException("EntityId was not specified.");
+          }
+          final KijiTableLayout layout = kijiTable.getLayout();
+          final EntityId entityId = kijiRestRow.getEntityId().resolve(layout);
+          // Fetch the shared writer for each row, so that it does not expire mid-stream.
+          RowResourceUtil.writeRow(layout,
+              flush ? requestWriter : mKijiClient.getKijiBufferedWriter(instance, table),
+              entityId, kijiRestRow, schemaTable);
+          if (flush) {
+            unflushedRows.put(lineNumber, entityId);
+          } else {
+            rowCache.invalidateRow(instance, table, entityId);
+            numBuffered++;
+          }
+        } catch (WebApplicationException wae) {
+          errors.add(bulkRowError(lineNumber, wae.getCause() != null ? wae.getCause() : wae));
+        } catch (IOException ioe) {
+          errors.add(bulkRowError(lineNumber, ioe));
+        } catch (RuntimeException re) {
+          // Includes malformed entity ids and cell values which do not match their schema.
+          errors.add(bulkRowError(lineNumber, re));
+        }
+        if (unflushedRows.size() >= BULK_ROWS_PER_FLUSH) {
+          final long committed =
+              flushBulkRows(instance, table, requestWriter, unflushedRows, errors);
+          flushed &= (committed >= 0);
+          numWritten += Math.max(committed, 0);
+        }
+      }
+      if (flush) {
+        final long committed = flushBulkRows(instance, table, requestWriter, unflushedRows, errors);
+        flushed &= (committed >= 0);
+        numWritten += Math.max(committed, 0);
+      }
+    } catch (IOException ioe) {
+      // The request body could not be read.
+      throw new WebApplicationException(ioe, Status.BAD_REQUEST);
+    } finally {
+      if (null != requestWriter) {
+        // Any rows left unflushed were not reported as written.
+        ResourceUtils.closeOrLog(requestWriter);
+      }
+    }
+
+    final Map<String, Object> summary = Maps.newLinkedHashMap();
+    summary.put("rows", numRows);
+    summary.put("written", numWritten);
+    summary.put("buffered", numBuffered);
+    summary.put("failed", numRows - numWritten - numBuffered);
+    summary.put("flushed", flushed);
+    summary.put("errors", errors);
+    return summary;
+  }
+
+  /**
+   * Opens the buffered writer private to a flushed bulk write. The writer never flushes on its own,
+   * so that the error of every flush is reported to the rows it commits; its buffer is bounded by
+   * the {@value #BULK_ROWS_PER_FLUSH} rows buffered between flushes.
+   *
+   * @param kijiTable to write into.
+   * @return a buffered writer which must be closed by the caller.
+   */
+  private static KijiBufferedWriter openBulkWriter(final KijiTable kijiTable) {
+    try {
+      final KijiBufferedWriter writer = kijiTable.getWriterFactory().openBufferedWriter();
+      try {
+        writer.setBufferSize(Long.MAX_VALUE);
+      } catch (IOException ioe) {
+        ResourceUtils.closeOrLog(writer);
+        throw ioe;
+      }
+      return writer;
+    } catch (IOException ioe) {
+      throw new WebApplicationException(ioe, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Commits the rows buffered by a bulk write, then evicts them from the row cache.
+   *
+   * Rows are evicted even if the flush fails, as some of their writes may have been committed.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the rows reside.
+   * @param writer through which the rows were buffered.
+   * @param unflushedRows rows buffered since the last flush, by line number. Cleared on return.
+   * @param errors to report each row to, if the flush fails.
+   * @return the number of rows committed, or -1 if the flush failed.
+   */
+  private long flushBulkRows(
+      final String instance,
+      final String table,
+      final KijiBufferedWriter writer,
+      final Map<Long, EntityId> unflushedRows,
+      final List<Map<String, Object>> errors) {
+    final RowCache rowCache = mKijiClient.getRowCache();
+    long committed;
+    try {
+      writer.flush();
+      committed = unflushedRows.size();
+    } catch (IOException ioe) {
+      LOG.warn("Error flushing bulk write to table {}/{}: {}", instance, table, ioe.getMessage());
+      for (long lineNumber : unflushedRows.keySet()) {
+        errors.add(bulkRowError(lineNumber, ioe));
+      }
+      committed = -1;
+    } catch (KijiIOException kioe) {
+      LOG.warn("Error flushing bulk write to table {}/{}: {}", instance, table, kioe.getMessage());
+      for (long lineNumber : unflushedRows.keySet()) {
+        errors.add(bulkRowError(lineNumber, kioe));
+      }
+      committed = -1;
+    }
+    for (EntityId entityId : unflushedRows.values()) {
+      rowCache.invalidateRow(instance, table, entityId);
+    }
+    unflushedRows.clear();
+    return committed;
+  }
+
+  /**
+   * Describes a row of a bulk write which could not be written.
+   *
+   * @param lineNumber of the row in the request body.
+   * @param error which prevented the row from being written.
+   * @return a description of the failed row.
+   */
+  private static Map<String, Object> bulkRowError(final long lineNumber, final Throwable error) {
+    final Map<String, Object> rowError = Maps.newLinkedHashMap();
+    rowError.put("line", lineNumber);
+    rowError.put("error", error.getMessage());
+    return rowError;
+  }
+
   /**
    * DELETEs a Kiji row, a list of columns in a row, a list of rows, or a list of columns in a list
    * of rows using a buffered write. This method does not support wildcards.
@@ -608,6 +1206,9 @@ public class RowsResource {
 
       writer.flush();
       writer.close();
+      for (EntityId eid : entityIds) {
+        mKijiClient.getRowCache().invalidateRow(instance, table, eid);
+      }
     } catch (IOException ioe) {
       throw new WebApplicationException(ioe, Status.BAD_REQUEST);
     }
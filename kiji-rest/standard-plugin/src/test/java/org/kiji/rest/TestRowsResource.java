@@ -87,6 +87,7 @@ public class TestRowsResource extends ResourceTest {
   private Kiji mFakeKiji = null;
   private KijiSchemaTable mSchemaTable = null;
   private ManagedKijiClient mKijiClient = null;
+  private RowsResource mRowsResource = null;
 
   private static final URI DEFAULT_ROWS_RESOURCE = UriBuilder
       .fromResource(RowsResource.class)
@@ -213,8 +214,9 @@ public class TestRowsResource extends ResourceTest {
     mKijiClient = new ManagedKijiClient(mFakeKiji.getURI());
     mKijiClient.start();
 
-    RowsResource resource = new RowsResource(mKijiClient, getObjectMapper());
-    addResource(resource);
+    mRowsResource = new RowsResource(mKijiClient, getObjectMapper());
+    mRowsResource.start();
+    addResource(mRowsResource);
   }
 
   protected final String getHBaseRowKeyHex(String table, Object... components) throws IOException {
@@ -272,6 +274,7 @@ public class TestRowsResource extends ResourceTest {
   public void afterTest() throws Exception {
     mFakeKiji.release();
     mKijiClient.stop();
+    mRowsResource.stop();
   }
 
   @Test
@@ -1364,6 +1367,89 @@ public class TestRowsResource extends ResourceTest {
     }
   }
 
+  @Test
+  public void testBulkPost() throws Exception {
+    // Set up.
+    String stringRowKey1 = getEntityIdString("sample_table", 55026L);
+    String stringRowKey2 = getEntityIdString("sample_table", 55027L);
+
+    KijiRestRow postRow1 = new KijiRestRow(
+        KijiRestEntityId.create(stringToJsonNode(
+        URLDecoder.decode(stringRowKey1, "UTF-8"))));
+    postRow1.addCell("group_family", "string_qualifier", null, "bulk_value_1", mStringOption);
+
+    KijiRestRow badRow = new KijiRestRow(
+        KijiRestEntityId.create(stringToJsonNode(
+        URLDecoder.decode(stringRowKey1, "UTF-8"))));
+    badRow.addCell("group_family", "missing_qualifier", null, "bad_value", mStringOption);
+
+    KijiRestRow postRow2 = new KijiRestRow(
+        KijiRestEntityId.create(stringToJsonNode(
+        URLDecoder.decode(stringRowKey2, "UTF-8"))));
+    postRow2.addCell("group_family", "string_qualifier", null, "bulk_value_2", mStringOption);
+
+    // Blank lines are skipped.
+    String body = getObjectMapper().writeValueAsString(postRow1) + "\n"
+        + getObjectMapper().writeValueAsString(badRow) + "\n"
+        + "\n"
+        + getObjectMapper().writeValueAsString(postRow2) + "\n";
+
+    // Post.
+    URI resourceURI = UriBuilder.fromResource(RowsResource.class)
+        .path(RoutesConstants.BULK_ROWS_ENDPOINT)
+        .build("default", "sample_table");
+    JsonNode summary = stringToJsonNode(client().resource(resourceURI).type(RowsResource.NDJSON)
+        .accept(MediaType.APPLICATION_JSON).post(String.class, body));
+
+    // Check summary.
+    assertEquals(3, summary.get("rows").asInt());
+    assertEquals(2, summary.get("written").asInt());
+    assertEquals(0, summary.get("buffered").asInt());
+    assertEquals(1, summary.get("failed").asInt());
+    assertTrue(summary.get("flushed").asBoolean());
+    assertEquals(1, summary.get("errors").size());
+    assertEquals(2, summary.get("errors").get(0).get("line").asInt());
+
+    // Retrieve.
+    resourceURI = UriBuilder.fromResource(RowsResource.class)
+        .queryParam("eid", URLEncoder.encode(stringRowKey1, UTF_8))
+        .build("default", "sample_table");
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals("bulk_value_1", returnRow.getCells().get("group_family")
+        .get("string_qualifier").get(0).getValue());
+
+    resourceURI = UriBuilder.fromResource(RowsResource.class)
+        .queryParam("eid", URLEncoder.encode(stringRowKey2, UTF_8))
+        .build("default", "sample_table");
+    returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals("bulk_value_2", returnRow.getCells().get("group_family")
+        .get("string_qualifier").get(0).getValue());
+  }
+
+  @Test
+  public void testBulkPostWithoutFlush() throws Exception {
+    String stringRowKey = getEntityIdString("sample_table", 55028L);
+    KijiRestRow postRow = new KijiRestRow(
+        KijiRestEntityId.create(stringToJsonNode(
+        URLDecoder.decode(stringRowKey, "UTF-8"))));
+    postRow.addCell("group_family", "string_qualifier", null, "bulk_value_3", mStringOption);
+
+    URI resourceURI = UriBuilder.fromResource(RowsResource.class)
+        .path(RoutesConstants.BULK_ROWS_ENDPOINT)
+        .queryParam("flush", "false")
+        .build("default", "sample_table");
+    JsonNode summary = stringToJsonNode(client().resource(resourceURI).type(RowsResource.NDJSON)
+        .accept(MediaType.APPLICATION_JSON)
+        .post(String.class, getObjectMapper().writeValueAsString(postRow) + "\n"));
+
+    // Rows which are only buffered are not reported as written.
+    assertEquals(1, summary.get("rows").asInt());
+    assertEquals(0, summary.get("written").asInt());
+    assertEquals(1, summary.get("buffered").asInt());
+    assertEquals(0, summary.get("failed").asInt());
+    assertFalse(summary.get("flushed").asBoolean());
+  }
+
   private void addCellToRow(KijiRestRow rowToModify, KijiCell<?> cellToPost) throws IOException {
     long schemaId = mSchemaTable.getOrCreateSchemaId(cellToPost.getWriterSchema());
     SchemaOption option = new SchemaOption(schemaId);
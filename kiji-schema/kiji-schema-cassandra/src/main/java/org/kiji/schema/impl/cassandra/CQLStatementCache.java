@@ -95,6 +95,9 @@ public class CQLStatementCache {
 
   private static final int ENTITY_ID_BATCH_SIZE = 250;
 
+  /** Default number of cells fetched per page by token range scans. */
+  public static final int DEFAULT_SCAN_FETCH_SIZE = 1000;
+
   private final RowKeyFormat2 mRowKeyFormat;
 
   /** Cassandra primary key columns belonging to the Kiji Entity ID. */
@@ -195,6 +198,19 @@ public class CQLStatementCache {
     }
   }
 
+  /**
+   * Get the values of the Cassandra partition key columns of an entity ID. Writes to entity IDs
+   * with equal partition key values are written to the same Cassandra partition.
+   *
+   * @param entityID The entity ID.
+   * @return The values of the entity ID's partition key columns.
+   */
+  public List<Object> getPartitionKeyComponents(
+      final EntityId entityID
+  ) {
+    return getEntityIDComponents(entityID).subList(0, mPartitionKeyColumns.size());
+  }
+
   /*************************************************************************************************
    * Get Statement
    ************************************************************************************************/
@@ -419,18 +435,7 @@ public class CQLStatementCache {
 
     // Bind the parameters to the prepared statement
 
-    // slots are for the min/max token
-    final List<Object> values = Lists.newArrayListWithCapacity(2);
-
-    if (tokenRange.hasLowerBound()) {
-      values.add(tokenRange.lowerEndpoint());
-    }
-
-    if (tokenRange.hasUpperBound()) {
-      values.add(tokenRange.upperEndpoint());
-    }
-
-    return statement.bind(values.toArray()).setFetchSize(ENTITY_ID_BATCH_SIZE);
+    return statement.bind(getTokenBoundValues(tokenRange)).setFetchSize(ENTITY_ID_BATCH_SIZE);
   }
 
   /**
@@ -481,36 +486,205 @@ public class CQLStatementCache {
       }
 
       final Select select = selection.from(mTable.getKeyspace(), mTable.getTable());
+      addTokenBounds(select, tokenColumn, mLowerBound, mUpperBound);
 
-      if (mLowerBound.isPresent()) {
-        switch (mLowerBound.get()) {
-          case OPEN: {
-            select.where(gt(tokenColumn, bindMarker()));
-            break;
-          }
-          case CLOSED: {
-            select.where(gte(tokenColumn, bindMarker()));
-            break;
-          }
-          default:
-            throw new EnumConstantNotPresentException(BoundType.class, mLowerBound.get().name());
+      return select;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+          .add("table", mTable)
+          .add("lowerBound", mLowerBound)
+          .add("upperBound", mUpperBound)
+          .toString();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(this.getClass(), mTable, mLowerBound, mUpperBound, mUseDistinct);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final EntityIDScanStatementKey other = (EntityIDScanStatementKey) obj;
+      return Objects.equal(this.mTable, other.mTable)
+          && Objects.equal(this.mLowerBound, other.mLowerBound)
+          && Objects.equal(this.mUpperBound, other.mUpperBound)
+          && Objects.equal(this.mUseDistinct, other.mUseDistinct);
+    }
+  }
+
+  /**
+   * Add the token range restrictions of a scan to a select statement. The token bounds are left as
+   * bind markers, lower bound first.
+   *
+   * @param select The select statement to restrict.
+   * @param tokenColumn The token column of the table.
+   * @param lowerBound The lower token bound type (open or closed), if present.
+   * @param upperBound The upper token bound type (open or closed), if present.
+   */
+  private static void addTokenBounds(
+      final Select select,
+      final String tokenColumn,
+      final Optional<BoundType> lowerBound,
+      final Optional<BoundType> upperBound
+  ) {
+    if (lowerBound.isPresent()) {
+      switch (lowerBound.get()) {
+        case OPEN: {
+          select.where(gt(tokenColumn, bindMarker()));
+          break;
         }
+        case CLOSED: {
+          select.where(gte(tokenColumn, bindMarker()));
+          break;
+        }
+        default:
+          throw new EnumConstantNotPresentException(BoundType.class, lowerBound.get().name());
       }
+    }
 
-      if (mUpperBound.isPresent()) {
-        switch (mUpperBound.get()) {
-          case OPEN: {
-            select.where(lt(tokenColumn, bindMarker()));
-            break;
-          }
-          case CLOSED: {
-            select.where(lte(tokenColumn, bindMarker()));
-            break;
-          }
-          default:
-            throw new EnumConstantNotPresentException(BoundType.class, mUpperBound.get().name());
+    if (upperBound.isPresent()) {
+      switch (upperBound.get()) {
+        case OPEN: {
+          select.where(lt(tokenColumn, bindMarker()));
+          break;
+        }
+        case CLOSED: {
+          select.where(lte(tokenColumn, bindMarker()));
+          break;
         }
+        default:
+          throw new EnumConstantNotPresentException(BoundType.class, upperBound.get().name());
       }
+    }
+  }
+
+  /**
+   * Get the token range bound values of a scan, in the order of the bind markers added by
+   * {@link #addTokenBounds}.
+   *
+   * @param tokenRange The range of tokens to scan.
+   * @return The token bound values to bind.
+   */
+  private static Object[] getTokenBoundValues(final Range<Long> tokenRange) {
+    // slots are for the min/max token
+    final List<Object> values = Lists.newArrayListWithCapacity(2);
+
+    if (tokenRange.hasLowerBound()) {
+      values.add(tokenRange.lowerEndpoint());
+    }
+
+    if (tokenRange.hasUpperBound()) {
+      values.add(tokenRange.upperEndpoint());
+    }
+
+    return values.toArray();
+  }
+
+  /*************************************************************************************************
+   * Scan Statement
+   ************************************************************************************************/
+
+  /**
+   * Create a CQL statement for selecting every cell in a range of tokens of a Cassandra Kiji
+   * locality group table.
+   *
+   * <p>
+   *   The selected rows contain the token, the entity ID columns, and the family, qualifier,
+   *   version and value of each cell. They are returned in token order, and within a token
+   *   grouped by entity ID, so that the cells of a Kiji row are consecutive. Results are fetched
+   *   lazily, one page of {@code fetchSize} cells at a time.
+   * </p>
+   *
+   * @param table The translated Cassandra table name.
+   * @param tokenRange A range of tokens to scan.
+   * @param fetchSize The number of Cassandra rows (cells) to fetch per page.
+   * @return a statement that will scan the cells in the token range.
+   */
+  public Statement createScanStatement(
+      final CassandraTableName table,
+      final Range<Long> tokenRange,
+      final int fetchSize
+  ) {
+    Preconditions.checkArgument(fetchSize > 0, "Fetch size must be positive: %s.", fetchSize);
+
+    // Retrieve the prepared statement from the cache
+
+    final Optional<BoundType> lowerBound =
+        tokenRange.hasLowerBound()
+            ? Optional.of(tokenRange.lowerBoundType())
+            : Optional.<BoundType>absent();
+
+    final Optional<BoundType> upperBound =
+        tokenRange.hasUpperBound()
+            ? Optional.of(tokenRange.upperBoundType())
+            : Optional.<BoundType>absent();
+
+    final ScanStatementKey key = new ScanStatementKey(table, lowerBound, upperBound);
+    final PreparedStatement statement = mCache.getUnchecked(key);
+
+    // Bind the parameters to the prepared statement
+
+    return statement.bind(getTokenBoundValues(tokenRange)).setFetchSize(fetchSize);
+  }
+
+  /**
+   * A statement cache key containing all of the information necessary to create a token range
+   * scan statement.
+   */
+  private final class ScanStatementKey implements StatementKey {
+    private final CassandraTableName mTable;
+    private final Optional<BoundType> mLowerBound;
+    private final Optional<BoundType> mUpperBound;
+
+    /**
+     * Create a new scan statement key.
+     *
+     * @param table The Cassandra table name.
+     * @param lowerBound The lower token bound type (open or closed), if present.
+     * @param upperBound The upper token bound type (open or closed), if present.
+     */
+    private ScanStatementKey(
+        final CassandraTableName table,
+        final Optional<BoundType> lowerBound,
+        final Optional<BoundType> upperBound
+    ) {
+      mTable = table;
+      mLowerBound = lowerBound;
+      mUpperBound = upperBound;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RegularStatement createUnpreparedStatement() {
+      final String tokenColumn =
+          String.format("token(%s)", CQLUtils.COMMA_JOINER.join(mPartitionKeyColumns));
+
+      final Select.Selection selection = select();
+      selection.column(tokenColumn);
+
+      for (final String column : mEntityIDColumns) {
+        selection.column(column);
+      }
+
+      selection.column(CQLUtils.FAMILY_COL);
+      selection.column(CQLUtils.QUALIFIER_COL);
+      selection.column(CQLUtils.VERSION_COL);
+      selection.column(CQLUtils.VALUE_COL);
+
+      final Select select = selection.from(mTable.getKeyspace(), mTable.getTable());
+      addTokenBounds(select, tokenColumn, mLowerBound, mUpperBound);
 
       return select;
     }
@@ -528,7 +702,7 @@ public class CQLStatementCache {
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
-      return Objects.hashCode(this.getClass(), mTable, mLowerBound, mUpperBound, mUseDistinct);
+      return Objects.hashCode(this.getClass(), mTable, mLowerBound, mUpperBound);
     }
 
     /** {@inheritDoc} */
@@ -540,11 +714,10 @@ public class CQLStatementCache {
       if (obj == null || getClass() != obj.getClass()) {
         return false;
       }
-      final EntityIDScanStatementKey other = (EntityIDScanStatementKey) obj;
+      final ScanStatementKey other = (ScanStatementKey) obj;
       return Objects.equal(this.mTable, other.mTable)
           && Objects.equal(this.mLowerBound, other.mLowerBound)
-          && Objects.equal(this.mUpperBound, other.mUpperBound)
-          && Objects.equal(this.mUseDistinct, other.mUseDistinct);
+          && Objects.equal(this.mUpperBound, other.mUpperBound);
     }
   }
 
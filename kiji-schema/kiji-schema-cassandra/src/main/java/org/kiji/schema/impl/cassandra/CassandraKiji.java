@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.core.ResultSetFuture;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
@@ -48,6 +49,7 @@ import org.kiji.schema.avro.RowKeyFormat;
 import org.kiji.schema.avro.TableLayoutDesc;
 import org.kiji.schema.cassandra.CassandraKijiURI;
 import org.kiji.schema.cassandra.CassandraTableName;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.impl.Versions;
 import org.kiji.schema.layout.InvalidLayoutException;
 import org.kiji.schema.layout.KijiTableLayout;
@@ -135,6 +137,9 @@ public final class CassandraKiji implements Kiji {
    */
   private KijiSecurityManager mSecurityManager = null;
 
+  /** Runtime metrics of this instance, disabled until a registry is set. */
+  private final KijiMetrics mMetrics = new KijiMetrics();
+
   /**
    * Creates a new <code>CassandraKiji</code> instance.
    *
@@ -334,6 +339,27 @@ public final class CassandraKiji implements Kiji {
     return mSecurityManager;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void setMetricRegistry(MetricRegistry registry) {
+    mMetrics.setRegistry(registry);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public MetricRegistry getMetricRegistry() {
+    return mMetrics.getRegistry();
+  }
+
+  /**
+   * Returns the runtime metrics of this instance.
+   *
+   * @return the runtime metrics of this instance.
+   */
+  public KijiMetrics getMetrics() {
+    return mMetrics;
+  }
+
   /** {@inheritDoc} */
   @Override
   public CassandraKijiTable openTable(String tableName) throws IOException {
@@ -22,17 +22,28 @@ package org.kiji.schema.impl.cassandra;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Statement;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import org.apache.hadoop.hbase.HConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,19 +68,35 @@ import org.kiji.schema.layout.impl.CellEncoderProvider;
 /**
  * Cassandra implementation of a batch KijiTableWriter.
  *
- * For now, this implementation is less featured than the HBaseKijiBufferedWriter.  We choose when
- * to execute a series of writes not when the buffer reaches a certain size in raw bytes, but
- * whether when it reaches a certain size in the total number of puts (INSERT statements).
- * We also do not combine puts to the same entity ID together into a single put.
+ * <p>
+ *   Writes are buffered until the estimated size of the buffered statements, in bytes, exceeds the
+ *   buffer size (2MB by default, see {@link #setBufferSize(long)}). Buffered statements are grouped
+ *   by Cassandra partition: the statements to the same partition of a locality group table are
+ *   sent together as unlogged batches, which the coordinator applies to a single replica set
+ *   without extra coordination. Statements to different partitions are never batched together:
+ *   see http://tinyurl.com/pwu2dso for more information about batch statements in Cassandra.
+ * </p>
  *
- * We arbitrarily choose to flush the write buffer when it contains 100 statements.
+ * <p>
+ *   All statements of a batch share a write timestamp. Batches are bounded in size, and a batch is
+ *   closed after a delete or before a second write to the same cell, so that writes are applied in
+ *   the order they were buffered. The batches of a partition are sent one after the other, across
+ *   flushes: while batches to a partition are in flight, the batches of a later flush to the same
+ *   partition are queued behind them rather than sent concurrently.
+ * </p>
  *
- * We flush the write buffer not by performing a Cassandra batch statement (which is really
- * intended to facilitate writing to multiple tables at once) but by issues all of the writes in
- * parallel using the Cassandra driver's async API and then waiting for all of them to complete.
- *
- * See http://tinyurl.com/pwu2dso for more information about batch statements in Cassandra.
+ * <p>
+ *   When the buffer fills up, its batches are sent asynchronously, and the writer keeps buffering
+ *   while they are in flight. The number of partitions being written at any time is bounded; a
+ *   writer which gets ahead of Cassandra waits for in-flight requests to complete before sending
+ *   more. An explicit {@link #flush()} or {@link #close()} waits for every in-flight request to
+ *   complete.
+ * </p>
  *
+ * <p>
+ *   Failed requests are reported by the next call to a write method, {@link #flush()} or
+ *   {@link #close()}, which throws an IOException describing each failed batch.
+ * </p>
  */
 @ApiAudience.Private
 @Inheritance.Sealed
@@ -102,15 +129,189 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
   @GuardedBy("mMonitor")
   private WriterLayoutCapsule mCapsule = null;
 
+  /** Default size of the write buffer, in bytes. */
+  private static final long DEFAULT_WRITE_BUFFER_SIZE = 1024L * 1024L * 2L;
+
+  /**
+   * Maximum estimated size of a batch, in bytes. This is below the default batch size failure
+   * threshold of Cassandra (50KB).
+   */
+  private static final long MAX_BATCH_SIZE = 32L * 1024L;
+
+  /** Estimated size in bytes of a statement, excluding its row key, column name and value. */
+  private static final long STATEMENT_OVERHEAD = 32L;
+
+  /** Maximum number of partitions being written at any time. */
+  private static final int MAX_IN_FLIGHT_REQUESTS = 32;
+
+  /** Maximum number of failed requests described by a write exception. */
+  private static final int MAX_REPORTED_FAILURES = 10;
+
   @GuardedBy("mMonitor")
-  private long mMaxWriteBufferSize = 100;
+  private long mMaxWriteBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
 
+  /** Estimated size in bytes of the buffered statements. */
   @GuardedBy("mMonitor")
   private long mCurrentWriteBufferSize = 0;
 
-  /** Local write buffers. */
+  /** Local write buffers, by Cassandra partition, in order of first write. */
   @GuardedBy("mMonitor")
-  private final ListMultimap<CassandraTableName, Statement> mBufferedStatements;
+  private final Map<PartitionKey, PartitionBuffer> mBufferedStatements = Maps.newLinkedHashMap();
+
+  /** Permits for in-flight requests, one per partition being written. */
+  private final Semaphore mInFlightRequests = new Semaphore(MAX_IN_FLIGHT_REQUESTS);
+
+  /**
+   * Batches waiting to be sent to each partition being written, in the order they must be applied.
+   * A partition is removed once its last batch completes, or once a batch fails.
+   */
+  @GuardedBy("mInFlightPartitions")
+  private final Map<PartitionKey, Queue<List<Statement>>> mInFlightPartitions = Maps.newHashMap();
+
+  /** Failures of completed requests which have not been reported yet. */
+  private final Queue<WriteFailure> mFailures = new ConcurrentLinkedQueue<WriteFailure>();
+
+  /** Identifies a Cassandra partition of a locality group table. */
+  @Immutable
+  private static final class PartitionKey {
+    private final CassandraTableName mTable;
+    private final List<Object> mComponents;
+
+    /**
+     * Create a partition key.
+     *
+     * @param table The locality group table containing the partition.
+     * @param components The values of the partition key columns.
+     */
+    private PartitionKey(final CassandraTableName table, final List<Object> components) {
+      mTable = table;
+      mComponents = components;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mTable, mComponents);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final PartitionKey other = (PartitionKey) obj;
+      return Objects.equal(mTable, other.mTable) && Objects.equal(mComponents, other.mComponents);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+          .add("table", mTable)
+          .add("components", mComponents)
+          .toString();
+    }
+  }
+
+  /** Identifies a cell written by a put. */
+  @Immutable
+  private static final class CellKey {
+    private final CassandraColumnName mColumn;
+    private final long mVersion;
+
+    /**
+     * Create a cell key.
+     *
+     * @param column The Cassandra column of the cell.
+     * @param version The version of the cell.
+     */
+    private CellKey(final CassandraColumnName column, final long version) {
+      mColumn = column;
+      mVersion = version;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mColumn, mVersion);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final CellKey other = (CellKey) obj;
+      return mVersion == other.mVersion && mColumn.equals(other.mColumn);
+    }
+  }
+
+  /** Buffered statements to a single Cassandra partition, split into batches. */
+  private static final class PartitionBuffer {
+    private final List<List<Statement>> mBatches = Lists.newArrayList();
+    private final Set<CellKey> mLastBatchCells = Sets.newHashSet();
+    private long mLastBatchSize = 0;
+    private boolean mLastBatchClosed = true;
+
+    /**
+     * Buffer a statement.
+     *
+     * @param statement The statement to buffer.
+     * @param size The estimated size of the statement, in bytes.
+     * @param cell The cell written by the statement, or null if the statement is a delete.
+     */
+    private void add(final Statement statement, final long size, final CellKey cell) {
+      // All statements in a batch share a write timestamp. Cassandra resolves ties in favor of
+      // deletes, then of the greater value, so a write following a delete or another write to the
+      // same cell must go in another batch.
+      if (mLastBatchClosed
+          || mLastBatchSize + size > MAX_BATCH_SIZE
+          || (cell != null && mLastBatchCells.contains(cell))) {
+        mBatches.add(Lists.<Statement>newArrayList());
+        mLastBatchCells.clear();
+        mLastBatchSize = 0;
+      }
+      mBatches.get(mBatches.size() - 1).add(statement);
+      mLastBatchSize += size;
+      if (cell != null) {
+        mLastBatchCells.add(cell);
+      }
+      mLastBatchClosed = (cell == null);
+    }
+  }
+
+  /** A failed request. */
+  @Immutable
+  private static final class WriteFailure {
+    private final PartitionKey mPartition;
+    private final int mStatements;
+    private final Throwable mCause;
+
+    /**
+     * Create a description of a failed request.
+     *
+     * @param partition The partition written by the request.
+     * @param statements The number of statements which were not written.
+     * @param cause The failure.
+     */
+    private WriteFailure(
+        final PartitionKey partition,
+        final int statements,
+        final Throwable cause
+    ) {
+      mPartition = partition;
+      mStatements = statements;
+      mCause = cause;
+    }
+  }
 
   /**
    * A capsule for writer state which is specific to a table layout version.
@@ -225,10 +426,6 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
         mCapsule != null,
         "CassandraKijiBufferedWriter for table: %s failed to initialize.", mTable.getURI());
 
-    mBufferedStatements = ArrayListMultimap.create(
-        mTable.getLayout().getLocalityGroups().size(),
-        (int) mMaxWriteBufferSize);
-
     // Retain the table only after everything else succeeded:
     mTable.retain();
 
@@ -307,11 +504,12 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
               valueBuffer,
               ttl);
 
-      mBufferedStatements.put(table, put);
-      mCurrentWriteBufferSize += 1;
-      if (mCurrentWriteBufferSize > mMaxWriteBufferSize) {
-        flush();
-      }
+      buffer(
+          table,
+          entityId,
+          put,
+          valueBuffer.remaining() + getColumnSize(cassandraColumn),
+          new CellKey(cassandraColumn, version));
     }
   }
 
@@ -331,12 +529,7 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
         final Statement delete =
             mTable.getStatementCache().createLocalityGroupDeleteStatement(table, entityId);
 
-        mBufferedStatements.put(table, delete);
-        mCurrentWriteBufferSize += 1;
-      }
-
-      if (mCurrentWriteBufferSize > mMaxWriteBufferSize) {
-        flush();
+        buffer(table, entityId, delete, 0, null);
       }
     }
   }
@@ -394,12 +587,7 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
 
       final Statement delete =
           mTable.getStatementCache().createColumnDeleteStatement(table, entityId, column);
-      mBufferedStatements.put(table, delete);
-
-      mCurrentWriteBufferSize += 1;
-      if (mCurrentWriteBufferSize > mMaxWriteBufferSize) {
-        flush();
-      }
+      buffer(table, entityId, delete, getColumnSize(column), null);
     }
   }
 
@@ -457,12 +645,7 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
 
       final Statement delete =
           mTable.getStatementCache().createCellDeleteStatement(table, entityId, column, version);
-      mBufferedStatements.put(table, delete);
-
-      mCurrentWriteBufferSize += 1;
-      if (mCurrentWriteBufferSize > mMaxWriteBufferSize) {
-        flush();
-      }
+      buffer(table, entityId, delete, getColumnSize(column), null);
     }
   }
 
@@ -486,45 +669,235 @@ public class CassandraKijiBufferedWriter implements KijiBufferedWriter {
   /** {@inheritDoc} */
   @Override
   public void flush() throws IOException {
-
-    final List<ResultSetFuture> futures =
-        Lists.newArrayList();
-
     synchronized (mMonitor) {
-      LOG.debug("Flushing CassandraKijiBufferedWriter with {} buffered statements.",
-          mCurrentWriteBufferSize);
-
       Preconditions.checkState(mState == State.OPEN,
           "Can not flush BufferedWriter instance %s in state %s.", this, mState);
-
-      // Batch statements in C* are not recommended for performance: see http://tinyurl.com/pwu2dso
-      // Just execute all of the write asynchronously instead.
-      for (final CassandraTableName table : mBufferedStatements.keySet()) {
-        final List<Statement> statements = mBufferedStatements.removeAll(table);
-
-        for (Statement statement : statements) {
-          futures.add(mTable.getAdmin().executeAsync(statement));
-        }
-      }
-      mCurrentWriteBufferSize = 0L;
-    }
-
-    for (ResultSetFuture future : futures) {
-      future.getUninterruptibly();
+      sendBufferedStatements();
     }
+    awaitInFlightRequests();
+    reportFailures();
   }
 
   /** {@inheritDoc} */
   @Override
   public void close() throws IOException {
     synchronized (mMonitor) {
-      flush();
       Preconditions.checkState(mState == State.OPEN,
           "Cannot close BufferedWriter instance %s in state %s.", this, mState);
-      mState = State.CLOSED;
-      mLayoutConsumerRegistration.close();
-      mTable.release();
-      ResourceTracker.get().unregisterResource(this);
+      try {
+        flush();
+      } finally {
+        mState = State.CLOSED;
+        mLayoutConsumerRegistration.close();
+        mTable.release();
+        ResourceTracker.get().unregisterResource(this);
+      }
+    }
+  }
+
+  /**
+   * Buffer a statement, and send the buffered statements if the buffer is full.
+   *
+   * @param table The locality group table written by the statement.
+   * @param entityId The entity ID of the row written by the statement.
+   * @param statement The statement to buffer.
+   * @param size The estimated size of the column name and value of the statement, in bytes.
+   * @param cell The cell written by the statement, or null if the statement is a delete.
+   * @throws IOException If a previously sent request failed.
+   */
+  @GuardedBy("mMonitor")
+  private void buffer(
+      final CassandraTableName table,
+      final EntityId entityId,
+      final Statement statement,
+      final long size,
+      final CellKey cell
+  ) throws IOException {
+    reportFailures();
+
+    final PartitionKey partition =
+        new PartitionKey(table, mTable.getStatementCache().getPartitionKeyComponents(entityId));
+    PartitionBuffer partitionBuffer = mBufferedStatements.get(partition);
+    if (partitionBuffer == null) {
+      partitionBuffer = new PartitionBuffer();
+      mBufferedStatements.put(partition, partitionBuffer);
+    }
+
+    final long statementSize = size + entityId.getHBaseRowKey().length + STATEMENT_OVERHEAD;
+    partitionBuffer.add(statement, statementSize, cell);
+    mCurrentWriteBufferSize += statementSize;
+    if (mCurrentWriteBufferSize > mMaxWriteBufferSize) {
+      sendBufferedStatements();
+    }
+  }
+
+  /**
+   * Send all buffered statements, without waiting for them to complete. Blocks while the maximum
+   * number of requests are in flight.
+   *
+   * <p>
+   *   The batches to a partition which is still being written by a previous flush are queued
+   *   behind the in-flight batches of the partition, so that they are applied after them.
+   * </p>
+   */
+  @GuardedBy("mMonitor")
+  private void sendBufferedStatements() {
+    LOG.debug("Flushing CassandraKijiBufferedWriter with {} bytes of statements to {} partitions.",
+        mCurrentWriteBufferSize, mBufferedStatements.size());
+
+    for (final Map.Entry<PartitionKey, PartitionBuffer> entry : mBufferedStatements.entrySet()) {
+      final PartitionKey partition = entry.getKey();
+      final List<List<Statement>> batches = entry.getValue().mBatches;
+      synchronized (mInFlightPartitions) {
+        final Queue<List<Statement>> pending = mInFlightPartitions.get(partition);
+        if (pending != null) {
+          pending.addAll(batches);
+          continue;
+        }
+      }
+      // Only this method, under mMonitor, starts writing a partition: the partition can not start
+      // being written concurrently while this waits for a permit.
+      mInFlightRequests.acquireUninterruptibly();
+      final Queue<List<Statement>> pending = Queues.newArrayDeque(batches);
+      synchronized (mInFlightPartitions) {
+        mInFlightPartitions.put(partition, pending);
+      }
+      sendNext(partition, pending);
     }
+    mBufferedStatements.clear();
+    mCurrentWriteBufferSize = 0L;
+  }
+
+  /**
+   * Send the next batch of statements to a partition, and the following batches once it
+   * completes. The partition holds a request permit, which is released once no batch remains or a
+   * batch fails.
+   *
+   * @param partition The partition written by the statements.
+   * @param pending The batches waiting to be sent to the partition.
+   */
+  private void sendNext(final PartitionKey partition, final Queue<List<Statement>> pending) {
+    final List<Statement> batch;
+    synchronized (mInFlightPartitions) {
+      batch = pending.poll();
+      if (batch == null) {
+        mInFlightPartitions.remove(partition);
+        mInFlightRequests.release();
+        return;
+      }
+    }
+
+    final Statement statement;
+    if (batch.size() == 1) {
+      statement = batch.get(0);
+    } else {
+      final BatchStatement batchStatement = new BatchStatement(BatchStatement.Type.UNLOGGED);
+      batchStatement.addAll(batch);
+      statement = batchStatement;
+    }
+
+    final ResultSetFuture future;
+    try {
+      future = mTable.getAdmin().executeAsync(statement);
+    } catch (RuntimeException re) {
+      fail(partition, batch, pending, re);
+      return;
+    }
+
+    Futures.addCallback(future, new FutureCallback<ResultSet>() {
+      /** {@inheritDoc} */
+      @Override
+      public void onSuccess(final ResultSet result) {
+        sendNext(partition, pending);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public void onFailure(final Throwable cause) {
+        fail(partition, batch, pending, cause);
+      }
+    });
+  }
+
+  /**
+   * Record the failure of a batch, give up on the following batches of the partition, including
+   * the batches queued by later flushes, and release the request permit of the partition.
+   *
+   * @param partition The partition written by the failed batch.
+   * @param batch The failed batch.
+   * @param pending The batches waiting to be sent to the partition, which are not sent.
+   * @param cause The failure.
+   */
+  private void fail(
+      final PartitionKey partition,
+      final List<Statement> batch,
+      final Queue<List<Statement>> pending,
+      final Throwable cause
+  ) {
+    int statements = batch.size();
+    synchronized (mInFlightPartitions) {
+      for (List<Statement> skipped : pending) {
+        statements += skipped.size();
+      }
+      pending.clear();
+      mInFlightPartitions.remove(partition);
+      // Record the failure before releasing the permit, so that waiters see it.
+      mFailures.add(new WriteFailure(partition, statements, cause));
+      mInFlightRequests.release();
+    }
+  }
+
+  /** Wait until no request is in flight. */
+  private void awaitInFlightRequests() {
+    mInFlightRequests.acquireUninterruptibly(MAX_IN_FLIGHT_REQUESTS);
+    mInFlightRequests.release(MAX_IN_FLIGHT_REQUESTS);
+  }
+
+  /**
+   * Throw an exception describing the failed requests which have not been reported yet, if any.
+   *
+   * @throws IOException If a request failed.
+   */
+  private void reportFailures() throws IOException {
+    WriteFailure failure = mFailures.poll();
+    if (failure == null) {
+      return;
+    }
+    final StringBuilder message = new StringBuilder("Failed to write to table ")
+        .append(mTable.getURI()).append(':');
+    final List<Throwable> causes = Lists.newArrayList();
+    int failures = 0;
+    while (failure != null) {
+      if (failures < MAX_REPORTED_FAILURES) {
+        message.append(String.format("%n  %d statement(s) not written to partition %s of %s: %s",
+            failure.mStatements,
+            failure.mPartition.mComponents,
+            failure.mPartition.mTable,
+            failure.mCause));
+        causes.add(failure.mCause);
+      }
+      failures += 1;
+      failure = mFailures.poll();
+    }
+    if (failures > MAX_REPORTED_FAILURES) {
+      message.append(String.format("%n  and %d more failed request(s).",
+          failures - MAX_REPORTED_FAILURES));
+    }
+    final IOException exception = new IOException(message.toString(), causes.get(0));
+    for (Throwable cause : causes.subList(1, causes.size())) {
+      exception.addSuppressed(cause);
+    }
+    throw exception;
+  }
+
+  /**
+   * Estimate the size of a Cassandra column name, in bytes.
+   *
+   * @param column The Cassandra column name.
+   * @return The estimated size of the column name.
+   */
+  private static long getColumnSize(final CassandraColumnName column) {
+    return column.getFamily().length
+        + (column.containsQualifier() ? column.getQualifier().length : 0);
   }
 }
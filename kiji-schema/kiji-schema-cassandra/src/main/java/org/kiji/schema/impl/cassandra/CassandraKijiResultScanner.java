@@ -20,32 +20,50 @@
 package org.kiji.schema.impl.cassandra;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Statement;
 import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import org.mortbay.io.RuntimeIOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.kiji.commons.ByteUtils;
 import org.kiji.commons.IteratorUtils;
 import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiCell;
+import org.kiji.schema.KijiCellDecoder;
+import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiDataRequest.Column;
+import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiResult;
 import org.kiji.schema.KijiResultScanner;
 import org.kiji.schema.KijiURI;
+import org.kiji.schema.NoSuchColumnException;
+import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
+import org.kiji.schema.cassandra.CassandraColumnName;
 import org.kiji.schema.cassandra.CassandraTableName;
+import org.kiji.schema.impl.MaterializedKijiResult;
 import org.kiji.schema.impl.cassandra.RowDecoders.TokenRowKeyComponents;
 import org.kiji.schema.impl.cassandra.RowDecoders.TokenRowKeyComponentsComparator;
 import org.kiji.schema.layout.CassandraColumnNameTranslator;
@@ -67,23 +85,29 @@ public class CassandraKijiResultScanner<T> implements KijiResultScanner<T> {
  /*
   * ## Implementation Notes
   *
-  * To perform a scan over a Kiji table, Cassandra Kiji creates an entityID scan over all locality
-  * group tables in the scan, and then for each entity Id, creates a separate KijiResult. Creating
-  * each Kiji result requires more requests to create the paged and non-paged columns.
+  * Scans which opt in with CassandraKijiScannerOptions.withSinglePass, and which do not page any
+  * column, are performed in a single pass: Cassandra Kiji scans every cell in the token range of
+  * each locality group table in the request, and assembles the cells of each Kiji row into a
+  * materialized KijiResult. Cassandra returns the cells of a token range ordered by token, and
+  * within a token by entity ID, then column and version, so the cells of a Kiji row are
+  * consecutive in each locality group table. The locality group streams are merged by token and
+  * entity ID so that the cells of a Kiji row spread over several locality groups end up in the
+  * same result. Each stream is fetched one page at a time, and the next page is requested in the
+  * background before the current page is exhausted.
   *
-  * This has the downside of creating multiple separate CQL queries per Kiji row instead of a
-  * finite number of scans which work through the data. This is the simplest way to implement
-  * scanning at this point in time, but it may be possible in the future to use CQL scans.  CQL
-  * scans have many downsides, though; often ALLOW FILTERING clause is needed, and we have
-  * experienced poor performance and timeouts when using it.
+  * CQL can not restrict a token range scan to the requested families without ALLOW FILTERING, so
+  * the single-pass scan reads every cell of the scanned locality groups, and the requested
+  * columns, time range and max versions are applied on the client.
   *
-  * TODO: we could optimize this by using table scans to pull in the materialized rows as part of a
-  * scan instead of issuing separate get requests for each row.  However, it is not clear that this
-  * will be faster given the idiosyncrasies of Cassandra scans.
+  * Other scans, including scans which page a column and so can not be materialized in a single
+  * pass, are performed per row: Cassandra Kiji creates an entityID scan over all locality group
+  * tables in the scan, and then for each entity Id, creates a separate KijiResult. Creating each
+  * Kiji result requires more requests to create the paged and non-paged columns.
   */
 
   /**
-   * Create a {@link KijiResultScanner} over a Cassandra Kiji table with the provided options.
+   * Create a {@link KijiResultScanner} over a Cassandra Kiji table with the provided options,
+   * scanning entity IDs and reading each row separately.
    *
    * @param request The data request defining the columns to scan.
    * @param tokenRange The range of tokens to scan.
@@ -100,7 +124,42 @@ public class CassandraKijiResultScanner<T> implements KijiResultScanner<T> {
       final KijiTableLayout layout,
       final CellDecoderProvider decoderProvider,
       final CassandraColumnNameTranslator translator
+  ) throws IOException {
+    this(
+        request,
+        tokenRange,
+        table,
+        layout,
+        decoderProvider,
+        translator,
+        CQLStatementCache.DEFAULT_SCAN_FETCH_SIZE,
+        false);
+  }
 
+  /**
+   * Create a {@link KijiResultScanner} over a Cassandra Kiji table with the provided options.
+   *
+   * @param request The data request defining the columns to scan.
+   * @param tokenRange The range of tokens to scan.
+   * @param table The table to scan.
+   * @param layout The layout of the table.
+   * @param decoderProvider A cell decoder provider for the table.
+   * @param translator A column name translator for the table.
+   * @param fetchSize The number of cells to fetch per page from each locality group table, if the
+   *     scan is performed in a single pass.
+   * @param singlePass Whether to scan the cells of the token range in a single pass, if the
+   *     request does not page any column.
+   * @throws IOException On unrecoverable IO error.
+   */
+  public CassandraKijiResultScanner(
+      final KijiDataRequest request,
+      final Range<Long> tokenRange,
+      final CassandraKijiTable table,
+      final KijiTableLayout layout,
+      final CellDecoderProvider decoderProvider,
+      final CassandraColumnNameTranslator translator,
+      final int fetchSize,
+      final boolean singlePass
   ) throws IOException {
 
     final Set<ColumnId> localityGroups = Sets.newHashSet();
@@ -119,6 +178,19 @@ public class CassandraKijiResultScanner<T> implements KijiResultScanner<T> {
       tableNames.add(tableName);
     }
 
+    if (singlePass && !request.isPagingEnabled()) {
+      mIterator = getResults(
+          request,
+          tableNames,
+          tokenRange,
+          table,
+          layout,
+          decoderProvider,
+          translator,
+          fetchSize);
+      return;
+    }
+
     mIterator = Iterators.transform(
         getEntityIDs(tableNames, tokenRange, table, layout),
         new Function<EntityId, KijiResult<T>>() {
@@ -140,6 +212,82 @@ public class CassandraKijiResultScanner<T> implements KijiResultScanner<T> {
         });
   }
 
+  /**
+   * Get an iterator of the materialized Kiji results in a token range of a Cassandra Kiji table,
+   * by scanning the cells of the token range in a single pass. The data request must not page any
+   * column.
+   *
+   * @param request The data request defining the columns to scan.
+   * @param tables The Cassandra locality group tables to scan.
+   * @param tokenRange The token range to scan.
+   * @param table The Kiji Cassandra table which the Cassandra tables belong to.
+   * @param layout The layout of the Kiji Cassandra table.
+   * @param decoderProvider A cell decoder provider for the table.
+   * @param translator A column name translator for the table.
+   * @param fetchSize The number of cells to fetch per page from each locality group table.
+   * @param <T> The value type of cells in the results.
+   * @return An iterator of Kiji results.
+   * @throws IOException On unrecoverable IO error.
+   */
+  private static <T> Iterator<KijiResult<T>> getResults(
+      final KijiDataRequest request,
+      final List<CassandraTableName> tables,
+      final Range<Long> tokenRange,
+      final CassandraKijiTable table,
+      final KijiTableLayout layout,
+      final CellDecoderProvider decoderProvider,
+      final CassandraColumnNameTranslator translator,
+      final int fetchSize
+  ) throws IOException {
+    for (final Column columnRequest : request.getColumns()) {
+      if (columnRequest.getFilter() != null) {
+        throw new UnsupportedOperationException(
+            String.format("Cassandra Kiji does not support filters on column requests: %s.",
+                columnRequest));
+      }
+    }
+
+    final CellDecoderProvider requestDecoderProvider =
+        decoderProvider.getDecoderProviderForRequest(request);
+
+    final CQLStatementCache statementCache = table.getStatementCache();
+    final List<ResultSetFuture> localityGroupFutures =
+        Lists.newArrayListWithCapacity(tables.size());
+    for (final CassandraTableName tableName : tables) {
+      // Start all scans before reading any of them.
+      localityGroupFutures.add(
+          table.getAdmin().executeAsync(
+              statementCache.createScanStatement(tableName, tokenRange, fetchSize)));
+    }
+
+    final Function<Row, TokenRowKeyComponents> rowKeyDecoder =
+        RowDecoders.getRowKeyDecoderFunction(layout);
+    final RowKeyFormat2 keyFormat = (RowKeyFormat2) layout.getDesc().getKeysFormat();
+    final int entityIdColumns =
+        keyFormat.getEncoding() == RowKeyEncoding.RAW ? 1 : keyFormat.getComponents().size();
+
+    final List<Iterator<LocalityGroupRow>> localityGroupStreams =
+        Lists.newArrayListWithCapacity(tables.size());
+    for (int i = 0; i < tables.size(); i++) {
+      localityGroupStreams.add(
+          new LocalityGroupRowIterator(
+              tables.get(i),
+              CassandraKijiResult.unwrapFuture(localityGroupFutures.get(i)),
+              rowKeyDecoder,
+              entityIdColumns,
+              fetchSize));
+    }
+
+    return new ResultAssembler<T>(
+        Iterators.peekingIterator(
+            Iterators.mergeSorted(localityGroupStreams, LocalityGroupRowComparator.INSTANCE)),
+        request,
+        table,
+        layout,
+        requestDecoderProvider,
+        translator);
+  }
+
   /**
    * Get an iterator of the entity IDs in a list of Cassandra Kiji tables that correspond to a
    * subset of cassandra tables in a Kiji table.
@@ -253,4 +401,286 @@ public class CassandraKijiResultScanner<T> implements KijiResultScanner<T> {
   public void remove() {
     throw new UnsupportedOperationException();
   }
+
+  /**
+   * The cells of a Kiji row in a single Cassandra locality group table.
+   */
+  private static final class LocalityGroupRow {
+    private final TokenRowKeyComponents mRowKey;
+    private final CassandraTableName mTable;
+    private final List<Row> mCells;
+
+    /**
+     * Create the cells of a Kiji row in a locality group table.
+     *
+     * @param rowKey The token and row key components of the Kiji row.
+     * @param table The Cassandra locality group table containing the cells.
+     * @param cells The Cassandra rows holding the cells, in Cassandra order.
+     */
+    private LocalityGroupRow(
+        final TokenRowKeyComponents rowKey,
+        final CassandraTableName table,
+        final List<Row> cells
+    ) {
+      mRowKey = rowKey;
+      mTable = table;
+      mCells = cells;
+    }
+  }
+
+  /**
+   * Orders {@link LocalityGroupRow}s by token, then by row key components.
+   */
+  private static final class LocalityGroupRowComparator implements Comparator<LocalityGroupRow> {
+    private static final LocalityGroupRowComparator INSTANCE = new LocalityGroupRowComparator();
+
+    /** {@inheritDoc} */
+    @Override
+    public int compare(final LocalityGroupRow a, final LocalityGroupRow b) {
+      return TokenRowKeyComponentsComparator.getInstance().compare(a.mRowKey, b.mRowKey);
+    }
+  }
+
+  /**
+   * Groups the consecutive Cassandra rows of a token range scan of a locality group table which
+   * belong to the same Kiji row.
+   *
+   * <p>
+   *   The Cassandra rows must hold the token in their first column, followed by the entity ID
+   *   columns. Rows of the same Kiji row are recognized by comparing these columns without
+   *   decoding them; the row key components are only decoded once per Kiji row.
+   * </p>
+   */
+  @NotThreadSafe
+  private static final class LocalityGroupRowIterator extends AbstractIterator<LocalityGroupRow> {
+    private final CassandraTableName mTable;
+    private final ResultSet mResultSet;
+    private final PeekingIterator<Row> mRows;
+    private final Function<Row, TokenRowKeyComponents> mRowKeyDecoder;
+    private final int mEntityIdColumns;
+    private final int mPrefetchThreshold;
+
+    /**
+     * Create a new iterator over the Kiji rows of a locality group table scan.
+     *
+     * @param table The scanned Cassandra locality group table.
+     * @param resultSet The result set of the scan.
+     * @param rowKeyDecoder A function to decode the token and row key components of a row.
+     * @param entityIdColumns The number of entity ID columns following the token column.
+     * @param fetchSize The number of Cassandra rows fetched per page.
+     */
+    private LocalityGroupRowIterator(
+        final CassandraTableName table,
+        final ResultSet resultSet,
+        final Function<Row, TokenRowKeyComponents> rowKeyDecoder,
+        final int entityIdColumns,
+        final int fetchSize
+    ) {
+      mTable = table;
+      mResultSet = resultSet;
+      mRows = Iterators.peekingIterator(resultSet.iterator());
+      mRowKeyDecoder = rowKeyDecoder;
+      mEntityIdColumns = entityIdColumns;
+      mPrefetchThreshold = fetchSize / 4;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected LocalityGroupRow computeNext() {
+      if (!mRows.hasNext()) {
+        return endOfData();
+      }
+      final Row first = mRows.next();
+      final List<Row> cells = Lists.newArrayList(first);
+      while (mRows.hasNext() && isSameKijiRow(first, mRows.peek())) {
+        cells.add(mRows.next());
+        prefetch();
+      }
+      prefetch();
+      return new LocalityGroupRow(mRowKeyDecoder.apply(first), mTable, cells);
+    }
+
+    /**
+     * Request the next page of the scan in the background once the current page runs low.
+     */
+    private void prefetch() {
+      if (mResultSet.getAvailableWithoutFetching() <= mPrefetchThreshold
+          && !mResultSet.isFullyFetched()) {
+        mResultSet.fetchMoreResults();
+      }
+    }
+
+    /**
+     * Check whether two Cassandra rows belong to the same Kiji row.
+     *
+     * @param a A Cassandra row.
+     * @param b Another Cassandra row.
+     * @return Whether the rows have the same token and entity ID.
+     */
+    private boolean isSameKijiRow(final Row a, final Row b) {
+      if (a.getLong(0) != b.getLong(0)) {
+        return false;
+      }
+      for (int i = 1; i <= mEntityIdColumns; i++) {
+        final ByteBuffer componentA = a.getBytesUnsafe(i);
+        final ByteBuffer componentB = b.getBytesUnsafe(i);
+        if (componentA == null ? componentB != null : !componentA.equals(componentB)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Assembles the cells of the Kiji rows merged from the locality group table scans into
+   * materialized Kiji results.
+   *
+   * <p>
+   *   Kiji columns are resolved once per run of cells of the same column, since the cells of a
+   *   column are consecutive within a locality group.
+   * </p>
+   *
+   * @param <T> The value type of cells in the results.
+   */
+  @NotThreadSafe
+  private static final class ResultAssembler<T> extends AbstractIterator<KijiResult<T>> {
+    private final PeekingIterator<LocalityGroupRow> mRows;
+    private final KijiDataRequest mDataRequest;
+    private final CassandraKijiTable mTable;
+    private final KijiTableLayout mLayout;
+    private final CellDecoderProvider mDecoderProvider;
+    private final CassandraColumnNameTranslator mTranslator;
+
+    /**
+     * Create a new result assembler.
+     *
+     * @param rows The Kiji rows of the scanned locality group tables, merged in scan order.
+     * @param dataRequest The data request of the scan. Must not page any column.
+     * @param table The scanned Kiji table.
+     * @param layout The layout of the table.
+     * @param decoderProvider A cell decoder provider for the data request.
+     * @param translator A column name translator for the table.
+     */
+    private ResultAssembler(
+        final PeekingIterator<LocalityGroupRow> rows,
+        final KijiDataRequest dataRequest,
+        final CassandraKijiTable table,
+        final KijiTableLayout layout,
+        final CellDecoderProvider decoderProvider,
+        final CassandraColumnNameTranslator translator
+    ) {
+      mRows = rows;
+      mDataRequest = dataRequest;
+      mTable = table;
+      mLayout = layout;
+      mDecoderProvider = decoderProvider;
+      mTranslator = translator;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected KijiResult<T> computeNext() {
+      if (!mRows.hasNext()) {
+        return endOfData();
+      }
+
+      final SortedMap<KijiColumnName, List<KijiCell<T>>> columns = Maps.newTreeMap();
+      for (final Column columnRequest : mDataRequest.getColumns()) {
+        columns.put(columnRequest.getColumnName(), Lists.<KijiCell<T>>newArrayList());
+      }
+
+      final LocalityGroupRow first = mRows.next();
+      addCells(first, columns);
+      while (mRows.hasNext() && mRows.peek().mRowKey.equals(first.mRowKey)) {
+        addCells(mRows.next(), columns);
+      }
+
+      final EntityId entityId = first.mRowKey.getComponents().getEntityIdForTable(mTable);
+      return MaterializedKijiResult.create(entityId, mDataRequest, mLayout, columns);
+    }
+
+    /**
+     * Decode the requested cells of a Kiji row in a locality group, and add them to the columns of
+     * the result.
+     *
+     * @param row The cells of the Kiji row in a locality group table.
+     * @param columns The columns of the result, keyed by requested column.
+     */
+    private void addCells(
+        final LocalityGroupRow row,
+        final SortedMap<KijiColumnName, List<KijiCell<T>>> columns
+    ) {
+      final long minTimestamp = mDataRequest.getMinTimestamp();
+      final long maxTimestamp = mDataRequest.getMaxTimestamp();
+
+      ByteBuffer lastFamily = null;
+      ByteBuffer lastQualifier = null;
+      KijiColumnName column = null;
+      Column qualifiedRequest = null;
+      Column familyRequest = null;
+      KijiCellDecoder<T> decoder = null;
+      int versions = 0;
+
+      for (final Row cell : row.mCells) {
+        final ByteBuffer family = cell.getBytes(CQLUtils.FAMILY_COL);
+        final ByteBuffer qualifier = cell.getBytes(CQLUtils.QUALIFIER_COL);
+
+        if (!family.equals(lastFamily) || !qualifier.equals(lastQualifier)) {
+          lastFamily = family;
+          lastQualifier = qualifier;
+          versions = 0;
+          try {
+            column = mTranslator.toKijiColumnName(
+                row.mTable,
+                new CassandraColumnName(family.duplicate(), qualifier.duplicate()));
+            qualifiedRequest = mDataRequest.getColumn(column);
+            familyRequest = mDataRequest.getColumn(column.getFamily(), null);
+            decoder = (qualifiedRequest == null && familyRequest == null)
+                ? null
+                : mDecoderProvider.<T>getDecoder(column);
+          } catch (NoSuchColumnException e) {
+            // This can happen when a column is dropped from a group-type family layout.
+            column = null;
+            decoder = null;
+          }
+        }
+
+        if (decoder == null) {
+          continue;
+        }
+
+        final long version = cell.getLong(CQLUtils.VERSION_COL);
+        if (version < minTimestamp || version >= maxTimestamp) {
+          continue;
+        }
+
+        versions += 1;
+        final boolean addToColumn =
+            qualifiedRequest != null && versions <= qualifiedRequest.getMaxVersions();
+        final boolean addToFamily =
+            familyRequest != null && versions <= familyRequest.getMaxVersions();
+        if (!addToColumn && !addToFamily) {
+          continue;
+        }
+
+        final KijiCell<T> kijiCell;
+        try {
+          kijiCell = KijiCell.create(
+              column,
+              version,
+              decoder.decodeCell(ByteUtils.toBytes(cell.getBytes(CQLUtils.VALUE_COL))));
+        } catch (IOException e) {
+          throw new KijiIOException(e);
+        }
+
+        if (addToColumn) {
+          columns.get(qualifiedRequest.getColumnName()).add(kijiCell);
+        }
+        if (addToFamily) {
+          columns.get(familyRequest.getColumnName()).add(kijiCell);
+        }
+      }
+    }
+  }
 }
@@ -31,6 +31,12 @@ public final class CassandraKijiScannerOptions {
   /** Token value, inclusive, for partition key at end of scan (null if no stop token). */
   private final Long mStopToken;
 
+  /** Number of cells fetched per page by the scan. */
+  private final int mFetchSize;
+
+  /** Whether the scan reads the cells of the token range in a single pass. */
+  private final boolean mSinglePass;
+
   /**
    * @return the starting token (inclusive) for this scan.
    */
@@ -61,6 +67,54 @@ public final class CassandraKijiScannerOptions {
     return mStopToken != null;
   }
 
+  /**
+   * @return the number of cells fetched from Cassandra per page by this scan.
+   */
+  public int getFetchSize() {
+    return mFetchSize;
+  }
+
+  /**
+   * @return whether this scan reads the cells of its token range in a single pass.
+   */
+  public boolean isSinglePass() {
+    return mSinglePass;
+  }
+
+  /**
+   * Creates a copy of these options which fetches the specified number of cells per page.
+   *
+   * <p>
+   *   Larger pages mean fewer round trips to Cassandra over the course of the scan, at the cost of
+   *   holding more cells in memory at once. Only single-pass scans are fetched in pages of cells.
+   * </p>
+   *
+   * @param fetchSize The number of cells to fetch per page.
+   * @return A new CassandraKijiScannerOptions object.
+   */
+  public CassandraKijiScannerOptions withFetchSize(int fetchSize) {
+    Preconditions.checkArgument(fetchSize > 0, "Fetch size must be positive: %s.", fetchSize);
+    return new CassandraKijiScannerOptions(mStartToken, mStopToken, fetchSize, mSinglePass);
+  }
+
+  /**
+   * Creates a copy of these options which scans in a single pass, or not.
+   *
+   * <p>
+   *   A single-pass scan reads every cell in the token range of the scanned locality groups and
+   *   assembles the Kiji rows on the client, instead of scanning entity IDs and reading each row
+   *   with separate requests. It issues far fewer requests, but reads the cells of unrequested
+   *   columns of the scanned locality groups, and filters them on the client. Scans of requests
+   *   which page a column are never performed in a single pass. Disabled by default.
+   * </p>
+   *
+   * @param singlePass Whether to scan in a single pass.
+   * @return A new CassandraKijiScannerOptions object.
+   */
+  public CassandraKijiScannerOptions withSinglePass(boolean singlePass) {
+    return new CassandraKijiScannerOptions(mStartToken, mStopToken, mFetchSize, singlePass);
+  }
+
   /**
    * Creates a new CassandraKijiScannerOptions object with a start and stop token.
    *
@@ -69,7 +123,8 @@ public final class CassandraKijiScannerOptions {
    * @return A new CassandraKijiScannerOptions object.
    */
   public static CassandraKijiScannerOptions withTokens(long startToken, long stopToken) {
-    return new CassandraKijiScannerOptions(startToken, stopToken);
+    return new CassandraKijiScannerOptions(
+        startToken, stopToken, CQLStatementCache.DEFAULT_SCAN_FETCH_SIZE, false);
   }
 
   /**
@@ -79,7 +134,8 @@ public final class CassandraKijiScannerOptions {
    * @return A new CassandraKijiScannerOptions object.
    */
   public static CassandraKijiScannerOptions withStartToken(long startToken) {
-    return new CassandraKijiScannerOptions(startToken, null);
+    return new CassandraKijiScannerOptions(
+        startToken, null, CQLStatementCache.DEFAULT_SCAN_FETCH_SIZE, false);
   }
 
   /**
@@ -89,7 +145,8 @@ public final class CassandraKijiScannerOptions {
    * @return A new CassandraKijiScannerOptions object.
    */
   public static CassandraKijiScannerOptions withStopToken(long stopToken) {
-    return new CassandraKijiScannerOptions(null, stopToken);
+    return new CassandraKijiScannerOptions(
+        null, stopToken, CQLStatementCache.DEFAULT_SCAN_FETCH_SIZE, false);
   }
 
   /**
@@ -98,7 +155,8 @@ public final class CassandraKijiScannerOptions {
    * @return A new CassandraKijiScannerOptions object.
    */
   public static CassandraKijiScannerOptions withoutBounds() {
-    return new CassandraKijiScannerOptions(null, null);
+    return new CassandraKijiScannerOptions(
+        null, null, CQLStatementCache.DEFAULT_SCAN_FETCH_SIZE, false);
   }
 
   /**
@@ -106,9 +164,18 @@ public final class CassandraKijiScannerOptions {
    *
    * @param startToken Start token (inclusive) or null.
    * @param stopToken Stop token (inclusive) or null.
+   * @param fetchSize Number of cells fetched per page.
+   * @param singlePass Whether the scan reads the cells of the token range in a single pass.
    */
-  private CassandraKijiScannerOptions(Long startToken, Long stopToken) {
+  private CassandraKijiScannerOptions(
+      Long startToken,
+      Long stopToken,
+      int fetchSize,
+      boolean singlePass
+  ) {
     this.mStartToken = startToken;
     this.mStopToken = stopToken;
+    this.mFetchSize = fetchSize;
+    this.mSinglePass = singlePass;
   }
 }
@@ -540,7 +540,9 @@ public final class CassandraKijiTableReader implements KijiTableReader {
         mTable,
         layout,
         capsule.getCellDecoderProvider(),
-        capsule.getColumnNameTranslator());
+        capsule.getColumnNameTranslator(),
+        options.getFetchSize(),
+        options.isSinglePass());
   }
 
   /** {@inheritDoc} */
@@ -497,9 +497,9 @@ public final class RowDecoders {
         final TokenRowKeyComponents a,
         final TokenRowKeyComponents b
     ) {
-      final long tokenCompare = a.getToken() - b.getToken();
-      if (tokenCompare != 0) {
-        return (int) tokenCompare;
+      // Tokens span the whole range of longs, so their difference may overflow.
+      if (a.getToken() != b.getToken()) {
+        return a.getToken() < b.getToken() ? -1 : 1;
       } else {
         return a.getComponents().compareTo(b.getComponents());
       }
@@ -526,7 +526,7 @@ public final class RowDecoders {
     /** {@inheritDoc} */
     @Override
     public TokenRowKeyComponents apply(final Row row) {
-      final int token = row.getInt(mTokenColumn);
+      final long token = row.getLong(mTokenColumn);
       final Object[] components =
           new Object[] { ByteUtils.toBytes(row.getBytes(CQLUtils.RAW_KEY_COL)) };
       return new TokenRowKeyComponents(token, KijiRowKeyComponents.fromComponents(components));
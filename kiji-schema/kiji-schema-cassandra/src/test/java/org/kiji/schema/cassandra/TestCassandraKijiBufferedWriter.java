@@ -28,6 +28,7 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.hadoop.hbase.HConstants;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -201,12 +202,8 @@ public class TestCassandraKijiBufferedWriter {
   public void testSetBufferSize() throws Exception {
     final KijiDataRequest request = KijiDataRequest.create("info", "name");
 
-    // TODO: Remove duplicate puts from test when buffered writer calculates buffer size correctly.
-    // (Right now the buffer size is measured in C* Statements, not bytes.)
-
     // Add a put to the buffer.
     mBufferedWriter.put(mEntityId, "info", "name", 123L, "old");
-    mBufferedWriter.put(mEntityId, "info", "name", 123L, "old");
     assertFalse(mReader.get(mEntityId, request).containsCell("info", "name", 123L));
 
     // Shrink the buffer, pushing the buffered put.
@@ -214,14 +211,69 @@ public class TestCassandraKijiBufferedWriter {
     final String actual = mReader.get(mEntityId, request).getValue("info", "name", 123L).toString();
     assertEquals("old", actual);
 
-    // Add a put which should commit immediately.
-    mBufferedWriter.put(mEntityId, "info", "name", 234L, "new");
+    // Add a put which should be sent immediately, without waiting for an explicit flush.
     mBufferedWriter.put(mEntityId, "info", "name", 234L, "new");
+    final long deadline = System.currentTimeMillis() + 10000L;
+    while (!mReader.get(mEntityId, request).containsCell("info", "name", 234L)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
     final String actual2 =
         mReader.get(mEntityId, request).getValue("info", "name", 234L).toString();
     assertEquals("new", actual2);
   }
 
+  @Test
+  public void testBatchWritesToSameRow() throws Exception {
+    final KijiDataRequest request = KijiDataRequest.builder()
+        .addColumns(
+            ColumnsDef.create().withMaxVersions(HConstants.ALL_VERSIONS).add("info", "name"))
+        .build();
+
+    // Enough writes to the row to span several batches.
+    final int versions = 2000;
+    for (long version = 1; version <= versions; version++) {
+      mBufferedWriter.put(mEntityId, "info", "name", version, "Value at timestamp " + version);
+    }
+    mBufferedWriter.flush();
+
+    final KijiRowData rowData = mReader.get(mEntityId, request);
+    assertEquals(versions, rowData.getValues("info", "name").size());
+    assertEquals("Value at timestamp 7", rowData.getValue("info", "name", 7L).toString());
+  }
+
+  @Test
+  public void testBufferedWritesApplyInOrder() throws Exception {
+    final KijiDataRequest request = KijiDataRequest.create("info", "name");
+
+    // Write initial value.
+    mWriter.put(mEntityId, "info", "name", 123L, "old");
+
+    // Buffer a delete followed by writes to the same cell, which must not be shadowed.
+    mBufferedWriter.deleteColumn(mEntityId, "info", "name");
+    mBufferedWriter.put(mEntityId, "info", "name", 123L, "zzz");
+    mBufferedWriter.put(mEntityId, "info", "name", 123L, "new");
+    mBufferedWriter.flush();
+
+    assertEquals("new", mReader.get(mEntityId, request).getValue("info", "name", 123L).toString());
+  }
+
+  @Test
+  public void testWritesApplyInOrderAcrossFlushes() throws Exception {
+    final KijiDataRequest request = KijiDataRequest.create("info", "name");
+
+    // Send each write as soon as it is buffered, while the previous writes may be in flight.
+    mBufferedWriter.setBufferSize(0L);
+    for (int i = 0; i < 50; i++) {
+      mBufferedWriter.put(mEntityId, "info", "name", 123L, "value-" + i);
+      mBufferedWriter.deleteColumn(mEntityId, "info", "name");
+    }
+    mBufferedWriter.put(mEntityId, "info", "name", 123L, "last");
+    mBufferedWriter.flush();
+
+    assertEquals("last", mReader.get(mEntityId, request).getValue("info", "name", 123L).toString());
+  }
+
   @Test
   public void testBufferPutWithDelete() throws Exception {
     final EntityId oldEntityId = mTable.getEntityId("foo");
@@ -36,10 +36,13 @@ import org.slf4j.LoggerFactory;
 
 import org.kiji.schema.Kiji;
 import org.kiji.schema.KijiBufferedWriter;
+import org.kiji.schema.KijiCell;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiDataRequestBuilder;
 import org.kiji.schema.KijiPartition;
 import org.kiji.schema.KijiResult;
+import org.kiji.schema.KijiResultScanner;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.cassandra.CassandraKijiClientTest;
@@ -106,4 +109,77 @@ public class TestCassandraKijiResultScanner extends CassandraKijiClientTest {
       Assert.assertEquals(Long.valueOf(i), result.getEntityId().<Long>getComponentByIndex(0));
     }
   }
+
+  /**
+   * Test that per-row scans, and single-pass scans with small pages, apply max versions and the
+   * time range to qualified columns and map-type families.
+   */
+  @Test
+  public void testScanVersionsAcrossPages() throws IOException {
+    final int n = 20;
+    final KijiColumnName column = KijiColumnName.create("primitive", "string_column");
+    final KijiColumnName family = KijiColumnName.create("string_map", null);
+
+    final Kiji kiji = getKiji();
+    kiji.createTable(
+        KijiTableLayouts.getLayout("org/kiji/schema/layout/all-types-no-counters-schema.json"));
+
+    final KijiTable table = kiji.openTable("all_types_table");
+    try {
+      try (KijiBufferedWriter writer = table.getWriterFactory().openBufferedWriter()) {
+        for (long i = 0; i < n; i++) {
+          for (long version = 1; version <= 4; version++) {
+            writer.put(table.getEntityId(i), column.getFamily(), column.getQualifier(), version,
+                "string-" + version);
+            writer.put(table.getEntityId(i), family.getFamily(), "a", version, "a-" + version);
+            writer.put(table.getEntityId(i), family.getFamily(), "b", version, "b-" + version);
+          }
+        }
+      }
+
+      final KijiDataRequestBuilder builder = KijiDataRequest.builder().withTimeRange(1, 4);
+      builder.newColumnsDef().withMaxVersions(2).add(column);
+      builder.newColumnsDef().withMaxVersions(1).add(family);
+      final KijiDataRequest dataRequest = builder.build();
+
+      // The single-pass and per-row scans must return the same results.
+      for (boolean singlePass : new boolean[] {false, true}) {
+        final CassandraKijiTableReader reader = (CassandraKijiTableReader) table.openTableReader();
+        try {
+          final KijiResultScanner<Utf8> scanner = reader.getKijiResultScanner(
+              dataRequest, CassandraKijiScannerOptions.withoutBounds()
+                  .withSinglePass(singlePass)
+                  .withFetchSize(5));
+          int rows = 0;
+          try {
+            while (scanner.hasNext()) {
+              final KijiResult<Utf8> result = scanner.next();
+              rows += 1;
+
+              final List<KijiCell<Utf8>> columnCells =
+                  ImmutableList.copyOf(result.<Utf8>narrowView(column));
+              Assert.assertEquals(2, columnCells.size());
+              Assert.assertEquals(3L, columnCells.get(0).getTimestamp());
+              Assert.assertEquals(2L, columnCells.get(1).getTimestamp());
+
+              final List<KijiCell<Utf8>> familyCells =
+                  ImmutableList.copyOf(result.<Utf8>narrowView(family));
+              Assert.assertEquals(2, familyCells.size());
+              Assert.assertEquals("a", familyCells.get(0).getColumn().getQualifier());
+              Assert.assertEquals("a-3", familyCells.get(0).getData().toString());
+              Assert.assertEquals("b", familyCells.get(1).getColumn().getQualifier());
+              Assert.assertEquals("b-3", familyCells.get(1).getData().toString());
+            }
+          } finally {
+            scanner.close();
+          }
+          Assert.assertEquals(n, rows);
+        } finally {
+          reader.close();
+        }
+      }
+    } finally {
+      table.release();
+    }
+  }
 }
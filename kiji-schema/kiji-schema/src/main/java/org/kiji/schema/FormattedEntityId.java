@@ -19,11 +19,7 @@
 
 package org.kiji.schema;
 
-import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -43,7 +39,6 @@ import org.kiji.schema.avro.ComponentType;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.util.ByteArrayFormatter;
-import org.kiji.schema.util.Hasher;
 
 /**
  * Implements the Formatted Entity Id row key. This allows users to specify keys composed
@@ -119,14 +114,23 @@ import org.kiji.schema.util.Hasher;
 public final class FormattedEntityId extends EntityId {
   // HBase row key bytes. The encoded components of the row key
   // potentially including a hash prefix, as specified in the row key format.
-  private byte[] mHBaseRowKey;
+  private final byte[] mHBaseRowKey;
 
-  private List<Object> mComponentValues;
+  // Number of non-null components encoded in the HBase row key.
+  private final int mEncodedComponentCount;
 
-  private RowKeyFormat2 mRowKeyFormat;
+  // Row key components. Decoded from the HBase row key on first use when this entity ID was
+  // created from an HBase row key, and null if key materialization is suppressed.
+  private volatile List<Object> mComponentValues;
+
+  private final RowKeyFormat2 mRowKeyFormat;
 
   private static final Logger LOG = LoggerFactory.getLogger(FormattedEntityId.class);
 
+  /** Per-thread encoder of the most recently used row key format. */
+  private static final ThreadLocal<FormattedRowKeyEncoder> ENCODER =
+      new ThreadLocal<FormattedRowKeyEncoder>();
+
   /**
    * Convert class of object to the correct ComponentType.
    * @param obj Input object (key component).
@@ -220,12 +224,20 @@ public final class FormattedEntityId extends EntityId {
 
     hbaseRowKey = makeHbaseRowKey(format, kijiRowKey);
 
-    return new FormattedEntityId(format, hbaseRowKey, kijiRowKey);
+    int encodedComponentCount = 0;
+    while (encodedComponentCount < kijiRowKey.size()
+        && null != kijiRowKey.get(encodedComponentCount)) {
+      encodedComponentCount++;
+    }
+    return new FormattedEntityId(format, hbaseRowKey, encodedComponentCount, kijiRowKey);
   }
 
   /**
    * Creates a FormattedEntityId from the specified HBase row key.
    *
+   * <p>The structure of the row key is validated, but components are only decoded when they are
+   * first requested.</p>
+   *
    * @param hbaseRowKey A byte[] containing the HBase row key.
    * @param format The RowKeyFormat as specified in the layout file.
    * @return a new FormattedEntityId with the specified HBase row key.
@@ -234,11 +246,8 @@ public final class FormattedEntityId extends EntityId {
     Preconditions.checkNotNull(format);
     Preconditions.checkNotNull(format.getSalt());
     Preconditions.checkNotNull(hbaseRowKey);
-    // we modify the hbaseRowKey in the makeKijiRowKey code for integer encoding, so we make
-    // a copy of it to pass to makeKijiRowKey:
-    byte[] cloneHbaseKey = hbaseRowKey.clone();
-    List<Object> kijiRowKey = makeKijiRowKey(format, cloneHbaseKey);
-    return new FormattedEntityId(format, hbaseRowKey, kijiRowKey);
+    final int encodedComponentCount = countEncodedComponents(format, hbaseRowKey);
+    return new FormattedEntityId(format, hbaseRowKey, encodedComponentCount, null);
   }
 
   /**
@@ -265,73 +274,14 @@ public final class FormattedEntityId extends EntityId {
    * @return A byte array representing the encoded Hbase row key.
    */
   private static byte[] makeHbaseRowKey(RowKeyFormat2 format, List<Object> kijiRowKey) {
-
-    ArrayList<byte[]> hbaseKey = new ArrayList<byte[]>();
-    final byte zeroDelim = 0;
-
-    int pos;
-    for (pos = 0; pos < kijiRowKey.size(); pos++) {
-      // we have already done the validation check for null cascades.
-      if (null == kijiRowKey.get(pos)) {
-        continue;
-      }
-      byte[] tempBytes;
-      switch (getType(kijiRowKey.get(pos))) {
-        case STRING:
-          if (((String)kijiRowKey.get(pos)).contains("\u0000")) {
-            throw new EntityIdException("String component cannot contain \u0000");
-          }
-          try {
-            hbaseKey.add(((String) kijiRowKey.get(pos)).getBytes("UTF-8"));
-          } catch (UnsupportedEncodingException e) {
-            LOG.error(e.toString());
-            throw new EntityIdException(String.format(
-                "UnsupportedEncoding for component %d", pos));
-          }
-          break;
-        case INTEGER:
-          int temp = (Integer) kijiRowKey.get(pos);
-          tempBytes = ByteBuffer.allocate(Integer.SIZE / Byte.SIZE)
-              .putInt(temp).array();
-          tempBytes[0] = (byte)((int) tempBytes[0] ^ (int)Byte.MIN_VALUE);
-          hbaseKey.add(tempBytes);
-          break;
-        case LONG:
-          long templong = (Long) kijiRowKey.get(pos);
-          tempBytes = ByteBuffer.allocate(Long.SIZE / Byte.SIZE).putLong(templong).array();
-          tempBytes[0] = (byte)((int) tempBytes[0] ^ (int)Byte.MIN_VALUE);
-          hbaseKey.add(tempBytes);
-          break;
-        default:
-          throw new RuntimeException("Invalid code path");
-      }
-    }
-
-    // hash stuff
-    int hashUpto = format.getRangeScanStartIndex() - 1;
-    ByteArrayOutputStream tohash = new ByteArrayOutputStream();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    for (pos = 0; pos <= hashUpto && pos < hbaseKey.size(); pos++) {
-      tohash.write(hbaseKey.get(pos), 0, hbaseKey.get(pos).length);
-    }
-    byte[] hashed = Arrays.copyOfRange(Hasher.hash(tohash.toByteArray()), 0,
-        format.getSalt().getHashSize());
-    baos.write(hashed, 0, hashed.length);
-
-    // to materialize or not to materialize that is the question
-    if (format.getSalt().getSuppressKeyMaterialization()) {
-      return baos.toByteArray();
-    } else {
-      for (pos = 0; pos < hbaseKey.size(); pos++) {
-        baos.write(hbaseKey.get(pos), 0, hbaseKey.get(pos).length);
-        if (format.getComponents().get(pos).getType() == ComponentType.STRING
-            || format.getComponents().get(pos) == null) {
-          // empty strings will be encoded as null, hence we need to delimit them too
-          baos.write(zeroDelim);
-        }
-      }
-      return baos.toByteArray();
+    FormattedRowKeyEncoder encoder = ENCODER.get();
+    if (null == encoder || encoder.getFormat() != format) {
+      // Reuse the encoder and its buffers for as long as keys of the same format are built.
+      encoder = new FormattedRowKeyEncoder(format);
+      ENCODER.set(encoder);
     }
+    encoder.encodeValidated(kijiRowKey);
+    return encoder.toByteArray();
   }
 
   @Override
@@ -340,75 +290,31 @@ public final class FormattedEntityId extends EntityId {
   }
 
   /**
-   * Decode a byte array containing an hbase row key into an ordered list corresponding to
-   * the key format in the layout file.
+   * Validates the structure of an hbase row key against the key format in the layout file,
+   * without decoding its components.
    *
    * @param format The row key format as specified in the layout file.
    * @param hbaseRowKey A byte array containing the hbase row key.
-   * @return An ordered list of component values in the key.
+   * @return the number of non-null components encoded in the key.
    */
-  private static List<Object> makeKijiRowKey(RowKeyFormat2 format, byte[] hbaseRowKey) {
+  private static int countEncodedComponents(RowKeyFormat2 format, byte[] hbaseRowKey) {
     if (hbaseRowKey.length == 0) {
       throw new EntityIdException("Invalid hbase row key");
     }
-    List<Object> kijiRowKey = new ArrayList<Object>();
     // skip over the hash
     int pos = format.getSalt().getHashSize();
     // we are suppressing materialization, so the components cannot be retrieved.
-    int kijiRowElem = 0;
     if (format.getSalt().getSuppressKeyMaterialization()) {
       if (pos < hbaseRowKey.length) {
         throw new EntityIdException("Extra bytes in key after hash when materialization is"
             + "suppressed");
       }
-      return null;
+      return 0;
     }
-    ByteBuffer buf;
 
+    int kijiRowElem = 0;
     while (kijiRowElem < format.getComponents().size() && pos < hbaseRowKey.length) {
-      switch (format.getComponents().get(kijiRowElem).getType()) {
-        case STRING:
-          // Read the row key until we encounter a Null (0) byte or end.
-          int endpos = pos;
-          while (endpos < hbaseRowKey.length && (hbaseRowKey[endpos] != (byte) 0)) {
-            endpos += 1;
-          }
-          String str = null;
-          try {
-            str = new String(hbaseRowKey, pos, endpos - pos, "UTF-8");
-          } catch (UnsupportedEncodingException e) {
-            LOG.error(e.toString());
-            throw new EntityIdException(String.format(
-                "UnsupportedEncoding for component %d", kijiRowElem));
-          }
-          kijiRowKey.add(str);
-          pos = endpos + 1;
-          break;
-        case INTEGER:
-          // Toggle highest order bit to return to original 2's complement.
-          hbaseRowKey[pos] =  (byte)((int) hbaseRowKey[pos] ^ (int) Byte.MIN_VALUE);
-          try {
-            buf = ByteBuffer.wrap(hbaseRowKey, pos, Integer.SIZE / Byte.SIZE);
-          } catch (IndexOutOfBoundsException e) {
-            throw new EntityIdException("Malformed hbase Row Key");
-          }
-          kijiRowKey.add(Integer.valueOf(buf.getInt()));
-          pos = pos + Integer.SIZE / Byte.SIZE;
-          break;
-        case LONG:
-          // Toggle highest order bit to return to original 2's complement.
-          hbaseRowKey[pos] =  (byte)((int) hbaseRowKey[pos] ^ (int) Byte.MIN_VALUE);
-          try {
-            buf = ByteBuffer.wrap(hbaseRowKey, pos, Long.SIZE / Byte.SIZE);
-          } catch (IndexOutOfBoundsException e) {
-            throw new EntityIdException("Malformed hbase Row Key");
-          }
-          kijiRowKey.add(Long.valueOf(buf.getLong()));
-          pos = pos + Long.SIZE / Byte.SIZE;
-          break;
-        default:
-          throw new RuntimeException("Invalid code path");
-      }
+      pos = skipComponent(format.getComponents().get(kijiRowElem).getType(), hbaseRowKey, pos);
       kijiRowElem += 1;
     }
 
@@ -424,26 +330,169 @@ public final class FormattedEntityId extends EntityId {
           + "number " + kijiRowElem + " cannot be null");
     }
 
-    // finish up with nulls for everything that wasn't in the key
-    for (; kijiRowElem < format.getComponents().size(); kijiRowElem++) {
-      kijiRowKey.add(null);
+    return kijiRowElem;
+  }
+
+  /**
+   * Finds the end of an encoded component in an hbase row key.
+   *
+   * @param type The type of the component.
+   * @param hbaseRowKey A byte array containing the hbase row key.
+   * @param pos The offset of the component in the key.
+   * @return the offset following the component, including its terminator if it is a string.
+   */
+  private static int skipComponent(ComponentType type, byte[] hbaseRowKey, int pos) {
+    switch (type) {
+      case STRING:
+        // Skip over the terminating Null (0) byte, if any.
+        return findStringEnd(hbaseRowKey, pos) + 1;
+      case INTEGER:
+        if (pos + Integer.SIZE / Byte.SIZE > hbaseRowKey.length) {
+          throw new EntityIdException("Malformed hbase Row Key");
+        }
+        return pos + Integer.SIZE / Byte.SIZE;
+      case LONG:
+        if (pos + Long.SIZE / Byte.SIZE > hbaseRowKey.length) {
+          throw new EntityIdException("Malformed hbase Row Key");
+        }
+        return pos + Long.SIZE / Byte.SIZE;
+      default:
+        throw new RuntimeException("Invalid code path");
+    }
+  }
+
+  /**
+   * Finds the end of an encoded string component: its Null (0) terminator or the end of the key.
+   *
+   * @param hbaseRowKey A byte array containing the hbase row key.
+   * @param pos The offset of the string in the key.
+   * @return the offset of the end of the string.
+   */
+  private static int findStringEnd(byte[] hbaseRowKey, int pos) {
+    int endpos = pos;
+    while (endpos < hbaseRowKey.length && (hbaseRowKey[endpos] != (byte) 0)) {
+      endpos += 1;
+    }
+    return endpos;
+  }
+
+  /**
+   * Finds the offset of an encoded component in the hbase row key.
+   *
+   * @param idx The index of a non-null component.
+   * @return the offset of the component in the hbase row key.
+   */
+  private int getComponentOffset(int idx) {
+    int pos = mRowKeyFormat.getSalt().getHashSize();
+    for (int i = 0; i < idx; i++) {
+      pos = skipComponent(mRowKeyFormat.getComponents().get(i).getType(), mHBaseRowKey, pos);
+    }
+    return pos;
+  }
+
+  /**
+   * Decodes a component from the hbase row key.
+   *
+   * @param idx The index of the component.
+   * @return the value of the component, or null.
+   */
+  private Object decodeComponent(int idx) {
+    if (idx >= mEncodedComponentCount) {
+      return null;
+    }
+    final int pos = getComponentOffset(idx);
+    switch (mRowKeyFormat.getComponents().get(idx).getType()) {
+      case STRING:
+        return Bytes.toString(mHBaseRowKey, pos, findStringEnd(mHBaseRowKey, pos) - pos);
+      case INTEGER:
+        return decodeInt(pos);
+      case LONG:
+        return decodeLong(pos);
+      default:
+        throw new RuntimeException("Invalid code path");
     }
+  }
+
+  /**
+   * Decodes an integer component from the hbase row key.
+   *
+   * @param pos The offset of the component in the hbase row key.
+   * @return the value of the component.
+   */
+  private int decodeInt(int pos) {
+    // Toggle highest order bit to return to original 2's complement.
+    return Bytes.toInt(mHBaseRowKey, pos) ^ Integer.MIN_VALUE;
+  }
+
+  /**
+   * Decodes a long component from the hbase row key.
+   *
+   * @param pos The offset of the component in the hbase row key.
+   * @return the value of the component.
+   */
+  private long decodeLong(int pos) {
+    // Toggle highest order bit to return to original 2's complement.
+    return Bytes.toLong(mHBaseRowKey, pos) ^ Long.MIN_VALUE;
+  }
 
-    return kijiRowKey;
+  /**
+   * Returns the row key components, decoding them from the hbase row key on first use.
+   *
+   * @return An ordered list of component values in the key.
+   */
+  private List<Object> getComponentValues() {
+    List<Object> componentValues = mComponentValues;
+    if (null == componentValues) {
+      final int size = mRowKeyFormat.getComponents().size();
+      componentValues = new ArrayList<Object>(size);
+      int pos = mRowKeyFormat.getSalt().getHashSize();
+      for (int idx = 0; idx < size; idx++) {
+        if (idx >= mEncodedComponentCount) {
+          // finish up with nulls for everything that wasn't in the key
+          componentValues.add(null);
+          continue;
+        }
+        final ComponentType type = mRowKeyFormat.getComponents().get(idx).getType();
+        switch (type) {
+          case STRING:
+            componentValues.add(
+                Bytes.toString(mHBaseRowKey, pos, findStringEnd(mHBaseRowKey, pos) - pos));
+            break;
+          case INTEGER:
+            componentValues.add(decodeInt(pos));
+            break;
+          case LONG:
+            componentValues.add(decodeLong(pos));
+            break;
+          default:
+            throw new RuntimeException("Invalid code path");
+        }
+        pos = skipComponent(type, mHBaseRowKey, pos);
+      }
+      mComponentValues = componentValues;
+    }
+    return componentValues;
   }
 
   /**
    * Creates a new FormattedEntityId.
    * @param format Format of the row key as specified in the layout file.
    * @param hbaseRowKey Byte array containing the hbase row key.
-   * @param kijiRowKey An ordered list of row key components.
+   * @param encodedComponentCount Number of non-null components encoded in the hbase row key.
+   * @param kijiRowKey An ordered list of row key components, or null to decode them from the
+   *     hbase row key when first requested.
    */
-  private FormattedEntityId(RowKeyFormat2 format, byte[] hbaseRowKey, List<Object> kijiRowKey) {
+  private FormattedEntityId(
+      RowKeyFormat2 format,
+      byte[] hbaseRowKey,
+      int encodedComponentCount,
+      List<Object> kijiRowKey) {
     mRowKeyFormat = Preconditions.checkNotNull(format);
     Preconditions.checkArgument(format.getEncoding() == RowKeyEncoding.FORMATTED);
     Preconditions.checkNotNull(format.getSalt(),
         "Formatted entityIds may not specify a null 'salt' field in RowKeyFormat2.");
     mHBaseRowKey = hbaseRowKey;
+    mEncodedComponentCount = encodedComponentCount;
     if (format.getSalt().getSuppressKeyMaterialization()) {
       mComponentValues = null;
     } else {
@@ -457,8 +506,60 @@ public final class FormattedEntityId extends EntityId {
   public <T> T getComponentByIndex(int idx) {
     Preconditions.checkState(!mRowKeyFormat.getSalt().getSuppressKeyMaterialization(),
         "Cannot retrieve components as materialization is suppressed");
-    Preconditions.checkArgument(idx >= 0 && idx < mComponentValues.size());
-    return (T) mComponentValues.get(idx);
+    final List<Object> componentValues = mComponentValues;
+    if (null != componentValues) {
+      Preconditions.checkArgument(idx >= 0 && idx < componentValues.size());
+      return (T) componentValues.get(idx);
+    }
+    Preconditions.checkArgument(idx >= 0 && idx < mRowKeyFormat.getComponents().size());
+    // Only decode the requested component.
+    return (T) decodeComponent(idx);
+  }
+
+  /**
+   * Returns the value of an INTEGER component, without decoding other components or boxing.
+   *
+   * @param idx The index of an INTEGER component which is not null.
+   * @return the value of the component.
+   */
+  public int getIntComponent(int idx) {
+    checkPrimitiveComponent(idx, ComponentType.INTEGER);
+    final List<Object> componentValues = mComponentValues;
+    if (null != componentValues) {
+      return (Integer) componentValues.get(idx);
+    }
+    return decodeInt(getComponentOffset(idx));
+  }
+
+  /**
+   * Returns the value of a LONG component, without decoding other components or boxing.
+   *
+   * @param idx The index of a LONG component which is not null.
+   * @return the value of the component.
+   */
+  public long getLongComponent(int idx) {
+    checkPrimitiveComponent(idx, ComponentType.LONG);
+    final List<Object> componentValues = mComponentValues;
+    if (null != componentValues) {
+      return (Long) componentValues.get(idx);
+    }
+    return decodeLong(getComponentOffset(idx));
+  }
+
+  /**
+   * Checks that a component can be returned as a primitive of the specified type.
+   *
+   * @param idx The index of the component.
+   * @param type The expected type of the component.
+   */
+  private void checkPrimitiveComponent(int idx, ComponentType type) {
+    Preconditions.checkState(!mRowKeyFormat.getSalt().getSuppressKeyMaterialization(),
+        "Cannot retrieve components as materialization is suppressed");
+    Preconditions.checkArgument(idx >= 0 && idx < mRowKeyFormat.getComponents().size());
+    final ComponentType actualType = mRowKeyFormat.getComponents().get(idx).getType();
+    Preconditions.checkArgument(actualType == type,
+        "Component %s has type %s, not %s.", idx, actualType, type);
+    Preconditions.checkState(idx < mEncodedComponentCount, "Component %s is null.", idx);
   }
 
   /** {@inheritDoc} */
@@ -466,7 +567,7 @@ public final class FormattedEntityId extends EntityId {
   public List<Object> getComponents() {
     Preconditions.checkState(!mRowKeyFormat.getSalt().getSuppressKeyMaterialization(),
         "Cannot retrieve components as materialization is suppressed");
-    return Collections.unmodifiableList(mComponentValues);
+    return Collections.unmodifiableList(getComponentValues());
   }
 
   /** {@inheritDoc} */
@@ -474,7 +575,7 @@ public final class FormattedEntityId extends EntityId {
   public String toString() {
     if (!mRowKeyFormat.getSalt().getSuppressKeyMaterialization()) {
       return Objects.toStringHelper(FormattedEntityId.class)
-          .add("components", Joiner.on(",").join(mComponentValues))
+          .add("components", Joiner.on(",").useForNull("null").join(getComponentValues()))
           .add("hbase", Bytes.toStringBinary(mHBaseRowKey))
           .toString();
     } else {
@@ -495,7 +596,7 @@ public final class FormattedEntityId extends EntityId {
     /** Set of characters which must be escaped */
     HashSet<Character> escapeSet = Sets.newHashSet('"', '\\', '\'');
     ArrayList<String> componentStrings = Lists.newArrayList();
-    for (Object component : mComponentValues) {
+    for (Object component : getComponentValues()) {
       if (component == null) {
         componentStrings.add("null");
       } else {
@@ -0,0 +1,340 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.annotations.ApiStability;
+import org.kiji.schema.avro.ComponentType;
+import org.kiji.schema.avro.HashType;
+import org.kiji.schema.avro.RowKeyEncoding;
+import org.kiji.schema.avro.RowKeyFormat2;
+import org.kiji.schema.util.Hasher;
+
+/**
+ * Encodes the components of formatted row keys into HBase row keys, reusing its buffers across
+ * keys.
+ *
+ * <p>
+ *   The encoding is the one described in {@link FormattedEntityId}. Encoding a row key writes the
+ *   hash prefix and the components directly into a buffer owned by the encoder, without
+ *   allocating intermediate arrays or streams. The encoded row key is valid until the next call
+ *   to {@link #encode(List)}; use {@link #toByteArray()} to keep a copy of it.
+ * </p>
+ *
+ * <p>
+ *   Encoders are cheap to create but are not thread-safe: use one encoder per thread, for
+ *   instance one per bulk importer task.
+ * </p>
+ */
+@ApiAudience.Framework
+@ApiStability.Experimental
+public final class FormattedRowKeyEncoder {
+  /** Initial size of the reusable buffers, in bytes. */
+  private static final int INITIAL_BUFFER_SIZE = 64;
+
+  /** Row key format of the encoded keys. */
+  private final RowKeyFormat2 mFormat;
+
+  /** Types of the row key components. */
+  private final ComponentType[] mTypes;
+
+  /** Hashing algorithm of the row key prefix. */
+  private final HashType mHashType;
+
+  /** Size in bytes of the hash prefix. */
+  private final int mHashSize;
+
+  /** Number of leading components hashed into the prefix. */
+  private final int mRangeScanStartIndex;
+
+  /** Index of the first nullable component. */
+  private final int mNullableStartIndex;
+
+  /** Whether the row key only contains the hash prefix. */
+  private final boolean mSuppressMaterialization;
+
+  /** Encoded HBase row key, in its first mLength bytes. */
+  private byte[] mBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+  /** Length of the encoded HBase row key. */
+  private int mLength = 0;
+
+  /** Concatenation of the encoded hashed components. */
+  private byte[] mHashInput = new byte[INITIAL_BUFFER_SIZE];
+
+  /**
+   * Creates an encoder for row keys of the specified format.
+   *
+   * @param format Row key format, with FORMATTED encoding.
+   */
+  public FormattedRowKeyEncoder(RowKeyFormat2 format) {
+    mFormat = Preconditions.checkNotNull(format);
+    Preconditions.checkArgument(format.getEncoding() == RowKeyEncoding.FORMATTED,
+        "Row key format must use FORMATTED encoding, got %s.", format.getEncoding());
+    Preconditions.checkNotNull(format.getSalt(),
+        "Formatted entityIds may not specify a null 'salt' field in RowKeyFormat2.");
+    mTypes = new ComponentType[format.getComponents().size()];
+    for (int i = 0; i < mTypes.length; i++) {
+      mTypes[i] = format.getComponents().get(i).getType();
+    }
+    mHashType = format.getSalt().getHashType();
+    mHashSize = format.getSalt().getHashSize();
+    mRangeScanStartIndex = format.getRangeScanStartIndex();
+    mNullableStartIndex = format.getNullableStartIndex();
+    mSuppressMaterialization = format.getSalt().getSuppressKeyMaterialization();
+  }
+
+  /** @return the row key format of the keys encoded by this encoder. */
+  public RowKeyFormat2 getFormat() {
+    return mFormat;
+  }
+
+  /**
+   * Validates and encodes a row key.
+   *
+   * <p>Components may be omitted or null from the nullable start index on. Integer values are
+   * accepted for LONG components.</p>
+   *
+   * @param components Row key components, in order.
+   * @return the length of the encoded HBase row key, in bytes.
+   * @throws EntityIdException if the components do not match the row key format.
+   */
+  public int encode(List<?> components) {
+    validate(components);
+    return encodeValidated(components);
+  }
+
+  /**
+   * Validates and encodes a row key.
+   *
+   * @param components Row key components, in order.
+   * @return the length of the encoded HBase row key, in bytes.
+   * @throws EntityIdException if the components do not match the row key format.
+   */
+  public int encode(Object... components) {
+    return encode(Arrays.asList(components));
+  }
+
+  /**
+   * Returns the buffer holding the last encoded HBase row key in its first
+   * {@link #getLength()} bytes. The buffer is reused by the next call to encode.
+   *
+   * @return the buffer holding the last encoded HBase row key.
+   */
+  public byte[] getBuffer() {
+    return mBuffer;
+  }
+
+  /** @return the length of the last encoded HBase row key, in bytes. */
+  public int getLength() {
+    return mLength;
+  }
+
+  /** @return a copy of the last encoded HBase row key. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(mBuffer, mLength);
+  }
+
+  /**
+   * Checks row key components against the row key format.
+   *
+   * @param components Row key components, in order.
+   * @throws EntityIdException if the components do not match the row key format.
+   */
+  private void validate(List<?> components) {
+    if (components.size() > mTypes.length) {
+      throw new EntityIdException("Too many components in kiji Row Key");
+    }
+    if (components.size() < mNullableStartIndex) {
+      throw new EntityIdException("Too few components in kiji Row key");
+    }
+    boolean hasSeenNull = false;
+    for (int i = 0; i < components.size(); i++) {
+      final Object component = components.get(i);
+      if (null == component) {
+        if (i < mNullableStartIndex) {
+          throw new EntityIdException("Unexpected null component in kiji row key."
+              + String.format("Expected at least %d non-null components", mNullableStartIndex));
+        }
+        hasSeenNull = true;
+      } else if (hasSeenNull) {
+        throw new EntityIdException("Non null component follows null component");
+      } else if (!isValidComponent(mTypes[i], component)) {
+        throw new EntityIdException(String.format(
+            "Invalid type for component %s at index %d in kijiRowKey", component, i));
+      }
+    }
+  }
+
+  /**
+   * Reports whether a component value has the specified component type.
+   *
+   * @param type Component type from the row key format.
+   * @param component Non-null component value.
+   * @return whether the value can be encoded as the component type.
+   */
+  private static boolean isValidComponent(ComponentType type, Object component) {
+    switch (type) {
+      case STRING: return component instanceof String;
+      case INTEGER: return component instanceof Integer;
+      case LONG: return (component instanceof Long) || (component instanceof Integer);
+      default: return false;
+    }
+  }
+
+  /**
+   * Encodes row key components which are known to match the row key format.
+   *
+   * @param components Validated row key components, in order.
+   * @return the length of the encoded HBase row key, in bytes.
+   */
+  int encodeValidated(List<?> components) {
+    int pos = mHashSize;
+    int hashInputLength = 0;
+    for (int i = 0; i < components.size(); i++) {
+      final Object component = components.get(i);
+      if (null == component) {
+        // Only trailing components may be null.
+        break;
+      }
+      final int start = pos;
+      switch (mTypes[i]) {
+        case STRING:
+          pos = writeUtf8((String) component, pos);
+          break;
+        case INTEGER:
+          ensureCapacity(pos + Integer.SIZE / Byte.SIZE);
+          pos = writeInt((Integer) component, pos);
+          break;
+        case LONG:
+          ensureCapacity(pos + Long.SIZE / Byte.SIZE);
+          pos = writeLong(((Number) component).longValue(), pos);
+          break;
+        default:
+          throw new RuntimeException("Invalid code path");
+      }
+      if (i < mRangeScanStartIndex) {
+        // The hash covers the encoded components, without string terminators.
+        final int componentLength = pos - start;
+        if (mHashInput.length < hashInputLength + componentLength) {
+          mHashInput = Arrays.copyOf(
+              mHashInput, Math.max(2 * mHashInput.length, hashInputLength + componentLength));
+        }
+        System.arraycopy(mBuffer, start, mHashInput, hashInputLength, componentLength);
+        hashInputLength += componentLength;
+      }
+      if (mTypes[i] == ComponentType.STRING) {
+        // Empty strings would otherwise be indistinguishable from null components.
+        mBuffer[pos++] = 0;
+      }
+    }
+    Hasher.hash(mHashType, mHashInput, 0, hashInputLength, mBuffer, 0, mHashSize);
+    mLength = mSuppressMaterialization ? mHashSize : pos;
+    return mLength;
+  }
+
+  /**
+   * Ensures the row key buffer holds at least the specified number of bytes.
+   *
+   * @param capacity Minimum size of the buffer, in bytes.
+   */
+  private void ensureCapacity(int capacity) {
+    if (mBuffer.length < capacity) {
+      mBuffer = Arrays.copyOf(mBuffer, Math.max(2 * mBuffer.length, capacity));
+    }
+  }
+
+  /**
+   * Writes a string component as UTF-8, leaving room for its terminator.
+   *
+   * @param value String to write.
+   * @param offset Offset in the buffer at which to write the string.
+   * @return the offset following the string.
+   */
+  private int writeUtf8(String value, int offset) {
+    final int length = value.length();
+    // At most 3 bytes per char, plus the terminator.
+    ensureCapacity(offset + 3 * length + 1);
+    final byte[] buffer = mBuffer;
+    int pos = offset;
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c == 0) {
+        throw new EntityIdException("String component cannot contain \u0000");
+      } else if (c < 0x80) {
+        buffer[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[pos++] = (byte) (0xc0 | (c >>> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c)
+          && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[pos++] = (byte) (0xf0 | (codePoint >>> 18));
+        buffer[pos++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+        // Unpaired surrogates are replaced, as String.getBytes("UTF-8") does.
+        buffer[pos++] = (byte) '?';
+      } else {
+        buffer[pos++] = (byte) (0xe0 | (c >>> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >>> 6) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Writes an integer component, big-endian with its sign bit flipped to preserve ordering.
+   *
+   * @param value Integer to write.
+   * @param offset Offset in the buffer at which to write the integer.
+   * @return the offset following the integer.
+   */
+  private int writeInt(int value, int offset) {
+    final int flipped = value ^ Integer.MIN_VALUE;
+    mBuffer[offset] = (byte) (flipped >>> 24);
+    mBuffer[offset + 1] = (byte) (flipped >>> 16);
+    mBuffer[offset + 2] = (byte) (flipped >>> 8);
+    mBuffer[offset + 3] = (byte) flipped;
+    return offset + Integer.SIZE / Byte.SIZE;
+  }
+
+  /**
+   * Writes a long component, big-endian with its sign bit flipped to preserve ordering.
+   *
+   * @param value Long to write.
+   * @param offset Offset in the buffer at which to write the long.
+   * @return the offset following the long.
+   */
+  private int writeLong(long value, int offset) {
+    final long flipped = value ^ Long.MIN_VALUE;
+    for (int i = 0; i < Long.SIZE / Byte.SIZE; i++) {
+      mBuffer[offset + i] = (byte) (flipped >>> (56 - 8 * i));
+    }
+    return offset + Long.SIZE / Byte.SIZE;
+  }
+}
@@ -28,6 +28,7 @@ import com.google.common.collect.Lists;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.avro.HashType;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat;
 import org.kiji.schema.util.ByteArrayFormatter;
@@ -52,11 +53,10 @@ public final class HashPrefixedEntityId extends EntityId {
   static HashPrefixedEntityId getEntityId(byte[] kijiRowKey, RowKeyFormat format) {
     Preconditions.checkNotNull(format);
     Preconditions.checkArgument(format.getEncoding() == RowKeyEncoding.HASH_PREFIX);
-    final byte[] hash = hashKijiRowKey(format, kijiRowKey);
     final int hashSize = format.getHashSize();
-    // Prepend a subset of the hash to the Kiji row key:
+    // Prepend a subset of the hash to the Kiji row key, hashing directly into the row key:
     final byte[] hbaseRowKey = new byte[hashSize + kijiRowKey.length];
-    System.arraycopy(hash, 0, hbaseRowKey, 0, hashSize);
+    Hasher.hash(format.getHashType(), kijiRowKey, 0, kijiRowKey.length, hbaseRowKey, 0, hashSize);
     System.arraycopy(kijiRowKey, 0, hbaseRowKey, hashSize, kijiRowKey.length);
     return new HashPrefixedEntityId(kijiRowKey, hbaseRowKey, format);
   }
@@ -89,6 +89,7 @@ public final class HashPrefixedEntityId extends EntityId {
     // TODO refactor into hash factories:
     switch (format.getHashType()) {
     case MD5: return Hasher.hash(kijiRowKey);
+    case MURMUR3: return Hasher.hash(HashType.MURMUR3, kijiRowKey);
     default:
       throw new RuntimeException(String.format("Unexpected hashing type: '%s'.", format));
     }
@@ -27,6 +27,7 @@ import com.google.common.base.Preconditions;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.avro.HashType;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat;
 import org.kiji.schema.util.ByteArrayFormatter;
@@ -79,6 +80,7 @@ public final class HashedEntityId extends EntityId {
     // TODO refactor into hash factories:
     switch (format.getHashType()) {
     case MD5: return Hasher.hash(kijiRowKey);
+    case MURMUR3: return Hasher.hash(HashType.MURMUR3, kijiRowKey);
     default:
       throw new RuntimeException(String.format("Unexpected hashing type: '%s'.", format));
     }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.hadoop.conf.Configuration;
 
 import org.kiji.annotations.ApiAudience;
@@ -210,6 +211,29 @@ public interface Kiji extends KijiTableFactory, ReferenceCountable<Kiji> {
    */
   KijiSecurityManager getSecurityManager() throws IOException;
 
+  /**
+   * Sets the registry in which this Kiji instance records runtime metrics.
+   *
+   * <p>
+   *   Metrics are disabled by default. Once a registry is set, this Kiji instance and its tables
+   *   record latency histograms and throughput of row gets, bulk gets, scanner iterations,
+   *   buffered writer flushes, schema table lookups, and cell encodes and decodes, named after the
+   *   instance, the table and the column family they apply to. Table readers, writers and scanners
+   *   opened before the registry is set are not instrumented.
+   * </p>
+   *
+   * @param registry in which to record metrics, or null to disable metrics.
+   */
+  void setMetricRegistry(MetricRegistry registry);
+
+  /**
+   * Returns the registry in which this Kiji instance records runtime metrics.
+   *
+   * @return the registry in which this Kiji instance records runtime metrics, or null if metrics
+   *     are disabled.
+   */
+  MetricRegistry getMetricRegistry();
+
   /**
    * Creates a Kiji table in an HBase instance.
    *
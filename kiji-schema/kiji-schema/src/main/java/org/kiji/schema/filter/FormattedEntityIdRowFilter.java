@@ -190,8 +190,10 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
             byte[] componentBytes = toBytes(component);
             tohash.write(componentBytes, 0, componentBytes.length);
           }
-          byte[] hashed = Arrays.copyOfRange(Hasher.hash(tohash.toByteArray()), 0,
-              mRowKeyFormat.getSalt().getHashSize());
+          final byte[] toHashBytes = tohash.toByteArray();
+          byte[] hashed = new byte[mRowKeyFormat.getSalt().getHashSize()];
+          Hasher.hash(mRowKeyFormat.getSalt().getHashType(),
+              toHashBytes, 0, toHashBytes.length, hashed, 0, hashed.length);
           for (byte hashedByte : hashed) {
             regex.append(String.format("\\x%02x", hashedByte & 0xFF));
           }
@@ -0,0 +1,510 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.commons.monitoring.HdrHistogramReservoir;
+import org.kiji.schema.DecodedCell;
+import org.kiji.schema.KijiCellDecoder;
+import org.kiji.schema.KijiCellEncoder;
+import org.kiji.schema.KijiURI;
+
+/**
+ * Optional runtime metrics of a Kiji instance.
+ *
+ * <p>
+ *   Metrics are disabled until a Dropwizard {@link MetricRegistry} is set, and may be disabled
+ *   again by setting a null registry. While disabled, {@link #getTimer(String)} returns null and
+ *   instrumented code paths only pay for a null check.
+ * </p>
+ *
+ * <p>
+ *   Operations are recorded by {@link Timer}s, which track both the throughput and the latency
+ *   distribution of the operation. Latencies are recorded in HDR histograms which reset every
+ *   time a snapshot is taken, so registries holding these timers should not be used with more
+ *   than one scheduled reporter.
+ * </p>
+ *
+ * <p>
+ *   Metric names are {@code kiji.<instance>.<operation>} for instance-wide operations,
+ *   {@code kiji.<instance>.<table>.<operation>} for table operations and
+ *   {@code kiji.<instance>.<table>.<family>.<operation>} for cell operations.
+ * </p>
+ */
+@ApiAudience.Private
+public final class KijiMetrics {
+  private static final Logger LOG = LoggerFactory.getLogger(KijiMetrics.class);
+
+  /** Operation name of single row gets. */
+  public static final String GET = "get";
+
+  /** Operation name of bulk gets. */
+  public static final String BULK_GET = "bulk-get";
+
+  /** Operation name of the retrieval of rows by scanners. */
+  public static final String SCANNER_NEXT = "scanner-next";
+
+  /** Operation name of buffered writer flushes. */
+  public static final String BUFFERED_WRITER_FLUSH = "buffered-writer-flush";
+
+  /** Operation name of schema table lookups by schema ID. */
+  public static final String SCHEMA_LOOKUP_BY_ID = "schema-table.lookup-by-id";
+
+  /** Operation name of schema table lookups by schema hash. */
+  public static final String SCHEMA_LOOKUP_BY_HASH = "schema-table.lookup-by-hash";
+
+  /** Operation name of cell encodes. */
+  public static final String CELL_ENCODE = "cell-encode";
+
+  /** Operation name of cell decodes. */
+  public static final String CELL_DECODE = "cell-decode";
+
+  /** Highest latency recorded by the timers, in nanoseconds. Longer latencies are truncated. */
+  private static final long HIGHEST_LATENCY_NS = TimeUnit.HOURS.toNanos(1);
+
+  /** Number of significant decimal digits of the recorded latencies. */
+  private static final int LATENCY_SIGNIFICANT_DIGITS = 2;
+
+  /**
+   * Registry in which metrics are recorded, with its timers. Replaced as a whole when the registry
+   * is set, so that a timer looked up in a registry is never cached for another registry.
+   */
+  private volatile RegistryTimers mRegistryTimers = new RegistryTimers(null);
+
+  /** Number of times the registry was set. Lets timer references detect registry changes. */
+  private volatile long mGeneration = 0;
+
+  /**
+   * Sets the registry in which to record metrics.
+   *
+   * @param registry in which to record metrics, or null to disable metrics.
+   */
+  public synchronized void setRegistry(final MetricRegistry registry) {
+    mRegistryTimers = new RegistryTimers(registry);
+    mGeneration += 1;
+  }
+
+  /**
+   * Returns the registry in which metrics are recorded.
+   *
+   * @return the registry in which metrics are recorded, or null if metrics are disabled.
+   */
+  public MetricRegistry getRegistry() {
+    return mRegistryTimers.mRegistry;
+  }
+
+  /**
+   * Reports whether metrics are enabled.
+   *
+   * @return whether metrics are enabled.
+   */
+  public boolean isEnabled() {
+    return mRegistryTimers.mRegistry != null;
+  }
+
+  /**
+   * Returns the timer with the specified name, registering it if necessary.
+   *
+   * @param name of the timer.
+   * @return the timer with the specified name, or null if metrics are disabled or if another
+   *     kind of metric is registered with this name.
+   */
+  public Timer getTimer(final String name) {
+    // The timers are cached with the registry they were looked up in: a timer of a registry
+    // which is concurrently replaced is cached for that registry only.
+    final RegistryTimers registryTimers = mRegistryTimers;
+    if (null == registryTimers.mRegistry) {
+      return null;
+    }
+    final Timer timer = registryTimers.mTimers.get(name);
+    if (null != timer) {
+      return timer;
+    }
+    final Timer registered = getOrRegisterTimer(registryTimers.mRegistry, name);
+    if (null != registered) {
+      registryTimers.mTimers.putIfAbsent(name, registered);
+    }
+    return registered;
+  }
+
+  /**
+   * Returns the timer of a table operation.
+   *
+   * @param tableURI URI of the table.
+   * @param operation name of the operation.
+   * @return the timer of the operation, or null if metrics are disabled.
+   */
+  public Timer getTableTimer(final KijiURI tableURI, final String operation) {
+    if (!isEnabled()) {
+      return null;
+    }
+    return getTimer(
+        MetricRegistry.name("kiji", tableURI.getInstance(), tableURI.getTable(), operation));
+  }
+
+  /**
+   * Returns the timer of an instance-wide operation.
+   *
+   * @param instanceURI URI of the Kiji instance.
+   * @param operation name of the operation.
+   * @return the timer of the operation, or null if metrics are disabled.
+   */
+  public Timer getInstanceTimer(final KijiURI instanceURI, final String operation) {
+    if (!isEnabled()) {
+      return null;
+    }
+    return getTimer(MetricRegistry.name("kiji", instanceURI.getInstance(), operation));
+  }
+
+  /**
+   * Returns a reference to the timer of an instance-wide operation.
+   *
+   * <p>
+   *   Components which live as long as the Kiji instance, and so may see the registry set after
+   *   they are opened, hold a reference instead of a timer.
+   * </p>
+   *
+   * @param instanceURI URI of the Kiji instance.
+   * @param operation name of the operation.
+   * @return a reference to the timer of the operation.
+   */
+  public TimerReference getInstanceTimerReference(
+      final KijiURI instanceURI,
+      final String operation
+  ) {
+    return new TimerReference(
+        this, MetricRegistry.name("kiji", instanceURI.getInstance(), operation));
+  }
+
+  /**
+   * Reference to a named timer, resolved once per registry.
+   *
+   * <p>
+   *   The timer is looked up in the registry the first time it is requested, then again only after
+   *   the registry of the metrics changes.
+   * </p>
+   */
+  public static final class TimerReference {
+    /** Metrics holding the referenced timer. */
+    private final KijiMetrics mMetrics;
+
+    /** Name of the referenced timer. */
+    private final String mName;
+
+    /** Timer resolved for the current registry, or null if not resolved yet. */
+    private volatile ResolvedTimer mResolved = null;
+
+    /**
+     * Initializes a timer reference.
+     *
+     * @param metrics holding the referenced timer.
+     * @param name of the referenced timer.
+     */
+    private TimerReference(final KijiMetrics metrics, final String name) {
+      mMetrics = metrics;
+      mName = name;
+    }
+
+    /**
+     * Returns the referenced timer.
+     *
+     * @return the referenced timer, or null if metrics are disabled.
+     */
+    public Timer get() {
+      final long generation = mMetrics.mGeneration;
+      final ResolvedTimer resolved = mResolved;
+      if ((null != resolved) && (resolved.mGeneration == generation)) {
+        return resolved.mTimer;
+      }
+      final Timer timer = mMetrics.getTimer(mName);
+      mResolved = new ResolvedTimer(generation, timer);
+      return timer;
+    }
+  }
+
+  /** A registry and the timers looked up in it. */
+  private static final class RegistryTimers {
+    /** Registry in which metrics are recorded, or null if metrics are disabled. */
+    private final MetricRegistry mRegistry;
+
+    /** Timers of the registry, by name. */
+    private final ConcurrentMap<String, Timer> mTimers = Maps.newConcurrentMap();
+
+    /**
+     * Initializes the timers of a registry.
+     *
+     * @param registry in which metrics are recorded, or null if metrics are disabled.
+     */
+    private RegistryTimers(final MetricRegistry registry) {
+      mRegistry = registry;
+    }
+  }
+
+  /** A timer resolved for a given registry. */
+  private static final class ResolvedTimer {
+    /** Generation of the registry the timer was resolved for. */
+    private final long mGeneration;
+
+    /** Timer resolved for the registry, or null if metrics were disabled. */
+    private final Timer mTimer;
+
+    /**
+     * Initializes a resolved timer.
+     *
+     * @param generation of the registry the timer was resolved for.
+     * @param timer resolved for the registry, or null if metrics were disabled.
+     */
+    private ResolvedTimer(final long generation, final Timer timer) {
+      mGeneration = generation;
+      mTimer = timer;
+    }
+  }
+
+  /**
+   * Wraps a cell encoder so that it records the encodes of a column family.
+   *
+   * @param encoder to wrap.
+   * @param tableURI URI of the table of the column family.
+   * @param family name of the column family.
+   * @return a metered cell encoder, or the encoder itself if metrics are disabled.
+   */
+  public KijiCellEncoder meterEncoder(
+      final KijiCellEncoder encoder,
+      final KijiURI tableURI,
+      final String family
+  ) {
+    final Timer timer = getFamilyTimer(tableURI, family, CELL_ENCODE);
+    return (null == timer) ? encoder : new MeteredCellEncoder(encoder, timer);
+  }
+
+  /**
+   * Wraps a cell decoder so that it records the decodes of a column family.
+   *
+   * @param decoder to wrap.
+   * @param tableURI URI of the table of the column family.
+   * @param family name of the column family.
+   * @param <T> type of the decoded values.
+   * @return a metered cell decoder, or the decoder itself if metrics are disabled.
+   */
+  public <T> KijiCellDecoder<T> meterDecoder(
+      final KijiCellDecoder<T> decoder,
+      final KijiURI tableURI,
+      final String family
+  ) {
+    final Timer timer = getFamilyTimer(tableURI, family, CELL_DECODE);
+    return (null == timer) ? decoder : new MeteredCellDecoder<T>(decoder, timer);
+  }
+
+  /**
+   * Starts timing an operation.
+   *
+   * @param timer of the operation, or null if metrics are disabled.
+   * @return the timing context of the operation, or null if metrics are disabled.
+   */
+  public static Timer.Context time(final Timer timer) {
+    return (null == timer) ? null : timer.time();
+  }
+
+  /**
+   * Stops timing an operation.
+   *
+   * @param context timing context of the operation, or null if metrics are disabled.
+   */
+  public static void stop(final Timer.Context context) {
+    if (null != context) {
+      context.stop();
+    }
+  }
+
+  /**
+   * Returns the timer of a column family operation.
+   *
+   * @param tableURI URI of the table.
+   * @param family name of the column family.
+   * @param operation name of the operation.
+   * @return the timer of the operation, or null if metrics are disabled.
+   */
+  private Timer getFamilyTimer(
+      final KijiURI tableURI,
+      final String family,
+      final String operation
+  ) {
+    if (!isEnabled()) {
+      return null;
+    }
+    return getTimer(MetricRegistry.name(
+        "kiji", tableURI.getInstance(), tableURI.getTable(), family, operation));
+  }
+
+  /**
+   * Returns the timer registered with a name, registering a new timer if none is.
+   *
+   * @param registry in which to look up or register the timer.
+   * @param name of the timer.
+   * @return the timer registered with the name, or null if another kind of metric is.
+   */
+  private static Timer getOrRegisterTimer(final MetricRegistry registry, final String name) {
+    final Metric existing = registry.getMetrics().get(name);
+    if (existing instanceof Timer) {
+      return (Timer) existing;
+    }
+    if (null == existing) {
+      try {
+        return registry.register(name, new Timer(new TruncatingReservoir(
+            HdrHistogramReservoir.create(1, HIGHEST_LATENCY_NS, LATENCY_SIGNIFICANT_DIGITS))));
+      } catch (IllegalArgumentException iae) {
+        // Another Kiji instance registered the same metric concurrently.
+        final Metric concurrent = registry.getMetrics().get(name);
+        if (concurrent instanceof Timer) {
+          return (Timer) concurrent;
+        }
+      }
+    }
+    LOG.warn("Cannot record Kiji metric {}: a metric of another kind is registered.", name);
+    return null;
+  }
+
+  /** Reservoir which truncates values to the highest value trackable by its HDR histogram. */
+  private static final class TruncatingReservoir implements Reservoir {
+    private final Reservoir mReservoir;
+
+    /**
+     * Creates a reservoir truncating the values recorded in a reservoir.
+     *
+     * @param reservoir in which to record the truncated values.
+     */
+    private TruncatingReservoir(final Reservoir reservoir) {
+      mReservoir = reservoir;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+      return mReservoir.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void update(final long value) {
+      mReservoir.update(Math.min(value, HIGHEST_LATENCY_NS));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Snapshot getSnapshot() {
+      return mReservoir.getSnapshot();
+    }
+  }
+
+  /** Cell encoder recording its encodes in a timer. */
+  private static final class MeteredCellEncoder implements KijiCellEncoder {
+    private final KijiCellEncoder mEncoder;
+    private final Timer mTimer;
+
+    /**
+     * Creates a metered cell encoder.
+     *
+     * @param encoder to which encodes are delegated.
+     * @param timer in which to record the encodes.
+     */
+    private MeteredCellEncoder(final KijiCellEncoder encoder, final Timer timer) {
+      mEncoder = encoder;
+      mTimer = timer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encode(final DecodedCell<?> cell) throws IOException {
+      final Timer.Context context = mTimer.time();
+      try {
+        return mEncoder.encode(cell);
+      } finally {
+        context.stop();
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T> byte[] encode(final T cellValue) throws IOException {
+      final Timer.Context context = mTimer.time();
+      try {
+        return mEncoder.encode(cellValue);
+      } finally {
+        context.stop();
+      }
+    }
+  }
+
+  /**
+   * Cell decoder recording its decodes in a timer.
+   *
+   * @param <T> type of the decoded values.
+   */
+  private static final class MeteredCellDecoder<T> implements KijiCellDecoder<T> {
+    private final KijiCellDecoder<T> mDecoder;
+    private final Timer mTimer;
+
+    /**
+     * Creates a metered cell decoder.
+     *
+     * @param decoder to which decodes are delegated.
+     * @param timer in which to record the decodes.
+     */
+    private MeteredCellDecoder(final KijiCellDecoder<T> decoder, final Timer timer) {
+      mDecoder = decoder;
+      mTimer = timer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DecodedCell<T> decodeCell(final byte[] bytes) throws IOException {
+      final Timer.Context context = mTimer.time();
+      try {
+        return mDecoder.decodeCell(bytes);
+      } finally {
+        context.stop();
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public T decodeValue(final byte[] bytes) throws IOException {
+      final Timer.Context context = mTimer.time();
+      try {
+        return mDecoder.decodeValue(bytes);
+      } finally {
+        context.stop();
+      }
+    }
+  }
+}
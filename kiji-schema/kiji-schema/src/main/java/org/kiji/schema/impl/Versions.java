@@ -63,6 +63,9 @@ public final class Versions {
   // Table layout versions
   // -----------------------------------------------------------------------------------------------
 
+  public static final ProtocolVersion LAYOUT_1_6_0 =
+      ProtocolVersion.parse("layout-1.6.0");
+
   public static final ProtocolVersion LAYOUT_1_5_0 =
       ProtocolVersion.parse("layout-1.5.0");
 
@@ -92,7 +95,7 @@ public final class Versions {
   // Aliases and semantic names
 
   /** Maximum layout version recognized by this client. */
-  public static final ProtocolVersion MAX_LAYOUT_VERSION = LAYOUT_1_5_0;
+  public static final ProtocolVersion MAX_LAYOUT_VERSION = LAYOUT_1_6_0;
 
   /** First layout version where table layout validation may be enabled. */
   public static final ProtocolVersion LAYOUT_VALIDATION_VERSION = LAYOUT_1_3_0;
@@ -108,6 +111,9 @@ public final class Versions {
    */
   public static final ProtocolVersion CONFIGURE_COLUMN_NAME_TRANSLATION_VERSION = LAYOUT_1_5_0;
 
+  /** Layout version that introduces the MURMUR3 row key hash type. */
+  public static final ProtocolVersion MURMUR3_HASH_LAYOUT_VERSION = LAYOUT_1_6_0;
+
   /**
    * Version of the layout that introduces:
    * <ul>
@@ -0,0 +1,360 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl.hbase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * HBase filter enforcing per-column max-versions and time ranges on the region servers.
+ *
+ * <p>
+ *   An HBase Get or Scan only has one max-versions and one time range, which apply to all the
+ *   columns it reads. This filter lets the cells of each HBase column through only if they fall in
+ *   the time range of the column, and only up to the max-versions of the column, so that columns
+ *   requested with few versions do not send the versions requested for other columns over the
+ *   wire.
+ * </p>
+ *
+ * <p>
+ *   Cells of HBase columns which match none of the columns of the filter are let through. A column
+ *   either matches a single HBase qualifier, or all the HBase qualifiers starting with a prefix
+ *   (for the columns of a Kiji map-type family). When several columns match an HBase column, the
+ *   largest max-versions and the widest time range apply.
+ * </p>
+ *
+ * <p>
+ *   The filter counts the versions of a column as it lets them through, and must therefore be
+ *   evaluated after any other filter which may exclude cells. Region servers must have this class
+ *   on their classpath to deserialize the filter.
+ * </p>
+ */
+@ApiAudience.Private
+public final class ColumnVersionsFilter extends FilterBase {
+  /** Version of the serialized form of the filter. */
+  private static final int SERIALIZATION_VERSION = 1;
+
+  /** HBase families of the columns. */
+  private final byte[][] mFamilies;
+
+  /** HBase qualifiers, or qualifier prefixes, of the columns. */
+  private final byte[][] mQualifiers;
+
+  /** Whether the qualifiers of the columns are prefixes. */
+  private final boolean[] mPrefixes;
+
+  /** Maximum numbers of versions of the columns. */
+  private final int[] mMaxVersions;
+
+  /** Minimum timestamps of the columns, inclusive. */
+  private final long[] mMinTimestamps;
+
+  /** Maximum timestamps of the columns, exclusive. */
+  private final long[] mMaxTimestamps;
+
+  /** First cell seen of the current HBase column, or null before the first cell of a row. */
+  private Cell mCurrentColumn = null;
+
+  /** Whether a column of the filter matches the current HBase column. */
+  private boolean mCurrentMatched = false;
+
+  /** Maximum number of versions of the current HBase column. */
+  private int mCurrentMaxVersions = 0;
+
+  /** Minimum timestamp of the current HBase column, inclusive. */
+  private long mCurrentMinTimestamp = 0;
+
+  /** Maximum timestamp of the current HBase column, exclusive. */
+  private long mCurrentMaxTimestamp = 0;
+
+  /** Number of versions of the current HBase column let through so far. */
+  private int mCurrentVersions = 0;
+
+  /**
+   * A column with its max-versions and time range.
+   */
+  public static final class Column {
+    /** HBase family of the column. */
+    private final byte[] mFamily;
+
+    /** HBase qualifier, or qualifier prefix, of the column. */
+    private final byte[] mQualifier;
+
+    /** Whether the qualifier is a prefix. */
+    private final boolean mPrefix;
+
+    /** Maximum number of versions of the column. */
+    private final int mMaxVersions;
+
+    /** Minimum timestamp of the column, inclusive. */
+    private final long mMinTimestamp;
+
+    /** Maximum timestamp of the column, exclusive. */
+    private final long mMaxTimestamp;
+
+    /**
+     * Creates a column.
+     *
+     * @param family HBase family of the column.
+     * @param qualifier HBase qualifier, or qualifier prefix, of the column.
+     * @param prefix Whether the qualifier is a prefix.
+     * @param maxVersions Maximum number of versions of the column.
+     * @param minTimestamp Minimum timestamp of the column, inclusive.
+     * @param maxTimestamp Maximum timestamp of the column, exclusive.
+     */
+    public Column(
+        final byte[] family,
+        final byte[] qualifier,
+        final boolean prefix,
+        final int maxVersions,
+        final long minTimestamp,
+        final long maxTimestamp
+    ) {
+      mFamily = family;
+      mQualifier = qualifier;
+      mPrefix = prefix;
+      mMaxVersions = maxVersions;
+      mMinTimestamp = minTimestamp;
+      mMaxTimestamp = maxTimestamp;
+    }
+
+    /**
+     * Returns the maximum number of versions of the column.
+     *
+     * @return the maximum number of versions of the column.
+     */
+    public int getMaxVersions() {
+      return mMaxVersions;
+    }
+  }
+
+  /**
+   * Creates a filter for some columns.
+   *
+   * @param columns Columns with their max-versions and time ranges.
+   */
+  public ColumnVersionsFilter(final List<Column> columns) {
+    final int size = columns.size();
+    mFamilies = new byte[size][];
+    mQualifiers = new byte[size][];
+    mPrefixes = new boolean[size];
+    mMaxVersions = new int[size];
+    mMinTimestamps = new long[size];
+    mMaxTimestamps = new long[size];
+    for (int index = 0; index < size; index++) {
+      final Column column = columns.get(index);
+      mFamilies[index] = column.mFamily;
+      mQualifiers[index] = column.mQualifier;
+      mPrefixes[index] = column.mPrefix;
+      mMaxVersions[index] = column.mMaxVersions;
+      mMinTimestamps[index] = column.mMinTimestamp;
+      mMaxTimestamps[index] = column.mMaxTimestamp;
+    }
+  }
+
+  /**
+   * Creates a filter from its serialized columns.
+   *
+   * @param families HBase families of the columns.
+   * @param qualifiers HBase qualifiers, or qualifier prefixes, of the columns.
+   * @param prefixes Whether the qualifiers of the columns are prefixes.
+   * @param maxVersions Maximum numbers of versions of the columns.
+   * @param minTimestamps Minimum timestamps of the columns, inclusive.
+   * @param maxTimestamps Maximum timestamps of the columns, exclusive.
+   */
+  private ColumnVersionsFilter(
+      final byte[][] families,
+      final byte[][] qualifiers,
+      final boolean[] prefixes,
+      final int[] maxVersions,
+      final long[] minTimestamps,
+      final long[] maxTimestamps
+  ) {
+    mFamilies = families;
+    mQualifiers = qualifiers;
+    mPrefixes = prefixes;
+    mMaxVersions = maxVersions;
+    mMinTimestamps = minTimestamps;
+    mMaxTimestamps = maxTimestamps;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void reset() {
+    mCurrentColumn = null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ReturnCode filterKeyValue(final Cell cell) {
+    if ((null == mCurrentColumn)
+        || !CellUtil.matchingRow(cell, mCurrentColumn)
+        || !CellUtil.matchingColumn(cell, mCurrentColumn)) {
+      startColumn(cell);
+    }
+    if (!mCurrentMatched) {
+      return ReturnCode.INCLUDE;
+    }
+    // Versions of a column are sorted by decreasing timestamps:
+    final long timestamp = cell.getTimestamp();
+    if (timestamp >= mCurrentMaxTimestamp) {
+      return ReturnCode.SKIP;
+    }
+    if ((timestamp < mCurrentMinTimestamp) || (mCurrentVersions >= mCurrentMaxVersions)) {
+      return ReturnCode.NEXT_COL;
+    }
+    mCurrentVersions += 1;
+    return ReturnCode.INCLUDE;
+  }
+
+  /**
+   * Resolves the max-versions and time range of the HBase column of a cell.
+   *
+   * @param cell First cell of an HBase column.
+   */
+  private void startColumn(final Cell cell) {
+    mCurrentColumn = cell;
+    mCurrentMatched = false;
+    mCurrentMaxVersions = 0;
+    mCurrentMinTimestamp = Long.MAX_VALUE;
+    mCurrentMaxTimestamp = Long.MIN_VALUE;
+    mCurrentVersions = 0;
+    for (int index = 0; index < mFamilies.length; index++) {
+      if (matches(cell, index)) {
+        mCurrentMatched = true;
+        mCurrentMaxVersions = Math.max(mCurrentMaxVersions, mMaxVersions[index]);
+        mCurrentMinTimestamp = Math.min(mCurrentMinTimestamp, mMinTimestamps[index]);
+        mCurrentMaxTimestamp = Math.max(mCurrentMaxTimestamp, mMaxTimestamps[index]);
+      }
+    }
+  }
+
+  /**
+   * Reports whether a column of this filter matches the HBase column of a cell.
+   *
+   * @param cell Cell to match.
+   * @param index Index of the column of this filter.
+   * @return whether the column matches the HBase column of the cell.
+   */
+  private boolean matches(final Cell cell, final int index) {
+    if (!CellUtil.matchingFamily(cell, mFamilies[index])) {
+      return false;
+    }
+    final byte[] qualifier = mQualifiers[index];
+    if (mPrefixes[index]) {
+      return (cell.getQualifierLength() >= qualifier.length)
+          && (0 == Bytes.compareTo(
+              cell.getQualifierArray(), cell.getQualifierOffset(), qualifier.length,
+              qualifier, 0, qualifier.length));
+    } else {
+      return CellUtil.matchingQualifier(cell, qualifier);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public byte[] toByteArray() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream output = new DataOutputStream(bytes);
+    output.writeInt(SERIALIZATION_VERSION);
+    output.writeInt(mFamilies.length);
+    for (int index = 0; index < mFamilies.length; index++) {
+      Bytes.writeByteArray(output, mFamilies[index]);
+      Bytes.writeByteArray(output, mQualifiers[index]);
+      output.writeBoolean(mPrefixes[index]);
+      output.writeInt(mMaxVersions[index]);
+      output.writeLong(mMinTimestamps[index]);
+      output.writeLong(mMaxTimestamps[index]);
+    }
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserializes a filter. Required by HBase to instantiate the filter on the region servers.
+   *
+   * @param serialized Filter serialized with {@link #toByteArray()}.
+   * @return the deserialized filter.
+   * @throws DeserializationException on error.
+   */
+  public static ColumnVersionsFilter parseFrom(final byte[] serialized)
+      throws DeserializationException {
+    try {
+      final DataInputStream input = new DataInputStream(new ByteArrayInputStream(serialized));
+      final int version = input.readInt();
+      if (SERIALIZATION_VERSION != version) {
+        throw new DeserializationException(String.format(
+            "Unsupported serialization version %d for %s.",
+            version, ColumnVersionsFilter.class.getName()));
+      }
+      final int size = input.readInt();
+      final byte[][] families = new byte[size][];
+      final byte[][] qualifiers = new byte[size][];
+      final boolean[] prefixes = new boolean[size];
+      final int[] maxVersions = new int[size];
+      final long[] minTimestamps = new long[size];
+      final long[] maxTimestamps = new long[size];
+      for (int index = 0; index < size; index++) {
+        families[index] = Bytes.readByteArray(input);
+        qualifiers[index] = Bytes.readByteArray(input);
+        prefixes[index] = input.readBoolean();
+        maxVersions[index] = input.readInt();
+        minTimestamps[index] = input.readLong();
+        maxTimestamps[index] = input.readLong();
+      }
+      return new ColumnVersionsFilter(
+          families, qualifiers, prefixes, maxVersions, minTimestamps, maxTimestamps);
+    } catch (IOException ioe) {
+      throw new DeserializationException(ioe);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder(getClass().getSimpleName()).append('[');
+    for (int index = 0; index < mFamilies.length; index++) {
+      if (index > 0) {
+        builder.append(", ");
+      }
+      builder
+          .append(Bytes.toStringBinary(mFamilies[index]))
+          .append(':')
+          .append(Bytes.toStringBinary(mQualifiers[index]))
+          .append(mPrefixes[index] ? "*" : "")
+          .append(" versions=").append(mMaxVersions[index])
+          .append(" range=[").append(mMinTimestamps[index])
+          .append(", ").append(mMaxTimestamps[index]).append(')');
+    }
+    return builder.append(']').toString();
+  }
+}
@@ -20,11 +20,15 @@
 package org.kiji.schema.impl.hbase;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.ColumnPaginationFilter;
 import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
@@ -59,10 +63,26 @@ import org.kiji.schema.platform.SchemaPlatformBridge;
 public final class HBaseDataRequestAdapter {
   private static final Logger LOG = LoggerFactory.getLogger(HBaseDataRequestAdapter.class);
 
+  /**
+   * System property enabling the {@link ColumnVersionsFilter}, which enforces the max-versions of
+   * each column on the region servers. The region servers must have the filter on their classpath.
+   * Disabled by default, in which case extra versions are trimmed by the client. If the region
+   * servers of a table turn out not to have the filter, reads of the table are retried and
+   * continue without it.
+   */
+  public static final String SERVER_SIDE_VERSIONS_FILTER_PROPERTY =
+      "org.kiji.schema.impl.hbase.HBaseDataRequestAdapter.SERVER_SIDE_VERSIONS_FILTER";
+
+  /** Whether to enforce the max-versions of each column on the region servers by default. */
+  static final boolean SERVER_SIDE_VERSIONS_FILTER =
+      Boolean.parseBoolean(System.getProperty(SERVER_SIDE_VERSIONS_FILTER_PROPERTY, "false"));
+
   /** The wrapped KijiDataRequest. */
   private final KijiDataRequest mKijiDataRequest;
   /** The translator for generating HBase column names. */
   private final HBaseColumnNameTranslator mColumnNameTranslator;
+  /** Whether to enforce the max-versions of each column on the region servers. */
+  private final boolean mServerSideVersionsFilter;
 
   /**
    * Creates a new HBaseDataRequestAdapter for a given data request using a given
@@ -74,9 +94,27 @@ public final class HBaseDataRequestAdapter {
   public HBaseDataRequestAdapter(
       final KijiDataRequest kijiDataRequest,
       final HBaseColumnNameTranslator translator
+  ) {
+    this(kijiDataRequest, translator, SERVER_SIDE_VERSIONS_FILTER);
+  }
+
+  /**
+   * Creates a new HBaseDataRequestAdapter for a given data request using a given
+   * KijiColumnNameTranslator.
+   *
+   * @param kijiDataRequest the data request to adapt for HBase.
+   * @param translator the name translator for getting HBase column names.
+   * @param serverSideVersionsFilter whether to enforce the max-versions of each column on the
+   *     region servers, with a {@link ColumnVersionsFilter}.
+   */
+  HBaseDataRequestAdapter(
+      final KijiDataRequest kijiDataRequest,
+      final HBaseColumnNameTranslator translator,
+      final boolean serverSideVersionsFilter
   ) {
     mKijiDataRequest = kijiDataRequest;
     mColumnNameTranslator = translator;
+    mServerSideVersionsFilter = serverSideVersionsFilter;
   }
 
   /**
@@ -194,6 +232,10 @@ public final class HBaseDataRequestAdapter {
     // can still honor the user's requested maxVersions when returning the versions in
     // HBaseKijiRowData.
 
+    // When the ColumnVersionsFilter is deployed on the region servers, it enforces the
+    // maxVersions of each column server-side, so that extra versions are not sent to the client.
+    final List<ColumnVersionsFilter.Column> versionedColumns = Lists.newArrayList();
+
     // Largest of the max-versions from all the requested columns.
     // Columns with paging are excluded (max-versions does not make sense when paging):
     int largestMaxVersions = 1;
@@ -223,6 +265,7 @@ public final class HBaseDataRequestAdapter {
         // locality group is also requested.
         addColumn(get, hbaseColumnName);
         columnFilters.addFilter(toFilter(columnRequest, hbaseColumnName, filterContext));
+        addVersionedColumn(versionedColumns, columnRequest, hbaseColumnName);
 
       } else {
         final FamilyLayout fLayout = tableLayout.getFamilyMap().get(kijiColumnName.getFamily());
@@ -236,6 +279,7 @@ public final class HBaseDataRequestAdapter {
                 mColumnNameTranslator.toHBaseColumnName(fqKijiColumnName);
             addColumn(get, fqHBaseColumnName);
             columnFilters.addFilter(toFilter(columnRequest, fqHBaseColumnName, filterContext));
+            addVersionedColumn(versionedColumns, columnRequest, fqHBaseColumnName);
           }
 
         } else if (fLayout.isMapType()) {
@@ -244,6 +288,7 @@ public final class HBaseDataRequestAdapter {
           // and add a column prefix-filter to select only the columns from that Kiji family:
           get.addFamily(hbaseColumnName.getFamily());
           columnFilters.addFilter(toFilter(columnRequest, hbaseColumnName, filterContext));
+          addVersionedColumn(versionedColumns, columnRequest, hbaseColumnName);
 
         } else {
           throw new InternalKijiError("Family is neither group-type nor map-type");
@@ -259,6 +304,12 @@ public final class HBaseDataRequestAdapter {
       // Stop at the first valid key using AND(columnFilters, FirstKeyOnlyFilter):
       get.setFilter(new FilterList(
           FilterList.Operator.MUST_PASS_ALL, columnFilters, new FirstKeyOnlyFilter()));
+    } else if (mServerSideVersionsFilter && needsVersionsFilter(versionedColumns)) {
+      // The versions filter counts the cells it lets through, and must therefore come last:
+      get.setFilter(new FilterList(
+          FilterList.Operator.MUST_PASS_ALL,
+          columnFilters,
+          new ColumnVersionsFilter(versionedColumns)));
     } else {
       get.setFilter(columnFilters);
     }
@@ -293,6 +344,77 @@ public final class HBaseDataRequestAdapter {
     return get;
   }
 
+  /**
+   * Adds the max-versions and time range of an unpaged column request to a list of versioned
+   * columns, for the {@link ColumnVersionsFilter}.
+   *
+   * @param versionedColumns List of versioned columns to add the column to.
+   * @param columnRequest Request for the column.
+   * @param hbaseColumnName HBase column of the request. The qualifier of the HBase column is a
+   *     qualifier prefix when the request is for a map-type family.
+   */
+  private void addVersionedColumn(
+      final List<ColumnVersionsFilter.Column> versionedColumns,
+      final KijiDataRequest.Column columnRequest,
+      final HBaseColumnName hbaseColumnName
+  ) {
+    if (!columnRequest.isPagingEnabled()) {
+      versionedColumns.add(new ColumnVersionsFilter.Column(
+          hbaseColumnName.getFamily(),
+          hbaseColumnName.getQualifier(),
+          !columnRequest.getColumnName().isFullyQualified(),
+          columnRequest.getMaxVersions(),
+          mKijiDataRequest.getMinTimestamp(),
+          mKijiDataRequest.getMaxTimestamp()));
+    }
+  }
+
+  /**
+   * Reports whether the column requests have different max-versions, in which case the request
+   * benefits from the {@link ColumnVersionsFilter}.
+   *
+   * @param versionedColumns Unpaged columns of the request.
+   * @return whether the columns have different max-versions.
+   */
+  private static boolean needsVersionsFilter(
+      final List<ColumnVersionsFilter.Column> versionedColumns
+  ) {
+    for (ColumnVersionsFilter.Column column : versionedColumns) {
+      if (column.getMaxVersions() != versionedColumns.get(0).getMaxVersions()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reports whether an error of an HBase operation was caused by region servers which do not have
+   * the {@link ColumnVersionsFilter} on their classpath.
+   *
+   * @param error of an HBase operation.
+   * @return whether the error was caused by the missing filter class.
+   */
+  static boolean isMissingVersionsFilterError(final Throwable error) {
+    final String filterClassName = ColumnVersionsFilter.class.getName();
+    for (Throwable cause = error; null != cause; cause = cause.getCause()) {
+      if (cause instanceof RetriesExhaustedWithDetailsException) {
+        // Errors of batched operations are reported per action.
+        for (Throwable actionError : ((RetriesExhaustedWithDetailsException) cause).getCauses()) {
+          if (isMissingVersionsFilterError(actionError)) {
+            return true;
+          }
+        }
+      }
+      // Includes UnknownScannerException, raised when a scanner can not be opened.
+      if (((cause instanceof DoNotRetryIOException) || (cause instanceof ClassNotFoundException))
+          && (null != cause.getMessage())
+          && cause.getMessage().contains(filterClassName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Configures a Scan with the options specified on HBaseScanOptions.
    * Whenever an option is not specified on <code>scanOptions</code>,
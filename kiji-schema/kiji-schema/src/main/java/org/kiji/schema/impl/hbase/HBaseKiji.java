@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import org.apache.curator.framework.CuratorFramework;
@@ -58,6 +59,7 @@ import org.kiji.schema.avro.TableLayoutDesc;
 import org.kiji.schema.hbase.HBaseFactory;
 import org.kiji.schema.hbase.KijiManagedHBaseTableName;
 import org.kiji.schema.impl.HTableInterfaceFactory;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.impl.Versions;
 import org.kiji.schema.layout.InvalidLayoutException;
 import org.kiji.schema.layout.KijiTableLayout;
@@ -153,6 +155,9 @@ public final class HBaseKiji implements Kiji {
    */
   private KijiSecurityManager mSecurityManager = null;
 
+  /** Runtime metrics of this instance, disabled until a registry is set. */
+  private final KijiMetrics mMetrics = new KijiMetrics();
+
   /**
    * Creates a new <code>HBaseKiji</code> instance.
    *
@@ -200,7 +205,7 @@ public final class HBaseKiji implements Kiji {
       close();
       throw kie;
     }
-    mSchemaTable = new HBaseSchemaTable(mURI, mConf, mHTableFactory);
+    mSchemaTable = new HBaseSchemaTable(mURI, mConf, mHTableFactory, mMetrics);
     mMetaTable = new HBaseMetaTable(mURI, mConf, mSchemaTable, mHTableFactory);
 
     LOG.debug("Kiji instance '{}' is now opened.", mURI);
@@ -367,6 +372,27 @@ public final class HBaseKiji implements Kiji {
     return mSecurityManager;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void setMetricRegistry(MetricRegistry registry) {
+    mMetrics.setRegistry(registry);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public MetricRegistry getMetricRegistry() {
+    return mMetrics.getRegistry();
+  }
+
+  /**
+   * Returns the runtime metrics of this instance.
+   *
+   * @return the runtime metrics of this instance.
+   */
+  public KijiMetrics getMetrics() {
+    return mMetrics;
+  }
+
   /** {@inheritDoc} */
   @Override
   public HBaseKijiTable openTable(String tableName) throws IOException {
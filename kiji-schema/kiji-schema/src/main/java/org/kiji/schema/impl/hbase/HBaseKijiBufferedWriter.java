@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.apache.hadoop.hbase.HConstants;
@@ -51,6 +52,7 @@ import org.kiji.schema.KijiTableNotFoundException;
 import org.kiji.schema.NoSuchColumnException;
 import org.kiji.schema.hbase.HBaseColumnName;
 import org.kiji.schema.impl.DefaultKijiCellEncoderFactory;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.impl.LayoutConsumer;
 import org.kiji.schema.layout.HBaseColumnNameTranslator;
 import org.kiji.schema.layout.KijiTableLayout;
@@ -81,6 +83,9 @@ public final class HBaseKijiBufferedWriter implements KijiBufferedWriter {
   /** KijiTable this writer is attached to. */
   private final HBaseKijiTable mTable;
 
+  /** Timer of the flushes, or null if the table's Kiji instance is not metered. */
+  private final Timer mFlushTimer;
+
   /** Layout consumer registration resource. */
   private final LayoutConsumer.Registration mLayoutConsumerRegistration;
 
@@ -140,7 +145,8 @@ public final class HBaseKijiBufferedWriter implements KijiBufferedWriter {
             mTable.getURI(),
             layout,
             mTable.getKiji().getSchemaTable(),
-            DefaultKijiCellEncoderFactory.get());
+            DefaultKijiCellEncoderFactory.get())
+            .withMetrics(mTable.getMetrics(), mTable.getURI());
         // If the capsule is null this is the initial setup and we do not need a log message.
         if (mWriterLayoutCapsule != null) {
           LOG.debug(
@@ -176,6 +182,8 @@ public final class HBaseKijiBufferedWriter implements KijiBufferedWriter {
    */
   public HBaseKijiBufferedWriter(HBaseKijiTable table) throws IOException {
     mTable = table;
+    mFlushTimer = mTable.getMetrics().getTableTimer(
+        mTable.getURI(), KijiMetrics.BUFFERED_WRITER_FLUSH);
     try {
       mHTable = mTable.openHTableConnection();
     } catch (TableNotFoundException e) {
@@ -470,18 +478,23 @@ public final class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     synchronized (mInternalLock) {
       Preconditions.checkState(mState == State.OPEN,
           "Cannot flush BufferedWriter instance %s in state %s.", this, mState);
-      if (mDeleteBuffer.size() > 0) {
-        mHTable.delete(mDeleteBuffer);
-        mDeleteBuffer.clear();
-      }
-      if (mPutBuffer.size() > 0) {
-        for (Put put : mPutBuffer.values()) {
-          mHTable.put(put);
+      final Timer.Context timerContext = KijiMetrics.time(mFlushTimer);
+      try {
+        if (mDeleteBuffer.size() > 0) {
+          mHTable.delete(mDeleteBuffer);
+          mDeleteBuffer.clear();
+        }
+        if (mPutBuffer.size() > 0) {
+          for (Put put : mPutBuffer.values()) {
+            mHTable.put(put);
+          }
+          mHTable.flushCommits();
+          mPutBuffer.clear();
         }
-        mHTable.flushCommits();
-        mPutBuffer.clear();
+        mCurrentWriteBufferSize = 0L;
+      } finally {
+        KijiMetrics.stop(timerContext);
       }
-      mCurrentWriteBufferSize = 0L;
     }
   }
 
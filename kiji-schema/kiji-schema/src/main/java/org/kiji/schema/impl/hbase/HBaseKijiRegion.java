@@ -42,7 +42,7 @@ final class HBaseKijiRegion implements KijiRegion {
    * Constructs a new HBaseKijiRegion backed by an HRegionInfo.
    *
    * @param hRegionInfo The underlying HRegionInfo.
-   * @param locations The HRegionLocations that this region spans.
+   * @param locations The HRegionLocations of the region servers serving this region.
    */
   HBaseKijiRegion(HRegionInfo hRegionInfo, List<HRegionLocation> locations) {
     mHRegionInfo = hRegionInfo;
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Result;
@@ -38,6 +39,7 @@ import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiResult;
 import org.kiji.schema.KijiResultScanner;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.layout.HBaseColumnNameTranslator;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.impl.CellDecoderProvider;
@@ -74,6 +76,7 @@ public class HBaseKijiResultScanner<T> implements KijiResultScanner<T> {
   private final AtomicReference<State> mState = new AtomicReference<State>(State.UNINITIALIZED);
   private final KijiDataRequest mRequest;
   private final HBaseKijiTable mTable;
+  private final Timer mNextTimer;
   private final Scan mScan;
   private final KijiTableLayout mLayout;
   private final CellDecoderProvider mDecoderProvider;
@@ -109,6 +112,7 @@ public class HBaseKijiResultScanner<T> implements KijiResultScanner<T> {
   ) throws IOException {
     mRequest = request;
     mTable = table;
+    mNextTimer = mTable.getMetrics().getTableTimer(mTable.getURI(), KijiMetrics.SCANNER_NEXT);
     mScan = scan;
     mLayout = layout;
     mDecoderProvider = decoderProvider;
@@ -191,8 +195,9 @@ public class HBaseKijiResultScanner<T> implements KijiResultScanner<T> {
     if (null == next) {
       throw new NoSuchElementException();
     }
-    mNextResult = getNextResult();
+    final Timer.Context timerContext = KijiMetrics.time(mNextTimer);
     try {
+      mNextResult = getNextResult();
       return HBaseKijiResult.create(
           mEidFactory.getEntityIdFromHBaseRowKey(next.getRow()),
           mRequest,
@@ -203,6 +208,8 @@ public class HBaseKijiResultScanner<T> implements KijiResultScanner<T> {
           mDecoderProvider);
     } catch (IOException e) {
       throw new KijiIOException(e);
+    } finally {
+      KijiMetrics.stop(timerContext);
     }
   }
 
@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Result;
@@ -44,6 +45,7 @@ import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiRowData;
 import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.layout.impl.CellDecoderProvider;
 
 /**
@@ -66,6 +68,9 @@ public final class HBaseKijiRowScanner implements KijiRowScanner {
   /** The table being scanned. */
   private final HBaseKijiTable mTable;
 
+  /** Timer of the calls to next(), or null if the table's Kiji instance is not metered. */
+  private final Timer mNextTimer;
+
   /** HBase scan specification. */
   private final Scan mScan;
 
@@ -224,6 +229,7 @@ public final class HBaseKijiRowScanner implements KijiRowScanner {
   public HBaseKijiRowScanner(Options options) throws IOException {
     mDataRequest = options.getDataRequest();
     mTable = options.getTable();
+    mNextTimer = mTable.getMetrics().getTableTimer(mTable.getURI(), KijiMetrics.SCANNER_NEXT);
     mScan = options.getScan();
     mCellDecoderProvider = options.getCellDecoderProvider();
     mReopenScannerOnTimeout = options.getReopenScannerOnTimeout();
@@ -364,18 +370,21 @@ public final class HBaseKijiRowScanner implements KijiRowScanner {
         // Comply with the Iterator interface:
         throw new NoSuchElementException();
       }
-      final Result result = mNextResult;
-      mLastReturnedKey = result.getRow();
+      final Timer.Context timerContext = KijiMetrics.time(mNextTimer);
+      try {
+        final Result result = mNextResult;
+        mLastReturnedKey = result.getRow();
 
-      // Prefetch the next row for hasNext():
-      mNextResult = getNextResult();
+        // Prefetch the next row for hasNext():
+        mNextResult = getNextResult();
 
-      // Decode the HBase result into a KijiRowData:
-      try {
+        // Decode the HBase result into a KijiRowData:
         final EntityId entityId = mEntityIdFactory.getEntityIdFromHBaseRowKey(result.getRow());
         return new HBaseKijiRowData(mTable, mDataRequest, entityId, result, mCellDecoderProvider);
       } catch (IOException ioe) {
         throw new KijiIOException(ioe);
+      } finally {
+        KijiMetrics.stop(timerContext);
       }
     }
 
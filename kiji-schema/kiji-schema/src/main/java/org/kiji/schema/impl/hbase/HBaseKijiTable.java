@@ -22,6 +22,7 @@ package org.kiji.schema.impl.hbase;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -67,6 +68,7 @@ import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.hbase.HBaseFactory;
 import org.kiji.schema.hbase.KijiManagedHBaseTableName;
 import org.kiji.schema.impl.HTableInterfaceFactory;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.impl.LayoutConsumer;
 import org.kiji.schema.impl.LayoutConsumer.Registration;
 import org.kiji.schema.layout.HBaseColumnNameTranslator;
@@ -152,6 +154,9 @@ public final class HBaseKijiTable implements KijiTable {
    **/
   private final TableLayoutMonitor mLayoutMonitor;
 
+  /** Whether the region servers of this table were found to lack the ColumnVersionsFilter. */
+  private final AtomicBoolean mVersionsFilterMissing = new AtomicBoolean(false);
+
   /**
    * Construct an opened Kiji table stored in HBase.
    *
@@ -233,6 +238,15 @@ public final class HBaseKijiTable implements KijiTable {
     return mKiji;
   }
 
+  /**
+   * Returns the runtime metrics of the Kiji instance of this table.
+   *
+   * @return the runtime metrics of the Kiji instance of this table.
+   */
+  public KijiMetrics getMetrics() {
+    return mKiji.getMetrics();
+  }
+
   /** {@inheritDoc} */
   @Override
   public String getName() {
@@ -320,6 +334,37 @@ public final class HBaseKijiTable implements KijiTable {
     return HBaseColumnNameTranslator.from(getLayout());
   }
 
+  /**
+   * Reports whether requests on this table may enforce the max-versions of each column on the
+   * region servers, with a {@link ColumnVersionsFilter}.
+   *
+   * @return whether the server-side versions filter is enabled and was not found missing from
+   *     the region servers of this table.
+   */
+  boolean isServerSideVersionsFilterEnabled() {
+    return HBaseDataRequestAdapter.SERVER_SIDE_VERSIONS_FILTER && !mVersionsFilterMissing.get();
+  }
+
+  /**
+   * Disables the server-side versions filter for this table if an error of an HBase operation was
+   * caused by region servers which do not have the filter on their classpath.
+   *
+   * @param error of an HBase operation on this table.
+   * @return whether the error was caused by the missing filter, in which case the operation should
+   *     be retried without it.
+   */
+  boolean disableServerSideVersionsFilterOn(final Throwable error) {
+    if (!HBaseDataRequestAdapter.isMissingVersionsFilterError(error)) {
+      return false;
+    }
+    if (mVersionsFilterMissing.compareAndSet(false, true)) {
+      LOG.warn("Region servers of table {} do not have {} on their classpath: "
+          + "max-versions of columns are now enforced by the client.",
+          mTableURI, ColumnVersionsFilter.class.getName());
+    }
+    return true;
+  }
+
   /** {@inheritDoc} */
   @Override
   public KijiTableReader openTableReader() {
@@ -389,9 +434,11 @@ public final class HBaseKijiTable implements KijiTable {
         LOG.debug("Casting HTableInterface to an HTable.");
         final HTable concreteHBaseTable = (HTable) htable;
         for (HRegionInfo region: regions) {
-          List<HRegionLocation> hLocations =
-              concreteHBaseTable.getRegionsInRange(region.getStartKey(), region.getEndKey());
-          result.add(new HBaseKijiRegion(region, hLocations));
+          // The location of the region itself: a range lookup up to the end key of the region
+          // may also return the next region, whose start key is that end key.
+          final HRegionLocation hLocation =
+              concreteHBaseTable.getRegionLocation(region.getStartKey());
+          result.add(new HBaseKijiRegion(region, Lists.newArrayList(hLocation)));
         }
       } else {
         LOG.warn("Unable to cast HTableInterface {} to an HTable.  "
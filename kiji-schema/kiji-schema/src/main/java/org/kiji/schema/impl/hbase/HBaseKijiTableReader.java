@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -49,6 +50,7 @@ import org.kiji.schema.InternalKijiError;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiDataRequestValidator;
+import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiPartition;
 import org.kiji.schema.KijiResult;
 import org.kiji.schema.KijiResultScanner;
@@ -59,10 +61,9 @@ import org.kiji.schema.KijiTableReaderBuilder;
 import org.kiji.schema.KijiTableReaderBuilder.OnDecoderCacheMiss;
 import org.kiji.schema.NoSuchColumnException;
 import org.kiji.schema.SpecificCellDecoderFactory;
-import org.kiji.schema.filter.KijiRowFilter;
 import org.kiji.schema.filter.KijiRowFilterApplicator;
-import org.kiji.schema.hbase.HBaseScanOptions;
 import org.kiji.schema.impl.BoundColumnReaderSpec;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.impl.LayoutConsumer;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.ColumnReaderSpec;
@@ -105,6 +106,12 @@ public final class HBaseKijiTableReader implements KijiTableReader {
   /** Layout consumer registration resource. */
   private final LayoutConsumer.Registration mLayoutConsumerRegistration;
 
+  /** Timer of single row gets, or null if metrics are disabled. */
+  private final Timer mGetTimer;
+
+  /** Timer of bulk gets, or null if metrics are disabled. */
+  private final Timer mBulkGetTimer;
+
   /**
    * Encapsulation of all table layout related state necessary for the operation of this reader.
    * Can be hot swapped to reflect a table layout update.
@@ -202,7 +209,7 @@ public final class HBaseKijiTableReader implements KijiTableReader {
             layout.getDesc().getLayoutId());
       }
       mReaderLayoutCapsule = new ReaderLayoutCapsule(
-          provider,
+          provider.withMetrics(mTable.getMetrics(), mTable.getURI()),
           layout,
           HBaseColumnNameTranslator.from(layout));
     }
@@ -275,6 +282,8 @@ public final class HBaseKijiTableReader implements KijiTableReader {
       final Map<KijiColumnName, CellSpec> cellSpecOverrides
   ) throws IOException {
     mTable = table;
+    mGetTimer = mTable.getMetrics().getTableTimer(mTable.getURI(), KijiMetrics.GET);
+    mBulkGetTimer = mTable.getMetrics().getTableTimer(mTable.getURI(), KijiMetrics.BULK_GET);
     mCellSpecOverrides = cellSpecOverrides;
     mOnDecoderCacheMiss = KijiTableReaderBuilder.DEFAULT_CACHE_MISS;
     mOverrides = null;
@@ -312,6 +321,8 @@ public final class HBaseKijiTableReader implements KijiTableReader {
       final Multimap<KijiColumnName, ColumnReaderSpec> alternatives
   ) throws IOException {
     mTable = table;
+    mGetTimer = mTable.getMetrics().getTableTimer(mTable.getURI(), KijiMetrics.GET);
+    mBulkGetTimer = mTable.getMetrics().getTableTimer(mTable.getURI(), KijiMetrics.BULK_GET);
     mOnDecoderCacheMiss = onDecoderCacheMiss;
 
     final KijiTableLayout layout = mTable.getLayout();
@@ -371,19 +382,15 @@ public final class HBaseKijiTableReader implements KijiTableReader {
     final KijiTableLayout tableLayout = capsule.getLayout();
     validateRequestAgainstLayout(dataRequest, tableLayout);
 
-    // Construct an HBase Get to send to the HTable.
-    HBaseDataRequestAdapter hbaseRequestAdapter =
-        new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator());
-    Get hbaseGet;
+    // Construct an HBase Get and send it to the HTable.
+    final Result result;
     try {
-      hbaseGet = hbaseRequestAdapter.toGet(entityId, tableLayout);
+      result = getHBaseResult(entityId, dataRequest, capsule);
     } catch (InvalidLayoutException e) {
       // The table layout should never be invalid at this point, since we got it from a valid
       // opened table.  If it is, there's something seriously wrong.
       throw new InternalKijiError(e);
     }
-    // Send the HTable Get.
-    final Result result = hbaseGet.hasFamilies() ? doHBaseGet(hbaseGet) : new Result();
 
     // Parse the result.
     return new HBaseKijiRowData(
@@ -418,10 +425,7 @@ public final class HBaseKijiTableReader implements KijiTableReader {
     final ReaderLayoutCapsule capsule = mReaderLayoutCapsule;
     final KijiTableLayout tableLayout = capsule.getLayout();
     validateRequestAgainstLayout(dataRequest, tableLayout);
-    final HBaseDataRequestAdapter hbaseDataRequestAdapter =
-        new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator());
-    final Get get = hbaseDataRequestAdapter.toGet(entityId, tableLayout);
-    final Result result = get.hasFamilies() ? doHBaseGet(get) : new Result();
+    final Result result = getHBaseResult(entityId, dataRequest, capsule);
     return HBaseKijiResult.create(
         entityId,
         dataRequest,
@@ -448,14 +452,9 @@ public final class HBaseKijiTableReader implements KijiTableReader {
     final ReaderLayoutCapsule capsule = mReaderLayoutCapsule;
     final KijiTableLayout tableLayout = capsule.getLayout();
     validateRequestAgainstLayout(dataRequest, tableLayout);
-    final HBaseDataRequestAdapter hbaseRequestAdapter =
-        new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator());
-
-    // Construct a list of hbase Gets to send to the HTable.
-    final List<Get> hbaseGetList = makeGetList(entityIds, tableLayout, hbaseRequestAdapter);
 
-    // Send the HTable Gets.
-    final Result[] results = doHBaseGet(hbaseGetList);
+    // Construct a list of hbase Gets and send them to the HTable.
+    final Result[] results = getHBaseResults(entityIds, dataRequest, capsule);
     Preconditions.checkState(entityIds.size() == results.length);
 
     // Parse the results.  If a Result is null, then the corresponding KijiRowData should also
@@ -481,14 +480,9 @@ public final class HBaseKijiTableReader implements KijiTableReader {
     final ReaderLayoutCapsule capsule = mReaderLayoutCapsule;
     final KijiTableLayout tableLayout = capsule.getLayout();
     validateRequestAgainstLayout(dataRequest, tableLayout);
-    final HBaseDataRequestAdapter hbaseRequestAdapter =
-        new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator());
 
-    // Construct a list of hbase Gets to send to the HTable.
-    final List<Get> hbaseGetList = makeGetList(entityIds, tableLayout, hbaseRequestAdapter);
-
-    // Send the HTable Gets.
-    final Result[] results = doHBaseGet(hbaseGetList);
+    // Construct a list of hbase Gets and send them to the HTable.
+    final Result[] results = getHBaseResults(entityIds, dataRequest, capsule);
     Preconditions.checkState(entityIds.size() == results.length);
 
     final List<KijiResult<T>> kijiResults = Lists.newArrayList();
@@ -525,38 +519,25 @@ public final class HBaseKijiTableReader implements KijiTableReader {
         "Cannot get scanner from KijiTableReader instance %s in state %s.", this, state);
 
     try {
-      EntityId startRow = kijiScannerOptions.getStartRow();
-      EntityId stopRow = kijiScannerOptions.getStopRow();
-      KijiRowFilter rowFilter = kijiScannerOptions.getKijiRowFilter();
-      HBaseScanOptions scanOptions = kijiScannerOptions.getHBaseScanOptions();
-
       final ReaderLayoutCapsule capsule = mReaderLayoutCapsule;
-      final HBaseDataRequestAdapter dataRequestAdapter =
-          new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator());
       final KijiTableLayout tableLayout = capsule.getLayout();
       validateRequestAgainstLayout(dataRequest, tableLayout);
-      final Scan scan = dataRequestAdapter.toScan(tableLayout, scanOptions);
-
-      if (null != startRow) {
-        scan.setStartRow(startRow.getHBaseRowKey());
-      }
-      if (null != stopRow) {
-        scan.setStopRow(stopRow.getHBaseRowKey());
-      }
-      scan.setCaching(kijiScannerOptions.getRowCaching());
-
-      if (null != rowFilter) {
-        final KijiRowFilterApplicator applicator = KijiRowFilterApplicator.create(
-            rowFilter, tableLayout, mTable.getKiji().getSchemaTable());
-        applicator.applyTo(scan);
-      }
-
-      return new HBaseKijiRowScanner(new HBaseKijiRowScanner.Options()
+      final HBaseKijiRowScanner.Options options = new HBaseKijiRowScanner.Options()
           .withDataRequest(dataRequest)
           .withTable(mTable)
-          .withScan(scan)
           .withCellDecoderProvider(capsule.getCellDecoderProvider())
-          .withReopenScannerOnTimeout(kijiScannerOptions.getReopenScannerOnTimeout()));
+          .withReopenScannerOnTimeout(kijiScannerOptions.getReopenScannerOnTimeout());
+      final boolean serverSideVersionsFilter = mTable.isServerSideVersionsFilterEnabled();
+      try {
+        return new HBaseKijiRowScanner(options.withScan(toScan(
+            dataRequest, capsule, kijiScannerOptions, serverSideVersionsFilter)));
+      } catch (KijiIOException kioe) {
+        if (!serverSideVersionsFilter || !mTable.disableServerSideVersionsFilterOn(kioe)) {
+          throw kioe;
+        }
+        return new HBaseKijiRowScanner(
+            options.withScan(toScan(dataRequest, capsule, kijiScannerOptions, false)));
+      }
     } catch (InvalidLayoutException e) {
       // The table layout should never be invalid at this point, since we got it from a valid
       // opened table.  If it is, there's something seriously wrong.
@@ -598,33 +579,33 @@ public final class HBaseKijiTableReader implements KijiTableReader {
         "Cannot get scanner from KijiTableReader instance %s in state %s.", this, state);
 
     final ReaderLayoutCapsule capsule = mReaderLayoutCapsule;
-    final HBaseDataRequestAdapter adapter =
-        new HBaseDataRequestAdapter(request, capsule.getColumnNameTranslator());
     final KijiTableLayout layout = capsule.getLayout();
     validateRequestAgainstLayout(request, layout);
-    final Scan scan = adapter.toScan(layout, scannerOptions.getHBaseScanOptions());
-    if (null != scannerOptions.getStartRow()) {
-      scan.setStartRow(scannerOptions.getStartRow().getHBaseRowKey());
-    }
-    if (null != scannerOptions.getStopRow()) {
-      scan.setStopRow(scannerOptions.getStopRow().getHBaseRowKey());
-    }
-    scan.setCaching(scannerOptions.getRowCaching());
-
-    if (null != scannerOptions.getKijiRowFilter()) {
-      final KijiRowFilterApplicator applicator = KijiRowFilterApplicator.create(
-          scannerOptions.getKijiRowFilter(), layout, mTable.getKiji().getSchemaTable());
-      applicator.applyTo(scan);
+    final boolean serverSideVersionsFilter = mTable.isServerSideVersionsFilterEnabled();
+    Scan scan = toScan(request, capsule, scannerOptions, serverSideVersionsFilter);
+    try {
+      return new HBaseKijiResultScanner<T>(
+          request,
+          mTable,
+          scan,
+          capsule.getLayout(),
+          capsule.getCellDecoderProvider(),
+          capsule.getColumnNameTranslator(),
+          scannerOptions.getReopenScannerOnTimeout());
+    } catch (IOException ioe) {
+      if (!serverSideVersionsFilter || !mTable.disableServerSideVersionsFilterOn(ioe)) {
+        throw ioe;
+      }
+      scan = toScan(request, capsule, scannerOptions, false);
+      return new HBaseKijiResultScanner<T>(
+          request,
+          mTable,
+          scan,
+          capsule.getLayout(),
+          capsule.getCellDecoderProvider(),
+          capsule.getColumnNameTranslator(),
+          scannerOptions.getReopenScannerOnTimeout());
     }
-
-    return new HBaseKijiResultScanner<T>(
-        request,
-        mTable,
-        scan,
-        capsule.getLayout(),
-        capsule.getCellDecoderProvider(),
-        capsule.getColumnNameTranslator(),
-        scannerOptions.getReopenScannerOnTimeout());
   }
 
   /** {@inheritDoc} */
@@ -684,6 +665,108 @@ public final class HBaseKijiTableReader implements KijiTableReader {
     return rowDataList;
   }
 
+  /**
+   * Reads a row from HBase.
+   *
+   * <p>
+   *   If the region servers turn out not to have the {@link ColumnVersionsFilter}, the row is read
+   *   again without it, and the filter is no longer sent for this table.
+   * </p>
+   *
+   * @param entityId of the row to read.
+   * @param dataRequest Specification of the data to read from the row.
+   * @param capsule Layout of the table and its column name translator.
+   * @return the HBase Result, empty if the request has no HBase family.
+   * @throws IOException on I/O error.
+   */
+  private Result getHBaseResult(
+      final EntityId entityId,
+      final KijiDataRequest dataRequest,
+      final ReaderLayoutCapsule capsule
+  ) throws IOException {
+    final boolean serverSideVersionsFilter = mTable.isServerSideVersionsFilterEnabled();
+    final Get get = new HBaseDataRequestAdapter(
+        dataRequest, capsule.getColumnNameTranslator(), serverSideVersionsFilter)
+        .toGet(entityId, capsule.getLayout());
+    if (!get.hasFamilies()) {
+      return new Result();
+    }
+    try {
+      return doHBaseGet(get);
+    } catch (IOException ioe) {
+      if (!serverSideVersionsFilter || !mTable.disableServerSideVersionsFilterOn(ioe)) {
+        throw ioe;
+      }
+      return doHBaseGet(
+          new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator(), false)
+              .toGet(entityId, capsule.getLayout()));
+    }
+  }
+
+  /**
+   * Reads rows from HBase, falling back as {@link #getHBaseResult} does.
+   *
+   * @param entityIds of the rows to read.
+   * @param dataRequest Specification of the data to read from each row.
+   * @param capsule Layout of the table and its column name translator.
+   * @return the HBase Results, one per entity id.
+   * @throws IOException on I/O error.
+   */
+  private Result[] getHBaseResults(
+      final List<EntityId> entityIds,
+      final KijiDataRequest dataRequest,
+      final ReaderLayoutCapsule capsule
+  ) throws IOException {
+    final boolean serverSideVersionsFilter = mTable.isServerSideVersionsFilterEnabled();
+    try {
+      return doHBaseGet(makeGetList(entityIds, capsule.getLayout(), new HBaseDataRequestAdapter(
+          dataRequest, capsule.getColumnNameTranslator(), serverSideVersionsFilter)));
+    } catch (IOException ioe) {
+      if (!serverSideVersionsFilter || !mTable.disableServerSideVersionsFilterOn(ioe)) {
+        throw ioe;
+      }
+      return doHBaseGet(makeGetList(entityIds, capsule.getLayout(),
+          new HBaseDataRequestAdapter(dataRequest, capsule.getColumnNameTranslator(), false)));
+    }
+  }
+
+  /**
+   * Constructs the HBase Scan of a scanner.
+   *
+   * @param dataRequest Specification of the data to read from each row.
+   * @param capsule Layout of the table and its column name translator.
+   * @param scannerOptions Options of the scanner.
+   * @param serverSideVersionsFilter whether to enforce the max-versions of each column on the
+   *     region servers.
+   * @return the HBase Scan.
+   * @throws IOException on I/O error.
+   */
+  private Scan toScan(
+      final KijiDataRequest dataRequest,
+      final ReaderLayoutCapsule capsule,
+      final KijiScannerOptions scannerOptions,
+      final boolean serverSideVersionsFilter
+  ) throws IOException {
+    final KijiTableLayout layout = capsule.getLayout();
+    final Scan scan = new HBaseDataRequestAdapter(
+        dataRequest, capsule.getColumnNameTranslator(), serverSideVersionsFilter)
+        .toScan(layout, scannerOptions.getHBaseScanOptions());
+    if (null != scannerOptions.getStartRow()) {
+      scan.setStartRow(scannerOptions.getStartRow().getHBaseRowKey());
+    }
+    if (null != scannerOptions.getStopRow()) {
+      scan.setStopRow(scannerOptions.getStopRow().getHBaseRowKey());
+    }
+    scan.setCaching(scannerOptions.getRowCaching());
+
+    if (null != scannerOptions.getKijiRowFilter()) {
+      final KijiRowFilterApplicator applicator = KijiRowFilterApplicator.create(
+          scannerOptions.getKijiRowFilter(), layout, mTable.getKiji().getSchemaTable());
+      applicator.applyTo(scan);
+    }
+    return scan;
+  }
+
   /**
    * Creates a list of hbase Gets for a set of entityIds.
    *
@@ -740,12 +823,14 @@ public final class HBaseKijiTableReader implements KijiTableReader {
    * @throws IOException on I/O error.
    */
   private Result doHBaseGet(Get get) throws IOException {
+    final Timer.Context context = KijiMetrics.time(mGetTimer);
     final HTableInterface htable = mTable.openHTableConnection();
     try {
       LOG.debug("Sending HBase Get: {}", get);
       return htable.get(get);
     } finally {
       htable.close();
+      KijiMetrics.stop(context);
     }
   }
 
@@ -757,12 +842,14 @@ public final class HBaseKijiTableReader implements KijiTableReader {
    * @throws IOException on I/O error.
    */
   private Result[] doHBaseGet(List<Get> get) throws IOException {
+    final Timer.Context context = KijiMetrics.time(mBulkGetTimer);
     final HTableInterface htable = mTable.openHTableConnection();
     try {
       LOG.debug("Sending bulk HBase Get: {}", get);
       return htable.get(get);
     } finally {
       htable.close();
+      KijiMetrics.stop(context);
     }
   }
 }
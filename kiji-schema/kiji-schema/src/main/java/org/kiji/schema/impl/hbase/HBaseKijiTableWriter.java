@@ -165,7 +165,8 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
           mTable.getURI(),
           layout,
           mTable.getKiji().getSchemaTable(),
-          DefaultKijiCellEncoderFactory.get());
+          DefaultKijiCellEncoderFactory.get())
+          .withMetrics(mTable.getMetrics(), mTable.getURI());
       // If the capsule is null this is the initial setup and we do not need a log message.
       if (mWriterLayoutCapsule != null) {
         LOG.debug(
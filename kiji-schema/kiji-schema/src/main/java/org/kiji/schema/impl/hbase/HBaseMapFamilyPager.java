@@ -20,12 +20,12 @@
 package org.kiji.schema.impl.hbase;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Preconditions;
-import org.apache.hadoop.hbase.client.Get;
-import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,14 +39,6 @@ import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiPager;
 import org.kiji.schema.KijiRowData;
-import org.kiji.schema.filter.Filters;
-import org.kiji.schema.filter.KijiColumnFilter;
-import org.kiji.schema.filter.KijiColumnRangeFilter;
-import org.kiji.schema.filter.StripValueColumnFilter;
-import org.kiji.schema.impl.KijiPaginationFilter;
-import org.kiji.schema.layout.HBaseColumnNameTranslator;
-import org.kiji.schema.layout.KijiTableLayout;
-import org.kiji.schema.util.Debug;
 
 /**
  * HBase implementation of KijiPager for map-type families.
@@ -98,11 +90,11 @@ public final class HBaseMapFamilyPager implements KijiPager {
   /** True only if there is another page of data to read through {@link #next()}. */
   private boolean mHasNext;
 
-  /**
-   * Highest qualifier (according to the HBase bytes comparator) returned so far.
-   * This is the low bound (exclusive) for qualifiers to retrieve next.
-   */
-  private String mMinQualifier = null;
+  /** Data request for the qualifiers of a page, without their values. */
+  private final KijiDataRequest mPageDataRequest;
+
+  /** Cursor over the qualifiers of the family, opened on the first page. */
+  private HBaseRowCursor mCursor = null;
 
   /**
    * Initializes a pager for a map-type family.
@@ -135,6 +127,13 @@ public final class HBaseMapFamilyPager implements KijiPager {
         String.format("Paging is not enabled for column [%s].", family));
     }
 
+    mPageDataRequest = KijiDataRequest.builder()
+        .withTimeRange(mDataRequest.getMinTimestamp(), mDataRequest.getMaxTimestamp())
+        .addColumns(ColumnsDef.create()
+            .withMaxVersions(1)
+            .add(mFamily))
+        .build();
+
     mEntityId = entityId;
     mTable = table;
     mHasNext = true;  // there might be no page to read, but we don't know until we issue an RPC
@@ -173,49 +172,26 @@ public final class HBaseMapFamilyPager implements KijiPager {
     }
     Preconditions.checkArgument(pageSize > 0, "Page size must be >= 1, got %s", pageSize);
 
-    // Clone the column data request template, adjusting the filters to restrict the range
-    // and the number of qualifiers to fetch.
-
-    final KijiColumnFilter filter = Filters.and(
-        new KijiColumnRangeFilter(mMinQualifier, false, null, false),  // qualifier > mMinQualifier
-        mColumnRequest.getFilter(),  // user filter
-        new KijiPaginationFilter(pageSize),  // Select at most one version / qualifier.
-        new StripValueColumnFilter());  // discard the cell content, we just need the qualifiers
-
-    final KijiDataRequest nextPageDataRequest = KijiDataRequest.builder()
-        .withTimeRange(mDataRequest.getMinTimestamp(), mDataRequest.getMaxTimestamp())
-        .addColumns(ColumnsDef.create()
-            .withFilter(filter)
-            .withMaxVersions(1)  // HBase pagination filter forces max-versions to 1
-            .add(mFamily))
-        .build();
-
-    LOG.debug("HBaseMapPager data request: {} and page size {}", nextPageDataRequest, pageSize);
-
-    final KijiTableLayout layout = mTable.getLayout();
-    final HBaseColumnNameTranslator translator = HBaseColumnNameTranslator.from(layout);
-    final HBaseDataRequestAdapter adapter =
-        new HBaseDataRequestAdapter(nextPageDataRequest, translator);
     try {
-      final Get hbaseGet = adapter.toGet(mEntityId, layout);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Sending HBase Get: {} with filter {}",
-            hbaseGet, Debug.toDebugString(hbaseGet.getFilter()));
+      if (null == mCursor) {
+        mCursor = HBaseRowCursor.openQualifierCursor(
+            mTable,
+            mEntityId,
+            mDataRequest,
+            mColumnRequest,
+            mFamily,
+            mColumnRequest.getPageSize());
       }
-      final Result result = doHBaseGet(hbaseGet);
-      LOG.debug("Got {} cells over {} requested", result.size(), pageSize);
+      final List<Cell> cells = mCursor.next(pageSize);
+      LOG.debug("Got {} cells over {} requested", cells.size(), pageSize);
 
       final KijiRowData page =
           // No cell is being decoded here so we don't need a cell decoder provider:
-          new HBaseKijiRowData(mTable, nextPageDataRequest, mEntityId, result, null);
+          new HBaseKijiRowData(mTable, mPageDataRequest, mEntityId, Result.create(cells), null);
 
-      // There is an HBase bug that leads to less KeyValue being returned than expected.
-      // An empty result appears to be a reliable way to detect the end of the iteration.
-      if (result.isEmpty()) {
+      // An empty page marks the end of the iteration.
+      if (cells.isEmpty()) {
         mHasNext = false;
-      } else {
-        // Update the low qualifier bound for the next iteration:
-        mMinQualifier = page.getQualifiers(mFamily.getFamily()).last();
       }
 
       return page;
@@ -225,22 +201,6 @@ public final class HBaseMapFamilyPager implements KijiPager {
     }
   }
 
-  /**
-   * Sends an HBase Get request.
-   *
-   * @param get HBase Get request.
-   * @return the HBase Result.
-   * @throws IOException on I/O error.
-   */
-  private Result doHBaseGet(Get get) throws IOException {
-    final HTableInterface htable = mTable.openHTableConnection();
-    try {
-      return htable.get(get);
-    } finally {
-      htable.close();
-    }
-  }
-
   /** {@inheritDoc} */
   @Override
   public void remove() {
@@ -253,6 +213,12 @@ public final class HBaseMapFamilyPager implements KijiPager {
     final State oldState = mState.getAndSet(State.CLOSED);
     Preconditions.checkState(oldState == State.OPEN,
         "Cannot close MapFamilyPager while in state %s", oldState);
-    mTable.release();
+    try {
+      if (null != mCursor) {
+        mCursor.close();
+      }
+    } finally {
+      mTable.release();
+    }
   }
 }
@@ -22,13 +22,12 @@ package org.kiji.schema.impl.hbase;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.google.common.base.Preconditions;
-import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.client.Get;
-import org.apache.hadoop.hbase.client.HTableInterface;
-import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,17 +36,9 @@ import org.kiji.schema.EntityId;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiColumnPagingNotEnabledException;
 import org.kiji.schema.KijiDataRequest;
-import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.KijiIOException;
-import org.kiji.schema.filter.Filters;
-import org.kiji.schema.filter.KijiColumnFilter;
-import org.kiji.schema.filter.KijiColumnRangeFilter;
-import org.kiji.schema.filter.StripValueColumnFilter;
 import org.kiji.schema.hbase.HBaseColumnName;
-import org.kiji.schema.impl.KijiPaginationFilter;
 import org.kiji.schema.layout.HBaseColumnNameTranslator;
-import org.kiji.schema.layout.KijiTableLayout;
-import org.kiji.schema.util.Debug;
 
 /**
  * Pages through the many qualifiers of a map-type family.
@@ -56,6 +47,11 @@ import org.kiji.schema.util.Debug;
  *   The max-versions parameter on a map-type family applies on a per-qualifier basis.
  *   This does not limit the total number of versions returned for the entire map-type family.
  * </p>
+ *
+ * <p>
+ *   Qualifiers are streamed from the region server through a single-row scanner, opened on the
+ *   first page and kept open across pages. See {@link HBaseRowCursor}.
+ * </p>
  */
 @ApiAudience.Private
 public final class HBaseQualifierPager implements Iterator<String[]>, Closeable {
@@ -79,11 +75,8 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
   /** True only if there is another page of data to read through {@link #next()}. */
   private boolean mHasNext;
 
-  /**
-   * Highest qualifier (according to the HBase bytes comparator) returned so far.
-   * This is the low bound (exclusive) for qualifiers to retrieve next.
-   */
-  private String mMinQualifier = null;
+  /** Cursor over the qualifiers of the family, opened on the first page. */
+  private HBaseRowCursor mCursor = null;
 
   /**
    * Initializes a qualifier pager.
@@ -144,54 +137,32 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
     }
     Preconditions.checkArgument(pageSize > 0, "Page size must be >= 1, got %s", pageSize);
 
-    // Clone the column data request template, adjusting the filters to restrict the range
-    // and the number of qualifiers to fetch.
-
-    final KijiColumnFilter filter = Filters.and(
-        new KijiColumnRangeFilter(mMinQualifier, false, null, false),  // qualifier > mMinQualifier
-        mColumnRequest.getFilter(),  // user filter
-        new KijiPaginationFilter(pageSize),  // Select at most 1 version per qualifier
-        new StripValueColumnFilter());  // discard the cell content, we just need the qualifiers
-
-    final KijiDataRequest nextPageDataRequest = KijiDataRequest.builder()
-        .withTimeRange(mDataRequest.getMinTimestamp(), mDataRequest.getMaxTimestamp())
-        .addColumns(ColumnsDef.create()
-            .withFilter(filter)
-            .withMaxVersions(1)  // HBase pagination filter forces max-versions to 1
-            .add(mFamily))
-        .build();
-
-    LOG.debug("HBaseMapPager data request: {} and page size {}", nextPageDataRequest, pageSize);
-
-    final KijiTableLayout layout = mTable.getLayout();
-    final HBaseColumnNameTranslator translator = HBaseColumnNameTranslator.from(layout);
-    final HBaseDataRequestAdapter adapter =
-        new HBaseDataRequestAdapter(nextPageDataRequest, translator);
     try {
-      final Get hbaseGet = adapter.toGet(mEntityId, layout);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Sending HBase Get: {} with filter {}",
-            hbaseGet, Debug.toDebugString(hbaseGet.getFilter()));
+      if (null == mCursor) {
+        mCursor = HBaseRowCursor.openQualifierCursor(
+            mTable,
+            mEntityId,
+            mDataRequest,
+            mColumnRequest,
+            mFamily,
+            mColumnRequest.getPageSize());
       }
-      final Result result = doHBaseGet(hbaseGet);
-      LOG.debug("Got {} cells over {} requested", result.size(), pageSize);
+      final List<Cell> cells = mCursor.next(pageSize);
+      LOG.debug("Got {} cells over {} requested", cells.size(), pageSize);
 
-      final KeyValue[] kvs = result.raw();
-      final String[] qualifiers = new String[kvs.length];
-      for (int i = 0; i < kvs.length; ++i) {
+      final HBaseColumnNameTranslator translator = mTable.getColumnNameTranslator();
+      final String[] qualifiers = new String[cells.size()];
+      for (int i = 0; i < qualifiers.length; ++i) {
+        final Cell cell = cells.get(i);
         final HBaseColumnName hbaseColumn =
-            new HBaseColumnName(kvs[i].getFamily(), kvs[i].getQualifier());
+            new HBaseColumnName(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell));
         final KijiColumnName kijiColumn = translator.toKijiColumnName(hbaseColumn);
         qualifiers[i] = kijiColumn.getQualifier();
       }
 
-      // There is an HBase bug that leads to less KeyValue being returned than expected.
-      // An empty result appears to be a reliable way to detect the end of the iteration.
-      if (result.isEmpty()) {
+      // An empty page marks the end of the iteration.
+      if (cells.isEmpty()) {
         mHasNext = false;
-      } else {
-        // Update the low qualifier bound for the next iteration:
-        mMinQualifier = qualifiers[qualifiers.length - 1];
       }
 
       return qualifiers;
@@ -201,22 +172,6 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
     }
   }
 
-  /**
-   * Sends an HBase Get request.
-   *
-   * @param get HBase Get request.
-   * @return the HBase Result.
-   * @throws IOException on I/O error.
-   */
-  private Result doHBaseGet(Get get) throws IOException {
-    final HTableInterface htable = mTable.openHTableConnection();
-    try {
-      return htable.get(get);
-    } finally {
-      htable.close();
-    }
-  }
-
   /** {@inheritDoc} */
   @Override
   public void remove() {
@@ -226,6 +181,12 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
   /** {@inheritDoc} */
   @Override
   public void close() throws IOException {
-    mTable.release();
+    try {
+      if (null != mCursor) {
+        mCursor.close();
+      }
+    } finally {
+      mTable.release();
+    }
   }
 }
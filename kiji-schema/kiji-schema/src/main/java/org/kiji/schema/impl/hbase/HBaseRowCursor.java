@@ -0,0 +1,482 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl.hbase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.ScannerTimeoutException;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.ColumnRangeFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.regionserver.LeaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.filter.Filters;
+import org.kiji.schema.filter.KijiColumnFilter;
+import org.kiji.schema.filter.StripValueColumnFilter;
+import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.impl.hbase.HBaseDataRequestAdapter.NameTranslatingFilterContext;
+import org.kiji.schema.layout.HBaseColumnNameTranslator;
+
+/**
+ * Streams the cells of a column of a single row through one HBase scanner.
+ *
+ * <p>
+ *   Pagers used to issue a new Get for each page, each seeking from the start of the column with
+ *   a moving lower bound. A cursor instead keeps one server-side scanner open for the row: the
+ *   scan returns the cells of the row by batches of the page size, and pages are cut out of these
+ *   batches, whatever the size requested for each page.
+ * </p>
+ *
+ * <p>
+ *   If the lease of the scanner expires between two pages, the scanner is reopened after the last
+ *   cell it returned, as many times in a row as {@link HBaseKijiRowScanner} would reopen its own.
+ *   The cursor only holds an HTable while it opens a scanner, and releases its scanner as soon as
+ *   the row has no more cells. The scanner of a cursor which is never closed is reclaimed by the
+ *   region server when its lease expires.
+ * </p>
+ *
+ * <p>
+ *   When prefetching is enabled, the next batch of cells is fetched from a background thread as
+ *   soon as the current one is consumed, so that the caller processes a page while the next one
+ *   is on its way. Prefetching is enabled with the system property {@link #PREFETCH_PROPERTY}.
+ *   Prefetches run on a shared pool of {@link #PREFETCH_THREADS_PROPERTY} daemon threads.
+ * </p>
+ *
+ * <p> Cursors are not thread-safe. </p>
+ */
+@ApiAudience.Private
+public final class HBaseRowCursor implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseRowCursor.class);
+
+  /** System property enabling the prefetching of the next batch of cells of cursors. */
+  public static final String PREFETCH_PROPERTY =
+      "org.kiji.schema.impl.hbase.HBaseRowCursor.PREFETCH";
+
+  /** Whether cursors prefetch the next batch of cells. */
+  private static final boolean PREFETCH =
+      Boolean.parseBoolean(System.getProperty(PREFETCH_PROPERTY, "false"));
+
+  /** System property setting the number of threads prefetching the cells of cursors. */
+  public static final String PREFETCH_THREADS_PROPERTY =
+      "org.kiji.schema.impl.hbase.HBaseRowCursor.PREFETCH_THREADS";
+
+  /** Number of threads prefetching the cells of cursors. */
+  private static final int PREFETCH_THREADS =
+      Integer.parseInt(System.getProperty(PREFETCH_THREADS_PROPERTY, "4"));
+
+  /** Maximum number of times in a row a scanner is reopened after its lease expired. */
+  private static final int MAX_RETRIES_ON_TIMEOUT = Integer.parseInt(
+      System.getProperty(HBaseKijiRowScanner.MAX_RETRIES_ON_TIMEOUT_PROPERTY, "3"));
+
+  /** Executor fetching the next batches of cells of cursors in the background. */
+  private static final ExecutorService PREFETCH_EXECUTOR = createPrefetchExecutor();
+
+  /** Kiji table to read from. */
+  private final HBaseKijiTable mTable;
+
+  /** Scan over the cells of the row. */
+  private final Scan mScan;
+
+  /** Scanner over the cells of the row, or null once the row has no more cells. */
+  private ResultScanner mScanner;
+
+  /** Last cell fetched from the scanner, if any. Reopened scanners resume after this cell. */
+  private Cell mLastCell = null;
+
+  /** Whether to prefetch the next batch of cells. */
+  private final boolean mPrefetch;
+
+  /** Cells fetched and not returned yet. */
+  private final ArrayDeque<Cell> mBuffer = new ArrayDeque<Cell>();
+
+  /** Next batch of cells being fetched in the background, if any. */
+  private Future<Result> mPrefetched = null;
+
+  /** True once the scanner returned all the cells of the row. */
+  private boolean mExhausted = false;
+
+  /**
+   * Opens a cursor.
+   *
+   * @param table Kiji table to read from.
+   * @param scan Scan over a single row. Its batch is the number of cells fetched per RPC.
+   * @param prefetch Whether to prefetch the next batch of cells.
+   * @throws IOException on I/O error.
+   */
+  HBaseRowCursor(
+      final HBaseKijiTable table,
+      final Scan scan,
+      final boolean prefetch
+  ) throws IOException {
+    mTable = table;
+    mScan = scan;
+    mPrefetch = prefetch;
+    mScanner = openScanner();
+  }
+
+  /**
+   * Creates the executor prefetching the cells of cursors.
+   *
+   * @return the executor prefetching the cells of cursors.
+   */
+  private static ExecutorService createPrefetchExecutor() {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        PREFETCH_THREADS,
+        PREFETCH_THREADS,
+        60L,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat(HBaseRowCursor.class.getCanonicalName() + "-%d")
+            .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Opens a cursor over the versions of a fully-qualified column.
+   *
+   * @param table Kiji table to read from.
+   * @param entityId Entity ID of the row to read from.
+   * @param dataRequest Data request with the time range to read.
+   * @param columnRequest Request for the column, with its filter and max-versions.
+   * @param column Fully-qualified column to read.
+   * @param batchSize Number of cells to fetch per RPC.
+   * @return a cursor over the versions of the column, most recent first.
+   * @throws IOException on I/O error.
+   */
+  static HBaseRowCursor openVersionCursor(
+      final HBaseKijiTable table,
+      final EntityId entityId,
+      final KijiDataRequest dataRequest,
+      final KijiDataRequest.Column columnRequest,
+      final KijiColumnName column,
+      final int batchSize
+  ) throws IOException {
+    final HBaseColumnNameTranslator translator = table.getColumnNameTranslator();
+    final HBaseColumnName hbaseColumn = translator.toHBaseColumnName(column);
+    final Scan scan = newRowScan(entityId, dataRequest, batchSize);
+    scan.addColumn(hbaseColumn.getFamily(), hbaseColumn.getQualifier());
+    scan.setMaxVersions(columnRequest.getMaxVersions());
+    final KijiColumnFilter filter = columnRequest.getFilter();
+    if (null != filter) {
+      scan.setFilter(filter.toHBaseFilter(column, new NameTranslatingFilterContext(translator)));
+    }
+    return new HBaseRowCursor(table, scan, PREFETCH);
+  }
+
+  /**
+   * Opens a cursor over the qualifiers of a map-type family. The cursor returns the most recent
+   * version of each qualifier, without its value.
+   *
+   * @param table Kiji table to read from.
+   * @param entityId Entity ID of the row to read from.
+   * @param dataRequest Data request with the time range to read.
+   * @param columnRequest Request for the family, with its filter.
+   * @param family Map-type family to read.
+   * @param batchSize Number of cells to fetch per RPC.
+   * @return a cursor over the qualifiers of the family, in order.
+   * @throws IOException on I/O error.
+   */
+  static HBaseRowCursor openQualifierCursor(
+      final HBaseKijiTable table,
+      final EntityId entityId,
+      final KijiDataRequest dataRequest,
+      final KijiDataRequest.Column columnRequest,
+      final KijiColumnName family,
+      final int batchSize
+  ) throws IOException {
+    final HBaseColumnNameTranslator translator = table.getColumnNameTranslator();
+    final HBaseColumnName hbaseColumn = translator.toHBaseColumnName(family);
+    final Scan scan = newRowScan(entityId, dataRequest, batchSize);
+    scan.addFamily(hbaseColumn.getFamily());
+    scan.setMaxVersions(1);
+
+    // The scan only reads the cells of the family, so the value can be stripped from all cells:
+    final KijiColumnFilter kijiFilter = Filters.and(
+        columnRequest.getFilter(),  // user filter
+        new StripValueColumnFilter());  // discard the cell content, we just need the qualifiers
+    scan.setFilter(new FilterList(
+        FilterList.Operator.MUST_PASS_ALL,
+        new ColumnPrefixFilter(hbaseColumn.getQualifier()),
+        kijiFilter.toHBaseFilter(family, new NameTranslatingFilterContext(translator))));
+    return new HBaseRowCursor(table, scan, PREFETCH);
+  }
+
+  /**
+   * Creates a scan over a single row.
+   *
+   * @param entityId Entity ID of the row to scan.
+   * @param dataRequest Data request with the time range to scan.
+   * @param batchSize Number of cells to fetch per RPC.
+   * @return a scan over the row.
+   * @throws IOException on I/O error.
+   */
+  private static Scan newRowScan(
+      final EntityId entityId,
+      final KijiDataRequest dataRequest,
+      final int batchSize
+  ) throws IOException {
+    final byte[] rowKey = entityId.getHBaseRowKey();
+    final Scan scan = new Scan(rowKey, Arrays.copyOf(rowKey, rowKey.length + 1));
+    scan.setTimeRange(dataRequest.getMinTimestamp(), dataRequest.getMaxTimestamp());
+    scan.setBatch(batchSize);
+    // One batch per RPC, so that the prefetched batch is the next page:
+    scan.setCaching(1);
+    return scan;
+  }
+
+  /**
+   * Returns the next cells of the row.
+   *
+   * @param count Maximum number of cells to return.
+   * @return the next cells of the row. Fewer than {@code count} cells are returned only if the row
+   *     has no more cells.
+   * @throws IOException on I/O error.
+   */
+  public List<Cell> next(final int count) throws IOException {
+    final List<Cell> cells = Lists.newArrayList();
+    while (cells.size() < count) {
+      if (mBuffer.isEmpty() && !fill()) {
+        break;
+      }
+      cells.add(mBuffer.removeFirst());
+    }
+    if (mPrefetch && mBuffer.isEmpty() && !mExhausted && (null == mPrefetched)) {
+      mPrefetched = PREFETCH_EXECUTOR.submit(new Callable<Result>() {
+        @Override
+        public Result call() throws IOException {
+          return fetch();
+        }
+      });
+    }
+    return cells;
+  }
+
+  /**
+   * Fetches the next batch of cells into the buffer.
+   *
+   * @return whether a batch of cells was fetched, false once the row has no more cells.
+   * @throws IOException on I/O error.
+   */
+  private boolean fill() throws IOException {
+    if (mExhausted) {
+      return false;
+    }
+    final Result result;
+    if (null != mPrefetched) {
+      final Future<Result> prefetched = mPrefetched;
+      mPrefetched = null;
+      result = await(prefetched);
+    } else {
+      result = fetch();
+    }
+    if (null == result) {
+      mExhausted = true;
+      closeScanner();
+      return false;
+    }
+    LOG.debug("Fetched a batch of {} cells.", result.size());
+    Collections.addAll(mBuffer, result.rawCells());
+    return true;
+  }
+
+  /**
+   * Fetches the next batch of cells from the scanner, reopening the scanner if its lease expired.
+   *
+   * @return the next batch of cells, or null if the row has no more cells.
+   * @throws IOException on I/O error.
+   */
+  private Result fetch() throws IOException {
+    int nretries = 0;
+    while (true) {
+      final Result result;
+      try {
+        result = mScanner.next();
+      } catch (LeaseException le) {
+        retryOnTimeout(le, ++nretries);
+        continue;
+      } catch (ScannerTimeoutException ste) {
+        retryOnTimeout(ste, ++nretries);
+        continue;
+      }
+      if (null == result) {
+        return null;
+      }
+      final Result resumed = skipFetched(result);
+      if (!resumed.isEmpty()) {
+        mLastCell = resumed.rawCells()[resumed.size() - 1];
+        return resumed;
+      }
+      // A reopened scanner may return a batch of cells fetched already: fetch the next one.
+    }
+  }
+
+  /**
+   * Reopens the scanner after its lease expired, unless it was reopened too many times in a row.
+   *
+   * @param timeout Exception reporting the expired lease.
+   * @param nretries Number of times in a row the scanner has now timed out.
+   * @throws IOException if the scanner was reopened too many times, or on I/O error.
+   */
+  private void retryOnTimeout(final IOException timeout, final int nretries) throws IOException {
+    if (nretries > MAX_RETRIES_ON_TIMEOUT) {
+      throw timeout;
+    }
+    LOG.debug("HBase scanner timed out: reopening it after the last cell fetched.");
+    reopenScanner();
+  }
+
+  /**
+   * Closes the scanner and opens a new one, resuming after the last cell fetched.
+   *
+   * @throws IOException on I/O error.
+   */
+  void reopenScanner() throws IOException {
+    closeScanner();
+    mScanner = openScanner();
+  }
+
+  /**
+   * Opens a scanner over the cells of the row which follow the last cell fetched.
+   *
+   * <p>
+   *   When the scan reads a single family, the scanner starts from the qualifier of the last cell
+   *   fetched. The cells of this qualifier which were fetched already are skipped by
+   *   {@link #skipFetched(Result)}.
+   * </p>
+   *
+   * @return a scanner over the cells of the row which follow the last cell fetched.
+   * @throws IOException on I/O error.
+   */
+  private ResultScanner openScanner() throws IOException {
+    Scan scan = mScan;
+    if ((null != mLastCell) && (1 == mScan.numFamilies())) {
+      scan = new Scan(mScan);
+      final Filter resume =
+          new ColumnRangeFilter(CellUtil.cloneQualifier(mLastCell), true, null, false);
+      scan.setFilter((null == mScan.getFilter())
+          ? resume
+          : new FilterList(FilterList.Operator.MUST_PASS_ALL, resume, mScan.getFilter()));
+    }
+    // Scanners only depend on the connection shared by the HTables of the Kiji table:
+    final HTableInterface htable = mTable.openHTableConnection();
+    try {
+      return htable.getScanner(scan);
+    } finally {
+      htable.close();
+    }
+  }
+
+  /**
+   * Removes from a batch the cells which were fetched already, from a previous scanner.
+   *
+   * @param result Batch of cells fetched from the scanner.
+   * @return the cells of the batch which follow the last cell fetched.
+   */
+  private Result skipFetched(final Result result) {
+    if ((null == mLastCell) || result.isEmpty()) {
+      return result;
+    }
+    final Cell[] cells = result.rawCells();
+    if (KeyValue.COMPARATOR.compare(cells[0], mLastCell) > 0) {
+      return result;
+    }
+    int first = 0;
+    while ((first < cells.length) && (KeyValue.COMPARATOR.compare(cells[first], mLastCell) <= 0)) {
+      first += 1;
+    }
+    return Result.create(Arrays.copyOfRange(cells, first, cells.length));
+  }
+
+  /** Closes the scanner, if it is still open. */
+  private void closeScanner() {
+    if (null != mScanner) {
+      mScanner.close();
+      mScanner = null;
+    }
+  }
+
+  /**
+   * Waits for a prefetched batch of cells.
+   *
+   * @param prefetched Batch of cells being fetched.
+   * @return the fetched batch of cells, or null if the row has no more cells.
+   * @throws IOException on I/O error.
+   */
+  private static Result await(final Future<Result> prefetched) throws IOException {
+    try {
+      return prefetched.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching the next cells of a row.");
+    } catch (ExecutionException ee) {
+      Throwables.propagateIfPossible(ee.getCause(), IOException.class);
+      throw new IOException(ee.getCause());
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    if (null != mPrefetched) {
+      // The scanner must not be closed while a batch is being fetched from it:
+      try {
+        await(mPrefetched);
+      } catch (IOException ioe) {
+        LOG.debug("Discarding error from prefetched cells: {}", ioe.getMessage());
+      } finally {
+        mPrefetched = null;
+      }
+    }
+    closeScanner();
+  }
+}
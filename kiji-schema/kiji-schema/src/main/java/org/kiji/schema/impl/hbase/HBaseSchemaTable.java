@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.codahale.metrics.Timer;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -71,6 +72,7 @@ import org.kiji.schema.avro.SchemaTableBackup;
 import org.kiji.schema.avro.SchemaTableEntry;
 import org.kiji.schema.hbase.KijiManagedHBaseTableName;
 import org.kiji.schema.impl.HTableInterfaceFactory;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.platform.SchemaPlatformBridge;
 import org.kiji.schema.util.ByteStreamArray;
 import org.kiji.schema.util.ByteStreamArray.EncodingException;
@@ -137,6 +139,12 @@ public final class HBaseSchemaTable implements KijiSchemaTable {
   /** KijiURI of the Kiji instance this schema table belongs to. */
   private final KijiURI mURI;
 
+  /** Timer of schema lookups by ID. */
+  private final KijiMetrics.TimerReference mLookupByIdTimer;
+
+  /** Timer of schema lookups by hash. */
+  private final KijiMetrics.TimerReference mLookupByHashTimer;
+
   /** States of a SchemaTable instance. */
   private static enum State {
     UNINITIALIZED,
@@ -244,8 +252,32 @@ public final class HBaseSchemaTable implements KijiSchemaTable {
       KijiURI kijiURI,
       Configuration conf,
       HTableInterfaceFactory tableFactory
+  ) throws IOException {
+    this(kijiURI, conf, tableFactory, new KijiMetrics());
+  }
+
+  /**
+   * Open a connection to the HBase schema table for a Kiji instance, recording lookups in the
+   * runtime metrics of the instance.
+   *
+   * @param kijiURI the KijiURI
+   * @param conf The Hadoop configuration.
+   * @param tableFactory HTableInterface factory.
+   * @param metrics Runtime metrics of the Kiji instance.
+   * @throws IOException on I/O error.
+   */
+  public HBaseSchemaTable(
+      KijiURI kijiURI,
+      Configuration conf,
+      HTableInterfaceFactory tableFactory,
+      KijiMetrics metrics
   ) throws IOException {
     mURI = kijiURI;
+    // The schema table is opened with its Kiji instance, before a registry may be set: keep
+    // references which follow the registry rather than timers.
+    mLookupByIdTimer = metrics.getInstanceTimerReference(mURI, KijiMetrics.SCHEMA_LOOKUP_BY_ID);
+    mLookupByHashTimer =
+        metrics.getInstanceTimerReference(mURI, KijiMetrics.SCHEMA_LOOKUP_BY_HASH);
     mSchemaHashTable = newSchemaHashTable(mURI, conf, tableFactory);
     mSchemaIdTable = newSchemaIdTable(mURI, conf, tableFactory);
     mZKClient = ZooKeeperUtils.getZooKeeperClient(mURI);
@@ -442,18 +474,23 @@ public final class HBaseSchemaTable implements KijiSchemaTable {
     Preconditions.checkState(state == State.OPEN,
         "Cannot get schema entry from SchemaTable instance in state %s.", state);
 
-    final SchemaEntry existingEntry = mSchemaIdMap.get(schemaId);
-    if (existingEntry != null) {
-      return existingEntry;
-    }
+    final Timer.Context context = KijiMetrics.time(mLookupByIdTimer.get());
+    try {
+      final SchemaEntry existingEntry = mSchemaIdMap.get(schemaId);
+      if (existingEntry != null) {
+        return existingEntry;
+      }
 
-    // On a lookup miss from the local schema cache, check to see if we can get the schema
-    // from the original HBase table, cache it locally, and return it.
-    final SchemaTableEntry avroEntry = loadFromIdTable(schemaId);
-    if (avroEntry == null) {
-      return null;
+      // On a lookup miss from the local schema cache, check to see if we can get the schema
+      // from the original HBase table, cache it locally, and return it.
+      final SchemaTableEntry avroEntry = loadFromIdTable(schemaId);
+      if (avroEntry == null) {
+        return null;
+      }
+      return storeInMemory(avroEntry);
+    } finally {
+      KijiMetrics.stop(context);
     }
-    return storeInMemory(avroEntry);
   }
 
   /** {@inheritDoc} */
@@ -470,20 +507,25 @@ public final class HBaseSchemaTable implements KijiSchemaTable {
     Preconditions.checkState(state == State.OPEN,
         "Cannot get schema entry from SchemaTable instance in state %s.", state);
 
-    final SchemaEntry existingEntry = mSchemaHashMap.get(schemaHash);
-    if (existingEntry != null) {
-      return existingEntry;
-    }
+    final Timer.Context context = KijiMetrics.time(mLookupByHashTimer.get());
+    try {
+      final SchemaEntry existingEntry = mSchemaHashMap.get(schemaHash);
+      if (existingEntry != null) {
+        return existingEntry;
+      }
 
-    // On a lookup miss from the local schema cache, check to see if we can get the schema
-    // from the original HBase table, cache it locally, and return it.
-    final SchemaTableEntry avroEntry = loadFromHashTable(schemaHash);
-    if (null == avroEntry) {
-      return null;
+      // On a lookup miss from the local schema cache, check to see if we can get the schema
+      // from the original HBase table, cache it locally, and return it.
+      final SchemaTableEntry avroEntry = loadFromHashTable(schemaHash);
+      if (null == avroEntry) {
+        return null;
+      }
+      final SchemaEntry entry = storeInMemory(avroEntry);
+      Preconditions.checkState(schemaHash.equals(entry.getHash()));
+      return entry;
+    } finally {
+      KijiMetrics.stop(context);
     }
-    final SchemaEntry entry = storeInMemory(avroEntry);
-    Preconditions.checkState(schemaHash.equals(entry.getHash()));
-    return entry;
   }
 
   /** {@inheritDoc} */
@@ -20,12 +20,11 @@
 package org.kiji.schema.impl.hbase;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.google.common.base.Preconditions;
-import org.apache.hadoop.hbase.KeyValue;
-import org.apache.hadoop.hbase.client.Get;
-import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,17 +41,14 @@ import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiPager;
 import org.kiji.schema.KijiRowData;
-import org.kiji.schema.layout.HBaseColumnNameTranslator;
-import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.impl.CellDecoderProvider;
 
 /**
  * Pages through the versions of a fully-qualified column.
  *
  * <p>
- *   Each page of versions is fetched by a Get RPC to the region server.
- *   The page size is translated into the Get's max-versions.
- *   The page offset is translated into the Get's max-timestamp.
+ *   Versions are streamed from the region server through a single-row scanner, opened on the
+ *   first page and kept open across pages. See {@link HBaseRowCursor}.
  * </p>
  */
 @ApiAudience.Private
@@ -92,6 +88,8 @@ public final class HBaseVersionPager implements KijiPager {
   /** True only if there is another page of data to read through {@link #next()}. */
   private boolean mHasNext;
 
+  /** Cursor over the versions of the column, opened on the first page. */
+  private HBaseRowCursor mCursor = null;
 
   /**
    * Initializes an HBaseVersionPager.
@@ -200,24 +198,24 @@ public final class HBaseVersionPager implements KijiPager {
             .add(mColumnName))
         .build();
 
-    final KijiTableLayout layout = mTable.getLayout();
-    final HBaseDataRequestAdapter adapter =
-        new HBaseDataRequestAdapter(nextPageDataRequest, HBaseColumnNameTranslator.from(layout));
     try {
-      final Get hbaseGet = adapter.toGet(mEntityId, layout);
-      LOG.debug("Sending HBase Get: {}", hbaseGet);
-      final Result result = doHBaseGet(hbaseGet);
-      LOG.debug("{} cells were requested, {} cells were received.", pageSize, result.size());
+      if (null == mCursor) {
+        mCursor = HBaseRowCursor.openVersionCursor(
+            mTable, mEntityId, mDataRequest, mColumnRequest, mColumnName, mDefaultPageSize);
+      }
+      final List<Cell> cells = mCursor.next(maxVersions);
+      LOG.debug("{} cells were requested, {} cells were received.", pageSize, cells.size());
+      final Result result = Result.create(cells);
 
-      if (result.size() < maxVersions) {
+      if (cells.size() < maxVersions) {
         // We got fewer versions than the number we expected, that means there are no more
         // versions to page through:
         mHasNext = false;
       } else {
         // track how far we have gone:
-        final KeyValue last = result.raw()[result.raw().length - 1];
+        final Cell last = cells.get(cells.size() - 1);
         mPageMaxTimestamp = last.getTimestamp();  // max-timestamp is exclusive
-        mVersionsCount += result.raw().length;
+        mVersionsCount += cells.size();
 
         if ((mPageMaxTimestamp <= mDataRequest.getMinTimestamp())
             || (mVersionsCount >= mTotalVersions)) {
@@ -232,22 +230,6 @@ public final class HBaseVersionPager implements KijiPager {
     }
   }
 
-  /**
-   * Sends an HBase Get request.
-   *
-   * @param get HBase Get request.
-   * @return the HBase Result.
-   * @throws IOException on I/O error.
-   */
-  private Result doHBaseGet(Get get) throws IOException {
-    final HTableInterface htable = mTable.openHTableConnection();
-    try {
-      return htable.get(get);
-    } finally {
-      htable.close();
-    }
-  }
-
   /** {@inheritDoc} */
   @Override
   public void remove() {
@@ -258,6 +240,12 @@ public final class HBaseVersionPager implements KijiPager {
   @Override
   public void close() throws IOException {
     ResourceTracker.get().unregisterResource(this);
-    mTable.release();
+    try {
+      if (null != mCursor) {
+        mCursor.close();
+      }
+    } finally {
+      mTable.release();
+    }
   }
 }
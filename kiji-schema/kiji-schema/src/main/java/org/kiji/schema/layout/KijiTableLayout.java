@@ -55,6 +55,8 @@ import org.kiji.schema.avro.CellSchema;
 import org.kiji.schema.avro.ColumnDesc;
 import org.kiji.schema.avro.ColumnNameTranslator;
 import org.kiji.schema.avro.FamilyDesc;
+import org.kiji.schema.avro.HashSpec;
+import org.kiji.schema.avro.HashType;
 import org.kiji.schema.avro.LocalityGroupDesc;
 import org.kiji.schema.avro.RowKeyComponent;
 import org.kiji.schema.avro.RowKeyEncoding;
@@ -1034,6 +1036,22 @@ public final class KijiTableLayout {
     }
   }
 
+  /**
+   * Returns the hash type of a row key format.
+   *
+   * @param keysFormat RowKeyFormat or RowKeyFormat2 of a table.
+   * @return the hash type used by the row key format, or null if the format does not hash.
+   */
+  private static HashType getRowKeyHashType(Object keysFormat) {
+    if (keysFormat instanceof RowKeyFormat) {
+      return ((RowKeyFormat) keysFormat).getHashType();
+    } else if (keysFormat instanceof RowKeyFormat2) {
+      final HashSpec salt = ((RowKeyFormat2) keysFormat).getSalt();
+      return (salt == null) ? null : salt.getHashType();
+    }
+    return null;
+  }
+
   /**
    * Computes the effective ProtocolVersion from a layout version string.
    *
@@ -1146,6 +1164,14 @@ public final class KijiTableLayout {
           + Versions.RKF2_LAYOUT_VERSION);
     }
 
+    // The MURMUR3 row key hash type was introduced in version 1.6.
+    if (Versions.MURMUR3_HASH_LAYOUT_VERSION.compareTo(mLayoutVersion) > 0
+        && getRowKeyHashType(mDesc.getKeysFormat()) == HashType.MURMUR3) {
+      throw new InvalidLayoutException(
+          "Support for the MURMUR3 row key hash type begins with layout version "
+          + Versions.MURMUR3_HASH_LAYOUT_VERSION);
+    }
+
     if (!isValidName(getName())) {
       throw new InvalidLayoutException(String.format("Invalid table name: '%s'.", getName()));
     }
@@ -45,8 +45,10 @@ import org.kiji.schema.KijiDataRequest.Column;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiTableReaderBuilder;
 import org.kiji.schema.KijiTableReaderBuilder.OnDecoderCacheMiss;
+import org.kiji.schema.KijiURI;
 import org.kiji.schema.SpecificCellDecoderFactory;
 import org.kiji.schema.impl.BoundColumnReaderSpec;
+import org.kiji.schema.impl.KijiMetrics;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.ColumnReaderSpec;
 import org.kiji.schema.layout.ColumnReaderSpec.AvroDecoderType;
@@ -373,6 +375,32 @@ public final class CellDecoderProvider {
         mOnDecoderCacheMiss);
   }
 
+  /**
+   * Get a {@code CellDecoderProvider} whose column decoders record their decodes in the runtime
+   * metrics of a Kiji instance.  Decoders built for reader specs overriding columns in data
+   * requests are not metered.
+   *
+   * @param metrics Runtime metrics of the Kiji instance of the table.
+   * @param tableURI URI of the table.
+   * @return a metered {@code CellDecoderProvider}, or this provider if metrics are disabled.
+   */
+  public CellDecoderProvider withMetrics(final KijiMetrics metrics, final KijiURI tableURI) {
+    if (!metrics.isEnabled()) {
+      return this;
+    }
+    final ImmutableMap.Builder<KijiColumnName, KijiCellDecoder<?>> columnDecoders =
+        ImmutableMap.builder();
+    for (Map.Entry<KijiColumnName, KijiCellDecoder<?>> entry : mColumnDecoders.entrySet()) {
+      columnDecoders.put(entry.getKey(),
+          metrics.meterDecoder(entry.getValue(), tableURI, entry.getKey().getFamily()));
+    }
+    return new CellDecoderProvider(
+        mLayout,
+        columnDecoders.build(),
+        mReaderSpecDecoders,
+        mOnDecoderCacheMiss);
+  }
+
   /**
    * Gets a cell decoder for the specified column or (map-type) family.
    *
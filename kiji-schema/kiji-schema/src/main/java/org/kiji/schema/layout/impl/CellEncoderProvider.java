@@ -101,6 +101,35 @@ public final class CellEncoderProvider {
     mEncoderMap = ImmutableMap.copyOf(encoderMap);
   }
 
+  /**
+   * Initializes a provider for the specified cell encoders.
+   *
+   * @param encoderMap Cell encoders, by column name.
+   */
+  private CellEncoderProvider(final ImmutableMap<String, KijiCellEncoder> encoderMap) {
+    mEncoderMap = encoderMap;
+  }
+
+  /**
+   * Gets a provider whose cell encoders record their encodes in the runtime metrics of a Kiji
+   * instance.
+   *
+   * @param metrics Runtime metrics of the Kiji instance of the table.
+   * @param tableURI URI of the table this provider is for.
+   * @return a metered provider, or this provider if metrics are disabled.
+   */
+  public CellEncoderProvider withMetrics(final KijiMetrics metrics, final KijiURI tableURI) {
+    if (!metrics.isEnabled()) {
+      return this;
+    }
+    final ImmutableMap.Builder<String, KijiCellEncoder> encoderMap = ImmutableMap.builder();
+    for (Map.Entry<String, KijiCellEncoder> entry : mEncoderMap.entrySet()) {
+      final String family = KijiColumnName.create(entry.getKey()).getFamily();
+      encoderMap.put(entry.getKey(), metrics.meterEncoder(entry.getValue(), tableURI, family));
+    }
+    return new CellEncoderProvider(encoderMap.build());
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Public interface
 
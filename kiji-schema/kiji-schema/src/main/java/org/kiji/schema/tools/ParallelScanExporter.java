@@ -0,0 +1,789 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.tools;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.MessageLite;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.HBaseEntityId;
+import org.kiji.schema.KijiCell;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiPartition;
+import org.kiji.schema.KijiResult;
+import org.kiji.schema.KijiResultScanner;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions;
+import org.kiji.schema.avro.CellSchema;
+import org.kiji.schema.avro.SchemaType;
+import org.kiji.schema.impl.hbase.HBaseKijiPartition;
+import org.kiji.schema.impl.hbase.HBaseKijiTable;
+import org.kiji.schema.impl.hbase.HBaseKijiTableReader;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
+import org.kiji.schema.util.ByteArrayFormatter;
+import org.kiji.schema.util.ResourceUtils;
+import org.kiji.schema.util.ToJson;
+
+/**
+ * Exports the rows of a Kiji table to files, scanning the regions of the table concurrently.
+ *
+ * <p>
+ *   Each region is exported to its own file in the export directory, named after the index of
+ *   the region: either an Avro container file of {@link #ROW_SCHEMA} records, or a file of JSON
+ *   rows, one row per line. A region is written to a temporary file, renamed once the region is
+ *   fully exported: an interrupted export resumes from the regions not yet exported.
+ * </p>
+ *
+ * <p>
+ *   The boundaries of the regions are recorded in the export directory when the export starts.
+ *   An export resumes by scanning the recorded row ranges not exported yet, whatever the regions
+ *   of the table are by then: regions may split or merge between two runs of an export.
+ *   Files whose name starts with an underscore are not region files, and are ignored by Hadoop
+ *   input formats: the export directory may be used as the input of a MapReduce job.
+ * </p>
+ *
+ * <p>
+ *   The format and the data request of the export are recorded along with the regions: an export
+ *   only resumes with the format and the data request it started with.
+ * </p>
+ */
+@ApiAudience.Private
+final class ParallelScanExporter {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelScanExporter.class);
+
+  /** Formats of the exported files. */
+  public static enum Format {
+    /** Avro container files of {@link #ROW_SCHEMA} records. */
+    AVRO(".avro"),
+
+    /** Text files of JSON rows, one row per line. */
+    JSON(".json");
+
+    /** Extension of the exported files. */
+    private final String mExtension;
+
+    /**
+     * Initializes a format.
+     *
+     * @param extension Extension of the exported files.
+     */
+    private Format(String extension) {
+      mExtension = extension;
+    }
+  }
+
+  /**
+   * Schema of an exported cell.
+   *
+   * <p>
+   *   The value of a cell is encoded in Avro binary with the schema it was read with.
+   *   Counters have no schema, and are encoded as 8 bytes big-endian longs. Raw bytes and protocol
+   *   buffer cells have no schema either, and their value is the bytes stored in the cell.
+   * </p>
+   */
+  public static final Schema CELL_SCHEMA = SchemaBuilder.record("ExportedCell")
+      .namespace("org.kiji.schema.tools")
+      .fields()
+      .requiredString("family")
+      .requiredString("qualifier")
+      .requiredLong("timestamp")
+      .optionalString("schema")
+      .requiredBytes("value")
+      .endRecord();
+
+  /** Schema of an exported row. */
+  public static final Schema ROW_SCHEMA = SchemaBuilder.record("ExportedRow")
+      .namespace("org.kiji.schema.tools")
+      .fields()
+      .requiredString("entity_id")
+      .requiredBytes("hbase_row_key")
+      .name("cells").type().array().items(CELL_SCHEMA).noDefault()
+      .endRecord();
+
+  /** Name of the file recording the boundaries of the exported regions. */
+  public static final String REGIONS_FILE_NAME = "_regions";
+
+  /** Name of the file recording the format and the data request of the export. */
+  public static final String EXPORT_FILE_NAME = "_export";
+
+  /** Name of the file created once all the regions are exported. */
+  public static final String SUCCESS_FILE_NAME = "_SUCCESS";
+
+  /** Prefix of the name of the files of the regions being exported. */
+  private static final String TEMPORARY_PREFIX = "_tmp-";
+
+  /** Factory for JSON generators. Generators do not close the underlying writers. */
+  private static final JsonFactory JSON_FACTORY =
+      new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  /** Range of rows exported to one file: the boundaries of a region when the export started. */
+  private static final class RowRange {
+    /** Index of the range, in the order of the start keys. */
+    private final int mIndex;
+
+    /** Start row key of the range, inclusive. Empty for the first range. */
+    private final byte[] mStartKey;
+
+    /** End row key of the range, exclusive. Empty for the last range. */
+    private final byte[] mEndKey;
+
+    /**
+     * Initializes a row range.
+     *
+     * @param index Index of the range.
+     * @param startKey Start row key of the range, inclusive.
+     * @param endKey End row key of the range, exclusive.
+     */
+    private RowRange(int index, byte[] startKey, byte[] endKey) {
+      mIndex = index;
+      mStartKey = startKey;
+      mEndKey = endKey;
+    }
+  }
+
+  /** Table to export. */
+  private final KijiTable mTable;
+
+  /** Data to export from each row. */
+  private final KijiDataRequest mDataRequest;
+
+  /** File system of the export directory. */
+  private final FileSystem mFileSystem;
+
+  /** Directory to export the table to. */
+  private final Path mExportDir;
+
+  /** Format of the exported files. */
+  private final Format mFormat;
+
+  /** Maximum number of regions to scan concurrently. */
+  private final int mNumThreads;
+
+  /** Stream to report progress to. */
+  private final PrintStream mPrintStream;
+
+  /**
+   * Initializes an exporter.
+   *
+   * @param table Table to export.
+   * @param dataRequest Data to export from each row.
+   * @param fileSystem File system of the export directory.
+   * @param exportDir Directory to export the table to. Created if necessary.
+   * @param format Format of the exported files.
+   * @param numThreads Maximum number of regions to scan concurrently.
+   * @param printStream Stream to report progress to.
+   */
+  public ParallelScanExporter(
+      KijiTable table,
+      KijiDataRequest dataRequest,
+      FileSystem fileSystem,
+      Path exportDir,
+      Format format,
+      int numThreads,
+      PrintStream printStream) {
+    Preconditions.checkArgument(numThreads > 0, "Invalid number of threads: %s", numThreads);
+    mTable = table;
+    mDataRequest = dataRequest;
+    mFileSystem = fileSystem;
+    mExportDir = exportDir;
+    mFormat = format;
+    mNumThreads = numThreads;
+    mPrintStream = printStream;
+  }
+
+  /**
+   * Exports the regions of the table that are not exported yet.
+   *
+   * @return whether all the regions of the table are exported.
+   *     Exporting the table again resumes from the regions that failed.
+   * @throws IOException on I/O error.
+   * @throws InterruptedException if the thread is interrupted while waiting for the regions.
+   */
+  public boolean export() throws IOException, InterruptedException {
+    mFileSystem.mkdirs(mExportDir);
+    checkExport();
+    final List<RowRange> ranges = getRanges();
+    final KijiTableLayout layout = mTable.getLayout();
+
+    final List<RowRange> pending = Lists.newArrayList();
+    for (RowRange range : ranges) {
+      if (!mFileSystem.exists(getRegionPath(range.mIndex))) {
+        pending.add(range);
+      }
+    }
+    mPrintStream.printf("Exporting %d regions of %d to %s (%d already exported).%n",
+        pending.size(), ranges.size(), mExportDir, ranges.size() - pending.size());
+
+    final AtomicInteger completed = new AtomicInteger(ranges.size() - pending.size());
+    final AtomicLong totalRows = new AtomicLong(0);
+    final long startTime = System.currentTimeMillis();
+
+    int failures = 0;
+    if (!pending.isEmpty()) {
+      final ExecutorService executor =
+          Executors.newFixedThreadPool(Math.min(mNumThreads, pending.size()));
+      try {
+        final Map<Integer, Future<Long>> futures = Maps.newTreeMap();
+        for (final RowRange range : pending) {
+          futures.put(range.mIndex, executor.submit(new Callable<Long>() {
+            /** {@inheritDoc} */
+            @Override
+            public Long call() throws Exception {
+              final long regionStartTime = System.currentTimeMillis();
+              final long rows = exportRange(range, layout);
+              totalRows.addAndGet(rows);
+              mPrintStream.printf("Exported region %d (%s): %d rows in %d ms. [%d/%d regions]%n",
+                  range.mIndex, formatRange(range), rows,
+                  System.currentTimeMillis() - regionStartTime,
+                  completed.incrementAndGet(), ranges.size());
+              return rows;
+            }
+          }));
+        }
+        for (Map.Entry<Integer, Future<Long>> entry : futures.entrySet()) {
+          try {
+            entry.getValue().get();
+          } catch (ExecutionException ee) {
+            LOG.error("Error exporting region {}: {}", entry.getKey(), ee.getCause());
+            mPrintStream.printf("Failed to export region %d: %s%n",
+                entry.getKey(), ee.getCause().getMessage());
+            failures += 1;
+          }
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    final long elapsed = System.currentTimeMillis() - startTime;
+    mPrintStream.printf("Exported %d rows in %d ms.%n", totalRows.get(), elapsed);
+    if (failures > 0) {
+      mPrintStream.printf("%d regions failed to export: run the export again to resume.%n",
+          failures);
+      return false;
+    }
+    mFileSystem.create(new Path(mExportDir, SUCCESS_FILE_NAME), true).close();
+    return true;
+  }
+
+  /**
+   * Records the format and the data request of the export, or checks that they are the ones the
+   * export started with when resuming an export.
+   *
+   * <p>
+   *   The export file is written before the row ranges: an export directory with recorded row
+   *   ranges but no export file was not written by this exporter, and is not resumed.
+   * </p>
+   *
+   * @throws IOException on I/O error, or if the export directory holds a different export.
+   */
+  private void checkExport() throws IOException {
+    final Path exportPath = new Path(mExportDir, EXPORT_FILE_NAME);
+    final String dataRequest =
+        Base64.encodeBase64String(SerializationUtils.serialize(mDataRequest));
+    if (!mFileSystem.exists(exportPath)) {
+      if (mFileSystem.exists(new Path(mExportDir, REGIONS_FILE_NAME))) {
+        throw new IOException(String.format(
+            "Cannot resume the export in %s: its format and data request are not recorded.",
+            mExportDir));
+      }
+      final OutputStream ostream = mFileSystem.create(exportPath, false);
+      try {
+        ostream.write(String.format("format\t%s\ndata_request\t%s\n", mFormat, dataRequest)
+            .getBytes(Charsets.UTF_8));
+      } finally {
+        ResourceUtils.closeOrLog(ostream);
+      }
+      return;
+    }
+
+    final String recorded;
+    final InputStream istream = mFileSystem.open(exportPath);
+    try {
+      recorded = new String(ByteStreams.toByteArray(istream), Charsets.UTF_8);
+    } finally {
+      ResourceUtils.closeOrLog(istream);
+    }
+    final Map<String, String> fields = Maps.newHashMap();
+    for (String line : Splitter.on('\n').omitEmptyStrings().split(recorded)) {
+      final List<String> field = Lists.newArrayList(Splitter.on('\t').split(line));
+      if (field.size() != 2) {
+        throw new IOException(String.format("Invalid field in %s: '%s'.", exportPath, line));
+      }
+      fields.put(field.get(0), field.get(1));
+    }
+    if (!fields.containsKey("format") || !fields.containsKey("data_request")) {
+      throw new IOException(String.format("Invalid export file %s: '%s'.", exportPath, recorded));
+    }
+
+    if (!mFormat.name().equals(fields.get("format"))) {
+      throw new IOException(String.format(
+          "Cannot resume the export in %s with format %s: the export started with format %s.",
+          mExportDir, mFormat, fields.get("format")));
+    }
+    if (!dataRequest.equals(fields.get("data_request"))) {
+      final Object recordedRequest;
+      try {
+        recordedRequest =
+            SerializationUtils.deserialize(Base64.decodeBase64(fields.get("data_request")));
+      } catch (SerializationException se) {
+        throw new IOException(String.format(
+            "Invalid data request in %s: %s", exportPath, se.getMessage()), se);
+      }
+      if (!mDataRequest.equals(recordedRequest)) {
+        throw new IOException(String.format(
+            "Cannot resume the export in %s with data request %s: "
+            + "the export started with data request %s.",
+            mExportDir, mDataRequest, recordedRequest));
+      }
+    }
+  }
+
+  /**
+   * Gets the row ranges to export: the boundaries of the regions of the table when the export
+   * started.
+   *
+   * <p>
+   *   When resuming an export, the ranges are read from the export directory. Otherwise, they are
+   *   the current regions of the table, and are recorded in the export directory.
+   * </p>
+   *
+   * @return the row ranges to export, ordered by start key.
+   * @throws IOException on I/O error.
+   */
+  private List<RowRange> getRanges() throws IOException {
+    final Path regionsPath = new Path(mExportDir, REGIONS_FILE_NAME);
+    if (mFileSystem.exists(regionsPath)) {
+      return readRanges(regionsPath);
+    }
+
+    final List<RowRange> ranges = Lists.newArrayList();
+    final StringBuilder boundaries = new StringBuilder();
+    for (KijiPartition partition : mTable.getPartitions()) {
+      Preconditions.checkArgument(partition instanceof HBaseKijiPartition,
+          "Parallel export requires an HBase table, got partition %s.", partition);
+      final HBaseKijiPartition region = (HBaseKijiPartition) partition;
+      final RowRange range = new RowRange(ranges.size(), region.getStartKey(), region.getEndKey());
+      ranges.add(range);
+      boundaries
+          .append(range.mIndex).append('\t')
+          .append(ByteArrayFormatter.toHex(range.mStartKey)).append('\t')
+          .append(ByteArrayFormatter.toHex(range.mEndKey)).append('\n');
+    }
+
+    final OutputStream ostream = mFileSystem.create(regionsPath, false);
+    try {
+      ostream.write(boundaries.toString().getBytes(Charsets.UTF_8));
+    } finally {
+      ResourceUtils.closeOrLog(ostream);
+    }
+    return ranges;
+  }
+
+  /**
+   * Reads the row ranges recorded in the export directory when the export started.
+   *
+   * @param regionsPath Path of the file recording the row ranges.
+   * @return the recorded row ranges, ordered by start key.
+   * @throws IOException on I/O error, or if the file is not a valid record of row ranges.
+   */
+  private List<RowRange> readRanges(Path regionsPath) throws IOException {
+    final String recorded;
+    final InputStream istream = mFileSystem.open(regionsPath);
+    try {
+      recorded = new String(ByteStreams.toByteArray(istream), Charsets.UTF_8);
+    } finally {
+      ResourceUtils.closeOrLog(istream);
+    }
+
+    final List<RowRange> ranges = Lists.newArrayList();
+    for (String line : Splitter.on('\n').omitEmptyStrings().split(recorded)) {
+      final List<String> fields = Lists.newArrayList(Splitter.on('\t').split(line));
+      if ((fields.size() != 3) || !fields.get(0).equals(Integer.toString(ranges.size()))) {
+        throw new IOException(String.format("Invalid region in %s: '%s'.", regionsPath, line));
+      }
+      ranges.add(new RowRange(ranges.size(),
+          ByteArrayFormatter.parseHex(fields.get(1)), ByteArrayFormatter.parseHex(fields.get(2))));
+    }
+    return ranges;
+  }
+
+  /**
+   * Reports the path of the file of an exported region.
+   *
+   * @param index Index of the region.
+   * @return the path of the file of the specified region.
+   */
+  private Path getRegionPath(int index) {
+    return new Path(mExportDir, String.format("region-%05d%s", index, mFormat.mExtension));
+  }
+
+  /**
+   * Formats the boundaries of a row range for display.
+   *
+   * @param range Row range to format.
+   * @return the boundaries of the row range, for display.
+   */
+  private static String formatRange(RowRange range) {
+    return String.format("[%s, %s)",
+        Bytes.toStringBinary(range.mStartKey), Bytes.toStringBinary(range.mEndKey));
+  }
+
+  /**
+   * Exports one row range of the table, whatever the regions the range now spans.
+   *
+   * @param range Row range to export.
+   * @param layout Layout of the table.
+   * @return the number of rows exported.
+   * @throws IOException on I/O error.
+   */
+  private long exportRange(RowRange range, KijiTableLayout layout) throws IOException {
+    final Path regionPath = getRegionPath(range.mIndex);
+    final Path temporaryPath = new Path(mExportDir, TEMPORARY_PREFIX + regionPath.getName());
+
+    long rows = 0;
+    // Readers are not thread-safe: each range is scanned with its own reader.
+    final HBaseKijiTableReader reader =
+        HBaseKijiTableReader.create(HBaseKijiTable.downcast(mTable));
+    try {
+      final KijiResultScanner<Object> scanner = reader.getKijiResultScanner(mDataRequest,
+          new KijiScannerOptions()
+              .setStartRow(HBaseEntityId.fromHBaseRowKey(range.mStartKey))
+              .setStopRow(HBaseEntityId.fromHBaseRowKey(range.mEndKey)));
+      try {
+        // A temporary file left by an interrupted export is overwritten.
+        final OutputStream ostream = mFileSystem.create(temporaryPath, true);
+        final RowWriter writer;
+        try {
+          writer = createRowWriter(ostream, layout);
+        } catch (IOException ioe) {
+          ResourceUtils.closeOrLog(ostream);
+          throw ioe;
+        } catch (RuntimeException re) {
+          ResourceUtils.closeOrLog(ostream);
+          throw re;
+        }
+        try {
+          while (scanner.hasNext()) {
+            final KijiResult<Object> result = scanner.next();
+            try {
+              writer.write(result);
+            } finally {
+              result.close();
+            }
+            rows += 1;
+          }
+        } finally {
+          writer.close();
+        }
+      } finally {
+        ResourceUtils.closeOrLog(scanner);
+      }
+    } finally {
+      ResourceUtils.closeOrLog(reader);
+    }
+
+    if (!mFileSystem.rename(temporaryPath, regionPath)) {
+      throw new IOException(String.format("Error renaming %s to %s.", temporaryPath, regionPath));
+    }
+    return rows;
+  }
+
+  /**
+   * Creates a writer of exported rows in the export format.
+   *
+   * @param ostream Stream to write the rows to. Closed by the row writer.
+   * @param layout Layout of the table.
+   * @return a new writer of exported rows.
+   * @throws IOException on I/O error.
+   */
+  private RowWriter createRowWriter(OutputStream ostream, KijiTableLayout layout)
+      throws IOException {
+    switch (mFormat) {
+      case AVRO: return new AvroRowWriter(ostream, layout);
+      case JSON: return new JsonRowWriter(ostream, layout);
+      default: throw new RuntimeException("Unhandled export format: " + mFormat);
+    }
+  }
+
+  /**
+   * Reports the type of a cell, as specified by the layout of its column.
+   *
+   * @param layout Layout of the table.
+   * @param cell Cell to report the type of.
+   * @return the type of the cell.
+   */
+  private static SchemaType getCellType(KijiTableLayout layout, KijiCell<?> cell) {
+    final FamilyLayout family = layout.getFamilyMap().get(cell.getColumn().getFamily());
+    final CellSchema cellSchema = family.isMapType()
+        ? family.getDesc().getMapSchema()
+        : family.getColumnMap().get(cell.getColumn().getQualifier()).getDesc().getColumnSchema();
+    return cellSchema.getType();
+  }
+
+  /**
+   * Reports the bytes stored in a cell which is not encoded with Avro.
+   *
+   * @param type Type of the cell, either raw bytes or protocol buffer.
+   * @param value Decoded value of the cell.
+   * @return the bytes stored in the cell.
+   */
+  private static byte[] getCellBytes(SchemaType type, Object value) {
+    switch (type) {
+      case RAW_BYTES: return (byte[]) value;
+      case PROTOBUF: return ((MessageLite) value).toByteArray();
+      default: throw new RuntimeException("Unhandled cell type: " + type);
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+
+  /** Writes exported rows to a file. */
+  private interface RowWriter extends Closeable {
+    /**
+     * Writes a row.
+     *
+     * @param result Content of the row to write.
+     * @throws IOException on I/O error.
+     */
+    void write(KijiResult<Object> result) throws IOException;
+  }
+
+  /** Writes rows as {@link #ROW_SCHEMA} records to an Avro container file. */
+  private static final class AvroRowWriter implements RowWriter {
+    /** Layout of the table. */
+    private final KijiTableLayout mLayout;
+
+    /** Avro container file writer. */
+    private final DataFileWriter<GenericRecord> mFileWriter;
+
+    /** Buffer to encode cell values into. */
+    private final ByteArrayOutputStream mValueBuffer = new ByteArrayOutputStream();
+
+    /** Encoder of cell values, reused across cells. */
+    private BinaryEncoder mValueEncoder = null;
+
+    /** Writers of cell values, by schema. */
+    private final Map<Schema, GenericDatumWriter<Object>> mValueWriters = Maps.newHashMap();
+
+    /**
+     * Initializes an Avro row writer.
+     *
+     * @param ostream Stream to write the container file to.
+     * @param layout Layout of the table.
+     * @throws IOException on I/O error.
+     */
+    private AvroRowWriter(OutputStream ostream, KijiTableLayout layout) throws IOException {
+      mLayout = layout;
+      mFileWriter = new DataFileWriter<GenericRecord>(
+          new GenericDatumWriter<GenericRecord>(ROW_SCHEMA));
+      mFileWriter.setCodec(CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL));
+      mFileWriter.create(ROW_SCHEMA, ostream);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(KijiResult<Object> result) throws IOException {
+      final List<GenericRecord> cells = Lists.newArrayList();
+      for (KijiCell<Object> cell : result) {
+        final GenericRecord record = new GenericData.Record(CELL_SCHEMA);
+        record.put("family", cell.getFamily());
+        record.put("qualifier", cell.getQualifier());
+        record.put("timestamp", cell.getTimestamp());
+        final SchemaType type = getCellType(mLayout, cell);
+        switch (type) {
+          case COUNTER:
+            record.put("value", ByteBuffer.wrap(Bytes.toBytes((Long) cell.getData())));
+            break;
+          case RAW_BYTES:
+          case PROTOBUF:
+            record.put("value", ByteBuffer.wrap(getCellBytes(type, cell.getData())));
+            break;
+          case INLINE:
+          case CLASS:
+          case AVRO:
+            final Schema schema = cell.getReaderSchema();
+            record.put("schema", schema.toString());
+            record.put("value", ByteBuffer.wrap(encodeValue(cell.getData(), schema)));
+            break;
+          default:
+            throw new RuntimeException("Unhandled cell type: " + type);
+        }
+        cells.add(record);
+      }
+
+      final EntityId entityId = result.getEntityId();
+      final GenericRecord row = new GenericData.Record(ROW_SCHEMA);
+      row.put("entity_id", entityId.toShellString());
+      row.put("hbase_row_key", ByteBuffer.wrap(entityId.getHBaseRowKey()));
+      row.put("cells", cells);
+      mFileWriter.append(row);
+    }
+
+    /**
+     * Encodes a cell value in Avro binary.
+     *
+     * @param value Value to encode.
+     * @param schema Schema of the value.
+     * @return the encoded value.
+     * @throws IOException on encoding error.
+     */
+    private byte[] encodeValue(Object value, Schema schema) throws IOException {
+      GenericDatumWriter<Object> valueWriter = mValueWriters.get(schema);
+      if (null == valueWriter) {
+        valueWriter = new GenericDatumWriter<Object>(schema);
+        mValueWriters.put(schema, valueWriter);
+      }
+      mValueBuffer.reset();
+      mValueEncoder = EncoderFactory.get().binaryEncoder(mValueBuffer, mValueEncoder);
+      valueWriter.write(value, mValueEncoder);
+      mValueEncoder.flush();
+      return mValueBuffer.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException {
+      mFileWriter.close();
+    }
+  }
+
+  /**
+   * Writes rows as JSON objects, one per line.
+   *
+   * <p>
+   *   Cell values are encoded in JSON as specified by Avro, and counters as JSON numbers.
+   *   The bytes of raw bytes and protocol buffer cells are encoded as JSON strings, escaped as the
+   *   HBase row keys are.
+   * </p>
+   */
+  private static final class JsonRowWriter implements RowWriter {
+    /** Layout of the table. */
+    private final KijiTableLayout mLayout;
+
+    /** Writer of the JSON text. */
+    private final Writer mWriter;
+
+    /**
+     * Initializes a JSON row writer.
+     *
+     * @param ostream Stream to write the JSON rows to.
+     * @param layout Layout of the table.
+     */
+    private JsonRowWriter(OutputStream ostream, KijiTableLayout layout) {
+      mLayout = layout;
+      mWriter = new BufferedWriter(new OutputStreamWriter(ostream, Charsets.UTF_8));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(KijiResult<Object> result) throws IOException {
+      final EntityId entityId = result.getEntityId();
+      final JsonGenerator generator = JSON_FACTORY.createJsonGenerator(mWriter);
+      generator.writeStartObject();
+      generator.writeStringField("entity_id", entityId.toShellString());
+      generator.writeStringField(
+          "hbase_row_key", Bytes.toStringBinary(entityId.getHBaseRowKey()));
+      generator.writeArrayFieldStart("cells");
+      for (KijiCell<Object> cell : result) {
+        generator.writeStartObject();
+        generator.writeStringField("family", cell.getFamily());
+        generator.writeStringField("qualifier", cell.getQualifier());
+        generator.writeNumberField("timestamp", cell.getTimestamp());
+        generator.writeFieldName("value");
+        final SchemaType type = getCellType(mLayout, cell);
+        switch (type) {
+          case COUNTER:
+            generator.writeNumber((Long) cell.getData());
+            break;
+          case RAW_BYTES:
+          case PROTOBUF:
+            generator.writeString(Bytes.toStringBinary(getCellBytes(type, cell.getData())));
+            break;
+          case INLINE:
+          case CLASS:
+          case AVRO:
+            generator.writeRawValue(
+                ToJson.toAvroJsonString(cell.getData(), cell.getReaderSchema()));
+            break;
+          default:
+            throw new RuntimeException("Unhandled cell type: " + type);
+        }
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.close();
+      mWriter.write('\n');
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException {
+      mWriter.close();
+    }
+  }
+}
@@ -21,10 +21,13 @@ package org.kiji.schema.tools;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +66,18 @@ import org.kiji.schema.util.ResourceUtils;
  *       --start-row=hex:50 \
  *       --limit-row=hex:e0
  * </pre>
+ *
+ * Export all the rows of table 'table_foo' to Avro container files in an HDFS directory,
+ * scanning up to 8 regions concurrently:
+ * <pre>
+ *   kiji scan \
+ *       kiji://.env/default/table_foo \
+ *       --export-dir=hdfs:///exports/table_foo \
+ *       --export-format=avro \
+ *       --export-threads=8
+ * </pre>
+ * An interrupted export resumes from the regions not exported yet when run again with the same
+ * export directory. See {@link ParallelScanExporter} for the layout of the export directory.
  */
 @ApiAudience.Private
 public final class ScanTool extends BaseTool {
@@ -103,6 +118,20 @@ public final class ScanTool extends BaseTool {
       + "\tE.g. '--timestamp=123..1234', '--timestamp=0..', or '--timestamp=..1234'.")
   private String mTimestamp = "0..";
 
+  @Flag(name="export-dir", usage="Directory to export the rows to, instead of printing them.\n"
+      + "\tEach region of the table is exported to its own file, scanning regions concurrently.\n"
+      + "\tRunning an interrupted export again resumes from the regions not exported yet.\n"
+      + "\tPaths with no file system scheme are local.")
+  private String mExportDirFlag = null;
+
+  @Flag(name="export-format", usage="Format of the exported files, with --export-dir:\n"
+      + "\t'avro' for Avro container files, or 'json' for one JSON row per line.")
+  private String mExportFormatFlag = "avro";
+
+  @Flag(name="export-threads",
+      usage="Max number of regions to export concurrently, with --export-dir.")
+  private int mExportThreads = 4;
+
   /**
    * Lazy initialized timestamp intervals.
    */
@@ -134,7 +163,50 @@ public final class ScanTool extends BaseTool {
         + "    kiji scan [flags...] (<table-uri> | <columns-uri>)\n"
         + "\n"
         + "Example:\n"
-        + "    kiji scan --max-rows=2 kiji://.env/default/my_table/family:qualifier,map_family\n";
+        + "    kiji scan --max-rows=2 kiji://.env/default/my_table/family:qualifier,map_family\n"
+        + "    kiji scan --export-dir=hdfs:///exports/my_table kiji://.env/default/my_table\n";
+  }
+
+  /**
+   * Determines whether a path has a file system scheme specified.
+   *
+   * @param path Path to check.
+   * @return whether the path has a file system scheme specified.
+   */
+  private static boolean fileSystemSpecified(Path path) {
+    return null != path.toUri().getScheme();
+  }
+
+  /**
+   * Exports the rows of a table to files in the export directory, one file per region.
+   *
+   * @param table The table to export.
+   * @param request The data request.
+   * @param format Format of the exported files.
+   * @return A program exit code (zero on success).
+   * @throws Exception If there is an error.
+   */
+  private int export(
+      KijiTable table,
+      KijiDataRequest request,
+      ParallelScanExporter.Format format)
+      throws Exception {
+    final Path exportDir = new Path(mExportDirFlag);
+    final FileSystem fs = fileSystemSpecified(exportDir)
+        ? exportDir.getFileSystem(getConf())
+        : FileSystem.getLocal(getConf());
+    getPrintStream().printf("Exporting kiji table %s to %s%n", table.getURI(), exportDir);
+    try {
+      final boolean success = new ParallelScanExporter(
+          table, request, fs, exportDir, format, mExportThreads, getPrintStream()).export();
+      return success ? SUCCESS : FAILURE;
+    } catch (IOException ioe) {
+      LOG.error(ioe.getMessage());
+      // TODO: Send this error to a future getErrorStream()
+      getPrintStream().printf("Error exporting kiji table %s: %s%n",
+          table.getURI(), ioe.getMessage());
+      return FAILURE;
+    }
   }
 
   /**
@@ -238,6 +310,31 @@ public final class ScanTool extends BaseTool {
       return FAILURE;
     }
 
+    ParallelScanExporter.Format exportFormat = null;
+    if (null != mExportDirFlag) {
+      try {
+        exportFormat =
+            ParallelScanExporter.Format.valueOf(mExportFormatFlag.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException iae) {
+        // TODO: Send this error to a future getErrorStream()
+        getPrintStream().printf("--export-format must be 'avro' or 'json', got '%s'%n",
+            mExportFormatFlag);
+        return FAILURE;
+      }
+      if (mExportThreads < 1) {
+        // TODO: Send this error to a future getErrorStream()
+        getPrintStream().printf("--export-threads must be positive, got %d%n", mExportThreads);
+        return FAILURE;
+      }
+      if ((null != mStartRowFlag) || (null != mLimitRowFlag) || (mMaxRows != 0)) {
+        // TODO: Send this error to a future getErrorStream()
+        getPrintStream().printf(
+            "--export-dir exports entire tables and cannot be used with "
+            + "--start-row, --limit-row or --max-rows%n");
+        return FAILURE;
+      }
+    }
+
     final Kiji kiji = Kiji.Factory.open(argURI, getConf());
     try {
       final KijiTable table = kiji.openTable(argURI.getTable());
@@ -253,6 +350,10 @@ public final class ScanTool extends BaseTool {
         final KijiDataRequest request = ToolUtils.getDataRequest(
             mapTypeFamilies, groupTypeColumns, mMaxVersions, mMinTimestamp, mMaxTimestamp);
 
+        if (null != exportFormat) {
+          return export(table, request, exportFormat);
+        }
+
         final KijiTableReader reader = table.openTableReader();
         try {
           // Scan from startRow to limitRow.
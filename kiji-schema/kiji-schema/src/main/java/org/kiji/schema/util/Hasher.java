@@ -24,9 +24,16 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.avro.HashType;
 
 /**
  * A thread-safe utility for computing hashes of strings.
+ *
+ * <p>
+ *   Hashes default to MD5. Row key formats may instead use MurmurHash3 (x64, 128-bit), a
+ *   non-cryptographic hash which is much cheaper to compute and which allocates nothing when
+ *   hashing into a caller-provided buffer.
+ * </p>
  */
 @ApiAudience.Private
 public final class Hasher {
@@ -75,4 +82,201 @@ public final class Hasher {
   public static byte[] hash(byte[] input) {
     return MESSAGE_DIGEST.get().digest(input);
   }
+
+  /**
+   * Hashes the input byte array with the specified algorithm.
+   *
+   * @param hashType The hashing algorithm to use.
+   * @param input The bytes to hash.
+   * @return The 128-bit hash of the input.
+   */
+  public static byte[] hash(HashType hashType, byte[] input) {
+    final byte[] hash = new byte[HASH_SIZE_BYTES];
+    hash(hashType, input, 0, input.length, hash, 0, HASH_SIZE_BYTES);
+    return hash;
+  }
+
+  /**
+   * Hashes a slice of the input byte array with the specified algorithm, and writes a prefix of
+   * the hash into the output byte array.
+   *
+   * <p>MURMUR3 hashes allocate nothing.</p>
+   *
+   * @param hashType The hashing algorithm to use.
+   * @param input The array containing the bytes to hash.
+   * @param offset The offset of the first byte to hash in the input array.
+   * @param length The number of bytes to hash.
+   * @param output The array to write the hash into.
+   * @param outputOffset The offset at which to write the hash in the output array.
+   * @param hashSize The number of leading bytes of the hash to write, at most 16.
+   */
+  public static void hash(
+      HashType hashType,
+      byte[] input,
+      int offset,
+      int length,
+      byte[] output,
+      int outputOffset,
+      int hashSize
+  ) {
+    if (hashSize < 0 || hashSize > HASH_SIZE_BYTES) {
+      throw new IllegalArgumentException(String.format(
+          "Hash size must be between 0 and %d, got %d.", HASH_SIZE_BYTES, hashSize));
+    }
+    switch (hashType) {
+      case MD5: {
+        final MessageDigest digest = MESSAGE_DIGEST.get();
+        digest.update(input, offset, length);
+        System.arraycopy(digest.digest(), 0, output, outputOffset, hashSize);
+        break;
+      }
+      case MURMUR3: {
+        murmur3(input, offset, length, output, outputOffset, hashSize);
+        break;
+      }
+      default:
+        throw new RuntimeException(String.format("Unexpected hashing type: '%s'.", hashType));
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // MurmurHash3, x64 128-bit variant, with a seed of 0.
+  // The hash is laid out as h1 then h2, both little-endian, as in the reference implementation.
+
+  /** First MurmurHash3 x64 128-bit mixing constant. */
+  private static final long MURMUR3_C1 = 0x87c37b91114253d5L;
+
+  /** Second MurmurHash3 x64 128-bit mixing constant. */
+  private static final long MURMUR3_C2 = 0x4cf5ad432745937fL;
+
+  /**
+   * Computes the MurmurHash3 x64 128-bit hash of a slice of a byte array.
+   *
+   * @param input The array containing the bytes to hash.
+   * @param offset The offset of the first byte to hash in the input array.
+   * @param length The number of bytes to hash.
+   * @param output The array to write the hash into.
+   * @param outputOffset The offset at which to write the hash in the output array.
+   * @param hashSize The number of leading bytes of the hash to write.
+   */
+  private static void murmur3(
+      byte[] input,
+      int offset,
+      int length,
+      byte[] output,
+      int outputOffset,
+      int hashSize
+  ) {
+    long h1 = 0;
+    long h2 = 0;
+
+    final int nblocks = length >>> 4;
+    for (int block = 0; block < nblocks; block++) {
+      final int blockOffset = offset + (block << 4);
+      long k1 = readLongLittleEndian(input, blockOffset);
+      long k2 = readLongLittleEndian(input, blockOffset + 8);
+
+      k1 *= MURMUR3_C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= MURMUR3_C2;
+      h1 ^= k1;
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      k2 *= MURMUR3_C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= MURMUR3_C1;
+      h2 ^= k2;
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    // Tail: the up to 15 remaining bytes.
+    final int tail = offset + (nblocks << 4);
+    long k1 = 0;
+    long k2 = 0;
+    switch (length & 15) {
+      case 15: k2 ^= (input[tail + 14] & 0xffL) << 48; // fall through
+      case 14: k2 ^= (input[tail + 13] & 0xffL) << 40; // fall through
+      case 13: k2 ^= (input[tail + 12] & 0xffL) << 32; // fall through
+      case 12: k2 ^= (input[tail + 11] & 0xffL) << 24; // fall through
+      case 11: k2 ^= (input[tail + 10] & 0xffL) << 16; // fall through
+      case 10: k2 ^= (input[tail + 9] & 0xffL) << 8; // fall through
+      case 9:
+        k2 ^= input[tail + 8] & 0xffL;
+        k2 *= MURMUR3_C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= MURMUR3_C1;
+        h2 ^= k2;
+        // fall through
+      case 8: k1 ^= (input[tail + 7] & 0xffL) << 56; // fall through
+      case 7: k1 ^= (input[tail + 6] & 0xffL) << 48; // fall through
+      case 6: k1 ^= (input[tail + 5] & 0xffL) << 40; // fall through
+      case 5: k1 ^= (input[tail + 4] & 0xffL) << 32; // fall through
+      case 4: k1 ^= (input[tail + 3] & 0xffL) << 24; // fall through
+      case 3: k1 ^= (input[tail + 2] & 0xffL) << 16; // fall through
+      case 2: k1 ^= (input[tail + 1] & 0xffL) << 8; // fall through
+      case 1:
+        k1 ^= input[tail] & 0xffL;
+        k1 *= MURMUR3_C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= MURMUR3_C2;
+        h1 ^= k1;
+        break;
+      default:
+        // No tail.
+        break;
+    }
+
+    // Finalization.
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+
+    for (int i = 0; i < hashSize; i++) {
+      final long word = (i < 8) ? h1 : h2;
+      output[outputOffset + i] = (byte) (word >>> ((i & 7) << 3));
+    }
+  }
+
+  /**
+   * Reads 8 bytes of a byte array as a little-endian long.
+   *
+   * @param bytes The array to read from.
+   * @param offset The offset of the first byte to read.
+   * @return the little-endian long.
+   */
+  private static long readLongLittleEndian(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xffL)
+        | (bytes[offset + 1] & 0xffL) << 8
+        | (bytes[offset + 2] & 0xffL) << 16
+        | (bytes[offset + 3] & 0xffL) << 24
+        | (bytes[offset + 4] & 0xffL) << 32
+        | (bytes[offset + 5] & 0xffL) << 40
+        | (bytes[offset + 6] & 0xffL) << 48
+        | (bytes[offset + 7] & 0xffL) << 56;
+  }
+
+  /**
+   * MurmurHash3 64-bit finalization mix: forces all bits of a hash block to avalanche.
+   *
+   * @param k The hash block to mix.
+   * @return the mixed hash block.
+   */
+  private static long fmix64(long k) {
+    long mixed = k;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xff51afd7ed558ccdL;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xc4ceb9fe1a85ec53L;
+    mixed ^= mixed >>> 33;
+    return mixed;
+  }
 }
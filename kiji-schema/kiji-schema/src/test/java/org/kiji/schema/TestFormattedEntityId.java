@@ -28,6 +28,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
 
@@ -49,6 +50,7 @@ import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.layout.KijiTableLayouts;
 import org.kiji.schema.util.ByteArrayFormatter;
+import org.kiji.schema.util.Hasher;
 
 /** Tests for FormattedEntityId. */
 public class TestFormattedEntityId extends KijiClientTest {
@@ -725,4 +727,99 @@ public class TestFormattedEntityId extends KijiClientTest {
     final FormattedEntityId testEntityId = FormattedEntityId.fromHBaseRowKey(hbaseRowKey, format);
     assertArrayEquals(formattedEntityId.getHBaseRowKey(), testEntityId.getHBaseRowKey());
   }
+
+  @Test
+  public void testMurmur3HashEntityId() {
+    final RowKeyFormat2 md5Format = makeRowKeyFormat();
+    final RowKeyFormat2 murmurFormat = RowKeyFormat2.newBuilder(md5Format)
+        .setSalt(HashSpec.newBuilder().setHashType(HashType.MURMUR3).build())
+        .build();
+
+    final FormattedEntityId md5Id = makeId(md5Format, "one", 1, 7L);
+    final FormattedEntityId murmurId = makeId(murmurFormat, "one", 1, 7L);
+    final byte[] md5Key = md5Id.getHBaseRowKey();
+    final byte[] murmurKey = murmurId.getHBaseRowKey();
+
+    // Only the hash prefix differs.
+    final int hashSize = murmurFormat.getSalt().getHashSize();
+    assertEquals(md5Key.length, murmurKey.length);
+    assertArrayEquals(
+        Arrays.copyOfRange(Hasher.hash(HashType.MURMUR3, Bytes.toBytes("one")), 0, hashSize),
+        Arrays.copyOfRange(murmurKey, 0, hashSize));
+    assertArrayEquals(
+        Arrays.copyOfRange(md5Key, hashSize, md5Key.length),
+        Arrays.copyOfRange(murmurKey, hashSize, murmurKey.length));
+
+    final FormattedEntityId decoded = FormattedEntityId.fromHBaseRowKey(murmurKey, murmurFormat);
+    assertEquals(murmurId.getComponents(), decoded.getComponents());
+  }
+
+  @Test
+  public void testRowKeyEncoderReusesBuffer() {
+    final RowKeyFormat2 format = makeOrderingTestRowKeyFormat();
+    final FormattedRowKeyEncoder encoder = new FormattedRowKeyEncoder(format);
+
+    final Object[][] keys = {
+        {"dummy", "a long string component which outgrows the initial buffer", "str2", 1, 2L},
+        {"dummy", "str1", "\u00e9\u4e2d\ud83d\ude00", 3, null},
+        {"dummy", "", "", null, null},
+    };
+    for (Object[] key : keys) {
+      final int length = encoder.encode(key);
+      assertEquals(length, encoder.getLength());
+      assertArrayEquals(makeId(format, key).getHBaseRowKey(), encoder.toByteArray());
+      assertArrayEquals(encoder.toByteArray(), Arrays.copyOf(encoder.getBuffer(), length));
+    }
+
+    // Integers are promoted for LONG components, as by FormattedEntityId.
+    encoder.encode("dummy", "str1", "str2", 1, 2);
+    assertArrayEquals(makeId(format, "dummy", "str1", "str2", 1, 2L).getHBaseRowKey(),
+        encoder.toByteArray());
+  }
+
+  @Test(expected = EntityIdException.class)
+  public void testRowKeyEncoderValidatesComponents() {
+    final FormattedRowKeyEncoder encoder = new FormattedRowKeyEncoder(makeRowKeyFormat());
+    encoder.encode("one", 1L, 7L);
+  }
+
+  @Test
+  public void testLazyComponentDecoding() {
+    final RowKeyFormat2 format = makeOrderingTestRowKeyFormat();
+    final FormattedEntityId original = makeId(format, "dummy", "str1", "", 1, -7L);
+    final FormattedEntityId decoded =
+        FormattedEntityId.fromHBaseRowKey(original.getHBaseRowKey(), format);
+
+    // Single components are decoded on their own, primitives without boxing.
+    assertEquals(-7L, decoded.getLongComponent(4));
+    assertEquals(1, decoded.getIntComponent(3));
+    assertEquals("", decoded.getComponentByIndex(2));
+    assertEquals("str1", decoded.getComponentByIndex(1));
+
+    assertEquals(original.getComponents(), decoded.getComponents());
+    assertEquals(-7L, decoded.getLongComponent(4));
+    assertEquals(original.toShellString(), decoded.toShellString());
+  }
+
+  @Test
+  public void testLazyNullComponents() {
+    final RowKeyFormat2 format = makeRowKeyFormat();
+    final FormattedEntityId decoded = FormattedEntityId.fromHBaseRowKey(
+        makeId(format, "one", 1, null).getHBaseRowKey(), format);
+    assertNull(decoded.getComponentByIndex(2));
+    assertEquals(1, decoded.getIntComponent(1));
+    try {
+      decoded.getLongComponent(2);
+      fail("Should fail with IllegalStateException");
+    } catch (IllegalStateException ise) {
+      assertEquals("Component 2 is null.", ise.getMessage());
+    }
+    try {
+      decoded.getLongComponent(1);
+      fail("Should fail with IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+      assertEquals("Component 1 has type INTEGER, not LONG.", iae.getMessage());
+    }
+    assertEquals(Lists.newArrayList("one", 1, null), decoded.getComponents());
+  }
 }
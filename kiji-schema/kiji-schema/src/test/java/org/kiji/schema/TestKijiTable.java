@@ -47,9 +47,9 @@ public class TestKijiTable extends KijiClientTest {
       List<KijiRegion> regions = mTable.getRegions();
       assertEquals(numRegions, regions.size());
 
-      // Check that all KijiRegions have location info.
+      // Check that all KijiRegions have the location of their own region server only.
       for (KijiRegion region : regions) {
-        assertTrue(region.getLocations().size() > 0);
+        assertEquals(1, region.getLocations().size());
       }
     } finally {
       mTable.release();
@@ -0,0 +1,174 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Test;
+
+import org.kiji.schema.EntityId;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiBufferedWriter;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+public class TestKijiMetrics extends KijiClientTest {
+
+  @Test
+  public void testDisabled() throws Exception {
+    final KijiMetrics metrics = new KijiMetrics();
+    final KijiURI uri = getKiji().getURI();
+    assertNull(metrics.getTimer("timer"));
+    assertNull(metrics.getInstanceTimer(uri, KijiMetrics.SCHEMA_LOOKUP_BY_ID));
+
+    // Timing helpers accept the null timers of disabled metrics.
+    KijiMetrics.stop(KijiMetrics.time(null));
+  }
+
+  @Test
+  public void testTimerRegistration() throws Exception {
+    final KijiMetrics metrics = new KijiMetrics();
+    final MetricRegistry registry = new MetricRegistry();
+    metrics.setRegistry(registry);
+
+    final Timer timer = metrics.getTimer("timer");
+    assertSame(timer, metrics.getTimer("timer"));
+    assertSame(timer, registry.getTimers().get("timer"));
+
+    KijiMetrics.stop(KijiMetrics.time(timer));
+    assertEquals(1, timer.getCount());
+
+    // Another kind of metric registered under the same name is left alone.
+    registry.counter("counter");
+    assertNull(metrics.getTimer("counter"));
+
+    metrics.setRegistry(null);
+    assertNull(metrics.getTimer("timer"));
+  }
+
+  @Test
+  public void testTimerReference() throws Exception {
+    final KijiMetrics metrics = new KijiMetrics();
+    final KijiURI uri = getKiji().getURI();
+    final KijiMetrics.TimerReference reference =
+        metrics.getInstanceTimerReference(uri, KijiMetrics.SCHEMA_LOOKUP_BY_ID);
+    assertNull(reference.get());
+
+    // The reference follows the registry of the metrics.
+    final MetricRegistry registry = new MetricRegistry();
+    metrics.setRegistry(registry);
+    final Timer timer = reference.get();
+    assertSame(timer, metrics.getInstanceTimer(uri, KijiMetrics.SCHEMA_LOOKUP_BY_ID));
+    assertSame(timer, reference.get());
+
+    final MetricRegistry otherRegistry = new MetricRegistry();
+    metrics.setRegistry(otherRegistry);
+    final Timer otherTimer = reference.get();
+    assertNotSame(timer, otherTimer);
+    assertSame(otherTimer, otherRegistry.getTimers().get(
+        MetricRegistry.name("kiji", uri.getInstance(), KijiMetrics.SCHEMA_LOOKUP_BY_ID)));
+
+    metrics.setRegistry(null);
+    assertNull(reference.get());
+  }
+
+  @Test
+  public void testTableOperations() throws Exception {
+    final Kiji kiji = new InstanceBuilder(getKiji())
+        .withTable("user", KijiTableLayout.newLayout(
+            KijiTableLayouts.getLayout(KijiTableLayouts.COUNTER_TEST)))
+            .withRow("foo")
+                .withFamily("info")
+                    .withQualifier("name").withValue(1L, "foo-val")
+        .build();
+    final MetricRegistry registry = new MetricRegistry();
+    kiji.setMetricRegistry(registry);
+    assertSame(registry, kiji.getMetricRegistry());
+
+    final KijiTable table = kiji.openTable("user");
+    try {
+      final EntityId eid = table.getEntityId("foo");
+      final KijiDataRequest request = KijiDataRequest.create("info", "name");
+      final KijiBufferedWriter writer = table.getWriterFactory().openBufferedWriter();
+      try {
+        writer.put(eid, "info", "name", 2L, "new-val");
+        writer.flush();
+      } finally {
+        writer.close();
+      }
+      final KijiTableReader reader = table.openTableReader();
+      try {
+        assertEquals("new-val",
+            reader.get(eid, request).getMostRecentValue("info", "name").toString());
+        final KijiRowScanner scanner = reader.getScanner(request);
+        try {
+          for (KijiRowData row : scanner) {
+            assertEquals(eid, row.getEntityId());
+          }
+        } finally {
+          scanner.close();
+        }
+      } finally {
+        reader.close();
+      }
+    } finally {
+      table.release();
+    }
+
+    final String prefix = MetricRegistry.name("kiji", kiji.getURI().getInstance(), "user");
+    assertEquals(1, getCount(registry, MetricRegistry.name(prefix, KijiMetrics.GET)));
+    assertEquals(1, getCount(registry, MetricRegistry.name(prefix, KijiMetrics.SCANNER_NEXT)));
+    // Closing the writer flushes it once more.
+    assertEquals(2,
+        getCount(registry, MetricRegistry.name(prefix, KijiMetrics.BUFFERED_WRITER_FLUSH)));
+    assertTrue(
+        getCount(registry, MetricRegistry.name(prefix, "info", KijiMetrics.CELL_ENCODE)) >= 1);
+    assertTrue(
+        getCount(registry, MetricRegistry.name(prefix, "info", KijiMetrics.CELL_DECODE)) >= 1);
+
+    kiji.setMetricRegistry(null);
+  }
+
+  /**
+   * Returns the number of operations recorded by a timer.
+   *
+   * @param registry holding the timer.
+   * @param name of the timer.
+   * @return the number of operations recorded by the timer, or 0 if it is not registered.
+   */
+  private static long getCount(final MetricRegistry registry, final String name) {
+    final Timer timer = registry.getTimers().get(name);
+    return (null == timer) ? 0 : timer.getCount();
+  }
+}
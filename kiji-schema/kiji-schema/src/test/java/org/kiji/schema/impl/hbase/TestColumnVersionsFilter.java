@@ -0,0 +1,226 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl.hbase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.UnknownScannerException;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.filter.Filter.ReturnCode;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.schema.EntityId;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.KijiIOException;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+public class TestColumnVersionsFilter extends KijiClientTest {
+  private static final Logger LOG = LoggerFactory.getLogger(TestColumnVersionsFilter.class);
+
+  private static final byte[] ROW = Bytes.toBytes("row");
+  private static final byte[] FAMILY = Bytes.toBytes("family");
+  private static final byte[] VALUE = Bytes.toBytes("value");
+
+  /** Number of versions of each cell written by the benchmark. */
+  private static final int VERSIONS = 100;
+
+  /** Number of qualifiers in the map-type family written by the benchmark. */
+  private static final int MAP_QUALIFIERS = 10;
+
+  private static KeyValue cell(final String qualifier, final long timestamp) {
+    return new KeyValue(ROW, FAMILY, Bytes.toBytes(qualifier), timestamp, VALUE);
+  }
+
+  private static ColumnVersionsFilter newFilter() {
+    final List<ColumnVersionsFilter.Column> columns = Lists.newArrayList(
+        new ColumnVersionsFilter.Column(FAMILY, Bytes.toBytes("a"), false, 2, 0L, 10L),
+        new ColumnVersionsFilter.Column(FAMILY, Bytes.toBytes("m:"), true, 1, 0L, 10L));
+    return new ColumnVersionsFilter(columns);
+  }
+
+  @Test
+  public void testFilterKeyValue() throws Exception {
+    final ColumnVersionsFilter filter = newFilter();
+
+    // Qualified column with 2 versions, cells are sorted by decreasing timestamps:
+    assertEquals(ReturnCode.SKIP, filter.filterKeyValue(cell("a", 12L)));
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("a", 9L)));
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("a", 8L)));
+    assertEquals(ReturnCode.NEXT_COL, filter.filterKeyValue(cell("a", 7L)));
+
+    // Columns matching no column of the filter are let through:
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("b", 9L)));
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("b", 8L)));
+
+    // Each qualifier of a prefix column has its own versions:
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("m:x", 9L)));
+    assertEquals(ReturnCode.NEXT_COL, filter.filterKeyValue(cell("m:x", 8L)));
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("m:y", 5L)));
+
+    // Versions are counted again in the next row:
+    filter.reset();
+    assertEquals(ReturnCode.INCLUDE, filter.filterKeyValue(cell("a", 9L)));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    final ColumnVersionsFilter filter = newFilter();
+    final ColumnVersionsFilter deserialized =
+        ColumnVersionsFilter.parseFrom(filter.toByteArray());
+    assertEquals(filter.toString(), deserialized.toString());
+    assertEquals(ReturnCode.INCLUDE, deserialized.filterKeyValue(cell("a", 9L)));
+  }
+
+  @Test
+  public void testMissingFilterErrors() throws Exception {
+    final String missing =
+        "java.lang.ClassNotFoundException: " + ColumnVersionsFilter.class.getName();
+
+    // Errors of region servers which can not load the filter, as reported by gets and scanners:
+    final DoNotRetryIOException getError = new DoNotRetryIOException(missing);
+    assertTrue(HBaseDataRequestAdapter.isMissingVersionsFilterError(getError));
+    assertTrue(HBaseDataRequestAdapter.isMissingVersionsFilterError(new KijiIOException(getError)));
+    assertTrue(HBaseDataRequestAdapter.isMissingVersionsFilterError(
+        new UnknownScannerException(missing)));
+    assertTrue(HBaseDataRequestAdapter.isMissingVersionsFilterError(
+        new RetriesExhaustedWithDetailsException(
+            Lists.<Throwable>newArrayList(getError),
+            Lists.<Row>newArrayList(new Get(ROW)),
+            Lists.newArrayList("host:60020"))));
+
+    // Other errors are not retried without the filter:
+    assertFalse(HBaseDataRequestAdapter.isMissingVersionsFilterError(
+        new DoNotRetryIOException("Column family does not exist")));
+    assertFalse(HBaseDataRequestAdapter.isMissingVersionsFilterError(new IOException(missing)));
+  }
+
+  /**
+   * Compares the cells and bytes transferred for a row with and without the versions filter, for
+   * a request with one column of many versions and other columns of few versions.
+   */
+  @Test
+  public void testBytesTransferred() throws Exception {
+    final InstanceBuilder.TableBuilder tableBuilder = new InstanceBuilder(getKiji())
+        .withTable(KijiTableLayouts.getLayout(KijiTableLayouts.PAGING_TEST));
+    final InstanceBuilder.FamilyBuilder infoBuilder =
+        tableBuilder.withRow("foo").withFamily("info");
+    final InstanceBuilder.QualifierBuilder nameBuilder = infoBuilder.withQualifier("name");
+    for (int version = 1; version <= VERSIONS; version++) {
+      nameBuilder.withValue(version, "name-" + version);
+    }
+    final InstanceBuilder.QualifierBuilder locationBuilder =
+        infoBuilder.withQualifier("location");
+    for (int version = 1; version <= VERSIONS; version++) {
+      locationBuilder.withValue(version, "location-" + version);
+    }
+    final InstanceBuilder.FamilyBuilder jobsBuilder = infoBuilder.withFamily("jobs");
+    for (int qualifier = 0; qualifier < MAP_QUALIFIERS; qualifier++) {
+      final InstanceBuilder.QualifierBuilder jobBuilder =
+          jobsBuilder.withQualifier("job" + qualifier);
+      for (int version = 1; version <= VERSIONS; version++) {
+        jobBuilder.withValue(version, "job-" + version);
+      }
+    }
+    final Kiji kiji = tableBuilder.build();
+
+    final KijiDataRequest request = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create()
+            .withMaxVersions(HConstants.ALL_VERSIONS)
+            .add("info", "name"))
+        .addColumns(ColumnsDef.create().withMaxVersions(2).add("info", "location"))
+        .addColumns(ColumnsDef.create().withMaxVersions(1).addFamily("jobs"))
+        .build();
+
+    final HBaseKijiTable table = HBaseKijiTable.downcast(kiji.openTable("user"));
+    try {
+      final EntityId eid = table.getEntityId("foo");
+      final Result unfiltered = rawGet(table, request, eid, false);
+      final Result filtered = rawGet(table, request, eid, true);
+      LOG.info("Without the versions filter: {} cells, {} bytes.",
+          unfiltered.rawCells().length, sizeOf(unfiltered));
+      LOG.info("With the versions filter: {} cells, {} bytes.",
+          filtered.rawCells().length, sizeOf(filtered));
+      assertEquals(VERSIONS * (2 + MAP_QUALIFIERS), unfiltered.rawCells().length);
+      assertEquals(VERSIONS + 2 + MAP_QUALIFIERS, filtered.rawCells().length);
+
+      // The row data honors the requested max-versions either way:
+      final KijiTableReader reader = table.openTableReader();
+      try {
+        final KijiRowData row = reader.get(eid, request);
+        assertEquals(VERSIONS, row.getValues("info", "name").size());
+        assertEquals(2, row.getValues("info", "location").size());
+        assertEquals(1, row.getValues("jobs", "job0").size());
+      } finally {
+        reader.close();
+      }
+    } finally {
+      table.release();
+    }
+  }
+
+  private static Result rawGet(
+      final HBaseKijiTable table,
+      final KijiDataRequest request,
+      final EntityId eid,
+      final boolean serverSideVersionsFilter
+  ) throws Exception {
+    final HBaseDataRequestAdapter adapter = new HBaseDataRequestAdapter(
+        request, table.getColumnNameTranslator(), serverSideVersionsFilter);
+    final Get get = adapter.toGet(eid, table.getLayout());
+    final HTableInterface hTable = table.openHTableConnection();
+    try {
+      return hTable.get(get);
+    } finally {
+      hTable.close();
+    }
+  }
+
+  private static long sizeOf(final Result result) {
+    long size = 0;
+    for (Cell cell : result.rawCells()) {
+      size += KeyValueUtil.ensureKeyValue(cell).getLength();
+    }
+    return size;
+  }
+}
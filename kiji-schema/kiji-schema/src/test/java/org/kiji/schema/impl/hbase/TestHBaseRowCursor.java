@@ -0,0 +1,223 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl.hbase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.schema.EntityId;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.KijiTableWriter;
+import org.kiji.schema.layout.KijiTableLayouts;
+
+public class TestHBaseRowCursor extends KijiClientTest {
+  private static final int NJOBS = 5;
+  private static final long NTIMESTAMPS = 5;
+
+  private HBaseKijiTable mTable;
+  private EntityId mEntityId;
+
+  @Before
+  public final void setupTestHBaseRowCursor() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.PAGING_TEST));
+    mTable = HBaseKijiTable.downcast(kiji.openTable("user"));
+    mEntityId = mTable.getEntityId("me");
+
+    final KijiTableWriter writer = mTable.openTableWriter();
+    try {
+      for (int job = 0; job < NJOBS; ++job) {
+        for (long ts = 1; ts <= NTIMESTAMPS; ++ts) {
+          writer.put(mEntityId, "jobs", String.format("j%d", job), ts,
+              String.format("j%d-t%d", job, ts));
+        }
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  @After
+  public final void teardownTestHBaseRowCursor() throws IOException {
+    mTable.release();
+  }
+
+  /** Pages cut across the batches of the scanner must hold all the versions, in order. */
+  @Test
+  public void testVersionCursorStitchesBatches() throws IOException {
+    final KijiColumnName column = KijiColumnName.create("jobs", "j1");
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create().withMaxVersions(4).withPageSize(2).add(column))
+        .build();
+    final HBaseRowCursor cursor = HBaseRowCursor.openVersionCursor(
+        mTable, mEntityId, dataRequest, dataRequest.getRequestForColumn(column), column, 2);
+    try {
+      final List<Cell> first = cursor.next(3);
+      Assert.assertEquals(3, first.size());
+      Assert.assertEquals(5L, first.get(0).getTimestamp());
+      Assert.assertEquals(3L, first.get(2).getTimestamp());
+      final List<Cell> second = cursor.next(3);
+      Assert.assertEquals(1, second.size());
+      Assert.assertEquals(2L, second.get(0).getTimestamp());
+      Assert.assertTrue(cursor.next(3).isEmpty());
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /** A scanner reopened between two pages must resume after the last cell it fetched. */
+  @Test
+  public void testReopenResumesAfterLastCell() throws IOException {
+    final KijiColumnName column = KijiColumnName.create("jobs", "j1");
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create()
+            .withMaxVersions((int) NTIMESTAMPS)
+            .withPageSize(2)
+            .add(column))
+        .build();
+    final HBaseRowCursor cursor = HBaseRowCursor.openVersionCursor(
+        mTable, mEntityId, dataRequest, dataRequest.getRequestForColumn(column), column, 2);
+    try {
+      final List<Cell> first = cursor.next(3);
+      Assert.assertEquals(3, first.size());
+      Assert.assertEquals(3L, first.get(2).getTimestamp());
+      // Versions 5 to 2 were fetched, version 2 is still buffered:
+      cursor.reopenScanner();
+      final List<Cell> second = cursor.next(3);
+      Assert.assertEquals(2, second.size());
+      Assert.assertEquals(2L, second.get(0).getTimestamp());
+      Assert.assertEquals(1L, second.get(1).getTimestamp());
+      Assert.assertTrue(cursor.next(3).isEmpty());
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /** Reopened scanners over several qualifiers must return each remaining cell once, in order. */
+  @Test
+  public void testReopenAcrossQualifiers() throws IOException {
+    final byte[] rowKey = mEntityId.getHBaseRowKey();
+    final Scan scan = new Scan(rowKey, Arrays.copyOf(rowKey, rowKey.length + 1));
+    scan.setMaxVersions();
+    scan.setBatch(3);
+    scan.setCaching(1);
+
+    final HBaseRowCursor cursor = new HBaseRowCursor(mTable, scan, false);
+    try {
+      final List<Cell> cells = Lists.newArrayList();
+      while (true) {
+        final List<Cell> page = cursor.next(4);
+        if (page.isEmpty()) {
+          break;
+        }
+        cells.addAll(page);
+        cursor.reopenScanner();
+      }
+      Assert.assertEquals(NJOBS * NTIMESTAMPS, cells.size());
+      for (int i = 1; i < cells.size(); ++i) {
+        Assert.assertTrue(KeyValue.COMPARATOR.compare(cells.get(i - 1), cells.get(i)) < 0);
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /** Qualifier cursors return the most recent version of each qualifier, once. */
+  @Test
+  public void testQualifierCursor() throws IOException {
+    final KijiColumnName family = KijiColumnName.create("jobs");
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create().withMaxVersions(1).withPageSize(2).add(family))
+        .build();
+    final HBaseRowCursor cursor = HBaseRowCursor.openQualifierCursor(
+        mTable, mEntityId, dataRequest, dataRequest.getRequestForColumn(family), family, 2);
+    try {
+      int ncells = 0;
+      while (true) {
+        final List<Cell> cells = cursor.next(4);
+        if (cells.isEmpty()) {
+          break;
+        }
+        for (Cell cell : cells) {
+          Assert.assertEquals(NTIMESTAMPS, cell.getTimestamp());
+          Assert.assertEquals(0, cell.getValueLength());
+        }
+        ncells += cells.size();
+      }
+      Assert.assertEquals(NJOBS, ncells);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /** Prefetching cursors must return the same cells as non-prefetching ones. */
+  @Test
+  public void testPrefetch() throws IOException {
+    final byte[] rowKey = mEntityId.getHBaseRowKey();
+    final Scan scan = new Scan(rowKey, Arrays.copyOf(rowKey, rowKey.length + 1));
+    scan.setMaxVersions();
+    scan.setBatch(3);
+    scan.setCaching(1);
+
+    final HBaseRowCursor cursor = new HBaseRowCursor(mTable, scan, true);
+    try {
+      int ncells = 0;
+      while (true) {
+        final List<Cell> cells = cursor.next(2);
+        if (cells.isEmpty()) {
+          break;
+        }
+        Assert.assertTrue(cells.size() <= 2);
+        ncells += cells.size();
+      }
+      Assert.assertEquals(NJOBS * NTIMESTAMPS, ncells);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /** Closing a cursor with a batch being prefetched must not fail. */
+  @Test
+  public void testCloseWhilePrefetching() throws IOException {
+    final byte[] rowKey = mEntityId.getHBaseRowKey();
+    final Scan scan = new Scan(rowKey, Arrays.copyOf(rowKey, rowKey.length + 1));
+    scan.setMaxVersions();
+    scan.setBatch(2);
+    scan.setCaching(1);
+
+    final HBaseRowCursor cursor = new HBaseRowCursor(mTable, scan, true);
+    Assert.assertEquals(2, cursor.next(2).size());
+    cursor.close();
+  }
+}
@@ -56,6 +56,7 @@ import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.avro.SchemaStorage;
 import org.kiji.schema.avro.SchemaType;
 import org.kiji.schema.avro.TableLayoutDesc;
+import org.kiji.schema.impl.Versions;
 import org.kiji.schema.util.ToJson;
 
 /** Tests for KijiTableLayout. */
@@ -1060,6 +1061,35 @@ public class TestKijiTableLayout {
     }
   }
 
+  @Test
+  public void testMurmur3HashTypeOnOlderLayoutVersion() throws Exception {
+    final RowKeyFormat2 format = RowKeyFormat2.newBuilder(makeHashPrefixedRowKeyFormat())
+        .setSalt(HashSpec.newBuilder().setHashType(HashType.MURMUR3).build())
+        .build();
+    final TableLayoutDesc desc = TableLayoutDesc.newBuilder(makeMinimalValidLayout())
+        .setVersion(TABLE_LAYOUT_1_2)
+        .setKeysFormat(format)
+        .build();
+
+    try {
+      KijiTableLayout.newLayout(desc);
+      fail("Expected exception because the MURMUR3 hash type is used with layout version "
+          + TABLE_LAYOUT_1_2);
+    } catch (InvalidLayoutException ile) {
+      // Expected:
+      LOG.info("Expected layout version validation error: " + ile);
+      assertThat(ile.getMessage(), containsString("begins with layout version "
+          + Versions.MURMUR3_HASH_LAYOUT_VERSION));
+    }
+
+    final KijiTableLayout layout = KijiTableLayout.newLayout(
+        TableLayoutDesc.newBuilder(desc)
+            .setVersion(Versions.MURMUR3_HASH_LAYOUT_VERSION.toString())
+            .build());
+    assertEquals(HashType.MURMUR3,
+        ((RowKeyFormat2) layout.getDesc().getKeysFormat()).getSalt().getHashType());
+  }
+
   @Test
   public void testDuplicateQualifierName() throws Exception {
     RowKeyFormat2 format = makeHashPrefixedRowKeyFormat();
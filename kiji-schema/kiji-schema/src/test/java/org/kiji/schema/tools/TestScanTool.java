@@ -20,9 +20,23 @@
 package org.kiji.schema.tools;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,10 +46,12 @@ import org.kiji.schema.EntityId;
 import org.kiji.schema.EntityIdFactory;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiPartition;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.avro.TableLayoutDesc;
+import org.kiji.schema.impl.hbase.HBaseKijiPartition;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayouts;
 import org.kiji.schema.util.InstanceBuilder;
@@ -44,6 +60,10 @@ import org.kiji.schema.util.ResourceUtils;
 public class TestScanTool extends KijiToolTest {
   private static final Logger LOG = LoggerFactory.getLogger(TestScanTool.class);
 
+  /** Layout of a table with a raw bytes column. */
+  private static final String RAW_BYTES_LAYOUT =
+      "org/kiji/schema/layout/TestRawBytesCell.layout.json";
+
   @Test
   public void testUnderspecified() throws Exception {
     final Kiji kiji = getKiji();
@@ -242,4 +262,276 @@ public class TestScanTool extends KijiToolTest {
       table.release();
     }
   }
+
+  @Test
+  public void testExportFlags() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+    final KijiTable table = kiji.openTable("table");
+    try {
+      final String exportDir = new File(getLocalTempDir(), "export").toString();
+      assertEquals(BaseTool.FAILURE, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=csv"));
+      assertTrue(mToolOutputLines[0].startsWith("--export-format must be"));
+      assertEquals(BaseTool.FAILURE, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-threads=0"));
+      assertTrue(mToolOutputLines[0].startsWith("--export-threads must be positive"));
+      assertEquals(BaseTool.FAILURE, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--max-rows=1"));
+      assertTrue(mToolOutputLines[0].startsWith("--export-dir exports entire tables"));
+      assertFalse(new File(exportDir).exists());
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  @Test
+  public void testExportJson() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+    final KijiTable table = kiji.openTable("table");
+    try {
+      new InstanceBuilder(kiji)
+          .withTable(table)
+              .withRow("row1")
+                  .withFamily("family").withQualifier("column").withValue(314L, "value1")
+              .withRow("row2")
+                  .withFamily("family").withQualifier("column").withValue(315L, "value2")
+          .build();
+
+      final File exportDir = new File(getLocalTempDir(), "export");
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json", "--export-threads=2"));
+      assertTrue(new File(exportDir, ParallelScanExporter.SUCCESS_FILE_NAME).exists());
+      assertTrue(new File(exportDir, ParallelScanExporter.REGIONS_FILE_NAME).exists());
+
+      final File regionFile = new File(exportDir, "region-00000.json");
+      final List<String> lines = Files.readLines(regionFile, Charsets.UTF_8);
+      assertEquals(2, lines.size());
+      for (String line : lines) {
+        assertTrue(line, line.contains("\"family\":\"family\""));
+        assertTrue(line, line.contains("\"value\":\"value"));
+      }
+
+      // Exporting again to the same directory skips the regions already exported:
+      final long lastModified = regionFile.lastModified();
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json"));
+      assertTrue(mToolOutputLines[1].startsWith("Exporting 0 regions"));
+      assertEquals(lastModified, regionFile.lastModified());
+
+      // The export does not resume with another format or data request:
+      assertTrue(new File(exportDir, ParallelScanExporter.EXPORT_FILE_NAME).exists());
+      assertEquals(BaseTool.FAILURE, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=avro"));
+      assertTrue(mToolOutputLines[1].contains("the export started with format JSON"));
+      assertEquals(BaseTool.FAILURE, runTool(new ScanTool(),
+          table.getURI().toString() + "family:column",
+          "--export-dir=" + exportDir, "--export-format=json"));
+      assertTrue(mToolOutputLines[1].contains("the export started with data request"));
+      assertFalse(new File(exportDir, "region-00000.avro").exists());
+      assertEquals(lastModified, regionFile.lastModified());
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  @Test
+  public void testExportAvro() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+    final KijiTable table = kiji.openTable("table");
+    try {
+      new InstanceBuilder(kiji)
+          .withTable(table)
+              .withRow("row1")
+                  .withFamily("family").withQualifier("column").withValue(314L, "value1")
+          .build();
+
+      final File exportDir = new File(getLocalTempDir(), "export");
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir));
+      assertTrue(new File(exportDir, ParallelScanExporter.SUCCESS_FILE_NAME).exists());
+
+      final DataFileReader<GenericRecord> reader = new DataFileReader<GenericRecord>(
+          new File(exportDir, "region-00000.avro"), new GenericDatumReader<GenericRecord>());
+      try {
+        assertEquals(ParallelScanExporter.ROW_SCHEMA, reader.getSchema());
+        assertTrue(reader.hasNext());
+        final GenericRecord row = reader.next();
+        final List<?> cells = (List<?>) row.get("cells");
+        assertEquals(1, cells.size());
+        final GenericRecord cell = (GenericRecord) cells.get(0);
+        assertEquals("column", cell.get("qualifier").toString());
+        assertEquals(314L, cell.get("timestamp"));
+        assertFalse(reader.hasNext());
+      } finally {
+        reader.close();
+      }
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  /**
+   * Writes rows "row0" to "row&lt;count - 1&gt;" to a table with the simple layout.
+   *
+   * @param table Table to write to.
+   * @param count Number of rows to write.
+   * @throws Exception on error.
+   */
+  private void writeRows(KijiTable table, int count) throws Exception {
+    final InstanceBuilder.TableBuilder builder = new InstanceBuilder(getKiji()).withTable(table);
+    for (int row = 0; row < count; ++row) {
+      builder.withRow("row" + row)
+          .withFamily("family").withQualifier("column").withValue(314L, "value" + row);
+    }
+    builder.build();
+  }
+
+  /**
+   * Reads the HBase row keys of the rows of an exported JSON file.
+   *
+   * @param regionFile Exported JSON file.
+   * @return the HBase row keys of the rows of the file, in order.
+   * @throws Exception on error.
+   */
+  private static List<byte[]> readRowKeys(File regionFile) throws Exception {
+    final ObjectMapper mapper = new ObjectMapper();
+    final List<byte[]> rowKeys = Lists.newArrayList();
+    for (String line : Files.readLines(regionFile, Charsets.UTF_8)) {
+      rowKeys.add(Bytes.toBytesBinary(mapper.readTree(line).get("hbase_row_key").getTextValue()));
+    }
+    return rowKeys;
+  }
+
+  @Test
+  public void testExportMultipleRegions() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE), 4);
+    final KijiTable table = kiji.openTable("table");
+    try {
+      writeRows(table, 20);
+
+      final File exportDir = new File(getLocalTempDir(), "export");
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json", "--export-threads=3"));
+      assertTrue(mToolOutputLines[1].startsWith("Exporting 4 regions of 4"));
+
+      // Each region file holds the rows of its region, in order:
+      final List<KijiPartition> regions = Lists.<KijiPartition>newArrayList(table.getPartitions());
+      assertEquals(4, regions.size());
+      int rows = 0;
+      for (int index = 0; index < regions.size(); ++index) {
+        final HBaseKijiPartition region = (HBaseKijiPartition) regions.get(index);
+        byte[] previous = region.getStartKey();
+        for (byte[] rowKey
+            : readRowKeys(new File(exportDir, String.format("region-%05d.json", index)))) {
+          assertTrue(Bytes.compareTo(previous, rowKey) <= 0);
+          assertTrue((region.getEndKey().length == 0)
+              || (Bytes.compareTo(rowKey, region.getEndKey()) < 0));
+          previous = rowKey;
+          rows += 1;
+        }
+      }
+      assertEquals(20, rows);
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  @Test
+  public void testExportResumesOverTemporaryFile() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE), 2);
+    final KijiTable table = kiji.openTable("table");
+    try {
+      writeRows(table, 10);
+
+      final File exportDir = new File(getLocalTempDir(), "export");
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json"));
+      final File regionFile = new File(exportDir, "region-00001.json");
+      final List<String> exported = Files.readLines(regionFile, Charsets.UTF_8);
+
+      // Simulate an export interrupted while writing the second region:
+      assertTrue(regionFile.delete());
+      final File temporaryFile = new File(exportDir, "_tmp-region-00001.json");
+      Files.write("{\"entity_id\":", temporaryFile, Charsets.UTF_8);
+
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json"));
+      assertTrue(mToolOutputLines[1].startsWith("Exporting 1 regions of 2"));
+      assertFalse(temporaryFile.exists());
+      assertEquals(exported, Files.readLines(regionFile, Charsets.UTF_8));
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  @Test
+  public void testExportResumesAfterSplit() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE), 2);
+    // The same rows in a table split into 4 regions stand for the table after its regions split.
+    final TableLayoutDesc splitLayout = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE);
+    splitLayout.setName("split");
+    kiji.createTable(splitLayout, 4);
+    final KijiTable table = kiji.openTable("table");
+    final KijiTable split = kiji.openTable("split");
+    try {
+      writeRows(table, 20);
+      writeRows(split, 20);
+
+      final File exportDir = new File(getLocalTempDir(), "export");
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json"));
+      final File regionFile = new File(exportDir, "region-00001.json");
+      final List<String> exported = Files.readLines(regionFile, Charsets.UTF_8);
+      assertFalse(exported.isEmpty());
+
+      // The interrupted export resumes with the 2 recorded regions, each now spanning 2 regions:
+      assertTrue(regionFile.delete());
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), split.getURI().toString(),
+          "--export-dir=" + exportDir, "--export-format=json"));
+      assertTrue(mToolOutputLines[1].startsWith("Exporting 1 regions of 2"));
+      assertEquals(exported, Files.readLines(regionFile, Charsets.UTF_8));
+      assertFalse(new File(exportDir, "region-00002.json").exists());
+    } finally {
+      ResourceUtils.releaseOrLog(split);
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  @Test
+  public void testExportRawBytes() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(RAW_BYTES_LAYOUT));
+    final KijiTable table = kiji.openTable("table");
+    try {
+      new InstanceBuilder(kiji)
+          .withTable(table)
+              .withRow("row1")
+                  .withFamily("family").withQualifier("column")
+                      .withValue(314L, new byte[] {3, 1, 4})
+          .build();
+
+      // Raw bytes cells have no reader schema, and are not counters either:
+      final File exportDir = new File(getLocalTempDir(), "export");
+      assertEquals(BaseTool.SUCCESS, runTool(new ScanTool(), table.getURI().toString(),
+          "--export-dir=" + exportDir));
+      final DataFileReader<GenericRecord> reader = new DataFileReader<GenericRecord>(
+          new File(exportDir, "region-00000.avro"), new GenericDatumReader<GenericRecord>());
+      try {
+        final GenericRecord row = reader.next();
+        final GenericRecord cell = (GenericRecord) ((List<?>) row.get("cells")).get(0);
+        assertNull(cell.get("schema"));
+        assertEquals(ByteBuffer.wrap(new byte[] {3, 1, 4}), cell.get("value"));
+      } finally {
+        reader.close();
+      }
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
 }
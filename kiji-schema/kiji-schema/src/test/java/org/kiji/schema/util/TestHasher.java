@@ -26,12 +26,16 @@ import static org.junit.Assert.assertFalse;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 
+import com.google.common.hash.Hashing;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.kiji.schema.avro.HashType;
+
 public class TestHasher {
   private static final Logger LOG = LoggerFactory.getLogger(TestHasher.class);
 
@@ -45,6 +49,29 @@ public class TestHasher {
     assertFalse(Arrays.equals(Hasher.hash("foo"), Hasher.hash("bar")));
   }
 
+  @Test
+  public void testHashTypes() {
+    final Random random = new Random(0);
+    for (int length = 0; length < 100; length++) {
+      final byte[] input = new byte[length];
+      random.nextBytes(input);
+
+      // MD5 hashes are unchanged.
+      assertArrayEquals(Hasher.hash(input), Hasher.hash(HashType.MD5, input));
+
+      // MURMUR3 is the reference x64 128-bit MurmurHash3.
+      final byte[] murmur = Hasher.hash(HashType.MURMUR3, input);
+      assertArrayEquals(Hashing.murmur3_128().hashBytes(input).asBytes(), murmur);
+
+      // Hashing a slice into a prefix of a larger buffer.
+      final byte[] padded = new byte[length + 3];
+      System.arraycopy(input, 0, padded, 2, length);
+      final byte[] output = new byte[5];
+      Hasher.hash(HashType.MURMUR3, padded, 2, length, output, 1, 3);
+      assertArrayEquals(Arrays.copyOf(murmur, 3), Arrays.copyOfRange(output, 1, 4));
+    }
+  }
+
   public class HashingThread extends Thread {
     private final int mIterations;
     private boolean mFailed;
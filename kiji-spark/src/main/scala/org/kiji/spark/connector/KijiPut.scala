@@ -0,0 +1,59 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector
+
+import org.apache.hadoop.hbase.HConstants
+
+import org.kiji.schema.EntityId
+
+/**
+ * A cell to write to a Kiji table with `saveToKiji` and `bulkSaveToKiji`.
+ *
+ * @param entityId The entity ID of the row to write to.
+ * @param family The family of the column to write to.
+ * @param qualifier The qualifier of the column to write to.
+ * @param timestamp The timestamp of the cell. `HConstants.LATEST_TIMESTAMP` stands for the time
+ *     of the write.
+ * @param value The value of the cell, encoded with the cell schema of the column.
+ * @tparam T The type of the value of the cell.
+ */
+case class KijiPut[T](
+    entityId: EntityId,
+    family: String,
+    qualifier: String,
+    timestamp: Long,
+    value: T
+)
+
+/** Companion object providing factory methods for KijiPuts. */
+object KijiPut {
+
+  /**
+   * Creates a put of a cell timestamped with the time of the write.
+   *
+   * @param entityId The entity ID of the row to write to.
+   * @param family The family of the column to write to.
+   * @param qualifier The qualifier of the column to write to.
+   * @param value The value of the cell.
+   * @tparam T The type of the value of the cell.
+   * @return a put of the cell timestamped with the time of the write.
+   */
+  def apply[T](entityId: EntityId, family: String, qualifier: String, value: T): KijiPut[T] =
+    KijiPut(entityId, family, qualifier, HConstants.LATEST_TIMESTAMP, value)
+}
@@ -0,0 +1,229 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector
+
+import scala.collection.JavaConverters.asScalaBufferConverter
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.hbase.HConstants
+import org.apache.hadoop.hbase.KeyValue
+import org.apache.hadoop.security.Credentials
+import org.apache.hadoop.security.UserGroupInformation
+import org.apache.hadoop.security.UserGroupInformation.AuthenticationMethod
+import org.apache.spark.SerializableWritable
+import org.apache.spark.SparkContext.rddToOrderedRDDFunctions
+import org.apache.spark.broadcast.Broadcast
+import org.apache.spark.rdd.RDD
+import org.slf4j.LoggerFactory
+
+import org.kiji.schema.Kiji
+import org.kiji.schema.KijiColumnName
+import org.kiji.schema.KijiTable
+import org.kiji.schema.KijiURI
+import org.kiji.schema.hbase.HBaseKijiURI
+import org.kiji.schema.impl.hbase.HBaseKijiTable
+import org.kiji.spark.connector.rdd.hbase.HBaseKijiHFileWriter
+import org.kiji.spark.connector.rdd.hbase.HBaseTableContext
+import org.kiji.spark.connector.rdd.hbase.KijiRegionPartitioner
+
+/** Provides methods writing `RDD[KijiPut[T]]`s to Kiji tables.
+  * These methods are made available on RDDs of KijiPuts by importing
+  * `org.kiji.spark.connector.conversions._`
+  *
+  * Small outputs are best written with `saveToKiji`, through buffered writers. Large outputs are
+  * best written as HFiles with `bulkSaveToKiji`, which only touches the region servers of the
+  * table to load complete HFiles.
+  *
+  * @param rdd The puts to write.
+  * @tparam T The type of the values of the puts.
+  */
+class KijiRDDFunctions[T](@transient val rdd: RDD[KijiPut[T]]) extends Serializable {
+  import KijiRDDFunctions._
+
+  /** Writes the puts to a Kiji table through one buffered writer per partition.
+    *
+    * @param uri The URI of the table to write to.
+    */
+  def saveToKiji(uri: KijiURI) {
+    val tableURIString = uri.toString
+    val confBroadcast =
+        rdd.context.broadcast(new SerializableWritable(rdd.context.hadoopConfiguration))
+    val credentialsBroadcast = broadcastCredentials()
+
+    rdd.foreachPartition { puts: Iterator[KijiPut[T]] =>
+      addCredentials(credentialsBroadcast.value.value)
+      withTable(tableURIString, confBroadcast.value.value) { table: KijiTable =>
+        val writer = table.getWriterFactory.openBufferedWriter()
+        try {
+          puts.foreach { put: KijiPut[T] =>
+            writer.put(put.entityId, put.family, put.qualifier, put.timestamp, put.value)
+          }
+        } finally {
+          writer.close()
+        }
+      }
+    }
+  }
+
+  /** Writes the puts as HFiles for an HBase Kiji table, ready for bulk load.
+    *
+    * The puts are encoded, partitioned by the regions of the table, and sorted within each
+    * partition, so that each partition is written as the HFiles of a single region, one
+    * directory per locality group, as KijiMR HFile outputs are. Cells timestamped with
+    * `HConstants.LATEST_TIMESTAMP` are written with the time at which this method is called.
+    *
+    * @param uri The URI of the table the HFiles are for. The table must be an HBase Kiji table.
+    * @param hfileDir The directory to write the HFiles to.
+    */
+  def saveAsKijiHFiles(uri: KijiURI, hfileDir: String) {
+    val tableURIString = requireHBaseTable(uri).toString
+    val conf = rdd.context.hadoopConfiguration
+    val confBroadcast = rdd.context.broadcast(new SerializableWritable(conf))
+    val credentialsBroadcast = broadcastCredentials()
+    val latestTimestamp = System.currentTimeMillis()
+
+    // Every task encodes and writes with the layout of the table when this method is called.
+    val (layoutId, partitioner) = withTable(tableURIString, conf) { table: KijiTable =>
+      (table.getLayout.getDesc.getLayoutId,
+          KijiRegionPartitioner.fromStartKeys(table.getRegions.asScala.map { _.getStartKey }))
+    }
+
+    // Puts are shuffled as serialized KeyValues, encoded and timestamped once on the map side,
+    // so that they are sorted with the timestamps they are written with.
+    val keyValues: RDD[(Array[Byte], Unit)] = rdd.mapPartitions { puts: Iterator[KijiPut[T]] =>
+      addCredentials(credentialsBroadcast.value.value)
+      val context = HBaseTableContext.get(tableURIString, layoutId, confBroadcast.value.value)
+      puts.map { put: KijiPut[T] =>
+        val hbaseColumn = context.columnTranslator
+            .toHBaseColumnName(KijiColumnName.create(put.family, put.qualifier))
+        val keyValue = new KeyValue(
+            put.entityId.getHBaseRowKey,
+            hbaseColumn.getFamily,
+            hbaseColumn.getQualifier,
+            if (HConstants.LATEST_TIMESTAMP == put.timestamp) latestTimestamp else put.timestamp,
+            context.encoderProvider.getEncoder(put.family, put.qualifier).encode(put.value))
+        (keyValue.getBuffer, ())
+      }
+    }
+
+    implicit val ordering: Ordering[Array[Byte]] = KijiRegionPartitioner.KeyValueOrdering
+    val written = keyValues
+        .repartitionAndSortWithinPartitions(partitioner)
+        .mapPartitionsWithIndex { (partition: Int, sorted: Iterator[(Array[Byte], Unit)]) =>
+          addCredentials(credentialsBroadcast.value.value)
+          val conf = confBroadcast.value.value
+          val writer = new HBaseKijiHFileWriter(
+              conf,
+              HBaseTableContext.get(tableURIString, layoutId, conf).layout,
+              new Path(hfileDir),
+              partition,
+              latestTimestamp)
+          var count = 0L
+          try {
+            sorted.foreach { case (keyValue, _) =>
+              writer.write(new KeyValue(keyValue))
+              count += 1
+            }
+          } finally {
+            writer.close()
+          }
+          Iterator(count)
+        }
+        .reduce(_ + _)
+    Log.info("Wrote {} cells as HFiles in {}.", written, hfileDir)
+  }
+
+  /** Authenticates the user as `kijiRDD` does, and broadcasts the credentials of the user.
+    *
+    * @return the broadcast credentials of the user.
+    */
+  private def broadcastCredentials(): Broadcast[SerializableWritable[Credentials]] = {
+    rdd.context.broadcast(new SerializableWritable(SparkContextFunctions.credentials(rdd.context)))
+  }
+
+  /** Writes the puts to an HBase Kiji table as HFiles, then bulk loads the HFiles.
+    *
+    * @param uri The URI of the table to write to. The table must be an HBase Kiji table.
+    * @param hfileDir The temporary directory to write the HFiles to. Once loaded, the HFiles are
+    *     moved to the table, leaving the directory empty.
+    */
+  def bulkSaveToKiji(uri: KijiURI, hfileDir: String) {
+    saveAsKijiHFiles(uri, hfileDir)
+    withTable(uri.toString, rdd.context.hadoopConfiguration) { table: KijiTable =>
+      HBaseKijiTable.downcast(table).bulkLoad(new Path(hfileDir))
+    }
+  }
+}
+
+/** Companion object containing the helpers of KijiRDDFunctions. */
+object KijiRDDFunctions {
+  private final val Log = LoggerFactory.getLogger(classOf[KijiRDDFunctions[_]])
+
+  /**
+   * Checks that a URI addresses an HBase Kiji table.
+   *
+   * @param uri The URI to check.
+   * @return the URI.
+   * @throws UnsupportedOperationException if the URI does not address an HBase Kiji table.
+   */
+  private def requireHBaseTable(uri: KijiURI): KijiURI = {
+    uri match {
+      case hbaseKijiURI: HBaseKijiURI =>
+        require(null != uri.getTable, "KijiURI must specify a table.")
+        uri
+      case _ => throw new UnsupportedOperationException(KijiSpark.UnsupportedKiji)
+    }
+  }
+
+  /**
+   * Adds credentials to the current user, as KijiRDDs do on executors.
+   *
+   * @param credentials The credentials to add.
+   */
+  private def addCredentials(credentials: Credentials) {
+    val ugi = UserGroupInformation.getCurrentUser
+    ugi.addCredentials(credentials)
+    ugi.setAuthenticationMethod(AuthenticationMethod.PROXY)
+  }
+
+  /**
+   * Runs a function on a Kiji table, releasing the table and its instance afterwards.
+   *
+   * @param tableURI The URI of the table.
+   * @param conf The configuration with which to open the Kiji instance of the table.
+   * @param fn The function to run on the table.
+   * @tparam R The type of the result of the function.
+   * @return the result of the function.
+   */
+  private def withTable[R](tableURI: String, conf: Configuration)(fn: KijiTable => R): R = {
+    val uri = KijiURI.newBuilder(tableURI).build()
+    val kiji = Kiji.Factory.open(uri, conf)
+    try {
+      val table = kiji.openTable(uri.getTable)
+      try {
+        fn(table)
+      } finally {
+        table.release()
+      }
+    } finally {
+      kiji.release()
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package org.kiji.spark.connector
 
 import org.apache.hadoop.hbase.security.token.TokenUtil
+import org.apache.hadoop.security.Credentials
 import org.apache.hadoop.security.UserGroupInformation
 import org.apache.spark.SparkContext
 import org.kiji.schema.KijiDataRequest
@@ -40,6 +41,35 @@ class SparkContextFunctions(@transient val sc: SparkContext) extends Serializabl
     * @return An instance of a KijiRDD.
     */
   def kijiRDD[T](uri: KijiURI, dataRequest: KijiDataRequest, vClass: Class[_ <: T]): KijiRDD[T] = {
+    KijiRDD(sc, sc.hadoopConfiguration, credentials(sc), uri, dataRequest).asInstanceOf[KijiRDD[T]]
+  }
+
+  /** Returns a view of a Kiji table as `KijiRDD[T]` whose rows are decoded lazily.
+    *
+    * Rows keep their cells in their encoded HBase form, which is what is serialized when the rows
+    * are shuffled, and are decoded when they are first accessed. Combine with `KijiRDD.project`
+    * to read only the columns used by the job. Only HBase Kiji tables without paged columns are
+    * supported.
+    *
+    * @param uri A KijiURI.
+    * @param dataRequest A KijiDataRequest, without paged columns.
+    * @return An instance of a KijiRDD whose rows are decoded lazily.
+    */
+  def lazyKijiRDD[T](uri: KijiURI, dataRequest: KijiDataRequest): KijiRDD[T] = {
+    KijiRDD(sc, sc.hadoopConfiguration, credentials(sc), uri, dataRequest, lazyDecoding = true)
+        .asInstanceOf[KijiRDD[T]]
+  }
+}
+
+object SparkContextFunctions {
+  private final val Log = LoggerFactory.getLogger("SparkContextFunctions")
+
+  /** Authenticates with Kerberos if configured to, and returns the credentials of the user.
+    *
+    * @param sc The SparkContext whose configuration holds the Kerberos settings.
+    * @return The credentials with which to read and write Kiji tables.
+    */
+  private[connector] def credentials(sc: SparkContext): Credentials = {
     val authMode = sc.hadoopConfiguration.get("hbase.security.authentication")
     Log.info(s"Running with $authMode authentication.")
 
@@ -68,11 +98,6 @@ class SparkContextFunctions(@transient val sc: SparkContext) extends Serializabl
       UserGroupInformation.getCurrentUser
     }
 
-    val credentials = ugi.getCredentials
-    KijiRDD(sc, sc.hadoopConfiguration, credentials, uri, dataRequest).asInstanceOf[KijiRDD[T]]
+    ugi.getCredentials
   }
-}
-
-object SparkContextFunctions {
-  private final val Log = LoggerFactory.getLogger("SparkContextFunctions")
 }
\ No newline at end of file
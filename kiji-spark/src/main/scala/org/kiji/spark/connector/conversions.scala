@@ -21,11 +21,13 @@ package org.kiji.spark.connector
 import scala.language.implicitConversions
 
 import org.apache.spark.SparkContext
+import org.apache.spark.rdd.RDD
 
 package object conversions {
 
   implicit def toSparkContextFunctions(sc: SparkContext): SparkContextFunctions =
     new SparkContextFunctions(sc)
 
-  //TODO: Add RDD functions for writing to Kiji tables.
+  implicit def toKijiRDDFunctions[T](rdd: RDD[KijiPut[T]]): KijiRDDFunctions[T] =
+    new KijiRDDFunctions(rdd)
 }
\ No newline at end of file
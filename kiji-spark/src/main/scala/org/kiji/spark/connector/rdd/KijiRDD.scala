@@ -11,9 +11,11 @@ import org.apache.spark.rdd.RDD
 
 import org.kiji.schema.cassandra.CassandraKijiURI
 import org.kiji.schema.hbase.HBaseKijiURI
+import org.kiji.schema.KijiColumnName
 import org.kiji.schema.KijiDataRequest
 import org.kiji.schema.KijiURI
 import org.kiji.schema.KijiResult
+import org.kiji.schema.impl.DefaultKijiResult
 import org.kiji.spark.connector.rdd.hbase.HBaseKijiRDD
 import org.kiji.spark.connector.rdd.cassandra.CassandraKijiRDD
 import org.kiji.spark.connector.KijiSpark
@@ -31,6 +33,28 @@ abstract class KijiRDD[T] private[rdd] (
 
   override def compute(split: Partition, context: TaskContext): Iterator[KijiResult[T]]
   override protected def getPartitions: Array[Partition]
+
+  /**
+   * Returns an RDD of the same rows, restricted to some of the columns of this RDD's data
+   * request. Columns left out of the projection are neither read from the table nor carried
+   * through the cluster.
+   *
+   * @param columns The columns to keep, as "family" or "family:qualifier" names. Each column must
+   *     be part of this RDD's data request, either directly or through its family.
+   * @return an RDD of the same rows, restricted to the specified columns.
+   */
+  def project(columns: String*): KijiRDD[T] = {
+    val columnNames = columns.map { column: String => KijiColumnName.create(column) }
+    withDataRequest(KijiRDD.projectDataRequest(kijiDataRequest, columnNames))
+  }
+
+  /**
+   * Returns an RDD of the same table and partitioning, reading a different data request.
+   *
+   * @param dataRequest The data request of the new RDD.
+   * @return an RDD of the same table, reading the specified data request.
+   */
+  protected def withDataRequest(dataRequest: KijiDataRequest): KijiRDD[T]
 }
 
 object KijiRDD {
@@ -62,6 +86,8 @@ object KijiRDD {
    * @param credentials
    * @param kijiURI
    * @param kijiDataRequest
+   * @param lazyDecoding Whether to read rows in their encoded form, decoded on first access.
+   *     Only supported by HBase Kiji instances.
    * @return
    */
   def apply (
@@ -69,12 +95,38 @@ object KijiRDD {
       @transient conf: Configuration,
       @transient credentials: Credentials,
       @transient kijiURI: KijiURI,
-      kijiDataRequest: KijiDataRequest
+      kijiDataRequest: KijiDataRequest,
+      lazyDecoding: Boolean = false
   ): KijiRDD[_] = {
     kijiURI match {
-      case hbaseKijiURI: HBaseKijiURI => HBaseKijiRDD(sc, conf, credentials, kijiURI, kijiDataRequest)
-      case cassandraKijiURI: CassandraKijiURI => CassandraKijiRDD(sc, kijiURI, kijiDataRequest)
+      case hbaseKijiURI: HBaseKijiURI =>
+        HBaseKijiRDD(sc, conf, credentials, kijiURI, kijiDataRequest, lazyDecoding)
+      case cassandraKijiURI: CassandraKijiURI if !lazyDecoding =>
+        CassandraKijiRDD(sc, kijiURI, kijiDataRequest)
       case _ => throw new UnsupportedOperationException(KijiSpark.UnsupportedKiji)
     }
   }
+
+  /**
+   * Restricts a data request to some of its columns.
+   *
+   * @param dataRequest The data request to restrict.
+   * @param columns The columns to keep. Each column must be part of the data request, either
+   *     directly or through its family.
+   * @return the data request restricted to the specified columns.
+   * @throws IllegalArgumentException if a column is not part of the data request.
+   */
+  private[rdd] def projectDataRequest(
+      dataRequest: KijiDataRequest,
+      columns: Seq[KijiColumnName]
+  ): KijiDataRequest = {
+    require(columns.nonEmpty, "A projection must keep at least one column.")
+    columns
+        .map { column: KijiColumnName =>
+          val projected = DefaultKijiResult.narrowRequest(column, dataRequest)
+          require(!projected.isEmpty, s"Column $column is not part of data request $dataRequest.")
+          projected
+        }
+        .reduce { (left: KijiDataRequest, right: KijiDataRequest) => left.merge(right) }
+  }
 }
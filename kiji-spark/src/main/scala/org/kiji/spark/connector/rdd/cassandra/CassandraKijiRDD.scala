@@ -154,6 +154,10 @@ class CassandraKijiRDD[T] private (
       materializedResult
     }
 
+  override protected def withDataRequest(dataRequest: KijiDataRequest): KijiRDD[T] = {
+    new CassandraKijiRDD[T](sparkContext, KijiURI.newBuilder(mKijiURIString).build(), dataRequest)
+  }
+
   override protected def getPartitions: Array[Partition] = {
     val kijiURI: KijiURI = KijiURI.newBuilder(mKijiURIString).build()
     if (null == kijiURI.getTable) {
@@ -0,0 +1,134 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.rdd.hbase
+
+import java.util.Arrays
+import java.util.{Iterator => JIterator}
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.hbase.Cell
+import org.apache.hadoop.hbase.KeyValue
+import org.apache.hadoop.hbase.client.Result
+import org.apache.spark.SerializableWritable
+import org.apache.spark.broadcast.Broadcast
+
+import org.kiji.schema.EntityId
+import org.kiji.schema.KijiCell
+import org.kiji.schema.KijiColumnName
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.KijiResult
+import org.kiji.schema.impl.hbase.HBaseMaterializedKijiResult
+
+/**
+ * A row of an HBase Kiji table which holds its cells in their encoded form, as read from HBase.
+ *
+ * Rows are serialized in their encoded form, so that shuffles carry the raw cell bytes rather
+ * than decoded values. Nothing is decoded until the row is first accessed: the first access
+ * resolves the decoding context of the table for the layout the row was read with, shared by all
+ * rows of the table and layout in the JVM, and each cell is then decoded when it is iterated over.
+ * Wherever the row is decoded, the decoding context is created with the configuration of the job
+ * which read the row.
+ *
+ * Encoded rows may only hold the unpaged columns of a data request.
+ *
+ * @param tableURI The URI of the table of the row.
+ * @param layoutId The ID of the layout of the table the row was read with.
+ * @param conf The configuration of the job which read the row.
+ * @param dataRequest The data request which defines the columns of the row.
+ * @param rowKey The HBase row key of the row.
+ * @param encodedCells The HBase cells of the row, each one a serialized `KeyValue`.
+ * @tparam T The type of the values in the cells of the row.
+ */
+final class EncodedKijiResult[T] private[connector] (
+    val tableURI: String,
+    val layoutId: String,
+    val conf: Broadcast[SerializableWritable[Configuration]],
+    dataRequest: KijiDataRequest,
+    val rowKey: Array[Byte],
+    val encodedCells: Array[Array[Byte]]
+) extends KijiResult[T] with Serializable {
+
+  /** The row, backed by its HBase cells, created on first access. */
+  @transient private lazy val mResult: HBaseMaterializedKijiResult[T] = {
+    val context = HBaseTableContext.get(tableURI, layoutId, conf.value.value)
+    val cells: Array[Cell] = encodedCells.map { bytes => new KeyValue(bytes): Cell }
+    HBaseMaterializedKijiResult.create[T](
+        context.entityIdFactory.getEntityIdFromHBaseRowKey(rowKey),
+        dataRequest,
+        Result.create(cells),
+        context.layout,
+        context.columnTranslator,
+        context.decoderProvider)
+  }
+
+  override def getEntityId: EntityId = mResult.getEntityId
+
+  override def getDataRequest: KijiDataRequest = dataRequest
+
+  override def iterator(): JIterator[KijiCell[T]] = mResult.iterator()
+
+  override def narrowView[U <: T](column: KijiColumnName): KijiResult[U] =
+    mResult.narrowView[U](column)
+
+  override def close(): Unit = {
+    // Encoded rows hold no resources.
+  }
+}
+
+/** Companion object providing factory methods for encoded rows. */
+object EncodedKijiResult {
+
+  /**
+   * Creates an encoded row from an HBase result.
+   *
+   * @param tableURI The URI of the table of the row.
+   * @param layoutId The ID of the layout of the table the row was read with.
+   * @param conf The configuration of the job which read the row.
+   * @param dataRequest The data request which defines the columns of the row; it must not contain
+   *     paged columns.
+   * @param result The HBase result holding the cells of the row.
+   * @tparam T The type of the values in the cells of the row.
+   * @return an encoded row holding the cells of the HBase result.
+   */
+  def fromResult[T](
+      tableURI: String,
+      layoutId: String,
+      conf: Broadcast[SerializableWritable[Configuration]],
+      dataRequest: KijiDataRequest,
+      result: Result
+  ): EncodedKijiResult[T] = {
+    val encodedCells: Array[Array[Byte]] = result.raw().map { keyValue: KeyValue =>
+      val buffer = keyValue.getBuffer
+      val offset = keyValue.getOffset
+      val length = keyValue.getLength
+      if (0 == offset && buffer.length == length) {
+        buffer
+      } else {
+        Arrays.copyOfRange(buffer, offset, offset + length)
+      }
+    }
+    new EncodedKijiResult[T](
+        tableURI,
+        layoutId,
+        conf,
+        dataRequest,
+        result.getRow,
+        encodedCells)
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.rdd.hbase
+
+import java.io.IOException
+import java.util.Arrays
+import java.util.Locale
+
+import scala.collection.mutable
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.FileSystem
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.hbase.HConstants
+import org.apache.hadoop.hbase.KeyValue
+import org.apache.hadoop.hbase.io.hfile.HFile
+import org.apache.hadoop.hbase.regionserver.StoreFile
+import org.apache.hadoop.hbase.regionserver.TimeRangeTracker
+import org.apache.hadoop.hbase.util.Bytes
+import org.apache.hadoop.io.WritableUtils
+import org.slf4j.LoggerFactory
+
+import org.kiji.schema.layout.KijiTableLayout
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout
+import org.kiji.schema.layout.impl.ColumnId
+import org.kiji.schema.platform.SchemaPlatformBridge
+
+/**
+ * Writes the sorted `KeyValue`s of one partition of a Kiji table as HFiles ready for bulk load.
+ *
+ * Follows the conventions of KijiMR's `KijiHFileOutputFormat`: the partition is written to its
+ * own `part-r-NNNNN.hfile` directory, with one sub-directory per locality group, named after the
+ * locality group ID, holding HFiles of at most `hbase.hregion.max.filesize` bytes. Rows are never
+ * split across HFiles. The output directory can be loaded with `HBaseKijiTable.bulkLoad`, or with
+ * the `kiji bulk-load` tool.
+ *
+ * `KeyValue`s must be written in the order of `KeyValue.COMPARATOR`, with their final timestamps:
+ * `HConstants.LATEST_TIMESTAMP` must be replaced before the `KeyValue`s are sorted, since it sorts
+ * before any other timestamp.
+ *
+ * @param conf The configuration with which to write the HFiles.
+ * @param layout The layout of the table the HFiles are for.
+ * @param outputDir The directory holding the HFiles of all the partitions.
+ * @param partition The index of the partition to write.
+ * @param bulkLoadTime The time of the write, recorded as the bulk load time of the HFiles.
+ */
+private[connector] final class HBaseKijiHFileWriter(
+    conf: Configuration,
+    layout: KijiTableLayout,
+    outputDir: Path,
+    partition: Int,
+    bulkLoadTime: Long
+) {
+  import HBaseKijiHFileWriter._
+
+  private val mBulkLoadTimeBytes = Bytes.toBytes(bulkLoadTime)
+  private val mPartitionDir =
+      new Path(outputDir, "part-r-%05d%s".format(partition, OutputExtension))
+  private val mFileSystem: FileSystem = mPartitionDir.getFileSystem(conf)
+  private val mMaxFileSizeBytes = conf.getLong(HRegionMaxFileSize, DefaultHRegionMaxFileSize)
+  private val mBlockSizeBytes = conf.getInt(HFileBlockSize, DefaultHFileBlockSize)
+
+  /** Writers of the locality groups of the partition, by locality group ID. */
+  private val mWriters = mutable.Map[ColumnId, LocalityGroupWriter]()
+
+  // A previous attempt at writing the partition may have left files behind.
+  if (mFileSystem.exists(mPartitionDir)) {
+    mFileSystem.delete(mPartitionDir, true)
+  }
+
+  /**
+   * Writes a `KeyValue`.
+   *
+   * @param keyValue The `KeyValue` to write.
+   */
+  def write(keyValue: KeyValue) {
+    require(HConstants.LATEST_TIMESTAMP != keyValue.getTimestamp,
+        "KeyValues must be timestamped before they are sorted.")
+    val lgId = ColumnId.fromByteArray(keyValue.getFamily)
+    mWriters.getOrElseUpdate(lgId, openLocalityGroupWriter(lgId)).write(keyValue)
+  }
+
+  /** Closes the HFiles of all the locality groups. */
+  def close() {
+    mWriters.values.foreach { writer => writer.close() }
+  }
+
+  /**
+   * Opens the writer of a locality group.
+   *
+   * @param lgId The ID of the locality group.
+   * @return the writer of the locality group.
+   */
+  private def openLocalityGroupWriter(lgId: ColumnId): LocalityGroupWriter = {
+    val lgName = layout.getLocalityGroupIdNameMap.get(lgId)
+    require(null != lgName, "Locality group ID '%s' does not exist in table '%s'.".format(
+        lgId, layout.getName))
+    new LocalityGroupWriter(layout.getLocalityGroupMap.get(lgName))
+  }
+
+  /**
+   * Writes the `KeyValue`s of a locality group to a sequence of HFiles.
+   *
+   * @param lgLayout The layout of the locality group.
+   */
+  private final class LocalityGroupWriter(lgLayout: LocalityGroupLayout) {
+    private val mFamilyDir = new Path(mPartitionDir, lgLayout.getId.toString)
+    private val mCompressionType =
+        lgLayout.getDesc.getCompressionType.toString.toLowerCase(Locale.ROOT)
+
+    if (!mFileSystem.exists(mFamilyDir) && !mFileSystem.mkdirs(mFamilyDir)) {
+      throw new IOException("Unable to create output directory: %s".format(mFamilyDir))
+    }
+
+    private var mHFileCounter = 0
+    private var mCurrentHFileSize = 0L
+    private var mCurrentRow: Array[Byte] = null
+    private var mTimeRangeTracker: TimeRangeTracker = null
+    private var mWriter: HFile.Writer = openNewWriter()
+
+    /**
+     * Writes a `KeyValue`, starting a new HFile first if the current one is full.
+     *
+     * @param keyValue The `KeyValue` to write.
+     */
+    def write(keyValue: KeyValue) {
+      val recordLength = keyValue.getLength
+      if (mCurrentHFileSize + recordLength >= mMaxFileSizeBytes
+          && !Arrays.equals(mCurrentRow, keyValue.getRow)) {
+        closeWriter()
+        mWriter = openNewWriter()
+      }
+      mWriter.append(keyValue)
+      mTimeRangeTracker.includeTimestamp(keyValue)
+      mCurrentHFileSize += recordLength
+      mCurrentRow = keyValue.getRow
+    }
+
+    /** Closes the current HFile. */
+    def close() {
+      closeWriter()
+    }
+
+    /**
+     * Opens a new HFile for the locality group.
+     *
+     * @return a writer for the new HFile.
+     */
+    private def openNewWriter(): HFile.Writer = {
+      val hfilePath = new Path(mFamilyDir, "%05d".format(mHFileCounter))
+      mHFileCounter += 1
+      Log.info("Opening HFile.Writer for family {} at {}", lgLayout.getId, hfilePath)
+      mTimeRangeTracker = new TimeRangeTracker()
+      mCurrentHFileSize = 0L
+      SchemaPlatformBridge.get().createHFileWriter(
+          conf, mFileSystem, hfilePath, mBlockSizeBytes, mCompressionType)
+    }
+
+    /** Writes the metadata of the current HFile, then closes it. */
+    private def closeWriter() {
+      Log.info("Closing HFile {}", mWriter.getPath)
+      mWriter.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, mBulkLoadTimeBytes)
+      mWriter.appendFileInfo(
+          StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes("spark-partition-%05d".format(partition)))
+      mWriter.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true))
+      // See: HBASE-8055 and KIJIMR-204.
+      mWriter.appendFileInfo(
+          StoreFile.TIMERANGE_KEY, WritableUtils.toByteArray(mTimeRangeTracker))
+      mWriter.close()
+    }
+  }
+}
+
+/** Companion object holding the configuration keys of HBaseKijiHFileWriters. */
+private[connector] object HBaseKijiHFileWriter {
+  private final val Log = LoggerFactory.getLogger(classOf[HBaseKijiHFileWriter])
+
+  /** Extension of the directories holding the HFiles of a partition. */
+  final val OutputExtension = ".hfile"
+
+  /** Configuration key of the maximum size of an HFile, in bytes (best-effort). */
+  final val HRegionMaxFileSize = "hbase.hregion.max.filesize"
+  final val DefaultHRegionMaxFileSize: Long = 256L * 1024L * 1024L
+
+  /** Configuration key of the size of the blocks of an HFile, in bytes. */
+  final val HFileBlockSize = "hbase.mapreduce.hfileoutputformat.blocksize"
+  final val DefaultHFileBlockSize: Int = 64 * 1024
+}
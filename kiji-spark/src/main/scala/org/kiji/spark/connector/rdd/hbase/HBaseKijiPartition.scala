@@ -12,11 +12,13 @@ import org.kiji.schema.HBaseEntityId
  * @param mIndex the index of this partition.
  * @param mStartRow the start row of this partition.
  * @param mStopRow the stop row of this partition.
+ * @param mLocations the hostnames of the region servers serving the rows of this partition.
  */
 class HBaseKijiPartition private (
     val mIndex: Int,
     val mStartRow: Array[Byte],
-    val mStopRow: Array[Byte]
+    val mStopRow: Array[Byte],
+    val mLocations: Seq[String]
 ) extends Partition {
 
   /* Gets the row at which the partition starts, e.g. for a scanner. */
@@ -46,6 +48,24 @@ object HBaseKijiPartition {
     mStartRow: Array[Byte],
     mStopRow: Array[Byte]
   ): HBaseKijiPartition = {
-    new HBaseKijiPartition(mIndex, mStartRow, mStopRow)
+    new HBaseKijiPartition(mIndex, mStartRow, mStopRow, Seq())
+  }
+
+  /**
+   * Creates a partition with preferred locations.
+   *
+   * @param mIndex the index of the partition.
+   * @param mStartRow the start row of the partition.
+   * @param mStopRow the stop row of the partition.
+   * @param mLocations the hostnames of the region servers serving the rows of the partition.
+   * @return a partition preferring the specified hosts.
+   */
+  def apply(
+    mIndex: Int,
+    mStartRow: Array[Byte],
+    mStopRow: Array[Byte],
+    mLocations: Seq[String]
+  ): HBaseKijiPartition = {
+    new HBaseKijiPartition(mIndex, mStartRow, mStopRow, mLocations)
   }
 }
\ No newline at end of file
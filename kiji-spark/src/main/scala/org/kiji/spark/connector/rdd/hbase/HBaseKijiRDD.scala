@@ -20,8 +20,11 @@ package org.kiji.spark.connector.rdd.hbase
 
 import scala.collection.Iterator
 import scala.collection.JavaConverters.asScalaIteratorConverter
+import scala.collection.JavaConverters.collectionAsScalaIterableConverter
 
 import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.hbase.client.HTableInterface
+import org.apache.hadoop.hbase.client.Result
 import org.apache.hadoop.security.Credentials
 import org.apache.hadoop.security.UserGroupInformation
 import org.apache.hadoop.security.UserGroupInformation.AuthenticationMethod
@@ -39,10 +42,12 @@ import org.kiji.schema.Kiji
 import org.kiji.schema.KijiTable
 import org.kiji.schema.hbase.HBaseKijiURI
 import org.kiji.schema.impl.MaterializedKijiResult
+import org.kiji.schema.impl.hbase.HBaseDataRequestAdapter
 import org.kiji.schema.impl.hbase.HBaseKiji
 import org.kiji.schema.impl.hbase.HBaseKijiResultScanner
 import org.kiji.schema.impl.hbase.HBaseKijiTable
 import org.kiji.schema.impl.hbase.HBaseKijiTableReader
+import org.kiji.schema.layout.HBaseColumnNameTranslator
 import org.kiji.spark.connector.KijiSpark
 import org.kiji.spark.connector.rdd.KijiRDD
 
@@ -51,17 +56,29 @@ import org.kiji.spark.connector.rdd.KijiRDD
  *
  * Currently, KijiSpark supports only HBase Kiji instances.
  *
+ * Partitions cover whole regions by default, or sub-regions as configured for
+ * [[HBaseRegionSplitter]], and prefer the hosts of the region servers serving their rows.
+ *
+ * Rows are either decoded eagerly into materialized results, or, with lazy decoding, read as
+ * [[EncodedKijiResult]]s which carry their raw HBase cells until they are first accessed. Lazy
+ * decoding does not support paged columns.
+ *
  * @param sc The SparkContext to associate this RDD with.
  * @param kijiURI The KijiURI to identify the Kiji instance and table; must include the table name.
  * @param kijiDataRequest The KijiDataRequest for the table provided by kijiURI.
+ * @param lazyDecoding Whether to read rows in their encoded form, decoded on first access.
  */
 class HBaseKijiRDD[T] (
     @transient sc: SparkContext,
     @transient conf: Configuration,
     @transient credentials: Credentials,
     @transient kijiURI: KijiURI,
-    kijiDataRequest: KijiDataRequest
+    kijiDataRequest: KijiDataRequest,
+    lazyDecoding: Boolean = false
 ) extends KijiRDD[T](sc, /*conf, credentials,*/ kijiURI, kijiDataRequest) {
+  require(
+      !lazyDecoding || kijiDataRequest.getColumns.asScala.forall(!_.isPagingEnabled),
+      "Lazily decoded KijiRDDs do not support paged columns.")
 
   /**
    * KijiURIs are not serializable; this string representation allows
@@ -77,6 +94,9 @@ class HBaseKijiRDD[T] (
     ugi.setAuthenticationMethod(AuthenticationMethod.PROXY)
 
     val partition = split.asInstanceOf[HBaseKijiPartition]
+    if (lazyDecoding) {
+      return computeEncoded(partition, context)
+    }
 
     val kijiURI = HBaseKijiURI.newBuilder(mKijiURIString).build()
     val kiji: HBaseKiji = downcastAndOpenHBaseKiji(kijiURI)
@@ -126,8 +146,84 @@ class HBaseKijiRDD[T] (
     }
   }
 
+  /**
+   * Scans the rows of a partition as encoded rows, without decoding any cell.
+   *
+   * @param partition The partition to scan.
+   * @param context The context of the task scanning the partition.
+   * @return an iterator over the encoded rows of the partition.
+   */
+  private def computeEncoded(
+      partition: HBaseKijiPartition,
+      context: TaskContext
+  ): Iterator[KijiResult[T]] = {
+    val kijiURI = HBaseKijiURI.newBuilder(mKijiURIString).build()
+    val kiji: HBaseKiji = downcastAndOpenHBaseKiji(kijiURI)
+
+    // The table must stay open while its HTable connection is in use.
+    val (table, layoutId, hTable, resultScanner) = try {
+      val table: HBaseKijiTable = downcastAndOpenHBaseKijiTable(kiji, kijiURI.getTable)
+      try {
+        // Rows are decoded with the layout they are scanned with, wherever they are decoded.
+        val layout = table.getLayout
+        val scan = new HBaseDataRequestAdapter(
+            kijiDataRequest,
+            HBaseColumnNameTranslator.from(layout)).toScan(layout)
+        scan.setStartRow(partition.mStartRow)
+        scan.setStopRow(partition.mStopRow)
+        val hTable: HTableInterface = table.openHTableConnection()
+        try {
+          (table, layout.getDesc.getLayoutId, hTable, hTable.getScanner(scan))
+        } catch {
+          case e: Exception =>
+            hTable.close()
+            throw e
+        }
+      } catch {
+        case e: Exception =>
+          table.release()
+          throw e
+      }
+    } finally {
+      kiji.release()
+    }
+
+    def closeResources() {
+      resultScanner.close()
+      hTable.close()
+      table.release()
+    }
+
+    context.addTaskCompletionListener(context => closeResources())
+
+    resultScanner
+        .iterator()
+        .asScala
+        .map { result: Result =>
+          EncodedKijiResult.fromResult[T](
+              mKijiURIString,
+              layoutId,
+              confBroadcast,
+              kijiDataRequest,
+              result)
+        }
+  }
+
+  override protected def withDataRequest(dataRequest: KijiDataRequest): KijiRDD[T] = {
+    new HBaseKijiRDD[T](
+        sparkContext,
+        confBroadcast.value.value,
+        credentialsBroadcast.value.value,
+        HBaseKijiURI.newBuilder(mKijiURIString).build(),
+        dataRequest,
+        lazyDecoding)
+  }
+
   override def checkpoint(): Unit = super.checkpoint()
 
+  override protected def getPreferredLocations(split: Partition): Seq[String] =
+    split.asInstanceOf[HBaseKijiPartition].mLocations
+
   override protected def getPartitions: Array[Partition] = {
     val ugi = UserGroupInformation.getCurrentUser
     ugi.addCredentials(credentialsBroadcast.value.value)
@@ -141,18 +237,13 @@ class HBaseKijiRDD[T] (
 
     try {
       val table: HBaseKijiTable = downcastAndOpenHBaseKijiTable(kiji, kijiURI.getTable)
-      val regions = table.getRegions
-      val numRegions = regions.size()
-      val result = new Array[Partition](numRegions)
-
-      for (i <- 0 until numRegions) {
-        val startKey: Array[Byte] = regions.get(i).getStartKey
-        val endKey: Array[Byte] = regions.get(i).getEndKey
-        result(i) = HBaseKijiPartition(i, startKey, endKey)
+      try {
+        HBaseRegionSplitter
+            .getPartitions(kiji, table, sparkContext.getConf)
+            .map { partition => partition: Partition }
+      } finally {
+        table.release()
       }
-
-      table.release()
-      result
     } finally {
       kiji.release()
     }
@@ -200,8 +291,9 @@ object HBaseKijiRDD {
       @transient conf: Configuration,
       @transient credentials: Credentials,
       @transient kijiURI: KijiURI,
-      kijiDataRequest: KijiDataRequest
+      kijiDataRequest: KijiDataRequest,
+      lazyDecoding: Boolean = false
   ): HBaseKijiRDD[_] = {
-    new HBaseKijiRDD(sc, conf, credentials, kijiURI, kijiDataRequest)
+    new HBaseKijiRDD(sc, conf, credentials, kijiURI, kijiDataRequest, lazyDecoding)
   }
 }
\ No newline at end of file
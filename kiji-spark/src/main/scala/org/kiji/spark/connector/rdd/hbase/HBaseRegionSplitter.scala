@@ -0,0 +1,268 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.rdd.hbase
+
+import scala.collection.JavaConverters.asScalaBufferConverter
+import scala.collection.JavaConverters.collectionAsScalaIterableConverter
+import scala.collection.JavaConverters.iterableAsScalaIterableConverter
+import scala.collection.JavaConverters.mapAsScalaMapConverter
+import scala.collection.mutable
+
+import org.apache.hadoop.hbase.TableName
+import org.apache.hadoop.hbase.client.HBaseAdmin
+import org.apache.hadoop.hbase.client.HTableInterface
+import org.apache.hadoop.hbase.client.Scan
+import org.apache.hadoop.hbase.filter.FilterList
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter
+import org.apache.hadoop.hbase.filter.RandomRowFilter
+import org.apache.hadoop.hbase.util.Bytes
+import org.apache.spark.SparkConf
+import org.slf4j.LoggerFactory
+
+import org.kiji.schema.hbase.KijiManagedHBaseTableName
+import org.kiji.schema.impl.hbase.HBaseKiji
+import org.kiji.schema.impl.hbase.HBaseKijiTable
+
+/**
+ * Splits the regions of an HBase Kiji table into the partitions of an [[HBaseKijiRDD]].
+ *
+ * By default, each region makes one partition. Large regions make straggler tasks, so regions
+ * may instead be split into sub-region partitions, configured through the Spark configuration:
+ *
+ *  - `spark.kiji.hbase.partition.mode`: `region` (the default) for one partition per region,
+ *    `bytes` to split regions by their size on disk, or `samples` to split regions by sampled
+ *    row keys.
+ *  - `spark.kiji.hbase.partition.target.bytes`: the target size of a partition in `bytes` mode.
+ *    Regions are split uniformly over their key range, which suits hashed row keys.
+ *  - `spark.kiji.hbase.partition.sample.rate`: the fraction of the rows sampled in `samples` mode.
+ *  - `spark.kiji.hbase.partition.target.rows`: the target number of rows of a partition in
+ *    `samples` mode. Regions are split at sampled row keys, which suits any row key distribution
+ *    at the cost of a sampling scan of the table.
+ *
+ * Partitions prefer the hosts of the region servers serving their region.
+ */
+private[connector] object HBaseRegionSplitter {
+  private final val Log = LoggerFactory.getLogger("HBaseRegionSplitter")
+
+  final val PartitionModeKey = "spark.kiji.hbase.partition.mode"
+  final val RegionMode = "region"
+  final val BytesMode = "bytes"
+  final val SamplesMode = "samples"
+
+  final val TargetBytesKey = "spark.kiji.hbase.partition.target.bytes"
+  final val DefaultTargetBytes: Long = 256L * 1024L * 1024L
+
+  final val SampleRateKey = "spark.kiji.hbase.partition.sample.rate"
+  final val DefaultSampleRate: Double = 0.001
+
+  final val TargetRowsKey = "spark.kiji.hbase.partition.target.rows"
+  final val DefaultTargetRows: Long = 1000000L
+
+  /** Upper bound standing for the empty end key of the last region when splitting key ranges. */
+  private final val MaxKey: Array[Byte] = Array.fill(8)(0xFF.toByte)
+
+  /**
+   * Computes the partitions of a table.
+   *
+   * @param kiji The Kiji instance of the table.
+   * @param table The table to partition.
+   * @param conf The Spark configuration holding the partitioning settings.
+   * @return the partitions of the table, in row key order.
+   */
+  def getPartitions(
+      kiji: HBaseKiji,
+      table: HBaseKijiTable,
+      conf: SparkConf
+  ): Array[HBaseKijiPartition] = {
+    val mode = conf.get(PartitionModeKey, RegionMode)
+    require(Set(RegionMode, BytesMode, SamplesMode).contains(mode),
+        "Unknown partition mode '%s' in %s.".format(mode, PartitionModeKey))
+
+    val regions = table.getRegions.asScala
+    lazy val regionSizes = getRegionSizes(kiji, table)
+    lazy val hTable = table.openHTableConnection()
+
+    try {
+      val ranges = regions.flatMap { region =>
+        val startKey = region.getStartKey
+        val endKey = region.getEndKey
+        val boundaries = mode match {
+          case RegionMode => Seq(startKey, endKey)
+          case BytesMode =>
+            val targetBytes = conf.getLong(TargetBytesKey, DefaultTargetBytes)
+            val regionBytes = regionSizes.getOrElse(Bytes.toStringBinary(startKey), 0L)
+            val parts = math.max(1L, (regionBytes + targetBytes - 1) / targetBytes).toInt
+            splitRange(startKey, endKey, parts)
+          case SamplesMode =>
+            val sampleRate = conf.getDouble(SampleRateKey, DefaultSampleRate)
+            val targetRows = conf.getLong(TargetRowsKey, DefaultTargetRows)
+            val samplesPerPartition = math.max(1L, (targetRows * sampleRate).toLong).toInt
+            val samples = sampleRowKeys(hTable, startKey, endKey, sampleRate.toFloat)
+            splitAtSamples(startKey, endKey, samples, samplesPerPartition)
+        }
+        val hosts = region.getLocations.asScala.map(toHostname).toSeq.distinct
+        boundaries.sliding(2).map { case Seq(start, stop) => (start, stop, hosts) }
+      }
+      Log.info("Split {} regions of table {} into {} partitions with mode {}.",
+          regions.size.toString, table.getURI, ranges.size.toString, mode)
+      ranges.zipWithIndex.map { case ((start, stop, hosts), index) =>
+        HBaseKijiPartition(index, start, stop, hosts)
+      }.toArray
+    } finally {
+      if (mode == SamplesMode) {
+        hTable.close()
+      }
+    }
+  }
+
+  /**
+   * Splits a key range uniformly.
+   *
+   * @param startKey The start key of the range, or the empty key for the start of the table.
+   * @param endKey The end key of the range, or the empty key for the end of the table.
+   * @param parts The number of sub-ranges to split the range into.
+   * @return the boundaries of the sub-ranges, starting with the start key and ending with the end
+   *     key.
+   */
+  def splitRange(startKey: Array[Byte], endKey: Array[Byte], parts: Int): Seq[Array[Byte]] = {
+    val upperKey = if (endKey.isEmpty) MaxKey else endKey
+    if (parts <= 1 || Bytes.compareTo(startKey, upperKey) >= 0) {
+      Seq(startKey, endKey)
+    } else {
+      val splits = Bytes.split(startKey, upperKey, parts - 1)
+      if (null == splits) {
+        Seq(startKey, endKey)
+      } else {
+        distinctBoundaries(startKey +: splits.slice(1, splits.length - 1).toSeq :+ endKey)
+      }
+    }
+  }
+
+  /**
+   * Splits a key range at sampled row keys.
+   *
+   * @param startKey The start key of the range.
+   * @param endKey The end key of the range.
+   * @param samples Row keys sampled from the range, in order.
+   * @param samplesPerPartition The number of samples per sub-range.
+   * @return the boundaries of the sub-ranges, starting with the start key and ending with the end
+   *     key.
+   */
+  def splitAtSamples(
+      startKey: Array[Byte],
+      endKey: Array[Byte],
+      samples: Seq[Array[Byte]],
+      samplesPerPartition: Int
+  ): Seq[Array[Byte]] = {
+    val splits = samples.indices
+        .filter { index => index > 0 && index % samplesPerPartition == 0 }
+        .map(samples)
+    distinctBoundaries(startKey +: splits :+ endKey)
+  }
+
+  /**
+   * Removes the repeated boundaries of a sequence of sub-ranges, which would make empty ranges.
+   *
+   * @param boundaries The boundaries of sub-ranges, in order.
+   * @return the boundaries without repetitions.
+   */
+  private def distinctBoundaries(boundaries: Seq[Array[Byte]]): Seq[Array[Byte]] = {
+    val result = mutable.ArrayBuffer(boundaries.head)
+    for (boundary <- boundaries.tail.init) {
+      if (Bytes.compareTo(result.last, boundary) < 0) {
+        result += boundary
+      }
+    }
+    result += boundaries.last
+    result.toSeq
+  }
+
+  /**
+   * Samples the row keys of a key range, with a server-side filter.
+   *
+   * @param hTable The HBase table to sample.
+   * @param startKey The start key of the range.
+   * @param endKey The end key of the range.
+   * @param sampleRate The probability of a row to be sampled.
+   * @return the sampled row keys, in order.
+   */
+  private def sampleRowKeys(
+      hTable: HTableInterface,
+      startKey: Array[Byte],
+      endKey: Array[Byte],
+      sampleRate: Float
+  ): Seq[Array[Byte]] = {
+    val scan = new Scan(startKey, endKey)
+    scan.setFilter(new FilterList(
+        FilterList.Operator.MUST_PASS_ALL,
+        new RandomRowFilter(sampleRate),
+        new FirstKeyOnlyFilter(),
+        new KeyOnlyFilter()))
+    scan.setCaching(1000)
+    scan.setCacheBlocks(false)
+    val scanner = hTable.getScanner(scan)
+    try {
+      scanner.asScala.map { result => result.getRow }.toVector
+    } finally {
+      scanner.close()
+    }
+  }
+
+  /**
+   * Gets the sizes of the regions of a table from the loads reported by the region servers.
+   *
+   * @param kiji The Kiji instance of the table.
+   * @param table The table.
+   * @return the size in bytes of the store files and memstores of each region, by the
+   *     `Bytes.toStringBinary` form of its start key.
+   */
+  private def getRegionSizes(kiji: HBaseKiji, table: HBaseKijiTable): Map[String, Long] = {
+    val admin: HBaseAdmin = kiji.getHBaseAdmin
+    val hbaseTableName = KijiManagedHBaseTableName
+        .getKijiTableName(table.getURI.getInstance, table.getName)
+        .toBytes
+    val startKeys: Map[String, Array[Byte]] = admin
+        .getTableRegions(TableName.valueOf(hbaseTableName))
+        .asScala
+        .map { region => (Bytes.toStringBinary(region.getRegionName), region.getStartKey) }
+        .toMap
+    val status = admin.getClusterStatus
+    val sizes = for {
+      server <- status.getServers.asScala
+      (regionName, load) <- status.getLoad(server).getRegionsLoad.asScala
+      startKey <- startKeys.get(Bytes.toStringBinary(regionName))
+    } yield {
+      val sizeMB = load.getStorefileSizeMB.toLong + load.getMemStoreSizeMB.toLong
+      (Bytes.toStringBinary(startKey), sizeMB * 1024L * 1024L)
+    }
+    sizes.toMap
+  }
+
+  /**
+   * Strips the port from a region server location.
+   *
+   * @param location A region server location, as `hostname:port`.
+   * @return the hostname of the region server.
+   */
+  def toHostname(location: String): String = {
+    val colon = location.lastIndexOf(':')
+    if (colon < 0) location else location.substring(0, colon)
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.rdd.hbase
+
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.JavaConverters.asScalaBufferConverter
+import scala.collection.JavaConverters.collectionAsScalaIterableConverter
+
+import org.apache.hadoop.conf.Configuration
+import org.slf4j.LoggerFactory
+
+import org.kiji.schema.EntityIdFactory
+import org.kiji.schema.Kiji
+import org.kiji.schema.KijiColumnName
+import org.kiji.schema.KijiURI
+import org.kiji.schema.SpecificCellDecoderFactory
+import org.kiji.schema.hbase.HBaseKijiURI
+import org.kiji.schema.impl.DefaultKijiCellEncoderFactory
+import org.kiji.schema.layout.CellSpec
+import org.kiji.schema.layout.HBaseColumnNameTranslator
+import org.kiji.schema.layout.KijiTableLayout
+import org.kiji.schema.layout.impl.CellDecoderProvider
+import org.kiji.schema.layout.impl.CellEncoderProvider
+
+/**
+ * Everything needed to decode and encode the HBase cells of a Kiji table with one of its layouts,
+ * shared by all the lazily decoded rows and all the HFile writes of the table within a JVM.
+ *
+ * The Kiji instance of the table stays open for as long as the JVM runs, since cell decoders and
+ * encoders resolve writer schemas through its schema table.
+ *
+ * @param uri The URI of the table.
+ * @param kiji The Kiji instance of the table.
+ * @param layout The layout of the table the cells are encoded with.
+ * @param columnTranslator The column name translator of the layout.
+ * @param decoderProvider The cell decoder provider of the layout.
+ * @param entityIdFactory The entity ID factory of the layout.
+ */
+private[connector] final class HBaseTableContext private (
+    val uri: KijiURI,
+    val kiji: Kiji,
+    val layout: KijiTableLayout,
+    val columnTranslator: HBaseColumnNameTranslator,
+    val decoderProvider: CellDecoderProvider,
+    val entityIdFactory: EntityIdFactory
+) {
+
+  /** The cell encoder provider of the table, created on first use. */
+  lazy val encoderProvider: CellEncoderProvider = new CellEncoderProvider(
+      uri,
+      layout,
+      kiji.getSchemaTable,
+      DefaultKijiCellEncoderFactory.get())
+}
+
+/** Companion object caching the table contexts of the JVM. */
+private[connector] object HBaseTableContext {
+  private final val Log = LoggerFactory.getLogger(classOf[HBaseTableContext])
+
+  /**
+   * Table contexts, by table URI and layout ID. Contexts of older layouts are kept, since rows
+   * read before a layout update may still need them.
+   */
+  private val Contexts = new ConcurrentHashMap[(String, String), HBaseTableContext]()
+
+  Runtime.getRuntime.addShutdownHook(new Thread() {
+    override def run() {
+      for (context <- Contexts.values.asScala) {
+        context.kiji.release()
+      }
+    }
+  })
+
+  /**
+   * Gets the context of a table for one of its layouts, creating it if necessary.
+   *
+   * @param tableURI The URI of the table.
+   * @param layoutId The ID of the layout the cells of the table are encoded with.
+   * @param conf The configuration with which to open the Kiji instance of the table, if the
+   *     context does not exist yet. This should be the configuration of the job, since the
+   *     default HBase configuration of an executor may not reach the cluster of the table.
+   * @return the context of the table for the layout.
+   */
+  def get(tableURI: String, layoutId: String, conf: => Configuration): HBaseTableContext = {
+    val key = (tableURI, layoutId)
+    val cached = Contexts.get(key)
+    if (null != cached) {
+      cached
+    } else {
+      Contexts.synchronized {
+        val existing = Contexts.get(key)
+        if (null != existing) {
+          existing
+        } else {
+          val context = create(tableURI, layoutId, conf)
+          Contexts.put(key, context)
+          context
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates the context of a table for one of its layouts.
+   *
+   * @param tableURI The URI of the table.
+   * @param layoutId The ID of the layout of the context.
+   * @param conf The configuration with which to open the Kiji instance of the table.
+   * @return the context of the table for the layout.
+   */
+  private def create(tableURI: String, layoutId: String, conf: Configuration): HBaseTableContext = {
+    Log.debug("Creating decoding context for table {} with layout {}.", tableURI, layoutId)
+    val uri = HBaseKijiURI.newBuilder(tableURI).build()
+    val kiji = Kiji.Factory.open(uri, conf)
+    try {
+      val layout = findLayout(kiji, uri.getTable, layoutId)
+      val decoderProvider = CellDecoderProvider.create(
+          layout,
+          kiji.getSchemaTable,
+          SpecificCellDecoderFactory.get(),
+          Collections.emptyMap[KijiColumnName, CellSpec]())
+      new HBaseTableContext(
+          uri,
+          kiji,
+          layout,
+          HBaseColumnNameTranslator.from(layout),
+          decoderProvider,
+          EntityIdFactory.getFactory(layout))
+    } catch {
+      case e: Exception =>
+        kiji.release()
+        throw e
+    }
+  }
+
+  /**
+   * Finds a layout of a table, looking through the layout history of the table if the layout is
+   * no longer the current one.
+   *
+   * @param kiji The Kiji instance of the table.
+   * @param tableName The name of the table.
+   * @param layoutId The ID of the layout to find.
+   * @return the layout of the table with the ID.
+   * @throws IllegalStateException if the table has no layout with the ID.
+   */
+  private def findLayout(kiji: Kiji, tableName: String, layoutId: String): KijiTableLayout = {
+    val current = kiji.getMetaTable.getTableLayout(tableName)
+    if (current.getDesc.getLayoutId == layoutId) {
+      current
+    } else {
+      kiji.getMetaTable
+          .getTableLayoutVersions(tableName, Int.MaxValue)
+          .asScala
+          .find { _.getDesc.getLayoutId == layoutId }
+          .getOrElse {
+            throw new IllegalStateException(
+                "Table %s has no layout with ID %s.".format(tableName, layoutId))
+          }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.rdd.hbase
+
+import java.util.Arrays
+
+import org.apache.hadoop.hbase.KeyValue
+import org.apache.hadoop.hbase.util.Bytes
+import org.apache.spark.Partitioner
+
+/**
+ * Partitions serialized HBase `KeyValue`s by the region of the table which holds their row, so
+ * that each partition can be written as HFiles which fit in a single region.
+ *
+ * @param splitKeys The start keys of all the regions of the table but the first one, in order.
+ */
+private[connector] final class KijiRegionPartitioner(
+    val splitKeys: Array[Array[Byte]]
+) extends Partitioner {
+
+  override def numPartitions: Int = splitKeys.length + 1
+
+  override def getPartition(key: Any): Int = {
+    val keyValue = new KeyValue(key.asInstanceOf[Array[Byte]])
+    val row = keyValue.getRowArray
+    val rowOffset = keyValue.getRowOffset
+    val rowLength = keyValue.getRowLength
+
+    // Index of the first split key greater than the row, found by binary search.
+    var low = 0
+    var high = splitKeys.length
+    while (low < high) {
+      val middle = (low + high) >>> 1
+      val splitKey = splitKeys(middle)
+      if (Bytes.compareTo(splitKey, 0, splitKey.length, row, rowOffset, rowLength) <= 0) {
+        low = middle + 1
+      } else {
+        high = middle
+      }
+    }
+    low
+  }
+
+  override def equals(other: Any): Boolean = other match {
+    case partitioner: KijiRegionPartitioner =>
+      splitKeys.length == partitioner.splitKeys.length &&
+          splitKeys.zip(partitioner.splitKeys).forall { case (a, b) => Arrays.equals(a, b) }
+    case _ => false
+  }
+
+  override def hashCode: Int = splitKeys.foldLeft(numPartitions) { (hash, splitKey) =>
+    31 * hash + Arrays.hashCode(splitKey)
+  }
+}
+
+/** Companion object providing factory methods for KijiRegionPartitioners. */
+private[connector] object KijiRegionPartitioner {
+
+  /**
+   * Creates a partitioner from the start keys of the regions of a table.
+   *
+   * @param startKeys The start keys of the regions of the table, in any order.
+   * @return a partitioner with one partition per region of the table.
+   */
+  def fromStartKeys(startKeys: Seq[Array[Byte]]): KijiRegionPartitioner = {
+    val splitKeys = startKeys
+        .filter { startKey => startKey.nonEmpty }
+        .sortWith { (left, right) => Bytes.compareTo(left, right) < 0 }
+        .toArray
+    new KijiRegionPartitioner(splitKeys)
+  }
+
+  /**
+   * Orders serialized HBase `KeyValue`s as HFiles expect them: by row, family, qualifier, then
+   * from the most recent to the oldest timestamp.
+   */
+  object KeyValueOrdering extends Ordering[Array[Byte]] {
+    override def compare(left: Array[Byte], right: Array[Byte]): Int = {
+      KeyValue.COMPARATOR.compareFlatKey(
+          left, KeyValue.ROW_OFFSET, Bytes.toInt(left, 0),
+          right, KeyValue.ROW_OFFSET, Bytes.toInt(right, 0))
+    }
+  }
+}
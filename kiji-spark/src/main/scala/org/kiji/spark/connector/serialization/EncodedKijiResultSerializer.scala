@@ -0,0 +1,87 @@
+/**
+ * (c) Copyright 2014 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.serialization
+
+import com.esotericsoftware.kryo.Kryo
+import com.esotericsoftware.kryo.Serializer
+import com.esotericsoftware.kryo.io.Input
+import com.esotericsoftware.kryo.io.Output
+import org.apache.hadoop.conf.Configuration
+import org.apache.spark.SerializableWritable
+import org.apache.spark.broadcast.Broadcast
+
+import org.kiji.schema.KijiDataRequest
+import org.kiji.spark.connector.rdd.hbase.EncodedKijiResult
+
+/**
+ * Serializes encoded rows with their raw HBase cells, without decoding them.
+ *
+ * The configuration broadcast of a row is written by reference, so that the rows of a stream
+ * which were read by the same job share a single copy of it when Kryo tracks references.
+ *
+ * @tparam T The type of the values in the cells of the rows.
+ */
+class EncodedKijiResultSerializer[T] extends Serializer[EncodedKijiResult[T]] {
+  override def write(kryo: Kryo, output: Output, kijiResult: EncodedKijiResult[T]): Unit = {
+    output.writeString(kijiResult.tableURI)
+    output.writeString(kijiResult.layoutId)
+    kryo.writeClassAndObject(output, kijiResult.conf)
+    kryo.writeClassAndObject(output, kijiResult.getDataRequest)
+    writeBytes(output, kijiResult.rowKey)
+    output.writeInt(kijiResult.encodedCells.length, true)
+    kijiResult.encodedCells.foreach { cell: Array[Byte] => writeBytes(output, cell) }
+  }
+
+  override def read(
+      kryo: Kryo,
+      input: Input,
+      clazz: Class[EncodedKijiResult[T]]
+  ): EncodedKijiResult[T] = {
+    val tableURI: String = input.readString()
+    val layoutId: String = input.readString()
+    val conf: Broadcast[SerializableWritable[Configuration]] =
+        kryo.readClassAndObject(input).asInstanceOf[Broadcast[SerializableWritable[Configuration]]]
+    val dataRequest: KijiDataRequest = kryo.readClassAndObject(input).asInstanceOf[KijiDataRequest]
+    val rowKey: Array[Byte] = readBytes(input)
+    val encodedCells = new Array[Array[Byte]](input.readInt(true))
+    for (i <- 0 until encodedCells.length) {
+      encodedCells(i) = readBytes(input)
+    }
+    new EncodedKijiResult[T](tableURI, layoutId, conf, dataRequest, rowKey, encodedCells)
+  }
+
+  /**
+   * Writes a byte array, prefixed by its length.
+   *
+   * @param output The output to write to.
+   * @param bytes The byte array to write.
+   */
+  private def writeBytes(output: Output, bytes: Array[Byte]): Unit = {
+    output.writeInt(bytes.length, true)
+    output.writeBytes(bytes)
+  }
+
+  /**
+   * Reads a byte array written by `writeBytes`.
+   *
+   * @param input The input to read from.
+   * @return the byte array.
+   */
+  private def readBytes(input: Input): Array[Byte] = input.readBytes(input.readInt(true))
+}
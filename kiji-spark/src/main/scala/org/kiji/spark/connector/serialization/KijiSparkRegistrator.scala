@@ -19,14 +19,17 @@
 package org.kiji.spark.connector.serialization
 
 import com.esotericsoftware.kryo.Kryo
+import com.esotericsoftware.kryo.serializers.JavaSerializer
 import org.apache.avro.Schema
 import org.apache.avro.generic.GenericRecord
 import org.apache.avro.specific.SpecificRecord
+import org.apache.spark.broadcast.Broadcast
 import org.apache.spark.serializer.KryoRegistrator
 
 import org.kiji.schema.KijiCell
 import org.kiji.schema.KijiDataRequest
 import org.kiji.schema.impl.MaterializedKijiResult
+import org.kiji.spark.connector.rdd.hbase.EncodedKijiResult
 
 /**
  * Registers serializer classes for a SparkJob
@@ -37,7 +40,10 @@ class KijiSparkRegistrator[T] extends KryoRegistrator {
     kryo.addDefaultSerializer(classOf[SpecificRecord], classOf[AvroSpecificSerializer])
     kryo.addDefaultSerializer(classOf[GenericRecord], classOf[AvroGenericSerializer])
     kryo.addDefaultSerializer(classOf[Schema], classOf[AvroSchemaSerializer])
+    // Broadcasts only restore their values through Java serialization.
+    kryo.addDefaultSerializer(classOf[Broadcast[_]], classOf[JavaSerializer])
     kryo.register(classOf[MaterializedKijiResult[T]], new MaterializedKijiResultSerializer[T]())
+    kryo.register(classOf[EncodedKijiResult[T]], new EncodedKijiResultSerializer[T]())
     kryo.register(classOf[KijiDataRequest], new KijiDataRequestSerializer())
     kryo.register(classOf[KijiCell[T]], new KijiCellSerializer())
   }
@@ -0,0 +1,117 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector
+
+import scala.collection.JavaConverters.asScalaIteratorConverter
+import scala.collection.JavaConverters.iterableAsScalaIterableConverter
+
+import org.apache.hadoop.fs.FileSystem
+import org.apache.hadoop.fs.Path
+import org.apache.spark.SparkConf
+import org.apache.spark.SparkContext
+import org.apache.spark.serializer.KryoSerializer
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+
+import org.kiji.schema.HBaseEntityId
+import org.kiji.schema.Kiji
+import org.kiji.schema.KijiCell
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef
+import org.kiji.schema.KijiTable
+import org.kiji.schema.layout.KijiTableLayouts
+import org.kiji.schema.testutil.AbstractKijiIntegrationTest
+import org.kiji.spark.connector.conversions.toKijiRDDFunctions
+import org.kiji.spark.connector.serialization.KijiSparkRegistrator
+
+class IntegrationTestKijiRDDFunctionsSuite extends AbstractKijiIntegrationTest {
+  import IntegrationTestKijiRDDFunctionsSuite._
+
+  private var mSparkContext: SparkContext = null
+  private var mKiji: Kiji = null
+  private var mTable: KijiTable = null
+  private var mHFileDir: Path = null
+
+  @Before
+  def setupIntegrationTestKijiRDDFunctions() {
+    mKiji = Kiji.Factory.open(getKijiURI, getConf)
+    mKiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE))
+    mTable = mKiji.openTable("table")
+    mHFileDir = new Path(
+        new Path(FileSystem.getDefaultUri(getConf)),
+        "/hfile-output-%d".format(System.nanoTime()))
+    mSparkContext = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName(getClass.getSimpleName)
+        .set("spark.serializer", classOf[KryoSerializer].getName)
+        .set("spark.kryo.registrator", classOf[KijiSparkRegistrator[_]].getName))
+    getConf.asScala.foreach { entry =>
+      mSparkContext.hadoopConfiguration.set(entry.getKey, entry.getValue)
+    }
+  }
+
+  @After
+  def cleanupIntegrationTestKijiRDDFunctions() {
+    mSparkContext.stop()
+    mHFileDir.getFileSystem(getConf).delete(mHFileDir, true)
+    mTable.release()
+    mKiji.release()
+  }
+
+  @Test
+  def testBulkSaveToKiji() {
+    val rowKeys = (0 until NumRows).map { row => mTable.getEntityId("row-" + row).getHBaseRowKey }
+    val puts = mSparkContext.parallelize(rowKeys.zipWithIndex).flatMap { case (rowKey, row) =>
+      val entityId = HBaseEntityId.fromHBaseRowKey(rowKey)
+      Seq(
+          KijiPut(entityId, "family", "column", 2L, "second-" + row),
+          KijiPut(entityId, "family", "column", 1L, "first-" + row))
+    }
+    puts.bulkSaveToKiji(mTable.getURI, mHFileDir.toString)
+
+    val reader = mTable.openTableReader()
+    try {
+      for (row <- 0 until NumRows) {
+        val result = reader.getResult[CharSequence](mTable.getEntityId("row-" + row), Request)
+        val cells = try {
+          result.iterator().asScala.toList
+        } finally {
+          result.close()
+        }
+        Assert.assertEquals(
+            Seq((2L, "second-" + row), (1L, "first-" + row)),
+            cells.map { cell: KijiCell[CharSequence] =>
+              (cell.getTimestamp, cell.getData.toString)
+            })
+      }
+    } finally {
+      reader.close()
+    }
+  }
+}
+
+object IntegrationTestKijiRDDFunctionsSuite {
+  private final val NumRows: Int = 10
+
+  private final val Request: KijiDataRequest = KijiDataRequest.builder()
+      .addColumns(ColumnsDef.create().withMaxVersions(3).add("family", "column"))
+      .build()
+}
@@ -0,0 +1,199 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector
+
+import java.io.File
+
+import scala.collection.JavaConverters.asScalaIteratorConverter
+import scala.collection.JavaConverters.iterableAsScalaIterableConverter
+
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.hbase.client.Put
+import org.apache.hadoop.hbase.io.hfile.CacheConfig
+import org.apache.hadoop.hbase.io.hfile.HFile
+import org.apache.spark.SparkConf
+import org.apache.spark.SparkContext
+import org.apache.spark.rdd.RDD
+import org.apache.spark.serializer.KryoSerializer
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+
+import org.kiji.schema.HBaseEntityId
+import org.kiji.schema.KijiCell
+import org.kiji.schema.KijiClientTest
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef
+import org.kiji.schema.impl.hbase.HBaseKijiTable
+import org.kiji.schema.layout.KijiTableLayouts
+import org.kiji.schema.util.InstanceBuilder
+import org.kiji.spark.connector.conversions.toKijiRDDFunctions
+import org.kiji.spark.connector.serialization.KijiSparkRegistrator
+
+class TestKijiRDDFunctionsSuite extends KijiClientTest {
+  import TestKijiRDDFunctionsSuite._
+
+  private var mSparkContext: SparkContext = null
+  private var mTable: HBaseKijiTable = null
+
+  @Before
+  def setupTestKijiRDDFunctions() {
+    new InstanceBuilder(getKiji)
+        .withTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE))
+        .build
+    mTable = HBaseKijiTable.downcast(getKiji.openTable("table"))
+    mSparkContext = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName(getTestId)
+        .set("spark.serializer", classOf[KryoSerializer].getName)
+        .set("spark.kryo.registrator", classOf[KijiSparkRegistrator[_]].getName))
+    getConf.asScala.foreach { entry =>
+      mSparkContext.hadoopConfiguration.set(entry.getKey, entry.getValue)
+    }
+  }
+
+  @After
+  def cleanupTestKijiRDDFunctions() {
+    mSparkContext.stop()
+    mTable.release()
+  }
+
+  /**
+   * Creates the puts of the test: three versions of the column of each row, one of them
+   * timestamped with the time of the write, and one of them after the time of the write.
+   *
+   * @return the puts of the test.
+   */
+  private def createPuts(): RDD[KijiPut[String]] = {
+    val rowKeys = (0 until NumRows).map { row => mTable.getEntityId(rowName(row)).getHBaseRowKey }
+    mSparkContext.parallelize(rowKeys.zipWithIndex).flatMap { case (rowKey, row) =>
+      val entityId = HBaseEntityId.fromHBaseRowKey(rowKey)
+      Seq(
+          KijiPut(entityId, "family", "column", FutureTimestamp, "future-" + row),
+          KijiPut(entityId, "family", "column", "latest-" + row),
+          KijiPut(entityId, "family", "column", 1L, "first-" + row))
+    }
+  }
+
+  /**
+   * Checks that the test table holds the puts of `createPuts`.
+   *
+   * @param before A time before the write.
+   * @param after A time after the write.
+   */
+  private def assertWritten(before: Long, after: Long) {
+    val reader = mTable.openTableReader()
+    try {
+      for (row <- 0 until NumRows) {
+        val result = reader.getResult[CharSequence](mTable.getEntityId(rowName(row)), Request)
+        val cells = try {
+          result.iterator().asScala.toList
+        } finally {
+          result.close()
+        }
+        Assert.assertEquals(
+            Seq("future-" + row, "latest-" + row, "first-" + row),
+            cells.map { cell: KijiCell[CharSequence] => cell.getData.toString })
+        Assert.assertEquals(FutureTimestamp, cells(0).getTimestamp)
+        Assert.assertTrue(before <= cells(1).getTimestamp && cells(1).getTimestamp <= after)
+        Assert.assertEquals(1L, cells(2).getTimestamp)
+      }
+    } finally {
+      reader.close()
+    }
+  }
+
+  /**
+   * Writes the cells of HFiles written by `saveAsKijiHFiles` to the test table, as a bulk load
+   * would.
+   *
+   * @param hfileDir The directory holding the HFiles.
+   * @return the number of cells written.
+   */
+  private def loadHFiles(hfileDir: Path): Int = {
+    val fs = hfileDir.getFileSystem(getConf)
+    val hTable = mTable.openHTableConnection()
+    var count = 0
+    try {
+      for (partitionDir <- fs.globStatus(new Path(hfileDir, "part-r-*.hfile"));
+          familyDir <- fs.listStatus(partitionDir.getPath);
+          hfile <- fs.listStatus(familyDir.getPath)) {
+        val reader = HFile.createReader(fs, hfile.getPath, new CacheConfig(getConf), getConf)
+        try {
+          reader.loadFileInfo()
+          val scanner = reader.getScanner(false, false)
+          if (scanner.seekTo()) {
+            do {
+              val keyValue = scanner.getKeyValue
+              hTable.put(new Put(keyValue.getRow).add(keyValue))
+              count += 1
+            } while (scanner.next())
+          }
+        } finally {
+          reader.close()
+        }
+      }
+    } finally {
+      hTable.close()
+    }
+    count
+  }
+
+  @Test
+  def testSaveToKiji() {
+    val puts = createPuts()
+    val before = System.currentTimeMillis()
+    puts.saveToKiji(mTable.getURI)
+    assertWritten(before, System.currentTimeMillis())
+  }
+
+  @Test
+  def testSaveAsKijiHFiles() {
+    val puts = createPuts()
+    val hfileDir = new Path(new File(getLocalTempDir, "hfiles").toURI.toString)
+    val before = System.currentTimeMillis()
+    // HFiles only accept cells in order: cells timestamped with the time of the write must be
+    // sorted with that time, after the cells timestamped later.
+    puts.saveAsKijiHFiles(mTable.getURI, hfileDir.toString)
+    val after = System.currentTimeMillis()
+
+    Assert.assertEquals(3 * NumRows, loadHFiles(hfileDir))
+    assertWritten(before, after)
+  }
+}
+
+object TestKijiRDDFunctionsSuite {
+  private final val NumRows: Int = 4
+
+  /** A timestamp after the time of the writes of the tests. */
+  private final val FutureTimestamp: Long = System.currentTimeMillis() + 24L * 3600L * 1000L
+
+  private final val Request: KijiDataRequest = KijiDataRequest.builder()
+      .addColumns(ColumnsDef.create().withMaxVersions(3).add("family", "column"))
+      .build()
+
+  /**
+   * Gets the name of a row of the test table.
+   *
+   * @param row The index of the row.
+   * @return the name of the row.
+   */
+  def rowName(row: Int): String = "row-" + row
+}
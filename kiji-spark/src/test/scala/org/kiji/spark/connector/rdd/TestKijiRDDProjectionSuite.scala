@@ -0,0 +1,32 @@
+// (c) Copyright 2014 WibiData, Inc.
+package org.kiji.spark.connector.rdd
+
+import org.junit.Assert
+import org.junit.Test
+
+import org.kiji.schema.KijiColumnName
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef
+
+class TestKijiRDDProjectionSuite {
+  private final val Request: KijiDataRequest = KijiDataRequest.builder()
+      .addColumns(ColumnsDef.create().withMaxVersions(3).add("info", "name").add("info", "email"))
+      .addColumns(ColumnsDef.create().addFamily("map"))
+      .build()
+
+  @Test
+  def testProjectColumns() {
+    val projected = KijiRDD.projectDataRequest(
+        Request,
+        Seq(KijiColumnName.create("info:name"), KijiColumnName.create("map:key")))
+    Assert.assertEquals(2, projected.getColumns.size)
+    Assert.assertEquals(3, projected.getRequestForColumn("info", "name").getMaxVersions)
+    Assert.assertNull(projected.getRequestForColumn("info", "email"))
+    Assert.assertNotNull(projected.getRequestForColumn("map", "key"))
+  }
+
+  @Test(expected = classOf[IllegalArgumentException])
+  def testProjectMissingColumn() {
+    KijiRDD.projectDataRequest(Request, Seq(KijiColumnName.create("other:column")))
+  }
+}
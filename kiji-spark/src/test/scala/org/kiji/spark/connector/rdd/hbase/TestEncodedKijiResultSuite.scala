@@ -0,0 +1,156 @@
+/**
+ * (c) Copyright 2015 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.spark.connector.rdd.hbase
+
+import scala.collection.JavaConverters.asScalaIteratorConverter
+
+import org.apache.avro.util.Utf8
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.hbase.client.HTableInterface
+import org.apache.hadoop.hbase.client.Result
+import org.apache.spark.SerializableWritable
+import org.apache.spark.SparkConf
+import org.apache.spark.SparkContext
+import org.apache.spark.broadcast.Broadcast
+import org.apache.spark.serializer.KryoSerializer
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+
+import org.kiji.schema.KijiCell
+import org.kiji.schema.KijiClientTest
+import org.kiji.schema.KijiDataRequest
+import org.kiji.schema.KijiDataRequestBuilder
+import org.kiji.schema.impl.hbase.HBaseDataRequestAdapter
+import org.kiji.schema.impl.hbase.HBaseKijiTable
+import org.kiji.schema.layout.KijiTableLayouts
+import org.kiji.schema.util.InstanceBuilder
+import org.kiji.spark.connector.serialization.KijiSparkRegistrator
+
+class TestEncodedKijiResultSuite extends KijiClientTest {
+  import TestEncodedKijiResultSuite._
+
+  private var mSparkContext: SparkContext = null
+  private var mConf: Broadcast[SerializableWritable[Configuration]] = null
+  private var mTable: HBaseKijiTable = null
+
+  @Before
+  def setupTestEncodedKijiResult() {
+    new InstanceBuilder(getKiji)
+        .withTable(KijiTableLayouts.getLayout("org/kiji/schema/layout/all-types-schema.json"))
+        .withRow(Row)
+        .withFamily("primitive")
+        .withQualifier("string_column")
+        .withValue(2L, new Utf8("two"))
+        .withValue(1L, new Utf8("one"))
+        .build
+    mTable = HBaseKijiTable.downcast(getKiji.openTable("all_types_table"))
+    mSparkContext = new SparkContext(new SparkConf()
+        .setMaster("local")
+        .setAppName(getTestId)
+        .set("spark.serializer", classOf[KryoSerializer].getName)
+        .set("spark.kryo.registrator", classOf[KijiSparkRegistrator[_]].getName))
+    mConf = mSparkContext.broadcast(new SerializableWritable(getConf))
+  }
+
+  @After
+  def cleanupTestEncodedKijiResult() {
+    mSparkContext.stop()
+    mTable.release()
+  }
+
+  /**
+   * Reads a row of the test table in its encoded form.
+   *
+   * @param layoutId The layout ID to record in the row.
+   * @return the encoded row.
+   */
+  private def readEncoded(layoutId: String): EncodedKijiResult[Utf8] = {
+    val layout = mTable.getLayout
+    val scan = new HBaseDataRequestAdapter(Request, mTable.getColumnNameTranslator).toScan(layout)
+    val hTable: HTableInterface = mTable.openHTableConnection()
+    val result: Result = try {
+      val scanner = hTable.getScanner(scan)
+      try {
+        scanner.next()
+      } finally {
+        scanner.close()
+      }
+    } finally {
+      hTable.close()
+    }
+    EncodedKijiResult.fromResult[Utf8](mTable.getURI.toString, layoutId, mConf, Request, result)
+  }
+
+  /**
+   * Serializes and deserializes a row with the Kryo serializer of the test Spark context.
+   *
+   * @param row The row to round-trip.
+   * @return the deserialized row.
+   */
+  private def roundTrip(row: EncodedKijiResult[Utf8]): EncodedKijiResult[Utf8] = {
+    val serializer = new KryoSerializer(mSparkContext.getConf).newInstance()
+    serializer.deserialize[EncodedKijiResult[Utf8]](serializer.serialize(row))
+  }
+
+  @Test
+  def testKryoRoundTrip() {
+    val row = readEncoded(mTable.getLayout.getDesc.getLayoutId)
+    val copy = roundTrip(row)
+
+    Assert.assertEquals(row.tableURI, copy.tableURI)
+    Assert.assertEquals(row.layoutId, copy.layoutId)
+    Assert.assertEquals(Request, copy.getDataRequest)
+    Assert.assertArrayEquals(row.rowKey, copy.rowKey)
+    Assert.assertEquals(row.encodedCells.length, copy.encodedCells.length)
+    row.encodedCells.zip(copy.encodedCells).foreach { case (expected, actual) =>
+      Assert.assertArrayEquals(expected, actual)
+    }
+
+    // The deserialized row decodes with the configuration of the job which read it.
+    Assert.assertEquals(mTable.getEntityId(Row), copy.getEntityId)
+    val values = copy.iterator().asScala.map { cell: KijiCell[Utf8] => cell.getData.toString }
+    Assert.assertEquals(Seq("two", "one"), values.toSeq)
+  }
+
+  @Test
+  def testDecodesLazily() {
+    // Nothing resolves the layout of a row until its cells are accessed.
+    val copy = roundTrip(readEncoded(MissingLayoutId))
+    Assert.assertEquals(Request, copy.getDataRequest)
+    try {
+      copy.getEntityId
+      Assert.fail("Decoding a row with an unknown layout should fail.")
+    } catch {
+      case ise: IllegalStateException =>
+        Assert.assertTrue(ise.getMessage.contains(MissingLayoutId))
+    }
+  }
+}
+
+object TestEncodedKijiResultSuite {
+  private final val Row: Integer = 1
+  private final val MissingLayoutId: String = "missing-layout"
+  private final val Request: KijiDataRequest = KijiDataRequest.builder()
+      .addColumns(KijiDataRequestBuilder.ColumnsDef.create()
+          .withMaxVersions(2)
+          .add("primitive", "string_column"))
+      .build()
+}
@@ -0,0 +1,52 @@
+// (c) Copyright 2014 WibiData, Inc.
+package org.kiji.spark.connector.rdd.hbase
+
+import org.apache.hadoop.hbase.util.Bytes
+import org.junit.Assert
+import org.junit.Test
+
+class TestHBaseRegionSplitterSuite {
+
+  @Test
+  def testSplitRange() {
+    val start = Array[Byte](0x10)
+    val end = Array[Byte](0x50)
+    val boundaries = HBaseRegionSplitter.splitRange(start, end, 4)
+    Assert.assertEquals(5, boundaries.size)
+    Assert.assertArrayEquals(start, boundaries.head)
+    Assert.assertArrayEquals(end, boundaries.last)
+    boundaries.sliding(2).foreach { case Seq(left, right) =>
+      Assert.assertTrue(Bytes.compareTo(left, right) < 0)
+    }
+  }
+
+  @Test
+  def testSplitRangeOfWholeTable() {
+    val empty = Array[Byte]()
+    val boundaries = HBaseRegionSplitter.splitRange(empty, empty, 2)
+    Assert.assertEquals(3, boundaries.size)
+    Assert.assertArrayEquals(empty, boundaries.head)
+    Assert.assertArrayEquals(empty, boundaries.last)
+    Assert.assertTrue(boundaries(1).nonEmpty)
+  }
+
+  @Test
+  def testSplitRangeInOnePart() {
+    val boundaries = HBaseRegionSplitter.splitRange(Bytes.toBytes("a"), Bytes.toBytes("b"), 1)
+    Assert.assertEquals(Seq("a", "b"), boundaries.map { key => Bytes.toString(key) })
+  }
+
+  @Test
+  def testSplitAtSamples() {
+    val samples = Seq("b", "c", "d", "e", "f").map { key => Bytes.toBytes(key) }
+    val boundaries = HBaseRegionSplitter.splitAtSamples(
+        Bytes.toBytes("a"), Bytes.toBytes("g"), samples, 2)
+    Assert.assertEquals(Seq("a", "d", "f", "g"), boundaries.map { key => Bytes.toString(key) })
+  }
+
+  @Test
+  def testToHostname() {
+    Assert.assertEquals("host1", HBaseRegionSplitter.toHostname("host1:60020"))
+    Assert.assertEquals("host2", HBaseRegionSplitter.toHostname("host2"))
+  }
+}
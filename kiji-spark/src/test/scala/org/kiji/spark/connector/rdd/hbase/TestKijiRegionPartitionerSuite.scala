@@ -0,0 +1,47 @@
+// (c) Copyright 2014 WibiData, Inc.
+package org.kiji.spark.connector.rdd.hbase
+
+import org.apache.hadoop.hbase.KeyValue
+import org.apache.hadoop.hbase.util.Bytes
+import org.junit.Assert
+import org.junit.Test
+
+class TestKijiRegionPartitionerSuite {
+  import TestKijiRegionPartitionerSuite._
+
+  @Test
+  def testPartitionByRegion() {
+    val partitioner = KijiRegionPartitioner.fromStartKeys(
+        Seq(Bytes.toBytes("m"), Array[Byte](), Bytes.toBytes("g")))
+    Assert.assertEquals(3, partitioner.numPartitions)
+    Assert.assertEquals(0, partitioner.getPartition(keyValue("a", 1L)))
+    Assert.assertEquals(1, partitioner.getPartition(keyValue("g", 1L)))
+    Assert.assertEquals(1, partitioner.getPartition(keyValue("h", 1L)))
+    Assert.assertEquals(2, partitioner.getPartition(keyValue("m", 1L)))
+    Assert.assertEquals(2, partitioner.getPartition(keyValue("z", 1L)))
+  }
+
+  @Test
+  def testSingleRegion() {
+    val partitioner = KijiRegionPartitioner.fromStartKeys(Seq(Array[Byte]()))
+    Assert.assertEquals(1, partitioner.numPartitions)
+    Assert.assertEquals(0, partitioner.getPartition(keyValue("a", 1L)))
+  }
+
+  @Test
+  def testKeyValueOrdering() {
+    val ordering = KijiRegionPartitioner.KeyValueOrdering
+    Assert.assertTrue(ordering.lt(keyValue("a", 1L), keyValue("b", 1L)))
+    // More recent cells come first.
+    Assert.assertTrue(ordering.lt(keyValue("a", 2L), keyValue("a", 1L)))
+  }
+}
+
+object TestKijiRegionPartitionerSuite {
+  /** Serializes a cell of row `row` and HBase column `B:b`. */
+  def keyValue(row: String, timestamp: Long): Array[Byte] = {
+    new KeyValue(
+        Bytes.toBytes(row), Bytes.toBytes("B"), Bytes.toBytes("b"), timestamp, Bytes.toBytes(0))
+        .getBuffer
+  }
+}